@@ -54,6 +54,18 @@ public final class ConfigConstants {
 	 */
 	public static final String TASK_MANAGER_TMP_DIR_KEY = "taskmanager.tmp.dirs";
 	
+	/**
+	 * The key for the config parameter defining the number of I/O reader and the number of I/O writer threads
+	 * per directory for temporary files.
+	 */
+	public static final String TASK_MANAGER_IO_THREADS_PER_DIR_KEY = "taskmanager.io.threads-per-dir";
+	
+	/**
+	 * The key for the config parameter defining the maximal number of consecutive block requests of a channel
+	 * that the I/O threads serve with a single read or write operation.
+	 */
+	public static final String TASK_MANAGER_IO_MAX_BATCH_REQUESTS_KEY = "taskmanager.io.max-batch-requests";
+	
 	/**
 	 * The key for the config parameter defining the default number of retries for failed tasks.
 	 */
@@ -65,6 +77,12 @@ public final class ConfigConstants {
 	 */
 	public static final String MEMORY_MANAGER_AVAILABLE_MEMORY_SIZE_KEY = "taskmanager.memory.size";
 
+	/**
+	 * The key for the config parameter defining whether the task manager's memory manager allocates its
+	 * memory outside the Java heap.
+	 */
+	public static final String MEMORY_MANAGER_OFF_HEAP_KEY = "taskmanager.memory.offheap";
+
 	/**
 	 * The key defining the amount polling interval (in seconds) for the JobClient.
 	 */
@@ -98,6 +116,11 @@ public final class ConfigConstants {
 	 * The default amount of memory assigned to each task manager (in megabytes).
 	 */
 	public static final int DEFAULT_MEMORY_MANAGER_AVAILABLE_MEMORY = 512;
+
+	/**
+	 * The default setting whether the memory manager allocates its memory outside the Java heap.
+	 */
+	public static final boolean DEFAULT_MEMORY_MANAGER_OFF_HEAP = false;
 	
 	/**
 	 * The default number of retries for failed tasks.
@@ -113,6 +136,16 @@ public final class ConfigConstants {
 	 * The default directory for temporary files of the task manager.
 	 */
 	public static final String DEFAULT_TASK_MANAGER_TMP_PATH = System.getProperty("java.io.tmpdir");
+	
+	/**
+	 * The default number of I/O reader and the number of I/O writer threads per directory for temporary files.
+	 */
+	public static final int DEFAULT_TASK_MANAGER_IO_THREADS_PER_DIR = 1;
+	
+	/**
+	 * The default maximal number of consecutive block requests of a channel that are served with one operation.
+	 */
+	public static final int DEFAULT_TASK_MANAGER_IO_MAX_BATCH_REQUESTS = 16;
 
 	/**
 	 * The default value for the JobClient's polling interval. 5 Seconds.
@@ -119,6 +119,15 @@ public interface Environment {
 	 */
 	String getTaskName();
 
+	/**
+	 * Adds a message to the notification about the successful completion of the task. The message becomes part of
+	 * the job's events, so a task can use it to inform the user about decisions it made at runtime.
+	 * 
+	 * @param message
+	 *        the message to add
+	 */
+	void addCompletionMessage(String message);
+
 	/**
 	 * Returns the next unbound input gate ID or <code>null</code> if no such ID exists
 	 * 
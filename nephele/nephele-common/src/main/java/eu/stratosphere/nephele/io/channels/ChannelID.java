@@ -30,4 +30,14 @@ public class ChannelID extends AbstractID {
 	public ChannelID() {
 		super();
 	}
+
+	/**
+	 * Constructs a new channel ID with a specific bytes value.
+	 * 
+	 * @param bytes
+	 *        the ID in byte representation
+	 */
+	public ChannelID(final byte[] bytes) {
+		super(bytes);
+	}
 }
@@ -70,6 +70,11 @@ public abstract class AbstractByteBufferedInputChannel<T extends Record> extends
 	 */
 	private Decompressor decompressor = null;
 
+	/**
+	 * The index of the compression library used for the next buffer in case of dynamic compression.
+	 */
+	private int compressionLibraryIndex = 0;
+
 	/**
 	 * The exception observed in this channel while processing the buffers. Checked and thrown
 	 * per-buffer.
@@ -128,6 +133,10 @@ public abstract class AbstractByteBufferedInputChannel<T extends Record> extends
 			}
 
 			if (this.decompressor != null) {
+				// The decompressor may be shared with other channels which use different compression libraries
+				if (getCompressionLevel() == CompressionLevel.DYNAMIC_COMPRESSION) {
+					this.decompressor.setCurrentInternalDecompressionLibraryIndex(this.compressionLibraryIndex);
+				}
 				this.dataBuffer = this.decompressor.decompress(this.dataBuffer);
 			}
 		}
@@ -269,8 +278,7 @@ public abstract class AbstractByteBufferedInputChannel<T extends Record> extends
 			getInputGate().deliverEvent((AbstractTaskEvent) event);
 		} else if (CompressionEvent.class.isInstance(event)) {
 			final CompressionEvent compressionEvent = (CompressionEvent) event;
-			this.decompressor.setCurrentInternalDecompressionLibraryIndex(compressionEvent
-				.getCurrentInternalCompressionLibraryIndex());
+			this.compressionLibraryIndex = compressionEvent.getCurrentInternalCompressionLibraryIndex();
 		} else {
 			// TODO: Handle unknown event
 			LOG.error("Received unknown event: " + event);
@@ -61,11 +61,40 @@ public abstract class AbstractByteBufferedOutputChannel<T extends Record> extend
 	 */
 	private Compressor compressor = null;
 
+	/**
+	 * The index of the compression library the connected input channel expects for the next buffer in case of dynamic
+	 * compression.
+	 */
+	private int announcedCompressionLibraryIndex = 0;
+
 	/**
 	 * Stores the number of bytes transmitted through this output channel since its instantiation.
 	 */
 	private long amountOfDataTransmitted = 0L;
 
+	/**
+	 * Stores the time in nanoseconds the task thread has been blocked waiting for empty write buffers.
+	 */
+	private volatile long bufferWaitTime = 0L;
+
+	/**
+	 * The maximum time in milliseconds a partially filled data buffer may be held back, <code>-1</code> to only
+	 * forward full buffers.
+	 */
+	private volatile long bufferTimeout = -1L;
+
+	/**
+	 * The time in milliseconds at which the current data buffer has been requested from the broker,
+	 * <code>0</code> if the channel currently holds no data buffer. Only maintained if a buffer timeout is set.
+	 */
+	private volatile long dataBufferTimestamp = 0L;
+
+	/**
+	 * Set by the framework's buffer flusher if the current data buffer has been held back longer than the buffer
+	 * timeout. The task thread forwards the buffer after writing its next record.
+	 */
+	private volatile boolean flushRequested = false;
+
 	private static final Log LOG = LogFactory.getLog(AbstractByteBufferedOutputChannel.class);
 
 	/**
@@ -136,7 +165,12 @@ public abstract class AbstractByteBufferedOutputChannel<T extends Record> extend
 		if (Thread.interrupted()) {
 			throw new InterruptedException();
 		}
+		final long start = System.nanoTime();
 		this.dataBuffer = this.outputChannelBroker.requestEmptyWriteBuffer();
+		this.bufferWaitTime += System.nanoTime() - start;
+		if (this.bufferTimeout > 0L) {
+			this.dataBufferTimestamp = System.currentTimeMillis();
+		}
 	}
 
 	/**
@@ -149,14 +183,23 @@ public abstract class AbstractByteBufferedOutputChannel<T extends Record> extend
 	 */
 	private void releaseWriteBuffer() throws IOException, InterruptedException {
 
+		// Tell the receiver about a new compression library, it applies the change after having consumed this buffer
 		if (getCompressionLevel() == CompressionLevel.DYNAMIC_COMPRESSION) {
-			this.outputChannelBroker.transferEventToInputChannel(new CompressionEvent(this.compressor
-				.getCurrentInternalCompressionLibraryIndex()));
+			final int compressionLibraryIndex = this.compressor.getCurrentInternalCompressionLibraryIndex();
+			if (compressionLibraryIndex != this.announcedCompressionLibraryIndex) {
+				this.outputChannelBroker.transferEventToInputChannel(new CompressionEvent(compressionLibraryIndex));
+				this.announcedCompressionLibraryIndex = compressionLibraryIndex;
+			}
 		}
 
 		// Keep track of number of bytes transmitted through this channel
 		this.amountOfDataTransmitted += this.dataBuffer.size();
 
+		if (this.bufferTimeout > 0L) {
+			this.dataBufferTimestamp = 0L;
+			this.flushRequested = false;
+		}
+
 		this.outputChannelBroker.releaseWriteBuffer(this.dataBuffer);
 		this.dataBuffer = null;
 	}
@@ -178,49 +221,123 @@ public abstract class AbstractByteBufferedOutputChannel<T extends Record> extend
 
 		// Check if we can accept new records or if there are still old
 		// records to be transmitted
-		if (this.compressor != null) {
-			while (this.serializationBuffer.dataLeftFromPreviousSerialization()) {
+		while (this.serializationBuffer.dataLeftFromPreviousSerialization()) {
+
+			this.serializationBuffer.read(this.dataBuffer);
+			if (this.dataBuffer.remaining() == 0) {
+				releaseFullWriteBuffer();
+				requestWriteBufferFromBroker();
+			}
+		}
 
-				this.serializationBuffer.read(this.dataBuffer);
-				if (this.dataBuffer.remaining() == 0) {
+		this.serializationBuffer.serialize(record);
 
-					this.dataBuffer = this.compressor.compress(this.dataBuffer);
-					// this.leasedWriteBuffer.flip();
-					releaseWriteBuffer();
-					requestWriteBufferFromBroker();
-				}
+		// Move the entire record into data buffers, so at most one partially filled buffer is held back
+		while (true) {
+
+			this.serializationBuffer.read(this.dataBuffer);
+			if (this.dataBuffer.remaining() != 0) {
+				break;
 			}
-		} else {
-			while (this.serializationBuffer.dataLeftFromPreviousSerialization()) {
 
-				this.serializationBuffer.read(this.dataBuffer);
-				if (this.dataBuffer.remaining() == 0) {
-					releaseWriteBuffer();
-					requestWriteBufferFromBroker();
-				}
+			releaseFullWriteBuffer();
+			if (!this.serializationBuffer.dataLeftFromPreviousSerialization()) {
+				break;
 			}
+
+			requestWriteBufferFromBroker();
 		}
 
-		if (this.serializationBuffer.dataLeftFromPreviousSerialization()) {
-			throw new IOException("Serialization buffer is expected to be empty!");
+		// Forward the partially filled buffer if the flusher found it to be held back too long
+		flushIfRequested();
+	}
+
+	/**
+	 * Forwards the partially filled data buffer of this channel if the framework's buffer flusher has requested so.
+	 * The method must only be called by the task thread, which calls it after writing a record and while it waits for
+	 * input.
+	 * 
+	 * @return <code>true</code> if a partially filled buffer has been forwarded, <code>false</code> otherwise
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while compressing or releasing the buffer
+	 * @throws InterruptedException
+	 *         thrown if the thread is interrupted while releasing the buffer
+	 */
+	public boolean flushIfRequested() throws IOException, InterruptedException {
+
+		if (!this.flushRequested || this.dataBuffer == null) {
+			return false;
 		}
 
-		this.serializationBuffer.serialize(record);
+		releaseFullWriteBuffer();
+
+		return true;
+	}
+
+	/**
+	 * Compresses the current data buffer if necessary and returns it to the framework.
+	 * 
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while compressing or releasing the buffer
+	 * @throws InterruptedException
+	 *         thrown if the thread is interrupted while releasing the buffer
+	 */
+	private void releaseFullWriteBuffer() throws IOException, InterruptedException {
 
 		if (this.compressor != null) {
-			this.serializationBuffer.read(this.dataBuffer);
+			this.dataBuffer = this.compressor.compress(this.dataBuffer);
+		}
 
-			if (this.dataBuffer.remaining() == 0) {
-				this.dataBuffer = this.compressor.compress(this.dataBuffer);
-				// this.leasedWriteBuffer.flip();
-				releaseWriteBuffer();
-			}
-		} else {
-			this.serializationBuffer.read(this.dataBuffer);
-			if (this.dataBuffer.remaining() == 0) {
-				releaseWriteBuffer();
-			}
+		releaseWriteBuffer();
+	}
+
+	/**
+	 * Sets the maximum time in milliseconds a partially filled data buffer may be held back by this channel before
+	 * it is forwarded to the connected channel.
+	 * 
+	 * @param bufferTimeout
+	 *        the buffer timeout in milliseconds or <code>-1</code> to only forward full buffers
+	 */
+	public void setBufferTimeout(final long bufferTimeout) {
+
+		this.bufferTimeout = bufferTimeout;
+	}
+
+	/**
+	 * Returns the maximum time in milliseconds a partially filled data buffer may be held back by this channel.
+	 * 
+	 * @return the buffer timeout in milliseconds or <code>-1</code> if only full buffers are forwarded
+	 */
+	public long getBufferTimeout() {
+
+		return this.bufferTimeout;
+	}
+
+	/**
+	 * Requests the partially filled data buffer of this channel to be forwarded if it has been held back longer than
+	 * the channel's buffer timeout. The method is called by the framework's buffer flusher. It never touches the
+	 * buffer itself, the task thread forwards the buffer together with the next record it writes to the channel or,
+	 * if it waits for input in the meantime, through {@link #flushIfRequested()}.
+	 * 
+	 * @param now
+	 *        the current time in milliseconds
+	 * @return <code>true</code> if a flush has been requested, <code>false</code> otherwise
+	 */
+	public boolean requestFlushIfTimedOut(final long now) {
+
+		final long timeout = this.bufferTimeout;
+		if (timeout <= 0L || this.flushRequested) {
+			return false;
 		}
+
+		final long timestamp = this.dataBufferTimestamp;
+		if (timestamp == 0L || now - timestamp < timeout) {
+			return false;
+		}
+
+		this.flushRequested = true;
+
+		return true;
 	}
 
 	/**
@@ -291,33 +408,16 @@ public abstract class AbstractByteBufferedOutputChannel<T extends Record> extend
 					LOG.error(e);
 				}
 			}
-			if (this.compressor != null) {
-				this.serializationBuffer.read(this.dataBuffer);
-				if (this.dataBuffer.remaining() == 0) {
-					this.dataBuffer = this.compressor.compress(this.dataBuffer);
-					// this.leasedWriteBuffer.flip();
-					releaseWriteBuffer();
-				}
-			} else {
-				this.serializationBuffer.read(this.dataBuffer);
-				if (this.dataBuffer.remaining() == 0) {
-					releaseWriteBuffer();
-				}
+
+			this.serializationBuffer.read(this.dataBuffer);
+			if (this.dataBuffer.remaining() == 0) {
+				releaseFullWriteBuffer();
 			}
 		}
 
 		// Get rid of the leased write buffer
-		if (this.compressor != null) {
-			if (this.dataBuffer != null) {
-				this.dataBuffer = this.compressor.compress(this.dataBuffer);
-
-				// this.leasedWriteBuffer.flip();
-				releaseWriteBuffer();
-			}
-		} else {
-			if (this.dataBuffer != null) {
-				releaseWriteBuffer();
-			}
+		if (this.dataBuffer != null) {
+			releaseFullWriteBuffer();
 		}
 	}
 
@@ -350,4 +450,15 @@ public abstract class AbstractByteBufferedOutputChannel<T extends Record> extend
 
 		return this.amountOfDataTransmitted;
 	}
+
+	/**
+	 * Returns the accumulated time the task thread has been blocked while waiting for empty write buffers from the
+	 * framework since the channel's instantiation. A high value indicates the channel stack is the bottleneck.
+	 * 
+	 * @return the accumulated buffer wait time in nanoseconds
+	 */
+	public long getBufferWaitTime() {
+
+		return this.bufferWaitTime;
+	}
 }
@@ -44,8 +44,8 @@ public enum CompressionLevel {
 	HEAVY_COMPRESSION,
 
 	/**
-	 * Dynamic compression is applied to the channel, the compression rate is switched according to the current CPU
-	 * load.
+	 * Dynamic compression is applied to the channel, the compression library (including none) is switched at runtime
+	 * to the one which achieves the highest effective throughput for the channel.
 	 */
 	DYNAMIC_COMPRESSION
 }
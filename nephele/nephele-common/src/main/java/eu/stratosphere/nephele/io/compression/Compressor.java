@@ -36,7 +36,7 @@ public interface Compressor {
 
 	/**
 	 * Returns the current internal compression library index. The index points to the
-	 * concrete compression library that is used if dynamic compression is enabled.
+	 * concrete compression library that is used for the next buffer if dynamic compression is enabled.
 	 * For all other compression libraries the index is always <code>0</code>.
 	 * 
 	 * @return the current internal compression library index in case of dynamic compression
@@ -653,6 +653,29 @@ public abstract class AbstractJobVertex implements IOReadableWritable {
 		return this.vertexToShareInstancesWith;
 	}
 
+	/**
+	 * Sets the maximum time in milliseconds a partially filled buffer of this vertex's output channels may be held
+	 * back before it is forwarded to the receiver. The setting overrides the buffer timeout of the job graph. A buffer
+	 * whose timeout has expired is forwarded together with the next record the task writes to the channel.
+	 * 
+	 * @param bufferTimeout
+	 *        the buffer timeout in milliseconds or <code>-1</code> to only forward full buffers
+	 */
+	public void setBufferTimeout(final long bufferTimeout) {
+		this.configuration.setLong(JobGraph.BUFFER_TIMEOUT_KEY, bufferTimeout);
+	}
+
+	/**
+	 * Returns the maximum time in milliseconds a partially filled buffer of this vertex's output channels may be held
+	 * back before it is forwarded to the receiver.
+	 * 
+	 * @return the buffer timeout in milliseconds, <code>-1</code> if only full buffers are forwarded or the timeout
+	 *         of the job graph applies
+	 */
+	public long getBufferTimeout() {
+		return this.configuration.getLong(JobGraph.BUFFER_TIMEOUT_KEY, JobGraph.DEFAULT_BUFFER_TIMEOUT);
+	}
+
 	/**
 	 * Returns the vertex's configuration object which can be used to pass custom settings to the task at runtime.
 	 * 
@@ -94,6 +94,17 @@ public class JobGraph implements IOReadableWritable {
 	 */
 	private static final int BUFFERSIZE = 8192;
 
+	/**
+	 * The configuration key for the maximum time in milliseconds a partially filled output buffer may be held back
+	 * before it is forwarded to the receiver.
+	 */
+	public static final String BUFFER_TIMEOUT_KEY = "job.io.buffertimeout";
+
+	/**
+	 * The default buffer timeout, <code>-1</code> disables the latency-bounded flushing of output buffers.
+	 */
+	public static final long DEFAULT_BUFFER_TIMEOUT = -1L;
+
 	/**
 	 * Constructs a new job graph with a random job ID.
 	 */
@@ -131,6 +142,31 @@ public class JobGraph implements IOReadableWritable {
 		return this.jobConfiguration;
 	}
 
+	/**
+	 * Sets the maximum time in milliseconds a partially filled output buffer of this job may be held back before it
+	 * is forwarded to the receiver. The setting can be overridden for individual vertices. A buffer whose timeout has
+	 * expired is forwarded together with the next record the task writes to the channel. Compressed channels always
+	 * forward full buffers only.
+	 * 
+	 * @param bufferTimeout
+	 *        the buffer timeout in milliseconds or <code>-1</code> to only forward full buffers
+	 */
+	public void setBufferTimeout(final long bufferTimeout) {
+
+		this.jobConfiguration.setLong(BUFFER_TIMEOUT_KEY, bufferTimeout);
+	}
+
+	/**
+	 * Returns the maximum time in milliseconds a partially filled output buffer of this job may be held back before
+	 * it is forwarded to the receiver.
+	 * 
+	 * @return the buffer timeout in milliseconds or <code>-1</code> if only full buffers are forwarded
+	 */
+	public long getBufferTimeout() {
+
+		return this.jobConfiguration.getLong(BUFFER_TIMEOUT_KEY, DEFAULT_BUFFER_TIMEOUT);
+	}
+
 	/**
 	 * Returns the configuration object distributed among the task managers
 	 * before they start processing this job.
@@ -239,6 +239,60 @@ final class SegmentReadRequest implements ReadRequest
 	{
 		this.channel.handleProcessedBuffer(this.segment, ioex);
 	}
+	
+	/**
+	 * Checks whether this request and the given request read from the same channel.
+	 * 
+	 * @param other The request to check.
+	 * @return True, if both requests read from the same channel, false otherwise.
+	 */
+	boolean isSameChannel(SegmentReadRequest other)
+	{
+		return this.channel == other.channel;
+	}
+	
+	/**
+	 * Reads the blocks for a batch of consecutive requests of the same channel with one scattering read.
+	 * 
+	 * @param requests The requests, which must all read from the same channel, in the order they were issued.
+	 * @param num The number of requests in the batch.
+	 * @param buffers A scratch array for the byte buffers, at least as long as the batch.
+	 * @return The number of bytes read.
+	 * @throws IOException Thrown, if the read failed.
+	 */
+	static long readBatch(SegmentReadRequest[] requests, int num, ByteBuffer[] buffers) throws IOException
+	{
+		final FileChannel c = requests[0].channel.fileChannel;
+		if (c.size() - c.position() <= 0) {
+			return 0;
+		}
+		
+		try {
+			for (int i = 0; i < num; i++) {
+				buffers[i] = requests[i].segment.wrap(0, requests[i].segment.size());
+			}
+		} catch (NullPointerException npex) {
+			// the memory has been cleared asynchronouosly through task failing or canceling
+			// ignore the request, since the result cannot be read
+			return 0;
+		}
+		
+		long bytes = 0;
+		try {
+			while (buffers[num - 1].hasRemaining()) {
+				final long read = c.read(buffers, 0, num);
+				if (read <= 0) {
+					break;
+				}
+				bytes += read;
+			}
+		} finally {
+			for (int i = 0; i < num; i++) {
+				buffers[i] = null;
+			}
+		}
+		return bytes;
+	}
 }
 
 //--------------------------------------------------------------------------------------------
@@ -280,4 +334,50 @@ final class SegmentWriteRequest implements WriteRequest
 	{
 		this.channel.handleProcessedBuffer(this.segment, ioex);
 	}
+	
+	/**
+	 * Checks whether this request and the given request write to the same channel.
+	 * 
+	 * @param other The request to check.
+	 * @return True, if both requests write to the same channel, false otherwise.
+	 */
+	boolean isSameChannel(SegmentWriteRequest other)
+	{
+		return this.channel == other.channel;
+	}
+	
+	/**
+	 * Writes the blocks of a batch of consecutive requests of the same channel with one gathering write.
+	 * 
+	 * @param requests The requests, which must all write to the same channel, in the order they were issued.
+	 * @param num The number of requests in the batch.
+	 * @param buffers A scratch array for the byte buffers, at least as long as the batch.
+	 * @return The number of bytes written.
+	 * @throws IOException Thrown, if the write failed.
+	 */
+	static long writeBatch(SegmentWriteRequest[] requests, int num, ByteBuffer[] buffers) throws IOException
+	{
+		final FileChannel c = requests[0].channel.fileChannel;
+		try {
+			for (int i = 0; i < num; i++) {
+				buffers[i] = requests[i].segment.wrap(0, requests[i].segment.size());
+			}
+		} catch (NullPointerException npex) {
+			// the memory has been cleared asynchronouosly through task failing or canceling
+			// ignore the request, since there is nothing to write.
+			return 0;
+		}
+		
+		long bytes = 0;
+		try {
+			while (buffers[num - 1].hasRemaining()) {
+				bytes += c.write(buffers, 0, num);
+			}
+		} finally {
+			for (int i = 0; i < num; i++) {
+				buffers[i] = null;
+			}
+		}
+		return bytes;
+	}
 }
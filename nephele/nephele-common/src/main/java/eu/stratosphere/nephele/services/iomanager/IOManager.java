@@ -17,13 +17,17 @@ package eu.stratosphere.nephele.services.iomanager;
 
 import java.io.IOException;
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import eu.stratosphere.nephele.configuration.ConfigConstants;
 import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
 
 /**
@@ -50,15 +54,31 @@ public final class IOManager implements UncaughtExceptionHandler
 	private final Random random;
 
 	/**
-	 * The writer thread used for asynchronous block oriented channel writing.
+	 * The writer threads used for asynchronous block oriented channel writing. The threads for path
+	 * <i>i</i> are found at the positions <i>i * numThreadsPerPath</i> to <i>(i + 1) * numThreadsPerPath - 1</i>.
 	 */
 	private final WriterThread[] writers;
 
 	/**
-	 * The reader threads used for asynchronous block oriented channel reading.
+	 * The reader threads used for asynchronous block oriented channel reading, laid out as the writer threads.
 	 */
 	private final ReaderThread[] readers;
 	
+	/**
+	 * The I/O statistics for each path.
+	 */
+	private final PathStatistics[] statistics;
+	
+	/**
+	 * The counters that assign the channel accesses round-robin to the threads of each path.
+	 */
+	private final AtomicInteger[] nextThreadInPath;
+	
+	/**
+	 * The number of reader and the number of writer threads per path.
+	 */
+	private final int numThreadsPerPath;
+	
 	/**
 	 * The number of the next path to use.
 	 */
@@ -91,35 +111,70 @@ public final class IOManager implements UncaughtExceptionHandler
 	}
 
 	/**
-	 * Constructs a new IOManager.
+	 * Constructs a new IOManager with the default number of reader and writer threads per path.
 	 * 
 	 * @param path
 	 *        the basic directory path for files underlying anonymous
 	 *        channels.
 	 */
-	public IOManager(String[] paths)
+	public IOManager(String[] paths) {
+		this(paths, ConfigConstants.DEFAULT_TASK_MANAGER_IO_THREADS_PER_DIR, 
+			ConfigConstants.DEFAULT_TASK_MANAGER_IO_MAX_BATCH_REQUESTS);
+	}
+	
+	/**
+	 * Constructs a new IOManager. Each path is served by the given number of reader and writer threads, which
+	 * allows to drive devices that process many requests concurrently (such as SSDs) at a higher queue depth.
+	 * All requests of one reader or writer are served by the same thread, which preserves their order.
+	 * Consecutive requests of the same reader or writer are served with a single scattering read or
+	 * gathering write.
+	 * 
+	 * @param paths The basic directory paths for files underlying anonymous channels.
+	 * @param numThreadsPerPath The number of reader and the number of writer threads per path.
+	 * @param maxRequestsPerBatch The maximal number of consecutive requests to serve with one I/O operation.
+	 */
+	public IOManager(String[] paths, int numThreadsPerPath, int maxRequestsPerBatch)
 	{
+		if (numThreadsPerPath < 1) {
+			throw new IllegalArgumentException("The number of I/O threads per path must be at least one.");
+		}
+		if (maxRequestsPerBatch < 1) {
+			throw new IllegalArgumentException("The number of requests per batch must be at least one.");
+		}
+		
 		this.paths = paths;
 		this.random = new Random();
 		this.nextPath = 0;
+		this.numThreadsPerPath = numThreadsPerPath;
+		
+		this.statistics = new PathStatistics[paths.length];
+		this.nextThreadInPath = new AtomicInteger[paths.length];
+		for (int i = 0; i < paths.length; i++) {
+			this.statistics[i] = new PathStatistics();
+			this.nextThreadInPath[i] = new AtomicInteger();
+		}
+		
+		final int numThreads = paths.length * numThreadsPerPath;
 		
-		// start a write worker thread for each directory
-		this.writers = new WriterThread[paths.length];
+		// start the write worker threads for each directory
+		this.writers = new WriterThread[numThreads];
 		for (int i = 0; i < this.writers.length; i++) {
-			final WriterThread t = new WriterThread();
+			final int path = i / numThreadsPerPath;
+			final WriterThread t = new WriterThread(this.statistics[path], maxRequestsPerBatch);
 			this.writers[i] = t;
-			t.setName("IOManager writer thread #" + (i + 1));
+			t.setName("IOManager writer thread #" + (path + 1) + '.' + (i % numThreadsPerPath + 1));
 			t.setDaemon(true);
 			t.setUncaughtExceptionHandler(this);
 			t.start();
 		}
 
-		// start a reader worker thread for each directory
-		this.readers = new ReaderThread[paths.length];
+		// start the reader worker threads for each directory
+		this.readers = new ReaderThread[numThreads];
 		for (int i = 0; i < this.readers.length; i++) {
-			final ReaderThread t = new ReaderThread();
+			final int path = i / numThreadsPerPath;
+			final ReaderThread t = new ReaderThread(this.statistics[path], maxRequestsPerBatch);
 			this.readers[i] = t;
-			t.setName("IOManager reader thread #" + (i + 1));
+			t.setName("IOManager reader thread #" + (path + 1) + '.' + (i % numThreadsPerPath + 1));
 			t.setDaemon(true);
 			t.setUncaughtExceptionHandler(this);
 			t.start();
@@ -139,7 +194,7 @@ public final class IOManager implements UncaughtExceptionHandler
 			// close writing and reading threads with best effort and log problems
 			
 			// --------------------------------- writer shutdown ----------------------------------			
-			for (int i = 0; i < this.readers.length; i++) {
+			for (int i = 0; i < this.writers.length; i++) {
 				try {
 					this.writers[i].shutdown();
 				}
@@ -160,7 +215,7 @@ public final class IOManager implements UncaughtExceptionHandler
 			
 			// ------------------------ wait until shutdown is complete ---------------------------
 			try {
-				for (int i = 0; i < this.readers.length; i++) {
+				for (int i = 0; i < this.writers.length; i++) {
 					this.writers[i].join();
 				}
 				for (int i = 0; i < this.readers.length; i++) {
@@ -168,6 +223,12 @@ public final class IOManager implements UncaughtExceptionHandler
 				}
 			}
 			catch (InterruptedException iex) {}
+			
+			if (LOG.isDebugEnabled()) {
+				for (int i = 0; i < this.paths.length; i++) {
+					LOG.debug("I/O statistics for path '" + this.paths[i] + "': " + this.statistics[i]);
+				}
+			}
 		}
 	}
 	
@@ -186,7 +247,7 @@ public final class IOManager implements UncaughtExceptionHandler
 		
 		boolean writersShutDown = true;
 		for (int i = 0; i < this.writers.length; i++) {
-			readersShutDown &= this.writers[i].getState() == Thread.State.TERMINATED;
+			writersShutDown &= this.writers[i].getState() == Thread.State.TERMINATED;
 		}
 		
 		return this.isClosed && writersShutDown && readersShutDown;
@@ -202,6 +263,92 @@ public final class IOManager implements UncaughtExceptionHandler
 		shutdown();	
 	}
 
+	// ------------------------------------------------------------------------
+	//                             Statistics
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Gets the number of temp directories (paths) that this I/O manager spreads its channels across.
+	 * 
+	 * @return The number of paths.
+	 */
+	public int getNumberOfPaths() {
+		return this.paths.length;
+	}
+	
+	/**
+	 * Gets the number of reader and the number of writer threads that serve each path.
+	 * 
+	 * @return The number of I/O threads per path.
+	 */
+	public int getNumberOfThreadsPerPath() {
+		return this.numThreadsPerPath;
+	}
+	
+	/**
+	 * Gets the number of bytes that were read from the given path so far.
+	 * 
+	 * @param path The index of the path.
+	 * @return The number of bytes read from the path.
+	 */
+	public long getNumBytesRead(int path) {
+		return this.statistics[path].bytesRead.get();
+	}
+	
+	/**
+	 * Gets the number of bytes that were written to the given path so far.
+	 * 
+	 * @param path The index of the path.
+	 * @return The number of bytes written to the path.
+	 */
+	public long getNumBytesWritten(int path) {
+		return this.statistics[path].bytesWritten.get();
+	}
+	
+	/**
+	 * Gets the number of I/O operations that the reader threads of the given path issued so far. Since
+	 * consecutive requests are batched, this number may be lower than the number of read requests.
+	 * 
+	 * @param path The index of the path.
+	 * @return The number of read operations on the path.
+	 */
+	public long getNumReadOperations(int path) {
+		return this.statistics[path].readOperations.get();
+	}
+	
+	/**
+	 * Gets the number of I/O operations that the writer threads of the given path issued so far. Since
+	 * consecutive requests are batched, this number may be lower than the number of write requests.
+	 * 
+	 * @param path The index of the path.
+	 * @return The number of write operations on the path.
+	 */
+	public long getNumWriteOperations(int path) {
+		return this.statistics[path].writeOperations.get();
+	}
+	
+	/**
+	 * Gets the read throughput of the given path, in bytes per second of time that the reader threads spent
+	 * reading. With multiple threads per path, the busy times of all threads add up.
+	 * 
+	 * @param path The index of the path.
+	 * @return The read throughput of the path in bytes per second, or zero, if nothing was read.
+	 */
+	public double getReadThroughput(int path) {
+		return this.statistics[path].getReadThroughput();
+	}
+	
+	/**
+	 * Gets the write throughput of the given path, in bytes per second of time that the writer threads spent
+	 * writing. With multiple threads per path, the busy times of all threads add up.
+	 * 
+	 * @param path The index of the path.
+	 * @return The write throughput of the path in bytes per second, or zero, if nothing was written.
+	 */
+	public double getWriteThroughput(int path) {
+		return this.statistics[path].getWriteThroughput();
+	}
+
 	// ------------------------------------------------------------------------
 	//                          Channel Instantiations
 	// ------------------------------------------------------------------------
@@ -252,7 +399,7 @@ public final class IOManager implements UncaughtExceptionHandler
 			throw new IllegalStateException("I/O-Manger is closed.");
 		}
 		
-		return new BlockChannelWriter(channelID, this.writers[channelID.getThreadNum()].requestQueue, returnQueue, 1);
+		return new BlockChannelWriter(channelID, getWriterQueue(channelID), returnQueue, 1);
 	}
 	
 	/**
@@ -282,7 +429,7 @@ public final class IOManager implements UncaughtExceptionHandler
 			throw new IllegalStateException("I/O-Manger is closed.");
 		}
 		
-		return new BlockChannelWriter(channelID, this.writers[channelID.getThreadNum()].requestQueue, returnQueue, numRequestsToCombine);
+		return new BlockChannelWriter(channelID, getWriterQueue(channelID), returnQueue, numRequestsToCombine);
 	}
 	
 	/**
@@ -300,7 +447,7 @@ public final class IOManager implements UncaughtExceptionHandler
 			throw new IllegalStateException("I/O-Manger is closed.");
 		}
 		
-		return new BlockChannelWriter(channelID, this.writers[channelID.getThreadNum()].requestQueue, new LinkedBlockingQueue<MemorySegment>(), 1);
+		return new BlockChannelWriter(channelID, getWriterQueue(channelID), new LinkedBlockingQueue<MemorySegment>(), 1);
 	}
 	
 	/**
@@ -327,7 +474,7 @@ public final class IOManager implements UncaughtExceptionHandler
 			throw new IllegalStateException("I/O-Manger is closed.");
 		}
 		
-		return new BlockChannelWriter(channelID, this.writers[channelID.getThreadNum()].requestQueue, new LinkedBlockingQueue<MemorySegment>(), numRequestsToCombine);
+		return new BlockChannelWriter(channelID, getWriterQueue(channelID), new LinkedBlockingQueue<MemorySegment>(), numRequestsToCombine);
 	}
 	
 	/**
@@ -348,7 +495,7 @@ public final class IOManager implements UncaughtExceptionHandler
 			throw new IllegalStateException("I/O-Manger is closed.");
 		}
 		
-		return new BlockChannelReader(channelID, this.readers[channelID.getThreadNum()].requestQueue, returnQueue, 1);
+		return new BlockChannelReader(channelID, getReaderQueue(channelID), returnQueue, 1);
 	}
 	
 	/**
@@ -378,7 +525,7 @@ public final class IOManager implements UncaughtExceptionHandler
 			throw new IllegalStateException("I/O-Manger is closed.");
 		}
 		
-		return new BlockChannelReader(channelID, this.readers[channelID.getThreadNum()].requestQueue, returnQueue, numRequestsToCombine);
+		return new BlockChannelReader(channelID, getReaderQueue(channelID), returnQueue, numRequestsToCombine);
 	}
 	
 	/**
@@ -397,7 +544,7 @@ public final class IOManager implements UncaughtExceptionHandler
 			throw new IllegalStateException("I/O-Manger is closed.");
 		}
 		
-		return new BlockChannelReader(channelID, this.readers[channelID.getThreadNum()].requestQueue, new LinkedBlockingQueue<MemorySegment>(), 1);
+		return new BlockChannelReader(channelID, getReaderQueue(channelID), new LinkedBlockingQueue<MemorySegment>(), 1);
 	}
 	
 	/**
@@ -425,7 +572,7 @@ public final class IOManager implements UncaughtExceptionHandler
 			throw new IllegalStateException("I/O-Manger is closed.");
 		}
 		
-		return new BlockChannelReader(channelID, this.readers[channelID.getThreadNum()].requestQueue, 
+		return new BlockChannelReader(channelID, getReaderQueue(channelID), 
 			new LinkedBlockingQueue<MemorySegment>(), numRequestsToCombine);
 	}
 	
@@ -452,13 +599,32 @@ public final class IOManager implements UncaughtExceptionHandler
 			throw new IllegalStateException("I/O-Manger is closed.");
 		}
 		
-		return new BulkBlockChannelReader(channelID, this.readers[channelID.getThreadNum()].requestQueue, targetSegments, numBlocks);
+		return new BulkBlockChannelReader(channelID, getReaderQueue(channelID), targetSegments, numBlocks);
 	}
 	
 	// ========================================================================
 	//                             Utilities
 	// ========================================================================
 	
+	private final RequestQueue<WriteRequest> getWriterQueue(Channel.ID channelID) {
+		return this.writers[getThreadIndex(channelID)].requestQueue;
+	}
+	
+	private final RequestQueue<ReadRequest> getReaderQueue(Channel.ID channelID) {
+		return this.readers[getThreadIndex(channelID)].requestQueue;
+	}
+	
+	/**
+	 * Picks the thread that serves all requests of a new channel access. The threads of the channel's
+	 * path are assigned round-robin.
+	 */
+	private final int getThreadIndex(Channel.ID channelID)
+	{
+		final int path = channelID.getThreadNum();
+		final int inPath = (this.nextThreadInPath[path].getAndIncrement() & Integer.MAX_VALUE) % this.numThreadsPerPath;
+		return path * this.numThreadsPerPath + inPath;
+	}
+	
 	private final int getNextPathNum()
 	{
 		final int next = this.nextPath;
@@ -472,6 +638,44 @@ public final class IOManager implements UncaughtExceptionHandler
 	//                          I/O Worker Threads
 	// ========================================================================
 
+	/**
+	 * The I/O counters of one path, shared by all threads of the path.
+	 */
+	private static final class PathStatistics
+	{
+		private final AtomicLong bytesRead = new AtomicLong();
+		
+		private final AtomicLong bytesWritten = new AtomicLong();
+		
+		private final AtomicLong readOperations = new AtomicLong();
+		
+		private final AtomicLong writeOperations = new AtomicLong();
+		
+		private final AtomicLong readNanos = new AtomicLong();
+		
+		private final AtomicLong writeNanos = new AtomicLong();
+		
+		double getReadThroughput() {
+			final long nanos = this.readNanos.get();
+			return nanos == 0 ? 0.0 : this.bytesRead.get() * 1000000000.0 / nanos;
+		}
+		
+		double getWriteThroughput() {
+			final long nanos = this.writeNanos.get();
+			return nanos == 0 ? 0.0 : this.bytesWritten.get() * 1000000000.0 / nanos;
+		}
+		
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "read " + this.bytesRead.get() + " bytes in " + this.readOperations.get() + " operations (" +
+				(long) (getReadThroughput() / 1024) + " KB/s), written " + this.bytesWritten.get() + " bytes in " +
+				this.writeOperations.get() + " operations (" + (long) (getWriteThroughput() / 1024) + " KB/s)";
+		}
+	}
+
 	/**
 	 * A worker thread for asynchronous read.
 	 * 
@@ -481,6 +685,12 @@ public final class IOManager implements UncaughtExceptionHandler
 	private static final class ReaderThread extends Thread
 	{
 		protected final RequestQueue<ReadRequest> requestQueue;
+		
+		private final PathStatistics statistics;
+		
+		private final SegmentReadRequest[] batch;
+		
+		private final ByteBuffer[] buffers;
 
 		private volatile boolean alive;
 
@@ -488,9 +698,12 @@ public final class IOManager implements UncaughtExceptionHandler
 		// Constructors / Destructors
 		// ---------------------------------------------------------------------
 		
-		protected ReaderThread()
+		protected ReaderThread(PathStatistics statistics, int maxRequestsPerBatch)
 		{
 			this.requestQueue = new RequestQueue<ReadRequest>();
+			this.statistics = statistics;
+			this.batch = new SegmentReadRequest[maxRequestsPerBatch];
+			this.buffers = new ByteBuffer[maxRequestsPerBatch];
 			this.alive = true;
 		}
 		
@@ -527,6 +740,8 @@ public final class IOManager implements UncaughtExceptionHandler
 		@Override
 		public void run()
 		{
+			final SegmentReadRequest[] batch = this.batch;
+			
 			while (this.alive)
 			{
 				
@@ -544,12 +759,31 @@ public final class IOManager implements UncaughtExceptionHandler
 					}
 				}
 				
+				// gather the directly following requests of the same channel into one batch.
+				// this thread is the only consumer of the queue, so the peeked request is the polled one.
+				int num = 0;
+				if (request instanceof SegmentReadRequest) {
+					final SegmentReadRequest first = (SegmentReadRequest) request;
+					batch[num++] = first;
+					ReadRequest next;
+					while (num < batch.length && (next = this.requestQueue.peek()) instanceof SegmentReadRequest &&
+							first.isSameChannel((SegmentReadRequest) next))
+					{
+						batch[num++] = (SegmentReadRequest) this.requestQueue.poll();
+					}
+				}
+				
 				// remember any IO exception that occurs, so it can be reported to the writer
 				IOException ioex = null;
 
+				final long start = System.nanoTime();
 				try {
 					// read buffer from the specified channel
-					request.read();
+					if (num > 0) {
+						this.statistics.bytesRead.addAndGet(SegmentReadRequest.readBatch(batch, num, this.buffers));
+					} else {
+						request.read();
+					}
 				}
 				catch (IOException e) {
 					ioex = e;
@@ -559,9 +793,18 @@ public final class IOManager implements UncaughtExceptionHandler
 					IOManager.LOG.error("I/O reading thread encountered an error" + 
 						t.getMessage() == null ? "." : ": ", t);
 				}
+				this.statistics.readNanos.addAndGet(System.nanoTime() - start);
+				this.statistics.readOperations.incrementAndGet();
 
 				// invoke the processed buffer handler of the request issuing reader object
-				request.requestDone(ioex);
+				if (num > 0) {
+					for (int i = 0; i < num; i++) {
+						batch[i].requestDone(ioex);
+						batch[i] = null;
+					}
+				} else {
+					request.requestDone(ioex);
+				}
 			} // end while alive
 		}
 		
@@ -573,6 +816,12 @@ public final class IOManager implements UncaughtExceptionHandler
 	private static final class WriterThread extends Thread
 	{
 		protected final RequestQueue<WriteRequest> requestQueue;
+		
+		private final PathStatistics statistics;
+		
+		private final SegmentWriteRequest[] batch;
+		
+		private final ByteBuffer[] buffers;
 
 		private volatile boolean alive;
 
@@ -580,9 +829,12 @@ public final class IOManager implements UncaughtExceptionHandler
 		// Constructors / Destructors
 		// ---------------------------------------------------------------------
 
-		protected WriterThread()
+		protected WriterThread(PathStatistics statistics, int maxRequestsPerBatch)
 		{
 			this.requestQueue = new RequestQueue<WriteRequest>();
+			this.statistics = statistics;
+			this.batch = new SegmentWriteRequest[maxRequestsPerBatch];
+			this.buffers = new ByteBuffer[maxRequestsPerBatch];
 			this.alive = true;
 		}
 
@@ -620,6 +872,8 @@ public final class IOManager implements UncaughtExceptionHandler
 		@Override
 		public void run()
 		{
+			final SegmentWriteRequest[] batch = this.batch;
+			
 			while (this.alive) {
 				
 				WriteRequest request = null;
@@ -637,12 +891,31 @@ public final class IOManager implements UncaughtExceptionHandler
 					}
 				}
 				
+				// gather the directly following requests of the same channel into one batch.
+				// this thread is the only consumer of the queue, so the peeked request is the polled one.
+				int num = 0;
+				if (request instanceof SegmentWriteRequest) {
+					final SegmentWriteRequest first = (SegmentWriteRequest) request;
+					batch[num++] = first;
+					WriteRequest next;
+					while (num < batch.length && (next = this.requestQueue.peek()) instanceof SegmentWriteRequest &&
+							first.isSameChannel((SegmentWriteRequest) next))
+					{
+						batch[num++] = (SegmentWriteRequest) this.requestQueue.poll();
+					}
+				}
+				
 				// remember any IO exception that occurs, so it can be reported to the writer
 				IOException ioex = null;
 				
+				final long start = System.nanoTime();
 				try {
 					// write buffer to the specified channel
-					request.write();
+					if (num > 0) {
+						this.statistics.bytesWritten.addAndGet(SegmentWriteRequest.writeBatch(batch, num, this.buffers));
+					} else {
+						request.write();
+					}
 				}
 				catch (IOException e) {
 					ioex = e;
@@ -652,9 +925,18 @@ public final class IOManager implements UncaughtExceptionHandler
 					IOManager.LOG.error("I/O reading thread encountered an error" + 
 						t.getMessage() == null ? "." : ": ", t);
 				}
+				this.statistics.writeNanos.addAndGet(System.nanoTime() - start);
+				this.statistics.writeOperations.incrementAndGet();
 
 				// invoke the processed buffer handler of the request issuing writer object
-				request.requestDone(ioex);
+				if (num > 0) {
+					for (int i = 0; i < num; i++) {
+						batch[i].requestDone(ioex);
+						batch[i] = null;
+					}
+				} else {
+					request.requestDone(ioex);
+				}
 			} // end while alive
 		}
 		
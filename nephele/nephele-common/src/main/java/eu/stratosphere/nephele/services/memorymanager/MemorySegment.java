@@ -19,13 +19,21 @@ package eu.stratosphere.nephele.services.memorymanager;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 
 /**
  * This class represents a piece of memory allocated from the memory manager. The segment is backed
- * by a byte array and features random put and get methods for the basic types that are stored in a byte-wise
- * fashion in the memory.
+ * either by a byte array on the Java heap, or by a direct (off-heap) memory region, and features random
+ * put and get methods for the basic types. Multi-byte types are read and written as whole words, in big-endian
+ * byte order, unless the method explicitly states native byte order.
+ * <p>
+ * Both variants are accessed through the same code path: the heap variant addresses its memory relative to the
+ * backing array object, while the off-heap variant uses absolute memory addresses. This keeps the accessor
+ * methods free of type checks, such that the JIT compiler can inline them regardless of the segment's memory type.
  *
  * @author Alexander Alexandrov
  * @author Stephan Ewen
@@ -33,12 +41,52 @@ import java.nio.ByteBuffer;
 public class MemorySegment
 {
 	/**
-	 * The array in which the data is stored.
+	 * The unsafe handle used for the memory accesses.
+	 */
+	@SuppressWarnings("restriction")
+	protected static final sun.misc.Unsafe UNSAFE = getUnsafe();
+	
+	/**
+	 * The offset of the first element in a byte array, relative to the array object.
+	 */
+	@SuppressWarnings("restriction")
+	protected static final long BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+	
+	/**
+	 * The offset of the field that holds the memory address in a direct byte buffer.
+	 */
+	private static final long BUFFER_ADDRESS_FIELD_OFFSET = getBufferAddressFieldOffset();
+	
+	/**
+	 * Flag indicating whether the native byte order of the machine is little endian. All multi-byte accessors
+	 * that are not explicitly native use big-endian byte order, and need to reverse the bytes in that case.
+	 */
+	private static final boolean LITTLE_ENDIAN = (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN);
+	
+	/**
+	 * The array in which the data is stored, or null, if the segment is backed by off-heap memory.
 	 */
 	protected byte[] memory;
 	
 	/**
-	 * The offset in the memory array where this segment starts.
+	 * The direct byte buffer that holds the off-heap memory, or null, if the segment is backed by a heap array.
+	 * The reference is held to keep the memory from being reclaimed while the segment is alive.
+	 */
+	protected ByteBuffer offHeapMemory;
+	
+	/**
+	 * The address of the first byte of this segment. For heap segments, the address is relative to the
+	 * backing array, for off-heap segments it is the absolute memory address.
+	 */
+	protected long address;
+	
+	/**
+	 * The address one byte after the last addressable byte of this segment.
+	 */
+	protected final long addressLimit;
+	
+	/**
+	 * The offset in the memory array (or buffer) where this segment starts.
 	 */
 	protected final int offset;
 	
@@ -57,17 +105,51 @@ public class MemorySegment
 	// -------------------------------------------------------------------------
 
 	/**
-	 * Creates a new memory segment of given size with the provided views.
+	 * Creates a new memory segment that represents the given region of the given byte array.
 	 * 
+	 * @param memory The byte array that holds the memory.
+	 * @param offset The offset in the array where the segment starts.
 	 * @param size The size of the memory segment.
-	 * @param inputView The input view to use.
-	 * @param outputView The output view to use.
 	 */
 	public MemorySegment(byte[] memory, int offset, int size)
-	{		
+	{
+		if (offset < 0 || size < 0 || offset > memory.length - size) {
+			throw new IndexOutOfBoundsException();
+		}
+		
 		this.memory = memory;
+		this.offHeapMemory = null;
 		this.offset = offset;
 		this.size = size;
+		this.address = BYTE_ARRAY_BASE_OFFSET + offset;
+		this.addressLimit = this.address + size;
+	}
+	
+	/**
+	 * Creates a new memory segment that represents the given region of the given direct byte buffer.
+	 * The memory of the segment lives outside the Java heap.
+	 * 
+	 * @param offHeapMemory The direct byte buffer that holds the memory.
+	 * @param offset The offset in the buffer where the segment starts.
+	 * @param size The size of the memory segment.
+	 * 
+	 * @throws IllegalArgumentException Thrown, if the given buffer is not a direct byte buffer.
+	 */
+	public MemorySegment(ByteBuffer offHeapMemory, int offset, int size)
+	{
+		if (!offHeapMemory.isDirect()) {
+			throw new IllegalArgumentException("Off-heap memory segments must be backed by a direct byte buffer.");
+		}
+		if (offset < 0 || size < 0 || offset > offHeapMemory.capacity() - size) {
+			throw new IndexOutOfBoundsException();
+		}
+		
+		this.memory = null;
+		this.offHeapMemory = offHeapMemory;
+		this.offset = offset;
+		this.size = size;
+		this.address = getBufferAddress(offHeapMemory) + offset;
+		this.addressLimit = this.address + size;
 	}
 
 	// -------------------------------------------------------------------------
@@ -81,12 +163,21 @@ public class MemorySegment
 	 * @return True, if the segment has been freed, false otherwise.
 	 */
 	public boolean isFreed() {
-		return this.memory == null;
+		return this.memory == null && this.offHeapMemory == null;
+	}
+	
+	/**
+	 * Checks whether this memory segment is backed by memory outside the Java heap.
+	 * 
+	 * @return True, if the segment is backed by off-heap memory, false, if it is backed by a byte array.
+	 */
+	public final boolean isOffHeap() {
+		return this.offHeapMemory != null;
 	}
 	
 	/**
 	 * Gets the size of the memory segment, in bytes. Because segments
-	 * are backed by arrays, they cannot be larger than two GiBytes.
+	 * are backed by arrays or buffers, they cannot be larger than two GiBytes.
 	 * 
 	 * @return The size in bytes.
 	 */
@@ -99,8 +190,10 @@ public class MemorySegment
 	 * Since different regions of the backing array are used by different segments, the logical
 	 * positions in this view do not correspond to the indexes in the backing array and need
 	 * to be translated via the {@link #translateOffset(int)} method.
+	 * <p>
+	 * Segments that are backed by off-heap memory have no backing array. For those, this method returns null.
 	 * 
-	 * @return The backing byte array.
+	 * @return The backing byte array, or null, if the segment is backed by off-heap memory.
 	 */
 	public final byte[] getBackingArray() {
 		return this.memory;
@@ -123,7 +216,7 @@ public class MemorySegment
 
 	/**
 	 * Wraps the chunk of the underlying memory located between <tt>offset<tt> and 
-	 * <tt>length</tt> in a NIO ByteBuffer.
+	 * <tt>length</tt> in a NIO ByteBuffer. For off-heap segments, the returned buffer is a direct buffer.
 	 * 
 	 * @param offset The offset in the memory segment.
 	 * @param length The number of bytes to be wrapped as a buffer.
@@ -137,16 +230,48 @@ public class MemorySegment
 		}
 		
 		if (this.wrapper == null) {
-			this.wrapper = ByteBuffer.wrap(this.memory, this.offset + offset, length);
+			if (this.memory != null) {
+				this.wrapper = ByteBuffer.wrap(this.memory, this.offset + offset, length);
+			} else {
+				this.wrapper = this.offHeapMemory.duplicate();
+				this.wrapper.limit(this.offset + offset + length);
+				this.wrapper.position(this.offset + offset);
+			}
 		}
 		else {
+			// set the limit first to the capacity, to avoid position > limit situations
+			this.wrapper.limit(this.wrapper.capacity());
 			this.wrapper.position(this.offset + offset);
 			this.wrapper.limit(this.offset + offset + length);
 		}
 		
 		return this.wrapper;
 	}
-
+	
+	/**
+	 * Marks this segment as freed. After that, all accesses to the segment fail.
+	 */
+	protected void free() {
+		this.memory = null;
+		this.offHeapMemory = null;
+		this.wrapper = null;
+		// make the address larger than the limit, such that all range checks fail
+		this.address = this.addressLimit + 1;
+	}
+	
+	/**
+	 * Creates the exception that is thrown, if an access to the segment is out of its bounds. Distinguishes
+	 * accesses to freed segments from regular out-of-bounds accesses.
+	 * 
+	 * @return The exception to throw.
+	 */
+	protected final RuntimeException accessFailure() {
+		if (this.address > this.addressLimit) {
+			return new IllegalStateException("The memory segment has been freed.");
+		} else {
+			return new IndexOutOfBoundsException();
+		}
+	}
 
 	// --------------------------------------------------------------------
 	//                            Random Access
@@ -171,11 +296,13 @@ public class MemorySegment
 	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger or equal to the size of
 	 *                                   the memory segment.
 	 */
+	@SuppressWarnings("restriction")
 	public final byte get(int index) {
-		if (index >= 0 && index < this.size) {
-			return this.memory[this.offset + index];
+		final long pos = this.address + index;
+		if (index >= 0 && pos < this.addressLimit) {
+			return UNSAFE.getByte(this.memory, pos);
 		} else {
-			throw new IndexOutOfBoundsException();
+			throw accessFailure();
 		}
 	}
 
@@ -189,12 +316,14 @@ public class MemorySegment
 	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger or equal to the size of
 	 *                                   the memory segment.
 	 */
+	@SuppressWarnings("restriction")
 	public final MemorySegment put(int index, byte b) {
-		if (index >= 0 && index < this.size) {
-			this.memory[this.offset + index] = b;
+		final long pos = this.address + index;
+		if (index >= 0 && pos < this.addressLimit) {
+			UNSAFE.putByte(this.memory, pos, b);
 			return this;
 		} else {
-			throw new IndexOutOfBoundsException();
+			throw accessFailure();
 		}
 	}
 
@@ -247,12 +376,14 @@ public class MemorySegment
 	 *                                   bytes exceed the amount of memory between the index and the memory
 	 *                                   segment's end.
 	 */
+	@SuppressWarnings("restriction")
 	public final MemorySegment get(int index, byte[] dst, int offset, int length) {
-		if (index >= 0 && index < this.size && index <= this.size - length && offset <= dst.length - length) {
-			System.arraycopy(this.memory, this.offset + index, dst, offset, length);
+		final long pos = this.address + index;
+		if (index >= 0 && length >= 0 && pos <= this.addressLimit - length && offset >= 0 && offset <= dst.length - length) {
+			UNSAFE.copyMemory(this.memory, pos, dst, BYTE_ARRAY_BASE_OFFSET + offset, length);
 			return this;
 		} else {
-			throw new IndexOutOfBoundsException();
+			throw accessFailure();
 		}
 	}
 
@@ -271,12 +402,14 @@ public class MemorySegment
 	 *                                   portion to copy exceed the amount of memory between the index and the memory
 	 *                                   segment's end.
 	 */
+	@SuppressWarnings("restriction")
 	public final MemorySegment put(int index, byte[] src, int offset, int length) {
-		if (index >= 0 && index < this.size && index <= this.size - length && offset <= src.length - length) {
-			System.arraycopy(src, offset, this.memory, this.offset + index, length);
+		final long pos = this.address + index;
+		if (index >= 0 && length >= 0 && pos <= this.addressLimit - length && offset >= 0 && offset <= src.length - length) {
+			UNSAFE.copyMemory(src, BYTE_ARRAY_BASE_OFFSET + offset, this.memory, pos, length);
 			return this;
 		} else {
-			throw new IndexOutOfBoundsException();
+			throw accessFailure();
 		}
 	}
 
@@ -293,10 +426,22 @@ public class MemorySegment
 	 */
 	public final MemorySegment get(DataOutput out, int offset, int length) throws IOException {
 		if (offset >= 0 && offset < this.size && length >= 0 && offset <= this.size - length) {
-			out.write(this.memory, this.offset + offset, length);
+			if (this.memory != null) {
+				out.write(this.memory, this.offset + offset, length);
+			} else {
+				// off-heap memory must go through an intermediate array
+				final byte[] chunk = new byte[Math.min(length, TRANSFER_CHUNK_SIZE)];
+				while (length > 0) {
+					final int toCopy = Math.min(length, chunk.length);
+					get(offset, chunk, 0, toCopy);
+					out.write(chunk, 0, toCopy);
+					offset += toCopy;
+					length -= toCopy;
+				}
+			}
 			return this;
 		} else {
-			throw new IndexOutOfBoundsException();
+			throw accessFailure();
 		}
 	}
 
@@ -314,10 +459,133 @@ public class MemorySegment
 	 */
 	public final MemorySegment put(DataInput in, int offset, int length) throws IOException {
 		if (offset >= 0 && offset < this.size && length >= 0 && offset <= this.size - length) {
-			in.readFully(this.memory, this.offset + offset, length);
+			if (this.memory != null) {
+				in.readFully(this.memory, this.offset + offset, length);
+			} else {
+				// off-heap memory must go through an intermediate array
+				final byte[] chunk = new byte[Math.min(length, TRANSFER_CHUNK_SIZE)];
+				while (length > 0) {
+					final int toCopy = Math.min(length, chunk.length);
+					in.readFully(chunk, 0, toCopy);
+					put(offset, chunk, 0, toCopy);
+					offset += toCopy;
+					length -= toCopy;
+				}
+			}
 			return this;
 		} else {
-			throw new IndexOutOfBoundsException();
+			throw accessFailure();
+		}
+	}
+	
+	/**
+	 * Bulk copy method. Copies the given number of bytes from this segment, starting at the given offset, to
+	 * the target segment, starting at the target offset. The segments may be of different memory types.
+	 * 
+	 * @param offset The position in this segment where copying starts.
+	 * @param target The segment to copy the bytes to.
+	 * @param targetOffset The position in the target segment where the bytes are put.
+	 * @param numBytes The number of bytes to copy.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if either of the regions exceeds its segment's bounds.
+	 */
+	@SuppressWarnings("restriction")
+	public final void copyTo(int offset, MemorySegment target, int targetOffset, int numBytes) {
+		final long thisPos = this.address + offset;
+		final long otherPos = target.address + targetOffset;
+		
+		if (offset >= 0 && targetOffset >= 0 && numBytes >= 0 && 
+				thisPos <= this.addressLimit - numBytes && otherPos <= target.addressLimit - numBytes)
+		{
+			UNSAFE.copyMemory(this.memory, thisPos, target.memory, otherPos, numBytes);
+		} else if (target.address > target.addressLimit) {
+			throw target.accessFailure();
+		} else {
+			throw accessFailure();
+		}
+	}
+	
+	/**
+	 * Compares two memory regions byte-wise, treating the bytes as unsigned values. The first region
+	 * is in this segment, the second region in the given segment. The regions are compared eight bytes
+	 * at a time, as long as enough bytes remain.
+	 * 
+	 * @param other The segment that holds the second region.
+	 * @param offset1 The start of the region in this segment.
+	 * @param offset2 The start of the region in the other segment.
+	 * @param len The number of bytes to compare.
+	 * @return A value smaller than zero, if the first region is smaller, zero if the regions are equal, and a
+	 *         value larger than zero, if the first region is larger.
+	 */
+	@SuppressWarnings("restriction")
+	public final int compare(MemorySegment other, int offset1, int offset2, int len) {
+		long pos1 = this.address + offset1;
+		long pos2 = other.address + offset2;
+		
+		if (offset1 >= 0 && offset2 >= 0 && len >= 0 &&
+				pos1 <= this.addressLimit - len && pos2 <= other.addressLimit - len)
+		{
+			while (len >= 8) {
+				long l1 = UNSAFE.getLong(this.memory, pos1);
+				long l2 = UNSAFE.getLong(other.memory, pos2);
+				
+				if (l1 != l2) {
+					if (LITTLE_ENDIAN) {
+						l1 = Long.reverseBytes(l1);
+						l2 = Long.reverseBytes(l2);
+					}
+					// unsigned comparison through flipping the sign bits
+					return (l1 ^ Long.MIN_VALUE) < (l2 ^ Long.MIN_VALUE) ? -1 : 1;
+				}
+				pos1 += 8;
+				pos2 += 8;
+				len -= 8;
+			}
+			
+			while (len > 0) {
+				final int b1 = UNSAFE.getByte(this.memory, pos1) & 0xff;
+				final int b2 = UNSAFE.getByte(other.memory, pos2) & 0xff;
+				final int cmp = b1 - b2;
+				if (cmp != 0) {
+					return cmp;
+				}
+				pos1++;
+				pos2++;
+				len--;
+			}
+			return 0;
+		} else if (other.address > other.addressLimit) {
+			throw other.accessFailure();
+		} else {
+			throw accessFailure();
+		}
+	}
+	
+	/**
+	 * Swaps two memory regions of the same length. The first region is in this segment, the second region
+	 * in the given segment. The regions must not overlap.
+	 * 
+	 * @param tempBuffer An auxiliary buffer that holds at least <code>len</code> bytes.
+	 * @param other The segment that holds the second region.
+	 * @param offset1 The start of the region in this segment.
+	 * @param offset2 The start of the region in the other segment.
+	 * @param len The number of bytes to swap.
+	 */
+	@SuppressWarnings("restriction")
+	public final void swapBytes(byte[] tempBuffer, MemorySegment other, int offset1, int offset2, int len) {
+		final long pos1 = this.address + offset1;
+		final long pos2 = other.address + offset2;
+		
+		if (offset1 >= 0 && offset2 >= 0 && len >= 0 && len <= tempBuffer.length &&
+				pos1 <= this.addressLimit - len && pos2 <= other.addressLimit - len)
+		{
+			UNSAFE.copyMemory(this.memory, pos1, tempBuffer, BYTE_ARRAY_BASE_OFFSET, len);
+			UNSAFE.copyMemory(other.memory, pos2, this.memory, pos1, len);
+			UNSAFE.copyMemory(tempBuffer, BYTE_ARRAY_BASE_OFFSET, other.memory, pos2, len);
+		} else if (other.address > other.addressLimit) {
+			throw other.accessFailure();
+		} else {
+			throw accessFailure();
 		}
 	}
 
@@ -332,11 +600,7 @@ public class MemorySegment
 	 *                                   size minus 1.
 	 */
 	public final boolean getBoolean(int index) {
-		if (index >= 0 && index < this.size) {
-			return this.memory[this.offset + index] != 0;
-		} else {
-			throw new IndexOutOfBoundsException();
-		}
+		return get(index) != 0;
 	}
 
 	/**
@@ -351,17 +615,12 @@ public class MemorySegment
 	 *                                   size minus 1.
 	 */
 	public final MemorySegment putBoolean(int index, boolean value) {
-		if (index >= 0 && index < this.size) {
-			this.memory[this.offset + index] = (byte) (value ? 1 : 0);
-			return this;
-		} else {
-			throw new IndexOutOfBoundsException();
-		}
+		return put(index, (byte) (value ? 1 : 0));
 	}
 
 	/**
 	 * Reads two memory at the given position, composing them into a char value
-	 * according to the current byte order.
+	 * in big-endian byte order.
 	 * 
 	 * @param position The position from which the memory will be read.
 	 * @return The char value at the given position.
@@ -369,17 +628,19 @@ public class MemorySegment
 	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger then the segment
 	 *                                   size minus 2.
 	 */
+	@SuppressWarnings("restriction")
 	public final char getChar(int index) {
-		if (index >= 0 && index < this.size - 1) {
-			return (char) ( ((this.memory[this.offset + index + 0] & 0xff) << 8) | 
-					         (this.memory[this.offset + index + 1] & 0xff) );
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 2) {
+			final char value = UNSAFE.getChar(this.memory, pos);
+			return LITTLE_ENDIAN ? Character.reverseBytes(value) : value;
 		} else {
-			throw new IndexOutOfBoundsException();
+			throw accessFailure();
 		}
 	}
 
 	/**
-	 * Writes two memory containing the given char value, in the current byte
+	 * Writes two memory containing the given char value, in big-endian byte
 	 * order, into this buffer at the given position.
 	 * 
 	 * @param position The position at which the memory will be written.
@@ -389,19 +650,20 @@ public class MemorySegment
 	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger then the segment
 	 *                                   size minus 2.
 	 */
+	@SuppressWarnings("restriction")
 	public final MemorySegment putChar(int index, char value) {
-		if (index >= 0 && index < this.size - 1) {
-			this.memory[this.offset + index + 0] = (byte) (value >> 8);
-			this.memory[this.offset + index + 1] = (byte) value;
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 2) {
+			UNSAFE.putChar(this.memory, pos, LITTLE_ENDIAN ? Character.reverseBytes(value) : value);
 			return this;
 		} else {
-			throw new IndexOutOfBoundsException();
+			throw accessFailure();
 		}
 	}
 
 	/**
 	 * Reads two memory at the given position, composing them into a short value
-	 * according to the current byte order.
+	 * in big-endian byte order.
 	 * 
 	 * @param position The position from which the memory will be read.
 	 * @return The short value at the given position.
@@ -409,18 +671,19 @@ public class MemorySegment
 	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger then the segment
 	 *                                   size minus 2.
 	 */
+	@SuppressWarnings("restriction")
 	public final short getShort(int index) {
-		if (index >= 0 && index < this.size - 1) {
-			return (short) (
-					((this.memory[this.offset + index + 0] & 0xff) << 8) |
-					((this.memory[this.offset + index + 1] & 0xff)) );
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 2) {
+			final short value = UNSAFE.getShort(this.memory, pos);
+			return LITTLE_ENDIAN ? Short.reverseBytes(value) : value;
 		} else {
-			throw new IndexOutOfBoundsException();
+			throw accessFailure();
 		}
 	}
 
 	/**
-	 * Writes two memory containing the given short value, in the current byte
+	 * Writes two memory containing the given short value, in big-endian byte
 	 * order, into this buffer at the given position.
 	 * 
 	 * @param position The position at which the memory will be written.
@@ -430,19 +693,20 @@ public class MemorySegment
 	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger then the segment
 	 *                                   size minus 2.
 	 */
+	@SuppressWarnings("restriction")
 	public final MemorySegment putShort(int index, short value) {
-		if (index >= 0 && index < this.size - 1) {
-			this.memory[this.offset + index + 0] = (byte) (value >> 8);
-			this.memory[this.offset + index + 1] = (byte) value;
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 2) {
+			UNSAFE.putShort(this.memory, pos, LITTLE_ENDIAN ? Short.reverseBytes(value) : value);
 			return this;
 		} else {
-			throw new IndexOutOfBoundsException();
+			throw accessFailure();
 		}
 	}
 	
 	/**
 	 * Reads four memory at the given position, composing them into a int value
-	 * according to the current byte order.
+	 * in big-endian byte order.
 	 * 
 	 * @param position The position from which the memory will be read.
 	 * @return The int value at the given position.
@@ -451,18 +715,12 @@ public class MemorySegment
 	 *                                   size minus 4.
 	 */
 	public final int getInt(int index) {
-		if (index >= 0 && index < this.size - 3) {
-			return ((this.memory[this.offset + index + 0] & 0xff) << 24)
-				| ((this.memory[this.offset + index + 1] & 0xff) << 16)
-				| ((this.memory[this.offset + index + 2] & 0xff) << 8)
-				| ((this.memory[this.offset + index + 3] & 0xff) << 0);
-		} else {
-			throw new IndexOutOfBoundsException();
-		}
+		final int value = getIntNativeEndian(index);
+		return LITTLE_ENDIAN ? Integer.reverseBytes(value) : value;
 	}
 
 	/**
-	 * Writes four memory containing the given int value, in the current byte
+	 * Writes four memory containing the given int value, in big-endian byte
 	 * order, into this buffer at the given position.
 	 * 
 	 * @param position The position at which the memory will be written.
@@ -473,20 +731,41 @@ public class MemorySegment
 	 *                                   size minus 4.
 	 */
 	public final MemorySegment putInt(int index, int value) {
-		if (index >= 0 && index < this.size - 3) {
-			this.memory[this.offset + index + 0] = (byte) (value >> 24);
-			this.memory[this.offset + index + 1] = (byte) (value >> 16);
-			this.memory[this.offset + index + 2] = (byte) (value >> 8);
-			this.memory[this.offset + index + 3] = (byte) value;
+		return putIntNativeEndian(index, LITTLE_ENDIAN ? Integer.reverseBytes(value) : value);
+	}
+	
+	/**
+	 * Reads four memory at the given position, composing them into a int value in the native byte
+	 * order of the machine.
+	 */
+	@SuppressWarnings("restriction")
+	private int getIntNativeEndian(int index) {
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 4) {
+			return UNSAFE.getInt(this.memory, pos);
+		} else {
+			throw accessFailure();
+		}
+	}
+	
+	/**
+	 * Writes four memory containing the given int value, in the native byte order of the machine,
+	 * into this buffer at the given position.
+	 */
+	@SuppressWarnings("restriction")
+	private MemorySegment putIntNativeEndian(int index, int value) {
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 4) {
+			UNSAFE.putInt(this.memory, pos, value);
 			return this;
 		} else {
-			throw new IndexOutOfBoundsException();
+			throw accessFailure();
 		}
 	}
 	
 	/**
 	 * Reads eight memory at the given position, composing them into a long
-	 * value according to the current byte order.
+	 * value in big-endian byte order.
 	 * 
 	 * @param position The position from which the memory will be read.
 	 * @return The long value at the given position.
@@ -495,22 +774,12 @@ public class MemorySegment
 	 *                                   size minus 8.
 	 */
 	public final long getLong(int index) {
-		if (index >= 0 && index < this.size - 7) {
-			return (((long) this.memory[this.offset + index + 0] & 0xff) << 56)
-				| (((long) this.memory[this.offset + index + 1] & 0xff) << 48)
-				| (((long) this.memory[this.offset + index + 2] & 0xff) << 40)
-				| (((long) this.memory[this.offset + index + 3] & 0xff) << 32)
-				| (((long) this.memory[this.offset + index + 4] & 0xff) << 24)
-				| (((long) this.memory[this.offset + index + 5] & 0xff) << 16)
-				| (((long) this.memory[this.offset + index + 6] & 0xff) << 8)
-				| (((long) this.memory[this.offset + index + 7] & 0xff) << 0);
-		} else {
-			throw new IndexOutOfBoundsException();
-		}
+		final long value = getLongNativeEndian(index);
+		return LITTLE_ENDIAN ? Long.reverseBytes(value) : value;
 	}
 
 	/**
-	 * Writes eight memory containing the given long value, in the current byte
+	 * Writes eight memory containing the given long value, in big-endian byte
 	 * order, into this buffer at the given position.
 	 * 
 	 * @param position The position at which the memory will be written.
@@ -521,24 +790,56 @@ public class MemorySegment
 	 *                                   size minus 8.
 	 */
 	public final MemorySegment putLong(int index, long value) {
-		if (index >= 0 && index < this.size - 7) {
-			this.memory[this.offset + index + 0] = (byte) (value >> 56);
-			this.memory[this.offset + index + 1] = (byte) (value >> 48);
-			this.memory[this.offset + index + 2] = (byte) (value >> 40);
-			this.memory[this.offset + index + 3] = (byte) (value >> 32);
-			this.memory[this.offset + index + 4] = (byte) (value >> 24);
-			this.memory[this.offset + index + 5] = (byte) (value >> 16);
-			this.memory[this.offset + index + 6] = (byte) (value >> 8);
-			this.memory[this.offset + index + 7] = (byte) value;
+		return putLongNativeEndian(index, LITTLE_ENDIAN ? Long.reverseBytes(value) : value);
+	}
+	
+	/**
+	 * Reads eight memory at the given position, composing them into a long value in the native byte
+	 * order of the machine. This method is the fastest way to read a long, but the result depends on the
+	 * platform. It should be used only for data that never leaves the process, such as the record pointers
+	 * in the sort index of the {@code NormalizedKeySorter}.
+	 * 
+	 * @param position The position from which the memory will be read.
+	 * @return The long value at the given position.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger then the segment
+	 *                                   size minus 8.
+	 */
+	@SuppressWarnings("restriction")
+	public final long getLongNativeEndian(int index) {
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 8) {
+			return UNSAFE.getLong(this.memory, pos);
+		} else {
+			throw accessFailure();
+		}
+	}
+	
+	/**
+	 * Writes eight memory containing the given long value, in the native byte order of the machine,
+	 * into this buffer at the given position.
+	 * 
+	 * @param position The position at which the memory will be written.
+	 * @param value The long value to be written.
+	 * @return This view itself.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger then the segment
+	 *                                   size minus 8.
+	 */
+	@SuppressWarnings("restriction")
+	public final MemorySegment putLongNativeEndian(int index, long value) {
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 8) {
+			UNSAFE.putLong(this.memory, pos, value);
 			return this;
 		} else {
-			throw new IndexOutOfBoundsException();
+			throw accessFailure();
 		}
 	}
 	
 	/**
 	 * Reads four memory at the given position, composing them into a float
-	 * value according to the current byte order.
+	 * value in big-endian byte order.
 	 * 
 	 * @param position The position from which the memory will be read.
 	 * @return The float value at the given position.
@@ -551,7 +852,7 @@ public class MemorySegment
 	}
 
 	/**
-	 * Writes four memory containing the given float value, in the current byte
+	 * Writes four memory containing the given float value, in big-endian byte
 	 * order, into this buffer at the given position.
 	 * 
 	 * @param position The position at which the memory will be written.
@@ -562,13 +863,12 @@ public class MemorySegment
 	 *                                   size minus 4.
 	 */
 	public final MemorySegment putFloat(int index, float value) {
-		putLong(index, Float.floatToIntBits(value));
-		return this;
+		return putInt(index, Float.floatToRawIntBits(value));
 	}
 	
 	/**
 	 * Reads eight memory at the given position, composing them into a double
-	 * value according to the current byte order.
+	 * value in big-endian byte order.
 	 * 
 	 * @param position The position from which the memory will be read.
 	 * @return The double value at the given position.
@@ -581,7 +881,7 @@ public class MemorySegment
 	}
 
 	/**
-	 * Writes eight memory containing the given double value, in the current
+	 * Writes eight memory containing the given double value, in big-endian
 	 * byte order, into this buffer at the given position.
 	 * 
 	 * @param position The position at which the memory will be written.
@@ -592,7 +892,50 @@ public class MemorySegment
 	 *                                   size minus 8.
 	 */
 	public final MemorySegment putDouble(int index, double value) {
-		putLong(index, Double.doubleToLongBits(value));
-		return this;
+		return putLong(index, Double.doubleToRawLongBits(value));
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	//                                   Utilities
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * The maximal size of the intermediate arrays used to transfer off-heap memory from and to streams.
+	 */
+	private static final int TRANSFER_CHUNK_SIZE = 4096;
+	
+	/**
+	 * Gets the memory address of the first byte of the given direct byte buffer.
+	 * 
+	 * @param buffer The direct byte buffer.
+	 * @return The memory address of the buffer's first byte.
+	 */
+	@SuppressWarnings("restriction")
+	private static long getBufferAddress(ByteBuffer buffer) {
+		final long address = UNSAFE.getLong(buffer, BUFFER_ADDRESS_FIELD_OFFSET);
+		if (address <= 0) {
+			throw new IllegalArgumentException("The given buffer has no valid memory address.");
+		}
+		return address;
+	}
+	
+	@SuppressWarnings("restriction")
+	private static sun.misc.Unsafe getUnsafe() {
+		try {
+			final Field unsafeField = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+			unsafeField.setAccessible(true);
+			return (sun.misc.Unsafe) unsafeField.get(null);
+		} catch (Exception e) {
+			throw new RuntimeException("Could not access the memory access handle (sun.misc.Unsafe).", e);
+		}
+	}
+	
+	@SuppressWarnings("restriction")
+	private static long getBufferAddressFieldOffset() {
+		try {
+			return UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+		} catch (Exception e) {
+			throw new RuntimeException("Could not determine the memory address field of direct byte buffers.", e);
+		}
 	}
 }
@@ -0,0 +1,476 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.io.compression.library.lz4;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * This class implements the LZ4 block format in plain Java. It operates on heap and direct byte buffers alike and uses
+ * absolute accesses only, so the positions and limits of the buffers are never touched.
+ * <p>
+ * The compressed data consists of a sequence of tokens. Each token announces a run of literals which is copied
+ * verbatim and a match which repeats data from at most 64 KB back in the uncompressed stream.
+ */
+final class Lz4Codec {
+
+	/**
+	 * The minimum length of a match.
+	 */
+	private static final int MIN_MATCH = 4;
+
+	/**
+	 * The number of bytes at the end of a block which are always encoded as literals.
+	 */
+	private static final int LAST_LITERALS = 5;
+
+	/**
+	 * No match may start within this number of bytes before the end of a block.
+	 */
+	private static final int MF_LIMIT = 12;
+
+	/**
+	 * Blocks shorter than this are stored as literals only.
+	 */
+	private static final int MIN_LENGTH = MF_LIMIT + 1;
+
+	/**
+	 * The maximum distance between a match and its reference.
+	 */
+	private static final int MAX_DISTANCE = (1 << 16) - 1;
+
+	/**
+	 * The binary logarithm of the number of hash table entries.
+	 */
+	static final int HASH_LOG = 12;
+
+	/**
+	 * Controls how quickly the match search accelerates in incompressible data.
+	 */
+	private static final int SKIP_STRENGTH = 6;
+
+	/**
+	 * The maximum value of the 4 bit length fields in a token.
+	 */
+	private static final int RUN_MASK = 0x0f;
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private Lz4Codec() {
+	}
+
+	/**
+	 * Returns the maximum number of bytes the compressed representation of the given number of bytes may occupy.
+	 * 
+	 * @param length
+	 *        the number of uncompressed bytes
+	 * @return the maximum number of compressed bytes
+	 */
+	static int maxCompressedLength(final int length) {
+
+		return length + length / 255 + 16;
+	}
+
+	/**
+	 * Returns the maximum number of uncompressed bytes whose compressed representation is guaranteed to fit into the
+	 * given number of bytes.
+	 * 
+	 * @param compressedLength
+	 *        the number of bytes available for the compressed representation
+	 * @return the maximum number of uncompressed bytes
+	 */
+	static int maxUncompressedLength(final int compressedLength) {
+
+		return (int) ((compressedLength - 16) * 255L / 256L);
+	}
+
+	/**
+	 * Compresses the given range of the source buffer into the destination buffer.
+	 * 
+	 * @param src
+	 *        the buffer holding the uncompressed data
+	 * @param srcOff
+	 *        the offset of the uncompressed data in the source buffer
+	 * @param srcLen
+	 *        the number of bytes to compress
+	 * @param dest
+	 *        the buffer to write the compressed data to
+	 * @param destOff
+	 *        the offset in the destination buffer to start writing at
+	 * @param destEnd
+	 *        the offset in the destination buffer the compressed data must not reach
+	 * @param hashTable
+	 *        a scratch table with <code>1 &lt;&lt; HASH_LOG</code> entries
+	 * @return the number of compressed bytes or <code>-1</code> if the compressed data does not fit into the
+	 *         destination buffer
+	 */
+	static int compress(final ByteBuffer src, final int srcOff, final int srcLen, final ByteBuffer dest,
+			final int destOff, final int destEnd, final int[] hashTable) {
+
+		final int srcEnd = srcOff + srcLen;
+		final boolean bigEndian = (src.order() == ByteOrder.BIG_ENDIAN);
+
+		int sOff = srcOff;
+		int dOff = destOff;
+		int anchor = srcOff;
+
+		if (srcLen >= MIN_LENGTH) {
+
+			Arrays.fill(hashTable, -1);
+
+			final int mfLimit = srcEnd - MF_LIMIT;
+			final int matchLimit = srcEnd - LAST_LITERALS;
+
+			hashTable[hash(src.getInt(sOff))] = sOff;
+			++sOff;
+
+			outer: while (true) {
+
+				// Look for the next match, skipping faster the longer no match is found
+				int searchMatchNb = 1 << SKIP_STRENGTH;
+				int ref;
+				while (true) {
+
+					if (sOff > mfLimit) {
+						break outer;
+					}
+
+					final int sequence = src.getInt(sOff);
+					final int h = hash(sequence);
+					ref = hashTable[h];
+					hashTable[h] = sOff;
+
+					if (ref >= 0 && sOff - ref <= MAX_DISTANCE && src.getInt(ref) == sequence) {
+						break;
+					}
+
+					sOff += searchMatchNb++ >>> SKIP_STRENGTH;
+				}
+
+				// Extend the match backwards
+				while (sOff > anchor && ref > srcOff && src.get(sOff - 1) == src.get(ref - 1)) {
+					--sOff;
+					--ref;
+				}
+
+				// Extend the match forwards
+				final int matchLength = MIN_MATCH
+					+ commonBytes(src, ref + MIN_MATCH, sOff + MIN_MATCH, matchLimit, bigEndian);
+
+				dOff = writeSequence(src, anchor, sOff - anchor, sOff - ref, matchLength, dest, dOff, destEnd);
+				if (dOff < 0) {
+					return -1;
+				}
+
+				sOff += matchLength;
+				anchor = sOff;
+
+				if (sOff > mfLimit) {
+					break;
+				}
+
+				// Remember a position inside the match to find repetitions of it
+				hashTable[hash(src.getInt(sOff - 2))] = sOff - 2;
+			}
+		}
+
+		dOff = writeLastLiterals(src, anchor, srcEnd - anchor, dest, dOff, destEnd);
+		if (dOff < 0) {
+			return -1;
+		}
+
+		return dOff - destOff;
+	}
+
+	/**
+	 * Decompresses the given range of the source buffer into the destination buffer.
+	 * 
+	 * @param src
+	 *        the buffer holding the compressed data
+	 * @param srcOff
+	 *        the offset of the compressed data in the source buffer
+	 * @param srcEnd
+	 *        the offset in the source buffer at which the compressed data ends
+	 * @param dest
+	 *        the buffer to write the uncompressed data to
+	 * @param destOff
+	 *        the offset in the destination buffer to start writing at
+	 * @param destEnd
+	 *        the offset in the destination buffer the uncompressed data must not reach
+	 * @return the number of uncompressed bytes or <code>-1</code> if the compressed data is malformed or does not fit
+	 *         into the destination buffer
+	 */
+	static int decompress(final ByteBuffer src, final int srcOff, final int srcEnd, final ByteBuffer dest,
+			final int destOff, final int destEnd) {
+
+		int sOff = srcOff;
+		int dOff = destOff;
+
+		while (sOff < srcEnd) {
+
+			final int token = src.get(sOff++) & 0xff;
+
+			// Copy the literals
+			int literalLength = token >>> 4;
+			if (literalLength == RUN_MASK) {
+				int b;
+				do {
+					if (sOff >= srcEnd) {
+						return -1;
+					}
+					b = src.get(sOff++) & 0xff;
+					literalLength += b;
+				} while (b == 255);
+			}
+
+			if (literalLength > srcEnd - sOff || literalLength > destEnd - dOff) {
+				return -1;
+			}
+
+			copy(src, sOff, dest, dOff, literalLength);
+			sOff += literalLength;
+			dOff += literalLength;
+
+			// The last sequence consists of literals only
+			if (sOff == srcEnd) {
+				break;
+			}
+
+			if (sOff + 2 > srcEnd) {
+				return -1;
+			}
+
+			final int offset = (src.get(sOff) & 0xff) | ((src.get(sOff + 1) & 0xff) << 8);
+			sOff += 2;
+			if (offset == 0 || offset > dOff - destOff) {
+				return -1;
+			}
+
+			int matchLength = token & RUN_MASK;
+			if (matchLength == RUN_MASK) {
+				int b;
+				do {
+					if (sOff >= srcEnd) {
+						return -1;
+					}
+					b = src.get(sOff++) & 0xff;
+					matchLength += b;
+				} while (b == 255);
+			}
+			matchLength += MIN_MATCH;
+
+			if (matchLength > destEnd - dOff) {
+				return -1;
+			}
+
+			copyMatch(dest, dOff - offset, dOff, matchLength);
+			dOff += matchLength;
+		}
+
+		return dOff - destOff;
+	}
+
+	/**
+	 * Computes the hash table index of the given four byte sequence.
+	 * 
+	 * @param sequence
+	 *        the four byte sequence
+	 * @return the hash table index of the sequence
+	 */
+	private static int hash(final int sequence) {
+
+		return (sequence * -1640531535) >>> (32 - HASH_LOG);
+	}
+
+	/**
+	 * Counts the number of equal bytes at the two given offsets, comparing eight bytes at a time where possible.
+	 * 
+	 * @param buf
+	 *        the buffer to compare the bytes in
+	 * @param ref
+	 *        the offset of the earlier occurrence
+	 * @param off
+	 *        the offset of the later occurrence
+	 * @param limit
+	 *        the offset the later occurrence must not reach
+	 * @param bigEndian
+	 *        <code>true</code> if the buffer uses big endian byte order
+	 * @return the number of equal bytes
+	 */
+	private static int commonBytes(final ByteBuffer buf, int ref, final int off, final int limit,
+			final boolean bigEndian) {
+
+		int o = off;
+
+		while (o <= limit - 8) {
+
+			final long diff = buf.getLong(ref) ^ buf.getLong(o);
+			if (diff != 0L) {
+				o += (bigEndian ? Long.numberOfLeadingZeros(diff) : Long.numberOfTrailingZeros(diff)) >>> 3;
+				return o - off;
+			}
+
+			ref += 8;
+			o += 8;
+		}
+
+		while (o < limit && buf.get(ref) == buf.get(o)) {
+			++ref;
+			++o;
+		}
+
+		return o - off;
+	}
+
+	/**
+	 * Writes a length which exceeds the token's length field as a run of extension bytes.
+	 * 
+	 * @param dest
+	 *        the buffer to write to
+	 * @param dOff
+	 *        the offset to write at
+	 * @param length
+	 *        the remaining length after subtracting the maximum value of the token's field
+	 * @return the offset after the written bytes
+	 */
+	private static int writeLength(final ByteBuffer dest, int dOff, int length) {
+
+		while (length >= 255) {
+			dest.put(dOff++, (byte) 255);
+			length -= 255;
+		}
+		dest.put(dOff++, (byte) length);
+
+		return dOff;
+	}
+
+	/**
+	 * Writes a sequence of literals followed by a match.
+	 * 
+	 * @return the offset after the sequence or <code>-1</code> if the sequence does not fit into the destination
+	 *         buffer
+	 */
+	private static int writeSequence(final ByteBuffer src, final int literalOff, final int literalLength,
+			final int offset, final int matchLength, final ByteBuffer dest, int dOff, final int destEnd) {
+
+		final int encodedMatchLength = matchLength - MIN_MATCH;
+		final int required = 1 + literalLength + literalLength / 255 + 1 + 2 + encodedMatchLength / 255 + 1;
+		if (dOff + required > destEnd) {
+			return -1;
+		}
+
+		final int tokenOff = dOff++;
+		int token;
+
+		if (literalLength >= RUN_MASK) {
+			token = RUN_MASK << 4;
+			dOff = writeLength(dest, dOff, literalLength - RUN_MASK);
+		} else {
+			token = literalLength << 4;
+		}
+
+		copy(src, literalOff, dest, dOff, literalLength);
+		dOff += literalLength;
+
+		dest.put(dOff++, (byte) offset);
+		dest.put(dOff++, (byte) (offset >>> 8));
+
+		if (encodedMatchLength >= RUN_MASK) {
+			token |= RUN_MASK;
+			dOff = writeLength(dest, dOff, encodedMatchLength - RUN_MASK);
+		} else {
+			token |= encodedMatchLength;
+		}
+
+		dest.put(tokenOff, (byte) token);
+
+		return dOff;
+	}
+
+	/**
+	 * Writes the final run of literals of a block.
+	 * 
+	 * @return the offset after the literals or <code>-1</code> if the literals do not fit into the destination buffer
+	 */
+	private static int writeLastLiterals(final ByteBuffer src, final int literalOff, final int literalLength,
+			final ByteBuffer dest, int dOff, final int destEnd) {
+
+		final int required = 1 + literalLength + literalLength / 255 + 1;
+		if (dOff + required > destEnd) {
+			return -1;
+		}
+
+		if (literalLength >= RUN_MASK) {
+			dest.put(dOff++, (byte) (RUN_MASK << 4));
+			dOff = writeLength(dest, dOff, literalLength - RUN_MASK);
+		} else {
+			dest.put(dOff++, (byte) (literalLength << 4));
+		}
+
+		copy(src, literalOff, dest, dOff, literalLength);
+
+		return dOff + literalLength;
+	}
+
+	/**
+	 * Copies the given number of bytes between two non-overlapping ranges.
+	 */
+	private static void copy(final ByteBuffer src, int sOff, final ByteBuffer dest, int dOff, final int length) {
+
+		if (src.hasArray() && dest.hasArray()) {
+			System.arraycopy(src.array(), src.arrayOffset() + sOff, dest.array(), dest.arrayOffset() + dOff, length);
+			return;
+		}
+
+		final int end = sOff + length;
+
+		// Eight byte copies would swap the bytes if the buffers' byte orders differed
+		if (src.order() == dest.order()) {
+			while (sOff <= end - 8) {
+				dest.putLong(dOff, src.getLong(sOff));
+				sOff += 8;
+				dOff += 8;
+			}
+		}
+
+		while (sOff < end) {
+			dest.put(dOff++, src.get(sOff++));
+		}
+	}
+
+	/**
+	 * Copies a match within the destination buffer. The ranges may overlap, in which case the bytes written first
+	 * are repeated.
+	 */
+	private static void copyMatch(final ByteBuffer buf, int ref, int dOff, final int length) {
+
+		final int end = dOff + length;
+
+		if (dOff - ref >= 8) {
+			while (dOff <= end - 8) {
+				buf.putLong(dOff, buf.getLong(ref));
+				ref += 8;
+				dOff += 8;
+			}
+		}
+
+		while (dOff < end) {
+			buf.put(dOff++, buf.get(ref++));
+		}
+	}
+}
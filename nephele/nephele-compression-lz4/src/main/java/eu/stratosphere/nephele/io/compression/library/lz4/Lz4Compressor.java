@@ -0,0 +1,75 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.io.compression.library.lz4;
+
+import eu.stratosphere.nephele.io.compression.AbstractCompressor;
+import eu.stratosphere.nephele.io.compression.CompressionBufferProvider;
+
+/**
+ * This class provides an interface for compressing byte-buffers with the pure Java implementation of the LZ4 block
+ * format.
+ * <p>
+ * http://code.google.com/p/lz4/
+ */
+public class Lz4Compressor extends AbstractCompressor {
+
+	/**
+	 * The hash table used to find matches, reused across buffers.
+	 */
+	private final int[] hashTable = new int[1 << Lz4Codec.HASH_LOG];
+
+	Lz4Compressor(final CompressionBufferProvider bufferProvider) {
+		super(bufferProvider);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int compressBytesDirect(final int offset) {
+
+		final int numberOfUncompressedBytes = this.uncompressedDataBufferLength;
+
+		// The compressed data buffer has been cleared, so its limit reflects the entire buffer
+		final int compressedDataBufferEnd = this.compressedDataBuffer.limit();
+
+		final int numberOfCompressedBytes = Lz4Codec.compress(this.uncompressedDataBuffer, 0,
+			numberOfUncompressedBytes, this.compressedDataBuffer, offset + SIZE_LENGTH, compressedDataBufferEnd,
+			this.hashTable);
+
+		if (numberOfCompressedBytes < 0) {
+			throw new IllegalStateException("LZ4-Compressor: " + numberOfUncompressedBytes
+				+ " bytes do not fit into compressed buffer of " + compressedDataBufferEnd + " bytes");
+		}
+
+		// Write length of compressed and uncompressed data to the compressed buffer
+		intToBuffer(numberOfCompressedBytes, offset);
+		intToBuffer(numberOfUncompressedBytes, offset + 4);
+
+		// LZ4 compresses all input data
+		this.uncompressedDataBufferLength = 0;
+
+		return numberOfCompressedBytes;
+	}
+
+	private void intToBuffer(final int value, final int offset) {
+
+		this.compressedDataBuffer.put(offset, (byte) (value >>> 24));
+		this.compressedDataBuffer.put(offset + 1, (byte) (value >>> 16));
+		this.compressedDataBuffer.put(offset + 2, (byte) (value >>> 8));
+		this.compressedDataBuffer.put(offset + 3, (byte) value);
+	}
+}
@@ -0,0 +1,56 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.io.compression.library.lz4;
+
+import eu.stratosphere.nephele.io.compression.AbstractDecompressor;
+import eu.stratosphere.nephele.io.compression.CompressionBufferProvider;
+
+/**
+ * This class provides an interface for decompressing byte-buffers with the pure Java implementation of the LZ4 block
+ * format.
+ * <p>
+ * http://code.google.com/p/lz4/
+ */
+public class Lz4Decompressor extends AbstractDecompressor {
+
+	Lz4Decompressor(final CompressionBufferProvider bufferProvider) {
+		super(bufferProvider);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int decompressBytesDirect(final int offset) {
+
+		// The header written by the compressor precedes the compressed data
+		final int numberOfCompressedBytes = bufferToInt(this.compressedDataBuffer, offset - SIZE_LENGTH);
+		final int expectedNumberOfUncompressedBytes = bufferToInt(this.compressedDataBuffer, offset - SIZE_LENGTH + 4);
+		if (numberOfCompressedBytes < 0 || offset + numberOfCompressedBytes > this.compressedDataBufferLength) {
+			return -1;
+		}
+
+		final int numberOfUncompressedBytes = Lz4Codec.decompress(this.compressedDataBuffer, offset, offset
+			+ numberOfCompressedBytes, this.uncompressedDataBuffer, 0, this.uncompressedDataBuffer.limit());
+
+		// Treat a length mismatch like corrupted data
+		if (numberOfUncompressedBytes != expectedNumberOfUncompressedBytes) {
+			return -1;
+		}
+
+		return numberOfUncompressedBytes;
+	}
+}
@@ -0,0 +1,76 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.io.compression.library.lz4;
+
+import eu.stratosphere.nephele.io.compression.AbstractCompressor;
+import eu.stratosphere.nephele.io.compression.CompressionBufferProvider;
+import eu.stratosphere.nephele.io.compression.CompressionException;
+import eu.stratosphere.nephele.io.compression.CompressionLibrary;
+import eu.stratosphere.nephele.io.compression.Compressor;
+import eu.stratosphere.nephele.io.compression.Decompressor;
+
+/**
+ * This class provides a compression library based on a pure Java implementation of the LZ4 block format. Unlike the
+ * other compression libraries it does not require any native code and can therefore be used on every host.
+ */
+public class Lz4Library implements CompressionLibrary {
+
+	/**
+	 * Constructs a new LZ4 library.
+	 * 
+	 * @param nativeLibraryDir
+	 *        the directory containing the native libraries, ignored by this library
+	 */
+	public Lz4Library(final String nativeLibraryDir) {
+		// Nothing to load
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getUncompressedBufferSize(final int compressedBufferSize) {
+
+		return Lz4Codec.maxUncompressedLength(compressedBufferSize - AbstractCompressor.SIZE_LENGTH);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getLibraryName() {
+		return "LZ4";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Compressor createNewCompressor(final CompressionBufferProvider bufferProvider) throws CompressionException {
+
+		return new Lz4Compressor(bufferProvider);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Decompressor createNewDecompressor(final CompressionBufferProvider bufferProvider)
+			throws CompressionException {
+
+		return new Lz4Decompressor(bufferProvider);
+	}
+}
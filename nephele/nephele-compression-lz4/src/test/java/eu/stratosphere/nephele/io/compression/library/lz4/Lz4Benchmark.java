@@ -0,0 +1,148 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.io.compression.library.lz4;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.compression.CompressionBufferProvider;
+import eu.stratosphere.nephele.io.compression.CompressionLibrary;
+import eu.stratosphere.nephele.io.compression.Compressor;
+import eu.stratosphere.nephele.io.compression.Decompressor;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.LocalBufferPool;
+
+/**
+ * This benchmark compares the compression and decompression throughput as well as the compression ratio of the pure
+ * Java LZ4 library with the snappy library. The snappy library is only included if its native code can be loaded
+ * from the directory given by the system property <code>nephele.benchmark.nativeDir</code>.
+ */
+public class Lz4Benchmark {
+
+	/**
+	 * The name of the system property pointing to the directory containing the native libraries.
+	 */
+	private static final String NATIVE_DIR_PROPERTY = "nephele.benchmark.nativeDir";
+
+	/**
+	 * The class name of the snappy library.
+	 */
+	private static final String SNAPPY_LIBRARY_CLASS = "eu.stratosphere.nephele.io.compression.library.snappy.SnappyLibrary";
+
+	/**
+	 * The number of buffers compressed and decompressed in each round.
+	 */
+	private static final int NUMBER_OF_BUFFERS = 10000;
+
+	/**
+	 * The number of rounds per library and data set, the first one is used for warming up.
+	 */
+	private static final int NUMBER_OF_ROUNDS = 4;
+
+	public static void main(final String[] args) throws Exception {
+
+		final Lz4Benchmark benchmark = new Lz4Benchmark();
+
+		benchmark.run(new Lz4Library(null));
+
+		final String nativeDir = System.getProperty(NATIVE_DIR_PROPERTY);
+		if (nativeDir == null) {
+			System.out.println("Skipping snappy, property " + NATIVE_DIR_PROPERTY + " is not set");
+			return;
+		}
+
+		final CompressionLibrary snappyLibrary;
+		try {
+			snappyLibrary = (CompressionLibrary) Class.forName(SNAPPY_LIBRARY_CLASS).getConstructor(String.class)
+				.newInstance(nativeDir);
+		} catch (Throwable t) {
+			System.out.println("Skipping snappy, library cannot be loaded: " + t);
+			return;
+		}
+
+		benchmark.run(snappyLibrary);
+	}
+
+	private void run(final CompressionLibrary library) throws Exception {
+
+		// Buffers travel between the compressor and the decompressor, so all of them are taken from the same pool
+		final LocalBufferPool bufferPool = new LocalBufferPool(4, false);
+		final CompressionBufferProvider senderProvider = new CompressionBufferProvider(bufferPool, false);
+		final CompressionBufferProvider receiverProvider = new CompressionBufferProvider(bufferPool, false);
+		final Compressor compressor = library.createNewCompressor(senderProvider);
+		final Decompressor decompressor = library.createNewDecompressor(receiverProvider);
+
+		try {
+			final int bufferSize = library.getUncompressedBufferSize(senderProvider.getMaximumBufferSize());
+
+			final byte[] random = new byte[bufferSize];
+			new Random(42L).nextBytes(random);
+
+			runDataSet(library, "records", Lz4CodecTest.createCompressibleData(bufferSize), bufferPool, compressor,
+				decompressor);
+			runDataSet(library, "random", random, bufferPool, compressor, decompressor);
+
+		} finally {
+			compressor.shutdown();
+			decompressor.shutdown();
+			bufferPool.destroy();
+		}
+	}
+
+	private void runDataSet(final CompressionLibrary library, final String dataSetName, final byte[] data,
+			final LocalBufferPool bufferPool, final Compressor compressor, final Decompressor decompressor)
+			throws Exception {
+
+		final ByteBuffer source = ByteBuffer.wrap(data);
+
+		for (int round = 0; round < NUMBER_OF_ROUNDS; ++round) {
+
+			long compressionTime = 0L;
+			long decompressionTime = 0L;
+			long compressedBytes = 0L;
+
+			for (int i = 0; i < NUMBER_OF_BUFFERS; ++i) {
+
+				final Buffer uncompressedBuffer = bufferPool.requestEmptyBuffer(data.length);
+				source.clear();
+				uncompressedBuffer.write(source);
+
+				long start = System.nanoTime();
+				final Buffer compressedBuffer = compressor.compress(uncompressedBuffer);
+				compressionTime += System.nanoTime() - start;
+
+				compressedBuffer.finishWritePhase();
+				compressedBytes += compressedBuffer.size();
+
+				start = System.nanoTime();
+				final Buffer decompressedBuffer = decompressor.decompress(compressedBuffer);
+				decompressionTime += System.nanoTime() - start;
+
+				decompressedBuffer.recycleBuffer();
+			}
+
+			if (round == 0) {
+				continue;
+			}
+
+			final double totalBytes = (double) NUMBER_OF_BUFFERS * data.length;
+			final double megaBytes = totalBytes / (1024.0 * 1024.0);
+			System.out.println(String.format("%-6s %-8s round %d: compression %8.1f MB/s, decompression %8.1f MB/s, "
+				+ "ratio %.3f", library.getLibraryName(), dataSetName, round, megaBytes * 1e9 / compressionTime,
+				megaBytes * 1e9 / decompressionTime, compressedBytes / totalBytes));
+		}
+	}
+}
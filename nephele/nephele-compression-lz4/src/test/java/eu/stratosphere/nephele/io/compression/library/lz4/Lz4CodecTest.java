@@ -0,0 +1,229 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.io.compression.library.lz4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.compression.CompressionBufferProvider;
+import eu.stratosphere.nephele.io.compression.CompressionException;
+import eu.stratosphere.nephele.io.compression.Compressor;
+import eu.stratosphere.nephele.io.compression.Decompressor;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.LocalBufferPool;
+
+/**
+ * This class contains tests for the pure Java implementation of the LZ4 block format.
+ */
+public class Lz4CodecTest {
+
+	/**
+	 * The size of the buffers used throughout the tests.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Tests the compression and decompression of highly compressible data on heap buffers.
+	 */
+	@Test
+	public void testCompressibleDataOnHeapBuffers() {
+
+		final byte[] data = createCompressibleData(BUFFER_SIZE);
+		final int compressedLength = roundTrip(data, false);
+		assertTrue(compressedLength < data.length / 2);
+	}
+
+	/**
+	 * Tests the compression and decompression of highly compressible data on direct buffers.
+	 */
+	@Test
+	public void testCompressibleDataOnDirectBuffers() {
+
+		final byte[] data = createCompressibleData(BUFFER_SIZE);
+		final int compressedLength = roundTrip(data, true);
+		assertTrue(compressedLength < data.length / 2);
+	}
+
+	/**
+	 * Tests the compression and decompression of random data, the largest amount of incompressible data that must fit
+	 * into a buffer, and of very small inputs.
+	 */
+	@Test
+	public void testIncompressibleAndSmallData() {
+
+		final Random random = new Random(42L);
+
+		final byte[] data = new byte[Lz4Codec.maxUncompressedLength(BUFFER_SIZE)];
+		random.nextBytes(data);
+		roundTrip(data, false);
+		roundTrip(data, true);
+
+		for (int i = 0; i < 32; ++i) {
+			final byte[] small = new byte[i];
+			random.nextBytes(small);
+			roundTrip(small, false);
+			roundTrip(small, true);
+		}
+	}
+
+	/**
+	 * Tests that compression into a too small buffer as well as decompression of malformed data is reported.
+	 */
+	@Test
+	public void testOverflowAndMalformedData() {
+
+		final byte[] data = new byte[1024];
+		new Random(42L).nextBytes(data);
+
+		final ByteBuffer src = ByteBuffer.wrap(data);
+		final ByteBuffer dest = ByteBuffer.allocate(BUFFER_SIZE);
+		final int[] hashTable = new int[1 << Lz4Codec.HASH_LOG];
+
+		assertEquals(-1, Lz4Codec.compress(src, 0, data.length, dest, 0, data.length / 2, hashTable));
+
+		final int compressedLength = Lz4Codec.compress(src, 0, data.length, dest, 0, dest.capacity(), hashTable);
+		assertTrue(compressedLength > 0);
+
+		// The uncompressed data does not fit into the destination buffer
+		final ByteBuffer uncompressed = ByteBuffer.allocate(BUFFER_SIZE);
+		assertEquals(-1, Lz4Codec.decompress(dest, 0, compressedLength, uncompressed, 0, data.length - 1));
+
+		// A match referring to data before the beginning of the buffer
+		final ByteBuffer malformed = ByteBuffer.wrap(new byte[] { 0x10, 0x01, 0x05, 0x00, 0x00 });
+		assertEquals(-1, Lz4Codec.decompress(malformed, 0, malformed.capacity(), uncompressed, 0, BUFFER_SIZE));
+
+		// A literal run exceeding the compressed data
+		final ByteBuffer truncated = ByteBuffer.wrap(new byte[] { (byte) 0xf0, (byte) 0xff });
+		assertEquals(-1, Lz4Codec.decompress(truncated, 0, truncated.capacity(), uncompressed, 0, BUFFER_SIZE));
+	}
+
+	/**
+	 * Tests the compression and decompression of buffers through the compressor and decompressor of the library, i.e.
+	 * including the header preceding the compressed data.
+	 * 
+	 * @throws CompressionException
+	 *         thrown if the compressor or decompressor cannot be created
+	 * @throws IOException
+	 *         thrown if an error occurs while compressing or decompressing the buffers
+	 */
+	@Test
+	public void testLibraryRoundTrip() throws CompressionException, IOException {
+
+		final Lz4Library library = new Lz4Library(null);
+
+		// Buffers travel between the compressor and the decompressor, so all of them are taken from the same pool
+		final LocalBufferPool bufferPool = new LocalBufferPool(4, false);
+		final CompressionBufferProvider senderProvider = new CompressionBufferProvider(bufferPool, false);
+		final CompressionBufferProvider receiverProvider = new CompressionBufferProvider(bufferPool, false);
+		final Compressor compressor = library.createNewCompressor(senderProvider);
+		final Decompressor decompressor = library.createNewDecompressor(receiverProvider);
+
+		try {
+			final int uncompressedSize = library.getUncompressedBufferSize(senderProvider.getMaximumBufferSize());
+			final byte[] random = new byte[uncompressedSize];
+			new Random(42L).nextBytes(random);
+
+			for (final byte[] data : new byte[][] { createCompressibleData(uncompressedSize), random }) {
+
+				final Buffer uncompressedBuffer = bufferPool.requestEmptyBuffer(uncompressedSize);
+				uncompressedBuffer.write(ByteBuffer.wrap(data));
+
+				final Buffer compressedBuffer = compressor.compress(uncompressedBuffer);
+				compressedBuffer.finishWritePhase();
+
+				final Buffer decompressedBuffer = decompressor.decompress(compressedBuffer);
+				assertEquals(data.length, decompressedBuffer.size());
+
+				final ByteBuffer result = ByteBuffer.allocate(data.length);
+				decompressedBuffer.read(result);
+				assertTrue(ByteBuffer.wrap(data).equals(result.flip()));
+
+				decompressedBuffer.recycleBuffer();
+			}
+		} finally {
+			compressor.shutdown();
+			decompressor.shutdown();
+			bufferPool.destroy();
+		}
+	}
+
+	/**
+	 * Compresses and decompresses the given data and checks that the result matches the original data.
+	 * 
+	 * @param data
+	 *        the data to compress
+	 * @param direct
+	 *        <code>true</code> to use direct buffers, <code>false</code> to use heap buffers
+	 * @return the number of compressed bytes
+	 */
+	private static int roundTrip(final byte[] data, final boolean direct) {
+
+		final ByteBuffer src = allocate(BUFFER_SIZE, direct);
+		src.put(data);
+
+		final ByteBuffer compressed = allocate(BUFFER_SIZE, direct);
+		final int[] hashTable = new int[1 << Lz4Codec.HASH_LOG];
+
+		// Use an offset to mimic the header written by the compressor
+		final int compressedLength = Lz4Codec.compress(src, 0, data.length, compressed, 8, compressed.capacity(),
+			hashTable);
+		assertTrue(compressedLength >= 0);
+		assertTrue(compressedLength <= Lz4Codec.maxCompressedLength(data.length));
+
+		final ByteBuffer uncompressed = allocate(BUFFER_SIZE, direct);
+		final int uncompressedLength = Lz4Codec.decompress(compressed, 8, 8 + compressedLength, uncompressed, 0,
+			uncompressed.capacity());
+		assertEquals(data.length, uncompressedLength);
+
+		for (int i = 0; i < data.length; ++i) {
+			assertEquals(data[i], uncompressed.get(i));
+		}
+
+		return compressedLength;
+	}
+
+	private static ByteBuffer allocate(final int size, final boolean direct) {
+
+		return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+	}
+
+	/**
+	 * Creates data resembling serialized records, i.e. with many short and long repetitions.
+	 * 
+	 * @param size
+	 *        the number of bytes to create
+	 * @return the created data
+	 */
+	static byte[] createCompressibleData(final int size) {
+
+		final Random random = new Random(42L);
+		final byte[] data = new byte[size];
+		for (int i = 0; i < size;) {
+			final String record = "key-" + random.nextInt(100) + ",value-" + random.nextInt(10) + ";";
+			for (int j = 0; j < record.length() && i < size; ++j) {
+				data[i++] = (byte) record.charAt(j);
+			}
+		}
+
+		return data;
+	}
+}
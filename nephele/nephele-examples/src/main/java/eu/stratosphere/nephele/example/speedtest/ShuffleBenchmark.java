@@ -0,0 +1,489 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.example.speedtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+import eu.stratosphere.nephele.client.JobClient;
+import eu.stratosphere.nephele.client.JobExecutionException;
+import eu.stratosphere.nephele.configuration.ConfigConstants;
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.fs.Path;
+import eu.stratosphere.nephele.io.DistributionPattern;
+import eu.stratosphere.nephele.io.channels.ChannelType;
+import eu.stratosphere.nephele.io.compression.CompressionLevel;
+import eu.stratosphere.nephele.jobgraph.JobGenericInputVertex;
+import eu.stratosphere.nephele.jobgraph.JobGenericOutputVertex;
+import eu.stratosphere.nephele.jobgraph.JobGraph;
+import eu.stratosphere.nephele.jobgraph.JobGraphDefinitionException;
+import eu.stratosphere.nephele.util.JarFileCreator;
+
+/**
+ * This class implements a repeatable micro-benchmark for Nephele's byte-buffered network channels. For every
+ * combination of communication pattern and record size, it runs a job of producers and consumers which are placed on
+ * disjoint task managers, so all records pass through the network channel stack, and records the throughput in
+ * records and MB per second, percentiles of the record latency and the time the producers have been blocked waiting
+ * for write buffers. The results are appended to a CSV report, one line per run.
+ * <p>
+ * Unless the address of an existing job manager is given, the benchmark starts its own cluster of task managers on the
+ * loopback interface (see {@link ShuffleBenchmarkCluster}). The subtasks report their statistics through the local
+ * file system, so an existing cluster must also run entirely on the local host. The duration of a run is derived from
+ * the wall clock time of the subtasks. Latencies are computed from {@link System#nanoTime()} stamps taken in different
+ * JVMs, which can only be compared on Linux, so the latency columns are left at <code>-1</code> on other platforms.
+ */
+public final class ShuffleBenchmark {
+
+	/**
+	 * The communication patterns covered by the benchmark.
+	 */
+	enum ShufflePattern {
+
+		/**
+		 * Each producer sends to exactly one consumer.
+		 */
+		POINT_TO_POINT,
+
+		/**
+		 * Each producer distributes its records round-robin across all consumers.
+		 */
+		ALL_TO_ALL,
+
+		/**
+		 * Each producer sends every record to all consumers.
+		 */
+		BROADCAST
+	}
+
+	/**
+	 * The header line of the CSV report.
+	 */
+	private static final String REPORT_HEADER = "pattern,recordSize,producers,consumers,repetition,recordsSent,"
+		+ "recordsReceived,bytesReceived,durationMs,recordsPerSec,mbPerSec,linuxLatencyP50Us,linuxLatencyP90Us,"
+		+ "linuxLatencyP99Us,linuxLatencyMaxUs,bufferWaitMs,bufferWaitRatio";
+
+	/**
+	 * The default values of the benchmark's command line options.
+	 */
+	private static final String[][] DEFAULT_OPTIONS = { { "taskmanagers", "4" }, { "parallelism", "4" },
+		{ "subtasksPerInstance", "2" }, { "patterns", "POINT_TO_POINT,ALL_TO_ALL,BROADCAST" },
+		{ "recordSizes", "16,128,1024,16384" }, { "volume", "64" }, { "repetitions", "3" },
+		{ "report", "shuffle-benchmark.csv" }, { "workDir", System.getProperty("java.io.tmpdir") },
+		{ "basePort", "6600" }, { "memory", "64" }, { "jvmArgs", "-Xmx512m" }, { "jobmanager", "" } };
+
+	/**
+	 * The options the benchmark has been started with.
+	 */
+	private final Map<String, String> options;
+
+	/**
+	 * The jar file containing the benchmark's tasks.
+	 */
+	private File jarFile = null;
+
+	/**
+	 * Constructs a new shuffle benchmark.
+	 * 
+	 * @param options
+	 *        the options the benchmark has been started with
+	 */
+	private ShuffleBenchmark(final Map<String, String> options) {
+		this.options = options;
+	}
+
+	/**
+	 * Entry point to the application.
+	 * 
+	 * @param args
+	 *        the provided arguments
+	 */
+	public static void main(final String[] args) {
+
+		final Map<String, String> options = new HashMap<String, String>();
+		for (final String[] option : DEFAULT_OPTIONS) {
+			options.put(option[0], option[1]);
+		}
+
+		for (int i = 0; i < args.length; i += 2) {
+			final String name = args[i].startsWith("-") ? args[i].substring(1) : args[i];
+			if (!options.containsKey(name) || i + 1 >= args.length) {
+				printUsage();
+				System.exit(1);
+				return;
+			}
+			options.put(name, args[i + 1]);
+		}
+
+		try {
+			new ShuffleBenchmark(options).run();
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+			return;
+		}
+	}
+
+	/**
+	 * Prints the benchmark's command line options and their default values.
+	 */
+	private static void printUsage() {
+
+		System.err.println("Usage: ShuffleBenchmark [-option value]...");
+		System.err.println("Options (default values in brackets):");
+		for (final String[] option : DEFAULT_OPTIONS) {
+			System.err.println("\t-" + option[0] + " [" + option[1] + "]");
+		}
+		System.err.println("Set -jobmanager to <host>:<port> to use an already running cluster on the local host");
+	}
+
+	/**
+	 * Runs all configured benchmarks and writes the report.
+	 * 
+	 * @throws Exception
+	 *         thrown if an error occurs while running the benchmarks
+	 */
+	private void run() throws Exception {
+
+		final int parallelism = getInteger("parallelism");
+		final int subtasksPerInstance = getInteger("subtasksPerInstance");
+		final int repetitions = getInteger("repetitions");
+		final long volume = getInteger("volume") * 1024L * 1024L;
+
+		final List<ShufflePattern> patterns = new ArrayList<ShufflePattern>();
+		for (final String pattern : this.options.get("patterns").split(",")) {
+			patterns.add(ShufflePattern.valueOf(pattern.trim().toUpperCase()));
+		}
+
+		final List<Integer> recordSizes = new ArrayList<Integer>();
+		for (final String recordSize : this.options.get("recordSizes").split(",")) {
+			recordSizes.add(Integer.valueOf(Math.max(ShuffleBenchmarkRecord.HEADER_SIZE,
+				Integer.parseInt(recordSize.trim()))));
+		}
+
+		final File workDir = new File(this.options.get("workDir"), "shuffle-benchmark-" + System.currentTimeMillis());
+		if (!workDir.mkdirs()) {
+			throw new IOException("Cannot create working directory " + workDir);
+		}
+
+		// Start a local cluster unless an existing job manager is given
+		ShuffleBenchmarkCluster cluster = null;
+		String jobManagerAddress;
+		int jobManagerPort;
+		final String jobManager = this.options.get("jobmanager");
+		if (jobManager.length() > 0) {
+			final int pos = jobManager.lastIndexOf(':');
+			jobManagerAddress = (pos == -1) ? jobManager : jobManager.substring(0, pos);
+			jobManagerPort = (pos == -1) ? ConfigConstants.DEFAULT_JOB_MANAGER_IPC_PORT : Integer.parseInt(jobManager
+				.substring(pos + 1));
+		} else {
+			final int numberOfTaskManagers = getInteger("taskmanagers");
+			final int requiredTaskManagers = 2 * ((parallelism + subtasksPerInstance - 1) / subtasksPerInstance);
+			if (numberOfTaskManagers < requiredTaskManagers) {
+				throw new IllegalArgumentException("Producers and consumers are placed on disjoint task managers, "
+					+ requiredTaskManagers + " task managers are required");
+			}
+
+			final String jvmArgs = this.options.get("jvmArgs").trim();
+			cluster = new ShuffleBenchmarkCluster(numberOfTaskManagers, getInteger("basePort"), getInteger("memory"),
+				jvmArgs.length() == 0 ? new ArrayList<String>() : Arrays.asList(jvmArgs.split("\\s+")), workDir);
+			jobManagerAddress = cluster.getJobManagerAddress();
+			jobManagerPort = cluster.getJobManagerPort();
+		}
+
+		final PrintWriter report = new PrintWriter(this.options.get("report"), "UTF-8");
+		try {
+
+			if (cluster != null) {
+				System.out.println("Starting local cluster in " + workDir);
+				cluster.start();
+			}
+
+			report.println(REPORT_HEADER);
+			System.out.println(REPORT_HEADER);
+
+			for (final ShufflePattern pattern : patterns) {
+				for (final Integer recordSize : recordSizes) {
+					for (int repetition = 0; repetition < repetitions; ++repetition) {
+
+						final File resultsDir = new File(workDir, "results-" + pattern + "-" + recordSize + "-"
+							+ repetition);
+						if (!resultsDir.mkdirs()) {
+							throw new IOException("Cannot create results directory " + resultsDir);
+						}
+
+						final long numberOfRecords = Math.max(1L, volume / recordSize.intValue());
+						final JobGraph jobGraph = createJobGraph(pattern, recordSize.intValue(), numberOfRecords,
+							parallelism, subtasksPerInstance, resultsDir);
+
+						final Configuration clientConfiguration = new Configuration();
+						clientConfiguration.setString(ConfigConstants.JOB_MANAGER_IPC_ADDRESS_KEY, jobManagerAddress);
+						clientConfiguration.setInteger(ConfigConstants.JOB_MANAGER_IPC_PORT_KEY, jobManagerPort);
+
+						final JobClient jobClient = new JobClient(jobGraph, clientConfiguration);
+						try {
+							jobClient.submitJobAndWait();
+						} finally {
+							jobClient.close();
+						}
+
+						final String line = pattern + "," + recordSize + "," + parallelism + "," + parallelism + ","
+							+ repetition + "," + evaluate(resultsDir);
+						report.println(line);
+						report.flush();
+						System.out.println(line);
+					}
+				}
+			}
+
+		} finally {
+			report.close();
+			if (cluster != null) {
+				cluster.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Creates the job graph for a single benchmark run.
+	 * 
+	 * @param pattern
+	 *        the communication pattern to benchmark
+	 * @param recordSize
+	 *        the size of the emitted records in bytes
+	 * @param numberOfRecords
+	 *        the number of records each producer emits
+	 * @param parallelism
+	 *        the number of producer and consumer subtasks
+	 * @param subtasksPerInstance
+	 *        the number of producer or consumer subtasks per instance
+	 * @param resultsDir
+	 *        the directory the subtasks write their statistics to
+	 * @return the job graph for the benchmark run
+	 * @throws IOException
+	 *         thrown if the jar file of the benchmark cannot be created
+	 * @throws JobGraphDefinitionException
+	 *         thrown if the vertices cannot be connected
+	 */
+	private JobGraph createJobGraph(final ShufflePattern pattern, final int recordSize, final long numberOfRecords,
+			final int parallelism, final int subtasksPerInstance, final File resultsDir) throws IOException,
+			JobGraphDefinitionException {
+
+		final JobGraph jobGraph = new JobGraph("Nephele Shuffle Benchmark (" + pattern + ", " + recordSize + " bytes)");
+
+		final JobGenericInputVertex producer = new JobGenericInputVertex("Shuffle Benchmark Producer", jobGraph);
+		producer.setInputClass(ShuffleBenchmarkProducer.class);
+		producer.setNumberOfSubtasks(parallelism);
+		producer.setNumberOfSubtasksPerInstance(subtasksPerInstance);
+		producer.getConfiguration().setInteger(ShuffleBenchmarkStatistics.RECORD_SIZE_KEY, recordSize);
+		producer.getConfiguration().setLong(ShuffleBenchmarkStatistics.NUMBER_OF_RECORDS_KEY, numberOfRecords);
+		producer.getConfiguration().setBoolean(ShuffleBenchmarkStatistics.BROADCAST_KEY,
+			pattern == ShufflePattern.BROADCAST);
+		producer.getConfiguration().setString(ShuffleBenchmarkStatistics.RESULTS_DIR_KEY,
+			resultsDir.getAbsolutePath());
+
+		final JobGenericOutputVertex consumer = new JobGenericOutputVertex("Shuffle Benchmark Consumer", jobGraph);
+		consumer.setOutputClass(ShuffleBenchmarkConsumer.class);
+		consumer.setNumberOfSubtasks(parallelism);
+		consumer.setNumberOfSubtasksPerInstance(subtasksPerInstance);
+		consumer.getConfiguration().setString(ShuffleBenchmarkStatistics.RESULTS_DIR_KEY,
+			resultsDir.getAbsolutePath());
+
+		// Producers and consumers deliberately do not share instances, so no record bypasses the network
+		producer.connectTo(consumer, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION,
+			pattern == ShufflePattern.POINT_TO_POINT ? DistributionPattern.POINTWISE : DistributionPattern.BIPARTITE);
+
+		jobGraph.addJar(new Path("file://" + getJarFile().getAbsolutePath()));
+
+		return jobGraph;
+	}
+
+	/**
+	 * Returns the jar file containing the benchmark's tasks and creates it if necessary.
+	 * 
+	 * @return the jar file containing the benchmark's tasks
+	 * @throws IOException
+	 *         thrown if the jar file cannot be created
+	 */
+	private File getJarFile() throws IOException {
+
+		if (this.jarFile == null) {
+
+			final File file = File.createTempFile("shufflebenchmark", "jar");
+			file.deleteOnExit();
+
+			final JarFileCreator jfc = new JarFileCreator(file);
+			jfc.addClass(ShuffleBenchmarkProducer.class);
+			jfc.addClass(ShuffleBenchmarkConsumer.class);
+			jfc.addClass(ShuffleBenchmarkRecord.class);
+			jfc.addClass(ShuffleBenchmarkStatistics.class);
+			jfc.createJarFile();
+
+			this.jarFile = file;
+		}
+
+		return this.jarFile;
+	}
+
+	/**
+	 * Aggregates the statistics the subtasks of a benchmark run have written to the given results directory.
+	 * 
+	 * @param resultsDir
+	 *        the results directory of the benchmark run
+	 * @return the aggregated statistics as comma-separated values, starting with the number of records sent
+	 * @throws IOException
+	 *         thrown if the statistics cannot be read
+	 */
+	private static String evaluate(final File resultsDir) throws IOException {
+
+		final List<Properties> producers = ShuffleBenchmarkStatistics.read(resultsDir,
+			ShuffleBenchmarkStatistics.PRODUCER_PREFIX);
+		final List<Properties> consumers = ShuffleBenchmarkStatistics.read(resultsDir,
+			ShuffleBenchmarkStatistics.CONSUMER_PREFIX);
+
+		if (producers.isEmpty() || consumers.isEmpty()) {
+			throw new IOException("No statistics found in " + resultsDir);
+		}
+
+		long recordsSent = 0L;
+		long startTime = Long.MAX_VALUE;
+		long bufferWaitTime = 0L;
+		double bufferWaitRatio = 0.0;
+		for (final Properties producer : producers) {
+			recordsSent += getLong(producer, ShuffleBenchmarkStatistics.RECORDS);
+			final long producerDuration = getLong(producer, ShuffleBenchmarkStatistics.DURATION);
+			final long producerBufferWaitTime = getLong(producer, ShuffleBenchmarkStatistics.BUFFER_WAIT_TIME);
+			startTime = Math.min(startTime, getLong(producer, ShuffleBenchmarkStatistics.START_TIME));
+			bufferWaitTime += producerBufferWaitTime;
+			if (producerDuration > 0L) {
+				bufferWaitRatio += (double) producerBufferWaitTime / (double) producerDuration;
+			}
+		}
+
+		long recordsReceived = 0L;
+		long bytesReceived = 0L;
+		long endTime = Long.MIN_VALUE;
+		final List<Long> latencies = new ArrayList<Long>();
+		for (final Properties consumer : consumers) {
+			recordsReceived += getLong(consumer, ShuffleBenchmarkStatistics.RECORDS);
+			bytesReceived += getLong(consumer, ShuffleBenchmarkStatistics.BYTES);
+			endTime = Math.max(endTime, getLong(consumer, ShuffleBenchmarkStatistics.END_TIME));
+			final String samples = consumer.getProperty(ShuffleBenchmarkStatistics.LATENCY_SAMPLES, "");
+			if (samples.length() > 0) {
+				for (final String sample : samples.split(",")) {
+					latencies.add(Long.valueOf(sample));
+				}
+			}
+		}
+
+		final long[] sortedLatencies = new long[latencies.size()];
+		for (int i = 0; i < sortedLatencies.length; ++i) {
+			sortedLatencies[i] = latencies.get(i).longValue();
+		}
+		Arrays.sort(sortedLatencies);
+
+		final double durationInSeconds = Math.max(1L, endTime - startTime) / 1000.0;
+
+		final StringBuilder sb = new StringBuilder();
+		sb.append(recordsSent).append(',');
+		sb.append(recordsReceived).append(',');
+		sb.append(bytesReceived).append(',');
+		sb.append(Math.round(durationInSeconds * 1000.0)).append(',');
+		sb.append(Math.round(recordsReceived / durationInSeconds)).append(',');
+		sb.append(String.format(Locale.US, "%.2f", bytesReceived / (1024.0 * 1024.0) / durationInSeconds)).append(',');
+		sb.append(toMicroseconds(percentile(sortedLatencies, 0.5))).append(',');
+		sb.append(toMicroseconds(percentile(sortedLatencies, 0.9))).append(',');
+		sb.append(toMicroseconds(percentile(sortedLatencies, 0.99))).append(',');
+		sb.append(toMicroseconds(percentile(sortedLatencies, 1.0))).append(',');
+		sb.append(bufferWaitTime / producers.size() / 1000000L).append(',');
+		sb.append(String.format(Locale.US, "%.3f", bufferWaitRatio / producers.size()));
+
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the given percentile of a sorted array of values using the nearest-rank method.
+	 * 
+	 * @param sortedValues
+	 *        the sorted values
+	 * @param percentile
+	 *        the percentile to return as a fraction between 0 and 1
+	 * @return the percentile or <code>-1</code> if the array is empty
+	 */
+	static long percentile(final long[] sortedValues, final double percentile) {
+
+		if (sortedValues.length == 0) {
+			return -1L;
+		}
+
+		final int rank = (int) Math.ceil(percentile * sortedValues.length);
+
+		return sortedValues[Math.min(sortedValues.length, Math.max(1, rank)) - 1];
+	}
+
+	/**
+	 * Converts a duration from nanoseconds to microseconds, leaving negative values which indicate a missing duration
+	 * untouched.
+	 * 
+	 * @param nanoseconds
+	 *        the duration in nanoseconds
+	 * @return the duration in microseconds
+	 */
+	private static long toMicroseconds(final long nanoseconds) {
+
+		return (nanoseconds < 0L) ? nanoseconds : nanoseconds / 1000L;
+	}
+
+	/**
+	 * Reads a long value from the given statistics.
+	 * 
+	 * @param statistics
+	 *        the statistics to read from
+	 * @param key
+	 *        the key of the value
+	 * @return the value
+	 * @throws IOException
+	 *         thrown if the statistics do not contain the value
+	 */
+	private static long getLong(final Properties statistics, final String key) throws IOException {
+
+		final String value = statistics.getProperty(key);
+		if (value == null) {
+			throw new IOException("Statistics do not contain " + key);
+		}
+
+		return Long.parseLong(value);
+	}
+
+	/**
+	 * Reads an integer option.
+	 * 
+	 * @param name
+	 *        the name of the option
+	 * @return the option's value
+	 */
+	private int getInteger(final String name) {
+
+		return Integer.parseInt(this.options.get(name).trim());
+	}
+}
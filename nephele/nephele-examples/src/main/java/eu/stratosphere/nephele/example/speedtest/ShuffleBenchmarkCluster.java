@@ -0,0 +1,392 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.example.speedtest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import eu.stratosphere.nephele.configuration.ConfigConstants;
+
+/**
+ * This class starts a job manager and a configurable number of task managers as separate JVMs on the local host. All
+ * processes communicate over the loopback interface, so in contrast to the local execution mode, which runs a single
+ * task manager, data exchanged between task managers actually passes through the network channel stack. The classes
+ * of the Nephele runtime must be on the class path of the JVM running this class.
+ */
+final class ShuffleBenchmarkCluster {
+
+	/**
+	 * The address all processes of the cluster bind to.
+	 */
+	private static final String LOOPBACK_ADDRESS = "127.0.0.1";
+
+	/**
+	 * The name of the job manager's main class.
+	 */
+	private static final String JOB_MANAGER_CLASS = "eu.stratosphere.nephele.jobmanager.JobManager";
+
+	/**
+	 * The name of the task manager's main class.
+	 */
+	private static final String TASK_MANAGER_CLASS = "eu.stratosphere.nephele.taskmanager.TaskManager";
+
+	/**
+	 * The configuration key for the port of the job manager's discovery service.
+	 */
+	private static final String DISCOVERY_PORT_KEY = "discoveryservice.port";
+
+	/**
+	 * The interval in milliseconds in which the task managers send heartbeats to the job manager.
+	 */
+	private static final int HEARTBEAT_INTERVAL = 1000;
+
+	/**
+	 * The maximum time in milliseconds to wait for a process to open its IPC port.
+	 */
+	private static final long STARTUP_TIMEOUT = 60000L;
+
+	/**
+	 * The number of task managers to start.
+	 */
+	private final int numberOfTaskManagers;
+
+	/**
+	 * The first port used by the cluster, the job manager and the task managers use consecutive ports from here.
+	 */
+	private final int basePort;
+
+	/**
+	 * The amount of memory in MB each task manager provides to its memory manager.
+	 */
+	private final int taskManagerMemory;
+
+	/**
+	 * Additional arguments passed to each JVM.
+	 */
+	private final List<String> jvmArgs;
+
+	/**
+	 * The working directory for configuration files, temporary files and logs.
+	 */
+	private final File workDir;
+
+	/**
+	 * The processes started by this cluster.
+	 */
+	private final List<Process> processes = new ArrayList<Process>();
+
+	/**
+	 * Constructs a new benchmark cluster.
+	 * 
+	 * @param numberOfTaskManagers
+	 *        the number of task managers to start
+	 * @param basePort
+	 *        the first port used by the cluster
+	 * @param taskManagerMemory
+	 *        the amount of memory in MB each task manager provides to its memory manager
+	 * @param jvmArgs
+	 *        additional arguments passed to each JVM
+	 * @param workDir
+	 *        the working directory for configuration files, temporary files and logs
+	 */
+	ShuffleBenchmarkCluster(final int numberOfTaskManagers, final int basePort, final int taskManagerMemory,
+			final List<String> jvmArgs, final File workDir) {
+
+		this.numberOfTaskManagers = numberOfTaskManagers;
+		this.basePort = basePort;
+		this.taskManagerMemory = taskManagerMemory;
+		this.jvmArgs = jvmArgs;
+		this.workDir = workDir;
+	}
+
+	/**
+	 * Returns the address of the cluster's job manager.
+	 * 
+	 * @return the address of the cluster's job manager
+	 */
+	String getJobManagerAddress() {
+		return LOOPBACK_ADDRESS;
+	}
+
+	/**
+	 * Returns the IPC port of the cluster's job manager.
+	 * 
+	 * @return the IPC port of the cluster's job manager
+	 */
+	int getJobManagerPort() {
+		return this.basePort;
+	}
+
+	/**
+	 * Starts the job manager and the task managers and waits until the task managers have had the chance to register
+	 * with the job manager.
+	 * 
+	 * @throws IOException
+	 *         thrown if one of the processes cannot be started
+	 * @throws InterruptedException
+	 *         thrown if the calling thread is interrupted while waiting for the processes to come up
+	 */
+	void start() throws IOException, InterruptedException {
+
+		final File jobManagerDir = new File(this.workDir, "jobmanager");
+		writeConfiguration(jobManagerDir, -1);
+		writeSlaveFile(jobManagerDir);
+		startProcess(JOB_MANAGER_CLASS, jobManagerDir, this.basePort, "-executionMode", "cluster", "-configDir",
+			jobManagerDir.getAbsolutePath());
+
+		for (int i = 0; i < this.numberOfTaskManagers; ++i) {
+			final File taskManagerDir = new File(this.workDir, "taskmanager-" + i);
+			writeConfiguration(taskManagerDir, i);
+			startProcess(TASK_MANAGER_CLASS, taskManagerDir, getTaskManagerIPCPort(i), "-configDir",
+				taskManagerDir.getAbsolutePath());
+		}
+
+		// Give every task manager the chance to announce itself through a couple of heartbeats
+		Thread.sleep(3 * HEARTBEAT_INTERVAL);
+	}
+
+	/**
+	 * Terminates all processes of the cluster.
+	 */
+	void shutdown() {
+
+		for (int i = this.processes.size() - 1; i >= 0; --i) {
+			final Process process = this.processes.get(i);
+			process.destroy();
+			try {
+				process.waitFor();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		this.processes.clear();
+	}
+
+	/**
+	 * Returns the IPC port of the task manager with the given index.
+	 * 
+	 * @param index
+	 *        the index of the task manager
+	 * @return the IPC port of the task manager
+	 */
+	private int getTaskManagerIPCPort(final int index) {
+		return this.basePort + 2 + 2 * index;
+	}
+
+	/**
+	 * Starts a new JVM running the given main class and waits until it accepts connections on the given port.
+	 * 
+	 * @param mainClass
+	 *        the name of the main class to run
+	 * @param dir
+	 *        the directory the process's output is logged to
+	 * @param port
+	 *        the port to wait for
+	 * @param args
+	 *        the arguments passed to the main class
+	 * @throws IOException
+	 *         thrown if the process cannot be started or terminates before opening its port
+	 * @throws InterruptedException
+	 *         thrown if the calling thread is interrupted while waiting for the process to come up
+	 */
+	private void startProcess(final String mainClass, final File dir, final int port, final String... args)
+			throws IOException, InterruptedException {
+
+		final List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(this.jvmArgs);
+		command.add("-classpath");
+		command.add(System.getProperty("java.class.path"));
+		command.add(mainClass);
+		for (final String arg : args) {
+			command.add(arg);
+		}
+
+		final ProcessBuilder pb = new ProcessBuilder(command);
+		pb.redirectErrorStream(true);
+		pb.directory(dir);
+
+		final File logFile = new File(dir, "output.log");
+		final Process process = pb.start();
+		this.processes.add(process);
+
+		final Thread logger = new OutputLogger(process.getInputStream(), new FileOutputStream(logFile));
+		logger.setDaemon(true);
+		logger.start();
+
+		final long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT;
+		while (true) {
+
+			try {
+				process.exitValue();
+				throw new IOException(mainClass + " terminated unexpectedly, see " + logFile + " for details");
+			} catch (IllegalThreadStateException e) {
+				// Process is still running
+			}
+
+			final Socket socket = new Socket();
+			try {
+				socket.connect(new InetSocketAddress(LOOPBACK_ADDRESS, port), 1000);
+				return;
+			} catch (IOException ioe) {
+				if (System.currentTimeMillis() > deadline) {
+					throw new IOException(mainClass + " did not open port " + port + " within " + STARTUP_TIMEOUT
+						+ " ms, see " + logFile + " for details");
+				}
+			} finally {
+				socket.close();
+			}
+
+			Thread.sleep(100);
+		}
+	}
+
+	/**
+	 * Writes the configuration for the job manager or one of the task managers.
+	 * 
+	 * @param dir
+	 *        the configuration directory to write to
+	 * @param taskManagerIndex
+	 *        the index of the task manager or <code>-1</code> to write the job manager's configuration
+	 * @throws IOException
+	 *         thrown if an error occurs while writing the configuration
+	 */
+	private void writeConfiguration(final File dir, final int taskManagerIndex) throws IOException {
+
+		final File tmpDir = new File(dir, "tmp");
+		if (!tmpDir.isDirectory() && !tmpDir.mkdirs()) {
+			throw new IOException("Cannot create directory " + tmpDir);
+		}
+
+		final Map<String, String> config = new LinkedHashMap<String, String>();
+		config.put(ConfigConstants.JOB_MANAGER_IPC_ADDRESS_KEY, LOOPBACK_ADDRESS);
+		config.put(ConfigConstants.JOB_MANAGER_IPC_PORT_KEY, Integer.toString(this.basePort));
+		config.put(DISCOVERY_PORT_KEY, Integer.toString(this.basePort + 1));
+		config.put(ConfigConstants.JOBCLIENT_POLLING_INTERVAL_KEY, "1");
+		config.put(ConfigConstants.JOB_EXECUTION_RETRIES_KEY, "0");
+		config.put("jobmanager.visualization.enable", "false");
+		config.put("config.dir", dir.getAbsolutePath());
+		config.put("instancemanager.cluster.type.1", "benchmark,1,1," + this.taskManagerMemory + ",1,0");
+		config.put("instancemanager.cluster.defaulttype", "1");
+
+		if (taskManagerIndex >= 0) {
+			final int ipcPort = getTaskManagerIPCPort(taskManagerIndex);
+			config.put(ConfigConstants.TASK_MANAGER_IPC_PORT_KEY, Integer.toString(ipcPort));
+			config.put(ConfigConstants.TASK_MANAGER_DATA_PORT_KEY, Integer.toString(ipcPort + 1));
+			config.put(ConfigConstants.TASK_MANAGER_TMP_DIR_KEY, tmpDir.getAbsolutePath());
+			config.put(ConfigConstants.MEMORY_MANAGER_AVAILABLE_MEMORY_SIZE_KEY,
+				Integer.toString(this.taskManagerMemory));
+			config.put("taskmanager.setup.periodictaskinterval", Integer.toString(HEARTBEAT_INTERVAL));
+		}
+
+		final PrintWriter writer = new PrintWriter(new File(dir, "nephele-user.xml"), "UTF-8");
+		try {
+			writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+			writer.println("<configuration>");
+			for (final Map.Entry<String, String> entry : config.entrySet()) {
+				writer.println("\t<property>");
+				writer.println("\t\t<key>" + entry.getKey() + "</key>");
+				writer.println("\t\t<value>" + entry.getValue() + "</value>");
+				writer.println("\t</property>");
+			}
+			writer.println("</configuration>");
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Writes the slave file which maps the loopback address to the benchmark instance type.
+	 * 
+	 * @param dir
+	 *        the job manager's configuration directory
+	 * @throws IOException
+	 *         thrown if an error occurs while writing the slave file
+	 */
+	private void writeSlaveFile(final File dir) throws IOException {
+
+		final PrintWriter writer = new PrintWriter(new File(dir, "slaves"), "UTF-8");
+		try {
+			writer.println(LOOPBACK_ADDRESS);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * This thread copies the output of a child process to a log file.
+	 */
+	private static final class OutputLogger extends Thread {
+
+		/**
+		 * The stream to read the process's output from.
+		 */
+		private final InputStream in;
+
+		/**
+		 * The stream to write the process's output to.
+		 */
+		private final OutputStream out;
+
+		/**
+		 * Constructs a new output logger.
+		 * 
+		 * @param in
+		 *        the stream to read the process's output from
+		 * @param out
+		 *        the stream to write the process's output to
+		 */
+		private OutputLogger(final InputStream in, final OutputStream out) {
+			super("Shuffle Benchmark Output Logger");
+			this.in = in;
+			this.out = out;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void run() {
+
+			final byte[] buf = new byte[4096];
+			try {
+				int read;
+				while ((read = this.in.read(buf)) != -1) {
+					this.out.write(buf, 0, read);
+				}
+			} catch (IOException ioe) {
+				// The process has terminated
+			} finally {
+				try {
+					this.out.close();
+				} catch (IOException ioe) {
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.example.speedtest;
+
+import java.util.Properties;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.io.MutableRecordReader;
+import eu.stratosphere.nephele.template.AbstractOutputTask;
+
+/**
+ * This class implements the consumer task of the shuffle benchmark. The consumer counts the received records and
+ * samples their latency from the timestamp the producer has attached. Since the timestamps are taken with
+ * {@link System#nanoTime()} in the producer's JVM, the latency is only sampled if producer and consumer run on the
+ * same Linux host (see {@link ShuffleBenchmarkStatistics#isNanoTimeComparableAcrossJVMs()}).
+ */
+public final class ShuffleBenchmarkConsumer extends AbstractOutputTask {
+
+	/**
+	 * The record reader used to read the incoming records.
+	 */
+	private MutableRecordReader<ShuffleBenchmarkRecord> input;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void registerInputOutput() {
+
+		this.input = new MutableRecordReader<ShuffleBenchmarkRecord>(this);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void invoke() throws Exception {
+
+		final Configuration conf = getTaskConfiguration();
+		final int samplingInterval = conf.getInteger(ShuffleBenchmarkStatistics.LATENCY_SAMPLING_INTERVAL_KEY,
+			ShuffleBenchmarkStatistics.DEFAULT_LATENCY_SAMPLING_INTERVAL);
+
+		final long[] latencySamples = new long[ShuffleBenchmarkStatistics.isNanoTimeComparableAcrossJVMs()
+			? ShuffleBenchmarkStatistics.MAXIMUM_NUMBER_OF_LATENCY_SAMPLES : 0];
+		int numberOfLatencySamples = 0;
+
+		final ShuffleBenchmarkRecord record = new ShuffleBenchmarkRecord();
+		long numberOfRecords = 0L;
+		long numberOfBytes = 0L;
+		long startTime = 0L;
+
+		while (this.input.next(record)) {
+
+			if (numberOfRecords == 0L) {
+				startTime = System.currentTimeMillis();
+			}
+
+			if (numberOfRecords % samplingInterval == 0L && numberOfLatencySamples < latencySamples.length) {
+				latencySamples[numberOfLatencySamples++] = System.nanoTime() - record.getTimestamp();
+			}
+
+			++numberOfRecords;
+			numberOfBytes += record.getSize();
+		}
+
+		final long endTime = System.currentTimeMillis();
+
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < numberOfLatencySamples; ++i) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(latencySamples[i]);
+		}
+
+		final Properties statistics = new Properties();
+		statistics.setProperty(ShuffleBenchmarkStatistics.RECORDS, Long.toString(numberOfRecords));
+		statistics.setProperty(ShuffleBenchmarkStatistics.BYTES, Long.toString(numberOfBytes));
+		statistics.setProperty(ShuffleBenchmarkStatistics.START_TIME, Long.toString(startTime));
+		statistics.setProperty(ShuffleBenchmarkStatistics.END_TIME, Long.toString(endTime));
+		statistics.setProperty(ShuffleBenchmarkStatistics.LATENCY_SAMPLES, sb.toString());
+
+		ShuffleBenchmarkStatistics.write(conf.getString(ShuffleBenchmarkStatistics.RESULTS_DIR_KEY, null),
+			ShuffleBenchmarkStatistics.CONSUMER_PREFIX, getIndexInSubtaskGroup(), statistics);
+	}
+}
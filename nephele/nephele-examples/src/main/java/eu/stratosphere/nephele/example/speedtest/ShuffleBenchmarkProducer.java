@@ -0,0 +1,94 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.example.speedtest;
+
+import java.util.Properties;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.io.AbstractRecordWriter;
+import eu.stratosphere.nephele.io.BroadcastRecordWriter;
+import eu.stratosphere.nephele.io.RecordWriter;
+import eu.stratosphere.nephele.io.channels.AbstractOutputChannel;
+import eu.stratosphere.nephele.io.channels.bytebuffered.AbstractByteBufferedOutputChannel;
+import eu.stratosphere.nephele.template.AbstractGenericInputTask;
+
+/**
+ * This class implements the producer task of the shuffle benchmark. The producer emits a configured number of
+ * timestamped records, either distributed round-robin across its output channels or broadcast to all of them, and
+ * reports how long it has been blocked waiting for write buffers.
+ */
+public final class ShuffleBenchmarkProducer extends AbstractGenericInputTask {
+
+	/**
+	 * The record writer to emit the produced records.
+	 */
+	private AbstractRecordWriter<ShuffleBenchmarkRecord> writer;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void registerInputOutput() {
+
+		if (getTaskConfiguration().getBoolean(ShuffleBenchmarkStatistics.BROADCAST_KEY, false)) {
+			this.writer = new BroadcastRecordWriter<ShuffleBenchmarkRecord>(this, ShuffleBenchmarkRecord.class);
+		} else {
+			this.writer = new RecordWriter<ShuffleBenchmarkRecord>(this, ShuffleBenchmarkRecord.class);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void invoke() throws Exception {
+
+		final Configuration conf = getTaskConfiguration();
+		final int recordSize = conf.getInteger(ShuffleBenchmarkStatistics.RECORD_SIZE_KEY, 128);
+		final long numberOfRecords = conf.getLong(ShuffleBenchmarkStatistics.NUMBER_OF_RECORDS_KEY, 0L);
+
+		final ShuffleBenchmarkRecord record = new ShuffleBenchmarkRecord(recordSize);
+
+		final long startTime = System.currentTimeMillis();
+		final long startNanos = System.nanoTime();
+		for (long i = 0; i < numberOfRecords; ++i) {
+			record.setTimestamp(System.nanoTime());
+			this.writer.emit(record);
+		}
+		this.writer.flush();
+		final long duration = System.nanoTime() - startNanos;
+		final long endTime = System.currentTimeMillis();
+
+		long bufferWaitTime = 0L;
+		for (final AbstractOutputChannel<ShuffleBenchmarkRecord> outputChannel : this.writer.getOutputChannels()) {
+			if (outputChannel instanceof AbstractByteBufferedOutputChannel) {
+				bufferWaitTime += ((AbstractByteBufferedOutputChannel<ShuffleBenchmarkRecord>) outputChannel)
+					.getBufferWaitTime();
+			}
+		}
+
+		final Properties statistics = new Properties();
+		statistics.setProperty(ShuffleBenchmarkStatistics.RECORDS, Long.toString(numberOfRecords));
+		statistics.setProperty(ShuffleBenchmarkStatistics.BYTES, Long.toString(numberOfRecords * record.getSize()));
+		statistics.setProperty(ShuffleBenchmarkStatistics.START_TIME, Long.toString(startTime));
+		statistics.setProperty(ShuffleBenchmarkStatistics.END_TIME, Long.toString(endTime));
+		statistics.setProperty(ShuffleBenchmarkStatistics.DURATION, Long.toString(duration));
+		statistics.setProperty(ShuffleBenchmarkStatistics.BUFFER_WAIT_TIME, Long.toString(bufferWaitTime));
+
+		ShuffleBenchmarkStatistics.write(conf.getString(ShuffleBenchmarkStatistics.RESULTS_DIR_KEY, null),
+			ShuffleBenchmarkStatistics.PRODUCER_PREFIX, getIndexInSubtaskGroup(), statistics);
+	}
+}
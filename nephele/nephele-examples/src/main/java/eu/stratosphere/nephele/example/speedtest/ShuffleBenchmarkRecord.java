@@ -0,0 +1,122 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.example.speedtest;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import eu.stratosphere.nephele.types.Record;
+
+/**
+ * This class implements the record type used for the shuffle benchmark. Besides a configurable payload, each record
+ * carries the time it has been emitted at, so the receiver can determine the latency of the channel stack.
+ */
+public final class ShuffleBenchmarkRecord implements Record {
+
+	/**
+	 * The number of bytes a record occupies in serialized form in addition to its payload.
+	 */
+	static final int HEADER_SIZE = 12;
+
+	/**
+	 * The value of {@link System#nanoTime()} at the time the record has been emitted.
+	 */
+	private long timestamp = 0L;
+
+	/**
+	 * The record's payload.
+	 */
+	private byte[] payload;
+
+	/**
+	 * Constructs a new record with an empty payload. The payload is resized as required when the record is read.
+	 */
+	public ShuffleBenchmarkRecord() {
+		this.payload = new byte[0];
+	}
+
+	/**
+	 * Constructs a new record whose serialized form occupies the given number of bytes.
+	 * 
+	 * @param recordSize
+	 *        the size of the serialized record in bytes, must be at least {@link #HEADER_SIZE}
+	 */
+	public ShuffleBenchmarkRecord(final int recordSize) {
+
+		if (recordSize < HEADER_SIZE) {
+			throw new IllegalArgumentException("Record size must be at least " + HEADER_SIZE + " bytes");
+		}
+
+		this.payload = new byte[recordSize - HEADER_SIZE];
+		for (int i = 0; i < this.payload.length; ++i) {
+			this.payload[i] = (byte) (i % 128);
+		}
+	}
+
+	/**
+	 * Sets the time the record is emitted at.
+	 * 
+	 * @param timestamp
+	 *        the value of {@link System#nanoTime()} at the time the record is emitted
+	 */
+	public void setTimestamp(final long timestamp) {
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * Returns the time the record has been emitted at.
+	 * 
+	 * @return the value of {@link System#nanoTime()} at the time the record has been emitted
+	 */
+	public long getTimestamp() {
+		return this.timestamp;
+	}
+
+	/**
+	 * Returns the size of the record in serialized form.
+	 * 
+	 * @return the size of the record in serialized form in bytes
+	 */
+	public int getSize() {
+		return HEADER_SIZE + this.payload.length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(final DataOutput out) throws IOException {
+
+		out.writeLong(this.timestamp);
+		out.writeInt(this.payload.length);
+		out.write(this.payload);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void read(final DataInput in) throws IOException {
+
+		this.timestamp = in.readLong();
+		final int length = in.readInt();
+		if (this.payload.length != length) {
+			this.payload = new byte[length];
+		}
+		in.readFully(this.payload);
+	}
+}
@@ -0,0 +1,208 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.example.speedtest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * This class bundles the configuration keys shared by the tasks of the shuffle benchmark and the means to exchange
+ * the statistics the tasks collect with the benchmark driver. Each subtask writes its statistics to a separate
+ * properties file in a results directory on the local file system, so the driver and all task managers must run on the
+ * same host.
+ */
+final class ShuffleBenchmarkStatistics {
+
+	/**
+	 * Configuration key for the size of the emitted records in bytes.
+	 */
+	static final String RECORD_SIZE_KEY = "shuffle.benchmark.record.size";
+
+	/**
+	 * Configuration key for the number of records each producer subtask emits.
+	 */
+	static final String NUMBER_OF_RECORDS_KEY = "shuffle.benchmark.records";
+
+	/**
+	 * Configuration key to indicate whether the producers shall broadcast each record to all consumers.
+	 */
+	static final String BROADCAST_KEY = "shuffle.benchmark.broadcast";
+
+	/**
+	 * Configuration key for the directory the subtasks write their statistics to.
+	 */
+	static final String RESULTS_DIR_KEY = "shuffle.benchmark.results.dir";
+
+	/**
+	 * Configuration key for the number of records a consumer receives between two latency samples.
+	 */
+	static final String LATENCY_SAMPLING_INTERVAL_KEY = "shuffle.benchmark.latency.samplinginterval";
+
+	/**
+	 * The default number of records a consumer receives between two latency samples.
+	 */
+	static final int DEFAULT_LATENCY_SAMPLING_INTERVAL = 64;
+
+	/**
+	 * The maximum number of latency samples a single consumer records.
+	 */
+	static final int MAXIMUM_NUMBER_OF_LATENCY_SAMPLES = 16384;
+
+	/**
+	 * Statistics key for the number of records a subtask has emitted or received.
+	 */
+	static final String RECORDS = "records";
+
+	/**
+	 * Statistics key for the number of bytes a subtask has emitted or received.
+	 */
+	static final String BYTES = "bytes";
+
+	/**
+	 * Statistics key for the value of {@link System#currentTimeMillis()} at which a subtask has started its work. Unlike
+	 * {@link System#nanoTime()}, the wall clock time can be compared across the JVMs of the benchmark.
+	 */
+	static final String START_TIME = "startTime";
+
+	/**
+	 * Statistics key for the value of {@link System#currentTimeMillis()} at which a subtask has finished its work.
+	 */
+	static final String END_TIME = "endTime";
+
+	/**
+	 * Statistics key for the time in nanoseconds a producer has spent emitting its records, measured within its JVM.
+	 */
+	static final String DURATION = "duration";
+
+	/**
+	 * Statistics key for the accumulated time in nanoseconds a producer has waited for write buffers.
+	 */
+	static final String BUFFER_WAIT_TIME = "bufferWaitTime";
+
+	/**
+	 * Statistics key for the comma-separated latency samples in nanoseconds recorded by a consumer.
+	 */
+	static final String LATENCY_SAMPLES = "latencySamples";
+
+	/**
+	 * The file name prefix for the statistics of producer subtasks.
+	 */
+	static final String PRODUCER_PREFIX = "producer-";
+
+	/**
+	 * The file name prefix for the statistics of consumer subtasks.
+	 */
+	static final String CONSUMER_PREFIX = "consumer-";
+
+	/**
+	 * The file name suffix for statistics files.
+	 */
+	private static final String SUFFIX = ".properties";
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private ShuffleBenchmarkStatistics() {
+	}
+
+	/**
+	 * Checks whether the values of {@link System#nanoTime()} can be compared across the JVMs of a host. This is only
+	 * guaranteed on Linux, where all JVMs read the same monotonic system clock. On other platforms, the origin of
+	 * {@link System#nanoTime()} may differ from JVM to JVM, so no record latencies can be computed.
+	 * 
+	 * @return <code>true</code> if the values of {@link System#nanoTime()} can be compared across JVMs,
+	 *         <code>false</code> otherwise
+	 */
+	static boolean isNanoTimeComparableAcrossJVMs() {
+
+		return System.getProperty("os.name", "").startsWith("Linux");
+	}
+
+	/**
+	 * Writes the statistics of a single subtask to the given results directory.
+	 * 
+	 * @param resultsDir
+	 *        the path of the results directory
+	 * @param prefix
+	 *        the file name prefix indicating the type of subtask
+	 * @param indexInSubtaskGroup
+	 *        the index of the subtask within its group
+	 * @param statistics
+	 *        the statistics to write
+	 * @throws IOException
+	 *         thrown if an error occurs while writing the statistics
+	 */
+	static void write(final String resultsDir, final String prefix, final int indexInSubtaskGroup,
+			final Properties statistics) throws IOException {
+
+		if (resultsDir == null) {
+			throw new IOException("No results directory configured");
+		}
+
+		final File file = new File(resultsDir, prefix + indexInSubtaskGroup + SUFFIX);
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			statistics.store(out, null);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads the statistics of all subtasks with the given prefix from the results directory.
+	 * 
+	 * @param resultsDir
+	 *        the results directory
+	 * @param prefix
+	 *        the file name prefix indicating the type of subtask
+	 * @return the statistics of all subtasks of the given type
+	 * @throws IOException
+	 *         thrown if an error occurs while reading the statistics
+	 */
+	static List<Properties> read(final File resultsDir, final String prefix) throws IOException {
+
+		final List<Properties> statistics = new ArrayList<Properties>();
+		final File[] files = resultsDir.listFiles();
+		if (files == null) {
+			return statistics;
+		}
+
+		for (final File file : files) {
+			final String name = file.getName();
+			if (!name.startsWith(prefix) || !name.endsWith(SUFFIX)) {
+				continue;
+			}
+
+			final Properties properties = new Properties();
+			final InputStream in = new FileInputStream(file);
+			try {
+				properties.load(in);
+			} finally {
+				in.close();
+			}
+			statistics.add(properties);
+		}
+
+		return statistics;
+	}
+}
@@ -172,6 +172,15 @@ final class CheckpointEnvironment implements Environment {
 		return this.environment.getTaskName();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addCompletionMessage(final String message) {
+
+		this.environment.addCompletionMessage(message);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
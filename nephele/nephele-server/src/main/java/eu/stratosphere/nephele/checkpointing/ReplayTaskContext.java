@@ -154,6 +154,24 @@ final class ReplayTaskContext implements TaskContext, BufferProvider, Asynchrono
 		this.localBufferPool.setDesignatedNumberOfBuffers(numberOfBuffers);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void updateBufferDemand(final long interval) {
+
+		this.localBufferPool.updateDemand(interval);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getBufferDemand() {
+
+		return this.localBufferPool.getDemand();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -178,11 +196,14 @@ final class ReplayTaskContext implements TaskContext, BufferProvider, Asynchrono
 		final int ava = this.localBufferPool.getNumberOfAvailableBuffers();
 		final int req = this.localBufferPool.getRequestedNumberOfBuffers();
 		final int des = this.localBufferPool.getDesignatedNumberOfBuffers();
+		final double dem = this.localBufferPool.getDemand();
+		final long wai = this.localBufferPool.getWaitTime();
 
 		final Environment environment = this.task.getEnvironment();
 
 		System.out.println("\t\t" + environment.getTaskName() + " (Replay): " + ava + " available, " + req
-			+ " requested, " + des + " designated");
+			+ " requested, " + des + " designated, " + String.format("%.1f", dem)
+			+ " demand, " + wai + " ms waited");
 	}
 
 	/**
@@ -34,13 +34,16 @@ import eu.stratosphere.nephele.deployment.GateDeploymentDescriptor;
 import eu.stratosphere.nephele.deployment.TaskDeploymentDescriptor;
 import eu.stratosphere.nephele.io.ChannelSelector;
 import eu.stratosphere.nephele.io.GateID;
+import eu.stratosphere.nephele.io.HeldBackBufferHandler;
 import eu.stratosphere.nephele.io.InputGate;
 import eu.stratosphere.nephele.io.OutputGate;
 import eu.stratosphere.nephele.io.RecordDeserializerFactory;
 import eu.stratosphere.nephele.io.RuntimeInputGate;
 import eu.stratosphere.nephele.io.RuntimeOutputGate;
+import eu.stratosphere.nephele.io.channels.AbstractOutputChannel;
 import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.io.channels.ChannelType;
+import eu.stratosphere.nephele.io.channels.bytebuffered.AbstractByteBufferedOutputChannel;
 import eu.stratosphere.nephele.io.compression.CompressionException;
 import eu.stratosphere.nephele.io.compression.CompressionLevel;
 import eu.stratosphere.nephele.jobgraph.JobID;
@@ -60,7 +63,7 @@ import eu.stratosphere.nephele.util.StringUtils;
  * 
  * @author warneke
  */
-public class RuntimeEnvironment implements Environment, Runnable {
+public class RuntimeEnvironment implements Environment, HeldBackBufferHandler, Runnable {
 
 	/**
 	 * The log object used for debugging.
@@ -159,6 +162,11 @@ public class RuntimeEnvironment implements Environment, Runnable {
 	 */
 	private final String taskName;
 
+	/**
+	 * The message to report along with the successful completion of the task, possibly <code>null</code>.
+	 */
+	private volatile String completionMessage = null;
+
 	/**
 	 * Creates a new runtime environment object which contains the runtime information for the encapsulated Nephele
 	 * task.
@@ -425,7 +433,7 @@ public class RuntimeEnvironment implements Environment, Runnable {
 		releaseAllChannelResources();
 
 		// Finally, switch execution state to FINISHED and report to job manager
-		changeExecutionState(ExecutionState.FINISHED, null);
+		changeExecutionState(ExecutionState.FINISHED, this.completionMessage);
 	}
 
 	/**
@@ -480,7 +488,7 @@ public class RuntimeEnvironment implements Environment, Runnable {
 	public <T extends Record> InputGate<T> createInputGate(final GateID gateID,
 										final RecordDeserializerFactory<T> deserializerFactory) {
 		final RuntimeInputGate<T> rig = new RuntimeInputGate<T>(getJobID(), gateID, deserializerFactory,
-			getNumberOfInputGates());
+			getNumberOfInputGates(), this);
 		return rig;
 	}
 
@@ -590,6 +598,56 @@ public class RuntimeEnvironment implements Environment, Runnable {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getCheckInterval() {
+
+		long minimumTimeout = Long.MAX_VALUE;
+		for (int i = 0; i < this.outputGates.size(); ++i) {
+			final OutputGate<? extends Record> og = this.outputGates.get(i);
+			for (int j = 0; j < og.getNumberOfOutputChannels(); ++j) {
+				final AbstractOutputChannel<? extends Record> oc = og.getOutputChannel(j);
+				if (oc instanceof AbstractByteBufferedOutputChannel) {
+					final long bufferTimeout = ((AbstractByteBufferedOutputChannel<? extends Record>) oc)
+						.getBufferTimeout();
+					if (bufferTimeout > 0L) {
+						minimumTimeout = Math.min(minimumTimeout, bufferTimeout);
+					}
+				}
+			}
+		}
+
+		if (minimumTimeout == Long.MAX_VALUE) {
+			return -1L;
+		}
+
+		return Math.max(1L, minimumTimeout / 2L);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void forwardHeldBackBuffers() throws IOException, InterruptedException {
+
+		// Threads other than the task thread, for example the reading threads of sorters, must not touch the buffers
+		if (Thread.currentThread() != this.executingThread) {
+			return;
+		}
+
+		for (int i = 0; i < this.outputGates.size(); ++i) {
+			final OutputGate<? extends Record> og = this.outputGates.get(i);
+			for (int j = 0; j < og.getNumberOfOutputChannels(); ++j) {
+				final AbstractOutputChannel<? extends Record> oc = og.getOutputChannel(j);
+				if (oc instanceof AbstractByteBufferedOutputChannel) {
+					((AbstractByteBufferedOutputChannel<? extends Record>) oc).flushIfRequested();
+				}
+			}
+		}
+	}
+
 	/**
 	 * Blocks until all output channels are closed.
 	 * 
@@ -747,6 +805,23 @@ public class RuntimeEnvironment implements Environment, Runnable {
 		return this.taskName;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void addCompletionMessage(final String message) {
+
+		if (message == null) {
+			return;
+		}
+
+		if (this.completionMessage == null) {
+			this.completionMessage = message;
+		} else {
+			this.completionMessage = this.completionMessage + "; " + message;
+		}
+	}
+
 	/**
 	 * Returns the name of the task with its index in the subtask group and the total number of subtasks.
 	 * 
@@ -0,0 +1,46 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.io;
+
+import java.io.IOException;
+
+/**
+ * A held back buffer handler forwards the partially filled output buffers a task has held back beyond their buffer
+ * timeout. It is called by the task's input gates while the task thread waits for input, so those buffers are
+ * forwarded even if the task does not write another record for a long time.
+ */
+public interface HeldBackBufferHandler {
+
+	/**
+	 * Returns the interval in milliseconds in which a waiting input gate shall call
+	 * {@link #forwardHeldBackBuffers()}.
+	 * 
+	 * @return the interval in milliseconds or <code>-1</code> if the task does not hold back any output buffers
+	 */
+	long getCheckInterval();
+
+	/**
+	 * Forwards all output buffers of the task whose buffer timeout has expired. The method must only have an effect
+	 * when called by the task thread.
+	 * 
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while forwarding the buffers
+	 * @throws InterruptedException
+	 *         thrown if the task thread is interrupted while forwarding the buffers
+	 */
+	void forwardHeldBackBuffers() throws IOException, InterruptedException;
+}
@@ -22,6 +22,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.logging.Log;
@@ -90,7 +91,14 @@ public class RuntimeInputGate<T extends Record> extends AbstractGate<T> implemen
 	private int channelToReadFrom = -1;
 
 	/**
-	 * Constructs a new runtime input gate.
+	 * The handler which forwards the task's held back output buffers while the gate waits for input, possibly
+	 * <code>null</code>.
+	 */
+	private final HeldBackBufferHandler heldBackBufferHandler;
+
+	/**
+	 * Constructs a new runtime input gate which does not forward any held back output buffers while it waits for
+	 * input.
 	 * 
 	 * @param jobID
 	 *        the ID of the job this input gate belongs to
@@ -103,8 +111,30 @@ public class RuntimeInputGate<T extends Record> extends AbstractGate<T> implemen
 	 */
 	public RuntimeInputGate(final JobID jobID, final GateID gateID,
 						final RecordDeserializerFactory<T> deserializerFactory, final int index) {
+		this(jobID, gateID, deserializerFactory, index, null);
+	}
+
+	/**
+	 * Constructs a new runtime input gate.
+	 * 
+	 * @param jobID
+	 *        the ID of the job this input gate belongs to
+	 * @param gateID
+	 *        the ID of the gate
+	 * @param deserializerFactory
+	 *        The factory used to instantiate the deserializers that construct records from byte streams.
+	 * @param index
+	 *        the index assigned to this input gate at the {@link Environment} object
+	 * @param heldBackBufferHandler
+	 *        the handler which forwards the task's held back output buffers while the gate waits for input, possibly
+	 *        <code>null</code>
+	 */
+	public RuntimeInputGate(final JobID jobID, final GateID gateID,
+						final RecordDeserializerFactory<T> deserializerFactory, final int index,
+						final HeldBackBufferHandler heldBackBufferHandler) {
 		super(jobID, gateID, index);
 		this.deserializerFactory = deserializerFactory;
+		this.heldBackBufferHandler = heldBackBufferHandler;
 	}
 
 	/**
@@ -282,13 +312,37 @@ public class RuntimeInputGate<T extends Record> extends AbstractGate<T> implemen
 	/**
 	 * This method returns the index of a channel which has at least
 	 * one record available. The method may block until at least one
-	 * channel has become ready.
+	 * channel has become ready. While blocked, the task's output buffers
+	 * which have been held back beyond their buffer timeout are forwarded.
 	 * 
 	 * @return the index of the channel which has at least one record available
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while forwarding held back output buffers
+	 * @throws InterruptedException
+	 *         thrown if the thread is interrupted while waiting
 	 */
-	public int waitForAnyChannelToBecomeAvailable() throws InterruptedException {
+	public int waitForAnyChannelToBecomeAvailable() throws IOException, InterruptedException {
+
+		Integer channelIndex = this.availableChannels.poll();
+		if (channelIndex != null) {
+			return channelIndex.intValue();
+		}
 
-		return this.availableChannels.take().intValue();
+		final long checkInterval = (this.heldBackBufferHandler == null) ? -1L : this.heldBackBufferHandler
+			.getCheckInterval();
+		if (checkInterval <= 0L) {
+			return this.availableChannels.take().intValue();
+		}
+
+		while (true) {
+
+			this.heldBackBufferHandler.forwardHeldBackBuffers();
+
+			channelIndex = this.availableChannels.poll(checkInterval, TimeUnit.MILLISECONDS);
+			if (channelIndex != null) {
+				return channelIndex.intValue();
+			}
+		}
 	}
 
 	/**
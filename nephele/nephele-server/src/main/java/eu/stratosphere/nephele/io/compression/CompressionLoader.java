@@ -37,6 +37,16 @@ public class CompressionLoader {
 
 	private static final String NATIVELIBRARYCACHENAME = "nativeLibraryCache";
 
+	/**
+	 * The library used for light compression unless configured otherwise. It does not require any native code.
+	 */
+	private static final String DEFAULT_LIGHT_COMPRESSION_LIBRARY = "eu.stratosphere.nephele.io.compression.library.lz4.Lz4Library";
+
+	/**
+	 * The library used for dynamic compression unless configured otherwise.
+	 */
+	private static final String DEFAULT_DYNAMIC_COMPRESSION_LIBRARY = "eu.stratosphere.nephele.io.compression.library.dynamic.DynamicLibrary";
+
 	public static synchronized void init(final CompressionLevel compressionLevel) {
 
 		// Return immediately, if implementation for compression level has already been loaded
@@ -45,9 +55,11 @@ public class CompressionLoader {
 		}
 
 		String keySuffix = null;
+		String defaultLibraryClass = null;
 		switch (compressionLevel) {
 		case LIGHT_COMPRESSION:
 			keySuffix = "lightClass";
+			defaultLibraryClass = DEFAULT_LIGHT_COMPRESSION_LIBRARY;
 			break;
 		case MEDIUM_COMPRESSION:
 			keySuffix = "mediumClass";
@@ -57,6 +69,7 @@ public class CompressionLoader {
 			break;
 		case DYNAMIC_COMPRESSION:
 			keySuffix = "dynamicClass";
+			defaultLibraryClass = DEFAULT_DYNAMIC_COMPRESSION_LIBRARY;
 			break;
 		}
 
@@ -65,7 +78,7 @@ public class CompressionLoader {
 		}
 
 		final String key = "channel.compression." + keySuffix;
-		final String libraryClass = GlobalConfiguration.getString(key, null);
+		final String libraryClass = GlobalConfiguration.getString(key, defaultLibraryClass);
 		if (libraryClass == null) {
 			throw new RuntimeException("No library class for compression Level " + compressionLevel + " configured");
 		}
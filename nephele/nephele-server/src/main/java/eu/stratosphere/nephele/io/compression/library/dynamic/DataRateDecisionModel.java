@@ -47,6 +47,8 @@ public final class DataRateDecisionModel implements DecisionModel {
 
 	private final double DELTA = 0.2f;
 
+	private long lastTimestamp = -1L;
+
 	public DataRateDecisionModel(int numberOfAvailableCompressionLibraries) {
 		this.numberOfAvailableCompressionLibraries = numberOfAvailableCompressionLibraries;
 		this.backoff = new int[numberOfAvailableCompressionLibraries];
@@ -61,11 +63,20 @@ public final class DataRateDecisionModel implements DecisionModel {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public int getCompressionLevelForNextBuffer(int sizeOfLastUncompressedBuffer, int durationOfLastBufferTransfer) {
+	public int getCompressionLevelForNextBuffer(final int uncompressedSize, final int compressedSize,
+			final long compressionTime, final long timestamp) {
+
+		if (this.lastTimestamp < 0L) {
+			this.lastTimestamp = timestamp;
+			return this.currentSelection;
+		}
+
+		final int durationOfLastBufferTransfer = (int) (timestamp - this.lastTimestamp);
+		this.lastTimestamp = timestamp;
 
 		this.sumOfTimeStamps += durationOfLastBufferTransfer;
 		if (this.sumOfTimeStamps < GRANULARITY) {
-			this.sumOfBufferSizes += sizeOfLastUncompressedBuffer;
+			this.sumOfBufferSizes += uncompressedSize;
 			this.sumOfTransferDurations += durationOfLastBufferTransfer; // TODO: Remove possible redundancy with
 																			// sumOfTimeStamps
 		} else {
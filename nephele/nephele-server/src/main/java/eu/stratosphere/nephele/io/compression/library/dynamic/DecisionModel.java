@@ -15,7 +15,28 @@
 
 package eu.stratosphere.nephele.io.compression.library.dynamic;
 
+/**
+ * A decision model selects the compression library a {@link DynamicCompressor} applies to the next buffer of its
+ * channel based on the observations made while compressing the previous buffers.
+ * 
+ * @author warneke
+ */
 public interface DecisionModel {
 
-	int getCompressionLevelForNextBuffer(int sizeOfLastUncompressedBuffer, int durationOfLastBufferTransfer);
+	/**
+	 * Reports the compression of a buffer to the decision model and returns the index of the compression library to
+	 * be used for the next buffer.
+	 * 
+	 * @param uncompressedSize
+	 *        the number of bytes of the buffer before compression
+	 * @param compressedSize
+	 *        the number of bytes of the buffer after compression
+	 * @param compressionTime
+	 *        the CPU time in nanoseconds spent on compressing the buffer
+	 * @param timestamp
+	 *        the time in milliseconds at which the buffer has been compressed
+	 * @return the index of the compression library to be used for the next buffer
+	 */
+	int getCompressionLevelForNextBuffer(int uncompressedSize, int compressedSize, long compressionTime,
+			long timestamp);
 }
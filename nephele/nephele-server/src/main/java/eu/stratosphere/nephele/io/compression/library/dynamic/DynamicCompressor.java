@@ -16,36 +16,73 @@
 package eu.stratosphere.nephele.io.compression.library.dynamic;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.nephele.io.channels.Buffer;
 import eu.stratosphere.nephele.io.compression.CompressionBufferProvider;
 import eu.stratosphere.nephele.io.compression.CompressionException;
 import eu.stratosphere.nephele.io.compression.CompressionLibrary;
 import eu.stratosphere.nephele.io.compression.Compressor;
 
+/**
+ * The dynamic compressor compresses each buffer with one of several compression libraries. After each buffer it
+ * reports the buffer's size before and after compression as well as the CPU time spent on the compression to its
+ * {@link DecisionModel} which selects the library for the next buffer. Since the statistics are specific to the data
+ * and the network path of a channel, each output channel is expected to use its own dynamic compressor.
+ * 
+ * @author warneke
+ */
 public class DynamicCompressor implements Compressor {
 
-	private final Compressor[] compressors;
+	/**
+	 * The configuration key for the decision model used by the dynamic compressor.
+	 */
+	public static final String DECISION_MODEL_KEY = "channel.compression.dynamic.decisionModel";
 
-	private int selectedCompressor = 0;
+	/**
+	 * The name of the {@link ThroughputDecisionModel}, the default decision model.
+	 */
+	public static final String THROUGHPUT_DECISION_MODEL = "throughput";
 
-	private long lastTimestamp = -1;
+	/**
+	 * The name of the {@link DataRateDecisionModel}.
+	 */
+	public static final String DATA_RATE_DECISION_MODEL = "datarate";
 
-	private int sizeOfLastUncompressedBuffer = -1;
+	private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+	private final Compressor[] compressors;
+
+	private int selectedCompressor = 0;
 
 	private final DecisionModel decisionModel;
 
+	private final boolean measureCpuTime;
+
 	public DynamicCompressor(final CompressionLibrary[] compressionLibraries,
 			final CompressionBufferProvider bufferProvider) throws CompressionException {
 
-		// Initialize the different compressors
+		// Initialize the different compressors, each of which releases one reference to the buffer provider
 		this.compressors = new Compressor[compressionLibraries.length];
 		for (int i = 0; i < this.compressors.length; i++) {
+			if (i > 0) {
+				bufferProvider.increaseReferenceCounter();
+			}
 			this.compressors[i] = compressionLibraries[i].createNewCompressor(bufferProvider);
 		}
 
 		// Initialize decision model
-		this.decisionModel = new DataRateDecisionModel(this.compressors.length);
+		final String decisionModel = GlobalConfiguration.getString(DECISION_MODEL_KEY, THROUGHPUT_DECISION_MODEL);
+		if (DATA_RATE_DECISION_MODEL.equals(decisionModel)) {
+			this.decisionModel = new DataRateDecisionModel(this.compressors.length);
+		} else {
+			this.decisionModel = new ThroughputDecisionModel(this.compressors.length);
+		}
+
+		this.measureCpuTime = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported()
+			&& THREAD_MX_BEAN.isThreadCpuTimeEnabled();
 	}
 
 	/**
@@ -54,25 +91,47 @@ public class DynamicCompressor implements Compressor {
 	@Override
 	public Buffer compress(final Buffer uncompressedData) throws IOException {
 
-		this.sizeOfLastUncompressedBuffer = uncompressedData.size();
+		// Buffers are still in write mode, so their content ends at the current write position
+		final int uncompressedSize = uncompressedData.size() - uncompressedData.remaining();
 
-		return this.compressors[this.selectedCompressor].compress(uncompressedData);
-	}
+		final long start = currentTime();
+		final Buffer compressedData = this.compressors[this.selectedCompressor].compress(uncompressedData);
+		final long compressionTime = currentTime() - start;
 
-	@Override
-	public int getCurrentInternalCompressionLibraryIndex() {
+		final int compressedSize = compressedData.size() - compressedData.remaining();
+
+		this.selectedCompressor = this.decisionModel.getCompressionLevelForNextBuffer(uncompressedSize,
+			compressedSize, compressionTime, System.currentTimeMillis());
 
-		int oldVal = this.selectedCompressor;
-		final long timestamp = System.currentTimeMillis();
+		return compressedData;
+	}
+
+	/**
+	 * Returns the CPU time of the current thread in nanoseconds or, if the CPU time cannot be measured, the current
+	 * value of the system timer.
+	 * 
+	 * @return the current time in nanoseconds
+	 */
+	private long currentTime() {
 
-		if (this.lastTimestamp > 0) {
-			this.selectedCompressor = this.decisionModel.getCompressionLevelForNextBuffer(
-				this.sizeOfLastUncompressedBuffer, (int) (timestamp - this.lastTimestamp));
+		if (this.measureCpuTime) {
+			return THREAD_MX_BEAN.getCurrentThreadCpuTime();
 		}
 
-		this.lastTimestamp = timestamp;
+		return System.nanoTime();
+	}
+
+	/**
+	 * Returns the index of the compression library which will be used to compress the next buffer. The selection only
+	 * changes while a buffer is compressed, so a receiver which is told about a new index after the current buffer
+	 * will use the matching decompressor for the next buffer.
+	 * 
+	 * @return the index of the compression library which will be used to compress the next buffer
+	 */
+	@Override
+	public int getCurrentInternalCompressionLibraryIndex() {
 
-		return oldVal;
+		return this.selectedCompressor;
 	}
 
 	/**
@@ -32,9 +32,12 @@ public class DynamicDecompressor implements Decompressor {
 	public DynamicDecompressor(final CompressionLibrary[] compressionLibraries,
 			final CompressionBufferProvider bufferProvider) throws CompressionException {
 
-		// Initialize the different compressors
+		// Initialize the different decompressors, each of which releases one reference to the buffer provider
 		this.decompressors = new Decompressor[compressionLibraries.length];
 		for (int i = 0; i < this.decompressors.length; i++) {
+			if (i > 0) {
+				bufferProvider.increaseReferenceCounter();
+			}
 			this.decompressors[i] = compressionLibraries[i].createNewDecompressor(bufferProvider);
 		}
 	}
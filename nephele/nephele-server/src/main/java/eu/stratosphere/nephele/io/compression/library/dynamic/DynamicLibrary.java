@@ -15,6 +15,12 @@
 
 package eu.stratosphere.nephele.io.compression.library.dynamic;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import eu.stratosphere.nephele.io.compression.CompressionBufferProvider;
 import eu.stratosphere.nephele.io.compression.CompressionException;
 import eu.stratosphere.nephele.io.compression.CompressionLevel;
@@ -23,9 +29,17 @@ import eu.stratosphere.nephele.io.compression.CompressionLoader;
 import eu.stratosphere.nephele.io.compression.Compressor;
 import eu.stratosphere.nephele.io.compression.Decompressor;
 
+/**
+ * The dynamic library combines the libraries configured for the static compression levels. Index <code>0</code>
+ * always refers to a library which does not compress the data at all, the remaining indices refer to the light,
+ * medium and heavy compression library in that order, as far as they are available. Since the indices are exchanged
+ * between sender and receiver, all task managers must be configured with the same compression libraries.
+ * 
+ * @author warneke
+ */
 public class DynamicLibrary implements CompressionLibrary {
 
-	private static final int NUMBER_OF_COMPRESSION_LEVELS = 4;
+	private static final Log LOG = LogFactory.getLog(DynamicLibrary.class);
 
 	private final CompressionLibrary[] libraries;
 
@@ -35,11 +49,23 @@ public class DynamicLibrary implements CompressionLibrary {
 
 	public DynamicLibrary(String nativeLibraryDir) throws CompressionException {
 
-		libraries = new CompressionLibrary[NUMBER_OF_COMPRESSION_LEVELS];
-		libraries[0] = new StubCompressionLibrary();
-		libraries[1] = CompressionLoader.getCompressionLibraryByCompressionLevel(CompressionLevel.LIGHT_COMPRESSION);
-		libraries[2] = CompressionLoader.getCompressionLibraryByCompressionLevel(CompressionLevel.MEDIUM_COMPRESSION);
-		libraries[3] = CompressionLoader.getCompressionLibraryByCompressionLevel(CompressionLevel.HEAVY_COMPRESSION);
+		final List<CompressionLibrary> availableLibraries = new ArrayList<CompressionLibrary>();
+		availableLibraries.add(new StubCompressionLibrary());
+
+		final CompressionLevel[] levels = { CompressionLevel.LIGHT_COMPRESSION, CompressionLevel.MEDIUM_COMPRESSION,
+			CompressionLevel.HEAVY_COMPRESSION };
+		for (final CompressionLevel level : levels) {
+			try {
+				final CompressionLibrary library = CompressionLoader.getCompressionLibraryByCompressionLevel(level);
+				if (library != null) {
+					availableLibraries.add(library);
+				}
+			} catch (RuntimeException e) {
+				LOG.warn("No library for " + level + " available to dynamic compression: " + e.getMessage());
+			}
+		}
+
+		this.libraries = availableLibraries.toArray(new CompressionLibrary[availableLibraries.size()]);
 	}
 
 	/**
@@ -59,7 +85,7 @@ public class DynamicLibrary implements CompressionLibrary {
 		 * calculated buffer.
 		 */
 		int retVal = Integer.MAX_VALUE;
-		for (int i = 0; i < NUMBER_OF_COMPRESSION_LEVELS; i++) {
+		for (int i = 0; i < this.libraries.length; i++) {
 			retVal = Math.min(retVal, this.libraries[i].getUncompressedBufferSize(compressedBufferSize));
 		}
 
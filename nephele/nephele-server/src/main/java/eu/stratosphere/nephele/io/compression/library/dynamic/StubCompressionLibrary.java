@@ -47,7 +47,7 @@ public class StubCompressionLibrary implements CompressionLibrary {
 	@Override
 	public Compressor createNewCompressor(final CompressionBufferProvider bufferProvider) {
 
-		return new StubCompressor();
+		return new StubCompressor(bufferProvider);
 	}
 
 	/**
@@ -56,6 +56,6 @@ public class StubCompressionLibrary implements CompressionLibrary {
 	@Override
 	public Decompressor createNewDecompressor(final CompressionBufferProvider bufferProvider) {
 
-		return new StubDecompressor();
+		return new StubDecompressor(bufferProvider);
 	}
 }
@@ -18,10 +18,19 @@ package eu.stratosphere.nephele.io.compression.library.dynamic;
 import java.io.IOException;
 
 import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.compression.CompressionBufferProvider;
 import eu.stratosphere.nephele.io.compression.Decompressor;
 
 public class StubDecompressor implements Decompressor {
 
+	private final CompressionBufferProvider bufferProvider;
+
+	private int channelCounter = 1;
+
+	public StubDecompressor(final CompressionBufferProvider bufferProvider) {
+		this.bufferProvider = bufferProvider;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -46,7 +55,12 @@ public class StubDecompressor implements Decompressor {
 	@Override
 	public void shutdown() {
 
-		// Nothing to do here
+		// Release the reference to the buffer provider like any other compression library
+		--this.channelCounter;
+
+		if (this.channelCounter == 0) {
+			this.bufferProvider.shutdown();
+		}
 	}
 
 	/**
@@ -55,7 +69,7 @@ public class StubDecompressor implements Decompressor {
 	@Override
 	public void increaseChannelCounter() {
 
-		// Nothing to do here
+		++this.channelCounter;
 	}
 
 }
@@ -0,0 +1,328 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.io.compression.library.dynamic;
+
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+
+/**
+ * This decision model picks the compression library which maximizes the effective throughput of a channel, i.e. the
+ * number of uncompressed bytes the channel forwards per second.
+ * <p>
+ * The model divides the lifetime of the channel into sampling intervals. For each interval it records the effective
+ * throughput, the compression ratio and the CPU time spent per byte for the library used in that interval. Libraries
+ * which have not been used for a while are periodically probed for a single interval, so changes of the data or of
+ * the network conditions are detected. Libraries which turned out not to compress the data at all are probed less and
+ * less frequently. Among the libraries whose throughput is close to the best one, the model prefers the library which
+ * costs the least CPU time.
+ */
+public final class ThroughputDecisionModel implements DecisionModel {
+
+	/**
+	 * The configuration key for the length of a sampling interval in milliseconds.
+	 */
+	public static final String SAMPLING_INTERVAL_KEY = "channel.compression.dynamic.samplingInterval";
+
+	/**
+	 * The default length of a sampling interval in milliseconds.
+	 */
+	public static final long DEFAULT_SAMPLING_INTERVAL = 500L;
+
+	/**
+	 * The configuration key for the number of sampling intervals after which another library is probed.
+	 */
+	public static final String EXPLORATION_PERIOD_KEY = "channel.compression.dynamic.explorationPeriod";
+
+	/**
+	 * The default number of sampling intervals after which another library is probed.
+	 */
+	public static final int DEFAULT_EXPLORATION_PERIOD = 8;
+
+	/**
+	 * Compression ratios above this value are considered as incompressible data.
+	 */
+	private static final double INCOMPRESSIBLE_RATIO = 0.95;
+
+	/**
+	 * The maximum exponent of the backoff for probing libraries which do not compress the data.
+	 */
+	private static final int MAXIMUM_BACKOFF = 5;
+
+	/**
+	 * Libraries whose throughput is within this fraction of the best throughput are considered equally fast.
+	 */
+	private static final double TOLERANCE = 0.1;
+
+	/**
+	 * The weight of a new sample in the smoothed statistics.
+	 */
+	private static final double SMOOTHING_FACTOR = 0.5;
+
+	private final long samplingInterval;
+
+	private final int explorationPeriod;
+
+	/**
+	 * The smoothed effective throughput in bytes per second for each library or a negative value if the library has
+	 * not been used yet.
+	 */
+	private final double[] throughput;
+
+	/**
+	 * The smoothed ratio of compressed to uncompressed bytes for each library.
+	 */
+	private final double[] ratio;
+
+	/**
+	 * The smoothed CPU time in nanoseconds spent per uncompressed byte for each library.
+	 */
+	private final double[] cost;
+
+	/**
+	 * The number of the sampling interval in which each library has been used for the last time.
+	 */
+	private final int[] lastUsed;
+
+	/**
+	 * The backoff exponent for probing each library.
+	 */
+	private final int[] backoff;
+
+	private int currentSelection = 0;
+
+	private boolean probing = false;
+
+	private int intervalsSinceExploration = 0;
+
+	private int numberOfIntervals = 0;
+
+	private long intervalStart = -1L;
+
+	private long uncompressedBytesInInterval = 0L;
+
+	private long compressedBytesInInterval = 0L;
+
+	private long compressionTimeInInterval = 0L;
+
+	/**
+	 * Constructs a new throughput decision model with the sampling interval and the exploration period taken from the
+	 * global configuration.
+	 * 
+	 * @param numberOfAvailableCompressionLibraries
+	 *        the number of compression libraries to choose from
+	 */
+	public ThroughputDecisionModel(final int numberOfAvailableCompressionLibraries) {
+		this(numberOfAvailableCompressionLibraries, GlobalConfiguration.getLong(SAMPLING_INTERVAL_KEY,
+			DEFAULT_SAMPLING_INTERVAL), GlobalConfiguration.getInteger(EXPLORATION_PERIOD_KEY,
+			DEFAULT_EXPLORATION_PERIOD));
+	}
+
+	/**
+	 * Constructs a new throughput decision model.
+	 * 
+	 * @param numberOfAvailableCompressionLibraries
+	 *        the number of compression libraries to choose from
+	 * @param samplingInterval
+	 *        the length of a sampling interval in milliseconds
+	 * @param explorationPeriod
+	 *        the number of sampling intervals after which another library is probed
+	 */
+	public ThroughputDecisionModel(final int numberOfAvailableCompressionLibraries, final long samplingInterval,
+			final int explorationPeriod) {
+
+		this.samplingInterval = Math.max(1L, samplingInterval);
+		this.explorationPeriod = Math.max(1, explorationPeriod);
+
+		this.throughput = new double[numberOfAvailableCompressionLibraries];
+		this.ratio = new double[numberOfAvailableCompressionLibraries];
+		this.cost = new double[numberOfAvailableCompressionLibraries];
+		this.lastUsed = new int[numberOfAvailableCompressionLibraries];
+		this.backoff = new int[numberOfAvailableCompressionLibraries];
+
+		for (int i = 0; i < numberOfAvailableCompressionLibraries; ++i) {
+			this.throughput[i] = -1.0;
+			this.ratio[i] = 1.0;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getCompressionLevelForNextBuffer(final int uncompressedSize, final int compressedSize,
+			final long compressionTime, final long timestamp) {
+
+		// The time it took to fill the very first buffer is unknown, so it does not count
+		if (this.intervalStart < 0L) {
+			this.intervalStart = timestamp;
+			return this.currentSelection;
+		}
+
+		this.uncompressedBytesInInterval += uncompressedSize;
+		this.compressedBytesInInterval += compressedSize;
+		this.compressionTimeInInterval += compressionTime;
+
+		final long duration = timestamp - this.intervalStart;
+		if (duration < this.samplingInterval || this.uncompressedBytesInInterval == 0L) {
+			return this.currentSelection;
+		}
+
+		recordSample(this.currentSelection, (double) this.uncompressedBytesInInterval * 1000.0 / (double) duration,
+			(double) this.compressedBytesInInterval / (double) this.uncompressedBytesInInterval,
+			(double) this.compressionTimeInInterval / (double) this.uncompressedBytesInInterval);
+
+		this.intervalStart = timestamp;
+		this.uncompressedBytesInInterval = 0L;
+		this.compressedBytesInInterval = 0L;
+		this.compressionTimeInInterval = 0L;
+
+		this.currentSelection = selectNextCompressionLevel();
+
+		return this.currentSelection;
+	}
+
+	/**
+	 * Incorporates the statistics of a finished sampling interval.
+	 * 
+	 * @param library
+	 *        the index of the library used throughout the interval
+	 * @param sampledThroughput
+	 *        the effective throughput in bytes per second
+	 * @param sampledRatio
+	 *        the ratio of compressed to uncompressed bytes
+	 * @param sampledCost
+	 *        the CPU time in nanoseconds spent per uncompressed byte
+	 */
+	private void recordSample(final int library, final double sampledThroughput, final double sampledRatio,
+			final double sampledCost) {
+
+		if (this.throughput[library] < 0.0) {
+			this.throughput[library] = sampledThroughput;
+			this.ratio[library] = sampledRatio;
+			this.cost[library] = sampledCost;
+		} else {
+			this.throughput[library] = smooth(this.throughput[library], sampledThroughput);
+			this.ratio[library] = smooth(this.ratio[library], sampledRatio);
+			this.cost[library] = smooth(this.cost[library], sampledCost);
+		}
+
+		// Probe libraries which do not compress the data less frequently
+		if (library > 0 && sampledRatio > INCOMPRESSIBLE_RATIO) {
+			this.backoff[library] = Math.min(MAXIMUM_BACKOFF, this.backoff[library] + 1);
+		} else {
+			this.backoff[library] = 0;
+		}
+
+		this.lastUsed[library] = ++this.numberOfIntervals;
+	}
+
+	private static double smooth(final double oldValue, final double sample) {
+
+		return SMOOTHING_FACTOR * sample + (1.0 - SMOOTHING_FACTOR) * oldValue;
+	}
+
+	/**
+	 * Selects the library to be used in the next sampling interval.
+	 * 
+	 * @return the index of the library to be used in the next sampling interval
+	 */
+	private int selectNextCompressionLevel() {
+
+		// Each library is tried once before any decision is made
+		for (int i = 0; i < this.throughput.length; ++i) {
+			if (this.throughput[i] < 0.0) {
+				return i;
+			}
+		}
+
+		// Return to the best library after a probe, otherwise check if it is time to probe another library
+		if (this.probing) {
+			this.probing = false;
+		} else if (++this.intervalsSinceExploration >= this.explorationPeriod) {
+
+			this.intervalsSinceExploration = 0;
+
+			final int candidate = selectLibraryToProbe();
+			if (candidate >= 0) {
+				this.probing = true;
+				return candidate;
+			}
+		}
+
+		return selectBestLibrary();
+	}
+
+	/**
+	 * Selects the library which has not been used for the longest time and whose backoff has expired.
+	 * 
+	 * @return the index of the library to probe or <code>-1</code> if no library shall be probed
+	 */
+	private int selectLibraryToProbe() {
+
+		int candidate = -1;
+		int candidateAge = -1;
+
+		for (int i = 0; i < this.throughput.length; ++i) {
+
+			if (i == this.currentSelection) {
+				continue;
+			}
+
+			final int age = this.numberOfIntervals - this.lastUsed[i];
+			if (age < this.explorationPeriod << this.backoff[i]) {
+				continue;
+			}
+
+			if (age > candidateAge) {
+				candidate = i;
+				candidateAge = age;
+			}
+		}
+
+		return candidate;
+	}
+
+	/**
+	 * Selects the library with the least CPU time per byte among the libraries whose throughput is close to the best
+	 * throughput.
+	 * 
+	 * @return the index of the best library
+	 */
+	private int selectBestLibrary() {
+
+		double bestThroughput = 0.0;
+		for (int i = 0; i < this.throughput.length; ++i) {
+			bestThroughput = Math.max(bestThroughput, this.throughput[i]);
+		}
+
+		final double threshold = bestThroughput * (1.0 - TOLERANCE);
+
+		int best = 0;
+		double bestCost = Double.MAX_VALUE;
+		for (int i = 0; i < this.throughput.length; ++i) {
+
+			if (this.throughput[i] < threshold) {
+				continue;
+			}
+
+			if (this.cost[i] < bestCost) {
+				best = i;
+				bestCost = this.cost[i];
+			}
+		}
+
+		return best;
+	}
+}
@@ -164,6 +164,14 @@ public abstract class AbstractEnvironmentWrapper implements Environment {
 		return this.wrappedEnvironment.getTaskName();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addCompletionMessage(final String message) {
+		this.wrappedEnvironment.addCompletionMessage(message);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -16,6 +16,7 @@
 package eu.stratosphere.nephele.services.memorymanager.spi;
 
 
+import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -48,6 +49,11 @@ import eu.stratosphere.nephele.template.AbstractInvokable;
  * the manager works 2 dimensional byte array (i.e. with memory chunks). Please be aware that in order to keep the array
  * access methods in the {@link DefaultMemorySegment} fast and simple, the actual allocated memory segments must not
  * exceed 2GB and must be contained in a single memory chunk.
+ * <p>
+ * Optionally, the memory manager allocates its memory outside the Java heap, as direct memory. The segments handed
+ * out are then backed by off-heap memory, which keeps large amounts of managed memory out of the reach of the
+ * garbage collector. Note that the JVM limits the amount of direct memory through the
+ * <i>-XX:MaxDirectMemorySize</i> parameter, which must be set accordingly.
  * 
  * @author Alexander Alexandrov
  * @author Stephan Ewen
@@ -64,6 +70,11 @@ public class DefaultMemoryManager implements MemoryManager
 	 */
 	public static final int MIN_PAGE_SIZE = 4 * 1024;
 	
+	/**
+	 * The maximal size of a single chunk of off-heap memory. Currently set to 1 GiBytes.
+	 */
+	private static final int MAX_OFF_HEAP_CHUNK_SIZE = 1024 * 1024 * 1024;
+	
 	/**
 	 * The Log.
 	 */
@@ -73,7 +84,7 @@ public class DefaultMemoryManager implements MemoryManager
 	
 	private final Object lock = new Object();	 	// The lock used on the shared structures.
 	
-	private final ArrayDeque<byte[]> freeSegments;	// the free memory segments
+	private final MemoryPool memoryPool;			// the pool of free memory segments
 	
 	private final HashMap<AbstractInvokable, Set<DefaultMemorySegment>> allocatedSegments;
 	
@@ -85,6 +96,8 @@ public class DefaultMemoryManager implements MemoryManager
 	
 	private final int totalNumPages;		// The initial total size, for verification.
 	
+	private final boolean offHeap;			// flag whether the memory is allocated outside the java heap
+	
 	private boolean isShutDown;				// flag whether the close() has already been invoked.
 
 	// ------------------------------------------------------------------------
@@ -106,7 +119,19 @@ public class DefaultMemoryManager implements MemoryManager
 	 * @param memorySize The total size of the memory to be managed by this memory manager.
 	 * @param pageSize The size of the pages handed out by the memory manager.
 	 */
-	public DefaultMemoryManager(long memorySize, int pageSize)
+	public DefaultMemoryManager(long memorySize, int pageSize) {
+		this(memorySize, pageSize, false);
+	}
+	
+	/**
+	 * Creates a memory manager with the given capacity and given page size. The memory is allocated either
+	 * on the java heap as byte arrays, or outside the heap as direct memory.
+	 * 
+	 * @param memorySize The total size of the memory to be managed by this memory manager.
+	 * @param pageSize The size of the pages handed out by the memory manager.
+	 * @param useOffHeapMemory True, to allocate the memory outside the java heap, false to allocate it on the heap.
+	 */
+	public DefaultMemoryManager(long memorySize, int pageSize, boolean useOffHeapMemory)
 	{
 		// sanity checks
 		if (memorySize <= 0) {
@@ -134,15 +159,13 @@ public class DefaultMemoryManager implements MemoryManager
 		}
 		
 		// initialize the free segments and allocated segments tracking structures
-		this.freeSegments = new ArrayDeque<byte[]>();
 		this.allocatedSegments = new HashMap<AbstractInvokable, Set<DefaultMemorySegment>>();
-
 		
-		// add the full chunks
-		for (int i = 0; i < this.totalNumPages; i++) {
-			// allocate memory of the specified size
-			this.freeSegments.add(new byte[this.pageSize]);
-		}
+		// allocate the memory
+		this.offHeap = useOffHeapMemory;
+		this.memoryPool = useOffHeapMemory ?
+			new OffHeapMemoryPool(this.totalNumPages, this.pageSize) :
+			new HeapMemoryPool(this.totalNumPages, this.pageSize);
 	}
 
 	/* (non-Javadoc)
@@ -160,7 +183,7 @@ public class DefaultMemoryManager implements MemoryManager
 	
 				// mark as shutdown and release memory
 				this.isShutDown = true;
-				this.freeSegments.clear();
+				this.memoryPool.clear();
 				
 				// go over all allocated segments and release them
 				for (Set<DefaultMemorySegment> segments : this.allocatedSegments.values()) {
@@ -179,7 +202,7 @@ public class DefaultMemoryManager implements MemoryManager
 	public boolean verifyEmpty()
 	{
 		synchronized (this.lock) {
-			return this.freeSegments.size() == this.totalNumPages;
+			return this.memoryPool.getNumberOfAvailableMemorySegments() == this.totalNumPages;
 		}
 	}
 
@@ -221,9 +244,9 @@ public class DefaultMemoryManager implements MemoryManager
 				throw new IllegalStateException("Memory manager has been shut down.");
 			}
 			
-			if (numPages > this.freeSegments.size()) {
+			if (numPages > this.memoryPool.getNumberOfAvailableMemorySegments()) {
 				throw new MemoryAllocationException("Could not allocate " + numPages + " pages. Only " + 
-					this.freeSegments.size() + " pages are remaining.");
+					this.memoryPool.getNumberOfAvailableMemorySegments() + " pages are remaining.");
 			}
 			
 			Set<DefaultMemorySegment> segmentsForOwner = this.allocatedSegments.get(owner);
@@ -233,8 +256,7 @@ public class DefaultMemoryManager implements MemoryManager
 			}
 			
 			for (int i = numPages; i > 0; i--) {
-				byte[] buffer = this.freeSegments.poll();
-				final DefaultMemorySegment segment = new DefaultMemorySegment(owner, buffer, 0, this.pageSize);
+				final DefaultMemorySegment segment = this.memoryPool.requestSegmentFromPool(owner);
 				target.add(segment);
 				segmentsForOwner.add(segment);
 			}
@@ -300,8 +322,7 @@ public class DefaultMemoryManager implements MemoryManager
 			}
 			finally {
 				// release the memory in any case
-				byte[] buffer = defSeg.destroy();
-				this.freeSegments.add(buffer);
+				this.memoryPool.returnSegmentToPool(defSeg);
 			}
 		}
 		// -------------------- END CRITICAL SECTION -------------------
@@ -362,8 +383,7 @@ public class DefaultMemoryManager implements MemoryManager
 				}
 				finally {
 					// release the memory in any case
-					byte[] buffer = defSeg.destroy();
-					this.freeSegments.add(buffer);
+					this.memoryPool.returnSegmentToPool(defSeg);
 				}
 			}
 		}
@@ -393,8 +413,7 @@ public class DefaultMemoryManager implements MemoryManager
 			
 			// free each segment
 			for (DefaultMemorySegment seg : segments) {
-				final byte[] buffer = seg.destroy();
-				this.freeSegments.add(buffer);
+				this.memoryPool.returnSegmentToPool(seg);
 			}
 			
 			segments.clear();
@@ -411,6 +430,15 @@ public class DefaultMemoryManager implements MemoryManager
 	public int getPageSize() {
 		return this.pageSize;
 	}
+	
+	/**
+	 * Checks whether this memory manager hands out segments that are backed by memory outside the java heap.
+	 * 
+	 * @return True, if the managed memory is off-heap memory, false if it is heap memory.
+	 */
+	public boolean isOffHeap() {
+		return this.offHeap;
+	}
 
 	/* (non-Javadoc)
 	 * @see eu.stratosphere.nephele.services.memorymanager.MemoryManager#computeNumberOfPages(long)
@@ -453,12 +481,130 @@ public class DefaultMemoryManager implements MemoryManager
 			this.owner = owner;
 		}
 		
-		byte[] destroy()
-		{
-			final byte[] buffer = this.memory;
-			this.memory = null;
-			this.wrapper = null;
-			return buffer;
+		DefaultMemorySegment(AbstractInvokable owner, ByteBuffer offHeapMemory, int offset, int size) {
+			super(offHeapMemory, offset, size);
+			this.owner = owner;
+		}
+		
+		ByteBuffer getOffHeapMemory() {
+			return this.offHeapMemory;
+		}
+		
+		void destroy() {
+			free();
+		}
+	}
+	
+	// ------------------------------------------------------------------------
+	//                         Pools of free memory
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * The pool of the memory that is currently not handed out. The pool is accessed only while holding
+	 * the memory manager's lock.
+	 */
+	private static abstract class MemoryPool
+	{
+		abstract int getNumberOfAvailableMemorySegments();
+		
+		abstract DefaultMemorySegment requestSegmentFromPool(AbstractInvokable owner);
+		
+		abstract void returnSegmentToPool(DefaultMemorySegment segment);
+		
+		abstract void clear();
+	}
+	
+	/**
+	 * Memory pool that holds its memory as byte arrays on the java heap.
+	 */
+	private static final class HeapMemoryPool extends MemoryPool
+	{
+		private final ArrayDeque<byte[]> availableMemory;
+		
+		private final int segmentSize;
+		
+		HeapMemoryPool(int numInitialSegments, int segmentSize) {
+			this.availableMemory = new ArrayDeque<byte[]>(numInitialSegments);
+			this.segmentSize = segmentSize;
+			
+			for (int i = 0; i < numInitialSegments; i++) {
+				this.availableMemory.add(new byte[segmentSize]);
+			}
+		}
+
+		@Override
+		int getNumberOfAvailableMemorySegments() {
+			return this.availableMemory.size();
+		}
+
+		@Override
+		DefaultMemorySegment requestSegmentFromPool(AbstractInvokable owner) {
+			return new DefaultMemorySegment(owner, this.availableMemory.remove(), 0, this.segmentSize);
+		}
+
+		@Override
+		void returnSegmentToPool(DefaultMemorySegment segment) {
+			final byte[] memory = segment.getBackingArray();
+			segment.destroy();
+			this.availableMemory.add(memory);
+		}
+
+		@Override
+		void clear() {
+			this.availableMemory.clear();
+		}
+	}
+	
+	/**
+	 * Memory pool that holds its memory as direct byte buffers outside the java heap. The memory is allocated
+	 * in large chunks, which are sliced into the individual segments.
+	 */
+	private static final class OffHeapMemoryPool extends MemoryPool
+	{
+		private final ArrayDeque<ByteBuffer> availableMemory;
+		
+		private final int segmentSize;
+		
+		OffHeapMemoryPool(int numInitialSegments, int segmentSize) {
+			this.availableMemory = new ArrayDeque<ByteBuffer>(numInitialSegments);
+			this.segmentSize = segmentSize;
+			
+			final int segmentsPerChunk = Math.max(1, MAX_OFF_HEAP_CHUNK_SIZE / segmentSize);
+			int segmentsRemaining = numInitialSegments;
+			
+			while (segmentsRemaining > 0) {
+				final int numSegments = Math.min(segmentsRemaining, segmentsPerChunk);
+				final ByteBuffer chunk = ByteBuffer.allocateDirect(numSegments * segmentSize);
+				
+				for (int i = 0; i < numSegments; i++) {
+					chunk.limit((i + 1) * segmentSize);
+					chunk.position(i * segmentSize);
+					this.availableMemory.add(chunk.slice());
+				}
+				segmentsRemaining -= numSegments;
+			}
+		}
+
+		@Override
+		int getNumberOfAvailableMemorySegments() {
+			return this.availableMemory.size();
+		}
+
+		@Override
+		DefaultMemorySegment requestSegmentFromPool(AbstractInvokable owner) {
+			return new DefaultMemorySegment(owner, this.availableMemory.remove(), 0, this.segmentSize);
+		}
+
+		@Override
+		void returnSegmentToPool(DefaultMemorySegment segment) {
+			final ByteBuffer memory = segment.getOffHeapMemory();
+			segment.destroy();
+			this.availableMemory.add(memory);
+		}
+
+		@Override
+		void clear() {
+			this.availableMemory.clear();
 		}
 	}
 }
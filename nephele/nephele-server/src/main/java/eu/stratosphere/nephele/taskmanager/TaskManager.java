@@ -321,16 +321,25 @@ public class TaskManager implements TaskOperationProtocol, PluginCommunicationPr
 		this.hardwareDescription = hardware;
 
 		// Initialize the memory manager
-		LOG.info("Initializing memory manager with " + (hardware.getSizeOfFreeMemory() >>> 20) + " megabytes of memory");
+		final boolean offHeap = GlobalConfiguration.getBoolean(ConfigConstants.MEMORY_MANAGER_OFF_HEAP_KEY,
+			ConfigConstants.DEFAULT_MEMORY_MANAGER_OFF_HEAP);
+		LOG.info("Initializing memory manager with " + (hardware.getSizeOfFreeMemory() >>> 20) + " megabytes of "
+			+ (offHeap ? "off-heap" : "heap") + " memory");
 		try {
-			this.memoryManager = new DefaultMemoryManager(hardware.getSizeOfFreeMemory());
+			this.memoryManager = new DefaultMemoryManager(hardware.getSizeOfFreeMemory(),
+				DefaultMemoryManager.DEFAULT_PAGE_SIZE, offHeap);
 		} catch (RuntimeException rte) {
 			LOG.fatal("Unable to initialize memory manager with " + (hardware.getSizeOfFreeMemory() >>> 20)
 				+ " megabytes of memory", rte);
 			throw rte;
 		}
 
-		this.ioManager = new IOManager(tmpDirPaths);
+		final int ioThreadsPerDir = GlobalConfiguration.getInteger(ConfigConstants.TASK_MANAGER_IO_THREADS_PER_DIR_KEY,
+			ConfigConstants.DEFAULT_TASK_MANAGER_IO_THREADS_PER_DIR);
+		final int ioMaxBatchRequests = GlobalConfiguration.getInteger(ConfigConstants.TASK_MANAGER_IO_MAX_BATCH_REQUESTS_KEY,
+			ConfigConstants.DEFAULT_TASK_MANAGER_IO_MAX_BATCH_REQUESTS);
+		LOG.info("Initializing I/O manager with " + ioThreadsPerDir + " reader and writer thread(s) per temp directory");
+		this.ioManager = new IOManager(tmpDirPaths, ioThreadsPerDir, ioMaxBatchRequests);
 
 		// Load the plugins
 		if (pluginDir != null) {
@@ -50,6 +50,11 @@ public final class LocalBufferPool implements BufferProvider {
 
 	private final static Log LOG = LogFactory.getLog(LocalBufferPool.class);
 
+	/**
+	 * The weight of the most recent observation interval when smoothing the buffer demand.
+	 */
+	private static final double DEMAND_SMOOTHING_FACTOR = 0.5;
+
 	private final GlobalBufferPool globalBufferPool;
 
 	private final int maximumBufferSize;
@@ -72,6 +77,21 @@ public final class LocalBufferPool implements BufferProvider {
 
 	private final Queue<BufferAvailabilityListener> bufferAvailabilityListenerQueue = new ArrayDeque<BufferAvailabilityListener>();
 
+	/**
+	 * The number of buffers handed out since the last demand update.
+	 */
+	private int numberOfRequestsInInterval = 0;
+
+	/**
+	 * The time in milliseconds threads have waited for buffers since the last demand update.
+	 */
+	private long waitTimeInInterval = 0L;
+
+	/**
+	 * The smoothed buffer demand of this pool.
+	 */
+	private double demand = 0.0;
+
 	public LocalBufferPool(final int designatedNumberOfBuffers, final boolean isShared,
 			final AsynchronousEventListener eventListener) {
 
@@ -158,7 +178,9 @@ public final class LocalBufferPool implements BufferProvider {
 					}
 
 					if (block) {
+						final long startTime = System.currentTimeMillis();
 						this.buffers.wait(100);
+						this.waitTimeInInterval += System.currentTimeMillis() - startTime;
 					} else {
 						return null;
 					}
@@ -166,6 +188,7 @@ public final class LocalBufferPool implements BufferProvider {
 
 				if (!async) {
 					final ByteBuffer byteBuffer = this.buffers.poll();
+					++this.numberOfRequestsInInterval;
 					return BufferFactory.createFromMemory(minimumSizeOfBuffer, byteBuffer, this.bufferPoolConnector);
 				}
 			}
@@ -261,11 +284,61 @@ public final class LocalBufferPool implements BufferProvider {
 		}
 	}
 
+	/**
+	 * Updates the smoothed buffer demand of this pool from the number of handed out buffers and the time threads have
+	 * waited for buffers since the last update. Waiting for buffers increases the demand, so pools which are short on
+	 * buffers are favored over pools with an equal request rate that are not.
+	 * 
+	 * @param interval
+	 *        the time in milliseconds which has passed since the last update
+	 * @return the updated buffer demand
+	 */
+	public double updateDemand(final long interval) {
+
+		synchronized (this.buffers) {
+
+			final double waitRatio = (interval > 0L) ? Math.min(1.0, (double) this.waitTimeInInterval
+				/ (double) interval) : 0.0;
+			final double sample = this.numberOfRequestsInInterval * (1.0 + waitRatio);
+
+			this.demand = DEMAND_SMOOTHING_FACTOR * sample + (1.0 - DEMAND_SMOOTHING_FACTOR) * this.demand;
+			this.numberOfRequestsInInterval = 0;
+			this.waitTimeInInterval = 0L;
+
+			return this.demand;
+		}
+	}
+
+	/**
+	 * Returns the smoothed buffer demand of this pool as computed by the last call to {@link #updateDemand(long)}.
+	 * 
+	 * @return the smoothed buffer demand of this pool
+	 */
+	public double getDemand() {
+
+		synchronized (this.buffers) {
+			return this.demand;
+		}
+	}
+
+	/**
+	 * Returns the time in milliseconds threads have waited for buffers of this pool since the last demand update.
+	 * 
+	 * @return the time in milliseconds threads have waited for buffers since the last demand update
+	 */
+	public long getWaitTime() {
+
+		synchronized (this.buffers) {
+			return this.waitTimeInInterval;
+		}
+	}
+
 	private void recycleBuffer(final ByteBuffer byteBuffer) {
 
 		synchronized (this.buffers) {
 
-			if (this.isDestroyed) {
+			if (this.isDestroyed || this.requestedNumberOfBuffers > this.designatedNumberOfBuffers) {
+				// Return buffers the pool is no longer entitled to, so they become available to other pools
 				this.globalBufferPool.releaseGlobalBuffer(byteBuffer);
 				this.requestedNumberOfBuffers--;
 			} else {
@@ -39,6 +39,22 @@ public interface LocalBufferPoolOwner {
 	 */
 	void setDesignatedNumberOfBuffers(int numberOfBuffers);
 
+	/**
+	 * Updates the buffer demand of the local buffer pool from its usage since the last update.
+	 * 
+	 * @param interval
+	 *        the time in milliseconds which has passed since the last update
+	 */
+	void updateBufferDemand(long interval);
+
+	/**
+	 * Returns the buffer demand of the local buffer pool, i.e. the smoothed rate at which buffers are requested,
+	 * weighted by the time spent waiting for buffers.
+	 * 
+	 * @return the buffer demand of the local buffer pool
+	 */
+	double getBufferDemand();
+
 	/**
 	 * Clears the local buffer pool and returns all buffers to the global buffer pool.
 	 */
@@ -79,6 +79,26 @@ public abstract class AbstractOutputChannelContext implements OutputChannelConte
 		// The default implementation does nothing
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getBufferTimeout() {
+
+		// The default implementation only forwards full buffers
+		return -1L;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean requestFlushIfTimedOut(final long now) {
+
+		// The default implementation does nothing
+		return false;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
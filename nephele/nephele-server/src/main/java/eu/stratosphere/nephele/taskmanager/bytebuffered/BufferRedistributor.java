@@ -0,0 +1,80 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.bytebuffered;
+
+/**
+ * The buffer redistributor is a task manager wide thread which periodically updates the buffer demand of all local
+ * buffer pools and lets the {@link ByteBufferedChannelManager} move buffers from idle to busy pools accordingly.
+ */
+final class BufferRedistributor extends Thread {
+
+	/**
+	 * The byte buffered channel manager whose buffers shall be redistributed.
+	 */
+	private final ByteBufferedChannelManager byteBufferedChannelManager;
+
+	/**
+	 * The interval in milliseconds in which the buffers are redistributed.
+	 */
+	private final long interval;
+
+	/**
+	 * Constructs a new buffer redistributor.
+	 * 
+	 * @param byteBufferedChannelManager
+	 *        the byte buffered channel manager whose buffers shall be redistributed
+	 * @param interval
+	 *        the interval in milliseconds in which the buffers shall be redistributed
+	 */
+	BufferRedistributor(final ByteBufferedChannelManager byteBufferedChannelManager, final long interval) {
+		super("Buffer Redistributor");
+
+		this.byteBufferedChannelManager = byteBufferedChannelManager;
+		this.interval = interval;
+
+		setDaemon(true);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void run() {
+
+		long lastUpdate = System.currentTimeMillis();
+
+		while (!isInterrupted()) {
+
+			try {
+				Thread.sleep(this.interval);
+			} catch (InterruptedException e) {
+				break;
+			}
+
+			final long now = System.currentTimeMillis();
+			this.byteBufferedChannelManager.rebalanceGlobalBuffers(now - lastUpdate);
+			lastUpdate = now;
+		}
+	}
+
+	/**
+	 * Stops the buffer redistributor.
+	 */
+	void shutDown() {
+
+		interrupt();
+	}
+}
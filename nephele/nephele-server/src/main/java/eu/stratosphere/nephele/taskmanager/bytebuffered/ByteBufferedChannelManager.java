@@ -17,6 +17,7 @@ package eu.stratosphere.nephele.taskmanager.bytebuffered;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -59,6 +60,12 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 
 	private static final boolean DEFAULT_MERGE_SPILLED_BUFFERS = true;
 
+	/**
+	 * The default interval in milliseconds in which the global buffers are redistributed according to the buffer
+	 * demand of the local buffer pools.
+	 */
+	private static final long DEFAULT_BUFFER_REDISTRIBUTION_INTERVAL = 1000L;
+
 	// TODO: Make this configurable
 	private static final int NUMBER_OF_CHANNELS_FOR_MULTICAST = 10;
 
@@ -68,6 +75,10 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 
 	private final NetworkConnectionManager networkConnectionManager;
 
+	private final OutputBufferFlusher outputBufferFlusher;
+
+	private final BufferRedistributor bufferRedistributor;
+
 	private final ChannelLookupProtocol channelLookupService;
 
 	private final InstanceConnectionInfo localConnectionInfo;
@@ -104,6 +115,18 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 		this.networkConnectionManager = new NetworkConnectionManager(this,
 			localInstanceConnectionInfo.getAddress(), localInstanceConnectionInfo.getDataPort());
 
+		this.outputBufferFlusher = new OutputBufferFlusher();
+		this.outputBufferFlusher.start();
+
+		final long redistributionInterval = GlobalConfiguration.getLong("channel.network.bufferRedistributionInterval",
+			DEFAULT_BUFFER_REDISTRIBUTION_INTERVAL);
+		if (redistributionInterval > 0L) {
+			this.bufferRedistributor = new BufferRedistributor(this, redistributionInterval);
+			this.bufferRedistributor.start();
+		} else {
+			this.bufferRedistributor = null;
+		}
+
 		this.allowSenderSideSpilling = GlobalConfiguration.getBoolean("channel.network.allowSenderSideSpilling",
 			DEFAULT_ALLOW_SENDER_SIDE_SPILLING);
 
@@ -163,6 +186,7 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 				if (outputChannelContext.getType() == ChannelType.NETWORK) {
 					addReceiverListHint(outputChannelContext.getConnectedChannelID(),
 						outputChannelContext.getChannelID());
+					this.networkConnectionManager.registerCredit(outputChannelContext.getChannelID());
 				}
 
 				if (LOG.isDebugEnabled())
@@ -170,6 +194,7 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 							+ (isActive ? "active" : "inactive") + ")");
 
 				this.registeredChannels.put(outputChannelContext.getChannelID(), outputChannelContext);
+				this.outputBufferFlusher.register(outputChannelContext);
 			}
 		}
 
@@ -226,11 +251,13 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 		while (channelIterator.hasNext()) {
 
 			final ChannelID outputChannelID = channelIterator.next();
+			this.outputBufferFlusher.unregister(outputChannelID);
 			final ChannelContext context = this.registeredChannels.remove(outputChannelID);
 			if (context != null) {
 				context.destroy();
 			}
 			this.receiverCache.remove(outputChannelID);
+			this.networkConnectionManager.removeCredit(outputChannelID);
 		}
 
 		channelIterator = environment.getInputChannelIDs().iterator();
@@ -270,6 +297,10 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 	 */
 	public void shutdown() {
 
+		this.outputBufferFlusher.shutDown();
+		if (this.bufferRedistributor != null) {
+			this.bufferRedistributor.shutDown();
+		}
 		this.networkConnectionManager.shutDown();
 	}
 
@@ -308,8 +339,8 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 		processEnvelopeEnvelopeWithoutBuffer(transferEnvelope, receiverList);
 	}
 
-	private void processEnvelope(final TransferEnvelope transferEnvelope, final boolean freeSourceBuffer)
-			throws IOException, InterruptedException {
+	private void processEnvelope(final TransferEnvelope transferEnvelope, final boolean freeSourceBuffer,
+			final boolean ownsSourceBuffer) throws IOException, InterruptedException {
 
 		TransferEnvelopeReceiverList receiverList = null;
 		try {
@@ -332,16 +363,45 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 		if (transferEnvelope.getBuffer() == null) {
 			processEnvelopeEnvelopeWithoutBuffer(transferEnvelope, receiverList);
 		} else {
-			processEnvelopeWithBuffer(transferEnvelope, receiverList, freeSourceBuffer);
+			processEnvelopeWithBuffer(transferEnvelope, receiverList, freeSourceBuffer, ownsSourceBuffer);
+		}
+	}
+
+	/**
+	 * Checks if the buffer of the given envelope can be handed over to its receiver without copying it. This is the
+	 * case if the buffer is a memory buffer owned by a co-located sender and the envelope has exactly one receiver
+	 * which is local. Buffers from shared pools like the transit buffer pool are never handed over, because a slow
+	 * receiver would otherwise hold back buffers the pool is accountable for to other channels.
+	 * 
+	 * @param transferEnvelope
+	 *        the envelope whose buffer shall be handed over
+	 * @param receiverList
+	 *        the receivers of the envelope
+	 * @param ownsSourceBuffer
+	 *        <code>true</code> if the envelope's buffer belongs to the local buffer pool of the sending task
+	 * @return <code>true</code> if the buffer can be handed over to the receiver, <code>false</code> if it must be
+	 *         copied
+	 */
+	private static boolean canHandOverBuffer(final TransferEnvelope transferEnvelope,
+			final TransferEnvelopeReceiverList receiverList, final boolean ownsSourceBuffer) {
+
+		if (!ownsSourceBuffer) {
+			return false;
+		}
+
+		if (receiverList.hasRemoteReceivers() || receiverList.getTotalNumberOfReceivers() != 1) {
+			return false;
 		}
+
+		return transferEnvelope.getBuffer().isBackedByMemory();
 	}
 
 	private void processEnvelopeWithBuffer(final TransferEnvelope transferEnvelope,
-			final TransferEnvelopeReceiverList receiverList, final boolean freeSourceBuffer)
-			throws IOException, InterruptedException {
+			final TransferEnvelopeReceiverList receiverList, final boolean freeSourceBuffer,
+			final boolean ownsSourceBuffer) throws IOException, InterruptedException {
 
-		// Handle the most common (unicast) case first
-		if (!freeSourceBuffer) {
+		// Handle the most common (unicast) case first, co-located senders hand over their buffer without a copy
+		if (!freeSourceBuffer || canHandOverBuffer(transferEnvelope, receiverList, ownsSourceBuffer)) {
 
 			final List<ChannelID> localReceivers = receiverList.getLocalReceivers();
 			if (localReceivers.size() != 1) {
@@ -634,7 +694,7 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 	public void processEnvelopeFromOutputChannel(final TransferEnvelope transferEnvelope) throws IOException,
 			InterruptedException {
 
-		processEnvelope(transferEnvelope, true);
+		processEnvelope(transferEnvelope, true, true);
 	}
 
 	/**
@@ -644,7 +704,16 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 	public void processEnvelopeFromInputChannel(final TransferEnvelope transferEnvelope) throws IOException,
 			InterruptedException {
 
-		processEnvelope(transferEnvelope, false);
+		// Envelopes of co-located senders never pass the network, so they are not subject to credit-based flow control
+		if (ChannelCreditEvent.isChannelCreditEvent(transferEnvelope)) {
+
+			final ChannelCreditEvent cce = (ChannelCreditEvent) transferEnvelope.getEventList().get(0);
+			if (this.registeredChannels.containsKey(cce.getOutputChannelID())) {
+				return;
+			}
+		}
+
+		processEnvelope(transferEnvelope, false, false);
 	}
 
 	/**
@@ -666,7 +735,19 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 			}
 		}
 
-		processEnvelope(transferEnvelope, freeSourceBuffer);
+		// Credit announcements are consumed by the flow control of the output channel they are addressed to
+		if (ChannelCreditEvent.isChannelCreditEvent(transferEnvelope)) {
+
+			final ChannelCreditEvent cce = (ChannelCreditEvent) transferEnvelope.getEventList().get(0);
+			final ChannelContext cc = this.registeredChannels.get(cce.getOutputChannelID());
+			if (cc != null && !cc.isInputChannel()) {
+				this.networkConnectionManager.grantCredit(cce.getOutputChannelID(), cce.getMaximumSequenceNumber());
+			}
+
+			return;
+		}
+
+		processEnvelope(transferEnvelope, freeSourceBuffer, false);
 	}
 
 	/**
@@ -787,9 +868,28 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 	}
 
 	/**
-	 * Redistributes the global buffers among the registered tasks.
+	 * Updates the buffer demand of all local buffer pools and redistributes the global buffers accordingly.
+	 * 
+	 * @param interval
+	 *        the time in milliseconds which has passed since the last rebalancing
 	 */
-	private void redistributeGlobalBuffers() {
+	void rebalanceGlobalBuffers(final long interval) {
+
+		final Iterator<LocalBufferPoolOwner> it = this.localBufferPoolOwner.values().iterator();
+		while (it.hasNext()) {
+			it.next().updateBufferDemand(interval);
+		}
+
+		redistributeGlobalBuffers();
+	}
+
+	/**
+	 * Redistributes the global buffers among the registered tasks. Every local buffer pool owner is guaranteed one
+	 * buffer per channel plus one, as far as its even share permits, so no task can starve. The remaining buffers are
+	 * split according to the owners' buffer demand, or according to their number of channels as long as no demand has
+	 * been observed.
+	 */
+	private synchronized void redistributeGlobalBuffers() {
 
 		final int totalNumberOfBuffers = GlobalBufferPool.getInstance().getTotalNumberOfBuffers();
 		int totalNumberOfChannels = this.registeredChannels.size();
@@ -810,15 +910,51 @@ public final class ByteBufferedChannelManager implements TransferEnvelopeDispatc
 			return;
 		}
 
-		final Iterator<LocalBufferPoolOwner> it = this.localBufferPoolOwner.values().iterator();
-		while (it.hasNext()) {
-			final LocalBufferPoolOwner lbpo = it.next();
-			lbpo.setDesignatedNumberOfBuffers((int) Math.ceil(buffersPerChannel * lbpo.getNumberOfChannels()));
-		}
+		int numberOfSpareBuffers = totalNumberOfBuffers;
 
 		if (this.multicastEnabled) {
-			this.transitBufferPool.setDesignatedNumberOfBuffers((int) Math.ceil(buffersPerChannel
-				* NUMBER_OF_CHANNELS_FOR_MULTICAST));
+			final int numberOfTransitBuffers = (int) Math.ceil(buffersPerChannel * NUMBER_OF_CHANNELS_FOR_MULTICAST);
+			this.transitBufferPool.setDesignatedNumberOfBuffers(numberOfTransitBuffers);
+			numberOfSpareBuffers -= numberOfTransitBuffers;
+		}
+
+		final List<LocalBufferPoolOwner> owners = new ArrayList<LocalBufferPoolOwner>(
+			this.localBufferPoolOwner.values());
+		final int[] designatedNumberOfBuffers = new int[owners.size()];
+		final double[] demand = new double[owners.size()];
+		int numberOfOwnerChannels = 0;
+		double totalDemand = 0.0;
+
+		// Grant the guaranteed minimum first
+		for (int i = 0; i < owners.size(); ++i) {
+
+			final LocalBufferPoolOwner lbpo = owners.get(i);
+			final int numberOfChannels = lbpo.getNumberOfChannels();
+			final int evenShare = (int) Math.ceil(buffersPerChannel * numberOfChannels);
+
+			designatedNumberOfBuffers[i] = Math.min(evenShare, numberOfChannels + 1);
+			numberOfSpareBuffers -= designatedNumberOfBuffers[i];
+
+			demand[i] = lbpo.getBufferDemand();
+			totalDemand += demand[i];
+			numberOfOwnerChannels += numberOfChannels;
+		}
+
+		// Split the spare buffers according to the demand
+		numberOfSpareBuffers = Math.max(0, numberOfSpareBuffers);
+		for (int i = 0; i < owners.size(); ++i) {
+
+			final LocalBufferPoolOwner lbpo = owners.get(i);
+
+			double fraction = 0.0;
+			if (totalDemand > 0.0) {
+				fraction = demand[i] / totalDemand;
+			} else if (numberOfOwnerChannels > 0) {
+				fraction = (double) lbpo.getNumberOfChannels() / (double) numberOfOwnerChannels;
+			}
+
+			designatedNumberOfBuffers[i] += (int) (numberOfSpareBuffers * fraction);
+			lbpo.setDesignatedNumberOfBuffers(designatedNumberOfBuffers[i]);
 		}
 	}
 
@@ -0,0 +1,142 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.bytebuffered;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+
+/**
+ * A channel credit keeps track of the buffer credit a receiver has announced for an output channel and holds back the
+ * channel's envelopes which exceed it. Envelopes are held back outside of the {@link OutgoingConnection}, so a channel
+ * without credit does not block other channels multiplexed on the same TCP connection. To preserve the order of the
+ * channel's envelopes, envelopes without a buffer are held back as well as long as other envelopes are pending. Until
+ * the receiver announces its first credit, the channel's envelopes are not held back at all.
+ * <p>
+ * This class is thread-safe.
+ */
+final class ChannelCredit {
+
+	/**
+	 * The highest sequence number of an envelope with a buffer which may be transmitted.
+	 */
+	private int maximumSequenceNumber = -1;
+
+	/**
+	 * Stores whether the receiver has announced credit, i.e. whether the channel's envelopes are subject to the
+	 * credit.
+	 */
+	private boolean isLimited = false;
+
+	/**
+	 * The envelopes held back due to missing credit.
+	 */
+	private final Queue<TransferEnvelope> pendingEnvelopes = new ArrayDeque<TransferEnvelope>();
+
+	/**
+	 * The receivers of the envelopes held back, in the same order.
+	 */
+	private final Queue<RemoteReceiver> pendingReceivers = new ArrayDeque<RemoteReceiver>();
+
+	/**
+	 * Stores whether the channel has been unregistered.
+	 */
+	private boolean isDestroyed = false;
+
+	/**
+	 * Passes the given envelope on to the envelope transmitter or holds it back if the receiver has not announced
+	 * enough credit.
+	 * 
+	 * @param remoteReceiver
+	 *        the receiver of the envelope
+	 * @param transferEnvelope
+	 *        the envelope to transmit
+	 * @param envelopeTransmitter
+	 *        the envelope transmitter to pass the envelope on to
+	 */
+	synchronized void queueEnvelope(final RemoteReceiver remoteReceiver, final TransferEnvelope transferEnvelope,
+			final EnvelopeTransmitter envelopeTransmitter) {
+
+		if (this.isDestroyed || (this.pendingEnvelopes.isEmpty() && hasCredit(transferEnvelope))) {
+			envelopeTransmitter.transmitEnvelope(remoteReceiver, transferEnvelope);
+			return;
+		}
+
+		this.pendingEnvelopes.add(transferEnvelope);
+		this.pendingReceivers.add(remoteReceiver);
+	}
+
+	/**
+	 * Records newly announced credit and passes all envelopes now covered by the credit on to the envelope
+	 * transmitter.
+	 * 
+	 * @param maximumSequenceNumber
+	 *        the highest sequence number of an envelope with a buffer which may be transmitted
+	 * @param envelopeTransmitter
+	 *        the envelope transmitter to pass the released envelopes on to
+	 */
+	synchronized void grant(final int maximumSequenceNumber, final EnvelopeTransmitter envelopeTransmitter) {
+
+		this.isLimited = true;
+
+		if (maximumSequenceNumber <= this.maximumSequenceNumber) {
+			return;
+		}
+
+		this.maximumSequenceNumber = maximumSequenceNumber;
+
+		while (!this.pendingEnvelopes.isEmpty() && hasCredit(this.pendingEnvelopes.peek())) {
+			envelopeTransmitter.transmitEnvelope(this.pendingReceivers.poll(), this.pendingEnvelopes.poll());
+		}
+	}
+
+	/**
+	 * Drops all envelopes held back and recycles their buffers. Envelopes queued afterwards are no longer held back.
+	 */
+	synchronized void destroy() {
+
+		this.isDestroyed = true;
+		this.pendingReceivers.clear();
+
+		while (!this.pendingEnvelopes.isEmpty()) {
+			final Buffer buffer = this.pendingEnvelopes.poll().getBuffer();
+			if (buffer != null) {
+				buffer.recycleBuffer();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of envelopes currently held back.
+	 * 
+	 * @return the number of envelopes currently held back
+	 */
+	synchronized int getNumberOfPendingEnvelopes() {
+
+		return this.pendingEnvelopes.size();
+	}
+
+	private boolean hasCredit(final TransferEnvelope transferEnvelope) {
+
+		if (!this.isLimited || transferEnvelope.getBuffer() == null) {
+			return true;
+		}
+
+		return (transferEnvelope.getSequenceNumber() <= this.maximumSequenceNumber);
+	}
+}
@@ -0,0 +1,134 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.bytebuffered;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import eu.stratosphere.nephele.event.task.AbstractEvent;
+import eu.stratosphere.nephele.event.task.EventList;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+
+/**
+ * This event is sent by an {@link InputChannelContext} of a network channel to announce buffer credit to the
+ * connected output channel. The credit is expressed as the highest sequence number of a {@link TransferEnvelope}
+ * with a buffer that the receiver is currently willing to accept. Since the announced sequence numbers only grow,
+ * lost or reordered announcements cannot cause the sender to overrun the receiver.
+ */
+public final class ChannelCreditEvent extends AbstractEvent {
+
+	/**
+	 * The ID of the output channel the credit is announced to.
+	 */
+	private final ChannelID outputChannelID;
+
+	/**
+	 * The highest sequence number of an envelope with a buffer the sender may transmit.
+	 */
+	private int maximumSequenceNumber;
+
+	/**
+	 * Constructs a new channel credit event.
+	 * 
+	 * @param outputChannelID
+	 *        the ID of the output channel the credit is announced to
+	 * @param maximumSequenceNumber
+	 *        the highest sequence number of an envelope with a buffer the sender may transmit
+	 */
+	public ChannelCreditEvent(final ChannelID outputChannelID, final int maximumSequenceNumber) {
+
+		if (outputChannelID == null) {
+			throw new IllegalArgumentException("Argument outputChannelID must not be null");
+		}
+
+		this.outputChannelID = outputChannelID;
+		this.maximumSequenceNumber = maximumSequenceNumber;
+	}
+
+	/**
+	 * Default constructor for serialization/deserialization.
+	 */
+	public ChannelCreditEvent() {
+		this.outputChannelID = new ChannelID();
+	}
+
+	/**
+	 * Returns the ID of the output channel the credit is announced to.
+	 * 
+	 * @return the ID of the output channel the credit is announced to
+	 */
+	public ChannelID getOutputChannelID() {
+
+		return this.outputChannelID;
+	}
+
+	/**
+	 * Returns the highest sequence number of an envelope with a buffer the sender may transmit.
+	 * 
+	 * @return the highest sequence number of an envelope with a buffer the sender may transmit
+	 */
+	public int getMaximumSequenceNumber() {
+
+		return this.maximumSequenceNumber;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(final DataOutput out) throws IOException {
+
+		this.outputChannelID.write(out);
+		out.writeInt(this.maximumSequenceNumber);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void read(final DataInput in) throws IOException {
+
+		this.outputChannelID.read(in);
+		this.maximumSequenceNumber = in.readInt();
+	}
+
+	/**
+	 * Checks whether the given envelope carries a channel credit event.
+	 * 
+	 * @param transferEnvelope
+	 *        the envelope to check
+	 * @return <code>true</code> if the envelope carries a channel credit event, <code>false</code> otherwise
+	 */
+	static boolean isChannelCreditEvent(final TransferEnvelope transferEnvelope) {
+
+		if (transferEnvelope.getBuffer() != null) {
+			return false;
+		}
+
+		final EventList eventList = transferEnvelope.getEventList();
+		if (eventList == null) {
+			return false;
+		}
+
+		if (eventList.size() != 1) {
+			return false;
+		}
+
+		return (eventList.get(0) instanceof ChannelCreditEvent);
+	}
+}
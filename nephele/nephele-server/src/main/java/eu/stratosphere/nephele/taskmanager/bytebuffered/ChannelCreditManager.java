@@ -0,0 +1,165 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.bytebuffered;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+
+/**
+ * The channel credit manager keeps the {@link ChannelCredit} objects of all registered network output channels. A
+ * channel's credit is created when the channel is registered and dropped when it is removed, so credit announced by a
+ * receiver is only recorded for channels which are still registered. In particular, an announcement racing the
+ * removal of its channel never creates a new credit object which would be leaked.
+ * <p>
+ * This class is thread-safe.
+ */
+final class ChannelCreditManager {
+
+	/**
+	 * Map containing the credit of all registered network output channels.
+	 */
+	private final ConcurrentMap<ChannelID, ChannelCredit> channelCredits = new ConcurrentHashMap<ChannelID, ChannelCredit>();
+
+	/**
+	 * The envelope transmitter envelopes are passed on to once they are covered by the credit.
+	 */
+	private final EnvelopeTransmitter envelopeTransmitter;
+
+	/**
+	 * Constructs a new channel credit manager.
+	 * 
+	 * @param envelopeTransmitter
+	 *        the envelope transmitter envelopes are passed on to once they are covered by the credit
+	 */
+	ChannelCreditManager(final EnvelopeTransmitter envelopeTransmitter) {
+
+		this.envelopeTransmitter = envelopeTransmitter;
+	}
+
+	/**
+	 * Registers the given output channel for the credit-based flow control. Until its receiver announces credit, the
+	 * channel's envelopes are not held back.
+	 * 
+	 * @param outputChannelID
+	 *        the ID of the output channel to register
+	 */
+	void register(final ChannelID outputChannelID) {
+
+		this.channelCredits.putIfAbsent(outputChannelID, new ChannelCredit());
+	}
+
+	/**
+	 * Passes the given envelope on to the envelope transmitter or holds it back if the receiver of the envelope's
+	 * source channel has not announced enough credit.
+	 * 
+	 * @param remoteReceiver
+	 *        the receiver of the envelope
+	 * @param transferEnvelope
+	 *        the envelope to transmit
+	 */
+	void queueEnvelope(final RemoteReceiver remoteReceiver, final TransferEnvelope transferEnvelope) {
+
+		final ChannelCredit channelCredit = this.channelCredits.get(transferEnvelope.getSource());
+		if (channelCredit == null) {
+			this.envelopeTransmitter.transmitEnvelope(remoteReceiver, transferEnvelope);
+		} else {
+			channelCredit.queueEnvelope(remoteReceiver, transferEnvelope, this.envelopeTransmitter);
+		}
+	}
+
+	/**
+	 * Records credit announced by the receiver of the given output channel. Announcements for channels which are not
+	 * registered (anymore) are ignored.
+	 * 
+	 * @param outputChannelID
+	 *        the ID of the output channel the credit is announced to
+	 * @param maximumSequenceNumber
+	 *        the highest sequence number of an envelope with a buffer which may be transmitted
+	 */
+	void grant(final ChannelID outputChannelID, final int maximumSequenceNumber) {
+
+		final ChannelCredit channelCredit = this.channelCredits.get(outputChannelID);
+		if (channelCredit != null) {
+			// A concurrently removed credit has already been destroyed and no longer holds back any envelopes
+			channelCredit.grant(maximumSequenceNumber, this.envelopeTransmitter);
+		}
+	}
+
+	/**
+	 * Removes the credit of the given output channel and drops all of its envelopes which are still held back.
+	 * 
+	 * @param outputChannelID
+	 *        the ID of the output channel
+	 */
+	void remove(final ChannelID outputChannelID) {
+
+		final ChannelCredit channelCredit = this.channelCredits.remove(outputChannelID);
+		if (channelCredit != null) {
+			channelCredit.destroy();
+		}
+	}
+
+	/**
+	 * Checks whether the given output channel is registered for the credit-based flow control.
+	 * 
+	 * @param outputChannelID
+	 *        the ID of the output channel
+	 * @return <code>true</code> if the channel is registered, <code>false</code> otherwise
+	 */
+	boolean isRegistered(final ChannelID outputChannelID) {
+
+		return this.channelCredits.containsKey(outputChannelID);
+	}
+
+	/**
+	 * Returns the number of envelopes of the given output channel which are currently held back.
+	 * 
+	 * @param outputChannelID
+	 *        the ID of the output channel
+	 * @return the number of envelopes currently held back, <code>0</code> if the channel is not registered
+	 */
+	int getNumberOfPendingEnvelopes(final ChannelID outputChannelID) {
+
+		final ChannelCredit channelCredit = this.channelCredits.get(outputChannelID);
+		if (channelCredit == null) {
+			return 0;
+		}
+
+		return channelCredit.getNumberOfPendingEnvelopes();
+	}
+
+	/**
+	 * Writes the number of envelopes held back for each channel to the standard output. This method is primarily for
+	 * debugging purposes.
+	 */
+	void logPendingEnvelopes() {
+
+		final Iterator<Map.Entry<ChannelID, ChannelCredit>> it = this.channelCredits.entrySet().iterator();
+		while (it.hasNext()) {
+
+			final Map.Entry<ChannelID, ChannelCredit> entry = it.next();
+			final int numberOfPendingEnvelopes = entry.getValue().getNumberOfPendingEnvelopes();
+			if (numberOfPendingEnvelopes > 0) {
+				System.out.println("\t\t" + entry.getKey() + ": " + numberOfPendingEnvelopes);
+			}
+		}
+	}
+}
@@ -0,0 +1,35 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.bytebuffered;
+
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+
+/**
+ * An envelope transmitter hands {@link TransferEnvelope} objects to the network once they are no longer held back by
+ * the credit-based flow control.
+ */
+interface EnvelopeTransmitter {
+
+	/**
+	 * Hands an envelope to the outgoing connection for the given target host.
+	 * 
+	 * @param remoteReceiver
+	 *        the address of the remote receiver
+	 * @param transferEnvelope
+	 *        the envelope to be transfered
+	 */
+	void transmitEnvelope(RemoteReceiver remoteReceiver, TransferEnvelope transferEnvelope);
+}
@@ -23,6 +23,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProvider;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.ChannelAliasDictionary;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.DefaultDeserializer;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.NoBufferAvailableException;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
@@ -61,7 +62,8 @@ public class IncomingConnection {
 	public IncomingConnection(ByteBufferedChannelManager byteBufferedChannelManager,
 			ReadableByteChannel readableByteChannel) {
 		this.byteBufferedChannelManager = byteBufferedChannelManager;
-		this.deserializer = new DefaultDeserializer(byteBufferedChannelManager);
+		// Aliases are only valid for the lifetime of this connection
+		this.deserializer = new DefaultDeserializer(byteBufferedChannelManager, new ChannelAliasDictionary());
 		this.readableByteChannel = readableByteChannel;
 	}
 
@@ -24,7 +24,9 @@ import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Queue;
 
 import org.apache.commons.logging.Log;
@@ -46,6 +48,26 @@ public class IncomingConnectionThread extends Thread {
 
 	private final ServerSocketChannel listeningSocket;
 
+	/**
+	 * Connections accepted by the listening thread which are waiting to be registered with this thread's selector.
+	 */
+	private final Queue<SocketChannel> pendingIncomingConnections = new ArrayDeque<SocketChannel>();
+
+	/**
+	 * The threads the listening thread distributes the accepted connections among, including itself.
+	 */
+	private final List<IncomingConnectionThread> connectionThreads = new ArrayList<IncomingConnectionThread>();
+
+	/**
+	 * The index of the thread the next accepted connection is assigned to.
+	 */
+	private int nextConnectionThread = 0;
+
+	/**
+	 * The number of connections which have been registered with this thread's selector.
+	 */
+	private volatile int numberOfRegisteredConnections = 0;
+
 	private static final class IncomingConnectionBufferAvailListener implements BufferAvailabilityListener {
 
 		private final Queue<SelectionKey> pendingReadEventSubscribeRequests;
@@ -84,16 +106,54 @@ public class IncomingConnectionThread extends Thread {
 			listeningSocket.register(this.selector, SelectionKey.OP_ACCEPT);
 			this.listeningSocket.socket().bind(listeningAddress);
 			LOG.debug("Listening on " + this.listeningSocket.socket().getLocalSocketAddress());
+			this.connectionThreads.add(this);
 		} else {
 			this.listeningSocket = null;
 		}
 	}
 
+	/**
+	 * Adds a thread the listening thread shall assign accepted connections to. This method must be called before the
+	 * listening thread is started.
+	 * 
+	 * @param connectionThread
+	 *        the thread to assign accepted connections to
+	 */
+	void addConnectionThread(final IncomingConnectionThread connectionThread) {
+
+		if (this.listeningSocket == null) {
+			throw new IllegalStateException("Connections can only be distributed by the listening thread");
+		}
+
+		this.connectionThreads.add(connectionThread);
+	}
+
+	/**
+	 * Hands a connection accepted by the listening thread over to this thread.
+	 * 
+	 * @param clientSocket
+	 *        the socket of the accepted connection
+	 */
+	private void addIncomingConnection(final SocketChannel clientSocket) {
+
+		synchronized (this.pendingIncomingConnections) {
+			this.pendingIncomingConnections.add(clientSocket);
+		}
+
+		this.selector.wakeup();
+	}
+
 	@Override
 	public void run() {
 
 		while (!this.isInterrupted()) {
 
+			synchronized (this.pendingIncomingConnections) {
+				while (!this.pendingIncomingConnections.isEmpty()) {
+					registerIncomingConnection(this.pendingIncomingConnections.poll());
+				}
+			}
+
 			synchronized (this.pendingReadEventSubscribeRequests) {
 				while (!this.pendingReadEventSubscribeRequests.isEmpty()) {
 					final SelectionKey key = this.pendingReadEventSubscribeRequests.poll();
@@ -168,6 +228,19 @@ public class IncomingConnectionThread extends Thread {
 			return;
 		}
 
+		// Spread the connections over the connection threads
+		final IncomingConnectionThread connectionThread = this.connectionThreads.get(this.nextConnectionThread);
+		this.nextConnectionThread = (this.nextConnectionThread + 1) % this.connectionThreads.size();
+
+		if (connectionThread == this) {
+			registerIncomingConnection(clientSocket);
+		} else {
+			connectionThread.addIncomingConnection(clientSocket);
+		}
+	}
+
+	private void registerIncomingConnection(final SocketChannel clientSocket) {
+
 		final IncomingConnection incomingConnection = new IncomingConnection(this.byteBufferedChannelManager,
 			clientSocket);
 		SelectionKey clientKey = null;
@@ -175,11 +248,22 @@ public class IncomingConnectionThread extends Thread {
 			clientSocket.configureBlocking(false);
 			clientKey = clientSocket.register(this.selector, SelectionKey.OP_READ);
 			clientKey.attach(incomingConnection);
+			++this.numberOfRegisteredConnections;
 		} catch (IOException ioe) {
 			incomingConnection.reportTransmissionProblem(clientKey, ioe);
 		}
 	}
 
+	/**
+	 * Returns the number of connections which have been registered with this thread so far.
+	 * 
+	 * @return the number of connections which have been registered with this thread so far
+	 */
+	int getNumberOfRegisteredConnections() {
+
+		return this.numberOfRegisteredConnections;
+	}
+
 	private void doRead(SelectionKey key) {
 
 		final IncomingConnection incomingConnection = (IncomingConnection) key.attachment();
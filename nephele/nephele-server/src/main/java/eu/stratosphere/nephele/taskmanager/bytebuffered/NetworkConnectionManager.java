@@ -24,25 +24,42 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import eu.stratosphere.nephele.configuration.Configuration;
 import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
 
 /**
  * The network connection manager manages incoming and outgoing network connection from and to other hosts.
  * <p>
+ * Envelopes for a remote receiver may be spread over several parallel connections to the receiving host. The
+ * connection an envelope is sent through is determined by the ID of the envelope's source channel, so the envelopes
+ * of a channel always arrive in the order they have been sent.
+ * <p>
  * This class is thread-safe.
  * 
  * @author warneke
  */
-public final class NetworkConnectionManager {
+public final class NetworkConnectionManager implements EnvelopeTransmitter {
 
 	/**
 	 * The default number of threads dealing with outgoing connections.
 	 */
 	private static final int DEFAULT_NUMBER_OF_OUTGOING_CONNECTION_THREADS = 1;
 
+	/**
+	 * The default number of threads dealing with incoming connections.
+	 */
+	private static final int DEFAULT_NUMBER_OF_INCOMING_CONNECTION_THREADS = 1;
+
+	/**
+	 * The default number of parallel connections to each remote receiver.
+	 */
+	private static final int DEFAULT_NUMBER_OF_CONNECTIONS_PER_PEER = 1;
+
 	/**
 	 * The default number of connection retries before giving up.
 	 */
@@ -54,14 +71,29 @@ public final class NetworkConnectionManager {
 	private final List<OutgoingConnectionThread> outgoingConnectionThreads = new CopyOnWriteArrayList<OutgoingConnectionThread>();
 
 	/**
-	 * Thread dealing with incoming connections.
+	 * The index of the outgoing connection thread the next outgoing connection is assigned to.
 	 */
-	private final IncomingConnectionThread incomingConnectionThread;
+	private final AtomicInteger nextOutgoingConnectionThread = new AtomicInteger(0);
 
 	/**
-	 * Map containing currently active outgoing connections.
+	 * Threads dealing with incoming connections, the first one also accepts new connections.
 	 */
-	private final ConcurrentMap<RemoteReceiver, OutgoingConnection> outgoingConnections = new ConcurrentHashMap<RemoteReceiver, OutgoingConnection>();
+	private final List<IncomingConnectionThread> incomingConnectionThreads = new CopyOnWriteArrayList<IncomingConnectionThread>();
+
+	/**
+	 * Map containing the currently active outgoing connections to each remote receiver.
+	 */
+	private final ConcurrentMap<RemoteReceiver, AtomicReferenceArray<OutgoingConnection>> outgoingConnections = new ConcurrentHashMap<RemoteReceiver, AtomicReferenceArray<OutgoingConnection>>();
+
+	/**
+	 * The number of parallel connections to each remote receiver.
+	 */
+	private final int numberOfConnectionsPerPeer;
+
+	/**
+	 * The announced credit of all registered network output channels.
+	 */
+	private final ChannelCreditManager channelCreditManager = new ChannelCreditManager(this);
 
 	/**
 	 * The number of connection retries before giving up.
@@ -90,26 +122,46 @@ public final class NetworkConnectionManager {
 			this.outgoingConnectionThreads.add(outgoingConnectionThread);
 		}
 
-		this.incomingConnectionThread = new IncomingConnectionThread(
+		final int numberOfIncomingConnectionThreads = configuration.getInteger(
+			"channel.network.numberOfIncomingConnectionThreads", DEFAULT_NUMBER_OF_INCOMING_CONNECTION_THREADS);
+
+		final IncomingConnectionThread listeningThread = new IncomingConnectionThread(
 			this.byteBufferedChannelManager, true, new InetSocketAddress(bindAddress, dataPort));
-		this.incomingConnectionThread.start();
+		this.incomingConnectionThreads.add(listeningThread);
+
+		for (int i = 1; i < numberOfIncomingConnectionThreads; i++) {
+			final IncomingConnectionThread incomingConnectionThread = new IncomingConnectionThread(
+				this.byteBufferedChannelManager, false, null);
+			listeningThread.addConnectionThread(incomingConnectionThread);
+			incomingConnectionThread.start();
+			this.incomingConnectionThreads.add(incomingConnectionThread);
+		}
+
+		listeningThread.start();
+
+		this.numberOfConnectionsPerPeer = Math.max(1, configuration.getInteger(
+			"channel.network.numberOfConnectionsPerPeer", DEFAULT_NUMBER_OF_CONNECTIONS_PER_PEER));
 
 		this.numberOfConnectionRetries = configuration.getInteger("channel.network.numberOfConnectionRetries",
 			DEFAULT_NUMBER_OF_CONNECTION_RETRIES);
 	}
 
 	/**
-	 * Randomly selects one of the active threads dealing with outgoing connections.
+	 * Selects one of the active threads dealing with outgoing connections in a round-robin fashion, so parallel
+	 * connections to the same remote receiver are handled by different threads.
 	 * 
 	 * @return one of the active threads dealing with outgoing connections
 	 */
 	private OutgoingConnectionThread getOutgoingConnectionThread() {
 
-		return this.outgoingConnectionThreads.get((int) (this.outgoingConnectionThreads.size() * Math.random()));
+		final int index = this.nextOutgoingConnectionThread.getAndIncrement() & Integer.MAX_VALUE;
+
+		return this.outgoingConnectionThreads.get(index % this.outgoingConnectionThreads.size());
 	}
 
 	/**
-	 * Queues an envelope for transfer to a particular target host.
+	 * Queues an envelope for transfer to a particular target host. If the receiver of the envelope's source channel
+	 * has announced credit, the envelope is held back until it is covered by the credit.
 	 * 
 	 * @param remoteReceiver
 	 *        the address of the remote receiver
@@ -118,31 +170,94 @@ public final class NetworkConnectionManager {
 	 */
 	public void queueEnvelopeForTransfer(final RemoteReceiver remoteReceiver, final TransferEnvelope transferEnvelope) {
 
-		getOutgoingConnection(remoteReceiver).queueEnvelope(transferEnvelope);
+		this.channelCreditManager.queueEnvelope(remoteReceiver, transferEnvelope);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void transmitEnvelope(final RemoteReceiver remoteReceiver, final TransferEnvelope transferEnvelope) {
+
+		getOutgoingConnection(remoteReceiver, transferEnvelope.getSource()).queueEnvelope(transferEnvelope);
+	}
+
+	/**
+	 * Registers the given network output channel for the credit-based flow control.
+	 * 
+	 * @param outputChannelID
+	 *        the ID of the output channel
+	 */
+	public void registerCredit(final ChannelID outputChannelID) {
+
+		this.channelCreditManager.register(outputChannelID);
+	}
+
+	/**
+	 * Records credit announced by the receiver of the given output channel. From the first announcement on, envelopes
+	 * of the channel with a buffer are only transmitted if they are covered by the credit. Announcements for channels
+	 * which have not been registered or have already been removed are ignored.
+	 * 
+	 * @param outputChannelID
+	 *        the ID of the output channel the credit is announced to
+	 * @param maximumSequenceNumber
+	 *        the highest sequence number of an envelope with a buffer which may be transmitted
+	 */
+	public void grantCredit(final ChannelID outputChannelID, final int maximumSequenceNumber) {
+
+		this.channelCreditManager.grant(outputChannelID, maximumSequenceNumber);
+	}
+
+	/**
+	 * Removes the credit of the given output channel and drops all of its envelopes which are still held back.
+	 * 
+	 * @param outputChannelID
+	 *        the ID of the output channel
+	 */
+	public void removeCredit(final ChannelID outputChannelID) {
+
+		this.channelCreditManager.remove(outputChannelID);
 	}
 
 	/**
-	 * Returns (and possibly creates) the outgoing connection for the given target address.
+	 * Returns (and possibly creates) the outgoing connection to the given remote receiver which carries the envelopes
+	 * of the given channel.
 	 * 
-	 * @param targetAddress
-	 *        the address of the connection target
+	 * @param remoteReceiver
+	 *        the remote receiver
+	 * @param sourceChannelID
+	 *        the ID of the channel the envelopes to be transmitted originate from
 	 * @return the outgoing connection object
 	 */
-	private OutgoingConnection getOutgoingConnection(final RemoteReceiver remoteReceiver) {
+	OutgoingConnection getOutgoingConnection(final RemoteReceiver remoteReceiver,
+			final ChannelID sourceChannelID) {
+
+		AtomicReferenceArray<OutgoingConnection> connections = this.outgoingConnections.get(remoteReceiver);
+		if (connections == null) {
+
+			connections = new AtomicReferenceArray<OutgoingConnection>(this.numberOfConnectionsPerPeer);
+
+			final AtomicReferenceArray<OutgoingConnection> oldEntry = this.outgoingConnections.putIfAbsent(
+				remoteReceiver, connections);
+
+			// We had a race, use the old value
+			if (oldEntry != null) {
+				connections = oldEntry;
+			}
+		}
 
-		OutgoingConnection outgoingConnection = this.outgoingConnections.get(remoteReceiver);
+		// Stripe the channels across the parallel connections
+		final int index = (sourceChannelID.hashCode() & Integer.MAX_VALUE) % connections.length();
 
+		OutgoingConnection outgoingConnection = connections.get(index);
 		if (outgoingConnection == null) {
 
 			outgoingConnection = new OutgoingConnection(remoteReceiver, getOutgoingConnectionThread(),
 				this.numberOfConnectionRetries);
 
-			final OutgoingConnection oldEntry = this.outgoingConnections
-				.putIfAbsent(remoteReceiver, outgoingConnection);
-
 			// We had a race, use the old value
-			if (oldEntry != null) {
-				outgoingConnection = oldEntry;
+			if (!connections.compareAndSet(index, null, outgoingConnection)) {
+				outgoingConnection = connections.get(index);
 			}
 		}
 
@@ -152,7 +267,10 @@ public final class NetworkConnectionManager {
 	public void shutDown() {
 
 		// Interrupt the threads we started
-		this.incomingConnectionThread.interrupt();
+		final Iterator<IncomingConnectionThread> incomingIt = this.incomingConnectionThreads.iterator();
+		while (incomingIt.hasNext()) {
+			incomingIt.next().interrupt();
+		}
 
 		final Iterator<OutgoingConnectionThread> it = this.outgoingConnectionThreads.iterator();
 		while (it.hasNext()) {
@@ -164,13 +282,23 @@ public final class NetworkConnectionManager {
 
 		System.out.println("\tOutgoing connections:");
 
-		final Iterator<Map.Entry<RemoteReceiver, OutgoingConnection>> it = this.outgoingConnections.entrySet()
-			.iterator();
+		final Iterator<Map.Entry<RemoteReceiver, AtomicReferenceArray<OutgoingConnection>>> it = this.outgoingConnections
+			.entrySet().iterator();
 
 		while (it.hasNext()) {
 
-			final Map.Entry<RemoteReceiver, OutgoingConnection> entry = it.next();
-			System.out.println("\t\tOC " + entry.getKey() + ": " + entry.getValue().getNumberOfQueuedWriteBuffers());
+			final Map.Entry<RemoteReceiver, AtomicReferenceArray<OutgoingConnection>> entry = it.next();
+			final AtomicReferenceArray<OutgoingConnection> connections = entry.getValue();
+			for (int i = 0; i < connections.length(); ++i) {
+				final OutgoingConnection outgoingConnection = connections.get(i);
+				if (outgoingConnection != null) {
+					System.out.println("\t\tOC " + entry.getKey() + " [" + i + "]: "
+						+ outgoingConnection.getNumberOfQueuedWriteBuffers());
+				}
+			}
 		}
+
+		System.out.println("\tChannels waiting for credit:");
+		this.channelCreditManager.logPendingEnvelopes();
 	}
 }
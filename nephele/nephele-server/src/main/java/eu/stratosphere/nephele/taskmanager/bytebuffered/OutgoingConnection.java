@@ -17,6 +17,7 @@ package eu.stratosphere.nephele.taskmanager.bytebuffered;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.WritableByteChannel;
@@ -28,6 +29,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.ChannelAliasDictionary;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.GatheringSerializer;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.DefaultSerializer;
 
@@ -61,16 +64,34 @@ public class OutgoingConnection {
 	 */
 	private final Queue<TransferEnvelope> queuedEnvelopes = new ArrayDeque<TransferEnvelope>();
 
+	/**
+	 * The dictionary of channel aliases used in the envelope headers. It is cleared whenever a new TCP connection is
+	 * established.
+	 */
+	private final ChannelAliasDictionary aliasDictionary = new ChannelAliasDictionary();
+
 	/**
 	 * The {@link DefaultSerializer} object used to transform the envelopes into a byte stream.
 	 */
-	private final DefaultSerializer serializer = new DefaultSerializer();
+	private final DefaultSerializer serializer = new DefaultSerializer(this.aliasDictionary);
+
+	/**
+	 * The {@link GatheringSerializer} object used to transmit batches of envelopes with memory-backed buffers.
+	 */
+	private final GatheringSerializer gatheringSerializer = new GatheringSerializer(MAXIMUM_BATCH_SIZE,
+		this.aliasDictionary);
 
 	/**
 	 * The {@link TransferEnvelope} that is currently processed.
 	 */
 	private TransferEnvelope currentEnvelope = null;
 
+	/**
+	 * The number of envelopes at the head of the queue which are part of the batch currently processed by the
+	 * {@link GatheringSerializer}.
+	 */
+	private int numberOfBatchedEnvelopes = 0;
+
 	/**
 	 * Stores whether the underlying TCP connection is established. As this variable is accessed by the byte buffered
 	 * channel manager and the outgoing connection thread, it must be protected by a monitor.
@@ -109,6 +130,11 @@ public class OutgoingConnection {
 	 */
 	private static long RETRYINTERVAL = 1000L; // 1 second
 
+	/**
+	 * The maximum number of envelopes which are transmitted with a single gathering write.
+	 */
+	private static final int MAXIMUM_BATCH_SIZE = 64;
+
 	/**
 	 * Constructs a new outgoing connection object.
 	 * 
@@ -237,6 +263,10 @@ public class OutgoingConnection {
 				}
 			}
 
+			// The envelopes of the current batch are still queued, so they are released below
+			this.gatheringSerializer.clear();
+			this.numberOfBatchedEnvelopes = 0;
+
 			// Notify all other tasks which are waiting for data to be transmitted
 			final Iterator<TransferEnvelope> iter = this.queuedEnvelopes.iterator();
 			while (iter.hasNext()) {
@@ -309,6 +339,16 @@ public class OutgoingConnection {
 					this.currentEnvelope = null;
 				}
 			}
+
+			// The same applies to the envelopes of the current batch
+			while (this.numberOfBatchedEnvelopes > 0) {
+				final TransferEnvelope envelope = this.queuedEnvelopes.poll();
+				if (envelope.getBuffer() != null) {
+					envelope.getBuffer().recycleBuffer();
+				}
+				--this.numberOfBatchedEnvelopes;
+			}
+			this.gatheringSerializer.clear();
 		}
 	}
 
@@ -345,17 +385,33 @@ public class OutgoingConnection {
 
 		final WritableByteChannel writableByteChannel = (WritableByteChannel) this.selectionKey.channel();
 
-		if (this.currentEnvelope == null) {
+		if (this.currentEnvelope == null && this.numberOfBatchedEnvelopes == 0) {
 			synchronized (this.queuedEnvelopes) {
 				if (this.queuedEnvelopes.isEmpty()) {
 					return false;
-				} else {
+				}
+
+				// Batch as many consecutive envelopes with memory-backed buffers as possible
+				final Iterator<TransferEnvelope> it = this.queuedEnvelopes.iterator();
+				while (it.hasNext()) {
+					if (!this.gatheringSerializer.add(it.next())) {
+						break;
+					}
+					++this.numberOfBatchedEnvelopes;
+				}
+
+				if (this.numberOfBatchedEnvelopes == 0) {
 					this.currentEnvelope = this.queuedEnvelopes.peek();
 					this.serializer.setTransferEnvelope(this.currentEnvelope);
 				}
 			}
 		}
 
+		if (this.numberOfBatchedEnvelopes > 0) {
+			writeBatch((GatheringByteChannel) writableByteChannel);
+			return true;
+		}
+
 		if (!this.serializer.write(writableByteChannel)) {
 
 			// Make sure we recycle the attached memory or file buffers correctly
@@ -372,6 +428,36 @@ public class OutgoingConnection {
 		return true;
 	}
 
+	/**
+	 * Writes the current batch of envelopes to the given channel and removes the envelopes which have been transmitted
+	 * entirely from the queue.
+	 * 
+	 * @param gatheringByteChannel
+	 *        the channel to write the batch to
+	 * @throws IOException
+	 *         thrown if an error occurs while writing the data to the channel
+	 */
+	private void writeBatch(final GatheringByteChannel gatheringByteChannel) throws IOException {
+
+		int completedEnvelopes = this.gatheringSerializer.write(gatheringByteChannel);
+		if (completedEnvelopes == 0) {
+			return;
+		}
+
+		synchronized (this.queuedEnvelopes) {
+
+			this.numberOfBatchedEnvelopes -= completedEnvelopes;
+			while (completedEnvelopes-- > 0) {
+
+				// Make sure we recycle the attached memory buffers correctly
+				final TransferEnvelope envelope = this.queuedEnvelopes.poll();
+				if (envelope.getBuffer() != null) {
+					envelope.getBuffer().recycleBuffer();
+				}
+			}
+		}
+	}
+
 	/**
 	 * Requests to close the underlying TCP connection. The request is ignored if at least one {@link TransferEnvelope}
 	 * is queued.
@@ -451,7 +537,8 @@ public class OutgoingConnection {
 
 	/**
 	 * Removes all queued {@link TransferEnvelope} objects from the transmission which match the given source channel
-	 * ID.
+	 * ID. Envelopes which are currently being written to the TCP connection, either as part of the current batch or
+	 * as the current envelope, are kept since they are removed and recycled once their transmission is complete.
 	 * 
 	 * @param sourceChannelID
 	 *        the source channel ID of the transfered transfer envelopes to be dropped
@@ -460,9 +547,19 @@ public class OutgoingConnection {
 
 		synchronized (this.queuedEnvelopes) {
 
+			// Skip the envelopes at the head of the queue which are currently in transmission
+			int envelopesToSkip = this.numberOfBatchedEnvelopes;
+			if (this.currentEnvelope != null) {
+				++envelopesToSkip;
+			}
+
 			final Iterator<TransferEnvelope> it = this.queuedEnvelopes.iterator();
 			while (it.hasNext()) {
 				final TransferEnvelope te = it.next();
+				if (envelopesToSkip > 0) {
+					--envelopesToSkip;
+					continue;
+				}
 				if (sourceChannelID.equals(te.getSource())) {
 					it.remove();
 					if (te.getBuffer() != null) {
@@ -490,7 +587,7 @@ public class OutgoingConnection {
 				return false;
 			}
 
-			if (this.currentEnvelope != null) {
+			if (this.currentEnvelope != null || this.numberOfBatchedEnvelopes > 0) {
 				return false;
 			}
 
@@ -505,6 +602,21 @@ public class OutgoingConnection {
 	 *        the selection of the underlying TCP connection
 	 */
 	public void setSelectionKey(SelectionKey selectionKey) {
+
+		if (this.selectionKey == null || this.selectionKey.channel() != selectionKey.channel()) {
+
+			// A new TCP connection starts with an empty alias dictionary on the receiving side
+			synchronized (this.queuedEnvelopes) {
+				this.aliasDictionary.clear();
+				this.serializer.reset();
+				if (this.numberOfBatchedEnvelopes > 0) {
+					// The batch's headers may refer to aliases of the previous connection
+					this.gatheringSerializer.clear();
+					this.numberOfBatchedEnvelopes = 0;
+				}
+			}
+		}
+
 		this.selectionKey = selectionKey;
 	}
 
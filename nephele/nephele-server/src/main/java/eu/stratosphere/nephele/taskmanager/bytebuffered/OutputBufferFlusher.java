@@ -0,0 +1,168 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.bytebuffered;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.io.channels.ChannelID;
+
+/**
+ * The output buffer flusher is a task manager wide thread which periodically checks for output channels whose
+ * partially filled buffers have been held back longer than the channels' buffer timeout. It thereby bounds the latency
+ * records experience on channels with a low data rate. The flusher only marks these channels, the buffers themselves
+ * are forwarded by the task threads with the next record they write or while they wait for input, so the forwarding
+ * chains of the channels, which may include the task's checkpoint and compressor, are never entered concurrently.
+ */
+final class OutputBufferFlusher extends Thread {
+
+	/**
+	 * The log object used to report problems and errors.
+	 */
+	private static final Log LOG = LogFactory.getLog(OutputBufferFlusher.class);
+
+	/**
+	 * The output channels whose partially filled buffers shall be forwarded after their buffer timeout.
+	 */
+	private final Map<ChannelID, OutputChannelContext> registeredChannels = new ConcurrentHashMap<ChannelID, OutputChannelContext>();
+
+	/**
+	 * The interval in milliseconds in which the registered channels are checked, <code>-1</code> if no channel is
+	 * registered.
+	 */
+	private long checkInterval = -1L;
+
+	/**
+	 * The number of flushes requested by this flusher since its instantiation.
+	 */
+	private long numberOfFlushRequests = 0L;
+
+	/**
+	 * Constructs a new output buffer flusher.
+	 */
+	OutputBufferFlusher() {
+		super("Output Buffer Flusher");
+
+		setDaemon(true);
+	}
+
+	/**
+	 * Registers the given output channel with the flusher. Channels without a buffer timeout are ignored.
+	 * 
+	 * @param outputChannelContext
+	 *        the context of the output channel to register
+	 */
+	void register(final OutputChannelContext outputChannelContext) {
+
+		if (outputChannelContext.getBufferTimeout() <= 0L) {
+			return;
+		}
+
+		this.registeredChannels.put(outputChannelContext.getChannelID(), outputChannelContext);
+		updateCheckInterval();
+	}
+
+	/**
+	 * Removes the output channel with the given ID from the flusher.
+	 * 
+	 * @param channelID
+	 *        the ID of the output channel to remove
+	 */
+	void unregister(final ChannelID channelID) {
+
+		if (this.registeredChannels.remove(channelID) != null) {
+			updateCheckInterval();
+		}
+	}
+
+	/**
+	 * Recomputes the check interval from the buffer timeouts of the registered channels. Checking twice per smallest
+	 * timeout guarantees that no buffer is held back considerably longer than its timeout.
+	 */
+	private synchronized void updateCheckInterval() {
+
+		long minimumTimeout = Long.MAX_VALUE;
+		final Iterator<OutputChannelContext> it = this.registeredChannels.values().iterator();
+		while (it.hasNext()) {
+			minimumTimeout = Math.min(minimumTimeout, it.next().getBufferTimeout());
+		}
+
+		if (minimumTimeout == Long.MAX_VALUE) {
+			this.checkInterval = -1L;
+		} else {
+			this.checkInterval = Math.max(1L, minimumTimeout / 2L);
+			notify();
+		}
+	}
+
+	/**
+	 * Blocks until at least one channel is registered and returns the current check interval.
+	 * 
+	 * @return the current check interval in milliseconds
+	 * @throws InterruptedException
+	 *         thrown if the flusher is interrupted while waiting for channels to be registered
+	 */
+	private synchronized long waitForCheckInterval() throws InterruptedException {
+
+		while (this.checkInterval < 0L) {
+			wait();
+		}
+
+		return this.checkInterval;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void run() {
+
+		while (!isInterrupted()) {
+
+			try {
+				Thread.sleep(waitForCheckInterval());
+			} catch (InterruptedException e) {
+				break;
+			}
+
+			final long now = System.currentTimeMillis();
+			final Iterator<OutputChannelContext> it = this.registeredChannels.values().iterator();
+			while (it.hasNext()) {
+
+				if (it.next().requestFlushIfTimedOut(now)) {
+					++this.numberOfFlushRequests;
+				}
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Output buffer flusher requested " + this.numberOfFlushRequests
+				+ " partially filled buffers to be forwarded after their timeout");
+		}
+	}
+
+	/**
+	 * Stops the output buffer flusher.
+	 */
+	void shutDown() {
+
+		interrupt();
+	}
+}
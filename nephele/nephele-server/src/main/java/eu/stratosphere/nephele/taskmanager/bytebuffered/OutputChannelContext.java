@@ -16,4 +16,8 @@
 package eu.stratosphere.nephele.taskmanager.bytebuffered;
 
 public interface OutputChannelContext extends ChannelContext {
+
+	long getBufferTimeout();
+
+	boolean requestFlushIfTimedOut(long now);
 }
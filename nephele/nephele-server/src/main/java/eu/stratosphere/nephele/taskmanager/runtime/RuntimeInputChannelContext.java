@@ -35,6 +35,7 @@ import eu.stratosphere.nephele.io.compression.CompressionException;
 import eu.stratosphere.nephele.io.compression.Decompressor;
 import eu.stratosphere.nephele.jobgraph.JobID;
 import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferAvailabilityListener;
+import eu.stratosphere.nephele.taskmanager.bytebuffered.ChannelCreditEvent;
 import eu.stratosphere.nephele.taskmanager.bytebuffered.InputChannelContext;
 import eu.stratosphere.nephele.taskmanager.bytebuffered.ReceiverNotFoundEvent;
 import eu.stratosphere.nephele.taskmanager.bytebuffered.UnexpectedEnvelopeEvent;
@@ -60,6 +61,11 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 
 	private int lastReceivedEnvelope = -1;
 
+	/**
+	 * The highest sequence number of an envelope with a buffer announced to the sender as credit.
+	 */
+	private int announcedCredit = -1;
+
 	private boolean destroyCalled = false;
 
 	RuntimeInputChannelContext(final RuntimeInputGateContext inputGateContext,
@@ -114,6 +120,8 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 			// Notify the channel that an envelope has been consumed
 			this.envelopeConsumptionLog.reportEnvelopeConsumed(this.byteBufferedInputChannel);
 
+			announceCredit(transferEnvelope.getSequenceNumber());
+
 			return null;
 		}
 
@@ -159,6 +167,60 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 
 		// Recycle consumed read buffer
 		buffer.recycleBuffer();
+
+		announceCredit(transferEnvelope.getSequenceNumber());
+	}
+
+	/**
+	 * Announces new credit to the sender of a network channel once half of the previously announced credit has been
+	 * consumed. The credit covers as many envelopes beyond the consumed one as the channel's share of the gate's
+	 * buffers allows.
+	 * 
+	 * @param consumedSequenceNumber
+	 *        the sequence number of the envelope which has just been consumed
+	 */
+	private void announceCredit(final int consumedSequenceNumber) {
+
+		if (getType() != ChannelType.NETWORK) {
+			return;
+		}
+
+		final int credit = computeCreditToAnnounce(this.announcedCredit, consumedSequenceNumber,
+			this.inputGateContext.getCreditWindow());
+		if (credit == this.announcedCredit) {
+			return;
+		}
+
+		this.announcedCredit = credit;
+
+		try {
+			transferEventToOutputChannel(new ChannelCreditEvent(getConnectedChannelID(), this.announcedCredit));
+		} catch (Exception e) {
+			LOG.error(StringUtils.stringifyException(e));
+		}
+	}
+
+	/**
+	 * Computes the credit to announce after an envelope has been consumed. New credit is only announced once half of
+	 * the previously announced credit has been consumed, so the sender is not flooded with announcements.
+	 * 
+	 * @param announcedCredit
+	 *        the highest sequence number announced to the sender so far, <code>-1</code> if no credit has been
+	 *        announced yet
+	 * @param consumedSequenceNumber
+	 *        the sequence number of the envelope which has just been consumed
+	 * @param creditWindow
+	 *        the number of envelopes with buffers the channel may have in flight
+	 * @return the credit to announce or <code>announcedCredit</code> if no new credit shall be announced
+	 */
+	static int computeCreditToAnnounce(final int announcedCredit, final int consumedSequenceNumber,
+			final int creditWindow) {
+
+		if (announcedCredit - consumedSequenceNumber > creditWindow / 2) {
+			return announcedCredit;
+		}
+
+		return consumedSequenceNumber + creditWindow;
 	}
 
 	/**
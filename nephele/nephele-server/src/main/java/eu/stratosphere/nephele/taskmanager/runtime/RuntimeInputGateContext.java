@@ -137,6 +137,24 @@ final class RuntimeInputGateContext implements BufferProvider, InputGateContext,
 		this.localBufferPool.setDesignatedNumberOfBuffers(numberOfBuffers);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void updateBufferDemand(final long interval) {
+
+		this.localBufferPool.updateDemand(interval);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getBufferDemand() {
+
+		return this.localBufferPool.getDemand();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -155,10 +173,13 @@ final class RuntimeInputGateContext implements BufferProvider, InputGateContext,
 		final int ava = this.localBufferPool.getNumberOfAvailableBuffers();
 		final int req = this.localBufferPool.getRequestedNumberOfBuffers();
 		final int des = this.localBufferPool.getDesignatedNumberOfBuffers();
+		final double dem = this.localBufferPool.getDemand();
+		final long wai = this.localBufferPool.getWaitTime();
 
 		System.out
 			.println("\t\tInput gate " + this.inputGate.getIndex() + " of " + this.taskName + ": " + ava
-				+ " available, " + req + " requested, " + des + " designated");
+				+ " available, " + req + " requested, " + des + " designated, " + String.format("%.1f", dem)
+				+ " demand, " + wai + " ms waited");
 	}
 
 	/**
@@ -218,6 +239,22 @@ final class RuntimeInputGateContext implements BufferProvider, InputGateContext,
 		return this.taskName;
 	}
 
+	/**
+	 * Returns the number of envelopes with buffers each network channel of this gate may have in flight, i.e. the
+	 * channel's share of the buffers currently designated to this gate.
+	 * 
+	 * @return the credit window of a single channel, at least one
+	 */
+	int getCreditWindow() {
+
+		final int numberOfChannels = this.inputGate.getNumberOfInputChannels();
+		if (numberOfChannels == 0) {
+			return 1;
+		}
+
+		return Math.max(1, this.localBufferPool.getDesignatedNumberOfBuffers() / numberOfChannels);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
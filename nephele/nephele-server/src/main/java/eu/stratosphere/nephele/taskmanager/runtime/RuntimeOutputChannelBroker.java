@@ -25,6 +25,8 @@ import eu.stratosphere.nephele.io.channels.bytebuffered.AbstractByteBufferedOutp
 import eu.stratosphere.nephele.io.channels.bytebuffered.ByteBufferedChannelCloseEvent;
 import eu.stratosphere.nephele.io.channels.bytebuffered.ByteBufferedOutputChannelBroker;
 import eu.stratosphere.nephele.io.compression.CompressionException;
+import eu.stratosphere.nephele.io.compression.CompressionLevel;
+import eu.stratosphere.nephele.io.compression.CompressionLoader;
 import eu.stratosphere.nephele.io.compression.Compressor;
 import eu.stratosphere.nephele.taskmanager.bytebuffered.AbstractOutputChannelForwarder;
 import eu.stratosphere.nephele.taskmanager.bytebuffered.OutputChannelForwardingChain;
@@ -168,7 +170,16 @@ final class RuntimeOutputChannelBroker extends AbstractOutputChannelForwarder im
 	private int calculateBufferSize() {
 
 		// TODO: Include latency considerations
-		return this.outputGateContext.getMaximumBufferSize();
+		final int maximumBufferSize = this.outputGateContext.getMaximumBufferSize();
+
+		// Leave room for the expansion of incompressible data, the compressed data must fit into a single buffer
+		final CompressionLevel compressionLevel = this.byteBufferedOutputChannel.getCompressionLevel();
+		if (compressionLevel != CompressionLevel.NO_COMPRESSION) {
+			return Math.min(maximumBufferSize,
+				CompressionLoader.getUncompressedBufferSize(maximumBufferSize, compressionLevel));
+		}
+
+		return maximumBufferSize;
 	}
 
 	/**
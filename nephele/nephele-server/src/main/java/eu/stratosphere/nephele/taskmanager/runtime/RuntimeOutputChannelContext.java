@@ -87,4 +87,22 @@ public final class RuntimeOutputChannelContext extends AbstractOutputChannelCont
 
 		this.byteBufferedOutputChannel.processEvent(event);
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getBufferTimeout() {
+
+		return this.byteBufferedOutputChannel.getBufferTimeout();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean requestFlushIfTimedOut(final long now) {
+
+		return this.byteBufferedOutputChannel.requestFlushIfTimedOut(now);
+	}
 }
@@ -28,6 +28,7 @@ import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.io.channels.ChannelType;
 import eu.stratosphere.nephele.io.channels.bytebuffered.AbstractByteBufferedOutputChannel;
 import eu.stratosphere.nephele.io.compression.CompressionException;
+import eu.stratosphere.nephele.io.compression.CompressionLevel;
 import eu.stratosphere.nephele.io.compression.CompressionLoader;
 import eu.stratosphere.nephele.io.compression.Compressor;
 import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferAvailabilityListener;
@@ -190,6 +191,13 @@ final class RuntimeOutputGateContext implements BufferProvider, OutputGateContex
 				outputChannelBroker = new RuntimeOutputChannelBroker(this, outputChannel, forwardingBarrier);
 			}
 			last = runtimeDispatcher;
+
+			// Bound the time partially filled buffers are held back before they are forwarded. Compressed channels are
+			// excluded, compressing small partial buffers costs ratio and distorts the throughput dynamic compression
+			// measures to pick its level.
+			if (outputChannel.getCompressionLevel() == CompressionLevel.NO_COMPRESSION) {
+				outputChannel.setBufferTimeout(this.taskContext.getBufferTimeout());
+			}
 		}
 
 		final OutputChannelForwardingChain forwardingChain = new OutputChannelForwardingChain(outputChannelBroker, last);
@@ -210,7 +218,9 @@ final class RuntimeOutputGateContext implements BufferProvider, OutputGateContex
 	}
 
 	/**
-	 * Returns (and if necessary previously creates) the compressor to be used by the attached output channels.
+	 * Returns (and if necessary previously creates) the compressor to be used by the attached output channels. In case
+	 * of dynamic compression, each output channel receives its own compressor since the choice of the compression
+	 * library depends on the channel's data and network path.
 	 * 
 	 * @return the compressor to be used by the attached output channels or <code>null</code> if no compression shall be
 	 *         applied
@@ -219,8 +229,14 @@ final class RuntimeOutputGateContext implements BufferProvider, OutputGateContex
 	 */
 	Compressor getCompressor() throws CompressionException {
 
+		final CompressionLevel compressionLevel = this.outputGate.getCompressionLevel();
+		if (compressionLevel == CompressionLevel.DYNAMIC_COMPRESSION) {
+			return CompressionLoader.getCompressorByCompressionLevel(compressionLevel,
+				this.taskContext.getCompressionBufferProvider());
+		}
+
 		if (this.compressor == null) {
-			this.compressor = CompressionLoader.getCompressorByCompressionLevel(this.outputGate.getCompressionLevel(),
+			this.compressor = CompressionLoader.getCompressorByCompressionLevel(compressionLevel,
 				this.taskContext.getCompressionBufferProvider());
 		} else {
 			this.compressor.increaseChannelCounter();
@@ -29,6 +29,7 @@ import eu.stratosphere.nephele.io.InputGate;
 import eu.stratosphere.nephele.io.OutputGate;
 import eu.stratosphere.nephele.io.channels.Buffer;
 import eu.stratosphere.nephele.io.compression.CompressionBufferProvider;
+import eu.stratosphere.nephele.jobgraph.JobGraph;
 import eu.stratosphere.nephele.taskmanager.bufferprovider.AsynchronousEventListener;
 import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferAvailabilityListener;
 import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProvider;
@@ -49,6 +50,8 @@ public final class RuntimeTaskContext implements BufferProvider, AsynchronousEve
 
 	private final int numberOfOutputChannels;
 
+	private final long bufferTimeout;
+
 	private final TransferEnvelopeDispatcher transferEnvelopeDispatcher;
 
 	private final EphemeralCheckpoint ephemeralCheckpoint;
@@ -77,6 +80,10 @@ public final class RuntimeTaskContext implements BufferProvider, AsynchronousEve
 		}
 		this.numberOfOutputChannels = nooc;
 
+		// A buffer timeout configured for the task overrides the one of the job
+		this.bufferTimeout = environment.getTaskConfiguration().getLong(JobGraph.BUFFER_TIMEOUT_KEY,
+			environment.getJobConfiguration().getLong(JobGraph.BUFFER_TIMEOUT_KEY, JobGraph.DEFAULT_BUFFER_TIMEOUT));
+
 		if (initialCheckpointState == CheckpointState.NONE) {
 			this.ephemeralCheckpoint = null;
 		} else {
@@ -99,6 +106,17 @@ public final class RuntimeTaskContext implements BufferProvider, AsynchronousEve
 		return this.ephemeralCheckpoint;
 	}
 
+	/**
+	 * Returns the maximum time in milliseconds a partially filled buffer of the task's output channels may be held
+	 * back before it is forwarded to the receiver.
+	 * 
+	 * @return the buffer timeout in milliseconds or <code>-1</code> if only full buffers shall be forwarded
+	 */
+	long getBufferTimeout() {
+
+		return this.bufferTimeout;
+	}
+
 	/**
 	 * Returns (and if necessary previously creates) a compression buffer provider for output gate contexts. This method
 	 * must not be called from input gate contexts since input gate contexts are supposed to have their own compression
@@ -176,11 +194,14 @@ public final class RuntimeTaskContext implements BufferProvider, AsynchronousEve
 		final int ava = this.localBufferPool.getNumberOfAvailableBuffers();
 		final int req = this.localBufferPool.getRequestedNumberOfBuffers();
 		final int des = this.localBufferPool.getDesignatedNumberOfBuffers();
+		final double dem = this.localBufferPool.getDemand();
+		final long wai = this.localBufferPool.getWaitTime();
 
 		final RuntimeEnvironment environment = this.task.getRuntimeEnvironment();
 
 		System.out.println("\t\t" + environment.getTaskNameWithIndex() + ": " + ava + " available, " + req
-			+ " requested, " + des + " designated");
+			+ " requested, " + des + " designated, " + String.format("%.1f", dem)
+			+ " demand, " + wai + " ms waited");
 
 		if (this.envelopeConsumptionLog.followsLog()) {
 			this.envelopeConsumptionLog.showOustandingEnvelopeLog();
@@ -243,6 +264,24 @@ public final class RuntimeTaskContext implements BufferProvider, AsynchronousEve
 		this.localBufferPool.setDesignatedNumberOfBuffers(numberOfBuffers);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void updateBufferDemand(final long interval) {
+
+		this.localBufferPool.updateDemand(interval);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getBufferDemand() {
+
+		return this.localBufferPool.getDemand();
+	}
+
 	AbstractID getFileOwnerID() {
 
 		return this.task.getVertexID();
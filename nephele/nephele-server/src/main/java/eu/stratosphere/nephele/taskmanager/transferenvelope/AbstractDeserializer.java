@@ -39,6 +39,8 @@ public abstract class AbstractDeserializer {
 
 	private static final int SIZEOFINT = 4;
 
+	private static final int SIZEOFID = 16;
+
 	private TransferEnvelope transferEnvelope = null;
 
 	private DeserializationState deserializationState = DeserializationState.NOTDESERIALIZED;
@@ -72,6 +74,44 @@ public abstract class AbstractDeserializer {
 
 	private EventList deserializedEventList = null;
 
+	/**
+	 * The dictionary used to resolve channel aliases in compact headers or <code>null</code> to read full headers.
+	 */
+	private final ChannelAliasDictionary aliasDictionary;
+
+	/**
+	 * Buffer to read a compact header including its length byte, <code>null</code> if full headers are read.
+	 */
+	private final ByteBuffer compactHeaderBuffer;
+
+	/**
+	 * Stores whether the compact header of the current envelope announced a buffer.
+	 */
+	private boolean bufferFollows = false;
+
+	/**
+	 * Constructs a new deserializer which reads full envelope headers.
+	 */
+	protected AbstractDeserializer() {
+		this(null);
+	}
+
+	/**
+	 * Constructs a new deserializer.
+	 * 
+	 * @param aliasDictionary
+	 *        the dictionary used to read compact envelope headers or <code>null</code> to read full headers
+	 */
+	protected AbstractDeserializer(final ChannelAliasDictionary aliasDictionary) {
+
+		this.aliasDictionary = aliasDictionary;
+		if (aliasDictionary == null) {
+			this.compactHeaderBuffer = null;
+		} else {
+			this.compactHeaderBuffer = ByteBuffer.allocate(1 + AbstractSerializer.MAXIMUM_COMPACT_HEADER_LENGTH);
+		}
+	}
+
 	public void read(ReadableByteChannel readableByteChannel) throws IOException, NoBufferAvailableException {
 
 		while (true) {
@@ -82,7 +122,11 @@ public abstract class AbstractDeserializer {
 
 			switch (deserializationState) {
 			case NOTDESERIALIZED:
-				waitingForMoreData = readSequenceNumber(readableByteChannel);
+				if (this.aliasDictionary == null) {
+					waitingForMoreData = readSequenceNumber(readableByteChannel);
+				} else {
+					waitingForMoreData = readCompactHeader(readableByteChannel);
+				}
 				break;
 			case SEQUENCENUMBERDESERIALIZED:
 				waitingForMoreData = readID(readableByteChannel);
@@ -169,6 +213,134 @@ public abstract class AbstractDeserializer {
 		return true;
 	}
 
+	private boolean readCompactHeader(final ReadableByteChannel readableByteChannel) throws IOException {
+
+		final ByteBuffer headerBuffer = this.compactHeaderBuffer;
+
+		if (!this.sequenceNumberDeserializationStarted) {
+			headerBuffer.clear();
+			headerBuffer.limit(1);
+			this.sequenceNumberDeserializationStarted = true;
+		}
+
+		if (headerBuffer.limit() == 1) {
+
+			if (readableByteChannel.read(headerBuffer) == -1) {
+				if (headerBuffer.position() == 0) {
+					// Regular end of stream
+					throw new EOFException();
+				} else {
+					throw new IOException("Unexpected end of stream while deserializing the header length");
+				}
+			}
+
+			if (headerBuffer.hasRemaining()) {
+				return true;
+			}
+
+			final int headerLength = headerBuffer.get(0) & 0xff;
+			if (headerLength == 0 || headerLength > AbstractSerializer.MAXIMUM_COMPACT_HEADER_LENGTH) {
+				throw new IOException("Received invalid header length: " + headerLength);
+			}
+
+			headerBuffer.limit(1 + headerLength);
+		}
+
+		if (readableByteChannel.read(headerBuffer) == -1) {
+			throw new IOException("Unexpected end of stream while deserializing the envelope header");
+		}
+
+		if (headerBuffer.hasRemaining()) {
+			return true;
+		}
+
+		headerBuffer.position(1);
+
+		final int aliasTag = readVarInt(headerBuffer);
+		final int alias = aliasTag >>> 1;
+		if ((aliasTag & 1) != 0) {
+
+			if (headerBuffer.remaining() < 2 * SIZEOFID) {
+				throw new IOException("Header too short to announce alias " + alias);
+			}
+
+			final byte[] id = new byte[SIZEOFID];
+			headerBuffer.get(id);
+			final JobID jobID = new JobID(id);
+			headerBuffer.get(id);
+			final ChannelID sourceID = new ChannelID(id);
+
+			try {
+				this.aliasDictionary.define(alias, jobID, sourceID);
+			} catch (IllegalArgumentException e) {
+				throw new IOException(e.getMessage());
+			}
+		}
+
+		this.deserializedJobID = this.aliasDictionary.getJobID(alias);
+		this.deserializedSourceID = this.aliasDictionary.getSourceID(alias);
+		if (this.deserializedSourceID == null) {
+			throw new IOException("Received unknown channel alias " + alias);
+		}
+
+		this.deserializedSequenceNumber = readVarInt(headerBuffer);
+
+		if (!headerBuffer.hasRemaining()) {
+			throw new IOException("Header too short to contain flags");
+		}
+		final int flags = headerBuffer.get();
+
+		this.sequenceNumberDeserializationStarted = false;
+		this.transferEnvelope = null;
+		this.buffer = null;
+		this.deserializedEventList = null;
+		this.bufferExistanceDeserialized = true;
+		this.bufferFollows = ((flags & AbstractSerializer.BUFFER_FLAG) != 0);
+		this.sizeOfBuffer = -1;
+
+		if (this.bufferFollows) {
+			this.sizeOfBuffer = readVarInt(headerBuffer);
+			if (this.sizeOfBuffer <= 0) {
+				throw new IOException("Invalid buffer size: " + this.sizeOfBuffer);
+			}
+		}
+
+		if ((flags & AbstractSerializer.EVENT_LIST_FLAG) != 0) {
+			// The event list is read as in the full header
+			this.eventListExistanceDeserialized = true;
+			this.tempBuffer.clear();
+			this.deserializationState = DeserializationState.SOURCEDESERIALIZED;
+		} else {
+			this.transferEnvelope = new TransferEnvelope(this.deserializedSequenceNumber, this.deserializedJobID,
+				this.deserializedSourceID, null);
+			this.deserializationState = DeserializationState.NOTIFICATIONSDESERIALIZED;
+		}
+
+		return false;
+	}
+
+	private static int readVarInt(final ByteBuffer byteBuffer) throws IOException {
+
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+
+			if (!byteBuffer.hasRemaining()) {
+				throw new IOException("Header too short to contain variable-length integer");
+			}
+
+			final int b = byteBuffer.get();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				if (value < 0) {
+					throw new IOException("Received negative variable-length integer " + value);
+				}
+				return value;
+			}
+		}
+
+		throw new IOException("Malformed variable-length integer");
+	}
+
 	private boolean readID(ReadableByteChannel readableByteChannel) throws IOException {
 
 		if (this.deserializationState == DeserializationState.SEQUENCENUMBERDESERIALIZED) {
@@ -245,6 +417,13 @@ public abstract class AbstractDeserializer {
 	private boolean readBuffer(final ReadableByteChannel readableByteChannel) throws IOException,
 			NoBufferAvailableException {
 
+		if (this.aliasDictionary != null && !this.bufferFollows) {
+			// The compact header announced that no buffer will follow
+			this.transferEnvelope.setBuffer(null);
+			this.deserializationState = DeserializationState.FULLYDESERIALIZED;
+			return false;
+		}
+
 		if (!this.bufferExistanceDeserialized) {
 
 			this.tempBuffer.position(0);
@@ -20,37 +20,68 @@ import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
 
 import eu.stratosphere.nephele.event.task.EventList;
-import eu.stratosphere.nephele.io.AbstractID;
+import eu.stratosphere.nephele.io.DataOutputBuffer;
 import eu.stratosphere.nephele.io.IOReadableWritable;
 import eu.stratosphere.nephele.io.channels.Buffer;
-import eu.stratosphere.nephele.io.channels.SerializationBuffer;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
 
 public abstract class AbstractSerializer {
 
-	private enum SerializationState {
-		NOTSERIALIZED,
-		SEQUENCENUMBERSERIALIZED,
-		JOBIDSERIALIZED,
-		SOURCESERIALIZED,
-		NOTIFICATIONSSERIALIZED,
-		FULLYSERIALIZED
-	};
+	/**
+	 * Flag in the compact header indicating that an event list follows the header.
+	 */
+	static final int EVENT_LIST_FLAG = 0x01;
+
+	/**
+	 * Flag in the compact header indicating that the envelope carries a buffer.
+	 */
+	static final int BUFFER_FLAG = 0x02;
 
-	private final static int SIZEOFINT = 4;
+	/**
+	 * The maximum length of a compact header, excluding its length byte and the event list.
+	 */
+	static final int MAXIMUM_COMPACT_HEADER_LENGTH = 5 + 2 * 16 + 5 + 1 + 5;
 
 	private TransferEnvelope transferEnvelope = null;
 
-	private SerializationState serializationState;
+	/**
+	 * The dictionary used to replace the job and channel IDs by aliases or <code>null</code> to write full headers.
+	 */
+	private final ChannelAliasDictionary aliasDictionary;
 
-	private final SerializationBuffer<IOReadableWritable> serializationBuffer = new SerializationBuffer<IOReadableWritable>();
+	/**
+	 * The serialized header of the current envelope, i.e. all data that precedes the buffer data.
+	 */
+	private final DataOutputBuffer header = new DataOutputBuffer();
+
+	/**
+	 * Auxiliary buffer to determine the length of serialized objects in the header.
+	 */
+	private final DataOutputBuffer lengthScratch = new DataOutputBuffer();
 
 	private final ByteBuffer tempBuffer = ByteBuffer.allocate(64); // TODO: Make this configurable
 
-	private boolean serializationStarted = false;
+	private ByteBuffer headerData = null;
 
-	private boolean bufferExistanceSerialized = false;
+	private boolean bufferDataSerialized = false;
 
-	private boolean eventListExistanceSerialized = false;
+	/**
+	 * Constructs a new serializer which writes full envelope headers.
+	 */
+	protected AbstractSerializer() {
+		this(null);
+	}
+
+	/**
+	 * Constructs a new serializer.
+	 * 
+	 * @param aliasDictionary
+	 *        the dictionary used to write compact envelope headers or <code>null</code> to write full headers
+	 */
+	protected AbstractSerializer(final ChannelAliasDictionary aliasDictionary) {
+		this.aliasDictionary = aliasDictionary;
+	}
 
 	public final void setTransferEnvelope(TransferEnvelope transferEnvelope) {
 
@@ -58,191 +89,189 @@ public abstract class AbstractSerializer {
 		reset();
 	}
 
-	protected final SerializationBuffer<IOReadableWritable> getSerializationBuffer() {
-
-		return this.serializationBuffer;
-	}
-
 	protected final ByteBuffer getTempBuffer() {
 		return this.tempBuffer;
 	}
 
 	public final boolean write(WritableByteChannel writableByteChannel) throws IOException {
 
-		while (true) {
-
-			boolean moreDataFollows = false;
-
-			// System.out.println("OUTGOING State: " + this.serializationState);
-
-			switch (serializationState) {
-			case NOTSERIALIZED:
-				moreDataFollows = writeSequenceNumber(writableByteChannel, this.transferEnvelope.getSequenceNumber());
-				break;
-			case SEQUENCENUMBERSERIALIZED:
-				moreDataFollows = writeID(writableByteChannel, this.transferEnvelope.getJobID());
-				break;
-			case JOBIDSERIALIZED:
-				moreDataFollows = writeID(writableByteChannel, this.transferEnvelope.getSource());
-				break;
-			case SOURCESERIALIZED:
-				moreDataFollows = writeNotification(writableByteChannel, this.transferEnvelope.getEventList());
-				break;
-			case NOTIFICATIONSSERIALIZED:
-				moreDataFollows = writeBuffer(writableByteChannel, this.transferEnvelope.getBuffer());
-				break;
-			case FULLYSERIALIZED:
-				return false;
+		// The header is serialized as a whole, so it reaches the channel with as few writes as possible
+		if (this.headerData == null) {
+			this.header.reset();
+			if (this.aliasDictionary == null) {
+				writeHeader(this.transferEnvelope, this.header, this.lengthScratch);
+			} else {
+				writeCompactHeader(this.transferEnvelope, this.aliasDictionary, this.header, this.lengthScratch);
 			}
+			this.headerData = this.header.getData();
+		}
 
-			if (moreDataFollows) {
+		if (this.headerData.hasRemaining()) {
+			if (writableByteChannel.write(this.headerData) == -1) {
+				throw new IOException("Unexpected end of stream while serializing the envelope header");
+			}
+			if (this.headerData.hasRemaining()) {
 				return true;
 			}
 		}
-	}
 
-	private boolean writeSequenceNumber(WritableByteChannel writableByteChannel, int sequenceNumber) throws IOException {
-
-		if (sequenceNumber < 0) {
-			throw new IOException("Invalid sequence number: " + sequenceNumber);
+		final Buffer buffer = this.transferEnvelope.getBuffer();
+		if (buffer == null || this.bufferDataSerialized) {
+			return false;
 		}
 
-		if (!this.serializationStarted) {
-			this.tempBuffer.clear();
-			integerToByteBuffer(sequenceNumber, 0, this.tempBuffer);
-			this.serializationStarted = true;
+		if (writeBufferData(writableByteChannel, buffer)) {
+			return true;
 		}
 
-		if (writableByteChannel.write(this.tempBuffer) == -1) {
-			throw new IOException("Unexpected end of stream while serializing the sequence number");
-		}
+		this.bufferDataSerialized = true;
+		return false;
+	}
 
-		if (!this.tempBuffer.hasRemaining()) {
-			this.serializationState = SerializationState.SEQUENCENUMBERSERIALIZED;
-			this.serializationStarted = false;
-			return false;
-		}
+	/**
+	 * Serializes the header of the given envelope, i.e. its sequence number, job ID, source channel ID, event list
+	 * and the size of its buffer.
+	 * 
+	 * @param transferEnvelope
+	 *        the envelope whose header shall be serialized
+	 * @param target
+	 *        the buffer to append the header to
+	 * @param lengthScratch
+	 *        an auxiliary buffer used to determine the length of the serialized IDs and event list
+	 * @throws IOException
+	 *         thrown if the envelope carries an invalid sequence number or an error occurs during serialization
+	 */
+	static void writeHeader(final TransferEnvelope transferEnvelope, final DataOutputBuffer target,
+			final DataOutputBuffer lengthScratch) throws IOException {
 
-		return true;
-	}
+		final int sequenceNumber = transferEnvelope.getSequenceNumber();
+		if (sequenceNumber < 0) {
+			throw new IOException("Invalid sequence number: " + sequenceNumber);
+		}
 
-	private boolean writeID(WritableByteChannel writableByteChannel, AbstractID id) throws IOException {
+		target.writeInt(sequenceNumber);
+		writeIOReadableWritable(transferEnvelope.getJobID(), target, lengthScratch);
+		writeIOReadableWritable(transferEnvelope.getSource(), target, lengthScratch);
 
-		if (!writeIOReadableWritable(writableByteChannel, id)) {
-			// We're done, all the data has been written to the channel
-			if (this.serializationState == SerializationState.SEQUENCENUMBERSERIALIZED) {
-				// System.out.println("OUTGOING Serialized source: " + channelID);
-				this.serializationState = SerializationState.JOBIDSERIALIZED;
-			} else {
-				// System.out.println("OUTGOING Serialized target: " + channelID);
-				this.serializationState = SerializationState.SOURCESERIALIZED;
-			}
-			return false;
+		final EventList eventList = transferEnvelope.getEventList();
+		if (eventList == null) {
+			target.writeByte(0);
+		} else {
+			target.writeByte(1);
+			writeIOReadableWritable(eventList, target, lengthScratch);
 		}
 
-		return true;
+		final Buffer buffer = transferEnvelope.getBuffer();
+		if (buffer == null) {
+			target.writeByte(0);
+		} else {
+			target.writeByte(1);
+			target.writeInt(buffer.size());
+		}
 	}
 
-	private boolean writeIOReadableWritable(WritableByteChannel writableByteChannel,
-			IOReadableWritable ioReadableWritable) throws IOException {
+	/**
+	 * Serializes the header of the given envelope in the compact format used on network connections. The compact
+	 * header starts with its length in a single byte, followed by the variable-length encoded channel alias, which
+	 * announces the job and source channel ID if the alias is new, the variable-length encoded sequence number, a
+	 * flag byte and the variable-length encoded buffer size. An event list is appended in the same format as in the
+	 * full header.
+	 * 
+	 * @param transferEnvelope
+	 *        the envelope whose header shall be serialized
+	 * @param aliasDictionary
+	 *        the dictionary of the connection the envelope is sent through
+	 * @param target
+	 *        the buffer to append the header to
+	 * @param lengthScratch
+	 *        an auxiliary buffer used to determine the length of the serialized event list
+	 * @throws IOException
+	 *         thrown if the envelope carries an invalid sequence number or an error occurs during serialization
+	 */
+	static void writeCompactHeader(final TransferEnvelope transferEnvelope,
+			final ChannelAliasDictionary aliasDictionary, final DataOutputBuffer target,
+			final DataOutputBuffer lengthScratch) throws IOException {
 
-		if (!this.serializationStarted) {
-			this.serializationBuffer.clear();
-			this.serializationBuffer.serialize(ioReadableWritable);
-			this.serializationStarted = true;
+		final int sequenceNumber = transferEnvelope.getSequenceNumber();
+		if (sequenceNumber < 0) {
+			throw new IOException("Invalid sequence number: " + sequenceNumber);
 		}
 
-		if (this.serializationBuffer.dataLeftFromPreviousSerialization()) {
-			this.serializationBuffer.read(writableByteChannel);
+		// Reserve the length byte
+		final int start = target.getLength();
+		target.writeByte(0);
+
+		final JobID jobID = transferEnvelope.getJobID();
+		final ChannelID sourceID = transferEnvelope.getSource();
+		int alias = aliasDictionary.lookup(jobID, sourceID);
+		if (alias < 0) {
+			alias = aliasDictionary.assign(jobID, sourceID);
+			writeVarInt((alias << 1) | 1, target);
+			jobID.write(target);
+			sourceID.write(target);
 		} else {
-			this.serializationStarted = false;
-			return false;
+			writeVarInt(alias << 1, target);
 		}
 
-		return true;
-	}
+		writeVarInt(sequenceNumber, target);
 
-	private boolean writeNotification(WritableByteChannel writableByteChannel, EventList notificationList)
-			throws IOException {
+		final EventList eventList = transferEnvelope.getEventList();
+		final Buffer buffer = transferEnvelope.getBuffer();
+		int flags = 0;
+		if (eventList != null) {
+			flags |= EVENT_LIST_FLAG;
+		}
+		if (buffer != null) {
+			flags |= BUFFER_FLAG;
+		}
+		target.writeByte(flags);
 
-		if (!this.eventListExistanceSerialized) {
-			this.tempBuffer.position(0);
-			if (notificationList == null) {
-				this.tempBuffer.put(0, (byte) 0);
-			} else {
-				this.tempBuffer.put(0, (byte) 1);
-			}
-			this.tempBuffer.limit(1);
+		if (buffer != null) {
+			writeVarInt(buffer.size(), target);
+		}
 
-			writableByteChannel.write(this.tempBuffer);
-			if (this.tempBuffer.hasRemaining()) {
-				return true;
-			}
+		target.getData().put(start, (byte) (target.getLength() - start - 1));
 
-			this.eventListExistanceSerialized = true;
+		if (eventList != null) {
+			writeIOReadableWritable(eventList, target, lengthScratch);
 		}
+	}
 
-		if (notificationList != null) {
-			if (writeIOReadableWritable(writableByteChannel, notificationList)) {
-				return true;
-			}
-		}
+	/**
+	 * Writes a non-negative integer with seven bits per byte, least significant group first. The most significant bit
+	 * of each byte indicates whether another byte follows.
+	 * 
+	 * @param value
+	 *        the integer to write
+	 * @param target
+	 *        the buffer to write the integer to
+	 * @throws IOException
+	 *         thrown if an error occurs while writing to the buffer
+	 */
+	private static void writeVarInt(int value, final DataOutputBuffer target) throws IOException {
 
-		this.serializationState = SerializationState.NOTIFICATIONSSERIALIZED;
-		return false;
-	}
+		while ((value & ~0x7F) != 0) {
+			target.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
 
-	public void reset() {
-		this.serializationState = SerializationState.NOTSERIALIZED;
-		this.serializationStarted = false;
-		this.bufferExistanceSerialized = false;
-		this.eventListExistanceSerialized = false;
+		target.writeByte(value);
 	}
 
-	private boolean writeBuffer(WritableByteChannel writableByteChannel, Buffer buffer) throws IOException {
-
-		while (true) {
-
-			if (!this.bufferExistanceSerialized) {
-
-				if (!this.serializationStarted) {
-					this.tempBuffer.position(0);
-
-					if (buffer == null) {
-						this.tempBuffer.put(0, (byte) 0);
-						this.tempBuffer.limit(1);
-					} else {
-						this.tempBuffer.put(0, (byte) 1);
-						// System.out.println("OUTGOING: Buffer size is " + buffer.size());
-						integerToByteBuffer(buffer.size(), 1, this.tempBuffer);
-					}
-					this.serializationStarted = true;
-				}
-
-				if (this.tempBuffer.hasRemaining()) {
-					if (writableByteChannel.write(tempBuffer) == 0) {
-						return true;
-					}
-				} else {
-					this.bufferExistanceSerialized = true;
-					this.serializationStarted = false;
-					if (buffer == null) {
-						// That's it, we're done. No buffer will follow
-						this.serializationState = SerializationState.FULLYSERIALIZED;
-						return false;
-					}
-				}
+	private static void writeIOReadableWritable(final IOReadableWritable ioReadableWritable,
+			final DataOutputBuffer target, final DataOutputBuffer lengthScratch) throws IOException {
 
-			} else {
+		lengthScratch.reset();
+		ioReadableWritable.write(lengthScratch);
 
-				if (!writeBufferData(writableByteChannel, buffer)) {
-					this.serializationState = SerializationState.FULLYSERIALIZED;
-					return false;
-				}
+		final int length = lengthScratch.getLength();
+		target.writeInt(length);
+		target.write(lengthScratch.getData().array(), 0, length);
+	}
 
-				return true;
-			}
-		}
+	public void reset() {
+		this.headerData = null;
+		this.bufferDataSerialized = false;
 	}
 
 	/**
@@ -258,19 +287,4 @@ public abstract class AbstractSerializer {
 	 */
 	protected abstract boolean writeBufferData(WritableByteChannel writableByteChannel, Buffer buffer)
 			throws IOException;
-
-	private void integerToByteBuffer(int integerToSerialize, int offset, ByteBuffer byteBuffer) throws IOException {
-
-		if ((offset + SIZEOFINT) > byteBuffer.capacity()) {
-			throw new IOException("Cannot convert integer to byte buffer, buffer is too small (" + byteBuffer.limit()
-				+ ", required " + (offset + SIZEOFINT) + ")");
-		}
-
-		byteBuffer.limit(offset + SIZEOFINT);
-
-		for (int i = 0; i < SIZEOFINT; ++i) {
-			final int shift = i << 3; // i * 8
-			byteBuffer.put((offset + SIZEOFINT - 1) - i, (byte) ((integerToSerialize & (0xff << shift)) >>> shift));
-		}
-	}
 }
@@ -0,0 +1,184 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.transferenvelope;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+
+/**
+ * A channel alias dictionary maps pairs of {@link JobID} and source {@link ChannelID} to short integer aliases. Each
+ * end of a network connection keeps its own dictionary. The sending side assigns a new alias the first time it
+ * transmits an envelope of a particular channel and announces the IDs together with the alias in that envelope's
+ * header. The receiving side records the announcement, so all subsequent envelopes of the channel only carry the
+ * alias.
+ * <p>
+ * Since aliases are only valid for the lifetime of the underlying byte stream, both dictionaries must be cleared
+ * whenever a new connection is established. This class is not thread-safe.
+ */
+public final class ChannelAliasDictionary {
+
+	/**
+	 * The maximum number of aliases a dictionary assigns before it starts over.
+	 */
+	static final int MAXIMUM_NUMBER_OF_ALIASES = 1 << 16;
+
+	/**
+	 * Maps source channel IDs to the assigned aliases on the sending side.
+	 */
+	private final Map<ChannelID, Integer> aliases = new HashMap<ChannelID, Integer>();
+
+	/**
+	 * The job IDs indexed by alias.
+	 */
+	private final List<JobID> jobIDs = new ArrayList<JobID>();
+
+	/**
+	 * The source channel IDs indexed by alias.
+	 */
+	private final List<ChannelID> sourceIDs = new ArrayList<ChannelID>();
+
+	/**
+	 * Returns the alias assigned to the given pair of job and source channel ID.
+	 * 
+	 * @param jobID
+	 *        the job ID
+	 * @param sourceID
+	 *        the source channel ID
+	 * @return the alias or <code>-1</code> if no alias has been assigned to the pair yet
+	 */
+	public int lookup(final JobID jobID, final ChannelID sourceID) {
+
+		final Integer alias = this.aliases.get(sourceID);
+		if (alias == null) {
+			return -1;
+		}
+
+		if (!jobID.equals(this.jobIDs.get(alias.intValue()))) {
+			return -1;
+		}
+
+		return alias.intValue();
+	}
+
+	/**
+	 * Assigns a new alias to the given pair of job and source channel ID. If the dictionary has reached its maximum
+	 * size, all previous assignments are discarded. The receiving side notices this implicitly because every
+	 * assignment is announced.
+	 * 
+	 * @param jobID
+	 *        the job ID
+	 * @param sourceID
+	 *        the source channel ID
+	 * @return the new alias
+	 */
+	public int assign(final JobID jobID, final ChannelID sourceID) {
+
+		final Integer existing = this.aliases.get(sourceID);
+		if (existing != null) {
+			// The channel ID is reused with a different job ID, so simply rebind the alias
+			this.jobIDs.set(existing.intValue(), jobID);
+			return existing.intValue();
+		}
+
+		if (this.sourceIDs.size() == MAXIMUM_NUMBER_OF_ALIASES) {
+			clear();
+		}
+
+		final int alias = this.sourceIDs.size();
+		this.aliases.put(sourceID, Integer.valueOf(alias));
+		this.jobIDs.add(jobID);
+		this.sourceIDs.add(sourceID);
+
+		return alias;
+	}
+
+	/**
+	 * Records an alias announced by the sending side.
+	 * 
+	 * @param alias
+	 *        the announced alias
+	 * @param jobID
+	 *        the job ID the alias refers to
+	 * @param sourceID
+	 *        the source channel ID the alias refers to
+	 * @throws IllegalArgumentException
+	 *         thrown if the alias is not a valid continuation of the assignment sequence
+	 */
+	public void define(final int alias, final JobID jobID, final ChannelID sourceID) {
+
+		final int numberOfAliases = this.sourceIDs.size();
+
+		if (alias < numberOfAliases) {
+			if (alias < 0) {
+				throw new IllegalArgumentException("Invalid alias " + alias);
+			}
+			this.jobIDs.set(alias, jobID);
+			this.sourceIDs.set(alias, sourceID);
+		} else if (alias == numberOfAliases) {
+			this.jobIDs.add(jobID);
+			this.sourceIDs.add(sourceID);
+		} else {
+			throw new IllegalArgumentException("Alias " + alias + " announced before alias " + numberOfAliases);
+		}
+	}
+
+	/**
+	 * Returns the job ID an alias refers to.
+	 * 
+	 * @param alias
+	 *        the alias
+	 * @return the job ID or <code>null</code> if the alias is unknown
+	 */
+	public JobID getJobID(final int alias) {
+
+		if (alias < 0 || alias >= this.jobIDs.size()) {
+			return null;
+		}
+
+		return this.jobIDs.get(alias);
+	}
+
+	/**
+	 * Returns the source channel ID an alias refers to.
+	 * 
+	 * @param alias
+	 *        the alias
+	 * @return the source channel ID or <code>null</code> if the alias is unknown
+	 */
+	public ChannelID getSourceID(final int alias) {
+
+		if (alias < 0 || alias >= this.sourceIDs.size()) {
+			return null;
+		}
+
+		return this.sourceIDs.get(alias);
+	}
+
+	/**
+	 * Discards all assigned aliases.
+	 */
+	public void clear() {
+
+		this.aliases.clear();
+		this.jobIDs.clear();
+		this.sourceIDs.clear();
+	}
+}
@@ -38,6 +38,20 @@ public final class DefaultDeserializer extends AbstractDeserializer {
 		this.bufferProviderBroker = bufferProviderBroker;
 	}
 
+	/**
+	 * Constructs a new default deserializer which reads compact envelope headers.
+	 * 
+	 * @param bufferProviderBroker
+	 *        the broker to look up the buffer providers of the receiving channels
+	 * @param aliasDictionary
+	 *        the alias dictionary of the connection the envelopes are read from
+	 */
+	public DefaultDeserializer(final BufferProviderBroker bufferProviderBroker,
+			final ChannelAliasDictionary aliasDictionary) {
+		super(aliasDictionary);
+		this.bufferProviderBroker = bufferProviderBroker;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
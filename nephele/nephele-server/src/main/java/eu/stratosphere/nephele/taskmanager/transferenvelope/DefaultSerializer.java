@@ -28,6 +28,22 @@ import eu.stratosphere.nephele.io.channels.Buffer;
  */
 public class DefaultSerializer extends AbstractSerializer {
 
+	/**
+	 * Constructs a new default serializer which writes full envelope headers.
+	 */
+	public DefaultSerializer() {
+	}
+
+	/**
+	 * Constructs a new default serializer which writes compact envelope headers.
+	 * 
+	 * @param aliasDictionary
+	 *        the alias dictionary of the connection the envelopes are written to
+	 */
+	public DefaultSerializer(final ChannelAliasDictionary aliasDictionary) {
+		super(aliasDictionary);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
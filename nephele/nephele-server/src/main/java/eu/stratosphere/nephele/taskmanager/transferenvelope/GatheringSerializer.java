@@ -0,0 +1,250 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.transferenvelope;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+import eu.stratosphere.nephele.io.DataOutputBuffer;
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.MemoryBuffer;
+
+/**
+ * This class serializes a batch of {@link TransferEnvelope} objects into a {@link GatheringByteChannel}. The headers
+ * of all envelopes in the batch are serialized into one contiguous buffer, and headers and buffer data are handed to
+ * the channel with a single gathering write, instead of one write per header field and buffer. The produced byte
+ * stream is identical to the one of a {@link DefaultSerializer} constructed with the same alias dictionary.
+ * <p>
+ * Only envelopes without a buffer or with a buffer backed by memory can be gathered, see
+ * {@link #canGather(TransferEnvelope)}. This class is not thread-safe.
+ */
+public final class GatheringSerializer {
+
+	/**
+	 * Placeholder for the data of envelopes without a buffer.
+	 */
+	private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+	/**
+	 * The envelopes of the current batch.
+	 */
+	private final TransferEnvelope[] envelopes;
+
+	/**
+	 * The byte buffers handed to the channel, the header and the buffer data of each envelope in turn.
+	 */
+	private final ByteBuffer[] byteBuffers;
+
+	/**
+	 * The offsets of the envelopes' headers in the header buffer. The header of the i-th envelope ends where the
+	 * header of the (i+1)-th envelope begins.
+	 */
+	private final int[] headerOffsets;
+
+	/**
+	 * The serialized headers of all envelopes in the batch.
+	 */
+	private final DataOutputBuffer headers = new DataOutputBuffer();
+
+	/**
+	 * Auxiliary buffer to determine the length of serialized objects in the headers.
+	 */
+	private final DataOutputBuffer lengthScratch = new DataOutputBuffer();
+
+	/**
+	 * The dictionary used to write compact headers or <code>null</code> to write full headers.
+	 */
+	private final ChannelAliasDictionary aliasDictionary;
+
+	/**
+	 * The number of envelopes in the current batch.
+	 */
+	private int numberOfEnvelopes = 0;
+
+	/**
+	 * The index of the first byte buffer which has not been entirely written.
+	 */
+	private int nextByteBuffer = 0;
+
+	/**
+	 * Stores whether the byte buffers of the current batch have been set up, after which no more envelopes can be
+	 * added.
+	 */
+	private boolean writeStarted = false;
+
+	/**
+	 * Constructs a new gathering serializer.
+	 * 
+	 * @param maximumNumberOfEnvelopes
+	 *        the maximum number of envelopes in one batch
+	 */
+	public GatheringSerializer(final int maximumNumberOfEnvelopes) {
+		this(maximumNumberOfEnvelopes, null);
+	}
+
+	/**
+	 * Constructs a new gathering serializer.
+	 * 
+	 * @param maximumNumberOfEnvelopes
+	 *        the maximum number of envelopes in one batch
+	 * @param aliasDictionary
+	 *        the dictionary used to write compact envelope headers or <code>null</code> to write full headers
+	 */
+	public GatheringSerializer(final int maximumNumberOfEnvelopes, final ChannelAliasDictionary aliasDictionary) {
+
+		if (maximumNumberOfEnvelopes < 1) {
+			throw new IllegalArgumentException("The maximum number of envelopes must be at least one");
+		}
+
+		this.envelopes = new TransferEnvelope[maximumNumberOfEnvelopes];
+		this.byteBuffers = new ByteBuffer[2 * maximumNumberOfEnvelopes];
+		this.headerOffsets = new int[maximumNumberOfEnvelopes + 1];
+		this.aliasDictionary = aliasDictionary;
+	}
+
+	/**
+	 * Checks whether the given envelope can be serialized by a gathering serializer.
+	 * 
+	 * @param transferEnvelope
+	 *        the envelope to check
+	 * @return <code>true</code> if the envelope has no buffer or a buffer backed by memory, <code>false</code>
+	 *         otherwise
+	 */
+	public static boolean canGather(final TransferEnvelope transferEnvelope) {
+
+		final Buffer buffer = transferEnvelope.getBuffer();
+		return (buffer == null || buffer instanceof MemoryBuffer);
+	}
+
+	/**
+	 * Adds an envelope to the current batch. Envelopes can only be added before the batch is written for the first
+	 * time.
+	 * 
+	 * @param transferEnvelope
+	 *        the envelope to add
+	 * @return <code>true</code> if the envelope has been added, <code>false</code> if the batch is full, already being
+	 *         written, or the envelope cannot be gathered
+	 * @throws IOException
+	 *         thrown if the envelope's header cannot be serialized
+	 */
+	public boolean add(final TransferEnvelope transferEnvelope) throws IOException {
+
+		if (this.writeStarted || this.numberOfEnvelopes == this.envelopes.length || !canGather(transferEnvelope)) {
+			return false;
+		}
+
+		if (this.aliasDictionary == null) {
+			AbstractSerializer.writeHeader(transferEnvelope, this.headers, this.lengthScratch);
+		} else {
+			AbstractSerializer.writeCompactHeader(transferEnvelope, this.aliasDictionary, this.headers,
+				this.lengthScratch);
+		}
+		this.envelopes[this.numberOfEnvelopes++] = transferEnvelope;
+		this.headerOffsets[this.numberOfEnvelopes] = this.headers.getLength();
+
+		return true;
+	}
+
+	/**
+	 * Checks whether the current batch is empty, i.e. all envelopes have been written entirely.
+	 * 
+	 * @return <code>true</code> if the batch is empty, <code>false</code> otherwise
+	 */
+	public boolean isEmpty() {
+		return this.numberOfEnvelopes == 0;
+	}
+
+	/**
+	 * Writes as much of the current batch to the given channel as the channel accepts with one gathering write.
+	 * 
+	 * @param gatheringByteChannel
+	 *        the channel to write to
+	 * @return the number of envelopes of the batch which have been written entirely by this call
+	 * @throws IOException
+	 *         thrown if an error occurs while writing to the channel
+	 */
+	public int write(final GatheringByteChannel gatheringByteChannel) throws IOException {
+
+		if (this.numberOfEnvelopes == 0) {
+			return 0;
+		}
+
+		if (!this.writeStarted) {
+			setUpByteBuffers();
+			this.writeStarted = true;
+		}
+
+		final int numberOfByteBuffers = 2 * this.numberOfEnvelopes;
+		if (gatheringByteChannel.write(this.byteBuffers, this.nextByteBuffer, numberOfByteBuffers
+			- this.nextByteBuffer) == -1) {
+			throw new IOException("Unexpected end of stream while writing the envelope batch");
+		}
+
+		int completedEnvelopes = 0;
+		while (this.nextByteBuffer < numberOfByteBuffers && !this.byteBuffers[this.nextByteBuffer].hasRemaining()) {
+			// The buffer data at odd positions completes an envelope
+			if ((this.nextByteBuffer & 1) == 1) {
+				++completedEnvelopes;
+			}
+			++this.nextByteBuffer;
+		}
+
+		if (this.nextByteBuffer == numberOfByteBuffers) {
+			clear();
+		}
+
+		return completedEnvelopes;
+	}
+
+	/**
+	 * Discards the current batch. The buffers of the envelopes are not recycled.
+	 */
+	public void clear() {
+
+		for (int i = 0; i < this.numberOfEnvelopes; ++i) {
+			this.envelopes[i] = null;
+			this.byteBuffers[2 * i] = null;
+			this.byteBuffers[2 * i + 1] = null;
+		}
+
+		this.numberOfEnvelopes = 0;
+		this.nextByteBuffer = 0;
+		this.writeStarted = false;
+		this.headers.reset();
+	}
+
+	private void setUpByteBuffers() {
+
+		// The header buffer may have been reallocated while adding envelopes, so the views are created now
+		final ByteBuffer headerData = this.headers.getData();
+
+		for (int i = 0; i < this.numberOfEnvelopes; ++i) {
+
+			final ByteBuffer header = headerData.duplicate();
+			header.limit(this.headerOffsets[i + 1]);
+			header.position(this.headerOffsets[i]);
+			this.byteBuffers[2 * i] = header;
+
+			final Buffer buffer = this.envelopes[i].getBuffer();
+			if (buffer == null) {
+				this.byteBuffers[2 * i + 1] = EMPTY_BUFFER;
+			} else {
+				this.byteBuffers[2 * i + 1] = ((MemoryBuffer) buffer).getByteBuffer().duplicate();
+			}
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.io.compression.library.dynamic;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@link ThroughputDecisionModel}. The tests simulate a channel whose effective
+ * throughput for each compression library is limited either by the CPU time of the compression or by the network.
+ */
+public class ThroughputDecisionModelTest {
+
+	/**
+	 * The size of the simulated buffers in bytes.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The network bandwidth of the simulated channel in bytes per second.
+	 */
+	private static final double NETWORK_BANDWIDTH = 100.0 * 1024.0 * 1024.0;
+
+	/**
+	 * The compression speed of the simulated libraries in bytes per second, starting with no compression.
+	 */
+	private static final double[] COMPRESSION_SPEED = { Double.POSITIVE_INFINITY, 300.0 * 1024.0 * 1024.0,
+		50.0 * 1024.0 * 1024.0, 10.0 * 1024.0 * 1024.0 };
+
+	/**
+	 * The number of buffers sent in each simulation.
+	 */
+	private static final int NUMBER_OF_BUFFERS = 20000;
+
+	/**
+	 * Tests that light compression is chosen for compressible data on a channel whose throughput is limited by the
+	 * network.
+	 */
+	@Test
+	public void testCompressibleData() {
+
+		final double[] ratios = { 1.0, 0.4, 0.3, 0.25 };
+
+		final int[] buffersPerLibrary = simulate(ratios);
+
+		assertTrue(buffersPerLibrary[1] > 0.75 * sum(buffersPerLibrary));
+	}
+
+	/**
+	 * Tests that no compression is chosen for incompressible data, although light compression keeps up with the
+	 * network, and that libraries which do not compress the data are rarely probed.
+	 */
+	@Test
+	public void testIncompressibleData() {
+
+		final double[] ratios = { 1.0, 1.0, 1.0, 1.0 };
+
+		final int[] buffersPerLibrary = simulate(ratios);
+
+		assertTrue(buffersPerLibrary[0] > 0.95 * sum(buffersPerLibrary));
+	}
+
+	/**
+	 * Simulates a channel transmitting buffers with the given compression ratios.
+	 * 
+	 * @param ratios
+	 *        the ratio of compressed to uncompressed bytes for each library
+	 * @return the number of buffers compressed with each library in the second half of the simulation
+	 */
+	private static int[] simulate(final double[] ratios) {
+
+		final ThroughputDecisionModel model = new ThroughputDecisionModel(ratios.length, 100L, 4);
+		final int[] buffersPerLibrary = new int[ratios.length];
+
+		double now = 0.0;
+		int library = 0;
+		for (int i = 0; i < NUMBER_OF_BUFFERS; ++i) {
+
+			// Compression and transmission are pipelined, so the slower of both determines the throughput
+			final double throughput = Math.min(COMPRESSION_SPEED[library], NETWORK_BANDWIDTH / ratios[library]);
+			now += BUFFER_SIZE * 1000.0 / throughput;
+
+			final long compressionTime = (long) (BUFFER_SIZE * 1000000000.0 / COMPRESSION_SPEED[library]);
+
+			if (i >= NUMBER_OF_BUFFERS / 2) {
+				++buffersPerLibrary[library];
+			}
+
+			library = model.getCompressionLevelForNextBuffer(BUFFER_SIZE, (int) (BUFFER_SIZE * ratios[library]),
+				compressionTime, (long) now);
+		}
+
+		return buffersPerLibrary;
+	}
+
+	private static int sum(final int[] values) {
+
+		int sum = 0;
+		for (final int value : values) {
+			sum += value;
+		}
+
+		return sum;
+	}
+}
@@ -189,6 +189,89 @@ public class IOManagerTest
 			Assert.fail("TEst encountered an exception: " + ex.getMessage());
 		}
 	}
+	
+	@Test
+	public void channelReadWriteWithMultipleThreadsPerPath()
+	{
+		final int NUM_CHANNELS = 8;
+		final int NUM_IOS = 200;
+		final int NUM_SEGS_PER_CHANNEL = 4;
+		
+		final IOManager ioMan = new IOManager(new String[] { System.getProperty("java.io.tmpdir") }, 4, 8);
+		try {
+			Assert.assertEquals(4, ioMan.getNumberOfThreadsPerPath());
+			
+			final List<MemorySegment> memSegs = this.memoryManager.allocatePages(new DummyInvokable(), 
+				NUM_CHANNELS * NUM_SEGS_PER_CHANNEL);
+			final int segmentSize = memSegs.get(0).size();
+			
+			// write all channels interleaved, such that all threads of the path are busy
+			final Channel.Enumerator enumerator = ioMan.createChannelEnumerator();
+			final Channel.ID[] ids = new Channel.ID[NUM_CHANNELS];
+			final BlockChannelWriter[] writers = new BlockChannelWriter[NUM_CHANNELS];
+			for (int c = 0; c < NUM_CHANNELS; c++) {
+				ids[c] = enumerator.next();
+				writers[c] = ioMan.createBlockChannelWriter(ids[c]);
+				for (int k = 0; k < NUM_SEGS_PER_CHANNEL; k++) {
+					writers[c].getReturnQueue().add(memSegs.remove(memSegs.size() - 1));
+				}
+			}
+			
+			for (int i = 0; i < NUM_IOS; i++) {
+				for (int c = 0; c < NUM_CHANNELS; c++) {
+					final MemorySegment memSeg = writers[c].getNextReturnedSegment();
+					for (int pos = 0; pos < memSeg.size(); pos += 4) {
+						memSeg.putInt(pos, i * NUM_CHANNELS + c);
+					}
+					writers[c].writeBlock(memSeg);
+				}
+			}
+			
+			// read all channels back, with several requests in flight per channel
+			final BlockChannelReader[] readers = new BlockChannelReader[NUM_CHANNELS];
+			for (int c = 0; c < NUM_CHANNELS; c++) {
+				writers[c].close();
+				readers[c] = ioMan.createBlockChannelReader(ids[c]);
+				for (int k = 0; k < NUM_SEGS_PER_CHANNEL; k++) {
+					readers[c].readBlock(writers[c].getNextReturnedSegment());
+				}
+			}
+			
+			for (int i = 0; i < NUM_IOS; i++) {
+				for (int c = 0; c < NUM_CHANNELS; c++) {
+					final MemorySegment memSeg = readers[c].getNextReturnedSegment();
+					for (int pos = 0; pos < memSeg.size(); pos += 4) {
+						if (memSeg.getInt(pos) != i * NUM_CHANNELS + c) {
+							Assert.fail("Read memory segment contains invalid data.");
+						}
+					}
+					readers[c].readBlock(memSeg);
+				}
+			}
+			
+			for (int c = 0; c < NUM_CHANNELS; c++) {
+				readers[c].closeAndDelete();
+				while (!readers[c].getReturnQueue().isEmpty()) {
+					memSegs.add(readers[c].getNextReturnedSegment());
+				}
+			}
+			this.memoryManager.release(memSegs);
+			
+			final long expectedBytes = ((long) NUM_CHANNELS) * NUM_IOS * segmentSize;
+			Assert.assertEquals("Wrong number of bytes written.", expectedBytes, ioMan.getNumBytesWritten(0));
+			Assert.assertEquals("Wrong number of bytes read.", expectedBytes, ioMan.getNumBytesRead(0));
+			Assert.assertTrue(ioMan.getNumWriteOperations(0) <= NUM_CHANNELS * NUM_IOS);
+			Assert.assertTrue(ioMan.getWriteThroughput(0) > 0);
+		}
+		catch (Exception ex) {
+			ex.printStackTrace();
+			Assert.fail("Test encountered an exception: " + ex.getMessage());
+		}
+		finally {
+			ioMan.shutdown();
+			Assert.assertTrue("IO Manager has not properly shut down.", ioMan.isProperlyShutDown());
+		}
+	}
 
 	// ============================================================================================
 	
@@ -161,6 +161,53 @@ public class DefaultMemoryManagerTest
 		}
 	}
 	
+	@Test
+	public void allocateOffHeap()
+	{
+		final DefaultMemoryManager offHeapManager = new DefaultMemoryManager(MEMORY_SIZE, PAGE_SIZE, true);
+		
+		try {
+			final AbstractInvokable mockInvoke = new DummyInvokable();
+			final List<MemorySegment> segs = offHeapManager.allocatePages(mockInvoke, NUM_PAGES);
+			
+			for (MemorySegment seg : segs) {
+				Assert.assertTrue("The segment is not backed by off-heap memory.", seg.isOffHeap());
+				Assert.assertNull("Off-heap segments must not expose a backing array.", seg.getBackingArray());
+			}
+			
+			// write distinct values to all segments and check that the segments do not overlap
+			for (int i = 0; i < segs.size(); i++) {
+				final MemorySegment seg = segs.get(i);
+				seg.putInt(0, i);
+				seg.putLong(PAGE_SIZE - 8, -i);
+			}
+			for (int i = 0; i < segs.size(); i++) {
+				final MemorySegment seg = segs.get(i);
+				Assert.assertEquals(i, seg.getInt(0));
+				Assert.assertEquals(-i, seg.getLong(PAGE_SIZE - 8));
+			}
+			
+			offHeapManager.releaseAll(mockInvoke);
+			
+			Assert.assertTrue("Released memory segments have not been destroyed.", allMemorySegmentsFreed(segs));
+			Assert.assertTrue("Not all memory has been returned.", offHeapManager.verifyEmpty());
+			
+			try {
+				segs.get(0).getInt(0);
+				Assert.fail("Access to a freed segment must fail.");
+			} catch (IllegalStateException isex) {
+				// expected
+			}
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail("Test encountered an exception: " + e.getMessage());
+		}
+		finally {
+			offHeapManager.shutdown();
+		}
+	}
+	
 	private boolean allMemorySegmentsValid(List<MemorySegment> memSegs)
 	{
 		for (MemorySegment seg : memSegs) {
@@ -0,0 +1,280 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.services.memorymanager;
+
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
+import eu.stratosphere.nephele.template.AbstractInvokable;
+
+/**
+ * Compares the word-wise memory segment accessors against the byte-wise composition of values that the segments
+ * used before. The workloads mimic the inner loops of the sorter (normalized key comparisons)
+ * and of the hash table (scanning the hash codes in a bucket).
+ */
+public class MemorySegmentSpeedBenchmark
+{
+	private static final Log LOG = LogFactory.getLog(MemorySegmentSpeedBenchmark.class);
+
+	private static final long SEED = 649180756312423613L;
+
+	private static final int PAGE_SIZE = 32 * 1024;
+
+	private static final int NUM_PAGES = 512;
+
+	private static final int KEY_LEN = 16;
+
+	private static final int NUM_COMPARISONS = 20000000;
+
+	private static final int BUCKET_SIZE = 128;
+
+	private static final int HASH_CODES_PER_BUCKET = 16;
+
+	private static final int NUM_PROBES = 10000000;
+
+	private static final int NUM_ROUNDS = 3;
+
+	private static final int RANDOM_SEQUENCE_MASK = (1 << 20) - 1;
+
+	/**
+	 * Pre-generated random numbers, such that the measurements are not dominated by the random number generator.
+	 */
+	private static final int[] RANDOM_SEQUENCE = new int[RANDOM_SEQUENCE_MASK + 1];
+
+	static {
+		final Random rnd = new Random(SEED);
+		for (int i = 0; i < RANDOM_SEQUENCE.length; i++) {
+			RANDOM_SEQUENCE[i] = rnd.nextInt() & Integer.MAX_VALUE;
+		}
+	}
+
+	private static final AbstractInvokable memoryOwner = new DefaultMemoryManagerTest.DummyInvokable();
+
+	private DefaultMemoryManager heapMemoryManager;
+
+	private DefaultMemoryManager offHeapMemoryManager;
+
+
+	@Before
+	public void startup() {
+		this.heapMemoryManager = new DefaultMemoryManager(((long) PAGE_SIZE) * NUM_PAGES, PAGE_SIZE, false);
+		this.offHeapMemoryManager = new DefaultMemoryManager(((long) PAGE_SIZE) * NUM_PAGES, PAGE_SIZE, true);
+	}
+
+	@After
+	public void shutdown() {
+		Assert.assertTrue("Not all memory was returned to the memory manager.", this.heapMemoryManager.verifyEmpty());
+		Assert.assertTrue("Not all memory was returned to the memory manager.", this.offHeapMemoryManager.verifyEmpty());
+		this.heapMemoryManager.shutdown();
+		this.offHeapMemoryManager.shutdown();
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	@Test
+	public void speedTestSortKeyComparisons() throws Exception
+	{
+		final List<MemorySegment> heap = this.heapMemoryManager.allocatePages(memoryOwner, NUM_PAGES);
+		final List<MemorySegment> offHeap = this.offHeapMemoryManager.allocatePages(memoryOwner, NUM_PAGES);
+		fillWithKeys(heap);
+		fillWithKeys(offHeap);
+
+		for (int round = 0; round < NUM_ROUNDS; round++) {
+			long start = System.nanoTime();
+			final long resultByteWise = compareKeysByteWise(heap);
+			final long byteWiseNanos = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			final long resultHeap = compareKeysWordWise(heap);
+			final long heapNanos = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			final long resultOffHeap = compareKeysWordWise(offHeap);
+			final long offHeapNanos = System.nanoTime() - start;
+
+			Assert.assertEquals(resultByteWise, resultHeap);
+			Assert.assertEquals(resultByteWise, resultOffHeap);
+
+			LOG.info("Sort key comparisons (" + NUM_COMPARISONS + " x " + KEY_LEN + " bytes): byte-wise " +
+				(byteWiseNanos / 1000000) + " ms, word-wise heap " + (heapNanos / 1000000) + " ms, word-wise off-heap " +
+				(offHeapNanos / 1000000) + " ms");
+		}
+
+		this.heapMemoryManager.release(heap);
+		this.offHeapMemoryManager.release(offHeap);
+	}
+
+	@Test
+	public void speedTestHashBucketProbing() throws Exception
+	{
+		final List<MemorySegment> heap = this.heapMemoryManager.allocatePages(memoryOwner, NUM_PAGES);
+		final List<MemorySegment> offHeap = this.offHeapMemoryManager.allocatePages(memoryOwner, NUM_PAGES);
+		fillWithHashCodes(heap);
+		fillWithHashCodes(offHeap);
+
+		for (int round = 0; round < NUM_ROUNDS; round++) {
+			long start = System.nanoTime();
+			final long resultByteWise = probeBucketsByteWise(heap);
+			final long byteWiseNanos = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			final long resultHeap = probeBucketsWordWise(heap);
+			final long heapNanos = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			final long resultOffHeap = probeBucketsWordWise(offHeap);
+			final long offHeapNanos = System.nanoTime() - start;
+
+			Assert.assertEquals(resultByteWise, resultHeap);
+			Assert.assertEquals(resultByteWise, resultOffHeap);
+
+			LOG.info("Hash bucket probes (" + NUM_PROBES + " x " + HASH_CODES_PER_BUCKET + " hash codes): byte-wise " +
+				(byteWiseNanos / 1000000) + " ms, word-wise heap " + (heapNanos / 1000000) + " ms, word-wise off-heap " +
+				(offHeapNanos / 1000000) + " ms");
+		}
+
+		this.heapMemoryManager.release(heap);
+		this.offHeapMemoryManager.release(offHeap);
+	}
+
+	// --------------------------------------------------------------------------------------------
+	//                                     Workloads
+	// --------------------------------------------------------------------------------------------
+
+	private static void fillWithKeys(List<MemorySegment> segments) {
+		final Random rnd = new Random(SEED);
+		final byte[] key = new byte[KEY_LEN];
+		for (MemorySegment seg : segments) {
+			for (int pos = 0; pos <= PAGE_SIZE - KEY_LEN; pos += KEY_LEN) {
+				rnd.nextBytes(key);
+				// common prefixes, as they occur with normalized keys of small integers
+				key[0] = 0;
+				key[1] = (byte) (key[1] & 0x3);
+				seg.put(pos, key);
+			}
+		}
+	}
+
+	private static void fillWithHashCodes(List<MemorySegment> segments) {
+		final Random rnd = new Random(SEED);
+		for (MemorySegment seg : segments) {
+			for (int pos = 0; pos <= PAGE_SIZE - 4; pos += 4) {
+				seg.putInt(pos, rnd.nextInt());
+			}
+		}
+	}
+
+	private static long compareKeysWordWise(List<MemorySegment> segments) {
+		final int keysPerSegment = PAGE_SIZE / KEY_LEN;
+		final int numKeys = keysPerSegment * segments.size();
+		long result = 0;
+		for (int i = 0; i < NUM_COMPARISONS; i++) {
+			final int k1 = RANDOM_SEQUENCE[(2 * i) & RANDOM_SEQUENCE_MASK] % numKeys;
+			final int k2 = RANDOM_SEQUENCE[(2 * i + 1) & RANDOM_SEQUENCE_MASK] % numKeys;
+			final MemorySegment s1 = segments.get(k1 / keysPerSegment);
+			final MemorySegment s2 = segments.get(k2 / keysPerSegment);
+
+			final int cmp = s1.compare(s2, (k1 % keysPerSegment) * KEY_LEN, (k2 % keysPerSegment) * KEY_LEN, KEY_LEN);
+			result += cmp < 0 ? -1 : cmp > 0 ? 1 : 0;
+		}
+		return result;
+	}
+
+	private static long compareKeysByteWise(List<MemorySegment> segments) {
+		final int keysPerSegment = PAGE_SIZE / KEY_LEN;
+		final int numKeys = keysPerSegment * segments.size();
+		long result = 0;
+		for (int i = 0; i < NUM_COMPARISONS; i++) {
+			final int k1 = RANDOM_SEQUENCE[(2 * i) & RANDOM_SEQUENCE_MASK] % numKeys;
+			final int k2 = RANDOM_SEQUENCE[(2 * i + 1) & RANDOM_SEQUENCE_MASK] % numKeys;
+			final MemorySegment s1 = segments.get(k1 / keysPerSegment);
+			final MemorySegment s2 = segments.get(k2 / keysPerSegment);
+			final byte[] b1 = s1.getBackingArray();
+			final byte[] b2 = s2.getBackingArray();
+
+			// the comparison loop as the sorters implemented it before
+			int cmp = 0;
+			for (int pos = 0, p1 = s1.translateOffset((k1 % keysPerSegment) * KEY_LEN),
+					p2 = s2.translateOffset((k2 % keysPerSegment) * KEY_LEN);
+				pos < KEY_LEN && (cmp = (b1[p1] & 0xff) - (b2[p2] & 0xff)) == 0; pos++, p1++, p2++);
+
+			result += cmp < 0 ? -1 : cmp > 0 ? 1 : 0;
+		}
+		return result;
+	}
+
+	private static long probeBucketsWordWise(List<MemorySegment> segments) {
+		final int bucketsPerSegment = PAGE_SIZE / BUCKET_SIZE;
+		final int numBuckets = bucketsPerSegment * segments.size();
+		long matches = 0;
+		for (int i = 0; i < NUM_PROBES; i++) {
+			final int bucket = RANDOM_SEQUENCE[i & RANDOM_SEQUENCE_MASK] % numBuckets;
+			final int searchHash = RANDOM_SEQUENCE[(i + 1) & RANDOM_SEQUENCE_MASK] & 0xff;
+			final MemorySegment seg = segments.get(bucket / bucketsPerSegment);
+			final int bucketOffset = (bucket % bucketsPerSegment) * BUCKET_SIZE;
+
+			for (int k = 0, pos = bucketOffset; k < HASH_CODES_PER_BUCKET; k++, pos += 4) {
+				if ((seg.getInt(pos) & 0xff) == searchHash) {
+					matches++;
+				}
+			}
+		}
+		return matches;
+	}
+
+	private static long probeBucketsByteWise(List<MemorySegment> segments) {
+		final int bucketsPerSegment = PAGE_SIZE / BUCKET_SIZE;
+		final int numBuckets = bucketsPerSegment * segments.size();
+		long matches = 0;
+		for (int i = 0; i < NUM_PROBES; i++) {
+			final int bucket = RANDOM_SEQUENCE[i & RANDOM_SEQUENCE_MASK] % numBuckets;
+			final int searchHash = RANDOM_SEQUENCE[(i + 1) & RANDOM_SEQUENCE_MASK] & 0xff;
+			final MemorySegment seg = segments.get(bucket / bucketsPerSegment);
+			final int bucketOffset = (bucket % bucketsPerSegment) * BUCKET_SIZE;
+
+			for (int k = 0, pos = bucketOffset; k < HASH_CODES_PER_BUCKET; k++, pos += 4) {
+				if ((getIntByteWise(seg, pos) & 0xff) == searchHash) {
+					matches++;
+				}
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * The int accessor as the memory segment implemented it before, composing the value byte by byte.
+	 */
+	private static int getIntByteWise(MemorySegment seg, int index) {
+		final byte[] memory = seg.getBackingArray();
+		final int offset = seg.translateOffset(index);
+		if (index >= 0 && index < seg.size() - 3) {
+			return ((memory[offset + 0] & 0xff) << 24)
+				| ((memory[offset + 1] & 0xff) << 16)
+				| ((memory[offset + 2] & 0xff) << 8)
+				| ((memory[offset + 3] & 0xff) << 0);
+		} else {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+}
@@ -330,7 +330,7 @@ public class MemorySegmentTest {
 		}
 	}
 
-	// @Test
+	@Test
 	public void floatAccess() {
 		// test exceptions
 		{
@@ -525,4 +525,84 @@ public class MemorySegmentTest {
 			}
 		}
 	}
+
+	@Test
+	public void byteOrder() {
+		// multi-byte values are stored big-endian, independent of the platform
+		segment.putInt(0, 0x01020304);
+		assertEquals((byte) 0x01, segment.get(0));
+		assertEquals((byte) 0x04, segment.get(3));
+		
+		segment.putLong(8, 0x0102030405060708L);
+		assertEquals((byte) 0x01, segment.get(8));
+		assertEquals((byte) 0x08, segment.get(15));
+		
+		segment.putShort(16, (short) 0x0102);
+		assertEquals((byte) 0x01, segment.get(16));
+		assertEquals((byte) 0x02, segment.get(17));
+		
+		// native accessors round-trip as well
+		segment.putLongNativeEndian(24, 0xcafebabedeadbeefL);
+		assertEquals(0xcafebabedeadbeefL, segment.getLongNativeEndian(24));
+	}
+
+	@Test
+	public void bulkCompareCopySwap() {
+		final DefaultMemoryManager offHeapManager = new DefaultMemoryManager(PAGE_SIZE, PAGE_SIZE, true);
+		try {
+			final MemorySegment other = offHeapManager.allocatePages(new DefaultMemoryManagerTest.DummyInvokable(), 1).get(0);
+			
+			final byte[] bytes = new byte[1000];
+			random.nextBytes(bytes);
+			segment.put(0, bytes);
+			other.put(13, bytes);
+			
+			// equal regions, for all lengths around the word size
+			for (int len = 0; len < 40; len++) {
+				assertEquals(0, segment.compare(other, 0, 13, len));
+			}
+			
+			// the first differing byte decides, with unsigned semantics
+			for (int pos = 0; pos < 24; pos++) {
+				other.put(13 + pos, (byte) 0xff);
+				segment.put(pos, (byte) 0x7f);
+				assertTrue(segment.compare(other, 0, 13, 24) < 0);
+				assertTrue(other.compare(segment, 13, 0, 24) > 0);
+				other.put(13 + pos, bytes[pos]);
+				segment.put(pos, bytes[pos]);
+			}
+			
+			// copy from heap to off-heap and back
+			segment.copyTo(100, other, 500, 300);
+			assertEquals(0, segment.compare(other, 100, 500, 300));
+			
+			// swap regions
+			final byte[] temp = new byte[64];
+			final byte[] before1 = new byte[64];
+			final byte[] before2 = new byte[64];
+			segment.get(0, before1);
+			other.get(200, before2);
+			segment.swapBytes(temp, other, 0, 200, 64);
+			
+			final byte[] after = new byte[64];
+			segment.get(0, after);
+			assertArrayEquals(before2, after);
+			other.get(200, after);
+			assertArrayEquals(before1, after);
+			
+			try {
+				segment.copyTo(PAGE_SIZE - 10, other, 0, 11);
+				fail("IndexOutOfBoundsException expected");
+			} catch (Exception e) {
+				assertTrue(e instanceof IndexOutOfBoundsException);
+			}
+			
+			offHeapManager.release(other);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		} finally {
+			offHeapManager.shutdown();
+		}
+	}
 }
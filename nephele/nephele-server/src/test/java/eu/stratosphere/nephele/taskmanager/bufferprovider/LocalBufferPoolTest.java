@@ -0,0 +1,102 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.bufferprovider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+
+/**
+ * This class contains tests covering the demand tracking and the buffer redistribution of the {@link LocalBufferPool}.
+ */
+public class LocalBufferPoolTest {
+
+	/**
+	 * The size of the buffers requested throughout the tests.
+	 */
+	private static final int BUFFER_SIZE = 1024;
+
+	/**
+	 * Tests that the demand of a pool follows the number of requested buffers and decays once the pool becomes idle.
+	 * 
+	 * @throws IOException
+	 *         thrown if an error occurs while requesting the buffers
+	 */
+	@Test
+	public void testDemandTracking() throws IOException {
+
+		final LocalBufferPool pool = new LocalBufferPool(2, false);
+
+		try {
+			for (int i = 0; i < 10; ++i) {
+				final Buffer buffer = pool.requestEmptyBuffer(BUFFER_SIZE);
+				assertNotNull(buffer);
+				buffer.recycleBuffer();
+			}
+
+			final double busyDemand = pool.updateDemand(1000L);
+			assertTrue(busyDemand > 0.0);
+
+			final double idleDemand = pool.updateDemand(1000L);
+			assertTrue(idleDemand < busyDemand);
+			assertEquals(0L, pool.getWaitTime());
+
+		} finally {
+			pool.destroy();
+		}
+	}
+
+	/**
+	 * Tests that buffers in use are returned to the global buffer pool upon recycling if the designated number of
+	 * buffers of the local pool has been lowered in the meantime.
+	 * 
+	 * @throws IOException
+	 *         thrown if an error occurs while requesting the buffers
+	 */
+	@Test
+	public void testReturnOfExcessBuffers() throws IOException {
+
+		final LocalBufferPool pool = new LocalBufferPool(2, false);
+
+		try {
+			final Buffer first = pool.requestEmptyBuffer(BUFFER_SIZE);
+			final Buffer second = pool.requestEmptyBuffer(BUFFER_SIZE);
+			assertNotNull(first);
+			assertNotNull(second);
+			assertEquals(2, pool.getRequestedNumberOfBuffers());
+
+			pool.setDesignatedNumberOfBuffers(1);
+			assertEquals(2, pool.getRequestedNumberOfBuffers());
+
+			first.recycleBuffer();
+			assertEquals(1, pool.getRequestedNumberOfBuffers());
+			assertEquals(0, pool.getNumberOfAvailableBuffers());
+
+			second.recycleBuffer();
+			assertEquals(1, pool.getRequestedNumberOfBuffers());
+			assertEquals(1, pool.getNumberOfAvailableBuffers());
+
+		} finally {
+			pool.destroy();
+		}
+	}
+}
@@ -0,0 +1,1147 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.bytebuffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.execution.Environment;
+import eu.stratosphere.nephele.execution.ExecutionState;
+import eu.stratosphere.nephele.executiongraph.ExecutionVertexID;
+import eu.stratosphere.nephele.instance.InstanceConnectionInfo;
+import eu.stratosphere.nephele.io.ChannelSelector;
+import eu.stratosphere.nephele.io.GateID;
+import eu.stratosphere.nephele.io.InputGate;
+import eu.stratosphere.nephele.io.OutputGate;
+import eu.stratosphere.nephele.io.RecordDeserializerFactory;
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.BufferFactory;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.io.channels.ChannelType;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.profiling.TaskManagerProfiler;
+import eu.stratosphere.nephele.protocols.ChannelLookupProtocol;
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.taskmanager.Task;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferAvailabilityListener;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.GlobalBufferPool;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.LocalBufferPool;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.LocalBufferPoolOwner;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelopeDispatcher;
+import eu.stratosphere.nephele.template.InputSplitProvider;
+import eu.stratosphere.nephele.types.Record;
+import eu.stratosphere.nephele.util.BufferPoolConnector;
+
+/**
+ * This class contains tests covering the routing of memory-backed buffers through the
+ * {@link ByteBufferedChannelManager} to co-located receivers and the redistribution of the global buffers among the
+ * registered tasks.
+ */
+public class ByteBufferedChannelManagerTest {
+
+	/**
+	 * The size of the envelopes' buffers in bytes.
+	 */
+	private static final int BUFFER_SIZE = 1024;
+
+	/**
+	 * The job ID used for the tasks and envelopes.
+	 */
+	private final JobID jobID = new JobID();
+
+	/**
+	 * The local receivers the lookup service reports for each source channel.
+	 */
+	private final Map<ChannelID, List<ChannelID>> localReceivers = new ConcurrentHashMap<ChannelID, List<ChannelID>>();
+
+	/**
+	 * The channel manager under test.
+	 */
+	private ByteBufferedChannelManager channelManager;
+
+	/**
+	 * Creates a channel manager which listens for data connections on a free local port.
+	 */
+	@Before
+	public void startChannelManager() {
+
+		try {
+			final ServerSocket serverSocket = new ServerSocket(0);
+			final int dataPort = serverSocket.getLocalPort();
+			serverSocket.close();
+
+			final InstanceConnectionInfo connectionInfo = new InstanceConnectionInfo(InetAddress.getByName("localhost"),
+				dataPort, dataPort);
+			this.channelManager = new ByteBufferedChannelManager(new TestChannelLookupProtocol(), connectionInfo);
+		} catch (IOException ioe) {
+			fail(ioe.getMessage());
+		}
+	}
+
+	/**
+	 * Shuts down the channel manager.
+	 */
+	@After
+	public void stopChannelManager() {
+
+		if (this.channelManager != null) {
+			this.channelManager.shutdown();
+		}
+	}
+
+	/**
+	 * Checks that an output channel hands its buffer over to a single co-located receiver without copying it.
+	 */
+	@Test
+	public void testHandOverToSingleLocalReceiver() {
+
+		try {
+			final TestTask receiver = registerReceiver(1);
+			final ChannelID source = new ChannelID();
+			this.localReceivers.put(source, receiver.getInputChannelIDs());
+
+			final Deque<ByteBuffer> recycledBuffers = new ArrayDeque<ByteBuffer>();
+			final TransferEnvelope envelope = createEnvelope(source, recycledBuffers);
+			final Buffer sourceBuffer = envelope.getBuffer();
+			this.channelManager.processEnvelopeFromOutputChannel(envelope);
+
+			final TransferEnvelope received = receiver.getInputChannelContext(0).pollEnvelope();
+			assertNotNull(received);
+			assertSame(sourceBuffer, received.getBuffer());
+
+			// The receiver's pool is not touched and the sender's buffer is still in use
+			assertEquals(0, receiver.getBufferPool().getRequestedNumberOfBuffers());
+			assertEquals(0, recycledBuffers.size());
+
+			received.getBuffer().recycleBuffer();
+			assertEquals(1, recycledBuffers.size());
+
+			this.channelManager.unregister(receiver.getVertexID(), receiver);
+
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	/**
+	 * Checks that a buffer sent to multiple co-located receivers is copied into each receiver's buffer pool and the
+	 * sender's buffer is recycled right away.
+	 */
+	@Test
+	public void testCopyToMultipleLocalReceivers() {
+
+		try {
+			final TestTask receiver = registerReceiver(2);
+			final ChannelID source = new ChannelID();
+			this.localReceivers.put(source, receiver.getInputChannelIDs());
+
+			final Deque<ByteBuffer> recycledBuffers = new ArrayDeque<ByteBuffer>();
+			final TransferEnvelope envelope = createEnvelope(source, recycledBuffers);
+			final Buffer sourceBuffer = envelope.getBuffer();
+			this.channelManager.processEnvelopeFromOutputChannel(envelope);
+
+			final TransferEnvelope first = receiver.getInputChannelContext(0).pollEnvelope();
+			final TransferEnvelope second = receiver.getInputChannelContext(1).pollEnvelope();
+			assertNotNull(first);
+			assertNotNull(second);
+			assertNotSame(sourceBuffer, first.getBuffer());
+			assertNotSame(sourceBuffer, second.getBuffer());
+			assertNotSame(first.getBuffer(), second.getBuffer());
+			checkContent(first.getBuffer());
+			checkContent(second.getBuffer());
+
+			// Both copies are taken from the receiver's pool, the sender's buffer has already been recycled
+			final LocalBufferPool bufferPool = receiver.getBufferPool();
+			assertEquals(2, bufferPool.getRequestedNumberOfBuffers());
+			assertEquals(0, bufferPool.getNumberOfAvailableBuffers());
+			assertEquals(1, recycledBuffers.size());
+
+			first.getBuffer().recycleBuffer();
+			second.getBuffer().recycleBuffer();
+			assertEquals(2, bufferPool.getNumberOfAvailableBuffers());
+
+			this.channelManager.unregister(receiver.getVertexID(), receiver);
+
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	/**
+	 * Checks that a buffer which is not owned by the channel manager is copied even for a single co-located receiver.
+	 */
+	@Test
+	public void testCopyOfForeignBufferToSingleLocalReceiver() {
+
+		try {
+			final TestTask receiver = registerReceiver(1);
+			final ChannelID source = new ChannelID();
+			this.localReceivers.put(source, receiver.getInputChannelIDs());
+
+			final Deque<ByteBuffer> recycledBuffers = new ArrayDeque<ByteBuffer>();
+			final TransferEnvelope envelope = createEnvelope(source, recycledBuffers);
+			final Buffer sourceBuffer = envelope.getBuffer();
+			this.channelManager.processEnvelopeFromNetwork(envelope, true);
+
+			final TransferEnvelope received = receiver.getInputChannelContext(0).pollEnvelope();
+			assertNotNull(received);
+			assertNotSame(sourceBuffer, received.getBuffer());
+			checkContent(received.getBuffer());
+
+			final LocalBufferPool bufferPool = receiver.getBufferPool();
+			assertEquals(1, bufferPool.getRequestedNumberOfBuffers());
+			assertEquals(0, bufferPool.getNumberOfAvailableBuffers());
+			assertEquals(1, recycledBuffers.size());
+
+			received.getBuffer().recycleBuffer();
+			assertEquals(1, bufferPool.getNumberOfAvailableBuffers());
+
+			this.channelManager.unregister(receiver.getVertexID(), receiver);
+
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	/**
+	 * Checks that the buffers which exceed the guaranteed minimum are split according to the number of channels as
+	 * long as no buffer demand has been observed.
+	 */
+	@Test
+	public void testRedistributionWithoutDemand() {
+
+		try {
+			final TestTask small = registerReceiver(1);
+			final TestTask large = registerReceiver(3);
+
+			this.channelManager.rebalanceGlobalBuffers(1000L);
+
+			// The transit pool for multicast counts like ten additional channels
+			final int totalNumberOfBuffers = GlobalBufferPool.getInstance().getTotalNumberOfBuffers();
+			final double buffersPerChannel = totalNumberOfBuffers / 14.0;
+			final int spareBuffers = totalNumberOfBuffers - (int) Math.ceil(buffersPerChannel * 10) - 2 - 4;
+
+			assertEquals(2 + (int) (spareBuffers * 0.25), small.getBufferPool().getDesignatedNumberOfBuffers());
+			assertEquals(4 + (int) (spareBuffers * 0.75), large.getBufferPool().getDesignatedNumberOfBuffers());
+
+			this.channelManager.unregister(small.getVertexID(), small);
+			this.channelManager.unregister(large.getVertexID(), large);
+
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	/**
+	 * Checks that the buffers which exceed the guaranteed minimum are split according to the buffer demand of the
+	 * tasks, that every task keeps its guaranteed minimum, and that the buffers of an unregistered task are handed to
+	 * the remaining ones.
+	 */
+	@Test
+	public void testRedistributionAccordingToDemand() {
+
+		try {
+			final TestTask busy = registerReceiver(2);
+			final TestTask idle = registerReceiver(2);
+			busy.setBufferDemand(30.0);
+			idle.setBufferDemand(10.0);
+
+			this.channelManager.rebalanceGlobalBuffers(1000L);
+
+			final int totalNumberOfBuffers = GlobalBufferPool.getInstance().getTotalNumberOfBuffers();
+			final int transitBuffers = (int) Math.ceil(totalNumberOfBuffers / 14.0 * 10);
+			final int spareBuffers = totalNumberOfBuffers - transitBuffers - 3 - 3;
+
+			final int busyBuffers = busy.getBufferPool().getDesignatedNumberOfBuffers();
+			final int idleBuffers = idle.getBufferPool().getDesignatedNumberOfBuffers();
+			assertEquals(3 + (int) (spareBuffers * 0.75), busyBuffers);
+			assertEquals(3 + (int) (spareBuffers * 0.25), idleBuffers);
+			assertTrue(busyBuffers + idleBuffers + transitBuffers <= totalNumberOfBuffers);
+
+			// A task without demand still keeps one buffer per channel plus one
+			idle.setBufferDemand(0.0);
+			this.channelManager.rebalanceGlobalBuffers(1000L);
+			assertEquals(3 + spareBuffers, busy.getBufferPool().getDesignatedNumberOfBuffers());
+			assertEquals(3, idle.getBufferPool().getDesignatedNumberOfBuffers());
+
+			// The remaining task takes over the buffers of an unregistered one
+			this.channelManager.unregister(idle.getVertexID(), idle);
+			final int remainingTransitBuffers = (int) Math.ceil(totalNumberOfBuffers / 12.0 * 10);
+			assertEquals(totalNumberOfBuffers - remainingTransitBuffers, busy.getBufferPool()
+				.getDesignatedNumberOfBuffers());
+
+			this.channelManager.unregister(busy.getVertexID(), busy);
+
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	/**
+	 * Creates a receiving task with the given number of input channels and registers it with the channel manager.
+	 * 
+	 * @param numberOfInputChannels
+	 *        the number of input channels of the task
+	 * @return the registered task
+	 * @throws InsufficientResourcesException
+	 *         thrown if the channel manager cannot provide enough buffers for the task
+	 */
+	private TestTask registerReceiver(final int numberOfInputChannels) throws InsufficientResourcesException {
+
+		final TestTask task = new TestTask(this.jobID, numberOfInputChannels);
+		this.channelManager.register(task, Collections.<ChannelID> emptySet());
+
+		return task;
+	}
+
+	/**
+	 * Creates a transfer envelope with a memory-backed buffer which is filled with a fixed byte pattern.
+	 * 
+	 * @param source
+	 *        the ID of the envelope's source channel
+	 * @param recycledBuffers
+	 *        the queue the envelope's buffer is returned to when it is recycled
+	 * @return the created envelope
+	 * @throws IOException
+	 *         thrown if an error occurs while filling the envelope's buffer
+	 */
+	private TransferEnvelope createEnvelope(final ChannelID source, final Deque<ByteBuffer> recycledBuffers)
+			throws IOException {
+
+		final TransferEnvelope transferEnvelope = new TransferEnvelope(0, this.jobID, source);
+		final Buffer buffer = BufferFactory.createFromMemory(BUFFER_SIZE, ByteBuffer.allocate(BUFFER_SIZE),
+			new BufferPoolConnector(recycledBuffers));
+		final ByteBuffer content = ByteBuffer.allocate(BUFFER_SIZE);
+		for (int i = 0; i < BUFFER_SIZE; ++i) {
+			content.put((byte) i);
+		}
+		content.flip();
+		buffer.write(content);
+		buffer.finishWritePhase();
+		transferEnvelope.setBuffer(buffer);
+
+		return transferEnvelope;
+	}
+
+	/**
+	 * Checks that the given buffer contains the byte pattern written by {@link #createEnvelope(ChannelID, Deque)}.
+	 * 
+	 * @param buffer
+	 *        the buffer to check
+	 * @throws IOException
+	 *         thrown if an error occurs while reading the buffer
+	 */
+	private static void checkContent(final Buffer buffer) throws IOException {
+
+		assertEquals(BUFFER_SIZE, buffer.size());
+
+		final ByteBuffer content = ByteBuffer.allocate(BUFFER_SIZE);
+		while (buffer.read(content) > 0) {
+		}
+		content.flip();
+
+		assertEquals(BUFFER_SIZE, content.remaining());
+		for (int i = 0; i < BUFFER_SIZE; ++i) {
+			assertEquals((byte) i, content.get());
+		}
+	}
+
+	/**
+	 * A lookup service which reports the co-located receivers registered in {@link #localReceivers}.
+	 */
+	private final class TestChannelLookupProtocol implements ChannelLookupProtocol {
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public ConnectionInfoLookupResponse lookupConnectionInfo(final InstanceConnectionInfo caller,
+				final JobID jobID, final ChannelID sourceChannelID) {
+
+			final List<ChannelID> receivers = localReceivers.get(sourceChannelID);
+			if (receivers == null) {
+				return ConnectionInfoLookupResponse.createReceiverNotFound();
+			}
+
+			final ConnectionInfoLookupResponse response = ConnectionInfoLookupResponse.createReceiverFoundAndReady();
+			for (final ChannelID receiver : receivers) {
+				response.addLocalTarget(receiver);
+			}
+
+			return response;
+		}
+	}
+
+	/**
+	 * A task which only consists of a single input gate. The task's context owns the gate's buffer pool.
+	 */
+	private static final class TestTask implements Task {
+
+		private final JobID jobID;
+
+		private final ExecutionVertexID vertexID = new ExecutionVertexID();
+
+		private final TestEnvironment environment;
+
+		private final TestTaskContext taskContext;
+
+		private TestTask(final JobID jobID, final int numberOfInputChannels) {
+
+			this.jobID = jobID;
+			this.environment = new TestEnvironment(jobID, numberOfInputChannels);
+			this.taskContext = new TestTaskContext(jobID, this.environment.gateID, numberOfInputChannels);
+		}
+
+		private List<ChannelID> getInputChannelIDs() {
+
+			return new ArrayList<ChannelID>(this.environment.inputChannelIDs);
+		}
+
+		private TestInputChannelContext getInputChannelContext(final int index) {
+
+			return this.taskContext.channelContexts.get(index);
+		}
+
+		private LocalBufferPool getBufferPool() {
+
+			return this.taskContext.bufferPool;
+		}
+
+		private void setBufferDemand(final double bufferDemand) {
+
+			this.taskContext.bufferDemand = bufferDemand;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public JobID getJobID() {
+
+			return this.jobID;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public ExecutionVertexID getVertexID() {
+
+			return this.vertexID;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Environment getEnvironment() {
+
+			return this.environment;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void markAsFailed() {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isTerminated() {
+
+			return false;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void startExecution() {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void cancelExecution() {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void killExecution() {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void registerProfiler(final TaskManagerProfiler taskManagerProfiler,
+				final Configuration jobConfiguration) {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void unregisterMemoryManager(final MemoryManager memoryManager) {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void unregisterProfiler(final TaskManagerProfiler taskManagerProfiler) {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public ExecutionState getExecutionState() {
+
+			return ExecutionState.RUNNING;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public TaskContext createTaskContext(final TransferEnvelopeDispatcher transferEnvelopeDispatcher,
+				final LocalBufferPoolOwner previousBufferPoolOwner) {
+
+			return this.taskContext;
+		}
+	}
+
+	/**
+	 * An environment which only exposes the IDs of a single input gate and its channels.
+	 */
+	private static final class TestEnvironment implements Environment {
+
+		private final JobID jobID;
+
+		private final GateID gateID = new GateID();
+
+		private final Set<ChannelID> inputChannelIDs = new HashSet<ChannelID>();
+
+		private TestEnvironment(final JobID jobID, final int numberOfInputChannels) {
+
+			this.jobID = jobID;
+			for (int i = 0; i < numberOfInputChannels; ++i) {
+				this.inputChannelIDs.add(new ChannelID());
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public JobID getJobID() {
+
+			return this.jobID;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Configuration getTaskConfiguration() {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Configuration getJobConfiguration() {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int getCurrentNumberOfSubtasks() {
+
+			return 1;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int getIndexInSubtaskGroup() {
+
+			return 0;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void userThreadStarted(final Thread userThread) {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void userThreadFinished(final Thread userThread) {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public InputSplitProvider getInputSplitProvider() {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public IOManager getIOManager() {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public MemoryManager getMemoryManager() {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String getTaskName() {
+
+			return "Test Receiver";
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void addCompletionMessage(final String message) {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public GateID getNextUnboundInputGateID() {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public GateID getNextUnboundOutputGateID() {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int getNumberOfOutputGates() {
+
+			return 0;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int getNumberOfInputGates() {
+
+			return 1;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int getNumberOfOutputChannels() {
+
+			return 0;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int getNumberOfInputChannels() {
+
+			return this.inputChannelIDs.size();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public <T extends Record> OutputGate<T> createOutputGate(final GateID gateID, final Class<T> outputClass,
+				final ChannelSelector<T> selector, final boolean isBroadcast) {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public <T extends Record> InputGate<T> createInputGate(final GateID gateID,
+				final RecordDeserializerFactory<T> deserializerFactory) {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void registerOutputGate(final OutputGate<? extends Record> outputGate) {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void registerInputGate(final InputGate<? extends Record> inputGate) {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Set<ChannelID> getOutputChannelIDs() {
+
+			return Collections.emptySet();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Set<ChannelID> getInputChannelIDs() {
+
+			return Collections.unmodifiableSet(this.inputChannelIDs);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Set<GateID> getOutputGateIDs() {
+
+			return Collections.emptySet();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Set<GateID> getInputGateIDs() {
+
+			return Collections.singleton(this.gateID);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Set<ChannelID> getOutputChannelIDsOfGate(final GateID gateID) {
+
+			return Collections.emptySet();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Set<ChannelID> getInputChannelIDsOfGate(final GateID gateID) {
+
+			if (!this.gateID.equals(gateID)) {
+				return Collections.emptySet();
+			}
+
+			return getInputChannelIDs();
+		}
+	}
+
+	/**
+	 * A task context which also acts as the context of the task's only input gate. It hands out the buffers of a
+	 * single local buffer pool to all input channels.
+	 */
+	private static final class TestTaskContext implements TaskContext, InputGateContext {
+
+		private final JobID jobID;
+
+		private final GateID gateID;
+
+		private final int numberOfChannels;
+
+		private final LocalBufferPool bufferPool = new LocalBufferPool(1, false);
+
+		private final List<TestInputChannelContext> channelContexts = new ArrayList<TestInputChannelContext>();
+
+		private volatile double bufferDemand = 0.0;
+
+		private TestTaskContext(final JobID jobID, final GateID gateID, final int numberOfChannels) {
+
+			this.jobID = jobID;
+			this.gateID = gateID;
+			this.numberOfChannels = numberOfChannels;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int getNumberOfChannels() {
+
+			return this.numberOfChannels;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void setDesignatedNumberOfBuffers(final int numberOfBuffers) {
+
+			this.bufferPool.setDesignatedNumberOfBuffers(numberOfBuffers);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void updateBufferDemand(final long interval) {
+
+			// The demand is fixed by the test, so the channel manager's periodic updates do not interfere
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public double getBufferDemand() {
+
+			return this.bufferDemand;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void clearLocalBufferPool() {
+
+			this.bufferPool.destroy();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void logBufferUtilization() {
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void reportAsynchronousEvent() {
+
+			this.bufferPool.reportAsynchronousEvent();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public GateID getGateID() {
+
+			return this.gateID;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public OutputGateContext createOutputGateContext(final GateID gateID) {
+
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public InputGateContext createInputGateContext(final GateID gateID) {
+
+			return this;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public InputChannelContext createInputChannelContext(final ChannelID channelID,
+				final InputChannelContext previousContext) {
+
+			final TestInputChannelContext channelContext = new TestInputChannelContext(this.jobID, channelID,
+				this.bufferPool);
+			this.channelContexts.add(channelContext);
+
+			return channelContext;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public LocalBufferPoolOwner getLocalBufferPoolOwner() {
+
+			return null;
+		}
+	}
+
+	/**
+	 * An input channel context which collects the envelopes queued by the channel manager.
+	 */
+	private static final class TestInputChannelContext implements InputChannelContext {
+
+		private final JobID jobID;
+
+		private final ChannelID channelID;
+
+		private final LocalBufferPool bufferPool;
+
+		private final Queue<TransferEnvelope> queuedEnvelopes = new ConcurrentLinkedQueue<TransferEnvelope>();
+
+		private TestInputChannelContext(final JobID jobID, final ChannelID channelID,
+				final LocalBufferPool bufferPool) {
+
+			this.jobID = jobID;
+			this.channelID = channelID;
+			this.bufferPool = bufferPool;
+		}
+
+		private TransferEnvelope pollEnvelope() {
+
+			return this.queuedEnvelopes.poll();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isInputChannel() {
+
+			return true;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public JobID getJobID() {
+
+			return this.jobID;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public ChannelID getChannelID() {
+
+			return this.channelID;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public ChannelID getConnectedChannelID() {
+
+			return null;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public ChannelType getType() {
+
+			return ChannelType.NETWORK;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void queueTransferEnvelope(final TransferEnvelope transferEnvelope) {
+
+			this.queuedEnvelopes.add(transferEnvelope);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void destroy() {
+
+			TransferEnvelope envelope = this.queuedEnvelopes.poll();
+			while (envelope != null) {
+				if (envelope.getBuffer() != null) {
+					envelope.getBuffer().recycleBuffer();
+				}
+				envelope = this.queuedEnvelopes.poll();
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Buffer requestEmptyBuffer(final int minimumSizeOfBuffer) throws IOException {
+
+			return this.bufferPool.requestEmptyBuffer(minimumSizeOfBuffer);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Buffer requestEmptyBufferBlocking(final int minimumSizeOfBuffer) throws IOException,
+				InterruptedException {
+
+			return this.bufferPool.requestEmptyBufferBlocking(minimumSizeOfBuffer);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int getMaximumBufferSize() {
+
+			return this.bufferPool.getMaximumBufferSize();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isShared() {
+
+			return false;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void reportAsynchronousEvent() {
+
+			this.bufferPool.reportAsynchronousEvent();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean registerBufferAvailabilityListener(final BufferAvailabilityListener bufferAvailabilityListener) {
+
+			return this.bufferPool.registerBufferAvailabilityListener(bufferAvailabilityListener);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void logQueuedEnvelopes() {
+		}
+	}
+}
@@ -0,0 +1,253 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.bytebuffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.BufferFactory;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+import eu.stratosphere.nephele.util.BufferPoolConnector;
+
+/**
+ * This class contains tests covering the credit-based flow control of network output channels.
+ */
+public class ChannelCreditManagerTest {
+
+	/**
+	 * The size of the envelopes' buffers in bytes.
+	 */
+	private static final int BUFFER_SIZE = 64;
+
+	/**
+	 * The number of channels used by the concurrency test.
+	 */
+	private static final int NUMBER_OF_CHANNELS = 1000;
+
+	/**
+	 * The job ID used for the envelopes.
+	 */
+	private final JobID jobID = new JobID();
+
+	/**
+	 * The receiver of the envelopes.
+	 */
+	private final RemoteReceiver remoteReceiver = new RemoteReceiver(new InetSocketAddress("localhost", 1), 0);
+
+	/**
+	 * The queue the envelopes' buffers are returned to when they are recycled.
+	 */
+	private final Deque<ByteBuffer> recycledBuffers = new ArrayDeque<ByteBuffer>();
+
+	/**
+	 * Envelope transmitter which only records the envelopes it receives.
+	 */
+	private static final class RecordingEnvelopeTransmitter implements EnvelopeTransmitter {
+
+		private final List<TransferEnvelope> transmittedEnvelopes = new ArrayList<TransferEnvelope>();
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public synchronized void transmitEnvelope(final RemoteReceiver remoteReceiver,
+				final TransferEnvelope transferEnvelope) {
+
+			this.transmittedEnvelopes.add(transferEnvelope);
+		}
+
+		private synchronized int getNumberOfTransmittedEnvelopes() {
+
+			return this.transmittedEnvelopes.size();
+		}
+
+		private synchronized int getSequenceNumber(final int index) {
+
+			return this.transmittedEnvelopes.get(index).getSequenceNumber();
+		}
+	}
+
+	/**
+	 * Checks that the envelopes of a registered channel are not held back before the receiver announces credit.
+	 */
+	@Test
+	public void testTransmissionBeforeAnnouncement() {
+
+		final RecordingEnvelopeTransmitter transmitter = new RecordingEnvelopeTransmitter();
+		final ChannelCreditManager creditManager = new ChannelCreditManager(transmitter);
+		final ChannelID channelID = new ChannelID();
+
+		creditManager.register(channelID);
+		assertTrue(creditManager.isRegistered(channelID));
+
+		for (int i = 0; i < 3; ++i) {
+			creditManager.queueEnvelope(this.remoteReceiver, createEnvelope(i, channelID, true));
+		}
+
+		assertEquals(3, transmitter.getNumberOfTransmittedEnvelopes());
+		assertEquals(0, creditManager.getNumberOfPendingEnvelopes(channelID));
+	}
+
+	/**
+	 * Checks that envelopes exceeding the announced credit are held back in order and are released by further
+	 * announcements.
+	 */
+	@Test
+	public void testBlockAndResume() {
+
+		final RecordingEnvelopeTransmitter transmitter = new RecordingEnvelopeTransmitter();
+		final ChannelCreditManager creditManager = new ChannelCreditManager(transmitter);
+		final ChannelID channelID = new ChannelID();
+
+		creditManager.register(channelID);
+		creditManager.grant(channelID, 1);
+
+		creditManager.queueEnvelope(this.remoteReceiver, createEnvelope(0, channelID, true));
+		creditManager.queueEnvelope(this.remoteReceiver, createEnvelope(1, channelID, true));
+		creditManager.queueEnvelope(this.remoteReceiver, createEnvelope(2, channelID, true));
+		// Envelopes without a buffer must not overtake held back envelopes
+		creditManager.queueEnvelope(this.remoteReceiver, createEnvelope(3, channelID, false));
+
+		assertEquals(2, transmitter.getNumberOfTransmittedEnvelopes());
+		assertEquals(2, creditManager.getNumberOfPendingEnvelopes(channelID));
+
+		// Outdated announcements must not change anything
+		creditManager.grant(channelID, 0);
+		assertEquals(2, transmitter.getNumberOfTransmittedEnvelopes());
+
+		creditManager.grant(channelID, 2);
+		assertEquals(4, transmitter.getNumberOfTransmittedEnvelopes());
+		assertEquals(0, creditManager.getNumberOfPendingEnvelopes(channelID));
+		for (int i = 0; i < 4; ++i) {
+			assertEquals(i, transmitter.getSequenceNumber(i));
+		}
+
+		// Envelopes of other channels are never held back
+		creditManager.queueEnvelope(this.remoteReceiver, createEnvelope(5, new ChannelID(), true));
+		assertEquals(5, transmitter.getNumberOfTransmittedEnvelopes());
+	}
+
+	/**
+	 * Checks that removing a channel recycles the buffers of its held back envelopes and that a subsequent
+	 * announcement does not register the channel again.
+	 */
+	@Test
+	public void testGrantAfterRemove() {
+
+		final RecordingEnvelopeTransmitter transmitter = new RecordingEnvelopeTransmitter();
+		final ChannelCreditManager creditManager = new ChannelCreditManager(transmitter);
+		final ChannelID channelID = new ChannelID();
+
+		creditManager.register(channelID);
+		creditManager.grant(channelID, 0);
+		creditManager.queueEnvelope(this.remoteReceiver, createEnvelope(0, channelID, true));
+		creditManager.queueEnvelope(this.remoteReceiver, createEnvelope(1, channelID, true));
+		assertEquals(1, creditManager.getNumberOfPendingEnvelopes(channelID));
+
+		creditManager.remove(channelID);
+		assertFalse(creditManager.isRegistered(channelID));
+		assertEquals(1, this.recycledBuffers.size());
+
+		creditManager.grant(channelID, 10);
+		assertFalse(creditManager.isRegistered(channelID));
+		assertEquals(1, transmitter.getNumberOfTransmittedEnvelopes());
+	}
+
+	/**
+	 * Checks that announcements racing the removal of their channels never leave a credit object behind.
+	 */
+	@Test
+	public void testConcurrentGrantAndRemove() {
+
+		final ChannelCreditManager creditManager = new ChannelCreditManager(new RecordingEnvelopeTransmitter());
+		final ChannelID[] channelIDs = new ChannelID[NUMBER_OF_CHANNELS];
+		for (int i = 0; i < channelIDs.length; ++i) {
+			channelIDs[i] = new ChannelID();
+			creditManager.register(channelIDs[i]);
+		}
+
+		final Thread grantingThread = new Thread() {
+
+			@Override
+			public void run() {
+
+				for (int round = 0; round < 10; ++round) {
+					for (int i = 0; i < channelIDs.length; ++i) {
+						creditManager.grant(channelIDs[i], round);
+					}
+				}
+			}
+		};
+
+		grantingThread.start();
+		for (int i = 0; i < channelIDs.length; ++i) {
+			creditManager.remove(channelIDs[i]);
+		}
+
+		try {
+			grantingThread.join();
+		} catch (InterruptedException e) {
+			fail(e.getMessage());
+		}
+
+		for (int i = 0; i < channelIDs.length; ++i) {
+			assertFalse(creditManager.isRegistered(channelIDs[i]));
+		}
+	}
+
+	/**
+	 * Creates a transfer envelope of the given channel.
+	 * 
+	 * @param sequenceNumber
+	 *        the sequence number of the envelope
+	 * @param source
+	 *        the ID of the envelope's source channel
+	 * @param withBuffer
+	 *        <code>true</code> to attach a memory-backed buffer to the envelope
+	 * @return the created envelope
+	 */
+	private TransferEnvelope createEnvelope(final int sequenceNumber, final ChannelID source, final boolean withBuffer) {
+
+		final TransferEnvelope transferEnvelope = new TransferEnvelope(sequenceNumber, this.jobID, source);
+		if (withBuffer) {
+			final Buffer buffer = BufferFactory.createFromMemory(BUFFER_SIZE, ByteBuffer.allocate(BUFFER_SIZE),
+				new BufferPoolConnector(this.recycledBuffers));
+			try {
+				buffer.finishWritePhase();
+			} catch (IOException ioe) {
+				fail(ioe.getMessage());
+			}
+			transferEnvelope.setBuffer(buffer);
+		}
+
+		return transferEnvelope;
+	}
+}
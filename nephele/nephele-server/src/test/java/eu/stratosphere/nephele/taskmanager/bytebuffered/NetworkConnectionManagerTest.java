@@ -0,0 +1,475 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+
+package eu.stratosphere.nephele.taskmanager.bytebuffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProvider;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProviderBroker;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.ChannelAliasDictionary;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.DefaultDeserializer;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+
+/**
+ * This class contains tests covering the striping of channels across parallel connections and the distribution of
+ * accepted connections among the incoming connection threads.
+ */
+public class NetworkConnectionManagerTest {
+
+	/**
+	 * The number of parallel connections to each remote receiver used by the striping tests.
+	 */
+	private static final int NUMBER_OF_CONNECTIONS_PER_PEER = 4;
+
+	/**
+	 * The minimum number of channels mapped to each of the parallel connections.
+	 */
+	private static final int CHANNELS_PER_CONNECTION = 2;
+
+	/**
+	 * The number of envelopes transmitted per channel.
+	 */
+	private static final int ENVELOPES_PER_CHANNEL = 50;
+
+	/**
+	 * The number of incoming connection threads used by the round-robin test.
+	 */
+	private static final int NUMBER_OF_INCOMING_CONNECTION_THREADS = 3;
+
+	/**
+	 * The maximum time in milliseconds to wait for connections and envelopes.
+	 */
+	private static final long MAXIMUM_WAIT_TIME = 10000L;
+
+	/**
+	 * Resets the number of connections per peer to its default after each test.
+	 */
+	@After
+	public void resetConfiguration() {
+
+		final Configuration configuration = new Configuration();
+		configuration.setInteger("channel.network.numberOfConnectionsPerPeer", 1);
+		GlobalConfiguration.includeConfiguration(configuration);
+	}
+
+	/**
+	 * Tests that a channel is always mapped to the same of the parallel connections to a remote receiver, namely the
+	 * one at index <code>(hashCode &amp; Integer.MAX_VALUE) % numberOfConnectionsPerPeer</code>.
+	 * 
+	 * @throws IOException
+	 *         thrown if the network connection manager cannot be started
+	 */
+	@Test
+	public void testChannelToConnectionMapping() throws IOException {
+
+		final NetworkConnectionManager networkConnectionManager = createNetworkConnectionManager();
+
+		try {
+			final RemoteReceiver remoteReceiver = new RemoteReceiver(new InetSocketAddress(
+				InetAddress.getByName("127.0.0.1"), getFreePort()), 0);
+			final List<ChannelID> channelIDs = createStripedChannelIDs();
+
+			final Map<Integer, OutgoingConnection> connectionsBySlot = new HashMap<Integer, OutgoingConnection>();
+			for (final ChannelID channelID : channelIDs) {
+
+				final OutgoingConnection outgoingConnection = networkConnectionManager.getOutgoingConnection(
+					remoteReceiver, channelID);
+				assertNotNull(outgoingConnection);
+				assertSame(outgoingConnection, networkConnectionManager.getOutgoingConnection(remoteReceiver,
+					channelID));
+
+				final Integer slot = Integer.valueOf(getSlot(channelID));
+				final OutgoingConnection connectionOfSlot = connectionsBySlot.get(slot);
+				if (connectionOfSlot == null) {
+					assertFalse(connectionsBySlot.containsValue(outgoingConnection));
+					connectionsBySlot.put(slot, outgoingConnection);
+				} else {
+					assertSame(connectionOfSlot, outgoingConnection);
+				}
+			}
+
+			assertEquals(NUMBER_OF_CONNECTIONS_PER_PEER, connectionsBySlot.size());
+
+		} finally {
+			networkConnectionManager.shutDown();
+		}
+	}
+
+	/**
+	 * Tests that the envelopes of a channel arrive through a single connection and in the order they have been
+	 * transmitted while the envelopes of several channels are striped across parallel connections.
+	 * 
+	 * @throws Exception
+	 *         thrown if an error occurs while transmitting or receiving the envelopes
+	 */
+	@Test
+	public void testOrderAcrossStripedConnections() throws Exception {
+
+		final EnvelopeReceiver envelopeReceiver = new EnvelopeReceiver();
+		envelopeReceiver.start();
+
+		final NetworkConnectionManager networkConnectionManager = createNetworkConnectionManager();
+
+		try {
+			final RemoteReceiver remoteReceiver = new RemoteReceiver(envelopeReceiver.getAddress(), 0);
+			final List<ChannelID> channelIDs = createStripedChannelIDs();
+			final JobID jobID = new JobID();
+
+			// Interleave the envelopes of all channels
+			for (int i = 0; i < ENVELOPES_PER_CHANNEL; ++i) {
+				for (final ChannelID channelID : channelIDs) {
+					networkConnectionManager.transmitEnvelope(remoteReceiver, new TransferEnvelope(i, jobID,
+						channelID));
+				}
+			}
+
+			assertTrue(envelopeReceiver.waitForEnvelopes(channelIDs.size() * ENVELOPES_PER_CHANNEL));
+			assertEquals(NUMBER_OF_CONNECTIONS_PER_PEER, envelopeReceiver.getNumberOfConnections());
+
+			final Map<Integer, Integer> connectionsBySlot = new HashMap<Integer, Integer>();
+			for (final ChannelID channelID : channelIDs) {
+
+				final List<Integer> sequenceNumbers = envelopeReceiver.getSequenceNumbers(channelID);
+				assertEquals(ENVELOPES_PER_CHANNEL, sequenceNumbers.size());
+				for (int i = 0; i < ENVELOPES_PER_CHANNEL; ++i) {
+					assertEquals(i, sequenceNumbers.get(i).intValue());
+				}
+
+				final Set<Integer> connections = envelopeReceiver.getConnections(channelID);
+				assertEquals(1, connections.size());
+
+				final Integer slot = Integer.valueOf(getSlot(channelID));
+				final Integer connection = connections.iterator().next();
+				final Integer connectionOfSlot = connectionsBySlot.get(slot);
+				if (connectionOfSlot == null) {
+					assertFalse(connectionsBySlot.containsValue(connection));
+					connectionsBySlot.put(slot, connection);
+				} else {
+					assertEquals(connectionOfSlot, connection);
+				}
+			}
+
+		} finally {
+			networkConnectionManager.shutDown();
+			envelopeReceiver.shutDown();
+		}
+	}
+
+	/**
+	 * Tests that the listening thread spreads accepted connections round-robin over itself and the incoming
+	 * connection threads added to it.
+	 * 
+	 * @throws Exception
+	 *         thrown if an error occurs while opening the connections
+	 */
+	@Test
+	public void testRoundRobinIncomingConnections() throws Exception {
+
+		final InetSocketAddress listeningAddress = new InetSocketAddress(InetAddress.getByName("127.0.0.1"),
+			getFreePort());
+		final List<IncomingConnectionThread> threads = new ArrayList<IncomingConnectionThread>();
+		final IncomingConnectionThread listeningThread = new IncomingConnectionThread(null, true, listeningAddress);
+		threads.add(listeningThread);
+		for (int i = 1; i < NUMBER_OF_INCOMING_CONNECTION_THREADS; ++i) {
+			final IncomingConnectionThread thread = new IncomingConnectionThread(null, false, null);
+			listeningThread.addConnectionThread(thread);
+			threads.add(thread);
+		}
+
+		final List<SocketChannel> clientSockets = new ArrayList<SocketChannel>();
+
+		try {
+			for (final IncomingConnectionThread thread : threads) {
+				thread.start();
+			}
+
+			final int connectionsPerThread = 2;
+			for (int i = 0; i < connectionsPerThread * NUMBER_OF_INCOMING_CONNECTION_THREADS; ++i) {
+				clientSockets.add(SocketChannel.open(listeningAddress));
+			}
+
+			final long deadline = System.currentTimeMillis() + MAXIMUM_WAIT_TIME;
+			while (getNumberOfRegisteredConnections(threads) < clientSockets.size()
+				&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(10L);
+			}
+
+			for (final IncomingConnectionThread thread : threads) {
+				assertEquals(connectionsPerThread, thread.getNumberOfRegisteredConnections());
+			}
+
+		} finally {
+			for (final SocketChannel clientSocket : clientSockets) {
+				clientSocket.close();
+			}
+			for (final IncomingConnectionThread thread : threads) {
+				thread.interrupt();
+				thread.join();
+			}
+		}
+	}
+
+	/**
+	 * Creates a network connection manager which opens {@link #NUMBER_OF_CONNECTIONS_PER_PEER} connections to each
+	 * remote receiver.
+	 * 
+	 * @return the network connection manager
+	 * @throws IOException
+	 *         thrown if the network connection manager cannot be started
+	 */
+	private static NetworkConnectionManager createNetworkConnectionManager() throws IOException {
+
+		final Configuration configuration = new Configuration();
+		configuration.setInteger("channel.network.numberOfConnectionsPerPeer", NUMBER_OF_CONNECTIONS_PER_PEER);
+		GlobalConfiguration.includeConfiguration(configuration);
+
+		final InetAddress loopback = InetAddress.getByName("127.0.0.1");
+
+		return new NetworkConnectionManager(null, loopback, getFreePort());
+	}
+
+	/**
+	 * Creates channel IDs until each of the parallel connections carries at least
+	 * {@link #CHANNELS_PER_CONNECTION} channels.
+	 * 
+	 * @return the created channel IDs
+	 */
+	private static List<ChannelID> createStripedChannelIDs() {
+
+		final int[] channelsPerSlot = new int[NUMBER_OF_CONNECTIONS_PER_PEER];
+		final List<ChannelID> channelIDs = new ArrayList<ChannelID>();
+		int numberOfCompleteSlots = 0;
+		while (numberOfCompleteSlots < NUMBER_OF_CONNECTIONS_PER_PEER) {
+
+			final ChannelID channelID = new ChannelID();
+			final int slot = getSlot(channelID);
+			if (channelsPerSlot[slot] < CHANNELS_PER_CONNECTION) {
+				channelIDs.add(channelID);
+				if (++channelsPerSlot[slot] == CHANNELS_PER_CONNECTION) {
+					++numberOfCompleteSlots;
+				}
+			}
+		}
+
+		return channelIDs;
+	}
+
+	/**
+	 * Returns the index of the parallel connection the given channel is expected to be mapped to.
+	 * 
+	 * @param channelID
+	 *        the ID of the channel
+	 * @return the index of the parallel connection
+	 */
+	private static int getSlot(final ChannelID channelID) {
+
+		return (channelID.hashCode() & Integer.MAX_VALUE) % NUMBER_OF_CONNECTIONS_PER_PEER;
+	}
+
+	/**
+	 * Returns a port which is currently not in use.
+	 * 
+	 * @return a free port
+	 * @throws IOException
+	 *         thrown if no port can be determined
+	 */
+	private static int getFreePort() throws IOException {
+
+		final ServerSocket serverSocket = new ServerSocket(0);
+		try {
+			return serverSocket.getLocalPort();
+		} finally {
+			serverSocket.close();
+		}
+	}
+
+	private static int getNumberOfRegisteredConnections(final List<IncomingConnectionThread> threads) {
+
+		int numberOfRegisteredConnections = 0;
+		for (final IncomingConnectionThread thread : threads) {
+			numberOfRegisteredConnections += thread.getNumberOfRegisteredConnections();
+		}
+
+		return numberOfRegisteredConnections;
+	}
+
+	/**
+	 * Remote receiver which accepts connections and records through which connection and in which order the envelopes
+	 * of each channel arrive.
+	 */
+	private static final class EnvelopeReceiver extends Thread implements BufferProviderBroker {
+
+		private final ServerSocketChannel serverSocket;
+
+		private final List<SocketChannel> connections = new ArrayList<SocketChannel>();
+
+		private final Map<ChannelID, List<Integer>> sequenceNumbers = new HashMap<ChannelID, List<Integer>>();
+
+		private final Map<ChannelID, Set<Integer>> connectionsOfChannels = new HashMap<ChannelID, Set<Integer>>();
+
+		private int numberOfEnvelopes = 0;
+
+		private EnvelopeReceiver() throws IOException {
+			super("Envelope Receiver");
+
+			this.serverSocket = ServerSocketChannel.open();
+			this.serverSocket.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+		}
+
+		private InetSocketAddress getAddress() {
+			return (InetSocketAddress) this.serverSocket.socket().getLocalSocketAddress();
+		}
+
+		@Override
+		public void run() {
+
+			try {
+				while (true) {
+
+					final SocketChannel connection = this.serverSocket.accept();
+					final int connectionIndex;
+					synchronized (this) {
+						connectionIndex = this.connections.size();
+						this.connections.add(connection);
+					}
+
+					final Thread readerThread = new Thread("Envelope Reader " + connectionIndex) {
+
+						@Override
+						public void run() {
+							readEnvelopes(connection, connectionIndex);
+						}
+					};
+					readerThread.setDaemon(true);
+					readerThread.start();
+				}
+			} catch (IOException e) {
+				// The server socket has been closed
+			}
+		}
+
+		private void readEnvelopes(final SocketChannel connection, final int connectionIndex) {
+
+			final DefaultDeserializer deserializer = new DefaultDeserializer(this, new ChannelAliasDictionary());
+
+			try {
+				while (true) {
+
+					deserializer.read(connection);
+
+					final TransferEnvelope transferEnvelope = deserializer.getFullyDeserializedTransferEnvelope();
+					if (transferEnvelope != null) {
+						addEnvelope(transferEnvelope, connectionIndex);
+					}
+				}
+			} catch (Exception e) {
+				// The connection has been closed
+			}
+		}
+
+		private synchronized void addEnvelope(final TransferEnvelope transferEnvelope, final int connectionIndex) {
+
+			final ChannelID source = transferEnvelope.getSource();
+
+			List<Integer> sequenceNumbersOfChannel = this.sequenceNumbers.get(source);
+			if (sequenceNumbersOfChannel == null) {
+				sequenceNumbersOfChannel = new ArrayList<Integer>();
+				this.sequenceNumbers.put(source, sequenceNumbersOfChannel);
+			}
+			sequenceNumbersOfChannel.add(Integer.valueOf(transferEnvelope.getSequenceNumber()));
+
+			Set<Integer> connectionsOfChannel = this.connectionsOfChannels.get(source);
+			if (connectionsOfChannel == null) {
+				connectionsOfChannel = new HashSet<Integer>();
+				this.connectionsOfChannels.put(source, connectionsOfChannel);
+			}
+			connectionsOfChannel.add(Integer.valueOf(connectionIndex));
+
+			++this.numberOfEnvelopes;
+			notifyAll();
+		}
+
+		private synchronized boolean waitForEnvelopes(final int numberOfEnvelopes) throws InterruptedException {
+
+			final long deadline = System.currentTimeMillis() + MAXIMUM_WAIT_TIME;
+			while (this.numberOfEnvelopes < numberOfEnvelopes) {
+				final long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0L) {
+					return false;
+				}
+				wait(remaining);
+			}
+
+			return true;
+		}
+
+		private synchronized int getNumberOfConnections() {
+			return this.connections.size();
+		}
+
+		private synchronized List<Integer> getSequenceNumbers(final ChannelID channelID) {
+			return this.sequenceNumbers.get(channelID);
+		}
+
+		private synchronized Set<Integer> getConnections(final ChannelID channelID) {
+			return this.connectionsOfChannels.get(channelID);
+		}
+
+		@Override
+		public BufferProvider getBufferProvider(final JobID jobID, final ChannelID sourceChannelID) {
+
+			// The envelopes transmitted by the tests do not carry buffers
+			return null;
+		}
+
+		private void shutDown() throws IOException, InterruptedException {
+
+			this.serverSocket.close();
+			join();
+
+			synchronized (this) {
+				for (final SocketChannel connection : this.connections) {
+					connection.close();
+				}
+			}
+		}
+	}
+}
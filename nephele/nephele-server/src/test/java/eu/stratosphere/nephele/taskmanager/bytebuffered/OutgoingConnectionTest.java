@@ -0,0 +1,159 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.bytebuffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.BufferFactory;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+import eu.stratosphere.nephele.util.BufferPoolConnector;
+
+/**
+ * This class contains tests covering the transmission of queued envelopes through an {@link OutgoingConnection}.
+ */
+public class OutgoingConnectionTest {
+
+	/**
+	 * The number of envelopes queued before the first batch is written.
+	 */
+	private static final int NUMBER_OF_ENVELOPES = 32;
+
+	/**
+	 * The size of the envelopes' buffers in bytes. The first batch exceeds the capacity of the pipe, so it can only be
+	 * written partially.
+	 */
+	private static final int BUFFER_SIZE = 32 * 1024;
+
+	/**
+	 * The job ID used for the envelopes.
+	 */
+	private final JobID jobID = new JobID();
+
+	/**
+	 * Checks that dropping the envelopes of a channel while a batch is partially written keeps the envelopes of the
+	 * batch and recycles every buffer exactly once.
+	 */
+	@Test
+	public void testDropChannelDuringPartialBatchWrite() {
+
+		try {
+			final Pipe pipe = Pipe.open();
+			pipe.sink().configureBlocking(false);
+			pipe.source().configureBlocking(false);
+			final Selector selector = Selector.open();
+			final SelectionKey selectionKey = pipe.sink().register(selector, SelectionKey.OP_WRITE);
+
+			final OutgoingConnection outgoingConnection = new OutgoingConnection(null, new OutgoingConnectionThread(),
+				1);
+			outgoingConnection.setSelectionKey(selectionKey);
+
+			final ChannelID droppedChannelID = new ChannelID();
+			final ChannelID keptChannelID = new ChannelID();
+			final Deque<ByteBuffer> recycledBuffers = new ArrayDeque<ByteBuffer>();
+
+			int sequenceNumber = 0;
+			for (int i = 0; i < NUMBER_OF_ENVELOPES; ++i) {
+				final ChannelID source = (i % 2 == 0) ? droppedChannelID : keptChannelID;
+				outgoingConnection.queueEnvelope(createEnvelope(sequenceNumber++, source, recycledBuffers));
+			}
+
+			// The first write batches all queued envelopes but the pipe only takes a part of them
+			assertTrue(outgoingConnection.write());
+			final int queuedFromDroppedChannel = outgoingConnection
+				.getNumberOfQueuedEnvelopesFromChannel(droppedChannelID);
+			assertTrue(queuedFromDroppedChannel > 0);
+			assertTrue(recycledBuffers.size() < NUMBER_OF_ENVELOPES);
+
+			// Envelopes queued after the batch has been assembled are not in transmission yet
+			outgoingConnection.queueEnvelope(createEnvelope(sequenceNumber++, droppedChannelID, recycledBuffers));
+			outgoingConnection.queueEnvelope(createEnvelope(sequenceNumber++, keptChannelID, recycledBuffers));
+			outgoingConnection.queueEnvelope(createEnvelope(sequenceNumber++, droppedChannelID, recycledBuffers));
+
+			final int recycledBeforeDrop = recycledBuffers.size();
+			outgoingConnection.dropAllQueuedEnvelopesFromChannel(droppedChannelID);
+
+			// Only the two envelopes behind the batch must have been dropped
+			assertEquals(recycledBeforeDrop + 2, recycledBuffers.size());
+			assertEquals(queuedFromDroppedChannel,
+				outgoingConnection.getNumberOfQueuedEnvelopesFromChannel(droppedChannelID));
+
+			// Drain the pipe until the remaining envelopes have been transmitted
+			final ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+			long bytesReceived = 0L;
+			while (outgoingConnection.write()) {
+				int read = pipe.source().read(readBuffer);
+				while (read > 0) {
+					bytesReceived += read;
+					readBuffer.clear();
+					read = pipe.source().read(readBuffer);
+				}
+			}
+
+			assertEquals(NUMBER_OF_ENVELOPES + 3, recycledBuffers.size());
+			assertEquals(0, outgoingConnection.getNumberOfQueuedEnvelopesFromChannel(droppedChannelID));
+			assertEquals(0, outgoingConnection.getNumberOfQueuedEnvelopesFromChannel(keptChannelID));
+			assertTrue(bytesReceived > (long) NUMBER_OF_ENVELOPES * BUFFER_SIZE / 2);
+
+			selector.close();
+			pipe.sink().close();
+			pipe.source().close();
+
+		} catch (IOException ioe) {
+			fail(ioe.getMessage());
+		}
+	}
+
+	/**
+	 * Creates a transfer envelope with a memory-backed buffer which is filled entirely.
+	 * 
+	 * @param sequenceNumber
+	 *        the sequence number of the envelope
+	 * @param source
+	 *        the ID of the envelope's source channel
+	 * @param recycledBuffers
+	 *        the queue the envelope's buffer is returned to when it is recycled
+	 * @return the created envelope
+	 * @throws IOException
+	 *         thrown if an error occurs while filling the envelope's buffer
+	 */
+	private TransferEnvelope createEnvelope(final int sequenceNumber, final ChannelID source,
+			final Deque<ByteBuffer> recycledBuffers) throws IOException {
+
+		final TransferEnvelope transferEnvelope = new TransferEnvelope(sequenceNumber, this.jobID, source);
+		final Buffer buffer = BufferFactory.createFromMemory(BUFFER_SIZE, ByteBuffer.allocate(BUFFER_SIZE),
+			new BufferPoolConnector(recycledBuffers));
+		buffer.write(ByteBuffer.allocate(BUFFER_SIZE));
+		buffer.finishWritePhase();
+		transferEnvelope.setBuffer(buffer);
+
+		return transferEnvelope;
+	}
+}
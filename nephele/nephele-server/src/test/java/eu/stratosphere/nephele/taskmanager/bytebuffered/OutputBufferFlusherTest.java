@@ -0,0 +1,529 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.bytebuffered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.event.task.AbstractEvent;
+import eu.stratosphere.nephele.io.GateID;
+import eu.stratosphere.nephele.io.HeldBackBufferHandler;
+import eu.stratosphere.nephele.io.RuntimeInputGate;
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.io.channels.ChannelType;
+import eu.stratosphere.nephele.io.channels.bytebuffered.AbstractByteBufferedOutputChannel;
+import eu.stratosphere.nephele.io.channels.bytebuffered.ByteBufferedOutputChannelBroker;
+import eu.stratosphere.nephele.io.channels.bytebuffered.NetworkOutputChannel;
+import eu.stratosphere.nephele.io.compression.CompressionLevel;
+import eu.stratosphere.nephele.io.compression.Compressor;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.LocalBufferPool;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+import eu.stratosphere.nephele.types.StringRecord;
+
+/**
+ * This class contains tests covering the latency-bounded flushing of output buffers.
+ */
+public class OutputBufferFlusherTest {
+
+	/**
+	 * The buffer timeout in milliseconds used throughout the tests.
+	 */
+	private static final long BUFFER_TIMEOUT = 10L;
+
+	/**
+	 * The maximum time in milliseconds to wait for the flusher.
+	 */
+	private static final long MAXIMUM_WAIT_TIME = 5000L;
+
+	/**
+	 * The size of the buffers used by the channel tests in bytes.
+	 */
+	private static final int BUFFER_SIZE = 1024;
+
+	/**
+	 * The number of records written by the task thread in the channel tests.
+	 */
+	private static final int NUMBER_OF_RECORDS = 20;
+
+	/**
+	 * Output channel context which only counts the flush requests it receives.
+	 */
+	private static final class CountingOutputChannelContext extends AbstractOutputChannelContext {
+
+		private final ChannelID channelID = new ChannelID();
+
+		private final long bufferTimeout;
+
+		private int numberOfFlushRequests = 0;
+
+		private CountingOutputChannelContext(final long bufferTimeout) {
+			super(null);
+
+			this.bufferTimeout = bufferTimeout;
+		}
+
+		@Override
+		public boolean isInputChannel() {
+			return false;
+		}
+
+		@Override
+		public JobID getJobID() {
+			return null;
+		}
+
+		@Override
+		public ChannelID getChannelID() {
+			return this.channelID;
+		}
+
+		@Override
+		public ChannelID getConnectedChannelID() {
+			return null;
+		}
+
+		@Override
+		public ChannelType getType() {
+			return ChannelType.NETWORK;
+		}
+
+		@Override
+		public void queueTransferEnvelope(final TransferEnvelope transferEnvelope) {
+		}
+
+		@Override
+		public long getBufferTimeout() {
+			return this.bufferTimeout;
+		}
+
+		@Override
+		public synchronized boolean requestFlushIfTimedOut(final long now) {
+
+			++this.numberOfFlushRequests;
+			notifyAll();
+
+			return true;
+		}
+
+		private synchronized int waitForFlushRequests(final int numberOfFlushRequests) throws InterruptedException {
+
+			final long deadline = System.currentTimeMillis() + MAXIMUM_WAIT_TIME;
+			while (this.numberOfFlushRequests < numberOfFlushRequests) {
+				final long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0L) {
+					break;
+				}
+				wait(remaining);
+			}
+
+			return this.numberOfFlushRequests;
+		}
+
+		private synchronized int getNumberOfFlushRequests() {
+			return this.numberOfFlushRequests;
+		}
+	}
+
+	/**
+	 * Tests that the flusher periodically checks registered channels with a buffer timeout and leaves all other
+	 * channels alone.
+	 * 
+	 * @throws InterruptedException
+	 *         thrown if the test is interrupted while waiting for the flusher
+	 */
+	@Test
+	public void testPeriodicFlushing() throws InterruptedException {
+
+		final OutputBufferFlusher flusher = new OutputBufferFlusher();
+		flusher.start();
+
+		try {
+			final CountingOutputChannelContext timedChannel = new CountingOutputChannelContext(BUFFER_TIMEOUT);
+			final CountingOutputChannelContext untimedChannel = new CountingOutputChannelContext(-1L);
+
+			flusher.register(timedChannel);
+			flusher.register(untimedChannel);
+
+			assertTrue(timedChannel.waitForFlushRequests(3) >= 3);
+			assertEquals(0, untimedChannel.getNumberOfFlushRequests());
+
+			// After unregistering, the channel must no longer be checked
+			flusher.unregister(timedChannel.getChannelID());
+			Thread.sleep(4L * BUFFER_TIMEOUT);
+			final int numberOfFlushRequests = timedChannel.getNumberOfFlushRequests();
+			Thread.sleep(4L * BUFFER_TIMEOUT);
+			assertEquals(numberOfFlushRequests, timedChannel.getNumberOfFlushRequests());
+
+		} finally {
+			flusher.shutDown();
+			flusher.join();
+		}
+	}
+
+	/**
+	 * Tests that a real output channel with a buffer timeout forwards its partially filled buffers through the
+	 * forwarding chain while a task thread writes records at a low rate, and that the buffers are only ever pushed
+	 * along the chain by the task thread, never by the flusher.
+	 * 
+	 * @throws Exception
+	 *         thrown if an error occurs while writing the records or waiting for the threads
+	 */
+	@Test
+	public void testFlushingOnTaskThread() throws Exception {
+
+		final LocalBufferPool bufferPool = new LocalBufferPool(2, false);
+		final OutputBufferFlusher flusher = new OutputBufferFlusher();
+		flusher.start();
+
+		try {
+			final NetworkOutputChannel<StringRecord> channel = new NetworkOutputChannel<StringRecord>(null, 0,
+				new ChannelID(), new ChannelID(), CompressionLevel.NO_COMPRESSION);
+			channel.setBufferTimeout(BUFFER_TIMEOUT);
+
+			final RecordingForwarder recorder = new RecordingForwarder();
+			final TestOutputChannelBroker broker = new TestOutputChannelBroker(channel, bufferPool, recorder);
+			final ChannelBackedOutputChannelContext context = new ChannelBackedOutputChannelContext(channel,
+				new OutputChannelForwardingChain(broker, recorder));
+			broker.setForwardingChain(context.getForwardingChain());
+			flusher.register(context);
+
+			final Throwable[] error = new Throwable[1];
+			final Thread taskThread = new Thread("Task") {
+
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < NUMBER_OF_RECORDS; ++i) {
+							channel.writeRecord(new StringRecord("Record " + i));
+							Thread.sleep(2L * BUFFER_TIMEOUT);
+						}
+					} catch (Throwable t) {
+						error[0] = t;
+					}
+				}
+			};
+			taskThread.start();
+			taskThread.join();
+			assertNull(error[0]);
+
+			flusher.unregister(channel.getID());
+			channel.flush();
+
+			// The records are tiny, so every buffer but the final one has been forwarded because of the timeout
+			assertTrue(recorder.getNumberOfBuffers() > 1);
+			assertTrue(recorder.getNumberOfBuffers() <= NUMBER_OF_RECORDS + 1);
+			assertTrue(recorder.getNumberOfBytes() < (long) recorder.getNumberOfBuffers() * BUFFER_SIZE);
+			assertFalse("Buffer has been pushed by the flusher thread", recorder.isPushedByFlusher());
+			assertEquals(bufferPool.getRequestedNumberOfBuffers(), bufferPool.getNumberOfAvailableBuffers());
+
+		} finally {
+			flusher.shutDown();
+			flusher.join();
+			bufferPool.destroy();
+		}
+	}
+
+	/**
+	 * Tests that the partially filled buffer of a channel is forwarded after its timeout even if the task thread
+	 * writes a single record and then only waits for input.
+	 * 
+	 * @throws Exception
+	 *         thrown if an error occurs while writing the record or waiting for the threads
+	 */
+	@Test
+	public void testFlushingWhileWaitingForInput() throws Exception {
+
+		final LocalBufferPool bufferPool = new LocalBufferPool(2, false);
+		final OutputBufferFlusher flusher = new OutputBufferFlusher();
+		flusher.start();
+
+		try {
+			final NetworkOutputChannel<StringRecord> channel = new NetworkOutputChannel<StringRecord>(null, 0,
+				new ChannelID(), new ChannelID(), CompressionLevel.NO_COMPRESSION);
+			channel.setBufferTimeout(BUFFER_TIMEOUT);
+
+			final RecordingForwarder recorder = new RecordingForwarder();
+			final TestOutputChannelBroker broker = new TestOutputChannelBroker(channel, bufferPool, recorder);
+			final ChannelBackedOutputChannelContext context = new ChannelBackedOutputChannelContext(channel,
+				new OutputChannelForwardingChain(broker, recorder));
+			broker.setForwardingChain(context.getForwardingChain());
+			flusher.register(context);
+
+			final Throwable[] error = new Throwable[1];
+			final long[] writeTime = new long[1];
+			final Thread taskThread = new Thread("Task") {
+
+				@Override
+				public void run() {
+					try {
+						final RuntimeInputGate<StringRecord> inputGate = new RuntimeInputGate<StringRecord>(null,
+							new GateID(), null, 0, new TaskHeldBackBufferHandler(this, channel));
+
+						writeTime[0] = System.currentTimeMillis();
+						channel.writeRecord(new StringRecord("Record"));
+						inputGate.waitForAnyChannelToBecomeAvailable();
+					} catch (InterruptedException e) {
+						// Expected at the end of the test
+					} catch (Throwable t) {
+						error[0] = t;
+					}
+				}
+			};
+			taskThread.start();
+
+			try {
+				assertEquals(1, recorder.waitForBuffers(1));
+				assertTrue(System.currentTimeMillis() - writeTime[0] >= BUFFER_TIMEOUT);
+				assertFalse("Buffer has been pushed by the flusher thread", recorder.isPushedByFlusher());
+			} finally {
+				taskThread.interrupt();
+				taskThread.join();
+			}
+			assertNull(error[0]);
+
+			flusher.unregister(channel.getID());
+			assertEquals(bufferPool.getRequestedNumberOfBuffers(), bufferPool.getNumberOfAvailableBuffers());
+
+		} finally {
+			flusher.shutDown();
+			flusher.join();
+			bufferPool.destroy();
+		}
+	}
+
+	/**
+	 * Held back buffer handler which, like the runtime environment, only forwards the held back buffer of its
+	 * channel when called by the task thread.
+	 */
+	private static final class TaskHeldBackBufferHandler implements HeldBackBufferHandler {
+
+		private final Thread taskThread;
+
+		private final AbstractByteBufferedOutputChannel<?> channel;
+
+		private TaskHeldBackBufferHandler(final Thread taskThread, final AbstractByteBufferedOutputChannel<?> channel) {
+			this.taskThread = taskThread;
+			this.channel = channel;
+		}
+
+		@Override
+		public long getCheckInterval() {
+			return this.channel.getBufferTimeout() / 2L;
+		}
+
+		@Override
+		public void forwardHeldBackBuffers() throws IOException, InterruptedException {
+
+			if (Thread.currentThread() == this.taskThread) {
+				this.channel.flushIfRequested();
+			}
+		}
+	}
+
+	/**
+	 * Output channel context which registers a real output channel with the flusher.
+	 */
+	private static final class ChannelBackedOutputChannelContext extends AbstractOutputChannelContext {
+
+		private final AbstractByteBufferedOutputChannel<?> channel;
+
+		private final OutputChannelForwardingChain forwardingChain;
+
+		private ChannelBackedOutputChannelContext(final AbstractByteBufferedOutputChannel<?> channel,
+				final OutputChannelForwardingChain forwardingChain) {
+			super(forwardingChain);
+
+			this.channel = channel;
+			this.forwardingChain = forwardingChain;
+		}
+
+		private OutputChannelForwardingChain getForwardingChain() {
+			return this.forwardingChain;
+		}
+
+		@Override
+		public boolean isInputChannel() {
+			return false;
+		}
+
+		@Override
+		public JobID getJobID() {
+			return null;
+		}
+
+		@Override
+		public ChannelID getChannelID() {
+			return this.channel.getID();
+		}
+
+		@Override
+		public ChannelID getConnectedChannelID() {
+			return this.channel.getConnectedChannelID();
+		}
+
+		@Override
+		public ChannelType getType() {
+			return this.channel.getType();
+		}
+
+		@Override
+		public void queueTransferEnvelope(final TransferEnvelope transferEnvelope) {
+		}
+
+		@Override
+		public long getBufferTimeout() {
+			return this.channel.getBufferTimeout();
+		}
+
+		@Override
+		public boolean requestFlushIfTimedOut(final long now) {
+			return this.channel.requestFlushIfTimedOut(now);
+		}
+	}
+
+	/**
+	 * Output channel broker which, like the runtime's broker, wraps the released buffers into transfer envelopes and
+	 * pushes them along the channel's forwarding chain.
+	 */
+	private static final class TestOutputChannelBroker extends AbstractOutputChannelForwarder implements
+			ByteBufferedOutputChannelBroker {
+
+		private final AbstractByteBufferedOutputChannel<?> channel;
+
+		private final LocalBufferPool bufferPool;
+
+		private OutputChannelForwardingChain forwardingChain;
+
+		private int sequenceNumber = 0;
+
+		private TestOutputChannelBroker(final AbstractByteBufferedOutputChannel<?> channel,
+				final LocalBufferPool bufferPool, final AbstractOutputChannelForwarder next) {
+			super(next);
+
+			this.channel = channel;
+			this.bufferPool = bufferPool;
+			channel.setByteBufferedOutputChannelBroker(this);
+		}
+
+		private void setForwardingChain(final OutputChannelForwardingChain forwardingChain) {
+			this.forwardingChain = forwardingChain;
+		}
+
+		@Override
+		public Buffer requestEmptyWriteBuffer() throws InterruptedException, IOException {
+			return this.bufferPool.requestEmptyBufferBlocking(BUFFER_SIZE);
+		}
+
+		@Override
+		public void releaseWriteBuffer(final Buffer buffer) throws IOException, InterruptedException {
+
+			this.forwardingChain.processQueuedEvents();
+
+			buffer.finishWritePhase();
+			final TransferEnvelope transferEnvelope = new TransferEnvelope(this.sequenceNumber++, null,
+				this.channel.getID());
+			transferEnvelope.setBuffer(buffer);
+
+			this.forwardingChain.pushEnvelope(transferEnvelope);
+		}
+
+		@Override
+		public boolean hasDataLeftToTransmit() {
+			return false;
+		}
+
+		@Override
+		public void transferEventToInputChannel(final AbstractEvent event) throws IOException, InterruptedException {
+
+			final TransferEnvelope transferEnvelope = new TransferEnvelope(this.sequenceNumber++, null,
+				this.channel.getID());
+			transferEnvelope.addEvent(event);
+
+			this.forwardingChain.pushEnvelope(transferEnvelope);
+		}
+
+		@Override
+		public Compressor getCompressor() {
+			return null;
+		}
+	}
+
+	/**
+	 * Last forwarder of the chain which records the forwarded buffers and whether the flusher pushed any of them.
+	 */
+	private static final class RecordingForwarder extends AbstractOutputChannelForwarder {
+
+		private boolean pushedByFlusher = false;
+
+		private int numberOfBuffers = 0;
+
+		private long numberOfBytes = 0L;
+
+		private RecordingForwarder() {
+			super(null);
+		}
+
+		@Override
+		public synchronized void push(final TransferEnvelope transferEnvelope) {
+
+			if (Thread.currentThread() instanceof OutputBufferFlusher) {
+				this.pushedByFlusher = true;
+			}
+
+			final Buffer buffer = transferEnvelope.getBuffer();
+			if (buffer != null) {
+				++this.numberOfBuffers;
+				this.numberOfBytes += buffer.size();
+				buffer.recycleBuffer();
+				notifyAll();
+			}
+		}
+
+		private synchronized int waitForBuffers(final int numberOfBuffers) throws InterruptedException {
+
+			final long deadline = System.currentTimeMillis() + MAXIMUM_WAIT_TIME;
+			while (this.numberOfBuffers < numberOfBuffers) {
+				final long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0L) {
+					break;
+				}
+				wait(remaining);
+			}
+
+			return this.numberOfBuffers;
+		}
+
+		private synchronized int getNumberOfBuffers() {
+			return this.numberOfBuffers;
+		}
+
+		private synchronized long getNumberOfBytes() {
+			return this.numberOfBytes;
+		}
+
+		private synchronized boolean isPushedByFlusher() {
+			return this.pushedByFlusher;
+		}
+	}
+}
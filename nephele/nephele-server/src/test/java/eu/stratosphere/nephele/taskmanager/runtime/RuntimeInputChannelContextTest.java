@@ -0,0 +1,81 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * This class contains tests covering the credit announcements of network input channels.
+ */
+public class RuntimeInputChannelContextTest {
+
+	/**
+	 * The credit window used throughout the tests.
+	 */
+	private static final int CREDIT_WINDOW = 8;
+
+	/**
+	 * Checks that the first consumed envelope leads to an announcement covering a full window.
+	 */
+	@Test
+	public void testInitialAnnouncement() {
+
+		assertEquals(CREDIT_WINDOW, RuntimeInputChannelContext.computeCreditToAnnounce(-1, 0, CREDIT_WINDOW));
+	}
+
+	/**
+	 * Checks that new credit is only announced once half of the announced credit has been consumed.
+	 */
+	@Test
+	public void testAnnouncementAfterHalfWindow() {
+
+		int announcedCredit = RuntimeInputChannelContext.computeCreditToAnnounce(-1, 0, CREDIT_WINDOW);
+		int numberOfAnnouncements = 1;
+
+		for (int consumed = 1; consumed <= 4 * CREDIT_WINDOW; ++consumed) {
+
+			final int credit = RuntimeInputChannelContext.computeCreditToAnnounce(announcedCredit, consumed,
+				CREDIT_WINDOW);
+			if (credit != announcedCredit) {
+				assertEquals(consumed + CREDIT_WINDOW, credit);
+				assertEquals(CREDIT_WINDOW / 2, announcedCredit - consumed);
+				announcedCredit = credit;
+				++numberOfAnnouncements;
+			}
+
+			// The sender must always be able to transmit beyond the consumed envelope
+			assertTrue(announcedCredit > consumed);
+		}
+
+		assertEquals(1 + 4 * CREDIT_WINDOW / (CREDIT_WINDOW / 2), numberOfAnnouncements);
+	}
+
+	/**
+	 * Checks that a window of a single buffer announces credit for every consumed envelope.
+	 */
+	@Test
+	public void testSingleBufferWindow() {
+
+		int announcedCredit = -1;
+		for (int consumed = 0; consumed < 10; ++consumed) {
+			announcedCredit = RuntimeInputChannelContext.computeCreditToAnnounce(announcedCredit, consumed, 1);
+			assertEquals(consumed + 1, announcedCredit);
+		}
+	}
+}
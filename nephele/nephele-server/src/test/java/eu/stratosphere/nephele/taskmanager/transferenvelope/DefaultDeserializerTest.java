@@ -18,6 +18,7 @@ package eu.stratosphere.nephele.taskmanager.transferenvelope;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
@@ -28,6 +29,7 @@ import java.util.Queue;
 
 import org.junit.Test;
 
+import eu.stratosphere.nephele.event.task.IntegerTaskEvent;
 import eu.stratosphere.nephele.io.channels.Buffer;
 import eu.stratosphere.nephele.io.channels.BufferFactory;
 import eu.stratosphere.nephele.io.channels.ChannelID;
@@ -363,4 +365,90 @@ public class DefaultDeserializerTest {
 
 		fail("Expected NoBufferAvailableException but has not been thrown");
 	}
+
+	/**
+	 * Tests the deserialization of a series of {@link TransferEnvelope} objects from different channels with compact
+	 * headers and interruptions of the byte stream.
+	 */
+	@Test
+	public void testCompactDeserializationWithInterruptions() {
+
+		final int numberOfEnvelopes = 20;
+		final ChannelID otherChannelID = new ChannelID();
+
+		try {
+
+			// Serialize the envelopes, every third one without a buffer and the fifth one with an event
+			final ChannelAliasDictionary senderDictionary = new ChannelAliasDictionary();
+			final DefaultSerializer ds = new DefaultSerializer(senderDictionary);
+			final InterruptibleByteChannel ibc = new InterruptibleByteChannel(null, new int[] { 1, 2, 5, 17, 40, 41,
+				90, 200 });
+			final Queue<ByteBuffer> bufferPool = new ArrayDeque<ByteBuffer>();
+
+			for (int i = 0; i < numberOfEnvelopes; ++i) {
+
+				final TransferEnvelope te = new TransferEnvelope(i * 1000, JOB_ID, (i % 2 == 0) ? CHANNEL_ID
+					: otherChannelID);
+				if (i % 3 != 0) {
+					final ByteBuffer bb = ByteBuffer.allocate(TEST_BUFFER_CAPACITY);
+					final Buffer buffer = BufferFactory.createFromMemory(bb.capacity(), bb, new BufferPoolConnector(
+						bufferPool));
+					final ByteBuffer srcBuffer = ByteBuffer.allocate(i * 10);
+					for (int j = 0; j < srcBuffer.capacity(); ++j) {
+						srcBuffer.put((byte) j);
+					}
+					srcBuffer.flip();
+					buffer.write(srcBuffer);
+					buffer.finishWritePhase();
+					te.setBuffer(buffer);
+				}
+				if (i == 5) {
+					te.addEvent(new IntegerTaskEvent(i));
+				}
+
+				ds.setTransferEnvelope(te);
+				while (ds.write(ibc))
+					;
+			}
+
+			ibc.switchToReadPhase();
+
+			// Deserialize them again
+			final DefaultDeserializer dd = new DefaultDeserializer(new TestBufferProviderBroker(
+				new TestBufferProvider(numberOfEnvelopes)), new ChannelAliasDictionary());
+
+			for (int i = 0; i < numberOfEnvelopes; ++i) {
+
+				TransferEnvelope te = dd.getFullyDeserializedTransferEnvelope();
+				while (te == null) {
+					dd.read(ibc);
+					te = dd.getFullyDeserializedTransferEnvelope();
+				}
+
+				assertEquals(i * 1000, te.getSequenceNumber());
+				assertEquals(JOB_ID, te.getJobID());
+				assertEquals((i % 2 == 0) ? CHANNEL_ID : otherChannelID, te.getSource());
+
+				if (i % 3 == 0) {
+					assertNull(te.getBuffer());
+				} else {
+					assertNotNull(te.getBuffer());
+					assertEquals(i * 10, te.getBuffer().size());
+				}
+
+				if (i == 5) {
+					assertNotNull(te.getEventList());
+					assertEquals(1, te.getEventList().size());
+					assertEquals(new IntegerTaskEvent(i), te.getEventList().get(0));
+				} else {
+					assertTrue(te.getEventList() == null || te.getEventList().isEmpty());
+				}
+			}
+
+		} catch (IOException ioe) {
+			fail(StringUtils.stringifyException(ioe));
+		} catch (NoBufferAvailableException nbae) {
+			fail(StringUtils.stringifyException(nbae));
+		}
+	}
 }
@@ -0,0 +1,250 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.transferenvelope;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.BufferFactory;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.util.BufferPoolConnector;
+import eu.stratosphere.nephele.util.ServerTestUtils;
+
+/**
+ * This class contains tests covering the gathering serialization of transfer envelopes to a byte stream.
+ */
+public class GatheringSerializerTest {
+
+	/**
+	 * The number of envelopes to serialize.
+	 */
+	private static final int NUMBER_OF_ENVELOPES = 200;
+
+	/**
+	 * The maximum number of envelopes in one batch of the gathering serializer.
+	 */
+	private static final int BATCH_SIZE = 16;
+
+	/**
+	 * The job ID used during the serialization process.
+	 */
+	private final JobID jobID = new JobID();
+
+	/**
+	 * The source channel ID used during the serialization process.
+	 */
+	private final ChannelID sourceChannelID = new ChannelID();
+
+	/**
+	 * Checks that the gathering serializer produces the same byte stream as the {@link DefaultSerializer}.
+	 */
+	@Test
+	public void testGatheringSerialization() {
+
+		try {
+			final List<TransferEnvelope> envelopes = generateEnvelopes();
+
+			// Serialize the envelopes one by one
+			final File defaultFile = createTempFile();
+			final FileChannel defaultChannel = new FileOutputStream(defaultFile).getChannel();
+			final DefaultSerializer defaultSerializer = new DefaultSerializer();
+			for (final TransferEnvelope envelope : envelopes) {
+				defaultSerializer.setTransferEnvelope(envelope);
+				while (defaultSerializer.write(defaultChannel))
+					;
+			}
+			defaultChannel.close();
+
+			// The default serializer consumes the buffers, so regenerate them
+			final List<TransferEnvelope> gatheredEnvelopes = generateEnvelopes();
+
+			// Serialize the envelopes in batches
+			final File gatheringFile = createTempFile();
+			final FileChannel gatheringChannel = new FileOutputStream(gatheringFile).getChannel();
+			final GatheringSerializer gatheringSerializer = new GatheringSerializer(BATCH_SIZE);
+			int next = 0;
+			while (next < gatheredEnvelopes.size()) {
+
+				while (next < gatheredEnvelopes.size() && gatheringSerializer.add(gatheredEnvelopes.get(next))) {
+					++next;
+				}
+
+				int written = 0;
+				while (!gatheringSerializer.isEmpty()) {
+					written += gatheringSerializer.write(gatheringChannel);
+				}
+				assertTrue(written > 0);
+			}
+			gatheringChannel.close();
+
+			assertArrayEquals(readFile(defaultFile), readFile(gatheringFile));
+
+			defaultFile.delete();
+			gatheringFile.delete();
+
+		} catch (IOException ioe) {
+			fail(ioe.getMessage());
+		}
+	}
+
+	/**
+	 * Checks that the gathering serializer and the {@link DefaultSerializer} produce the same compact headers when
+	 * using equally initialized alias dictionaries.
+	 */
+	@Test
+	public void testCompactGatheringSerialization() {
+
+		try {
+			final List<TransferEnvelope> envelopes = generateEnvelopes();
+
+			final ByteArrayOutputStream defaultStream = new ByteArrayOutputStream();
+			final WritableByteChannel defaultChannel = Channels.newChannel(defaultStream);
+			final DefaultSerializer defaultSerializer = new DefaultSerializer(new ChannelAliasDictionary());
+			for (final TransferEnvelope envelope : envelopes) {
+				defaultSerializer.setTransferEnvelope(envelope);
+				while (defaultSerializer.write(defaultChannel))
+					;
+			}
+
+			final List<TransferEnvelope> gatheredEnvelopes = generateEnvelopes();
+
+			final File gatheringFile = createTempFile();
+			final FileChannel gatheringChannel = new FileOutputStream(gatheringFile).getChannel();
+			final GatheringSerializer gatheringSerializer = new GatheringSerializer(BATCH_SIZE,
+				new ChannelAliasDictionary());
+			int next = 0;
+			while (next < gatheredEnvelopes.size()) {
+				while (next < gatheredEnvelopes.size() && gatheringSerializer.add(gatheredEnvelopes.get(next))) {
+					++next;
+				}
+				while (!gatheringSerializer.isEmpty()) {
+					gatheringSerializer.write(gatheringChannel);
+				}
+			}
+			gatheringChannel.close();
+
+			final byte[] compactData = defaultStream.toByteArray();
+			assertArrayEquals(compactData, readFile(gatheringFile));
+			gatheringFile.delete();
+
+		} catch (IOException ioe) {
+			fail(ioe.getMessage());
+		}
+	}
+
+	/**
+	 * Checks that envelopes cannot be added to a full batch or after the batch has started to be written.
+	 */
+	@Test
+	public void testBatchLimits() {
+
+		try {
+			final GatheringSerializer gatheringSerializer = new GatheringSerializer(2);
+
+			assertTrue(gatheringSerializer.add(new TransferEnvelope(0, this.jobID, this.sourceChannelID)));
+			assertTrue(gatheringSerializer.add(new TransferEnvelope(1, this.jobID, this.sourceChannelID)));
+			assertFalse(gatheringSerializer.add(new TransferEnvelope(2, this.jobID, this.sourceChannelID)));
+
+			gatheringSerializer.clear();
+			assertTrue(gatheringSerializer.isEmpty());
+
+			assertTrue(gatheringSerializer.add(new TransferEnvelope(3, this.jobID, this.sourceChannelID)));
+
+			final File file = createTempFile();
+			final FileChannel fileChannel = new FileOutputStream(file).getChannel();
+			assertEquals(1, gatheringSerializer.write(fileChannel));
+			assertTrue(gatheringSerializer.isEmpty());
+			fileChannel.close();
+			file.delete();
+
+		} catch (IOException ioe) {
+			fail(ioe.getMessage());
+		}
+	}
+
+	/**
+	 * Generates a series of envelopes, every third one without a buffer.
+	 * 
+	 * @return the generated envelopes
+	 * @throws IOException
+	 *         thrown if an error occurs while filling the envelopes' buffers
+	 */
+	private List<TransferEnvelope> generateEnvelopes() throws IOException {
+
+		final List<TransferEnvelope> envelopes = new ArrayList<TransferEnvelope>(NUMBER_OF_ENVELOPES);
+		final Deque<ByteBuffer> recycleQueue = new ArrayDeque<ByteBuffer>();
+
+		for (int i = 0; i < NUMBER_OF_ENVELOPES; ++i) {
+
+			final TransferEnvelope transferEnvelope = new TransferEnvelope(i, this.jobID, this.sourceChannelID);
+
+			if (i % 3 != 0) {
+				final Buffer buffer = BufferFactory.createFromMemory(i, ByteBuffer.allocate(i),
+					new BufferPoolConnector(recycleQueue));
+				final ByteBuffer content = ByteBuffer.allocate(i);
+				for (int j = 0; j < i; ++j) {
+					content.put((byte) j);
+				}
+				content.flip();
+				buffer.write(content);
+				buffer.finishWritePhase();
+				transferEnvelope.setBuffer(buffer);
+			}
+
+			envelopes.add(transferEnvelope);
+		}
+
+		return envelopes;
+	}
+
+	private static File createTempFile() {
+		return new File(ServerTestUtils.getTempDir() + File.separator + ServerTestUtils.getRandomFilename());
+	}
+
+	private static byte[] readFile(final File file) throws IOException {
+
+		final byte[] data = new byte[(int) file.length()];
+		final FileInputStream inputStream = new FileInputStream(file);
+		int read = 0;
+		while (read < data.length) {
+			read += inputStream.read(data, read, data.length - read);
+		}
+		inputStream.close();
+
+		return data;
+	}
+}
@@ -30,6 +30,8 @@ import eu.stratosphere.nephele.configuration.Configuration;
 import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.nephele.fs.Path;
 import eu.stratosphere.nephele.jobgraph.JobGraph;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
+import eu.stratosphere.pact.compiler.CompiledPlanCache;
 import eu.stratosphere.pact.compiler.CompilerException;
 import eu.stratosphere.pact.compiler.DataStatistics;
 import eu.stratosphere.pact.compiler.PactCompiler;
@@ -63,6 +65,7 @@ public class Client {
 		nepheleConfig.setInteger(ConfigConstants.JOB_MANAGER_IPC_PORT_KEY, jobManagerAddress.getPort());
 		
 		this.compiler = new PactCompiler(new DataStatistics(), new DefaultCostEstimator(), jobManagerAddress);
+		this.compiler.setPlanCache(createPlanCache());
 	}
 
 	/**
@@ -87,6 +90,28 @@ public class Client {
 
 		final InetSocketAddress jobManagerAddress = new InetSocketAddress(address, port);
 		this.compiler = new PactCompiler(new DataStatistics(), new DefaultCostEstimator(), jobManagerAddress);
+		this.compiler.setPlanCache(createPlanCache());
+	}
+	
+	/**
+	 * Creates the cache for the compiled plans, with the size given in the global configuration.
+	 * 
+	 * @return The plan cache, or <code>null</code>, if the cache is disabled.
+	 */
+	private static CompiledPlanCache createPlanCache() {
+		final int size = GlobalConfiguration.getInteger(PactConfigConstants.COMPILER_PLAN_CACHE_SIZE_KEY,
+			PactConfigConstants.DEFAULT_COMPILER_PLAN_CACHE_SIZE);
+		return size > 0 ? new CompiledPlanCache(size) : null;
+	}
+	
+	/**
+	 * Gets the cache in which this client's compiler keeps the compiled plans. The cache counts its hits and
+	 * misses, such that the frontends can report how often the plan enumeration was skipped.
+	 * 
+	 * @return The plan cache, or <code>null</code>, if the cache is disabled.
+	 */
+	public CompiledPlanCache getPlanCache() {
+		return this.compiler.getPlanCache();
 	}
 
 	
@@ -224,14 +224,14 @@ public class GenericDataSink extends Contract
 	}
 	
 	/**
-	 * Sets the sink to partition the records into ranges over the given ordering.
+	 * Sets the sink to partition the records into ranges over the given ordering. Since no data distribution
+	 * is given, the bucket boundaries are computed at runtime from a sample of the data.
 	 * 
 	 * @param partitionOrdering The record ordering over which to partition in ranges.
 	 */
 	public void setRangePartitioned(Ordering partitionOrdering)
 	{
-		throw new UnsupportedOperationException(
-			"Range partitioning is currently only supported with a user supplied data distribution.");
+		setRangePartitioned(partitionOrdering, null);
 	}
 	
 	/**
@@ -818,6 +818,17 @@ public final class PactRecord implements Value {
 	
 	// --------------------------------------------------------------------------------------------
 	
+	/**
+	 * Gets the length of the record's binary representation, excluding the length prefix that is written
+	 * when the record is serialized. The binary representation is updated first, if necessary.
+	 *
+	 * @return The number of bytes of the record's binary representation.
+	 */
+	public int getBinaryLength() {
+		updateBinaryRepresenation();
+		return this.binaryLen;
+	}
+	
 	/**
 	 * Updates the binary representation of the data, such that it reflects the state of the currently
 	 * stored fields. If the binary representation is already up to date, nothing happens. Otherwise,
@@ -66,6 +66,28 @@ public final class PactConfigConstants {
 	 */
 	public static final String DELIMITED_FORMAT_MAX_SAMPLE_LENGTH_KEY = "pact.delimited-informat.max-sample-len";
 	
+	/**
+	 * The key for the config parameter defining how many compiled plans the client keeps, such that a
+	 * resubmitted program with the same structure and similar input sizes skips the plan enumeration.
+	 * A value of zero disables the cache.
+	 */
+	public static final String COMPILER_PLAN_CACHE_SIZE_KEY = "pact.compiler.plan-cache.size";
+	
+	/**
+	 * The key for the config parameter defining the number of threads with which the compiler enumerates
+	 * the alternative plans of independent sub-plans. A value of zero uses one thread per available processor,
+	 * a value of one enumerates the plan sequentially.
+	 */
+	public static final String COMPILER_ENUMERATION_THREADS_KEY = "pact.compiler.enumeration.threads";
+	
+	/**
+	 * The key for the config parameter defining the factor by which a plan candidate may be more expensive
+	 * than the cheapest candidate of the same node, before it is pruned, even though it produces interesting
+	 * properties. Fractional factors are allowed, e.g. 1.5 keeps candidates that cost up to 50% more than the
+	 * cheapest one. A value of zero keeps all candidates that produce interesting properties.
+	 */
+	public static final String COMPILER_PRUNING_COST_FACTOR_KEY = "pact.compiler.pruning.cost-factor";
+	
 	// ------------------------------- Runtime --------------------------------
 	
 	/**
@@ -80,6 +102,11 @@ public final class PactConfigConstants {
 	 */
 	public static final String DEFAULT_SORT_SPILLING_THRESHOLD_KEY = "pact.runtime.sort-spilling-threshold";
 	
+	/**
+	 * The key for the config parameter defining how many threads of a sorter sort filled buffers concurrently.
+	 */
+	public static final String SORT_PARALLELISM_KEY = "pact.runtime.sort-parallelism";
+	
 	/**
 	 * The key for the config parameter defining the timeout for filesystem stream opening.
 	 * A value of 0 indicates infinite waiting.
@@ -92,6 +119,33 @@ public final class PactConfigConstants {
 	 */
 	public static final String USE_MULTICAST_FOR_BROADCAST = "pact.runtime.multicast-for-broadcast";
 	
+	/**
+	 * The key for the config parameter defining the number of keys that each parallel instance samples
+	 * when the range partition boundaries are computed at runtime.
+	 */
+	public static final String RANGE_PARTITION_SAMPLE_SIZE_KEY = "pact.runtime.range-partition.sample-size";
+	
+	/**
+	 * The key for the config parameter defining the memory (in megabytes) that the range partitioner uses
+	 * to buffer its input while it waits for the partition boundaries.
+	 */
+	public static final String RANGE_PARTITION_BUFFER_MEMORY_KEY = "pact.runtime.range-partition.buffer-memory";
+	
+	/**
+	 * The key for the config parameter defining the directory where the statistics observed on the operators'
+	 * outputs are stored, such that the compiler can use them when the same program is compiled again. If the
+	 * parameter is not set, no statistics are collected. In a distributed setup, the directory must be on a file
+	 * system that is accessible by all task managers and the client.
+	 */
+	public static final String RUNTIME_STATISTICS_DIRECTORY_KEY = "pact.runtime.statistics.dir";
+	
+	/**
+	 * The key for the config parameter defining by which factor the build side of a hash join may exceed the
+	 * compiler's estimate, before the join switches its build side or falls back to a sort-merge strategy at
+	 * runtime. A value of zero or less disables the adaptive join.
+	 */
+	public static final String ADAPTIVE_JOIN_FACTOR_KEY = "pact.runtime.adaptive-join.factor";
+	
 	// ----------------------------- Web Frontend -----------------------------
 
 	/**
@@ -172,6 +226,21 @@ public final class PactConfigConstants {
 	 * The default maximum sample length before sampling is aborted (2 MiBytes).
 	 */
 	public static final int DEFAULT_DELIMITED_FORMAT_MAX_SAMPLE_LEN = 2 * 1024 * 1024;
+	
+	/**
+	 * The default number of compiled plans kept by the client.
+	 */
+	public static final int DEFAULT_COMPILER_PLAN_CACHE_SIZE = 32;
+	
+	/**
+	 * The default number of plan enumeration threads (one per available processor).
+	 */
+	public static final int DEFAULT_COMPILER_ENUMERATION_THREADS = 0;
+	
+	/**
+	 * The default pruning cost factor (candidates with interesting properties are never pruned by costs).
+	 */
+	public static final float DEFAULT_COMPILER_PRUNING_COST_FACTOR = 0.0f;
 
 	// ------------------------------- Runtime --------------------------------
 	
@@ -185,6 +254,11 @@ public final class PactConfigConstants {
 	 */
 	public static final float DEFAULT_SORT_SPILLING_THRESHOLD = 0.8f;
 	
+	/**
+	 * The default number of threads that sort the buffers of a sorter concurrently.
+	 */
+	public static final int DEFAULT_SORT_PARALLELISM = 1;
+	
 	/**
 	 * The default timeout for filesystem stream opening: infinite (means max long milliseconds).
 	 */
@@ -196,6 +270,22 @@ public final class PactConfigConstants {
 	 */
 	public static final boolean DEFAULT_USE_MULTICAST_FOR_BROADCAST = false;
 	
+	/**
+	 * The default number of keys sampled per parallel instance for the range partition boundaries.
+	 */
+	public static final int DEFAULT_RANGE_PARTITION_SAMPLE_SIZE = 1000;
+	
+	/**
+	 * The default memory (in megabytes) for the input buffer of the range partitioner.
+	 */
+	public static final int DEFAULT_RANGE_PARTITION_BUFFER_MEMORY = 8;
+	
+	/**
+	 * The default factor by which the build side of a hash join may exceed its estimate. The default value disables
+	 * the adaptive join.
+	 */
+	public static final float DEFAULT_ADAPTIVE_JOIN_FACTOR = 0.0f;
+	
 	// ----------------------------- Web Frontend -----------------------------
 
 	/**
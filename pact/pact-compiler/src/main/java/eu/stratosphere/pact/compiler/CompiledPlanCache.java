@@ -0,0 +1,359 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import eu.stratosphere.nephele.util.StringUtils;
+import eu.stratosphere.pact.common.contract.CoGroupContract;
+import eu.stratosphere.pact.common.contract.CompilerHints;
+import eu.stratosphere.pact.common.contract.DataDistribution;
+import eu.stratosphere.pact.common.contract.GenericDataSink;
+import eu.stratosphere.pact.common.contract.RecordContract;
+import eu.stratosphere.pact.common.contract.ReduceContract;
+import eu.stratosphere.pact.common.stubs.StubAnnotation.ConstantFields;
+import eu.stratosphere.pact.common.stubs.StubAnnotation.ConstantFieldsExcept;
+import eu.stratosphere.pact.common.stubs.StubAnnotation.ConstantFieldsFirst;
+import eu.stratosphere.pact.common.stubs.StubAnnotation.ConstantFieldsFirstExcept;
+import eu.stratosphere.pact.common.stubs.StubAnnotation.ConstantFieldsSecond;
+import eu.stratosphere.pact.common.stubs.StubAnnotation.ConstantFieldsSecondExcept;
+import eu.stratosphere.pact.common.stubs.aggregators.AggregatorWithName;
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.util.FieldSet;
+import eu.stratosphere.pact.common.util.Visitor;
+import eu.stratosphere.pact.compiler.plan.IterationNode;
+import eu.stratosphere.pact.compiler.plan.OptimizerNode;
+import eu.stratosphere.pact.compiler.plan.PactConnection;
+import eu.stratosphere.pact.compiler.plan.candidate.OptimizedPlan;
+import eu.stratosphere.pact.generic.contract.AbstractPact;
+import eu.stratosphere.pact.generic.contract.AggregatorRegistry;
+import eu.stratosphere.pact.generic.contract.BulkIteration;
+import eu.stratosphere.pact.generic.contract.Contract;
+import eu.stratosphere.pact.generic.contract.GenericCoGroupContract;
+import eu.stratosphere.pact.generic.contract.GenericReduceContract;
+import eu.stratosphere.pact.generic.contract.WorksetIteration;
+
+/**
+ * A cache for the plans chosen by the compiler. The plans are keyed by a fingerprint of the optimizer's plan
+ * representation, which covers the contracts with their user code, parameters, keys, orders, constant field
+ * annotations, compiler hints, and iteration settings, the structure in which they are connected, the degrees of
+ * parallelism, the estimated sizes rounded to powers of two, and the resources of the system. A program that is
+ * resubmitted with the same structure and similar input sizes hence finds its previously chosen plan and skips the
+ * plan enumeration.
+ * <p>
+ * The cache holds a limited number of plans and evicts the least recently used one when it is full.
+ */
+public class CompiledPlanCache {
+	
+	private final Map<String, OptimizedPlan> plans;
+	
+	private long numHits;
+	
+	private long numMisses;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Creates a new cache that holds at most the given number of plans.
+	 * 
+	 * @param capacity The maximal number of plans in the cache.
+	 */
+	public CompiledPlanCache(final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity of the plan cache must be at least one.");
+		}
+		
+		this.plans = new LinkedHashMap<String, OptimizedPlan>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, OptimizedPlan> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Gets the plan that was cached under the given fingerprint and counts the access as a hit or a miss.
+	 * 
+	 * @param fingerprint The fingerprint of the plan.
+	 * @return The cached plan, or <code>null</code>, if no plan was cached under the fingerprint.
+	 */
+	public synchronized OptimizedPlan get(String fingerprint) {
+		final OptimizedPlan plan = this.plans.get(fingerprint);
+		if (plan == null) {
+			this.numMisses++;
+		} else {
+			this.numHits++;
+		}
+		return plan;
+	}
+	
+	/**
+	 * Caches the given plan under the given fingerprint.
+	 * 
+	 * @param fingerprint The fingerprint of the plan.
+	 * @param plan The plan to cache.
+	 */
+	public synchronized void put(String fingerprint, OptimizedPlan plan) {
+		this.plans.put(fingerprint, plan);
+	}
+	
+	/**
+	 * Removes all plans from the cache. The hit and miss counters are kept.
+	 */
+	public synchronized void clear() {
+		this.plans.clear();
+	}
+	
+	public synchronized int size() {
+		return this.plans.size();
+	}
+	
+	public synchronized long getNumHits() {
+		return this.numHits;
+	}
+	
+	public synchronized long getNumMisses() {
+		return this.numMisses;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Computes the fingerprint of the optimizer's plan representation below the given root node. The node
+	 * estimates must have been computed before.
+	 * 
+	 * @param root The root of the optimizer's plan representation.
+	 * @param settings A description of the settings that influence the compilation besides the plan itself,
+	 *                 such as the available memory and instances.
+	 * @return The fingerprint.
+	 */
+	public static String computeFingerprint(OptimizerNode root, String settings) {
+		final FingerprintVisitor visitor = new FingerprintVisitor(settings);
+		root.accept(visitor);
+		
+		try {
+			final MessageDigest md = MessageDigest.getInstance("MD5");
+			return StringUtils.byteToHexString(md.digest(visitor.builder.toString().getBytes("UTF-8")));
+		} catch (Exception ex) {
+			throw new CompilerException("Could not compute the fingerprint of the plan.", ex);
+		}
+	}
+	
+	/**
+	 * Rounds the given estimate to the exponent of the next power of two, such that small variations in the
+	 * input sizes do not change the fingerprint.
+	 */
+	private static int roundEstimate(long estimate) {
+		return estimate <= 0 ? -1 : 64 - Long.numberOfLeadingZeros(estimate);
+	}
+	
+	/**
+	 * Describes the properties of the contract that the job graph generator translates, but that are not part of
+	 * the contract's parameters and hence not of the node's signature.
+	 */
+	private static void describeContract(Contract contract, StringBuilder bld) {
+		if (contract.getUserCodeClass() != null) {
+			describeConstantFields(contract, bld);
+		}
+		if (contract.getCompilerHints() != null) {
+			describeCompilerHints(contract.getCompilerHints(), bld);
+		}
+		if (contract instanceof AbstractPact) {
+			final AbstractPact<?> pact = (AbstractPact<?>) contract;
+			for (int i = 0; i < pact.getNumberOfInputs(); i++) {
+				bld.append("|keys").append(i).append('=').append(Arrays.toString(pact.getKeyColumns(i)));
+			}
+		}
+		if (contract instanceof RecordContract) {
+			final Class<? extends Key>[] keyClasses = ((RecordContract) contract).getKeyClasses();
+			bld.append("|keyclasses=");
+			for (int i = 0; keyClasses != null && i < keyClasses.length; i++) {
+				bld.append(keyClasses[i].getName()).append(',');
+			}
+		}
+		if (contract instanceof GenericReduceContract) {
+			bld.append("|combinable=").append(((GenericReduceContract<?>) contract).isCombinable());
+		}
+		if (contract instanceof ReduceContract) {
+			bld.append("|grouporder=").append(((ReduceContract) contract).getGroupOrder());
+		}
+		if (contract instanceof GenericCoGroupContract) {
+			final GenericCoGroupContract<?> coGroup = (GenericCoGroupContract<?>) contract;
+			bld.append("|combinable=").append(coGroup.isCombinableFirst()).append(',').append(coGroup.isCombinableSecond());
+		}
+		if (contract instanceof CoGroupContract) {
+			final CoGroupContract coGroup = (CoGroupContract) contract;
+			bld.append("|grouporder=").append(coGroup.getGroupOrderForInputOne()).append(',')
+				.append(coGroup.getGroupOrderForInputTwo());
+		}
+		if (contract instanceof GenericDataSink) {
+			final GenericDataSink sink = (GenericDataSink) contract;
+			bld.append("|localorder=").append(sink.getLocalOrder());
+			bld.append("|partitionorder=").append(sink.getPartitionOrdering());
+			final DataDistribution distribution = sink.getDataDistribution();
+			if (distribution != null) {
+				bld.append("|distribution=").append(distribution.getClass().getName()).append(':');
+				try {
+					final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					distribution.write(new DataOutputStream(bytes));
+					bld.append(StringUtils.byteToHexString(bytes.toByteArray()));
+				} catch (IOException ioex) {
+					throw new CompilerException("Could not describe the data distribution of sink " + contract.getName(), ioex);
+				}
+			}
+		}
+		if (contract instanceof BulkIteration) {
+			final BulkIteration iteration = (BulkIteration) contract;
+			bld.append("|iterations=").append(iteration.getMaximumNumberOfIterations());
+			describeAggregators(iteration.getAggregators(), bld);
+		}
+		if (contract instanceof WorksetIteration) {
+			final WorksetIteration iteration = (WorksetIteration) contract;
+			bld.append("|iterations=").append(iteration.getMaximumNumberOfIterations());
+			bld.append("|solutionsetkeys=").append(Arrays.toString(iteration.getSolutionSetKeyFields()));
+			describeAggregators(iteration.getAggregators(), bld);
+		}
+	}
+	
+	/**
+	 * Describes the constant field annotations of the contract's user code, from which the optimizer nodes derive
+	 * the properties that are preserved by the user function.
+	 */
+	private static void describeConstantFields(Contract contract, StringBuilder bld) {
+		final ConstantFields constant = contract.getUserCodeAnnotation(ConstantFields.class);
+		if (constant != null) {
+			bld.append("|constant=").append(Arrays.toString(constant.value()));
+		}
+		final ConstantFieldsExcept notConstant = contract.getUserCodeAnnotation(ConstantFieldsExcept.class);
+		if (notConstant != null) {
+			bld.append("|notconstant=").append(Arrays.toString(notConstant.value()));
+		}
+		final ConstantFieldsFirst constantFirst = contract.getUserCodeAnnotation(ConstantFieldsFirst.class);
+		if (constantFirst != null) {
+			bld.append("|constant1=").append(Arrays.toString(constantFirst.value()));
+		}
+		final ConstantFieldsFirstExcept notConstantFirst = contract.getUserCodeAnnotation(ConstantFieldsFirstExcept.class);
+		if (notConstantFirst != null) {
+			bld.append("|notconstant1=").append(Arrays.toString(notConstantFirst.value()));
+		}
+		final ConstantFieldsSecond constantSecond = contract.getUserCodeAnnotation(ConstantFieldsSecond.class);
+		if (constantSecond != null) {
+			bld.append("|constant2=").append(Arrays.toString(constantSecond.value()));
+		}
+		final ConstantFieldsSecondExcept notConstantSecond = contract.getUserCodeAnnotation(ConstantFieldsSecondExcept.class);
+		if (notConstantSecond != null) {
+			bld.append("|notconstant2=").append(Arrays.toString(notConstantSecond.value()));
+		}
+	}
+	
+	/**
+	 * Describes the compiler hints of a contract. The hints are described completely, because the unique fields
+	 * and key cardinalities influence the plan choice beyond the rounded size estimates.
+	 */
+	private static void describeCompilerHints(CompilerHints hints, StringBuilder bld) {
+		bld.append("|hints=").append(hints.getAvgRecordsEmittedPerStubCall()).append(',').append(hints.getAvgBytesPerRecord());
+		
+		final Set<String> distinctCounts = new TreeSet<String>();
+		for (Map.Entry<FieldSet, Long> entry : hints.getDistinctCounts().entrySet()) {
+			distinctCounts.add(entry.getKey() + ":" + entry.getValue());
+		}
+		bld.append("|distinct=").append(distinctCounts);
+		
+		final Set<String> recordsPerDistinct = new TreeSet<String>();
+		for (Map.Entry<FieldSet, Float> entry : hints.getAvgNumRecordsPerDistinctFields().entrySet()) {
+			recordsPerDistinct.add(entry.getKey() + ":" + entry.getValue());
+		}
+		bld.append("|perdistinct=").append(recordsPerDistinct);
+		
+		final Set<String> uniqueFields = new TreeSet<String>();
+		if (hints.getUniqueFields() != null) {
+			for (FieldSet fields : hints.getUniqueFields()) {
+				uniqueFields.add(fields.toString());
+			}
+		}
+		bld.append("|unique=").append(uniqueFields);
+	}
+	
+	private static void describeAggregators(AggregatorRegistry aggregators, StringBuilder bld) {
+		bld.append("|aggregators=");
+		for (AggregatorWithName<?> aggregator : aggregators.getAllRegisteredAggregators()) {
+			bld.append(aggregator.getName()).append(':').append(aggregator.getAggregator().getName()).append(',');
+		}
+		bld.append("|convergence=").append(aggregators.getConvergenceCriterionAggregatorName()).append(':')
+			.append(aggregators.getConvergenceCriterion() == null ? null : aggregators.getConvergenceCriterion().getName());
+	}
+	
+	/**
+	 * Visitor that describes every node by its signature, its parallelism, and its rounded estimates. Each node
+	 * gets a number after its predecessors are described, and refers to its predecessors by their numbers, such
+	 * that a shared sub-plan is distinguished from two equal sub-plans. The step functions of iterations are
+	 * described right before the iteration node.
+	 */
+	private static final class FingerprintVisitor implements Visitor<OptimizerNode> {
+		
+		private final StringBuilder builder = new StringBuilder(1024);
+		
+		private final Map<OptimizerNode, Integer> numbers = new IdentityHashMap<OptimizerNode, Integer>();
+		
+		private final Map<OptimizerNode, Boolean> visited = new IdentityHashMap<OptimizerNode, Boolean>();
+		
+		private FingerprintVisitor(String settings) {
+			this.builder.append(settings).append('\n');
+		}
+
+		@Override
+		public boolean preVisit(OptimizerNode visitable) {
+			return this.visited.put(visitable, Boolean.TRUE) == null;
+		}
+
+		@Override
+		public void postVisit(OptimizerNode visitable) {
+			if (visitable instanceof IterationNode) {
+				((IterationNode) visitable).acceptForStepFunction(this);
+			}
+			
+			final StringBuilder bld = this.builder;
+			bld.append(visitable.getSignature());
+			if (visitable.getPactContract() != null) {
+				describeContract(visitable.getPactContract(), bld);
+			}
+			bld.append('|').append(visitable.getDegreeOfParallelism());
+			bld.append('|').append(visitable.getSubtasksPerInstance());
+			bld.append('|').append(roundEstimate(visitable.getEstimatedOutputSize()));
+			bld.append('|').append(roundEstimate(visitable.getEstimatedNumRecords()));
+			for (PactConnection conn : visitable.getIncomingConnections()) {
+				final Integer predecessor = conn.getSource() == null ? null : this.numbers.get(conn.getSource());
+				bld.append('|').append(predecessor == null ? -1 : predecessor.intValue());
+			}
+			bld.append('\n');
+			
+			this.numbers.put(visitable, this.numbers.size());
+		}
+	}
+}
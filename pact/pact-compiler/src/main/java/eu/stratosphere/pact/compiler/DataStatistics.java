@@ -15,27 +15,61 @@
 
 package eu.stratosphere.pact.compiler;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.pact.common.io.statistics.BaseStatistics;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
+import eu.stratosphere.pact.runtime.statistics.OperatorStatistics;
+import eu.stratosphere.pact.runtime.statistics.RuntimeStatisticsStore;
 
 /**
  * The collection of access methods that can be used to retrieve statistical information about the
- * data processed in a job. Currently this method acts as an entry point only for obtaining cached
- * statistics.
+ * data processed in a job. The statistics are cached statistics about the inputs, and the statistics
+ * that were observed on the outputs of the operators when the same program was run before.
  */
 public class DataStatistics {
 	
+	private static final Log LOG = LogFactory.getLog(DataStatistics.class);
+	
 	private final Map<String, BaseStatistics> baseStatisticsCache;
 	
+	private final RuntimeStatisticsStore runtimeStatistics;
+	
 	// --------------------------------------------------------------------------------------------
 	
 	/**
-	 * Creates a new statistics object, with an empty cache. 
+	 * Creates a new statistics object, with an empty cache. The runtime statistics are read from the
+	 * directory given in the global configuration, if any.
 	 */
 	public DataStatistics() {
+		this(GlobalConfiguration.getString(PactConfigConstants.RUNTIME_STATISTICS_DIRECTORY_KEY, null));
+	}
+	
+	/**
+	 * Creates a new statistics object, with an empty cache, that reads the runtime statistics from the
+	 * given directory.
+	 * 
+	 * @param runtimeStatisticsDirectory The directory of the runtime statistics store, or <code>null</code>,
+	 *                                   if no runtime statistics should be used.
+	 */
+	public DataStatistics(String runtimeStatisticsDirectory) {
 		this.baseStatisticsCache = new HashMap<String, BaseStatistics>();
+		
+		RuntimeStatisticsStore store = null;
+		if (runtimeStatisticsDirectory != null) {
+			try {
+				store = new RuntimeStatisticsStore(runtimeStatisticsDirectory);
+			} catch (IOException ioex) {
+				LOG.warn("Runtime statistics are not used, the statistics store could not be accessed: " + ioex.getMessage());
+			}
+		}
+		this.runtimeStatistics = store;
 	}
 	
 	// --------------------------------------------------------------------------------------------
@@ -63,4 +97,25 @@ public class DataStatistics {
 			this.baseStatisticsCache.put(identifyer, statistics);
 		}
 	}
+	
+	/**
+	 * Gets the statistics that were observed on the output of the operator with the given signature, when
+	 * the program was last run.
+	 * 
+	 * @param signature The signature of the operator.
+	 * @return The observed statistics, or <code>null</code>, if none are available.
+	 */
+	public OperatorStatistics getRuntimeStatistics(String signature) {
+		if (this.runtimeStatistics == null) {
+			return null;
+		}
+		try {
+			return this.runtimeStatistics.read(signature);
+		} catch (IOException ioex) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Could not read the runtime statistics for operator " + signature + ": " + ioex.getMessage());
+			}
+			return null;
+		}
+	}
 }
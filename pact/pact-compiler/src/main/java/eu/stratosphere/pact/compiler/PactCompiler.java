@@ -90,6 +90,7 @@ import eu.stratosphere.pact.generic.contract.GenericMatchContract;
 import eu.stratosphere.pact.generic.contract.GenericReduceContract;
 import eu.stratosphere.pact.generic.contract.WorksetIteration;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategyType;
+import eu.stratosphere.pact.runtime.statistics.OperatorStatistics;
 import eu.stratosphere.pact.runtime.task.DriverStrategy;
 import eu.stratosphere.pact.runtime.task.util.LocalStrategy;
 
@@ -206,6 +207,15 @@ public class PactCompiler {
 	 * @see #HINT_LOCAL_STRATEGY
 	 */
 	public static final String HINT_LOCAL_STRATEGY_COMBINING_SORT = "LOCAL_STRATEGY_COMBINING_SORT";
+
+	/**
+	 * Value for the local strategy compiler hint that enforces a <b>hash based</b> aggregation.
+	 * For example, a <i>Reduce</i> contract will combine the data in a hash table rather than sorting it.
+	 * The hint requires the reduce function to be combinable.
+	 *
+	 * @see #HINT_LOCAL_STRATEGY
+	 */
+	public static final String HINT_LOCAL_STRATEGY_HASH_AGGREGATION = "LOCAL_STRATEGY_HASH_AGGREGATION";
 	
 	/**
 	 * Value for the local strategy compiler hint that enforces a <b>sort merge based</b> local strategy on both
@@ -351,6 +361,26 @@ public class PactCompiler {
 	 * The maximum number of subtasks that should share an instance.
 	 */
 	private int maxIntraNodeParallelism;
+	
+	/**
+	 * The cache of previously compiled plans, or <code>null</code>, if plans are not cached.
+	 */
+	private CompiledPlanCache planCache;
+	
+	/**
+	 * The number of threads with which the plan alternatives are enumerated.
+	 */
+	private int numEnumerationThreads;
+	
+	/**
+	 * The factor by which candidates may be more expensive than the cheapest candidate before they are pruned.
+	 */
+	private float pruningCostFactor;
+	
+	/**
+	 * The memory (in bytes) that each range partitioner with sampled boundaries uses to buffer its input.
+	 */
+	private long rangePartitionBufferMemory;
 
 	// ------------------------------------------------------------------------
 	// Constructor & Setup
@@ -455,6 +485,33 @@ public class PactCompiler {
 			maxInNodePar = PactConfigConstants.DEFAULT_MAX_INTRA_NODE_PARALLELIZATION_DEGREE;
 		}
 		this.maxIntraNodeParallelism = maxInNodePar;
+		
+		// determine the number of threads for the plan enumeration
+		int enumThreads = config.getInteger(PactConfigConstants.COMPILER_ENUMERATION_THREADS_KEY,
+			PactConfigConstants.DEFAULT_COMPILER_ENUMERATION_THREADS);
+		if (enumThreads < 0) {
+			LOG.error("Invalid number of plan enumeration threads: " + enumThreads + ". Ignoring parameter.");
+			enumThreads = PactConfigConstants.DEFAULT_COMPILER_ENUMERATION_THREADS;
+		}
+		this.numEnumerationThreads = enumThreads == 0 ? Runtime.getRuntime().availableProcessors() : enumThreads;
+		
+		// determine the factor for the cost based pruning of candidates
+		float pruningFactor = config.getFloat(PactConfigConstants.COMPILER_PRUNING_COST_FACTOR_KEY,
+			PactConfigConstants.DEFAULT_COMPILER_PRUNING_COST_FACTOR);
+		if (pruningFactor < 0) {
+			LOG.error("Invalid pruning cost factor: " + pruningFactor + ". Ignoring parameter.");
+			pruningFactor = PactConfigConstants.DEFAULT_COMPILER_PRUNING_COST_FACTOR;
+		}
+		this.pruningCostFactor = pruningFactor;
+		
+		// determine the memory that the range partitioners with sampled boundaries take from the budget
+		int rangeBufferMemory = config.getInteger(PactConfigConstants.RANGE_PARTITION_BUFFER_MEMORY_KEY,
+			PactConfigConstants.DEFAULT_RANGE_PARTITION_BUFFER_MEMORY);
+		if (rangeBufferMemory < 1) {
+			LOG.error("Invalid range partition buffer memory: " + rangeBufferMemory + ". Ignoring parameter.");
+			rangeBufferMemory = PactConfigConstants.DEFAULT_RANGE_PARTITION_BUFFER_MEMORY;
+		}
+		this.rangePartitionBufferMemory = ((long) rangeBufferMemory) << 20;
 
 		// assign the connection to the job-manager
 		if (jobManagerConnection != null) {
@@ -517,6 +574,61 @@ public class PactCompiler {
 		}
 	}
 	
+	public CompiledPlanCache getPlanCache() {
+		return this.planCache;
+	}
+	
+	/**
+	 * Sets the cache in which the compiler looks up previously compiled plans before it enumerates the plan
+	 * alternatives, and stores the plans it compiles.
+	 * 
+	 * @param planCache The plan cache, or <code>null</code>, to disable the caching.
+	 */
+	public void setPlanCache(CompiledPlanCache planCache) {
+		this.planCache = planCache;
+	}
+	
+	public int getNumEnumerationThreads() {
+		return this.numEnumerationThreads;
+	}
+	
+	public void setNumEnumerationThreads(int numEnumerationThreads) {
+		if (numEnumerationThreads > 0) {
+			this.numEnumerationThreads = numEnumerationThreads;
+		} else {
+			throw new IllegalArgumentException();
+		}
+	}
+	
+	public float getPruningCostFactor() {
+		return this.pruningCostFactor;
+	}
+	
+	/**
+	 * Sets the factor by which a plan candidate may be more expensive than the cheapest candidate of the
+	 * same node, before it is pruned, even if it is the cheapest one to produce some interesting properties.
+	 * 
+	 * @param pruningCostFactor The pruning cost factor, or zero, to prune only candidates that are dominated
+	 *                          with respect to both their costs and properties.
+	 */
+	public void setPruningCostFactor(float pruningCostFactor) {
+		if (pruningCostFactor >= 0) {
+			this.pruningCostFactor = pruningCostFactor;
+		} else {
+			throw new IllegalArgumentException();
+		}
+	}
+	
+	/**
+	 * Creates the enumerator for the plan alternatives of a single compilation, configured with this
+	 * compiler's number of enumeration threads and pruning cost factor.
+	 * 
+	 * @return The plan enumerator.
+	 */
+	PlanEnumerator createPlanEnumerator() {
+		return new PlanEnumerator(this.costEstimator, this.numEnumerationThreads, this.pruningCostFactor);
+	}
+	
 	// ------------------------------------------------------------------------
 	//                               Compilation
 	// ------------------------------------------------------------------------
@@ -682,6 +794,29 @@ public class PactCompiler {
 		} else {
 			throw new CompilerException("Bug: The optimizer plan representation has no sinks.");
 		}
+		
+		// if the same plan was compiled before, with similar estimates and on similar resources, we reuse the
+		// plan that was chosen then and skip the enumeration of the alternatives
+		final CompiledPlanCache cache = this.planCache;
+		String fingerprint = null;
+		if (cache != null) {
+			fingerprint = CompiledPlanCache.computeFingerprint(rootNode, pactPlan.getJobName() + '|' + instanceName +
+				'|' + (memoryPerInstance >>> 20) + '|' + maxMachinesJob + '|' +
+				defaultParallelism + '|' + this.maxIntraNodeParallelism + '|' + this.pruningCostFactor + '|' +
+				postPasser.getClass().getName());
+			
+			final OptimizedPlan cached = cache.get(fingerprint);
+			if (cached != null) {
+				if (LOG.isInfoEnabled()) {
+					LOG.info("Reusing the cached plan for PACT program '" + pactPlan.getJobName() + "' (plan cache hits: " +
+						cache.getNumHits() + ", misses: " + cache.getNumMisses() + ").");
+				}
+				return cached;
+			} else if (LOG.isInfoEnabled()) {
+				LOG.info("No cached plan for PACT program '" + pactPlan.getJobName() + "' (plan cache hits: " +
+					cache.getNumHits() + ", misses: " + cache.getNumMisses() + ").");
+			}
+		}
 
 		// now that we have all nodes created and recorded which ones consume memory, tell the nodes their minimal
 		// guaranteed memory, for further cost estimations. we assume an equal distribution of memory among consumer tasks
@@ -709,7 +844,15 @@ public class PactCompiler {
 		}
 
 		// the final step is now to generate the actual plan alternatives
-		List<PlanNode> bestPlan = rootNode.getAlternativePlans(this.costEstimator);
+		PlanEnumerator enumerator = createPlanEnumerator();
+		List<PlanNode> bestPlan = enumerator.enumerate(rootNode);
+		
+		if (LOG.isInfoEnabled()) {
+			LOG.info("Enumerated " + enumerator.getNumberOfEnumeratedCandidates() + " plan candidates for " +
+				enumerator.getNumberOfNodes() + " nodes of PACT program '" + pactPlan.getJobName() + "' in " +
+				enumerator.getEnumerationTime() + " msecs, using up to " + this.numEnumerationThreads +
+				" threads. Retained " + enumerator.getNumberOfRetainedCandidates() + " candidates after pruning.");
+		}
 
 		if (bestPlan.size() != 1) {
 			throw new CompilerException("Error in compiler: more than one best plan was created!");
@@ -727,7 +870,8 @@ public class PactCompiler {
 		}
 
 		// finalize the plan
-		OptimizedPlan plan = new PlanFinalizer().createFinalPlan(bestPlanSinks, pactPlan.getJobName(), pactPlan, memoryPerInstance);
+		OptimizedPlan plan = new PlanFinalizer(this.rangePartitionBufferMemory).createFinalPlan(bestPlanSinks, pactPlan.getJobName(),
+			pactPlan, memoryPerInstance);
 		plan.setInstanceTypeName(instanceName);
 		
 		// swap the binary unions for n-ary unions. this changes no strategies or memory consumers whatsoever, so
@@ -737,6 +881,9 @@ public class PactCompiler {
 		// post pass the plan. this is the phase where the serialization and comparator code is set
 		postPasser.postPass(plan);
 		
+		if (fingerprint != null) {
+			cache.put(fingerprint, plan);
+		}
 		return plan;
 	}
 
@@ -973,6 +1120,14 @@ public class PactCompiler {
 			// now compute the output estimates
 			if (this.computeEstimates) {
 				n.computeOutputEstimates(this.statistics);
+				
+				// statistics observed in earlier runs of the program take precedence over the estimates
+				if (this.statistics != null && !(n instanceof DataSinkNode)) {
+					final OperatorStatistics observed = this.statistics.getRuntimeStatistics(n.getSignature());
+					if (observed != null) {
+						n.applyRuntimeStatistics(observed);
+					}
+				}
 			}
 			
 			// if the node represents a bulk iteration, we recursively translate the data flow now
@@ -1255,11 +1410,19 @@ public class PactCompiler {
 		private long memoryPerInstance; // the amount of memory per instance
 		
 		private int memoryConsumerWeights; // a counter of all memory consumers
+		
+		private final long rangePartitionBufferMemory; // the buffer memory of a range partitioner with sampled boundaries
+		
+		private long rangePartitionMemoryPerInstance; // the buffer memory of all range partitioners per instance
 
 		/**
 		 * Creates a new plan finalizer.
+		 * 
+		 * @param rangePartitionBufferMemory The memory that each range partitioner with sampled boundaries
+		 *                                   uses to buffer its input.
 		 */
-		private PlanFinalizer() {
+		private PlanFinalizer(long rangePartitionBufferMemory) {
+			this.rangePartitionBufferMemory = rangePartitionBufferMemory;
 			this.allNodes = new HashSet<PlanNode>();
 			this.sources = new ArrayList<SourcePlanNode>();
 			this.sinks = new ArrayList<SinkPlanNode>();
@@ -1272,11 +1435,26 @@ public class PactCompiler {
 			
 			this.memoryPerInstance = memPerInstance;
 			this.memoryConsumerWeights = 0;
+			this.rangePartitionMemoryPerInstance = 0;
 			
 			// traverse the graph
 			for (SinkPlanNode node : sinks) {
 				node.accept(this);
 			}
+			
+			// the range partitioners with sampled boundaries are not part of the plan, but take their buffers
+			// from the same memory as the plan's memory consumers
+			if (this.rangePartitionMemoryPerInstance > 0) {
+				if (this.rangePartitionMemoryPerInstance >= this.memoryPerInstance) {
+					throw new CompilerException("The range partitioners require " + (this.rangePartitionMemoryPerInstance >> 20) +
+						" MiBytes of memory per instance, but only " + (this.memoryPerInstance >> 20) + " MiBytes are available.");
+				}
+				this.memoryPerInstance -= this.rangePartitionMemoryPerInstance;
+				
+				if (LOG.isDebugEnabled())
+					LOG.debug("Reserved " + (this.rangePartitionMemoryPerInstance >> 20) +
+						" MiBytes memory per instance for range partitioners.");
+			}
 
 			// assign the memory to each node
 			if (this.memoryConsumerWeights > 0) {
@@ -1393,6 +1571,11 @@ public class PactCompiler {
 				if (c.getTempMode() != TempMode.NONE) {
 					this.memoryConsumerWeights++;
 				}
+				if (c.isRangePartitionedWithSampledBoundaries()) {
+					// the partitioner runs with the parallelism of the channel's source
+					c.setMemoryGlobalStrategy(this.rangePartitionBufferMemory);
+					this.rangePartitionMemoryPerInstance += this.rangePartitionBufferMemory * c.getSource().getSubtasksPerInstance();
+				}
 			}
 			
 			// pass the visitor to the iteraton's step function
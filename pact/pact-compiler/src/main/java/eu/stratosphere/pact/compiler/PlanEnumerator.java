@@ -0,0 +1,313 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import eu.stratosphere.pact.common.util.Visitor;
+import eu.stratosphere.pact.compiler.costs.CostEstimator;
+import eu.stratosphere.pact.compiler.plan.IterationNode;
+import eu.stratosphere.pact.compiler.plan.OptimizerNode;
+import eu.stratosphere.pact.compiler.plan.PactConnection;
+import eu.stratosphere.pact.compiler.plan.candidate.PlanNode;
+
+/**
+ * Enumerates the alternative plans for an optimizer plan, using multiple threads for independent sub-plans.
+ * <p>
+ * The nodes are grouped into levels by their longest distance from a data source. The nodes of one level
+ * depend only on nodes of lower levels, so their candidates can be enumerated concurrently once the lower
+ * levels are complete. Each node builds its candidates on top of the cached candidates of its predecessors,
+ * so sub-plans that are shared by multiple consumers are enumerated only once.
+ * <p>
+ * Iteration nodes are the exception: they enumerate their step function once for each candidate of their
+ * input, and reset the cached candidates of the step function's nodes before each round. Because the step
+ * function may consume nodes from outside the iteration, an iteration node is enumerated exclusively, after
+ * the other nodes of its level.
+ */
+public class PlanEnumerator {
+	
+	private final CostEstimator estimator;
+	
+	private final int numThreads;
+	
+	private final float pruningCostFactor;
+	
+	private int numNodes;
+	
+	private int numEnumeratedCandidates;
+	
+	private int numRetainedCandidates;
+	
+	private long enumerationTime;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Creates a new enumerator.
+	 * 
+	 * @param estimator The cost estimator used to cost the plan candidates.
+	 * @param numThreads The maximal number of threads to enumerate with. One enumerates sequentially.
+	 * @param pruningCostFactor The factor by which a candidate may be more expensive than the cheapest candidate
+	 *                          of its node, before it is pruned. Zero disables the cost based pruning.
+	 */
+	public PlanEnumerator(CostEstimator estimator, int numThreads, float pruningCostFactor) {
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("The number of enumeration threads must be at least one.");
+		}
+		if (pruningCostFactor < 0) {
+			throw new IllegalArgumentException("The pruning cost factor must not be negative.");
+		}
+		
+		this.estimator = estimator;
+		this.numThreads = numThreads;
+		this.pruningCostFactor = pruningCostFactor;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Enumerates the plan candidates for the plan with the given root node and returns the best candidates
+	 * for the root. The interesting properties and the open branches must have been computed before.
+	 * 
+	 * @param rootNode The root node of the optimizer plan.
+	 * @return The plan candidates for the root node.
+	 */
+	public List<PlanNode> enumerate(OptimizerNode rootNode) {
+		final long startTime = System.nanoTime();
+		
+		final LevelAssigner assigner = new LevelAssigner(this.pruningCostFactor);
+		rootNode.accept(assigner);
+		
+		int maxWidth = 1;
+		for (List<OptimizerNode> level : assigner.levels) {
+			maxWidth = Math.max(maxWidth, level.size());
+		}
+		
+		final int threads = Math.min(this.numThreads, maxWidth);
+		final ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads, new EnumeratorThreadFactory()) : null;
+		
+		final List<PlanNode> rootCandidates;
+		try {
+			for (List<OptimizerNode> level : assigner.levels) {
+				enumerateLevel(level, executor);
+			}
+			rootCandidates = rootNode.getAlternativePlans(this.estimator);
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+		
+		this.enumerationTime = (System.nanoTime() - startTime) / 1000000;
+		this.numNodes = assigner.nodeLevels.size();
+		
+		this.numRetainedCandidates = 0;
+		for (OptimizerNode node : assigner.nodeLevels.keySet()) {
+			this.numRetainedCandidates += node.getAlternativePlans(this.estimator).size();
+		}
+		
+		final CandidateCounter counter = new CandidateCounter();
+		rootNode.accept(counter);
+		this.numEnumeratedCandidates = counter.numEnumeratedCandidates;
+		
+		return rootCandidates;
+	}
+	
+	private void enumerateLevel(List<OptimizerNode> level, ExecutorService executor) {
+		final List<OptimizerNode> concurrent = new ArrayList<OptimizerNode>(level.size());
+		final List<OptimizerNode> exclusive = new ArrayList<OptimizerNode>(2);
+		for (OptimizerNode node : level) {
+			if (node instanceof IterationNode) {
+				exclusive.add(node);
+			} else {
+				concurrent.add(node);
+			}
+		}
+		
+		if (executor == null || concurrent.size() < 2) {
+			for (OptimizerNode node : concurrent) {
+				node.getAlternativePlans(this.estimator);
+			}
+		} else {
+			final List<Future<List<PlanNode>>> futures = new ArrayList<Future<List<PlanNode>>>(concurrent.size());
+			for (final OptimizerNode node : concurrent) {
+				futures.add(executor.submit(new Callable<List<PlanNode>>() {
+					@Override
+					public List<PlanNode> call() {
+						return node.getAlternativePlans(PlanEnumerator.this.estimator);
+					}
+				}));
+			}
+			
+			try {
+				for (Future<List<PlanNode>> future : futures) {
+					future.get();
+				}
+			} catch (InterruptedException iex) {
+				Thread.currentThread().interrupt();
+				throw new CompilerException("The plan enumeration was interrupted.");
+			} catch (ExecutionException eex) {
+				final Throwable cause = eex.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				} else if (cause instanceof Error) {
+					throw (Error) cause;
+				} else {
+					throw new CompilerException("The plan enumeration failed: " + cause.getMessage(), cause);
+				}
+			}
+		}
+		
+		for (OptimizerNode node : exclusive) {
+			node.getAlternativePlans(this.estimator);
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Gets the number of optimizer nodes outside of step functions, for which candidates were enumerated.
+	 * 
+	 * @return The number of enumerated nodes.
+	 */
+	public int getNumberOfNodes() {
+		return this.numNodes;
+	}
+	
+	/**
+	 * Gets the number of plan candidates that were created during the last enumeration, before pruning,
+	 * including the repeated enumerations of step functions.
+	 * 
+	 * @return The number of enumerated plan candidates.
+	 */
+	public int getNumberOfEnumeratedCandidates() {
+		return this.numEnumeratedCandidates;
+	}
+	
+	/**
+	 * Gets the number of plan candidates that remained after pruning, summed over the nodes outside of
+	 * step functions.
+	 * 
+	 * @return The number of retained plan candidates.
+	 */
+	public int getNumberOfRetainedCandidates() {
+		return this.numRetainedCandidates;
+	}
+	
+	/**
+	 * Gets the time that the last enumeration took, in milliseconds.
+	 * 
+	 * @return The enumeration time in milliseconds.
+	 */
+	public long getEnumerationTime() {
+		return this.enumerationTime;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Assigns each node outside of step functions to a level one higher than the highest level of its
+	 * predecessors, and sets the pruning cost factor on these nodes. The factor is not applied to the nodes of
+	 * step functions, because the iterations discard those step function candidates that do not meet the
+	 * properties requested for the next partial solution.
+	 */
+	private static final class LevelAssigner implements Visitor<OptimizerNode> {
+		
+		private final Map<OptimizerNode, Integer> nodeLevels = new HashMap<OptimizerNode, Integer>();
+		
+		private final List<List<OptimizerNode>> levels = new ArrayList<List<OptimizerNode>>();
+		
+		private final float pruningCostFactor;
+		
+		private LevelAssigner(float pruningCostFactor) {
+			this.pruningCostFactor = pruningCostFactor;
+		}
+
+		@Override
+		public boolean preVisit(OptimizerNode visitable) {
+			return !this.nodeLevels.containsKey(visitable);
+		}
+
+		@Override
+		public void postVisit(OptimizerNode visitable) {
+			int level = 0;
+			for (PactConnection conn : visitable.getIncomingConnections()) {
+				final Integer predLevel = this.nodeLevels.get(conn.getSource());
+				if (predLevel != null) {
+					level = Math.max(level, predLevel.intValue() + 1);
+				}
+			}
+			
+			this.nodeLevels.put(visitable, Integer.valueOf(level));
+			while (this.levels.size() <= level) {
+				this.levels.add(new ArrayList<OptimizerNode>());
+			}
+			this.levels.get(level).add(visitable);
+			
+			visitable.setPruningCostFactor(this.pruningCostFactor);
+		}
+	}
+	
+	/**
+	 * Sums up the number of enumerated candidates over all nodes, including the nodes of step functions.
+	 */
+	private static final class CandidateCounter implements Visitor<OptimizerNode> {
+		
+		private final Map<OptimizerNode, Boolean> seen = new HashMap<OptimizerNode, Boolean>();
+		
+		private int numEnumeratedCandidates;
+
+		@Override
+		public boolean preVisit(OptimizerNode visitable) {
+			if (this.seen.put(visitable, Boolean.TRUE) != null) {
+				return false;
+			}
+			
+			this.numEnumeratedCandidates += visitable.getNumberOfEnumeratedCandidates();
+			if (visitable instanceof IterationNode) {
+				((IterationNode) visitable).acceptForStepFunction(this);
+			}
+			return true;
+		}
+
+		@Override
+		public void postVisit(OptimizerNode visitable) {}
+	}
+	
+	/**
+	 * Creates daemon threads, such that a client does not hang on left-over enumeration threads.
+	 */
+	private static final class EnumeratorThreadFactory implements ThreadFactory {
+		
+		private int count;
+
+		@Override
+		public Thread newThread(Runnable r) {
+			final Thread t = new Thread(r, "Plan Enumerator " + (++this.count));
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
@@ -19,6 +19,7 @@ import java.util.Iterator;
 
 import eu.stratosphere.pact.compiler.CompilerException;
 import eu.stratosphere.pact.compiler.plan.EstimateProvider;
+import eu.stratosphere.pact.compiler.plan.SingleInputNode;
 import eu.stratosphere.pact.compiler.plan.TempMode;
 import eu.stratosphere.pact.compiler.plan.candidate.Channel;
 import eu.stratosphere.pact.compiler.plan.candidate.PlanNode;
@@ -47,6 +48,8 @@ public abstract class CostEstimator {
 	public abstract void addLocalMergeCost(EstimateProvider estimates1, EstimateProvider estimates2, long memorySize, Costs costs);
 	
 	public abstract void addHybridHashCosts(EstimateProvider buildSide, EstimateProvider probeSide, long memorySize, Costs costs);
+	
+	public abstract void addHashAggregationCosts(EstimateProvider input, EstimateProvider aggregated, long memorySize, Costs costs);
 
 	public abstract void addStreamedNestedLoopsCosts(EstimateProvider outerSide, EstimateProvider innerSide, long bufferSize, Costs costs);
 
@@ -155,10 +158,16 @@ public abstract class CostEstimator {
 		case NONE:
 		case MAP:
 		case PARTIAL_GROUP:
+		case HASH_PARTIAL_GROUP:
 		case SORTED_GROUP:
 		case CO_GROUP:
 		case UNION:
 			break;
+		case HASH_GROUP:
+			// estimate on the node's original input, as a preceding combiner changes the channel's estimates
+			final SingleInputNode aggregator = (SingleInputNode) n.getOptimizerNode();
+			addHashAggregationCosts(aggregator.getPredecessorNode(), aggregator, availableMemory, driverCosts);
+			break;
 		case MERGE:
 			addLocalMergeCost(firstInput, secondInput, availableMemory, driverCosts);
 			break;
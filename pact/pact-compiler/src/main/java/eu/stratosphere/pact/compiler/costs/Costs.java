@@ -380,6 +380,15 @@ public class Costs implements Comparable<Costs>, Cloneable {
 		this.heuristicDiskCost = this.heuristicDiskCost < 0 ? -1 : this.heuristicDiskCost * factor;
 		this.heuristicCpuCost = this.heuristicCpuCost < 0 ? -1 : this.heuristicCpuCost * factor;
 	}
+	
+	public void multiplyWith(float factor) {
+		this.networkCost = this.networkCost < 0 ? -1 : (long) (this.networkCost * (double) factor);
+		this.diskCost = this.diskCost < 0 ? -1 : (long) (this.diskCost * (double) factor);
+		this.cpuCost = this.cpuCost < 0 ? -1 : (long) (this.cpuCost * (double) factor);
+		this.heuristicNetworkCost = this.heuristicNetworkCost < 0 ? -1 : (long) (this.heuristicNetworkCost * (double) factor);
+		this.heuristicDiskCost = this.heuristicDiskCost < 0 ? -1 : (long) (this.heuristicDiskCost * (double) factor);
+		this.heuristicCpuCost = this.heuristicCpuCost < 0 ? -1 : (long) (this.heuristicCpuCost * (double) factor);
+	}
 
 	// --------------------------------------------------------------------------------------------
 
@@ -46,6 +46,11 @@ public class DefaultCostEstimator extends CostEstimator {
 	
 	private static final float SORTING_CPU_FACTOR = 7;
 	
+	/**
+	 * The factor by which the aggregated data grows in a hash table, accounting for slots and load factor.
+	 */
+	private static final float HASH_TABLE_SPACE_FACTOR = 2;
+	
 	
 	// --------------------------------------------------------------------------------------------
 	// Shipping Strategy Cost
@@ -158,6 +163,34 @@ public class DefaultCostEstimator extends CostEstimator {
 		costs.addHeuristicCpuCost((long) (HEURISTIC_COST_BASE * HASHING_CPU_FACTOR));
 	}
 
+	@Override
+	public void addHashAggregationCosts(EstimateProvider input, EstimateProvider aggregated, long availableMemory, Costs costs) {
+		final long is = input.getEstimatedOutputSize();
+		final long ir = input.getEstimatedNumRecords();
+		final long ar = aggregated.getEstimatedNumRecords();
+		
+		// the table holds one record per key. assume the aggregated records to be as wide as the input records
+		final long as = (is > 0 && ir > 0 && ar > 0) ? (long) (ar * (is / (double) ir)) : aggregated.getEstimatedOutputSize();
+		
+		if (is > 0 && as > 0 && availableMemory > 0) {
+			if (as * HASH_TABLE_SPACE_FACTOR <= availableMemory) {
+				// all keys fit into the table, the input is aggregated without any I/O
+				costs.addCpuCost((long) (is * HASHING_CPU_FACTOR));
+			} else {
+				// the table is spilled and the partitions are read back
+				costs.addDiskCost(2 * is);
+				costs.addCpuCost((long) (2 * is * HASHING_CPU_FACTOR));
+			}
+		} else {
+			costs.setDiskCost(Costs.UNKNOWN);
+			costs.setCpuCost(Costs.UNKNOWN);
+		}
+		// without estimates, the hash aggregation is assumed to be more expensive than sorting,
+		// because it only pays off if the keys fit into memory
+		costs.addHeuristicDiskCost(2 * HEURISTIC_COST_BASE);
+		costs.addHeuristicCpuCost((long) (HEURISTIC_COST_BASE * (SORTING_CPU_FACTOR + HASHING_CPU_FACTOR)));
+	}
+
 	@Override
 	public void addStreamedNestedLoopsCosts(EstimateProvider outerSide, EstimateProvider innerSide, long bufferSize, Costs costs) {
 		long is = innerSide.getEstimatedOutputSize(); 
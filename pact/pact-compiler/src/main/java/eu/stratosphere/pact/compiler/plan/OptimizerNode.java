@@ -15,6 +15,7 @@
 
 package eu.stratosphere.pact.compiler.plan;
 
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -24,8 +25,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.Map.Entry;
 
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.util.StringUtils;
 import eu.stratosphere.pact.common.contract.CompilerHints;
 import eu.stratosphere.pact.common.util.FieldSet;
 import eu.stratosphere.pact.common.util.Visitable;
@@ -33,6 +37,7 @@ import eu.stratosphere.pact.common.util.Visitor;
 import eu.stratosphere.pact.compiler.CompilerException;
 import eu.stratosphere.pact.compiler.DataStatistics;
 import eu.stratosphere.pact.compiler.costs.CostEstimator;
+import eu.stratosphere.pact.compiler.costs.Costs;
 import eu.stratosphere.pact.compiler.dataproperties.InterestingProperties;
 import eu.stratosphere.pact.compiler.dataproperties.RequestedGlobalProperties;
 import eu.stratosphere.pact.compiler.dataproperties.RequestedLocalProperties;
@@ -42,6 +47,7 @@ import eu.stratosphere.pact.compiler.plandump.DumpableNode;
 import eu.stratosphere.pact.generic.contract.AbstractPact;
 import eu.stratosphere.pact.generic.contract.Contract;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategyType;
+import eu.stratosphere.pact.runtime.statistics.OperatorStatistics;
 
 /**
  * This class represents a node in the optimizer's internal representation of the PACT plan. It contains
@@ -95,6 +101,12 @@ public abstract class OptimizerNode implements Visitable<OptimizerNode>, Estimat
 	protected boolean onDynamicPath;
 	
 	protected List<PlanNode> cachedPlans;	// cache candidates, because the may be accessed repeatedly
+	
+	protected float pruningCostFactor;	// factor by which candidates may exceed the cheapest one's costs (0 = any)
+	
+	protected int numEnumeratedCandidates;	// the number of candidates created for this node before pruning
+	
+	private String signature;				// the stable signature, under which runtime statistics are stored
 
 	// ------------------------------------------------------------------------
 	//                      Constructor / Setup
@@ -662,6 +674,68 @@ public abstract class OptimizerNode implements Visitable<OptimizerNode>, Estimat
 		}
 	}
 	
+	// ------------------------------------------------------------------------
+	//                           Runtime Statistics
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Gets the signature of this node. The signature identifies the node across compilations of the same
+	 * program. It is derived from the contract type, the user code class, the name and the parameters of the
+	 * contract, and the signatures of the node's inputs. The statistics observed on the node's output when the
+	 * program was run are stored under this signature.
+	 * 
+	 * @return The signature of this node.
+	 */
+	public String getSignature() {
+		if (this.signature == null) {
+			final StringBuilder bld = new StringBuilder(256);
+			final Contract contract = getPactContract();
+			bld.append(contract.getClass().getName()).append('|');
+			bld.append(contract.getUserCodeClass() == null ? "" : contract.getUserCodeClass().getName()).append('|');
+			bld.append(contract.getName()).append('|');
+			
+			final Configuration parameters = contract.getParameters();
+			for (String key : new TreeSet<String>(parameters.keySet())) {
+				bld.append(key).append('=').append(parameters.getString(key, null)).append(';');
+			}
+			for (PactConnection conn : getIncomingConnections()) {
+				bld.append('|').append(conn.getSource() == null ? "" : conn.getSource().getSignature());
+			}
+			
+			try {
+				final MessageDigest md = MessageDigest.getInstance("MD5");
+				this.signature = StringUtils.byteToHexString(md.digest(bld.toString().getBytes("UTF-8")));
+			} catch (Exception ex) {
+				throw new CompilerException("Could not compute the signature of node " + getName() + ".", ex);
+			}
+		}
+		return this.signature;
+	}
+	
+	/**
+	 * Replaces the estimates of this node with the statistics that were observed on the node's output when
+	 * the program was run before. The observed number of records, output size, and distinct keys override the
+	 * values derived from the compiler hints.
+	 * 
+	 * @param stats The statistics observed on the node's output.
+	 */
+	public void applyRuntimeStatistics(OperatorStatistics stats) {
+		this.estimatedNumRecords = stats.getNumRecords() >= 1 ? stats.getNumRecords() : 1;
+		this.estimatedOutputSize = stats.getNumBytes() >= 1 ? stats.getNumBytes() : 1;
+		
+		for (int i = 0; i < stats.getNumKeyFieldSets(); i++) {
+			final long distinct = stats.getDistinctKeyEstimate(i);
+			this.estimatedCardinality.put(new FieldSet(stats.getKeyFields(i)), distinct >= 1 ? distinct : 1);
+		}
+		
+		// the remaining key-card estimates may be no larger than the observed number of rows
+		for (Entry<FieldSet, Long> cardinality : this.estimatedCardinality.entrySet()) {
+			if (cardinality.getValue() > this.estimatedNumRecords) {
+				cardinality.setValue(this.estimatedNumRecords);
+			}
+		}
+	}
+	
 	/**
 	 * Computes the width of output records
 	 * 
@@ -834,6 +908,8 @@ public abstract class OptimizerNode implements Visitable<OptimizerNode>, Estimat
 		if (plans.isEmpty()) {
 			throw new CompilerException("No plan meeting the requirements could be created @ " + this + ". Most likely reason: Too restrictive plan hints.");
 		}
+		this.numEnumeratedCandidates += plans.size();
+		
 		// shortcut for the simple case
 		if (plans.size() == 1) {
 			return;
@@ -993,14 +1069,23 @@ public abstract class OptimizerNode implements Visitable<OptimizerNode>, Estimat
 			cheapest.setPruningMarker(); // remember that that plan is in the set
 		}
 		
-		// skip the top down delta cost check for now (TODO: implement this)
+		// instead of the top down delta cost check (TODO: implement this), we optionally treat all candidates
+		// as dominated that are more than the given factor more expensive than the cheapest candidate
+		final Costs maxCosts;
+		if (this.pruningCostFactor > 0 && cheapest != null) {
+			maxCosts = cheapest.getCumulativeCosts().clone();
+			maxCosts.multiplyWith(this.pruningCostFactor);
+		} else {
+			maxCosts = null;
+		}
+		
 		// add all others, which are optimal for some interesting properties
 		for (int i = 0; i < gps.length; i++) {
 			if (toKeep[i] != null) {
 				final PlanNode[] localMatches = toKeep[i];
 				for (int k = 0; k < localMatches.length; k++) {
 					final PlanNode n = localMatches[k];
-					if (n != null && !n.isPruneMarkerSet()) {
+					if (n != null && !n.isPruneMarkerSet() && isWithinCosts(n, maxCosts)) {
 						n.setPruningMarker();
 						plans.add(n);
 					}
@@ -1008,7 +1093,7 @@ public abstract class OptimizerNode implements Visitable<OptimizerNode>, Estimat
 			}
 			if (cheapestForGlobal[i] != null) {
 				final PlanNode n = cheapestForGlobal[i];
-				if (!n.isPruneMarkerSet()) {
+				if (!n.isPruneMarkerSet() && isWithinCosts(n, maxCosts)) {
 					n.setPruningMarker();
 					plans.add(n);
 				}
@@ -1016,6 +1101,32 @@ public abstract class OptimizerNode implements Visitable<OptimizerNode>, Estimat
 		}
 	}
 	
+	private static boolean isWithinCosts(PlanNode candidate, Costs maxCosts) {
+		return maxCosts == null || candidate.getCumulativeCosts().compareTo(maxCosts) <= 0;
+	}
+	
+	/**
+	 * Sets the factor by which the costs of a plan candidate may exceed the costs of the cheapest candidate
+	 * for this node, before the candidate is pruned, even if it is the cheapest candidate for some interesting
+	 * properties. A factor of zero prunes candidates only if they are dominated with respect to their
+	 * properties.
+	 * 
+	 * @param pruningCostFactor The pruning cost factor.
+	 */
+	public void setPruningCostFactor(float pruningCostFactor) {
+		this.pruningCostFactor = pruningCostFactor;
+	}
+	
+	/**
+	 * Gets the number of plan candidates that were created for this node, before they were pruned. If the
+	 * candidates were enumerated multiple times (as for nodes in a step function), the number is accumulated.
+	 * 
+	 * @return The number of enumerated plan candidates.
+	 */
+	public int getNumberOfEnumeratedCandidates() {
+		return this.numEnumeratedCandidates;
+	}
+	
 	
 	// --------------------------------------------------------------------------------------------
 	//                       Handling of branches
@@ -15,6 +15,7 @@
 
 package eu.stratosphere.pact.compiler.plan;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -27,6 +28,7 @@ import eu.stratosphere.pact.compiler.PactCompiler;
 import eu.stratosphere.pact.compiler.operators.AllGroupProperties;
 import eu.stratosphere.pact.compiler.operators.AllGroupWithPartialPreGroupProperties;
 import eu.stratosphere.pact.compiler.operators.GroupProperties;
+import eu.stratosphere.pact.compiler.operators.GroupWithHashAggregationProperties;
 import eu.stratosphere.pact.compiler.operators.GroupWithPartialPreGroupProperties;
 import eu.stratosphere.pact.compiler.operators.OperatorDescriptorSingle;
 import eu.stratosphere.pact.generic.contract.GenericReduceContract;
@@ -95,27 +97,52 @@ public class ReduceNode extends SingleInputNode
 		final String localStrategy = conf.getString(PactCompiler.HINT_LOCAL_STRATEGY, null);
 
 		final boolean useCombiner;
+		final boolean useHashAggregation;
 		if (localStrategy != null) {
 			if (PactCompiler.HINT_LOCAL_STRATEGY_SORT.equals(localStrategy)) {
 				useCombiner = false;
+				useHashAggregation = false;
 			} else if (PactCompiler.HINT_LOCAL_STRATEGY_COMBINING_SORT.equals(localStrategy)) {
 				if (!isCombineable()) {
 					PactCompiler.LOG.warn("Strategy hint for Reduce Pact '" + getPactContract().getName() + 
 						"' desires combinable reduce, but user function is not marked combinable.");
 				}
 				useCombiner = true;
+				useHashAggregation = false;
+			} else if (PactCompiler.HINT_LOCAL_STRATEGY_HASH_AGGREGATION.equals(localStrategy)) {
+				useCombiner = isCombineable();
+				useHashAggregation = useCombiner && this.keys != null;
+				if (!useHashAggregation) {
+					PactCompiler.LOG.warn("Strategy hint for Reduce Pact '" + getPactContract().getName() + 
+						"' desires hash aggregation, but user function is not marked combinable or has no key. " +
+						"Falling back to sort-based grouping.");
+				}
 			} else {
 				throw new CompilerException("Invalid local strategy hint for match contract: " + localStrategy);
 			}
+			
+			if (useHashAggregation) {
+				return Collections.<OperatorDescriptorSingle>singletonList(new GroupWithHashAggregationProperties(this.keys));
+			}
 		} else {
 			useCombiner = isCombineable();
+			// without a hint, the hash aggregation competes with the sort-based grouping, and the cost
+			// model picks it when the estimated number of keys fits into memory
+			useHashAggregation = useCombiner && this.keys != null;
 		}
 		
 		OperatorDescriptorSingle props = useCombiner ?
 			(this.keys == null ? new AllGroupWithPartialPreGroupProperties() : new GroupWithPartialPreGroupProperties(this.keys)) :
 			(this.keys == null ? new AllGroupProperties() : new GroupProperties(this.keys));
-				
-		return Collections.singletonList(props);
+		
+		if (useHashAggregation) {
+			List<OperatorDescriptorSingle> list = new ArrayList<OperatorDescriptorSingle>(2);
+			list.add(props);
+			list.add(new GroupWithHashAggregationProperties(this.keys));
+			return list;
+		} else {
+			return Collections.singletonList(props);
+		}
 	}
 	
 	// --------------------------------------------------------------------------------------------
@@ -143,6 +143,23 @@ public class Channel implements EstimateProvider, Cloneable, DumpableConnection<
 		return this.shipSortOrder;
 	}
 	
+	/**
+	 * Checks whether this channel range partitions its data without a data distribution given in the program.
+	 * The partition boundaries of such a channel are sampled at runtime, for which the partitioner buffers
+	 * its input in the memory assigned to the channel's global strategy.
+	 * 
+	 * @return True, if the channel range partitions its data with sampled boundaries, false otherwise.
+	 */
+	public boolean isRangePartitionedWithSampledBoundaries() {
+		if (this.shipStrategy != ShipStrategyType.PARTITION_RANGE) {
+			return false;
+		}
+		if (this.target instanceof SinkPlanNode) {
+			return ((SinkPlanNode) this.target).getSinkNode().getPactContract().getDataDistribution() == null;
+		}
+		return true;
+	}
+	
 	public void setLocalStrategy(LocalStrategy strategy) {
 		setLocalStrategy(strategy, null, null);
 	}
@@ -235,7 +235,8 @@ public class PlanJSONDumpGenerator {
 		
 		String name = n.getName();
 		if (name.equals("Reduce") && (node instanceof SingleInputPlanNode) && 
-				((SingleInputPlanNode) node).getDriverStrategy() == DriverStrategy.PARTIAL_GROUP) {
+				(((SingleInputPlanNode) node).getDriverStrategy() == DriverStrategy.PARTIAL_GROUP ||
+				((SingleInputPlanNode) node).getDriverStrategy() == DriverStrategy.HASH_PARTIAL_GROUP)) {
 			name = "Combine";
 		}
 		
@@ -408,6 +409,12 @@ public class PlanJSONDumpGenerator {
 			case SORTED_GROUP:
 				locString = "Ordered Grouping";
 				break;
+			case HASH_PARTIAL_GROUP:
+				locString = "Hash Partial Aggregation";
+				break;
+			case HASH_GROUP:
+				locString = "Hash Aggregation";
+				break;
 			case HYBRIDHASH_BUILD_FIRST:
 				locString = "Hybrid Hash (build: " + child1name + ")";
 				break;
@@ -39,9 +39,11 @@ import eu.stratosphere.nephele.jobgraph.JobInputVertex;
 import eu.stratosphere.nephele.jobgraph.JobOutputVertex;
 import eu.stratosphere.nephele.jobgraph.JobTaskVertex;
 import eu.stratosphere.nephele.template.AbstractInputTask;
+import eu.stratosphere.pact.common.contract.DataDistribution;
 import eu.stratosphere.pact.common.stubs.aggregators.AggregatorWithName;
 import eu.stratosphere.pact.common.stubs.aggregators.ConvergenceCriterion;
 import eu.stratosphere.pact.common.stubs.aggregators.LongSumAggregator;
+import eu.stratosphere.pact.common.type.PactRecord;
 import eu.stratosphere.pact.common.util.PactConfigConstants;
 import eu.stratosphere.pact.common.util.Visitor;
 import eu.stratosphere.pact.compiler.CompilerException;
@@ -79,9 +81,13 @@ import eu.stratosphere.pact.runtime.task.JoinWithSolutionSetCoGroupDriver.Soluti
 import eu.stratosphere.pact.runtime.task.JoinWithSolutionSetMatchDriver.SolutionSetFirstJoinDriver;
 import eu.stratosphere.pact.runtime.task.MatchDriver;
 import eu.stratosphere.pact.runtime.task.NoOpDriver;
+import eu.stratosphere.pact.runtime.task.RangeBoundaryDriver;
+import eu.stratosphere.pact.runtime.task.RangePartitionTask;
+import eu.stratosphere.pact.runtime.task.RangeSampleDriver;
 import eu.stratosphere.pact.runtime.task.RegularPactTask;
 import eu.stratosphere.pact.runtime.task.JoinWithSolutionSetMatchDriver.SolutionSetSecondJoinDriver;
 import eu.stratosphere.pact.runtime.task.chaining.ChainedDriver;
+import eu.stratosphere.pact.runtime.task.chaining.ChainedRangeSampleDriver;
 import eu.stratosphere.pact.runtime.task.util.LocalStrategy;
 import eu.stratosphere.pact.runtime.task.util.TaskConfig;
 
@@ -123,6 +129,12 @@ public class NepheleJobGraphGenerator implements Visitor<PlanNode> {
 	
 	private final float defaultSortSpillingThreshold;
 	
+	private final int rangePartitionSampleSize;
+	
+	private final String runtimeStatisticsDirectory;
+	
+	private final float adaptiveJoinFactor;
+	
 	private int iterationIdEnumerator = 1;
 	
 	private IterationPlanNode currentIteration;	// hack: as long as no nesting is possible, remember the enclosing iteration
@@ -135,6 +147,10 @@ public class NepheleJobGraphGenerator implements Visitor<PlanNode> {
 	public NepheleJobGraphGenerator() {
 		this.defaultMaxFan = PactConfigConstants.DEFAULT_SPILLING_MAX_FAN;
 		this.defaultSortSpillingThreshold = PactConfigConstants.DEFAULT_SORT_SPILLING_THRESHOLD;
+		this.rangePartitionSampleSize = PactConfigConstants.DEFAULT_RANGE_PARTITION_SAMPLE_SIZE;
+		this.runtimeStatisticsDirectory = GlobalConfiguration.getString(PactConfigConstants.RUNTIME_STATISTICS_DIRECTORY_KEY, null);
+		this.adaptiveJoinFactor = GlobalConfiguration.getConfiguration().getFloat(
+			PactConfigConstants.ADAPTIVE_JOIN_FACTOR_KEY, PactConfigConstants.DEFAULT_ADAPTIVE_JOIN_FACTOR);
 	}
 	
 	public NepheleJobGraphGenerator(Configuration config) {
@@ -142,6 +158,11 @@ public class NepheleJobGraphGenerator implements Visitor<PlanNode> {
 				PactConfigConstants.DEFAULT_SPILLING_MAX_FAN);
 		this.defaultSortSpillingThreshold = config.getFloat(PactConfigConstants.DEFAULT_SORT_SPILLING_THRESHOLD_KEY,
 			PactConfigConstants.DEFAULT_SORT_SPILLING_THRESHOLD);
+		this.rangePartitionSampleSize = config.getInteger(PactConfigConstants.RANGE_PARTITION_SAMPLE_SIZE_KEY,
+			PactConfigConstants.DEFAULT_RANGE_PARTITION_SAMPLE_SIZE);
+		this.runtimeStatisticsDirectory = config.getString(PactConfigConstants.RUNTIME_STATISTICS_DIRECTORY_KEY, null);
+		this.adaptiveJoinFactor = config.getFloat(PactConfigConstants.ADAPTIVE_JOIN_FACTOR_KEY,
+			PactConfigConstants.DEFAULT_ADAPTIVE_JOIN_FACTOR);
 	}
 
 	/**
@@ -750,6 +771,7 @@ public class NepheleJobGraphGenerator implements Visitor<PlanNode> {
 		
 		// assign memory, file-handles, etc.
 		assignDriverResources(node, config);
+		assignOutputStatistics(node, config);
 		return vertex;
 	}
 
@@ -779,6 +801,8 @@ public class NepheleJobGraphGenerator implements Visitor<PlanNode> {
 		
 		// assign memory, file-handles, etc.
 		assignDriverResources(node, config);
+		assignAdaptiveRecordLimits(node, config);
+		assignOutputStatistics(node, config);
 		return vertex;
 	}
 
@@ -796,6 +820,7 @@ public class NepheleJobGraphGenerator implements Visitor<PlanNode> {
 		config.setStubParameters(node.getPactContract().getParameters());
 		
 		config.setOutputSerializer(node.getSerializer());
+		assignOutputStatistics(node, config);
 		return vertex;
 	}
 
@@ -954,6 +979,88 @@ public class NepheleJobGraphGenerator implements Visitor<PlanNode> {
 		}
 	}
 	
+	/**
+	 * Sets the number of records after which a hash join considers the estimate for its inputs to be wrong and
+	 * switches its build side or falls back to a sort-merge strategy. The limit is the configured multiple of the
+	 * number of records that a single subtask is expected to receive, which is the full estimate for a broadcast
+	 * input. Inputs without an estimate get no limit.
+	 */
+	private void assignAdaptiveRecordLimits(DualInputPlanNode node, TaskConfig config) {
+		final DriverStrategy ds = node.getDriverStrategy();
+		if (this.adaptiveJoinFactor <= 0.0f || this.currentIteration != null ||
+				(ds != DriverStrategy.HYBRIDHASH_BUILD_FIRST && ds != DriverStrategy.HYBRIDHASH_BUILD_SECOND))
+		{
+			return;
+		}
+		
+		final int dop = Math.max(node.getDegreeOfParallelism(), 1);
+		final long limit1 = getAdaptiveRecordLimit(node.getInput1(), dop);
+		final long limit2 = getAdaptiveRecordLimit(node.getInput2(), dop);
+		if (limit1 > 0) {
+			config.setAdaptiveRecordLimit(0, limit1);
+		}
+		if (limit2 > 0) {
+			config.setAdaptiveRecordLimit(1, limit2);
+		}
+	}
+	
+	/**
+	 * Gets the adaptive record limit for the given input of a hash join, or <code>-1</code>, if the input has no
+	 * estimate. Every subtask receives all records of a broadcast input, but only its share of any other input.
+	 * The limit starts from the estimate of the input's source, because the channel's estimate counts every replica
+	 * of a broadcast input.
+	 */
+	private long getAdaptiveRecordLimit(Channel input, int dop) {
+		final long estimate = input.getSource().getOptimizerNode().getEstimatedNumRecords();
+		if (estimate <= 0) {
+			return -1;
+		}
+		
+		final int receivers = input.getShipStrategy() == ShipStrategyType.BROADCAST ? 1 : dop;
+		return Math.max((long) (this.adaptiveJoinFactor * estimate / receivers), 1);
+	}
+	
+	/**
+	 * Configures the task to observe the statistics of its output, if a directory for the runtime statistics is
+	 * configured. Besides counting the records and bytes, the task estimates the number of distinct keys for each
+	 * key that a successor uses on the output. Nodes inside iterations are not observed, as their statistics vary
+	 * from superstep to superstep.
+	 */
+	private void assignOutputStatistics(PlanNode node, TaskConfig config) {
+		if (this.runtimeStatisticsDirectory == null || this.currentIteration != null) {
+			return;
+		}
+		
+		final List<Channel> outChannels = node.getOutgoingChannels();
+		if (outChannels.isEmpty() || outChannels.get(0).getSerializer() == null ||
+				!PactRecord.class.equals(outChannels.get(0).getSerializer().getDataType()))
+		{
+			return;
+		}
+		
+		config.setOutputStatistics(this.runtimeStatisticsDirectory, node.getOptimizerNode().getSignature());
+		for (Channel c : outChannels) {
+			// prefer the keys of the successor's driver, then the keys by which the channel partitions or sorts
+			final PlanNode target = c.getTarget();
+			TypeComparatorFactory<?> comparator = null;
+			if (target instanceof SingleInputPlanNode) {
+				comparator = ((SingleInputPlanNode) target).getComparator();
+			} else if (target instanceof DualInputPlanNode) {
+				final DualInputPlanNode dualTarget = (DualInputPlanNode) target;
+				comparator = dualTarget.getInput1() == c ? dualTarget.getComparator1() : dualTarget.getComparator2();
+			}
+			if (comparator == null) {
+				comparator = c.getShipStrategyComparator();
+			}
+			if (comparator == null) {
+				comparator = c.getLocalStrategyComparator();
+			}
+			if (comparator != null) {
+				config.addOutputStatisticsComparator(comparator);
+			}
+		}
+	}
+
 	private void assignLocalStrategyResources(Channel c, TaskConfig config, int inputNum) {
 		if (c.getMemoryLocalStrategy() > 0) {
 			config.setMemoryInput(inputNum, c.getMemoryLocalStrategy());
@@ -986,6 +1093,16 @@ public class NepheleJobGraphGenerator implements Visitor<PlanNode> {
 			final AbstractJobVertex targetVertex, final TaskConfig targetConfig)
 	throws JobGraphDefinitionException, CompilerException
 	{
+		// range partitioning without a given data distribution samples the boundaries at runtime
+		DataDistribution distribution = null;
+		if (channel.getShipStrategy() == ShipStrategyType.PARTITION_RANGE) {
+			if (channel.isRangePartitionedWithSampledBoundaries()) {
+				connectWithSampledRangePartitioning(channel, inputNumber, sourceVertex, sourceConfig, targetVertex, targetConfig);
+				return DistributionPattern.BIPARTITE;
+			}
+			distribution = ((SinkPlanNode) channel.getTarget()).getSinkNode().getPactContract().getDataDistribution();
+		}
+		
 		// ------------ connect the vertices to the job graph --------------
 		final ChannelType channelType;
 		final DistributionPattern distributionPattern;
@@ -1019,22 +1136,148 @@ public class NepheleJobGraphGenerator implements Visitor<PlanNode> {
 			sourceConfig.setOutputComparator(channel.getShipStrategyComparator(), outputIndex);
 		}
 		
-		// TODO: Re-enable range partitioner distribution
-		if (channel.getShipStrategy() == ShipStrategyType.PARTITION_RANGE) {
-			throw new CompilerException("Range Partitioner is currently not enabled.");
+		if (distribution != null) {
+			sourceConfig.setOutputDataDistribution(distribution);
 		}
-//		if (targetContract instanceof GenericDataSink) {
-//			final DataDistribution distri = ((GenericDataSink) targetContract).getDataDistribution();
-//			if (distri != null) {
-//				configForOutputShipStrategy.setOutputDataDistribution(distri);
-//			}
-//		}
 		
 		// ---------------- configure the receiver -------------------
 		targetConfig.addInputToGroup(inputNumber);
 		return distributionPattern;
 	}
 	
+	/**
+	 * Connects the source and target of a range partitioned channel through a pre-pass that computes the
+	 * partition boundaries from a sample of the data. The pre-pass consists of the following parts:
+	 * <ul>
+	 *   <li>A sampler with the source's degree of parallelism that draws a reservoir sample from its share of the data.
+	 *       If the source has no other consumers, the sampler is chained to the source and forwards the data to the
+	 *       partitioner, so the data is shipped only once. Otherwise, the sampler is a separate task that receives
+	 *       its own copy of the data.</li>
+	 *   <li>A single boundary task that sorts the samples and computes balanced partition boundaries.</li>
+	 *   <li>A partitioner with the source's degree of parallelism that receives the boundaries and the data
+	 *       and range partitions the data towards the target.</li>
+	 * </ul>
+	 */
+	private void connectWithSampledRangePartitioning(Channel channel, int inputNumber,
+			final AbstractJobVertex sourceVertex, final TaskConfig sourceConfig,
+			final AbstractJobVertex targetVertex, final TaskConfig targetConfig)
+	throws JobGraphDefinitionException, CompilerException
+	{
+		final TypeSerializerFactory<?> serializer = channel.getSerializer();
+		final TypeComparatorFactory<?> comparator = channel.getShipStrategyComparator();
+		
+		if (!PactRecord.class.equals(serializer.getDataType())) {
+			throw new CompilerException("Range partitioning without a data distribution is currently only supported for PactRecords.");
+		}
+		if (this.currentIteration != null) {
+			throw new CompilerException("Range partitioning without a data distribution is currently not supported inside iterations.");
+		}
+		if (channel.getTarget() instanceof UnionPlanNode) {
+			// each input of the union would sample its own, different boundaries
+			throw new CompilerException("Range partitioning without a data distribution is currently not supported for unions.");
+		}
+		if (comparator == null) {
+			throw new CompilerException("Bug: Range partitioned channel has no comparator.");
+		}
+		if (channel.getMemoryGlobalStrategy() < 1) {
+			throw new CompilerException("Bug: Range partitioned channel has no memory assigned to buffer its data.");
+		}
+		
+		final String taskName = targetVertex.getName();
+		final int dop = sourceVertex.getNumberOfSubtasks();
+		final int subtasksPerInstance = sourceVertex.getNumberOfSubtasksPerInstance();
+		
+		// the sampler can only be chained to the source, if the source emits nothing but the range partitioned data
+		final boolean chainSampler = channel.getSource().getOutgoingChannels().size() == 1 && sourceConfig.getNumOutputs() == 0;
+		
+		// --------------------------- create the auxiliary vertices ---------------------------
+		final JobTaskVertex boundaries = new JobTaskVertex("Range Boundaries (" + taskName + ")", this.jobGraph);
+		boundaries.setTaskClass(RegularPactTask.class);
+		boundaries.setNumberOfSubtasks(1);
+		this.auxVertices.add(boundaries);
+		
+		final TaskConfig boundariesConfig = new TaskConfig(boundaries.getConfiguration());
+		boundariesConfig.setDriver(RangeBoundaryDriver.class);
+		boundariesConfig.setDriverComparator(comparator, 0);
+		boundariesConfig.setRangeNumberOfPartitions(targetVertex.getNumberOfSubtasks());
+		boundariesConfig.addInputToGroup(0);
+		boundariesConfig.setInputSerializer(serializer, 0);
+		
+		final JobTaskVertex partitioner = new JobTaskVertex("Range Partitioner (" + taskName + ")", this.jobGraph);
+		partitioner.setTaskClass(RangePartitionTask.class);
+		partitioner.setNumberOfSubtasks(dop);
+		partitioner.setNumberOfSubtasksPerInstance(subtasksPerInstance);
+		this.auxVertices.add(partitioner);
+		
+		final TaskConfig partitionerConfig = new TaskConfig(partitioner.getConfiguration());
+		
+		// ------------------------------- connect the vertices -------------------------------
+		// boundaries -> partitioner (first input gate of the partitioner)
+		boundaries.connectTo(partitioner, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.BIPARTITE);
+		boundariesConfig.addOutputShipStrategy(ShipStrategyType.BROADCAST);
+		boundariesConfig.setOutputSerializer(serializer);
+		
+		if (chainSampler) {
+			final TaskConfig samplerConfig = new TaskConfig(new Configuration());
+			samplerConfig.setRangeSampleSize(this.rangePartitionSampleSize);
+			samplerConfig.setInputSerializer(serializer, 0);
+			samplerConfig.setOutputSerializer(serializer);
+			
+			final TaskInChain sampler = new TaskInChain(ChainedRangeSampleDriver.class, samplerConfig,
+				"Range Sampler (" + taskName + ")");
+			sampler.setContainingVertex(sourceVertex);
+			this.chainedTasksInSequence.add(sampler);
+			if (this.vertices.get(channel.getSource()) != null) {
+				// the source is the head of its vertex and the sampler the first chained task
+				sourceConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+			}
+			
+			// sampler -> partitioner (second input gate of the partitioner), the sampler's data output
+			sourceVertex.connectTo(partitioner, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
+			samplerConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+			
+			// sampler -> boundaries, the sampler's sample output
+			sourceVertex.connectTo(boundaries, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.BIPARTITE);
+			samplerConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+		} else {
+			final JobTaskVertex sampler = new JobTaskVertex("Range Sampler (" + taskName + ")", this.jobGraph);
+			sampler.setTaskClass(RegularPactTask.class);
+			sampler.setNumberOfSubtasks(dop);
+			sampler.setNumberOfSubtasksPerInstance(subtasksPerInstance);
+			this.auxVertices.add(sampler);
+			
+			final TaskConfig samplerConfig = new TaskConfig(sampler.getConfiguration());
+			samplerConfig.setDriver(RangeSampleDriver.class);
+			samplerConfig.setRangeSampleSize(this.rangePartitionSampleSize);
+			
+			// source -> sampler
+			sourceVertex.connectTo(sampler, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
+			if (sourceConfig.getNumOutputs() == 0) {
+				sourceConfig.setOutputSerializer(serializer);
+			}
+			sourceConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+			samplerConfig.addInputToGroup(0);
+			samplerConfig.setInputSerializer(serializer, 0);
+			
+			// sampler -> boundaries
+			sampler.connectTo(boundaries, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.BIPARTITE);
+			samplerConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+			samplerConfig.setOutputSerializer(serializer);
+			
+			// source -> partitioner (second input gate of the partitioner)
+			sourceVertex.connectTo(partitioner, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
+			sourceConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+		}
+		partitionerConfig.setInputMaterializationMemory(1, channel.getMemoryGlobalStrategy());
+		
+		// partitioner -> target
+		partitioner.connectTo(targetVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.BIPARTITE);
+		partitionerConfig.addOutputShipStrategy(ShipStrategyType.PARTITION_RANGE);
+		partitionerConfig.setOutputSerializer(serializer);
+		partitionerConfig.setOutputComparator(comparator, 0);
+		targetConfig.addInputToGroup(inputNumber);
+	}
+	
 	private void addLocalInfoFromChannelToConfig(Channel channel, TaskConfig config, int inputNum) {
 		// serializer
 		config.setInputSerializer(channel.getSerializer(), inputNum);
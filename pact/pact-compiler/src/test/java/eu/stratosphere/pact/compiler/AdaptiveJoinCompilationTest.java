@@ -0,0 +1,132 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.compiler;
+
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.jobgraph.JobGraph;
+import eu.stratosphere.nephele.jobgraph.JobTaskVertex;
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.MatchContract;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
+import eu.stratosphere.pact.compiler.plan.candidate.DualInputPlanNode;
+import eu.stratosphere.pact.compiler.plan.candidate.OptimizedPlan;
+import eu.stratosphere.pact.compiler.plan.candidate.SinkPlanNode;
+import eu.stratosphere.pact.compiler.plantranslate.NepheleJobGraphGenerator;
+import eu.stratosphere.pact.compiler.util.DummyInputFormat;
+import eu.stratosphere.pact.compiler.util.DummyMatchStub;
+import eu.stratosphere.pact.compiler.util.DummyOutputFormat;
+import eu.stratosphere.pact.runtime.shipping.ShipStrategyType;
+import eu.stratosphere.pact.runtime.task.DriverStrategy;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+/**
+ * Tests that the job graph generator gives hash joins the record limits after which they adapt their strategy,
+ * and that the limit of a broadcast input covers all of the input's records.
+ */
+public class AdaptiveJoinCompilationTest extends CompilerTestBase
+{
+	private static final float ADAPTIVE_JOIN_FACTOR = 2.0f;
+	
+	/**
+	 * (Source, Source) -> Match -> Sink, where the first input is broadcast and the build side of the hash join.
+	 */
+	@Test
+	public void testBroadcastBuildSideGetsFullEstimate() {
+		FileDataSource small = new FileDataSource(DummyInputFormat.class, IN_FILE, "Small");
+		setSourceStatistics(small, 100 * 1024, 16.0f);
+		FileDataSource large = new FileDataSource(DummyInputFormat.class, IN_FILE, "Large");
+		setSourceStatistics(large, 100 * 1024 * 1024, 16.0f);
+		
+		MatchContract match = MatchContract.builder(DummyMatchStub.class, PactInteger.class, 0, 0)
+			.name("Match").input1(small).input2(large).build();
+		match.setParameter(PactCompiler.HINT_SHIP_STRATEGY_FIRST_INPUT, PactCompiler.HINT_SHIP_STRATEGY_BROADCAST);
+		match.setParameter(PactCompiler.HINT_SHIP_STRATEGY_SECOND_INPUT, PactCompiler.HINT_SHIP_STRATEGY_FORWARD);
+		match.setParameter(PactCompiler.HINT_LOCAL_STRATEGY, PactCompiler.HINT_LOCAL_STRATEGY_HASH_BUILD_FIRST);
+		
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, "Sink");
+		sink.setInput(match);
+		
+		Plan plan = new Plan(sink, "Test Adaptive Join");
+		plan.setDefaultParallelism(DEFAULT_PARALLELISM);
+		
+		final OptimizedPlan oPlan = compileWithStats(plan);
+		final SinkPlanNode sinkNode = oPlan.getDataSinks().iterator().next();
+		final DualInputPlanNode matchNode = (DualInputPlanNode) sinkNode.getInput().getSource();
+		Assert.assertEquals(DriverStrategy.HYBRIDHASH_BUILD_FIRST, matchNode.getDriverStrategy());
+		Assert.assertEquals(ShipStrategyType.BROADCAST, matchNode.getInput1().getShipStrategy());
+		Assert.assertEquals(ShipStrategyType.FORWARD, matchNode.getInput2().getShipStrategy());
+		
+		final long smallRecords = matchNode.getInput1().getSource().getOptimizerNode().getEstimatedNumRecords();
+		final long largeRecords = matchNode.getInput2().getSource().getOptimizerNode().getEstimatedNumRecords();
+		Assert.assertTrue(smallRecords > 0);
+		Assert.assertTrue(largeRecords > 0);
+		
+		final Configuration genConfig = new Configuration();
+		genConfig.setFloat(PactConfigConstants.ADAPTIVE_JOIN_FACTOR_KEY, ADAPTIVE_JOIN_FACTOR);
+		final JobGraph jobGraph = new NepheleJobGraphGenerator(genConfig).compileJobGraph(oPlan);
+		final TaskConfig matchConfig = getTaskConfig(jobGraph, "Match");
+		
+		// every subtask builds its hash table from all records of the broadcast input
+		Assert.assertEquals((long) (ADAPTIVE_JOIN_FACTOR * smallRecords), matchConfig.getAdaptiveRecordLimit(0));
+		Assert.assertEquals((long) (ADAPTIVE_JOIN_FACTOR * largeRecords / DEFAULT_PARALLELISM),
+			matchConfig.getAdaptiveRecordLimit(1));
+	}
+	
+	@Test
+	public void testNoLimitsWithoutFactor() {
+		FileDataSource sourceA = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source A");
+		setSourceStatistics(sourceA, 100 * 1024, 16.0f);
+		FileDataSource sourceB = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source B");
+		setSourceStatistics(sourceB, 100 * 1024, 16.0f);
+		
+		MatchContract match = MatchContract.builder(DummyMatchStub.class, PactInteger.class, 0, 0)
+			.name("Match").input1(sourceA).input2(sourceB).build();
+		match.setParameter(PactCompiler.HINT_LOCAL_STRATEGY, PactCompiler.HINT_LOCAL_STRATEGY_HASH_BUILD_FIRST);
+		
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, "Sink");
+		sink.setInput(match);
+		
+		Plan plan = new Plan(sink, "Test Adaptive Join");
+		plan.setDefaultParallelism(DEFAULT_PARALLELISM);
+		
+		final JobGraph jobGraph = new NepheleJobGraphGenerator(new Configuration()).compileJobGraph(compileWithStats(plan));
+		final TaskConfig matchConfig = getTaskConfig(jobGraph, "Match");
+		Assert.assertEquals(-1, matchConfig.getAdaptiveRecordLimit(0));
+		Assert.assertEquals(-1, matchConfig.getAdaptiveRecordLimit(1));
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private static TaskConfig getTaskConfig(JobGraph jobGraph, String name) {
+		final Iterator<JobTaskVertex> vertices = jobGraph.getTaskVertices();
+		while (vertices.hasNext()) {
+			final JobTaskVertex vertex = vertices.next();
+			if (name.equals(vertex.getName())) {
+				return new TaskConfig(vertex.getConfiguration());
+			}
+		}
+		Assert.fail("No task vertex named " + name + ".");
+		return null;
+	}
+}
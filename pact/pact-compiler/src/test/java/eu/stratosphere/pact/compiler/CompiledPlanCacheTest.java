@@ -0,0 +1,154 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.compiler;
+
+import java.lang.annotation.Annotation;
+import java.net.InetSocketAddress;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.MapContract;
+import eu.stratosphere.pact.common.contract.MatchContract;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.stubs.StubAnnotation.ConstantFields;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.compiler.costs.DefaultCostEstimator;
+import eu.stratosphere.pact.compiler.plan.candidate.OptimizedPlan;
+import eu.stratosphere.pact.compiler.util.DummyInputFormat;
+import eu.stratosphere.pact.compiler.util.DummyMatchStub;
+import eu.stratosphere.pact.compiler.util.DummyOutputFormat;
+import eu.stratosphere.pact.compiler.util.IdentityMap;
+
+/**
+ * Tests that a resubmitted plan is taken from the plan cache, and that plans that differ in their structure,
+ * keys, parameters, parallelism, constant field annotations, or compiler hints are compiled anew.
+ */
+public class CompiledPlanCacheTest extends CompilerTestBase
+{
+	private PactCompiler compiler;
+	
+	private CompiledPlanCache cache;
+	
+	@Before
+	public void setupCompiler() {
+		this.compiler = new PactCompiler(new DataStatistics(), new DefaultCostEstimator(),
+			new InetSocketAddress("localhost", 12345));
+		this.compiler.setDefaultDegreeOfParallelism(DEFAULT_PARALLELISM);
+		
+		this.cache = new CompiledPlanCache(4);
+		this.compiler.setPlanCache(this.cache);
+	}
+	
+	@Test
+	public void testResubmittedPlanIsReused() {
+		final OptimizedPlan first = this.compiler.compile(createPlan(0, DEFAULT_PARALLELISM, "a", false), this.instanceType);
+		final OptimizedPlan second = this.compiler.compile(createPlan(0, DEFAULT_PARALLELISM, "a", false), this.instanceType);
+		
+		Assert.assertSame("The plan was not taken from the cache.", first, second);
+		Assert.assertEquals(1, this.cache.getNumHits());
+		Assert.assertEquals(1, this.cache.getNumMisses());
+	}
+	
+	@Test
+	public void testChangedPlansAreCompiledAnew() {
+		final OptimizedPlan original = this.compiler.compile(createPlan(0, DEFAULT_PARALLELISM, "a", false), this.instanceType);
+		
+		Assert.assertNotSame(original, this.compiler.compile(createPlan(1, DEFAULT_PARALLELISM, "a", false), this.instanceType));
+		Assert.assertNotSame(original, this.compiler.compile(createPlan(0, DEFAULT_PARALLELISM - 1, "a", false), this.instanceType));
+		Assert.assertNotSame(original, this.compiler.compile(createPlan(0, DEFAULT_PARALLELISM, "b", false), this.instanceType));
+		Assert.assertNotSame(original, this.compiler.compile(createPlan(0, DEFAULT_PARALLELISM, "a", true), this.instanceType));
+		
+		Assert.assertEquals(0, this.cache.getNumHits());
+		Assert.assertEquals(5, this.cache.getNumMisses());
+		Assert.assertEquals(4, this.cache.size());
+	}
+	
+	@Test
+	public void testChangedAnnotationsAreCompiledAnew() {
+		final OptimizedPlan original = this.compiler.compile(createMapPlan(IdentityMap.class, false), this.instanceType);
+		
+		Assert.assertSame(original, this.compiler.compile(createMapPlan(IdentityMap.class, false), this.instanceType));
+		Assert.assertNotSame(original, this.compiler.compile(createMapPlan(ConstantFieldsMap.class, false), this.instanceType));
+		
+		Assert.assertEquals(1, this.cache.getNumHits());
+		Assert.assertEquals(2, this.cache.getNumMisses());
+	}
+	
+	@Test
+	public void testChangedCompilerHintsAreCompiledAnew() {
+		final OptimizedPlan original = this.compiler.compile(createMapPlan(IdentityMap.class, false), this.instanceType);
+		
+		Assert.assertNotSame(original, this.compiler.compile(createMapPlan(IdentityMap.class, true), this.instanceType));
+		Assert.assertSame(original, this.compiler.compile(createMapPlan(IdentityMap.class, false), this.instanceType));
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Only carries the annotation that replaces the one of the {@link IdentityMap}, as if the stub had been
+	 * changed and recompiled under the same name.
+	 */
+	@ConstantFields({0})
+	private static final class ConstantFieldsMap {}
+	
+	/**
+	 * Source -> Map -> Sink, where the map has the user code class {@link IdentityMap}, but the annotations of
+	 * the given class, and the source declares its first field as unique, if requested.
+	 */
+	private static Plan createMapPlan(final Class<?> annotatedClass, boolean uniqueSourceField) {
+		FileDataSource source = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source");
+		if (uniqueSourceField) {
+			source.getCompilerHints().addUniqueField(0);
+		}
+		
+		MapContract map = new MapContract(MapContract.builder(IdentityMap.class).name("Map").input(source)) {
+			@Override
+			public <A extends Annotation> A getUserCodeAnnotation(Class<A> annotationClass) {
+				return annotatedClass.getAnnotation(annotationClass);
+			}
+		};
+		
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, "Sink");
+		sink.setInput(map);
+		
+		Plan plan = new Plan(sink, "Test Plan Cache");
+		plan.setDefaultParallelism(DEFAULT_PARALLELISM);
+		return plan;
+	}
+	
+	/**
+	 * (Source, Source) -> Match -> Sink, where the match reads both inputs from the same source, if requested.
+	 */
+	private static Plan createPlan(int keyField, int dop, String parameter, boolean sharedSource) {
+		FileDataSource sourceA = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source");
+		FileDataSource sourceB = sharedSource ? sourceA : new FileDataSource(DummyInputFormat.class, IN_FILE, "Source");
+		
+		MatchContract match = MatchContract.builder(DummyMatchStub.class, PactInteger.class, keyField, keyField)
+			.name("Match").input1(sourceA).input2(sourceB).build();
+		match.setParameter("param", parameter);
+		
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, "Sink");
+		sink.setInput(match);
+		
+		Plan plan = new Plan(sink, "Test Plan Cache");
+		plan.setDefaultParallelism(dop);
+		return plan;
+	}
+}
@@ -0,0 +1,165 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.compiler;
+
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.ReduceContract;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.stubs.ReduceStub;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.FieldSet;
+import eu.stratosphere.pact.compiler.plan.candidate.OptimizedPlan;
+import eu.stratosphere.pact.compiler.plan.candidate.SingleInputPlanNode;
+import eu.stratosphere.pact.compiler.plan.candidate.SinkPlanNode;
+import eu.stratosphere.pact.compiler.plantranslate.NepheleJobGraphGenerator;
+import eu.stratosphere.pact.compiler.util.DummyInputFormat;
+import eu.stratosphere.pact.compiler.util.DummyOutputFormat;
+import eu.stratosphere.pact.generic.contract.GenericReduceContract.Combinable;
+import eu.stratosphere.pact.runtime.shipping.ShipStrategyType;
+import eu.stratosphere.pact.runtime.task.DriverStrategy;
+import eu.stratosphere.pact.runtime.task.util.LocalStrategy;
+
+/**
+ * Tests that the compiler picks the hash-based aggregation for combinable reducers when it is hinted,
+ * or when the estimated number of keys fits into memory.
+ */
+public class HashAggregationCompilerTest extends CompilerTestBase
+{
+	@Test
+	public void testHashAggregationHint() {
+		FileDataSource source = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source");
+		ReduceContract reduce = new ReduceContract.Builder(CombinableReduce.class, PactInteger.class, 0)
+			.input(source).name("Reduce").build();
+		reduce.getParameters().setString(PactCompiler.HINT_LOCAL_STRATEGY, PactCompiler.HINT_LOCAL_STRATEGY_HASH_AGGREGATION);
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, reduce, "Sink");
+		
+		OptimizedPlan oPlan = compileNoStats(new Plan(sink, "Hash Aggregation Hint"));
+		new NepheleJobGraphGenerator().compileJobGraph(oPlan);
+		
+		SingleInputPlanNode reducer = getReducer(oPlan);
+		Assert.assertEquals(DriverStrategy.HASH_GROUP, reducer.getDriverStrategy());
+		Assert.assertEquals(ShipStrategyType.PARTITION_HASH, reducer.getInput().getShipStrategy());
+		Assert.assertEquals(LocalStrategy.NONE, reducer.getInput().getLocalStrategy());
+		
+		SingleInputPlanNode combiner = (SingleInputPlanNode) reducer.getInput().getSource();
+		Assert.assertEquals(DriverStrategy.HASH_PARTIAL_GROUP, combiner.getDriverStrategy());
+		Assert.assertEquals(ShipStrategyType.FORWARD, combiner.getInput().getShipStrategy());
+	}
+	
+	@Test
+	public void testSortWithoutEstimates() {
+		FileDataSource source = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source");
+		ReduceContract reduce = new ReduceContract.Builder(CombinableReduce.class, PactInteger.class, 0)
+			.input(source).name("Reduce").build();
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, reduce, "Sink");
+		
+		OptimizedPlan oPlan = compileNoStats(new Plan(sink, "No Estimates"));
+		
+		SingleInputPlanNode reducer = getReducer(oPlan);
+		Assert.assertEquals(DriverStrategy.SORTED_GROUP, reducer.getDriverStrategy());
+		Assert.assertEquals(LocalStrategy.COMBININGSORT, reducer.getInput().getLocalStrategy());
+	}
+	
+	@Test
+	public void testHashAggregationForFewKeys() {
+		OptimizedPlan oPlan = compileWithStats(getPlanWithKeyCount(100));
+		new NepheleJobGraphGenerator().compileJobGraph(oPlan);
+		
+		SingleInputPlanNode reducer = getReducer(oPlan);
+		Assert.assertEquals(DriverStrategy.HASH_GROUP, reducer.getDriverStrategy());
+		Assert.assertEquals(DriverStrategy.HASH_PARTIAL_GROUP,
+			((SingleInputPlanNode) reducer.getInput().getSource()).getDriverStrategy());
+	}
+	
+	@Test
+	public void testSortForManyKeys() {
+		OptimizedPlan oPlan = compileWithStats(getPlanWithKeyCount(1000000000L));
+		
+		SingleInputPlanNode reducer = getReducer(oPlan);
+		Assert.assertEquals(DriverStrategy.SORTED_GROUP, reducer.getDriverStrategy());
+	}
+	
+	@Test
+	public void testNonCombinableReduceIgnoresHint() {
+		FileDataSource source = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source");
+		ReduceContract reduce = new ReduceContract.Builder(NonCombinableReduce.class, PactInteger.class, 0)
+			.input(source).name("Reduce").build();
+		reduce.getParameters().setString(PactCompiler.HINT_LOCAL_STRATEGY, PactCompiler.HINT_LOCAL_STRATEGY_HASH_AGGREGATION);
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, reduce, "Sink");
+		
+		OptimizedPlan oPlan = compileNoStats(new Plan(sink, "Non-Combinable"));
+		
+		SingleInputPlanNode reducer = getReducer(oPlan);
+		Assert.assertEquals(DriverStrategy.SORTED_GROUP, reducer.getDriverStrategy());
+		Assert.assertEquals(LocalStrategy.SORT, reducer.getInput().getLocalStrategy());
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private Plan getPlanWithKeyCount(long numKeys) {
+		FileDataSource source = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source");
+		setSourceStatistics(source, 100l * 1024 * 1024 * 1024, 100f);
+		source.getCompilerHints().setDistinctCount(new FieldSet(0), numKeys);
+		
+		ReduceContract reduce = new ReduceContract.Builder(CombinableReduce.class, PactInteger.class, 0)
+			.input(source).name("Reduce").build();
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, reduce, "Sink");
+		return new Plan(sink, "Key Count " + numKeys);
+	}
+	
+	private static SingleInputPlanNode getReducer(OptimizedPlan plan) {
+		SinkPlanNode sink = plan.getDataSinks().iterator().next();
+		return (SingleInputPlanNode) sink.getInput().getSource();
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	@Combinable
+	public static final class CombinableReduce extends ReduceStub {
+		
+		@Override
+		public void reduce(Iterator<PactRecord> records, Collector<PactRecord> out) {
+			PactRecord last = null;
+			while (records.hasNext()) {
+				last = records.next();
+			}
+			out.collect(last);
+		}
+		
+		@Override
+		public void combine(Iterator<PactRecord> records, Collector<PactRecord> out) {
+			reduce(records, out);
+		}
+	}
+	
+	public static final class NonCombinableReduce extends ReduceStub {
+		
+		@Override
+		public void reduce(Iterator<PactRecord> records, Collector<PactRecord> out) {
+			while (records.hasNext()) {
+				out.collect(records.next());
+			}
+		}
+	}
+}
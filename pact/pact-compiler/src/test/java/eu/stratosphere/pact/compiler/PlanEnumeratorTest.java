@@ -0,0 +1,279 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.compiler;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.stratosphere.pact.common.contract.CoGroupContract;
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.GenericDataSink;
+import eu.stratosphere.pact.common.contract.MapContract;
+import eu.stratosphere.pact.common.contract.MatchContract;
+import eu.stratosphere.pact.common.contract.ReduceContract;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.Visitor;
+import eu.stratosphere.pact.compiler.costs.DefaultCostEstimator;
+import eu.stratosphere.pact.compiler.plan.candidate.Channel;
+import eu.stratosphere.pact.compiler.plan.candidate.OptimizedPlan;
+import eu.stratosphere.pact.compiler.plan.candidate.PlanNode;
+import eu.stratosphere.pact.compiler.util.DummyCoGroupStub;
+import eu.stratosphere.pact.compiler.util.DummyInputFormat;
+import eu.stratosphere.pact.compiler.util.DummyMatchStub;
+import eu.stratosphere.pact.compiler.util.DummyOutputFormat;
+import eu.stratosphere.pact.compiler.util.IdentityMap;
+import eu.stratosphere.pact.compiler.util.IdentityReduce;
+import eu.stratosphere.pact.generic.contract.BulkIteration;
+import eu.stratosphere.pact.generic.contract.WorksetIteration;
+
+/**
+ * Tests that the concurrent enumeration of the plan alternatives chooses the same plan as the sequential
+ * enumeration, also for iterations and when candidates are pruned by their costs, and that the cost based
+ * pruning reduces the number of retained candidates.
+ */
+public class PlanEnumeratorTest extends CompilerTestBase
+{
+	@Test
+	public void testConcurrentEnumerationChoosesSamePlan() {
+		final PactCompiler sequential = createCompiler(1, 0);
+		final PactCompiler concurrent = createCompiler(4, 0);
+		
+		for (int i = 0; i < 5; i++) {
+			final OptimizedPlan expected = sequential.compile(createPlan(), this.instanceType);
+			final OptimizedPlan actual = concurrent.compile(createPlan(), this.instanceType);
+			Assert.assertEquals("The concurrent enumeration chose a different plan.",
+				describePlan(expected), describePlan(actual));
+		}
+	}
+	
+	@Test
+	public void testCostBasedPruningCreatesValidPlan() {
+		final OptimizedPlan plan = createCompiler(4, 1.0f).compile(createPlan(), this.instanceType);
+		Assert.assertEquals(2, plan.getDataSinks().size());
+		Assert.assertEquals(describePlan(createCompiler(1, 1.0f).compile(createPlan(), this.instanceType)), describePlan(plan));
+	}
+	
+	@Test
+	public void testCostBasedPruningRetainsFewerCandidates() {
+		final CountingCompiler unpruned = createCompiler(1, 0.0f);
+		unpruned.compile(createPlan(), this.instanceType);
+		final CountingCompiler pruned = createCompiler(1, 1.0f);
+		pruned.compile(createPlan(), this.instanceType);
+		
+		final PlanEnumerator enumerator = pruned.getLastEnumerator();
+		Assert.assertTrue("The pruning did not discard any enumerated candidate.",
+			enumerator.getNumberOfEnumeratedCandidates() > enumerator.getNumberOfRetainedCandidates());
+		Assert.assertTrue("The cost based pruning did not retain fewer candidates.",
+			enumerator.getNumberOfRetainedCandidates() < unpruned.getLastEnumerator().getNumberOfRetainedCandidates());
+	}
+	
+	@Test
+	public void testZeroPruningFactorKeepsCandidateCounts() {
+		// a compiler with the default configuration does not prune by costs
+		final CountingCompiler unconfigured = new CountingCompiler();
+		unconfigured.setDefaultDegreeOfParallelism(DEFAULT_PARALLELISM);
+		unconfigured.setNumEnumerationThreads(1);
+		unconfigured.compile(createPlan(), this.instanceType);
+		final CountingCompiler sequential = createCompiler(1, 0.0f);
+		sequential.compile(createPlan(), this.instanceType);
+		final CountingCompiler concurrent = createCompiler(4, 0.0f);
+		concurrent.compile(createPlan(), this.instanceType);
+		
+		final PlanEnumerator expected = unconfigured.getLastEnumerator();
+		for (PlanEnumerator actual : new PlanEnumerator[] { sequential.getLastEnumerator(), concurrent.getLastEnumerator() }) {
+			Assert.assertEquals(expected.getNumberOfEnumeratedCandidates(), actual.getNumberOfEnumeratedCandidates());
+			Assert.assertEquals(expected.getNumberOfRetainedCandidates(), actual.getNumberOfRetainedCandidates());
+		}
+	}
+	
+	@Test
+	public void testConcurrentEnumerationOfIterationsChoosesSamePlan() {
+		final PactCompiler sequential = createCompiler(1, 0.0f);
+		final PactCompiler concurrent = createCompiler(4, 0.0f);
+		
+		for (int i = 0; i < 5; i++) {
+			Assert.assertEquals("The concurrent enumeration chose a different bulk iteration plan.",
+				describePlan(sequential.compile(createBulkIterationPlan(), this.instanceType)),
+				describePlan(concurrent.compile(createBulkIterationPlan(), this.instanceType)));
+			Assert.assertEquals("The concurrent enumeration chose a different workset iteration plan.",
+				describePlan(sequential.compile(createWorksetIterationPlan(), this.instanceType)),
+				describePlan(concurrent.compile(createWorksetIterationPlan(), this.instanceType)));
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private CountingCompiler createCompiler(int numThreads, float pruningCostFactor) {
+		final CountingCompiler compiler = new CountingCompiler();
+		compiler.setDefaultDegreeOfParallelism(DEFAULT_PARALLELISM);
+		compiler.setNumEnumerationThreads(numThreads);
+		compiler.setPruningCostFactor(pruningCostFactor);
+		return compiler;
+	}
+	
+	/**
+	 * A compiler that remembers the enumerator of its last compilation, to expose the candidate counts.
+	 */
+	private static final class CountingCompiler extends PactCompiler {
+		
+		private PlanEnumerator lastEnumerator;
+		
+		private CountingCompiler() {
+			super(new DataStatistics(), new DefaultCostEstimator(), new InetSocketAddress("localhost", 12345));
+		}
+		
+		@Override
+		PlanEnumerator createPlanEnumerator() {
+			this.lastEnumerator = super.createPlanEnumerator();
+			return this.lastEnumerator;
+		}
+		
+		private PlanEnumerator getLastEnumerator() {
+			return this.lastEnumerator;
+		}
+	}
+	
+	/**
+	 * Sources A, B, C. A is mapped twice. The first map is matched with B and written to a sink, the second one
+	 * is matched with C. Both matches are co-grouped, reduced, and written to a second sink.
+	 */
+	private static Plan createPlan() {
+		FileDataSource sourceA = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source A");
+		FileDataSource sourceB = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source B");
+		FileDataSource sourceC = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source C");
+		
+		MapContract map1 = MapContract.builder(IdentityMap.class).name("Map 1").input(sourceA).build();
+		MapContract map2 = MapContract.builder(IdentityMap.class).name("Map 2").input(sourceA).build();
+		
+		MatchContract match1 = MatchContract.builder(DummyMatchStub.class, PactInteger.class, 0, 0)
+			.name("Match 1").input1(map1).input2(sourceB).build();
+		MatchContract match2 = MatchContract.builder(DummyMatchStub.class, PactInteger.class, 1, 0)
+			.name("Match 2").input1(map2).input2(sourceC).build();
+		
+		CoGroupContract coGroup = CoGroupContract.builder(DummyCoGroupStub.class, PactInteger.class, 0, 0)
+			.name("CoGroup").input1(match1).input2(match2).build();
+		ReduceContract reduce = ReduceContract.builder(IdentityReduce.class, PactInteger.class, 1)
+			.name("Reduce").input(coGroup).build();
+		
+		FileDataSink sink1 = new FileDataSink(DummyOutputFormat.class, OUT_FILE, "Sink 1");
+		sink1.setInput(match1);
+		FileDataSink sink2 = new FileDataSink(DummyOutputFormat.class, OUT_FILE, "Sink 2");
+		sink2.setInput(reduce);
+		
+		List<GenericDataSink> sinks = new ArrayList<GenericDataSink>();
+		sinks.add(sink1);
+		sinks.add(sink2);
+		
+		Plan plan = new Plan(sinks, "Test Plan Enumeration");
+		plan.setDefaultParallelism(DEFAULT_PARALLELISM);
+		return plan;
+	}
+	
+	/**
+	 * Source A is mapped and matched with source B inside a bulk iteration, whose result is reduced and
+	 * written to a sink.
+	 */
+	private static Plan createBulkIterationPlan() {
+		FileDataSource sourceA = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source A");
+		FileDataSource sourceB = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source B");
+		
+		BulkIteration iteration = new BulkIteration("Bulk Iteration");
+		iteration.setInput(sourceA);
+		iteration.setMaximumNumberOfIterations(10);
+		
+		MapContract map = MapContract.builder(IdentityMap.class).name("Map").input(iteration.getPartialSolution()).build();
+		MatchContract match = MatchContract.builder(DummyMatchStub.class, PactInteger.class, 0, 0)
+			.name("Match").input1(map).input2(sourceB).build();
+		iteration.setNextPartialSolution(match);
+		
+		ReduceContract reduce = ReduceContract.builder(IdentityReduce.class, PactInteger.class, 0)
+			.name("Reduce").input(iteration).build();
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, reduce, "Sink");
+		
+		Plan plan = new Plan(sink, "Test Bulk Iteration Enumeration");
+		plan.setDefaultParallelism(DEFAULT_PARALLELISM);
+		return plan;
+	}
+	
+	/**
+	 * Source A is the initial solution set and workset of a workset iteration, which matches the workset with
+	 * source B, reduces the result, and matches it with the solution set to get the delta and next workset.
+	 */
+	private static Plan createWorksetIterationPlan() {
+		FileDataSource sourceA = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source A");
+		FileDataSource sourceB = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source B");
+		
+		WorksetIteration iteration = new WorksetIteration(0, "Workset Iteration");
+		iteration.setInitialSolutionSet(sourceA);
+		iteration.setInitialWorkset(sourceA);
+		iteration.setMaximumNumberOfIterations(10);
+		
+		MatchContract join = MatchContract.builder(DummyMatchStub.class, PactInteger.class, 0, 0)
+			.name("Join").input1(iteration.getWorkset()).input2(sourceB).build();
+		ReduceContract reduce = ReduceContract.builder(IdentityReduce.class, PactInteger.class, 0)
+			.name("Reduce").input(join).build();
+		MatchContract update = MatchContract.builder(DummyMatchStub.class, PactInteger.class, 0, 0)
+			.name("Update").input1(reduce).input2(iteration.getSolutionSet()).build();
+		iteration.setNextWorkset(update);
+		iteration.setSolutionSetDelta(update);
+		
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, iteration, "Sink");
+		
+		Plan plan = new Plan(sink, "Test Workset Iteration Enumeration");
+		plan.setDefaultParallelism(DEFAULT_PARALLELISM);
+		return plan;
+	}
+	
+	private static List<String> describePlan(OptimizedPlan plan) {
+		final List<String> descriptions = new ArrayList<String>();
+		plan.accept(new Visitor<PlanNode>() {
+			
+			private final Set<PlanNode> seen = new HashSet<PlanNode>();
+			
+			@Override
+			public boolean preVisit(PlanNode visitable) {
+				if (!this.seen.add(visitable)) {
+					return false;
+				}
+				
+				final StringBuilder bld = new StringBuilder();
+				bld.append(visitable.getPactContract().getName()).append(' ').append(visitable.getDriverStrategy());
+				for (Iterator<Channel> inputs = visitable.getInputs(); inputs.hasNext();) {
+					final Channel c = inputs.next();
+					bld.append(' ').append(c.getShipStrategy()).append('/').append(c.getLocalStrategy());
+				}
+				descriptions.add(bld.toString());
+				return true;
+			}
+			
+			@Override
+			public void postVisit(PlanNode visitable) {}
+		});
+		
+		Collections.sort(descriptions);
+		return descriptions;
+	}
+}
@@ -0,0 +1,186 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.compiler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.jobgraph.AbstractJobInputVertex;
+import eu.stratosphere.nephele.jobgraph.JobGraph;
+import eu.stratosphere.nephele.jobgraph.JobTaskVertex;
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.GenericDataSink;
+import eu.stratosphere.pact.common.contract.MapContract;
+import eu.stratosphere.pact.common.contract.Order;
+import eu.stratosphere.pact.common.contract.Ordering;
+import eu.stratosphere.pact.common.contract.ReduceContract;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
+import eu.stratosphere.pact.compiler.plan.candidate.Channel;
+import eu.stratosphere.pact.compiler.plan.candidate.OptimizedPlan;
+import eu.stratosphere.pact.compiler.plan.candidate.PlanNode;
+import eu.stratosphere.pact.compiler.plantranslate.NepheleJobGraphGenerator;
+import eu.stratosphere.pact.compiler.util.DummyInputFormat;
+import eu.stratosphere.pact.compiler.util.DummyOutputFormat;
+import eu.stratosphere.pact.compiler.util.IdentityMap;
+import eu.stratosphere.pact.compiler.util.IdentityReduce;
+import eu.stratosphere.pact.runtime.task.RangePartitionTask;
+import eu.stratosphere.pact.runtime.task.RangeSampleDriver;
+import eu.stratosphere.pact.runtime.task.chaining.ChainedRangeSampleDriver;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+/**
+ * Tests the translation of range partitioned channels for which no data distribution is given, and whose
+ * partition boundaries are therefore sampled at runtime.
+ */
+public class RangePartitionCompilationTest extends CompilerTestBase
+{
+	/**
+	 * Source -> Map -> Sink (with global order)
+	 */
+	@Test
+	public void testGlobalOrderWithoutDistribution() {
+		FileDataSource source = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source");
+		
+		MapContract map = MapContract.builder(IdentityMap.class).name("Map").input(source).build();
+		
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, "Sink");
+		sink.setGlobalOrder(new Ordering(0, PactInteger.class, Order.ASCENDING));
+		sink.setInput(map);
+		
+		Plan plan = new Plan(sink, "Test Range Partitioning");
+		plan.setDefaultParallelism(DEFAULT_PARALLELISM);
+		
+		OptimizedPlan oPlan = compileNoStats(plan);
+		NepheleJobGraphGenerator jobGen = new NepheleJobGraphGenerator();
+		JobGraph jobGraph = jobGen.compileJobGraph(oPlan);
+		
+		// the map and the sampler are chained to the source, so the only task vertices are the boundary task
+		// and the partitioner that are added for the range partitioned channel
+		int numPartitioners = 0;
+		int numTaskVertices = 0;
+		for (Iterator<JobTaskVertex> iter = jobGraph.getTaskVertices(); iter.hasNext(); ) {
+			JobTaskVertex vertex = iter.next();
+			numTaskVertices++;
+			if (vertex.getTaskClass() == RangePartitionTask.class) {
+				numPartitioners++;
+				Assert.assertEquals("Partitioner has wrong number of inputs.", 2, vertex.getNumberOfBackwardConnections());
+				Assert.assertEquals("Partitioner has wrong number of outputs.", 1, vertex.getNumberOfForwardConnections());
+				Assert.assertEquals("Partitioner has wrong buffer memory.",
+					((long) PactConfigConstants.DEFAULT_RANGE_PARTITION_BUFFER_MEMORY) << 20,
+					new TaskConfig(vertex.getConfiguration()).getInputMaterializationMemory(1));
+			}
+		}
+		Assert.assertEquals("Range partitioner was not created.", 1, numPartitioners);
+		Assert.assertEquals("Wrong number of task vertices.", 2, numTaskVertices);
+		
+		// the source ships its data only to the partitioner and its samples to the boundary task
+		final AbstractJobInputVertex sourceVertex = jobGraph.getInputVertices().next();
+		Assert.assertEquals("Source has wrong number of outputs.", 2, sourceVertex.getNumberOfForwardConnections());
+		final TaskConfig sourceConfig = new TaskConfig(sourceVertex.getConfiguration());
+		Assert.assertEquals("Wrong number of chained tasks.", 2, sourceConfig.getNumberOfChainedStubs());
+		Assert.assertEquals("Sampler was not chained.", ChainedRangeSampleDriver.class, sourceConfig.getChainedTask(1));
+		Assert.assertTrue("Job graph is not acyclic.", jobGraph.isAcyclic());
+	}
+	
+	/**
+	 * Source -> Sink (with global order)
+	 *       \-> Reduce -> Sink
+	 */
+	@Test
+	public void testGlobalOrderWithoutDistributionAndSharedSource() {
+		FileDataSource source = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source");
+		
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, "Sink");
+		sink.setGlobalOrder(new Ordering(0, PactInteger.class, Order.ASCENDING));
+		sink.setInput(source);
+		
+		ReduceContract reduce = ReduceContract.builder(IdentityReduce.class, PactInteger.class, 1).name("Reduce").input(source).build();
+		
+		FileDataSink otherSink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, "Other Sink");
+		otherSink.setInput(reduce);
+		
+		List<GenericDataSink> sinks = new ArrayList<GenericDataSink>();
+		sinks.add(sink);
+		sinks.add(otherSink);
+		Plan plan = new Plan(sinks, "Test Range Partitioning");
+		plan.setDefaultParallelism(DEFAULT_PARALLELISM);
+		
+		OptimizedPlan oPlan = compileNoStats(plan);
+		NepheleJobGraphGenerator jobGen = new NepheleJobGraphGenerator();
+		JobGraph jobGraph = jobGen.compileJobGraph(oPlan);
+		
+		// the source also feeds the reduce, so the sampler cannot be chained and runs as its own task
+		int numSamplers = 0;
+		for (Iterator<JobTaskVertex> iter = jobGraph.getTaskVertices(); iter.hasNext(); ) {
+			JobTaskVertex vertex = iter.next();
+			if (vertex.getName().startsWith("Range Sampler")) {
+				Assert.assertEquals("Sampler has wrong driver.", RangeSampleDriver.class,
+					new TaskConfig(vertex.getConfiguration()).getDriver());
+				numSamplers++;
+			}
+		}
+		Assert.assertEquals("Range sampler was not created.", 1, numSamplers);
+		Assert.assertTrue("Job graph is not acyclic.", jobGraph.isAcyclic());
+	}
+	
+	/**
+	 * Source -> Reduce -> Sink (with global order on a different field)
+	 */
+	@Test
+	public void testBufferMemoryIsTakenFromBudget() {
+		FileDataSource source = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source");
+		
+		ReduceContract reduce = ReduceContract.builder(IdentityReduce.class, PactInteger.class, 0).name("Reduce").input(source).build();
+		
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, "Sink");
+		sink.setGlobalOrder(new Ordering(1, PactInteger.class, Order.ASCENDING));
+		sink.setInput(reduce);
+		
+		Plan plan = new Plan(sink, "Test Range Partitioning");
+		plan.setDefaultParallelism(DEFAULT_PARALLELISM);
+		
+		OptimizedPlan oPlan = compileNoStats(plan);
+		
+		// sum up the memory that each instance hands out to the plan's memory consumers and the partitioners
+		long memoryPerInstance = 0;
+		int numRangePartitionedChannels = 0;
+		for (PlanNode node : oPlan.getAllNodes()) {
+			long memory = node.getMemoryPerSubTask();
+			for (Iterator<Channel> inputs = node.getInputs(); inputs.hasNext(); ) {
+				final Channel c = inputs.next();
+				memory += c.getMemoryLocalStrategy() + c.getTempMemory();
+				if (c.isRangePartitionedWithSampledBoundaries()) {
+					numRangePartitionedChannels++;
+					Assert.assertEquals("Wrong range partition buffer memory.",
+						((long) PactConfigConstants.DEFAULT_RANGE_PARTITION_BUFFER_MEMORY) << 20, c.getMemoryGlobalStrategy());
+					memoryPerInstance += c.getMemoryGlobalStrategy() * c.getSource().getSubtasksPerInstance();
+				}
+			}
+			memoryPerInstance += memory * node.getSubtasksPerInstance();
+		}
+		
+		Assert.assertEquals("Wrong number of range partitioned channels.", 1, numRangePartitionedChannels);
+		final long availableMemory = (long) (this.instanceType.getHardwareDescription().getSizeOfFreeMemory() * 0.96f);
+		Assert.assertTrue("More memory assigned than available.", memoryPerInstance <= availableMemory);
+	}
+}
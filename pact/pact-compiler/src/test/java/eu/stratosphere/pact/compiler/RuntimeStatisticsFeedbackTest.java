@@ -0,0 +1,134 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.compiler;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.jobgraph.JobGraph;
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.ReduceContract;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.FieldSet;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
+import eu.stratosphere.pact.compiler.costs.DefaultCostEstimator;
+import eu.stratosphere.pact.compiler.plan.OptimizerNode;
+import eu.stratosphere.pact.compiler.plan.candidate.OptimizedPlan;
+import eu.stratosphere.pact.compiler.plantranslate.NepheleJobGraphGenerator;
+import eu.stratosphere.pact.compiler.util.DummyInputFormat;
+import eu.stratosphere.pact.compiler.util.DummyOutputFormat;
+import eu.stratosphere.pact.compiler.util.IdentityReduce;
+import eu.stratosphere.pact.runtime.statistics.OperatorStatistics;
+import eu.stratosphere.pact.runtime.statistics.RuntimeStatisticsStore;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+/**
+ * Tests that the statistics observed when a program ran are used when the same program is compiled again,
+ * and that the generated job requests the statistics for the operators.
+ */
+public class RuntimeStatisticsFeedbackTest extends CompilerTestBase
+{
+	private File directory;
+	
+	@Before
+	public void createDirectory() {
+		this.directory = new File(System.getProperty("java.io.tmpdir"), "runtime-stats-" + System.nanoTime());
+		Assert.assertTrue(this.directory.mkdirs());
+	}
+	
+	@After
+	public void deleteDirectory() {
+		deleteRecursively(this.directory);
+	}
+	
+	/**
+	 * Source -> Reduce -> Sink
+	 */
+	@Test
+	public void testObservedStatisticsOverrideEstimates() throws Exception {
+		final String dir = this.directory.getAbsolutePath();
+		final PactCompiler compiler = new PactCompiler(new DataStatistics(dir), new DefaultCostEstimator(),
+			new InetSocketAddress("localhost", 12345));
+		compiler.setDefaultDegreeOfParallelism(DEFAULT_PARALLELISM);
+		
+		// the signatures must be stable across compilations
+		final OptimizerNode first = getSourceNode(compiler.compile(createPlan(), this.instanceType));
+		final OptimizerNode second = getSourceNode(compiler.compile(createPlan(), this.instanceType));
+		Assert.assertEquals("Signature is not stable.", first.getSignature(), second.getSignature());
+		Assert.assertFalse("Estimates must not come from an empty store.", first.getEstimatedNumRecords() == 12345);
+		
+		// record statistics for the source, as a run of the program would
+		final OperatorStatistics stats = new OperatorStatistics(new int[][] { {0} });
+		for (int i = 0; i < 12345; i++) {
+			stats.addRecord(10);
+			stats.addKeyHash(0, i % 100);
+		}
+		new RuntimeStatisticsStore(dir).write(first.getSignature(), "run", 0, 1, stats);
+		
+		final OptimizedPlan plan = compiler.compile(createPlan(), this.instanceType);
+		final OptimizerNode source = getSourceNode(plan);
+		Assert.assertEquals(12345, source.getEstimatedNumRecords());
+		Assert.assertEquals(123450, source.getEstimatedOutputSize());
+		Assert.assertEquals(stats.getDistinctKeyEstimate(0), source.getEstimatedCardinality(new FieldSet(0)));
+		
+		// the generated job requests the statistics of the source, with the key used by the reducer
+		final Configuration genConfig = new Configuration();
+		genConfig.setString(PactConfigConstants.RUNTIME_STATISTICS_DIRECTORY_KEY, dir);
+		final JobGraph jobGraph = new NepheleJobGraphGenerator(genConfig).compileJobGraph(plan);
+		final TaskConfig sourceConfig = new TaskConfig(jobGraph.getInputVertices().next().getConfiguration());
+		Assert.assertEquals(dir, sourceConfig.getOutputStatisticsDirectory());
+		Assert.assertEquals(first.getSignature(), sourceConfig.getOutputStatisticsSignature());
+		Assert.assertEquals(1, sourceConfig.getNumOutputStatisticsComparators());
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private static Plan createPlan() {
+		FileDataSource source = new FileDataSource(DummyInputFormat.class, IN_FILE, "Source");
+		
+		ReduceContract reduce = ReduceContract.builder(IdentityReduce.class, PactInteger.class, 0)
+			.name("Reduce").input(source).build();
+		
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, "Sink");
+		sink.setInput(reduce);
+		
+		Plan plan = new Plan(sink, "Test Runtime Statistics");
+		plan.setDefaultParallelism(DEFAULT_PARALLELISM);
+		return plan;
+	}
+	
+	private static OptimizerNode getSourceNode(OptimizedPlan plan) {
+		return plan.getDataSources().iterator().next().getOptimizerNode();
+	}
+	
+	private static void deleteRecursively(File f) {
+		final File[] children = f.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursively(child);
+			}
+		}
+		f.delete();
+	}
+}
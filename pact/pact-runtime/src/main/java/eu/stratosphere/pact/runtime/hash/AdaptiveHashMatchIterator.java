@@ -0,0 +1,510 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.hash;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.DataInputView;
+import eu.stratosphere.nephele.services.memorymanager.ListMemorySegmentSource;
+import eu.stratosphere.nephele.services.memorymanager.MemoryAllocationException;
+import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.template.AbstractInvokable;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.generic.stub.GenericMatcher;
+import eu.stratosphere.pact.generic.types.TypeComparator;
+import eu.stratosphere.pact.generic.types.TypePairComparatorFactory;
+import eu.stratosphere.pact.generic.types.TypeSerializer;
+import eu.stratosphere.pact.runtime.io.SpillingBuffer;
+import eu.stratosphere.pact.runtime.sort.MergeMatchIterator;
+import eu.stratosphere.pact.runtime.sort.UnilateralSortMerger;
+import eu.stratosphere.pact.runtime.task.util.MatchTaskIterator;
+
+/**
+ * A {@link MatchTaskIterator} that starts as a hybrid-hash-join and adapts its strategy when the build side turns
+ * out to be much larger than the compiler estimated. While the hash table consumes the build side, the iterator
+ * counts the records. When the count exceeds the given limit, the iterator drops the hash table and tries to build
+ * it on the other input instead, provided that input has a limit as well. If the other input exceeds its limit,
+ * too, the iterator falls back to sorting both inputs with a {@link UnilateralSortMerger} and matching them with
+ * a {@link MergeMatchIterator}.
+ * <p>
+ * Because the hash table cannot give back the records it consumed, the iterator copies the records of the observed
+ * input into a spilling buffer until the input is either exhausted or has exceeded its limit. In the latter case,
+ * the input is replayed from the buffer before the rest of it is read.
+ */
+public class AdaptiveHashMatchIterator<V1, V2, O> implements MatchTaskIterator<V1, V2, O>
+{
+	private static final Log LOG = LogFactory.getLog(AdaptiveHashMatchIterator.class);
+	
+	/**
+	 * The minimal number of pages that a {@link UnilateralSortMerger} accepts.
+	 */
+	private static final int MIN_NUM_SORTER_PAGES = 34;
+	
+	/**
+	 * The fraction of the memory that buffers the records of each observed input.
+	 */
+	private static final int BUFFER_MEMORY_FRACTION = 32;
+	
+	/**
+	 * The fraction of the memory for the merge iterator in case of a fallback to the sort-merge strategy.
+	 */
+	private static final int MERGE_MEMORY_FRACTION = 16;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private final MutableObjectIterator<V1> firstInput;
+	
+	private final MutableObjectIterator<V2> secondInput;
+	
+	private final TypeSerializer<V1> serializer1;
+	
+	private final TypeSerializer<V2> serializer2;
+	
+	private final TypeComparator<V1> comparator1;
+	
+	private final TypeComparator<V2> comparator2;
+	
+	private final TypePairComparatorFactory<V1, V2> pairComparatorFactory;
+	
+	private final MemoryManager memManager;
+	
+	private final IOManager ioManager;
+	
+	private final AbstractInvokable ownerTask;
+	
+	private final long limit1;
+	
+	private final long limit2;
+	
+	private final boolean buildFirst;
+	
+	private final long hashMemory;
+	
+	private final long sorterMemory;
+	
+	private final int mergePages;
+	
+	private final int maxNumFileHandles;
+	
+	private final float spillingThreshold;
+	
+	private List<MemorySegment> bufferMemory1;
+	
+	private List<MemorySegment> bufferMemory2;
+	
+	private BufferingIterator<V1> buffered1;
+	
+	private BufferingIterator<V2> buffered2;
+	
+	private UnilateralSortMerger<V1> sorter1;
+	
+	private UnilateralSortMerger<V2> sorter2;
+	
+	private volatile MatchTaskIterator<V1, V2, O> delegate;
+	
+	private String adaptationMessage;
+	
+	private volatile boolean running = true;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Creates a new adaptive match iterator.
+	 * 
+	 * @param firstInput The first input.
+	 * @param secondInput The second input.
+	 * @param serializer1 The serializer for the records of the first input.
+	 * @param comparator1 The comparator for the keys of the first input.
+	 * @param serializer2 The serializer for the records of the second input.
+	 * @param comparator2 The comparator for the keys of the second input.
+	 * @param pairComparatorFactory The factory for the comparators between the two inputs.
+	 * @param memManager The memory manager from which the memory is allocated.
+	 * @param ioManager The I/O manager used for spilling.
+	 * @param ownerTask The task that owns the memory.
+	 * @param totalMemory The total memory available to the iterator.
+	 * @param maxNumFileHandles The maximal merge fan-in of the sorters in case of the sort-merge fallback.
+	 * @param spillingThreshold The spilling threshold of the sorters in case of the sort-merge fallback.
+	 * @param limit1 The number of records after which the first input is considered too large to be the build
+	 *               side, or a value less than one, if the input must never become the build side.
+	 * @param limit2 The number of records after which the second input is considered too large to be the build
+	 *               side, or a value less than one, if the input must never become the build side.
+	 * @param buildFirst True, if the hash table is initially built on the first input, false, if it is built on
+	 *                   the second input.
+	 * @throws MemoryAllocationException Thrown, if the memory could not be allocated.
+	 */
+	public AdaptiveHashMatchIterator(MutableObjectIterator<V1> firstInput, MutableObjectIterator<V2> secondInput,
+			TypeSerializer<V1> serializer1, TypeComparator<V1> comparator1,
+			TypeSerializer<V2> serializer2, TypeComparator<V2> comparator2,
+			TypePairComparatorFactory<V1, V2> pairComparatorFactory,
+			MemoryManager memManager, IOManager ioManager, AbstractInvokable ownerTask, long totalMemory,
+			int maxNumFileHandles, float spillingThreshold, long limit1, long limit2, boolean buildFirst)
+	throws MemoryAllocationException
+	{
+		if ((buildFirst ? limit1 : limit2) < 1) {
+			throw new IllegalArgumentException("The initial build side needs a record limit.");
+		}
+		final int numPages = memManager.computeNumberOfPages(totalMemory);
+		if (!hasSufficientMemory(numPages)) {
+			throw new IllegalArgumentException("Too little memory for the adaptive hash join: " + numPages + " pages.");
+		}
+		
+		this.firstInput = firstInput;
+		this.secondInput = secondInput;
+		this.serializer1 = serializer1;
+		this.serializer2 = serializer2;
+		this.comparator1 = comparator1;
+		this.comparator2 = comparator2;
+		this.pairComparatorFactory = pairComparatorFactory;
+		this.memManager = memManager;
+		this.ioManager = ioManager;
+		this.ownerTask = ownerTask;
+		this.maxNumFileHandles = maxNumFileHandles;
+		this.spillingThreshold = spillingThreshold;
+		this.limit1 = limit1;
+		this.limit2 = limit2;
+		this.buildFirst = buildFirst;
+		
+		final int bufferPages = getNumBufferPages(numPages);
+		final int hashPages = numPages - 2 * bufferPages;
+		this.mergePages = getNumMergePages(numPages);
+		this.hashMemory = ((long) hashPages) * memManager.getPageSize();
+		this.sorterMemory = ((long) (hashPages - this.mergePages) / 2) * memManager.getPageSize();
+		
+		this.bufferMemory1 = memManager.allocatePages(ownerTask, bufferPages);
+		this.bufferMemory2 = memManager.allocatePages(ownerTask, bufferPages);
+		
+		// the hash table on the initial build side allocates its memory right away, as the regular one does
+		if (buildFirst) {
+			this.buffered1 = new BufferingIterator<V1>(firstInput, serializer1, this.bufferMemory1, ioManager,
+				memManager.getPageSize(), limit1);
+			this.delegate = createHashIterator(this.buffered1, secondInput, true);
+		} else {
+			this.buffered2 = new BufferingIterator<V2>(secondInput, serializer2, this.bufferMemory2, ioManager,
+				memManager.getPageSize(), limit2);
+			this.delegate = createHashIterator(firstInput, this.buffered2, false);
+		}
+	}
+	
+	/**
+	 * Checks whether the given number of pages suffices to run the adaptive hash join, including a potential
+	 * fallback to the sort-merge strategy.
+	 * 
+	 * @param numPages The number of memory pages.
+	 * @return True, if the memory is sufficient, false otherwise.
+	 */
+	public static boolean hasSufficientMemory(int numPages) {
+		final int sorterPages = (numPages - 2 * getNumBufferPages(numPages) - getNumMergePages(numPages)) / 2;
+		return sorterPages >= MIN_NUM_SORTER_PAGES;
+	}
+	
+	private static int getNumBufferPages(int numPages) {
+		return Math.max(numPages / BUFFER_MEMORY_FRACTION, 1);
+	}
+	
+	private static int getNumMergePages(int numPages) {
+		return Math.max(numPages / MERGE_MEMORY_FRACTION, 2);
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.util.MatchTaskIterator#open()
+	 */
+	@Override
+	public void open() throws IOException, MemoryAllocationException, InterruptedException
+	{
+		this.delegate.open();
+		
+		final BufferingIterator<?> initialBuildSide = this.buildFirst ? this.buffered1 : this.buffered2;
+		if (!initialBuildSide.isLimitExceeded()) {
+			// the estimate was good enough, the buffered records are not needed any more
+			releaseBuffers();
+			return;
+		}
+		
+		final int initialInput = this.buildFirst ? 1 : 2;
+		final StringBuilder message = new StringBuilder();
+		message.append("Build side (input ").append(initialInput).append(") of the hash join exceeded its limit of ")
+			.append(this.buildFirst ? this.limit1 : this.limit2).append(" records");
+		
+		closeDelegate();
+		initialBuildSide.replay();
+		
+		MutableObjectIterator<V1> in1 = this.buildFirst ? this.buffered1 : this.firstInput;
+		MutableObjectIterator<V2> in2 = this.buildFirst ? this.secondInput : this.buffered2;
+		
+		// try the other input as the build side, if the compiler gave an estimate for it
+		final long otherLimit = this.buildFirst ? this.limit2 : this.limit1;
+		if (otherLimit > 0 && this.running) {
+			final BufferingIterator<?> otherBuildSide;
+			if (this.buildFirst) {
+				this.buffered2 = new BufferingIterator<V2>(this.secondInput, this.serializer2, this.bufferMemory2,
+					this.ioManager, this.memManager.getPageSize(), otherLimit);
+				in2 = this.buffered2;
+				otherBuildSide = this.buffered2;
+			} else {
+				this.buffered1 = new BufferingIterator<V1>(this.firstInput, this.serializer1, this.bufferMemory1,
+					this.ioManager, this.memManager.getPageSize(), otherLimit);
+				in1 = this.buffered1;
+				otherBuildSide = this.buffered1;
+			}
+			
+			this.delegate = createHashIterator(in1, in2, !this.buildFirst);
+			this.delegate.open();
+			
+			if (!otherBuildSide.isLimitExceeded()) {
+				// the new build side is completely in the hash table, only the probe side needs its buffer
+				if (this.buildFirst) {
+					releaseBuffer2();
+				} else {
+					releaseBuffer1();
+				}
+				message.append("; switched the build side to input ").append(3 - initialInput).append('.');
+				this.adaptationMessage = message.toString();
+				return;
+			}
+			
+			message.append(", as did input ").append(3 - initialInput).append(" with its limit of ")
+				.append(otherLimit).append(" records");
+			closeDelegate();
+			otherBuildSide.replay();
+		}
+		
+		// fall back to the sort-merge strategy
+		message.append("; fell back to a sort-merge join.");
+		this.adaptationMessage = message.toString();
+		
+		this.sorter1 = new UnilateralSortMerger<V1>(this.memManager, this.ioManager, in1, this.ownerTask,
+			this.serializer1, this.comparator1.duplicate(), this.sorterMemory, this.maxNumFileHandles,
+			this.spillingThreshold);
+		this.sorter2 = new UnilateralSortMerger<V2>(this.memManager, this.ioManager, in2, this.ownerTask,
+			this.serializer2, this.comparator2.duplicate(), this.sorterMemory, this.maxNumFileHandles,
+			this.spillingThreshold);
+		
+		this.delegate = new MergeMatchIterator<V1, V2, O>(this.sorter1.getIterator(), this.sorter2.getIterator(),
+			this.serializer1, this.comparator1, this.serializer2, this.comparator2,
+			this.pairComparatorFactory.createComparator12(this.comparator1, this.comparator2),
+			this.memManager, this.ioManager, this.mergePages, this.ownerTask);
+		this.delegate.open();
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.util.MatchTaskIterator#close()
+	 */
+	@Override
+	public void close()
+	{
+		closeDelegate();
+		closeSorters();
+		releaseBuffers();
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.util.MatchTaskIterator#callWithNextKey(eu.stratosphere.pact.generic.stub.GenericMatcher, eu.stratosphere.pact.common.stubs.Collector)
+	 */
+	@Override
+	public boolean callWithNextKey(GenericMatcher<V1, V2, O> matchFunction, Collector<O> collector)
+	throws Exception
+	{
+		return this.delegate.callWithNextKey(matchFunction, collector);
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.util.MatchTaskIterator#abort()
+	 */
+	@Override
+	public void abort()
+	{
+		this.running = false;
+		final MatchTaskIterator<V1, V2, O> delegate = this.delegate;
+		if (delegate != null) {
+			delegate.abort();
+		}
+	}
+	
+	/**
+	 * Gets a description of how the iterator adapted its strategy.
+	 * 
+	 * @return The description, or <code>null</code>, if the iterator kept the initial hash join.
+	 */
+	public String getAdaptationMessage() {
+		return this.adaptationMessage;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private MatchTaskIterator<V1, V2, O> createHashIterator(MutableObjectIterator<V1> in1,
+			MutableObjectIterator<V2> in2, boolean buildSideFirst)
+	throws MemoryAllocationException
+	{
+		if (buildSideFirst) {
+			return new BuildFirstHashMatchIterator<V1, V2, O>(in1, in2, this.serializer1, this.comparator1,
+				this.serializer2, this.comparator2,
+				this.pairComparatorFactory.createComparator21(this.comparator1, this.comparator2),
+				this.memManager, this.ioManager, this.ownerTask, this.hashMemory);
+		} else {
+			return new BuildSecondHashMatchIterator<V1, V2, O>(in1, in2, this.serializer1, this.comparator1,
+				this.serializer2, this.comparator2,
+				this.pairComparatorFactory.createComparator12(this.comparator1, this.comparator2),
+				this.memManager, this.ioManager, this.ownerTask, this.hashMemory);
+		}
+	}
+	
+	private void closeDelegate() {
+		final MatchTaskIterator<V1, V2, O> delegate = this.delegate;
+		if (delegate != null) {
+			this.delegate = null;
+			delegate.close();
+		}
+	}
+	
+	private void closeSorters() {
+		if (this.sorter1 != null) {
+			this.sorter1.close();
+			this.sorter1 = null;
+		}
+		if (this.sorter2 != null) {
+			this.sorter2.close();
+			this.sorter2 = null;
+		}
+	}
+	
+	private void releaseBuffers() {
+		releaseBuffer1();
+		releaseBuffer2();
+	}
+	
+	private void releaseBuffer1() {
+		if (this.buffered1 != null) {
+			this.buffered1.close();
+			this.buffered1 = null;
+		}
+		if (this.bufferMemory1 != null) {
+			this.memManager.release(this.bufferMemory1);
+			this.bufferMemory1 = null;
+		}
+	}
+	
+	private void releaseBuffer2() {
+		if (this.buffered2 != null) {
+			this.buffered2.close();
+			this.buffered2 = null;
+		}
+		if (this.bufferMemory2 != null) {
+			this.memManager.release(this.bufferMemory2);
+			this.bufferMemory2 = null;
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * An iterator that copies the records it reads from its input into a spilling buffer, until the number of
+	 * records exceeds a limit. It then signals the end of the input. After a call to {@link #replay()}, it
+	 * returns the buffered records, followed by the remaining records of the input.
+	 */
+	private static final class BufferingIterator<T> implements MutableObjectIterator<T>
+	{
+		private final MutableObjectIterator<T> input;
+		
+		private final TypeSerializer<T> serializer;
+		
+		private final List<MemorySegment> memory;
+		
+		private final SpillingBuffer buffer;
+		
+		private final long limit;
+		
+		private long numBuffered;
+		
+		private long numReplayed;
+		
+		private DataInputView replayView;
+		
+		private boolean limitExceeded;
+		
+		
+		BufferingIterator(MutableObjectIterator<T> input, TypeSerializer<T> serializer, List<MemorySegment> memory,
+				IOManager ioManager, int pageSize, long limit)
+		{
+			this.input = input;
+			this.serializer = serializer;
+			this.limit = limit;
+			
+			// the buffer takes the segments from a copy, such that the original list keeps all of them
+			this.memory = memory;
+			this.buffer = new SpillingBuffer(ioManager, new ListMemorySegmentSource(new ArrayList<MemorySegment>(memory)),
+				pageSize);
+		}
+
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.util.MutableObjectIterator#next(java.lang.Object)
+		 */
+		@Override
+		public boolean next(T target) throws IOException {
+			if (this.replayView != null) {
+				if (this.numReplayed < this.numBuffered) {
+					this.serializer.deserialize(target, this.replayView);
+					this.numReplayed++;
+					return true;
+				} else {
+					return this.input.next(target);
+				}
+			}
+			else if (this.limitExceeded) {
+				return false;
+			}
+			else if (this.input.next(target)) {
+				this.serializer.serialize(target, this.buffer);
+				if (++this.numBuffered > this.limit) {
+					// keep the record in the buffer, but hide it from the consumer
+					this.limitExceeded = true;
+					return false;
+				}
+				return true;
+			}
+			else {
+				return false;
+			}
+		}
+		
+		boolean isLimitExceeded() {
+			return this.limitExceeded;
+		}
+		
+		void replay() throws IOException {
+			this.replayView = this.buffer.flip();
+			this.numReplayed = 0;
+		}
+		
+		void close() {
+			try {
+				this.buffer.close();
+			} catch (IOException ioex) {
+				LOG.error("Error closing the buffer of the adaptive hash join: " + ioex.getMessage(), ioex);
+			}
+			this.replayView = null;
+		}
+	}
+}
@@ -0,0 +1,596 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.hash;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import eu.stratosphere.nephele.services.memorymanager.AbstractPagedOutputView;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.generic.stub.GenericReducer;
+import eu.stratosphere.pact.generic.types.TypeComparator;
+import eu.stratosphere.pact.generic.types.TypeSerializer;
+import eu.stratosphere.pact.runtime.io.RandomAccessInputView;
+import eu.stratosphere.pact.runtime.util.MathUtils;
+
+/**
+ * A hash table for hash-based aggregation that keeps at most one record per key. Records that are inserted
+ * for a key already contained in the table are combined with the contained record right away, using the
+ * <code>combine()</code> method of the given reducer. The table works entirely on managed memory and never
+ * spills: if the memory is exhausted, {@link #insertOrCombine(Object)} returns <code>false</code> and the
+ * caller decides what to do with the contents (emit them, as a combiner does, or spill them, as a
+ * hash-based reducer does).
+ * <p>
+ * The table uses open addressing with linear probing over a power-of-two number of slots. The records
+ * themselves are serialized into an append-only record area. When the combined record is not longer than
+ * the record it replaces, it is written over the old record in place. Otherwise it is appended to the
+ * record area and the slot is redirected to it.
+ * 
+ * <hr>
+ * 
+ * The layout of a slot is as follows:
+ * 
+ * <pre>
+ * | pointer into the record area (8 bytes) | hashCode (4 bytes) | record length (4 bytes) |
+ * </pre>
+ *
+ * @param <T> The type of the records aggregated by the table.
+ */
+public class CombiningHashTable<T>
+{
+	/**
+	 * The length that is assumed for records of variable length types, when sizing the slot area.
+	 */
+	private static final int DEFAULT_RECORD_LEN = 24;
+	
+	/**
+	 * The maximal fraction of slots that may be occupied before the table reports to be full.
+	 */
+	private static final float MAX_LOAD_FACTOR = 0.75f;
+	
+	private static final int SLOT_SIZE_BITS = 4;
+	
+	private static final int SLOT_SIZE = 0x1 << SLOT_SIZE_BITS;
+	
+	private static final int SLOT_POINTER_OFFSET = 0;
+	
+	private static final int SLOT_HASH_OFFSET = 8;
+	
+	private static final int SLOT_LENGTH_OFFSET = 12;
+	
+	/**
+	 * Pointer value marking a slot that never held a record.
+	 */
+	private static final long EMPTY = -1L;
+	
+	/**
+	 * Pointer value marking a slot whose record has been handed back to the caller.
+	 */
+	private static final long REMOVED = -2L;
+	
+	// ------------------------------------------------------------------------
+	
+	private final TypeSerializer<T> serializer;
+	
+	private final TypeComparator<T> comparator;
+	
+	private final GenericReducer<T, ?> combiner;
+	
+	private final MemorySegment[] slots;
+	
+	private final ArrayList<MemorySegment> recordSegments;
+	
+	private final ArrayList<MemorySegment> freeSegments;
+	
+	private final RecordAreaOutputView appendView;
+	
+	private final RecordAreaOutputView inPlaceView;
+	
+	private final RandomAccessInputView readView;
+	
+	private final CombineValuesIterator<T> combineIterator;
+	
+	private final CombinedRecordCollector combineCollector;
+	
+	private final T reuse;
+	
+	private final int segmentSize;
+	
+	private final int slotsPerSegmentBits;
+	
+	private final int slotsPerSegmentMask;
+	
+	private final int slotMask;
+	
+	private final int maxOccupiedSlots;
+	
+	private final int fixedRecordLength;
+	
+	private int level;
+	
+	private int numEntries;
+	
+	private int numOccupiedSlots;
+	
+	private long numCombinedInPlace;
+	
+	private boolean closed;
+	
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Creates a new table that uses the given memory. The table needs at least two memory segments.
+	 * 
+	 * @param serializer The serializer for the records.
+	 * @param comparator The comparator that determines the key of the records.
+	 * @param combiner The reducer whose <code>combine()</code> method combines records with equal keys.
+	 * @param memory The memory segments to use.
+	 */
+	public CombiningHashTable(TypeSerializer<T> serializer, TypeComparator<T> comparator,
+			GenericReducer<T, ?> combiner, List<MemorySegment> memory)
+	{
+		if (serializer == null || comparator == null || combiner == null || memory == null) {
+			throw new NullPointerException();
+		}
+		if (memory.size() < 2) {
+			throw new IllegalArgumentException("The combining hash table needs at least two memory segments.");
+		}
+		
+		this.serializer = serializer;
+		this.comparator = comparator;
+		this.combiner = combiner;
+		this.segmentSize = memory.get(0).size();
+		this.fixedRecordLength = serializer.getLength() > 0 ? serializer.getLength() : -1;
+		
+		// split the memory between slots and records, according to the expected bytes per entry
+		final int recordLen = this.fixedRecordLength > 0 ? this.fixedRecordLength : DEFAULT_RECORD_LEN;
+		final double slotBytesPerEntry = SLOT_SIZE / MAX_LOAD_FACTOR;
+		final int numSlotSegments = MathUtils.roundDownToPowerOf2(Math.max(1, Math.min(memory.size() - 1,
+			(int) (memory.size() * slotBytesPerEntry / (slotBytesPerEntry + recordLen)))));
+		
+		this.slots = new MemorySegment[numSlotSegments];
+		this.freeSegments = new ArrayList<MemorySegment>(memory.size());
+		for (int i = 0; i < memory.size(); i++) {
+			if (i < numSlotSegments) {
+				this.slots[i] = memory.get(i);
+			} else {
+				this.freeSegments.add(memory.get(i));
+			}
+		}
+		
+		final int slotsPerSegment = this.segmentSize >>> SLOT_SIZE_BITS;
+		this.slotsPerSegmentBits = MathUtils.log2strict(slotsPerSegment);
+		this.slotsPerSegmentMask = slotsPerSegment - 1;
+		this.slotMask = numSlotSegments * slotsPerSegment - 1;
+		this.maxOccupiedSlots = (int) ((this.slotMask + 1) * MAX_LOAD_FACTOR);
+		
+		this.recordSegments = new ArrayList<MemorySegment>(memory.size());
+		this.recordSegments.add(this.freeSegments.remove(this.freeSegments.size() - 1));
+		this.appendView = new RecordAreaOutputView(this.segmentSize, true);
+		this.inPlaceView = new RecordAreaOutputView(this.segmentSize, false);
+		this.readView = new RandomAccessInputView(this.recordSegments, this.segmentSize);
+		
+		this.combineIterator = new CombineValuesIterator<T>();
+		this.combineCollector = new CombinedRecordCollector();
+		this.reuse = serializer.createInstance();
+		
+		clearSlots();
+	}
+	
+	// ------------------------------------------------------------------------
+	//                              Life-Cycle
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Removes all records from the table and sets the level of the hash function. Tables that process
+	 * records which were partitioned by a table on level <i>n</i> should use level <i>n+1</i>, such that
+	 * the records spread over all slots.
+	 * 
+	 * @param level The level of the hash function.
+	 */
+	public void reset(int level)
+	{
+		if (this.closed) {
+			throw new IllegalStateException("The hash table has been closed.");
+		}
+		
+		this.level = level;
+		
+		// give back all but the first record segment
+		while (this.recordSegments.size() > 1) {
+			this.freeSegments.add(this.recordSegments.remove(this.recordSegments.size() - 1));
+		}
+		this.appendView.setWritePosition(0);
+		clearSlots();
+	}
+	
+	/**
+	 * Closes the table and returns all its memory.
+	 * 
+	 * @return All memory segments used by the table.
+	 */
+	public List<MemorySegment> close()
+	{
+		if (this.closed) {
+			return new ArrayList<MemorySegment>(0);
+		}
+		this.closed = true;
+		
+		final ArrayList<MemorySegment> memory = new ArrayList<MemorySegment>(
+			this.slots.length + this.recordSegments.size() + this.freeSegments.size());
+		for (int i = 0; i < this.slots.length; i++) {
+			memory.add(this.slots[i]);
+			this.slots[i] = null;
+		}
+		memory.addAll(this.recordSegments);
+		memory.addAll(this.freeSegments);
+		this.recordSegments.clear();
+		this.freeSegments.clear();
+		return memory;
+	}
+	
+	private void clearSlots()
+	{
+		for (int i = 0; i < this.slots.length; i++) {
+			final MemorySegment seg = this.slots[i];
+			for (int off = 0; off < this.segmentSize; off += SLOT_SIZE) {
+				seg.putLong(off + SLOT_POINTER_OFFSET, EMPTY);
+			}
+		}
+		this.numEntries = 0;
+		this.numOccupiedSlots = 0;
+	}
+	
+	// ------------------------------------------------------------------------
+	//                              Accessors
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Gets the number of distinct keys currently held by the table.
+	 * 
+	 * @return The number of records in the table.
+	 */
+	public int size() {
+		return this.numEntries;
+	}
+	
+	/**
+	 * Gets the number of slots of the table.
+	 * 
+	 * @return The number of slots.
+	 */
+	public int getNumSlots() {
+		return this.slotMask + 1;
+	}
+	
+	/**
+	 * Gets the number of combined records that could be written over the record they replaced.
+	 * 
+	 * @return The number of in-place combinations.
+	 */
+	public long getNumCombinedInPlace() {
+		return this.numCombinedInPlace;
+	}
+	
+	// ------------------------------------------------------------------------
+	//                          Insertion and Combination
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Inserts the given record into the table, or combines it with the record for the same key, if the
+	 * table already contains one.
+	 * <p>
+	 * If the memory of the table is exhausted, the method returns <code>false</code>. In that case, the
+	 * given record holds the data that still needs to be inserted. That is either the record as it was
+	 * given, or, if the table held a record with the same key, the combination of both. In the latter case,
+	 * the table removed its own record for that key.
+	 * 
+	 * @param record The record to insert or combine.
+	 * @return True, if the record was inserted or combined, false if the table has no memory left.
+	 * @throws Exception Thrown, if the serialization or the combine function failed.
+	 */
+	public boolean insertOrCombine(T record) throws Exception
+	{
+		final int hashCode = MutableHashTable.hash(this.comparator.hash(record), this.level);
+		boolean referenceSet = false;
+		
+		int slot = hashCode & this.slotMask;
+		while (true) {
+			final MemorySegment seg = this.slots[slot >>> this.slotsPerSegmentBits];
+			final int off = (slot & this.slotsPerSegmentMask) << SLOT_SIZE_BITS;
+			final long pointer = seg.getLong(off + SLOT_POINTER_OFFSET);
+			
+			if (pointer == EMPTY) {
+				if (this.numOccupiedSlots >= this.maxOccupiedSlots) {
+					return false;
+				}
+				final long start = this.appendView.getWritePosition();
+				if (!append(record)) {
+					return false;
+				}
+				seg.putLong(off + SLOT_POINTER_OFFSET, start);
+				seg.putInt(off + SLOT_HASH_OFFSET, hashCode);
+				seg.putInt(off + SLOT_LENGTH_OFFSET, (int) (this.appendView.getWritePosition() - start));
+				this.numEntries++;
+				this.numOccupiedSlots++;
+				return true;
+			}
+			else if (pointer != REMOVED && seg.getInt(off + SLOT_HASH_OFFSET) == hashCode) {
+				if (!referenceSet) {
+					this.comparator.setReference(record);
+					referenceSet = true;
+				}
+				this.readView.setReadPosition(pointer);
+				this.serializer.deserialize(this.reuse, this.readView);
+				if (this.comparator.equalToReference(this.reuse)) {
+					return combine(seg, off, pointer, record);
+				}
+			}
+			
+			slot = (slot + 1) & this.slotMask;
+		}
+	}
+	
+	private boolean combine(MemorySegment seg, int off, long pointer, T record) throws Exception
+	{
+		final CombinedRecordCollector collector = this.combineCollector;
+		collector.reset(pointer);
+		this.combineIterator.set(this.reuse, record);
+		this.combiner.combine(this.combineIterator, collector);
+		
+		if (collector.result == null) {
+			throw new IllegalStateException("The combine function did not emit a record.");
+		}
+		if (collector.exhausted) {
+			// hand the combined record back and remove the table's record for that key
+			if (collector.result != record) {
+				this.serializer.copyTo(collector.result, record);
+			}
+			seg.putLong(off + SLOT_POINTER_OFFSET, REMOVED);
+			this.numEntries--;
+			return false;
+		}
+		
+		if (this.fixedRecordLength > 0) {
+			// the collector wrote the record over the old one
+			this.numCombinedInPlace++;
+			return true;
+		}
+		
+		final int oldLength = seg.getInt(off + SLOT_LENGTH_OFFSET);
+		final int newLength = (int) (this.appendView.getWritePosition() - collector.start);
+		if (newLength <= oldLength) {
+			// copy the appended record over the old one and release the appended bytes
+			this.inPlaceView.setWritePosition(pointer);
+			this.readView.setReadPosition(collector.start);
+			this.inPlaceView.write(this.readView, newLength);
+			this.appendView.setWritePosition(collector.start);
+			this.numCombinedInPlace++;
+		} else {
+			seg.putLong(off + SLOT_POINTER_OFFSET, collector.start);
+		}
+		seg.putInt(off + SLOT_LENGTH_OFFSET, newLength);
+		return true;
+	}
+	
+	/**
+	 * Serializes the record at the end of the record area.
+	 * 
+	 * @return True, if the record could be appended, false if the memory is exhausted.
+	 */
+	private boolean append(T record) throws IOException
+	{
+		final long start = this.appendView.getWritePosition();
+		try {
+			this.serializer.serialize(record, this.appendView);
+			return true;
+		} catch (EOFException eofex) {
+			this.appendView.setWritePosition(start);
+			return false;
+		}
+	}
+	
+	// ------------------------------------------------------------------------
+	//                              Retrieval
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Gets an iterator over all records in the table. The iterator is invalidated by any modification
+	 * of the table.
+	 * 
+	 * @return An iterator over the records in the table.
+	 */
+	public MutableObjectIterator<T> getEntryIterator() {
+		return new EntryIterator();
+	}
+	
+	/**
+	 * Iterator over the slots that hold a record.
+	 */
+	private final class EntryIterator implements MutableObjectIterator<T>
+	{
+		private int nextSlot;
+		
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.util.MutableObjectIterator#next(java.lang.Object)
+		 */
+		@Override
+		public boolean next(T target) throws IOException
+		{
+			final int numSlots = slotMask + 1;
+			while (this.nextSlot < numSlots) {
+				final int slot = this.nextSlot++;
+				final MemorySegment seg = slots[slot >>> slotsPerSegmentBits];
+				final long pointer = seg.getLong(((slot & slotsPerSegmentMask) << SLOT_SIZE_BITS) + SLOT_POINTER_OFFSET);
+				if (pointer >= 0) {
+					readView.setReadPosition(pointer);
+					serializer.deserialize(target, readView);
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+	
+	// ------------------------------------------------------------------------
+	//                              Utilities
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Collects the single record emitted by the combine function and serializes it. Records of fixed length
+	 * types are written directly over the record they replace, all others are appended to the record area.
+	 */
+	private final class CombinedRecordCollector implements Collector<T>
+	{
+		private T result;
+		
+		private long pointer;
+		
+		private long start;
+		
+		private boolean exhausted;
+		
+		void reset(long pointer) {
+			this.result = null;
+			this.pointer = pointer;
+			this.exhausted = false;
+		}
+		
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.stubs.Collector#collect(java.lang.Object)
+		 */
+		@Override
+		public void collect(T record)
+		{
+			if (this.result != null) {
+				throw new IllegalStateException("The combine function emitted more than one record for a key.");
+			}
+			this.result = record;
+			
+			try {
+				if (fixedRecordLength > 0) {
+					inPlaceView.setWritePosition(this.pointer);
+					serializer.serialize(record, inPlaceView);
+				} else {
+					this.start = appendView.getWritePosition();
+					this.exhausted = !append(record);
+				}
+			} catch (IOException ioex) {
+				throw new RuntimeException("Could not serialize the combined record: " + ioex.getMessage(), ioex);
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.stubs.Collector#close()
+		 */
+		@Override
+		public void close() {}
+	}
+	
+	/**
+	 * Iterator over the two records that are combined.
+	 */
+	private static final class CombineValuesIterator<E> implements Iterator<E>
+	{
+		private E first;
+		
+		private E second;
+		
+		private int position;
+		
+		void set(E first, E second) {
+			this.first = first;
+			this.second = second;
+			this.position = 0;
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return this.position < 2;
+		}
+
+		@Override
+		public E next() {
+			switch (this.position++) {
+			case 0:
+				return this.first;
+			case 1:
+				return this.second;
+			default:
+				this.position = 2;
+				throw new NoSuchElementException();
+			}
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+	
+	/**
+	 * Output view over the record area. The appending view takes further segments from the free memory
+	 * when it runs past the last record segment; the view that overwrites records in place never does.
+	 */
+	private final class RecordAreaOutputView extends AbstractPagedOutputView
+	{
+		private final boolean mayGrow;
+		
+		private final int segmentSizeBits;
+		
+		private int segmentNum;
+		
+		RecordAreaOutputView(int segmentSize, boolean mayGrow) {
+			super(segmentSize, 0);
+			this.mayGrow = mayGrow;
+			this.segmentSizeBits = MathUtils.log2strict(segmentSize);
+			setWritePosition(0);
+		}
+		
+		long getWritePosition() {
+			return (((long) this.segmentNum) << this.segmentSizeBits) + getCurrentPositionInSegment();
+		}
+		
+		void setWritePosition(long position) {
+			this.segmentNum = (int) (position >>> this.segmentSizeBits);
+			seekOutput(recordSegments.get(this.segmentNum), (int) (position & (segmentSize - 1)));
+		}
+
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.nephele.services.memorymanager.AbstractPagedOutputView#nextSegment(eu.stratosphere.nephele.services.memorymanager.MemorySegment, int)
+		 */
+		@Override
+		protected MemorySegment nextSegment(MemorySegment current, int positionInCurrent) throws EOFException
+		{
+			if (this.segmentNum + 1 < recordSegments.size()) {
+				return recordSegments.get(++this.segmentNum);
+			}
+			if (this.mayGrow && !freeSegments.isEmpty()) {
+				final MemorySegment next = freeSegments.remove(freeSegments.size() - 1);
+				recordSegments.add(next);
+				this.segmentNum++;
+				return next;
+			}
+			throw new EOFException();
+		}
+	}
+}
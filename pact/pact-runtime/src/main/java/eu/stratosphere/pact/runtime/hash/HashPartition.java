@@ -88,6 +88,8 @@ public class HashPartition<BT, PT> extends AbstractPagedInputView implements See
 	
 	protected int recursionLevel;									// the recursion level on which this partition lives
 	
+	private long parentBuildSideRecordCount = -1;		// number of build-side records in the partition this one was split from
+	
 	// ------------------------------------------ Spilling ----------------------------------------------
 	
 	private BlockChannelWriter buildSideChannel;		// the channel writer for the build side, if partition is spilled
@@ -213,6 +215,20 @@ public class HashPartition<BT, PT> extends AbstractPagedInputView implements See
 		return this.buildSideRecordCounter;
 	}
 	
+	/**
+	 * Gets the number of build-side records of the spilled partition that was re-partitioned into this
+	 * partition, or <code>-1</code>, if this partition was created by the initial build.
+	 * 
+	 * @return The number of build-side records of the parent partition, or -1.
+	 */
+	public long getParentBuildSideRecordCount() {
+		return this.parentBuildSideRecordCount;
+	}
+	
+	void setParentBuildSideRecordCount(long parentBuildSideRecordCount) {
+		this.parentBuildSideRecordCount = parentBuildSideRecordCount;
+	}
+	
 	public long getProbeSideRecordCount() {
 		return this.probeSideRecordCounter;
 	}
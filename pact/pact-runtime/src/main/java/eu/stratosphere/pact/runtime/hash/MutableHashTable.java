@@ -39,6 +39,7 @@ import eu.stratosphere.pact.generic.types.TypePairComparator;
 import eu.stratosphere.pact.generic.types.TypeSerializer;
 import eu.stratosphere.pact.runtime.io.ChannelReaderInputViewIterator;
 import eu.stratosphere.nephele.services.memorymanager.MemorySegmentSource;
+import eu.stratosphere.pact.runtime.util.BloomFilter;
 import eu.stratosphere.pact.runtime.util.MathUtils;
 
 
@@ -51,6 +52,19 @@ import eu.stratosphere.pact.runtime.util.MathUtils;
  * "Hash joins and hash teams in Microsoft SQL Server", by Goetz Graefe et al. In its current state, the
  * implementation lacks features like dynamic role reversal, partition tuning, or histogram guided partitioning. 
  *<p>
+ * When a partition is spilled while the build side is consumed, the hash codes and pointers in the buckets
+ * of that partition are no longer needed. The table then turns the body of each such bucket into a bloom
+ * filter over the hash codes of the build-side records that fall into the bucket, and keeps adding to it
+ * while further build-side records are written to the spilled partition. In the probe phase, probe-side
+ * records whose hash code is not contained in the bucket's filter cannot have a join partner and are
+ * dropped instead of being spilled with the partition's probe side.
+ *<p>
+ * Spilled partitions that cannot be made memory resident by re-partitioning, because they are dominated by
+ * a few heavily duplicated keys, are not partitioned further. Once a partition keeps most of its parent's
+ * records, or the maximum recursion depth is reached, the partition is joined in a block-nested-loop
+ * fashion instead: the build side is read in blocks that fit into memory, each block is indexed through
+ * the table, and the partition's complete probe side is streamed against every block.
+ *<p>
  *
  *
  * <hr>
@@ -94,10 +108,23 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 	// ------------------------------------------------------------------------
 	
 	/**
-	 * The maximum number of recursive partitionings that the join does before giving up.
+	 * The maximum number of recursive partitionings that the join does before falling back to
+	 * joining a spilled partition block-wise with nested loops.
 	 */
 	private static final int MAX_RECURSION_DEPTH = 3;
 	
+	/**
+	 * The fraction of its parent's build-side records above which a re-partitioned partition is considered
+	 * not to shrink. Such a partition is joined block-wise with nested loops rather than partitioned again.
+	 */
+	private static final double NON_SHRINKING_RECORD_FRACTION = 0.8;
+	
+	/**
+	 * The number of memory segments that are kept free while a block of the nested-loop fallback is built.
+	 * They are used for the probe-side reader, the last record, and the last overflow bucket of the block.
+	 */
+	private static final int FALLBACK_RESERVE_SEGMENTS = 4;
+	
 	/**
 	 * The minimum number of memory segments the hash join needs to be supplied with in order to work.
 	 */
@@ -184,13 +211,22 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 	 */
 	private static final long BUCKET_FORWARD_POINTER_NOT_SET = ~0x0L;
 	
-//	private static final byte BUCKET_STATUS_SPILLED = 1;
-	
 	/**
 	 * Constant for the bucket status, indicating that the bucket is in memory.
 	 */
 	private static final byte BUCKET_STATUS_IN_MEMORY = 0;
 	
+	/**
+	 * Constant for the bucket status, indicating that the bucket's partition is spilled and that the
+	 * bucket body holds a bloom filter over the hash codes of the partition's build-side records.
+	 */
+	private static final byte BUCKET_STATUS_IN_FILTER = 1;
+	
+	/**
+	 * The number of bytes of a bucket that are used for the bloom filter, once the bucket's partition is spilled.
+	 */
+	private static final int BUCKET_FILTER_BYTES = HASH_BUCKET_SIZE - BUCKET_HEADER_LENGTH;
+	
 	// ------------------------------------------------------------------------
 	//                              Members
 	// ------------------------------------------------------------------------
@@ -341,6 +377,79 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 	protected boolean keepBuildSidePartitions = false;
 	
 	protected boolean furtherPartitioning = false;
+	
+	/**
+	 * Flag indicating whether the buckets of spilled partitions are turned into bloom filters that are
+	 * used to drop probe-side records without a join partner.
+	 */
+	private final boolean useBloomFilters;
+	
+	/**
+	 * The bloom filter that is pointed at the body of the bucket that is currently accessed.
+	 */
+	private final BloomFilter bloomFilter;
+	
+	/**
+	 * Buffer for the hash codes of a bucket and its overflow buckets, while they are turned into a bloom filter.
+	 */
+	private int[] bucketHashCodes;
+	
+	/**
+	 * The number of probe-side records that were dropped, because the bloom filter proved that they have no
+	 * partner in their spilled partition.
+	 */
+	private long numProbeRecordsFiltered;
+	
+	/**
+	 * The spilled partition that is currently joined block-wise with nested loops, or null.
+	 */
+	private HashPartition<BT, PT> currentFallbackPartition;
+	
+	/**
+	 * The reader for the build side of the partition that is joined block-wise. It is read across blocks.
+	 */
+	private BlockChannelReader fallbackBuildSideReader;
+	
+	/**
+	 * The view over the build side of the partition that is joined block-wise.
+	 */
+	private ChannelReaderInputView fallbackBuildSideView;
+	
+	/**
+	 * The iterator over the build side of the partition that is joined block-wise, or null, when the
+	 * build side is exhausted and the current block is the last one.
+	 */
+	private ChannelReaderInputViewIterator<BT> fallbackBuildSideIterator;
+	
+	/**
+	 * The build-side record that did not fit into the previous block of the nested-loop fallback.
+	 */
+	private BT fallbackBuildSideRecord;
+	
+	/**
+	 * Flag indicating that the fallback record has been read but not yet inserted into a block.
+	 */
+	private boolean fallbackRecordPending;
+	
+	/**
+	 * The number of spilled partitions that were processed in a recursive step.
+	 */
+	private int numRecursions;
+	
+	/**
+	 * The deepest recursion level for which a table was built.
+	 */
+	private int maxRecursionDepth;
+	
+	/**
+	 * The number of spilled partitions that were joined block-wise with nested loops.
+	 */
+	private int numFallbackPartitions;
+	
+	/**
+	 * The number of blocks in which the build sides of the fallback partitions were joined.
+	 */
+	private int numFallbackBlocks;
 
 	// ------------------------------------------------------------------------
 	//                         Construction and Teardown
@@ -358,6 +467,15 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 			TypeComparator<BT> buildSideComparator, TypeComparator<PT> probeSideComparator,
 			TypePairComparator<PT, BT> comparator, List<MemorySegment> memorySegments,
 			IOManager ioManager, int avgRecordLen)
+	{
+		this(buildSideSerializer, probeSideSerializer, buildSideComparator, probeSideComparator, comparator,
+			memorySegments, ioManager, avgRecordLen, true);
+	}
+	
+	public MutableHashTable(TypeSerializer<BT> buildSideSerializer, TypeSerializer<PT> probeSideSerializer,
+			TypeComparator<BT> buildSideComparator, TypeComparator<PT> probeSideComparator,
+			TypePairComparator<PT, BT> comparator, List<MemorySegment> memorySegments,
+			IOManager ioManager, int avgRecordLen, boolean useBloomFilters)
 	{
 		// some sanity checks first
 		if (memorySegments == null) {
@@ -401,6 +519,12 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 		this.partitionsBeingBuilt = new ArrayList<HashPartition<BT, PT>>();
 		this.partitionsPending = new ArrayList<HashPartition<BT, PT>>();
 		
+		// a bucket filter keeps receiving the hash codes of all build-side records that go to its partition
+		// after it was spilled, so it is sized for one byte per record rather than for the bucket's capacity
+		this.useBloomFilters = useBloomFilters;
+		this.bloomFilter = useBloomFilters ? new BloomFilter(BUCKET_FILTER_BYTES, BUCKET_FILTER_BYTES) : null;
+		this.bucketHashCodes = useBloomFilters ? new int[4 * NUM_ENTRIES_PER_BUCKET] : null;
+		
 		// because we allow to open and close multiple times, the state is initially closed
 		this.closed = true;
 	}
@@ -432,6 +556,11 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 		}
 		// open builds the initial table by consuming the build-side input
 		this.currentRecursionDepth = 0;
+		this.numProbeRecordsFiltered = 0;
+		this.numRecursions = 0;
+		this.maxRecursionDepth = 0;
+		this.numFallbackPartitions = 0;
+		this.numFallbackBlocks = 0;
 		buildInitialTable(buildSide);
 		
 		// the first prober is the probe-side input
@@ -466,6 +595,14 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 				this.bucketIterator.set(bucket, p.overflowSegments, p, hash, bucketInSegmentOffset);
 				return true;
 			}
+			else if (this.useBloomFilters && bucket.get(bucketInSegmentOffset + HEADER_STATUS_OFFSET) == BUCKET_STATUS_IN_FILTER) {
+				this.bloomFilter.setBitsLocation(bucket, bucketInSegmentOffset + BUCKET_HEADER_LENGTH);
+				if (this.bloomFilter.testHash(hash)) {
+					p.insertIntoProbeBuffer(next);
+				} else {
+					this.numProbeRecordsFiltered++;
+				}
+			}
 			else {
 				p.insertIntoProbeBuffer(next);
 			}
@@ -491,9 +628,22 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 		releaseTable();
 
 		if (this.currentSpilledProbeSide != null) {
-			this.currentSpilledProbeSide.closeAndDelete();
+			if (this.fallbackBuildSideIterator != null) {
+				// the probe side is read again against the next block of the fallback partition
+				this.currentSpilledProbeSide.close();
+			} else {
+				this.currentSpilledProbeSide.closeAndDelete();
+			}
 			this.currentSpilledProbeSide = null;
 		}
+		
+		// check if the partition that is joined block-wise has more blocks
+		if (this.fallbackBuildSideIterator != null) {
+			buildNextFallbackBlock();
+			setProbeSideFromSpilledPartition(this.currentFallbackPartition);
+			return nextRecord();
+		}
+		this.currentFallbackPartition = null;
 
 		// check if there are pending partitions
 		if (!this.partitionsPending.isEmpty())
@@ -503,17 +653,8 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 			// build the next table
 			buildTableFromSpilledPartition(p);
 
-			// set the probe side - gather memory segments for reading
-			LinkedBlockingQueue<MemorySegment> returnQueue = new LinkedBlockingQueue<MemorySegment>();
-			this.currentSpilledProbeSide = this.ioManager.createBlockChannelReader(p.getProbeSideChannel().getChannelID(), returnQueue);
-
-			List<MemorySegment> memory = new ArrayList<MemorySegment>();
-			memory.add(getNextBuffer());
-			memory.add(getNextBuffer());
-
-			ChannelReaderInputViewIterator<PT> probeReader = new ChannelReaderInputViewIterator<PT>(this.currentSpilledProbeSide,
-				returnQueue, memory, this.availableMemory, this.probeSideSerializer, p.getProbeSideBlockCount());
-			this.probeIterator.set(probeReader);
+			// set the probe side
+			setProbeSideFromSpilledPartition(p);
 
 			// unregister the pending partition
 			this.partitionsPending.remove(0);
@@ -527,6 +668,27 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 			return false;
 		}
 	}
+	
+	/**
+	 * Sets up the probe iterator to read the spilled probe side of the given partition.
+	 * 
+	 * @param p The partition whose probe side is read.
+	 * @throws IOException Thrown, if the reader for the probe side could not be opened.
+	 */
+	private void setProbeSideFromSpilledPartition(final HashPartition<BT, PT> p) throws IOException {
+		// gather memory segments for reading
+		LinkedBlockingQueue<MemorySegment> returnQueue = new LinkedBlockingQueue<MemorySegment>();
+		this.currentSpilledProbeSide = this.ioManager.createBlockChannelReader(p.getProbeSideChannel().getChannelID(), returnQueue);
+
+		List<MemorySegment> memory = new ArrayList<MemorySegment>();
+		memory.add(getNextBuffer());
+		memory.add(getNextBuffer());
+
+		ChannelReaderInputViewIterator<PT> probeReader = new ChannelReaderInputViewIterator<PT>(this.currentSpilledProbeSide,
+			returnQueue, memory, this.availableMemory, this.probeSideSerializer, p.getProbeSideBlockCount());
+		this.probeIterator.set(probeReader);
+	}
+	
 	/**
 	 * @return
 	 * @throws IOException
@@ -606,6 +768,55 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 		return this.bucketIterator;
 	}
 
+	/**
+	 * Gets the number of probe-side records that were not spilled, because the bloom filter of their
+	 * spilled partition proved that they have no join partner.
+	 * 
+	 * @return The number of probe-side records dropped by the bloom filters.
+	 */
+	public long getNumProbeRecordsFiltered() {
+		return this.numProbeRecordsFiltered;
+	}
+
+	/**
+	 * Gets the number of spilled partitions that were processed in a recursive step, either by building a
+	 * table from them, or by joining them block-wise with nested loops.
+	 * 
+	 * @return The number of recursively processed partitions.
+	 */
+	public int getNumRecursions() {
+		return this.numRecursions;
+	}
+	
+	/**
+	 * Gets the deepest recursion level that a spilled partition was processed on.
+	 * 
+	 * @return The maximal recursion depth, zero, if no partition was spilled.
+	 */
+	public int getMaxRecursionDepth() {
+		return this.maxRecursionDepth;
+	}
+	
+	/**
+	 * Gets the number of spilled partitions that could not be reduced by re-partitioning and were joined
+	 * block-wise with nested loops.
+	 * 
+	 * @return The number of partitions joined through the fallback.
+	 */
+	public int getNumFallbackPartitions() {
+		return this.numFallbackPartitions;
+	}
+	
+	/**
+	 * Gets the total number of build-side blocks in which the fallback partitions were joined. Each block
+	 * causes one pass over the probe side of its partition.
+	 * 
+	 * @return The number of blocks joined through the fallback.
+	 */
+	public int getNumFallbackBlocks() {
+		return this.numFallbackBlocks;
+	}
+
 	public MutableObjectIterator<BT> getPartitionEntryIterator() {
 		return new HashPartitionIterator<BT, PT>(this.partitionsBeingBuilt.iterator(), this.buildSideSerializer);
 	}
@@ -645,6 +856,21 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 			}
 		}
 		
+		// clear the build side of the partition that is joined block-wise
+		if (this.fallbackBuildSideIterator != null) {
+			try {
+				if (!this.fallbackBuildSideView.isClosed()) {
+					this.availableMemory.addAll(this.fallbackBuildSideView.close());
+				}
+				this.fallbackBuildSideReader.deleteChannel();
+			}
+			catch (Throwable t) {
+				LOG.warn("Could not close and delete the temp file for the build side of the fallback partition.", t);
+			}
+			this.fallbackBuildSideIterator = null;
+		}
+		this.currentFallbackPartition = null;
+		
 		// clear the partitions that are still to be done (that have files on disk)
 		for (int i = 0; i < this.partitionsPending.size(); i++) {
 			final HashPartition<BT, PT> p = this.partitionsPending.get(i);
@@ -717,17 +943,18 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 	protected void buildTableFromSpilledPartition(final HashPartition<BT, PT> p) throws IOException {
 		
 		final int nextRecursionLevel = p.getRecursionLevel() + 1;
-		if (nextRecursionLevel > MAX_RECURSION_DEPTH) {
-			throw new RuntimeException("Hash join exceeded maximum number of recursions, without reducing "
-				+ "partitions enough to be memory resident. Probably cause: Too many duplicate keys.");
-		}
+		this.numRecursions++;
+		this.maxRecursionDepth = Math.max(this.maxRecursionDepth, nextRecursionLevel);
 		
-		// we distinguish two cases here:
+		// we distinguish three cases here:
 		// 1) The partition fits entirely into main memory. That is the case if we have enough buffers for
 		//    all partition segments, plus enough buffers to hold the table structure.
 		//    --> We read the partition in as it is and create a hashtable that references only
 		//        that single partition.
-		// 2) We can not guarantee that enough memory segments are available and read the partition
+		// 2) The partition does not fit, but re-partitioning did not shrink it before, or the maximum
+		//    recursion depth is reached.
+		//    --> We join the partition block-wise with nested loops.
+		// 3) We can not guarantee that enough memory segments are available and read the partition
 		//    in, distributing its data among newly created partitions.
 		final int totalBuffersAvailable = this.availableMemory.size() + this.writeBehindBuffersAvailable;
 		if (totalBuffersAvailable != this.totalNumBuffers - this.numWriteBehindBuffers) {
@@ -780,6 +1007,11 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 				insertBucketEntry(newPart, bucket, bucketInSegmentPos, hashCode, pointer);
 			}
 		}
+		else if (nextRecursionLevel > MAX_RECURSION_DEPTH || (p.getParentBuildSideRecordCount() > 0 &&
+				p.getBuildSideRecordCount() > p.getParentBuildSideRecordCount() * NON_SHRINKING_RECORD_FRACTION))
+		{
+			startFallback(p);
+		}
 		else {
 			// we need to partition and partially spill
 			final int avgRecordLenPartition = (int) (((long) p.getBuildSideBlockCount()) * 
@@ -816,14 +1048,100 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 				insertIntoTable(rec, hashCode);
 			}
 
-			// finalize the partitions
+			// finalize the partitions and remember from how many records they were split
 			for (int i = 0; i < this.partitionsBeingBuilt.size(); i++) {
 				HashPartition<BT, PT> part = this.partitionsBeingBuilt.get(i);
 				part.finalizeBuildPhase(this.ioManager, this.currentEnumerator, this.writeBehindBuffers);
+				part.setParentBuildSideRecordCount(p.getBuildSideRecordCount());
 			}
 		}
 	}
 	
+	/**
+	 * Starts joining the given spilled partition block-wise with nested loops and builds the table for
+	 * the first block of its build side.
+	 * 
+	 * @param p The partition to join block-wise.
+	 * @throws IOException Thrown, if the build side of the partition could not be read.
+	 */
+	private void startFallback(final HashPartition<BT, PT> p) throws IOException {
+		if (LOG.isInfoEnabled()) {
+			LOG.info("Hash join partition with " + p.getBuildSideRecordCount() + " build-side records " +
+				(p.getParentBuildSideRecordCount() > 0 ? "(split from " + p.getParentBuildSideRecordCount() + ") " : "") +
+				"on recursion level " + p.getRecursionLevel() + " cannot be reduced by re-partitioning. " +
+				"Joining it block-wise with nested loops.");
+		}
+		this.numFallbackPartitions++;
+		this.currentFallbackPartition = p;
+		
+		final List<MemorySegment> segments = new ArrayList<MemorySegment>(2);
+		segments.add(getNextBuffer());
+		segments.add(getNextBuffer());
+		
+		this.fallbackBuildSideReader = this.ioManager.createBlockChannelReader(p.getBuildSideChannel().getChannelID());
+		this.fallbackBuildSideView = new HeaderlessChannelReaderInputView(this.fallbackBuildSideReader, segments,
+					p.getBuildSideBlockCount(), p.getLastSegmentLimit(), false);
+		this.fallbackBuildSideIterator = new ChannelReaderInputViewIterator<BT>(this.fallbackBuildSideView, 
+					this.availableMemory, this.buildSideSerializer);
+		if (this.fallbackBuildSideRecord == null) {
+			this.fallbackBuildSideRecord = this.buildSideSerializer.createInstance();
+		}
+		this.fallbackRecordPending = false;
+		
+		buildNextFallbackBlock();
+	}
+	
+	/**
+	 * Reads the next block of the build side of the partition that is joined block-wise and indexes it
+	 * through a table with a single in-memory partition. The block ends when only the reserved memory
+	 * segments remain, or when the build side is exhausted. In the latter case, the build side's file
+	 * is deleted.
+	 * 
+	 * @throws IOException Thrown, if the build side of the partition could not be read.
+	 */
+	private void buildNextFallbackBlock() throws IOException {
+		final HashPartition<BT, PT> p = this.currentFallbackPartition;
+		final int nextRecursionLevel = p.getRecursionLevel() + 1;
+		this.numFallbackBlocks++;
+		
+		// size the table for the number of records that fit into the remaining memory
+		final int totalBuffersAvailable = this.availableMemory.size() + this.writeBehindBuffersAvailable;
+		final int avgRecordLenPartition = (int) (((long) p.getBuildSideBlockCount()) * 
+				this.segmentSize / p.getBuildSideRecordCount());
+		final long numRecordsInBlock = ((long) totalBuffersAvailable - FALLBACK_RESERVE_SEGMENTS) * this.segmentSize / 
+				(avgRecordLenPartition + RECORD_OVERHEAD_BYTES);
+		final int numBuckets = (int) Math.min(numRecordsInBlock / NUM_ENTRIES_PER_BUCKET + 1, Integer.MAX_VALUE);
+		
+		createPartitions(1, nextRecursionLevel);
+		initTable(numBuckets, (byte) 1);
+		
+		final ChannelReaderInputViewIterator<BT> inIter = this.fallbackBuildSideIterator;
+		final TypeComparator<BT> btComparator = this.buildSideComparator;
+		final BT rec = this.fallbackBuildSideRecord;
+		
+		boolean more = this.fallbackRecordPending || inIter.next(rec);
+		boolean empty = true;
+		while (more) {
+			if (!empty && this.availableMemory.size() + this.writeBehindBuffersAvailable < FALLBACK_RESERVE_SEGMENTS) {
+				// the block is full. the record starts the next block
+				break;
+			}
+			final int hashCode = hash(btComparator.hash(rec), nextRecursionLevel);
+			insertIntoTable(rec, hashCode);
+			empty = false;
+			more = inIter.next(rec);
+		}
+		this.fallbackRecordPending = more;
+		
+		if (!more) {
+			// the build side is exhausted and its reader has returned the read buffers
+			this.fallbackBuildSideIterator = null;
+			this.fallbackBuildSideReader.deleteChannel();
+		}
+		
+		this.partitionsBeingBuilt.get(0).finalizeBuildPhase(this.ioManager, this.currentEnumerator, this.writeBehindBuffers);
+	}
+	
 	/**
 	 * @param record
 	 * @param hashCode
@@ -853,6 +1171,11 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 			// record was inserted into an in-memory partition. a pointer must be inserted into the buckets
 			insertBucketEntry(p, bucket, bucketInSegmentPos, hashCode, pointer);
 		}
+		else if (this.useBloomFilters && bucket.get(bucketInSegmentPos + HEADER_STATUS_OFFSET) == BUCKET_STATUS_IN_FILTER) {
+			// record went to a spilled partition. remember its hash code in the bucket's filter
+			this.bloomFilter.setBitsLocation(bucket, bucketInSegmentPos + BUCKET_HEADER_LENGTH);
+			this.bloomFilter.addHash(hashCode);
+		}
 	}
 	
 	/**
@@ -923,7 +1246,12 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 					// no memory available to create overflow bucket. we need to spill a partition
 					final int spilledPart = spillPartition();
 					if (spilledPart == p.getPartitionNumber()) {
-						// this bucket is no longer in-memory
+						// this bucket is no longer in-memory. the record went to disk with the partition,
+						// so its hash code needs to go to the bucket's filter
+						if (this.useBloomFilters) {
+							this.bloomFilter.setBitsLocation(bucket, bucketInSegmentPos + BUCKET_HEADER_LENGTH);
+							this.bloomFilter.addHash(hashCode);
+						}
 						return;
 					}
 					overflowSeg = getNextBuffer();
@@ -1078,6 +1406,11 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 	 * @return The number of the spilled partition.
 	 */
 	protected int spillPartition() throws IOException {
+		if (this.currentFallbackPartition != null) {
+			throw new RuntimeException("Hash join ran out of memory while building a block of a partition that is " +
+				"joined with nested loops. A single record is probably larger than the reserved memory.");
+		}
+		
 		// find the largest partition
 		ArrayList<HashPartition<BT, PT>> partitions = this.partitionsBeingBuilt;
 		int largestNumBlocks = 0;
@@ -1092,6 +1425,11 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 		}
 		final HashPartition<BT, PT> p = partitions.get(largestPartNum);
 		
+		// turn the partition's buckets into filters, while the overflow buckets are still in memory
+		if (this.useBloomFilters) {
+			buildBloomFiltersForBuckets(largestPartNum, partitions.size(), p);
+		}
+		
 		// spill the partition
 		int numBuffersFreed = p.spillPartition(this.availableMemory, this.ioManager, 
 										this.currentEnumerator.next(), this.writeBehindBuffers);
@@ -1105,6 +1443,55 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource {
 		return largestPartNum;
 	}
 	
+	/**
+	 * Replaces the contents of all buckets of the given partition by a bloom filter over the hash codes
+	 * stored in the bucket and its chain of overflow buckets. The buckets are marked accordingly and
+	 * must not be used to look up records anymore.
+	 * 
+	 * @param partNum The number of the partition whose buckets are converted.
+	 * @param numPartitions The number of partitions the buckets of the table are assigned to.
+	 * @param p The partition, still holding its overflow buckets.
+	 */
+	final void buildBloomFiltersForBuckets(final int partNum, final int numPartitions, final HashPartition<BT, PT> p) {
+		for (int bucketNum = partNum; bucketNum < this.numBuckets; bucketNum += numPartitions) {
+			final MemorySegment bucket = this.buckets[bucketNum >> this.bucketsPerSegmentBits];
+			final int bucketInSegmentPos = (bucketNum & this.bucketsPerSegmentMask) << NUM_INTRA_BUCKET_BITS;
+			
+			// gather the hash codes first, because the filter overwrites them
+			int numCodes = 0;
+			MemorySegment seg = bucket;
+			int segOffset = bucketInSegmentPos;
+			while (true) {
+				final int count = seg.getShort(segOffset + HEADER_COUNT_OFFSET);
+				if (numCodes + count > this.bucketHashCodes.length) {
+					final int[] larger = new int[Math.max(this.bucketHashCodes.length * 2, numCodes + count)];
+					System.arraycopy(this.bucketHashCodes, 0, larger, 0, numCodes);
+					this.bucketHashCodes = larger;
+				}
+				for (int i = 0; i < count; i++) {
+					this.bucketHashCodes[numCodes++] = seg.getInt(segOffset + BUCKET_HEADER_LENGTH + (i * HASH_CODE_LEN));
+				}
+				
+				final long forwardPointer = seg.getLong(segOffset + HEADER_FORWARD_OFFSET);
+				if (forwardPointer == BUCKET_FORWARD_POINTER_NOT_SET) {
+					break;
+				}
+				seg = p.overflowSegments[(int) (forwardPointer >>> 32)];
+				segOffset = (int) (forwardPointer & 0xffffffff);
+			}
+			
+			this.bloomFilter.setBitsLocation(bucket, bucketInSegmentPos + BUCKET_HEADER_LENGTH);
+			this.bloomFilter.reset();
+			for (int i = 0; i < numCodes; i++) {
+				this.bloomFilter.addHash(this.bucketHashCodes[i]);
+			}
+			
+			bucket.put(bucketInSegmentPos + HEADER_STATUS_OFFSET, BUCKET_STATUS_IN_FILTER);
+			bucket.putShort(bucketInSegmentPos + HEADER_COUNT_OFFSET, (short) 0);
+			bucket.putLong(bucketInSegmentPos + HEADER_FORWARD_OFFSET, BUCKET_FORWARD_POINTER_NOT_SET);
+		}
+	}
+	
 	/**
 	 * This method makes sure that at least a certain number of memory segments is in the list of free segments.
 	 * Free memory can be in the list of free segments, or in the return-queue where segments used to write behind are
@@ -35,6 +35,8 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 
 	private static final byte[] DEFAULT_SALT = new byte[] { 17, 31, 47, 51, 83, 1 };
 	
+	private static final int MAX_NORMALIZED_KEY_LEN = 16;
+	
 	private final ShipStrategyType strategy;			// the shipping strategy used by this output emitter
 	
 	private final PactRecordComparator comparator;	// the comparator for hashing / sorting
@@ -43,6 +45,14 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 	
 	private Key[][] partitionBoundaries;		// the partition boundaries for range partitioning
 	
+	private byte[][] normalizedBoundaries;		// the normalized keys of the partition boundaries
+	
+	private byte[] normalizedKey;				// the reused array holding the normalized key of the current record
+	
+	private boolean normalizedKeyPrefixOnly;	// flag indicating that equal normalized keys need a full comparison
+	
+	private boolean invertNormalizedKey;		// flag indicating that the normalized key order is inverted
+	
 	private final DataDistribution distribution;
 	
 	private int nextChannelToSendTo;				// counter to go over channels round robin
@@ -171,40 +181,95 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 	private final int[] rangePartiton(final PactRecord record, int numberOfChannels)
 	{
 		if (this.partitionBoundaries == null) {
-			this.partitionBoundaries = new Key[numberOfChannels - 1][];
-			for (int i = 0; i < numberOfChannels - 1; i++) {
-				final PactRecord boundary = this.distribution.getBucketBoundary(i, numberOfChannels);
-				this.partitionBoundaries[i] = comparator.getKeysAsCopy(boundary);
-			}
+			initRangeBoundaries(numberOfChannels);
 		}
 		
-		if (numberOfChannels == this.partitionBoundaries.length + 1) {
-			final Key[][] boundaries = this.partitionBoundaries;
+		if (numberOfChannels != this.partitionBoundaries.length + 1) {
+			throw new IllegalStateException(
+				"The number of channels to partition among is inconsistent with the partitioners state.");
+		}
+		
+		final Key[][] boundaries = this.partitionBoundaries;
+		final byte[][] normBoundaries = this.normalizedBoundaries;
+		final byte[] normKey = this.normalizedKey;
+		boolean referenceSet = false;
+		
+		if (normBoundaries != null) {
+			this.comparator.putNormalizedKey(record, normKey, 0, normKey.length);
+		} else {
 			this.comparator.setReference(record);
+			referenceSet = true;
+		}
+		
+		// bin search the bucket
+		int low = 0;
+		int high = boundaries.length - 1;
+		
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			int result;
 			
-			// bin search the bucket
-			int low = 0;
-			int high = this.partitionBoundaries.length - 1;
-			
-			while (low <= high) {
-				final int mid = (low + high) >>> 1;
-				final int result = this.comparator.compareAgainstReference(boundaries[mid]);
-				
-				if (result < 0) {
-					low = mid + 1;
-				} else if (result > 0) {
-					high = mid - 1;
-				} else {
-					this.channels[0] = mid;
-					return this.channels;
+			if (normBoundaries != null) {
+				result = compareNormalizedKeys(normBoundaries[mid], normKey);
+				if (result == 0 && this.normalizedKeyPrefixOnly) {
+					// the prefix is not sufficient to decide, compare the actual keys
+					if (!referenceSet) {
+						this.comparator.setReference(record);
+						referenceSet = true;
+					}
+					result = this.comparator.compareAgainstReference(boundaries[mid]);
 				}
+			} else {
+				result = this.comparator.compareAgainstReference(boundaries[mid]);
+			}
+			
+			if (result < 0) {
+				low = mid + 1;
+			} else if (result > 0) {
+				high = mid - 1;
+			} else {
+				this.channels[0] = mid;
+				return this.channels;
+			}
+		}
+		this.channels[0] = low;	// key not found, but the low index is the target
+								// bucket, since the boundaries are the upper bound
+		return this.channels;
+	}
+	
+	private final void initRangeBoundaries(int numberOfChannels)
+	{
+		final Key[][] boundaries = new Key[numberOfChannels - 1][];
+		final PactRecord[] boundaryRecords = new PactRecord[numberOfChannels - 1];
+		for (int i = 0; i < numberOfChannels - 1; i++) {
+			boundaryRecords[i] = this.distribution.getBucketBoundary(i, numberOfChannels);
+			boundaries[i] = this.comparator.getKeysAsCopy(boundaryRecords[i]);
+		}
+		
+		// if the keys can be normalized, the binary search compares the normalized key bytes and
+		// falls back to the actual keys only if the normalized key is a prefix that is not distinct
+		if (this.comparator.supportsNormalizedKey()) {
+			final int len = Math.min(this.comparator.getNormalizeKeyLen(), MAX_NORMALIZED_KEY_LEN);
+			this.normalizedBoundaries = new byte[numberOfChannels - 1][];
+			for (int i = 0; i < numberOfChannels - 1; i++) {
+				this.normalizedBoundaries[i] = new byte[len];
+				this.comparator.putNormalizedKey(boundaryRecords[i], this.normalizedBoundaries[i], 0, len);
+			}
+			this.normalizedKey = new byte[len];
+			this.normalizedKeyPrefixOnly = this.comparator.isNormalizedKeyPrefixOnly(len);
+			this.invertNormalizedKey = this.comparator.invertNormalizedKey();
+		}
+		this.partitionBoundaries = boundaries;
+	}
+	
+	private final int compareNormalizedKeys(final byte[] boundary, final byte[] key)
+	{
+		for (int i = 0; i < boundary.length; i++) {
+			final int cmp = (boundary[i] & 0xff) - (key[i] & 0xff);
+			if (cmp != 0) {
+				return this.invertNormalizedKey ? -cmp : cmp;
 			}
-			this.channels[0] = low;	// key not found, but the low index is the target
-									// bucket, since the boundaries are the upper bound
-			return this.channels;
-		} else {
-			throw new IllegalStateException(
-			"The number of channels to partition among is inconsistent with the partitioners state.");
 		}
+		return 0;
 	}
 }
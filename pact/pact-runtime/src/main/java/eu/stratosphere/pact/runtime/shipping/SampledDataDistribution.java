@@ -0,0 +1,114 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.shipping;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import eu.stratosphere.pact.common.contract.DataDistribution;
+import eu.stratosphere.pact.common.type.PactRecord;
+
+/**
+ * A data distribution whose bucket boundaries are not known when the job is compiled, but are computed at runtime
+ * from a sample of the data. The boundaries are set by the range partitioning task after it received them from
+ * the task that computed them.
+ */
+public class SampledDataDistribution implements DataDistribution
+{
+	private PactRecord[] boundaries;
+	
+	/**
+	 * Creates a new distribution that has no boundaries, yet.
+	 */
+	public SampledDataDistribution() {}
+	
+	/**
+	 * Creates a new distribution with the given bucket boundaries.
+	 * 
+	 * @param boundaries The boundaries, sorted ascending with respect to the partitioning order.
+	 */
+	public SampledDataDistribution(PactRecord[] boundaries) {
+		this.boundaries = boundaries;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Sets the bucket boundaries of this distribution.
+	 * 
+	 * @param boundaries The boundaries, sorted ascending with respect to the partitioning order.
+	 */
+	public void setBoundaries(PactRecord[] boundaries) {
+		this.boundaries = boundaries;
+	}
+	
+	/**
+	 * Gets the number of bucket boundaries, or <code>-1</code>, if the boundaries have not been set.
+	 * 
+	 * @return The number of bucket boundaries.
+	 */
+	public int getNumberOfBoundaries() {
+		return this.boundaries == null ? -1 : this.boundaries.length;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.contract.DataDistribution#getBucketBoundary(int, int)
+	 */
+	@Override
+	public PactRecord getBucketBoundary(int bucketNum, int totalNumBuckets) {
+		if (this.boundaries == null) {
+			throw new IllegalStateException("The bucket boundaries have not been set.");
+		}
+		if (totalNumBuckets != this.boundaries.length + 1) {
+			throw new IllegalArgumentException("The distribution was sampled for " + (this.boundaries.length + 1) + 
+				" buckets, but " + totalNumBuckets + " buckets were requested.");
+		}
+		return this.boundaries[bucketNum];
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.io.IOReadableWritable#write(java.io.DataOutput)
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		if (this.boundaries == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(this.boundaries.length);
+			for (int i = 0; i < this.boundaries.length; i++) {
+				this.boundaries[i].write(out);
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.io.IOReadableWritable#read(java.io.DataInput)
+	 */
+	@Override
+	public void read(DataInput in) throws IOException {
+		final int num = in.readInt();
+		if (num < 0) {
+			this.boundaries = null;
+		} else {
+			this.boundaries = new PactRecord[num];
+			for (int i = 0; i < num; i++) {
+				this.boundaries[i] = new PactRecord();
+				this.boundaries[i].read(in);
+			}
+		}
+	}
+}
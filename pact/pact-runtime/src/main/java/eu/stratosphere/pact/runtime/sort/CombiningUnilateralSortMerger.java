@@ -146,9 +146,44 @@ public class CombiningUnilateralSortMerger<E> extends UnilateralSortMerger<E>
 			long totalMemory, int numSortBuffers, int maxNumFileHandles, 
 			float startSpillingFraction, boolean combineLastMerge)
 	throws IOException, MemoryAllocationException
+	{
+		this(combineStub, memoryManager, ioManager, input, parentTask, serializer, comparator,
+			totalMemory, numSortBuffers, maxNumFileHandles, startSpillingFraction, 1, combineLastMerge);
+	}
+	
+	/**
+	 * Creates a new sorter that reads the data from a given reader and provides an iterator returning that
+	 * data in a sorted manner. The memory is divided among sort buffers, write buffers and read buffers
+	 * automatically. Up to <code>numSortThreads</code> filled sort buffers are sorted concurrently.
+	 * 
+	 * @param combineStub The stub used to combine values with the same key.
+	 * @param memoryManager The memory manager from which to allocate the memory.
+	 * @param ioManager The I/O manager, which is used to write temporary files to disk.
+	 * @param input The input that is sorted by this sorter.
+	 * @param parentTask The parent task, which owns all resources used by this sorter.
+	 * @param serializer The type serializer.
+	 * @param comparator The type comparator establishing the order relation.
+	 * @param totalMemory The total amount of memory dedicated to sorting, merging and I/O.
+	 * @param numSortBuffers The number of distinct buffers to use creation of the initial runs.
+	 * @param maxNumFileHandles The maximum number of files to be merged at once.
+	 * @param startSpillingFraction The faction of the buffers that have to be filled before the spilling thread
+	 *                              actually begins spilling data to disk.
+	 * @param numSortThreads The number of threads that sort buffers concurrently.
+	 * @param combineLastMerge A flag indicating whether the last merge step applies the combiner as well.
+	 * 
+	 * @throws IOException Thrown, if an error occurs initializing the resources for external sorting.
+	 * @throws MemoryAllocationException Thrown, if not enough memory can be obtained from the memory manager to
+	 *                                   perform the sort.
+	 */
+	public CombiningUnilateralSortMerger(GenericReducer<E, ?> combineStub, MemoryManager memoryManager, IOManager ioManager,
+			MutableObjectIterator<E> input, AbstractInvokable parentTask, 
+			TypeSerializer<E> serializer, TypeComparator<E> comparator,
+			long totalMemory, int numSortBuffers, int maxNumFileHandles, 
+			float startSpillingFraction, int numSortThreads, boolean combineLastMerge)
+	throws IOException, MemoryAllocationException
 	{
 		super(memoryManager, ioManager, input, parentTask, serializer, comparator,
-			totalMemory, numSortBuffers, maxNumFileHandles, startSpillingFraction, false);
+			totalMemory, numSortBuffers, maxNumFileHandles, startSpillingFraction, numSortThreads, false);
 		
 		this.combineStub = combineStub;
 		this.combineLastMerge = combineLastMerge;
@@ -377,9 +412,10 @@ public class CombiningUnilateralSortMerger<E> extends UnilateralSortMerger<E>
 
 			// ------------------- Merging Phase ------------------------
 
-			// merge channels until sufficient file handles are available
-			while (isRunning() && channelIDs.size() > this.maxNumFileHandles) {
-				channelIDs = mergeChannelList(channelIDs, this.sortReadMemory, this.writeMemory);
+			// merge channels until they can be merged in one final pass
+			final int fanIn = this.mergePlanner.getFanIn(channelIDs.size());
+			while (isRunning() && MergePlanner.getNumPasses(channelIDs.size(), fanIn) > 1) {
+				channelIDs = mergeChannelList(channelIDs, fanIn, this.sortReadMemory, this.writeMemory);
 			}
 			
 			// from here on, we won't write again
@@ -400,7 +436,8 @@ public class CombiningUnilateralSortMerger<E> extends UnilateralSortMerger<E>
 				// allocate the read memory and register it to be released
 				getSegmentsForReaders(readBuffers, this.sortReadMemory, channelIDs.size());
 				
-				// get the readers and register them to be released
+				// get the readers and register them to be released. the final merge is streamed into the consumer.
+				countMergePass();
 				final MergeIterator<E> mergeIterator = getMergingIterator(
 						channelIDs, readBuffers, new ArrayList<BlockChannelAccess<?, ?>>(channelIDs.size()));
 				
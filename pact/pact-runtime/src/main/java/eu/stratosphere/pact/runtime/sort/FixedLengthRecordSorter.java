@@ -29,11 +29,21 @@ import eu.stratosphere.pact.generic.types.TypeComparator;
 import eu.stratosphere.pact.generic.types.TypeSerializer;
 
 /**
- * 
+ * An in-memory sorter for records of a fixed length whose keys can be fully normalized. The records are
+ * serialized with their key replaced by the normalized key and are sorted in place, without the separate
+ * pointer / key index that the {@link NormalizedKeySorter} maintains. Whether a data type qualifies for this
+ * sorter can be checked with {@link #isApplicable(TypeSerializer, TypeComparator, int)}.
  */
-public final class FixedLengthRecordSorter<T> implements InMemorySorter<T> {
+public final class FixedLengthRecordSorter<T> implements InMemorySorter<T>, RadixSortable {
 	
 	private static final int MIN_REQUIRED_BUFFERS = 3;
+	
+	/**
+	 * The maximal record length for in-place sorting, relative to the size of an index entry of the
+	 * {@link NormalizedKeySorter} for the same key. Longer records make swaps too expensive, compared to
+	 * swapping index entries.
+	 */
+	private static final int MAX_RECORD_TO_INDEX_ENTRY_RATIO = 4;
 
 	// ------------------------------------------------------------------------
 	//                               Members
@@ -135,6 +145,30 @@ public final class FixedLengthRecordSorter<T> implements InMemorySorter<T> {
 		this.recordInstance = this.serializer.createInstance();
 	}
 
+	/**
+	 * Checks whether records of the given type can be sorted in place by a fixed-length record sorter. That
+	 * is the case, if the serializer produces records of a fixed length that fit into a memory segment, if
+	 * the comparator can replace the keys by their full normalized key, and if the records are short enough
+	 * that moving them is not much more expensive than moving the index entries of the
+	 * {@link NormalizedKeySorter}.
+	 * 
+	 * @param serializer The serializer for the records.
+	 * @param comparator The comparator for the records.
+	 * @param segmentSize The size of the memory segments that hold the records.
+	 * @return True, if the records can be sorted by a fixed-length record sorter, false otherwise.
+	 */
+	public static boolean isApplicable(TypeSerializer<?> serializer, TypeComparator<?> comparator, int segmentSize)
+	{
+		final int recordSize = serializer.getLength();
+		if (recordSize <= 0 || recordSize > segmentSize || !comparator.supportsSerializationWithKeyNormalization()) {
+			return false;
+		}
+		
+		final int indexEntrySize = NormalizedKeySorter.OFFSET_LEN + 
+			Math.min(comparator.getNormalizeKeyLen(), NormalizedKeySorter.DEFAULT_MAX_NORMALIZED_KEY_LEN);
+		return recordSize <= MAX_RECORD_TO_INDEX_ENTRY_RATIO * indexEntrySize;
+	}
+
 	// -------------------------------------------------------------------------
 	// Memory Segment
 	// -------------------------------------------------------------------------
@@ -281,13 +315,8 @@ public final class FixedLengthRecordSorter<T> implements InMemorySorter<T> {
 		
 		final MemorySegment segI = this.sortBuffer.get(bufferNumI);
 		final MemorySegment segJ = this.sortBuffer.get(bufferNumJ);
-		final byte[] bI = segI.getBackingArray();
-		final byte[] bJ = segJ.getBackingArray();
-		
-		int val = 0;
-		for (int pos = 0, posI = segI.translateOffset(segmentOffsetI), posJ = segJ.translateOffset(segmentOffsetJ);
-			pos < this.numKeyBytes && (val = (bI[posI] & 0xff) - (bJ[posJ] & 0xff)) == 0; pos++, posI++, posJ++);
 		
+		final int val = segI.compare(segJ, segmentOffsetI, segmentOffsetJ, this.numKeyBytes);
 		return this.useNormKeyUninverted ? val : -val;
 	}
 
@@ -302,9 +331,7 @@ public final class FixedLengthRecordSorter<T> implements InMemorySorter<T> {
 		final MemorySegment segI = this.sortBuffer.get(bufferNumI);
 		final MemorySegment segJ = this.sortBuffer.get(bufferNumJ);
 		
-		segI.get(segmentOffsetI, this.swapBuffer, 0, this.recordSize);
-		System.arraycopy(segJ.getBackingArray(), segJ.translateOffset(segmentOffsetJ), segI.getBackingArray(), segI.translateOffset(segmentOffsetI), this.recordSize);
-		segJ.put(segmentOffsetJ, this.swapBuffer, 0, this.recordSize);
+		segI.swapBytes(this.swapBuffer, segJ, segmentOffsetI, segmentOffsetJ, this.recordSize);
 	}
 
 	@Override
@@ -312,6 +339,28 @@ public final class FixedLengthRecordSorter<T> implements InMemorySorter<T> {
 		return this.numRecords;
 	}
 
+	/**
+	 * The records of this sorter are compared by their normalized key only, so it always determines the order.
+	 */
+	@Override
+	public boolean isNormalizedKeyFullyDetermining() {
+		return true;
+	}
+
+	@Override
+	public int getNumKeyBytes() {
+		return this.numKeyBytes;
+	}
+
+	@Override
+	public int getKeyByte(int i, int keyByte) {
+		final int bufferNum = i / this.recordsPerSegment;
+		final int segmentOffset = (i % this.recordsPerSegment) * this.recordSize;
+		
+		final int b = this.sortBuffer.get(bufferNum).get(segmentOffset + keyByte) & 0xff;
+		return this.useNormKeyUninverted ? b : 0xff - b;
+	}
+
 	// -------------------------------------------------------------------------
 	
 	/**
@@ -426,27 +475,20 @@ public final class FixedLengthRecordSorter<T> implements InMemorySorter<T> {
 		
 		final int recordsPerSegment = this.recordsPerSegment;
 		int currentMemSeg = start / recordsPerSegment;
-		int offset = (start % recordsPerSegment) * this.recordSize;
+		int inSegment = start % recordsPerSegment;
 		
 		while (num > 0) {
 			final MemorySegment currentIndexSegment = this.sortBuffer.get(currentMemSeg++);
-			inView.set(currentIndexSegment, offset);
+			inView.set(currentIndexSegment, inSegment * this.recordSize);
 			
-			// check whether we have a full or partially full segment
-			if (num >= recordsPerSegment && offset == 0) {
-				// full segment
-				for (int numInMemSeg = 0; numInMemSeg < recordsPerSegment; numInMemSeg++) {
-					comparator.readWithKeyDenormalization(record, inView);
-					serializer.serialize(record, output);
-				}
-				num -= recordsPerSegment;
-			} else {
-				// partially filled segment
-				for (; num > 0; num--) {
-					comparator.readWithKeyDenormalization(record, inView);
-					serializer.serialize(record, output);
-				}
+			// write the remainder of the segment, or fewer records, if the range ends before
+			final int numInSegment = Math.min(num, recordsPerSegment - inSegment);
+			for (int i = 0; i < numInSegment; i++) {
+				comparator.readWithKeyDenormalization(record, inView);
+				serializer.serialize(record, output);
 			}
+			num -= numInSegment;
+			inSegment = 0;
 		}
 	}
 	
@@ -0,0 +1,239 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.sort;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import eu.stratosphere.pact.runtime.sort.UnilateralSortMerger.ChannelWithBlockCount;
+
+/**
+ * Plans how the sorted runs written by the spilling thread of the {@link UnilateralSortMerger} are merged. The
+ * planner decides on the merge fan-in, the number of merge passes, which runs are merged in the intermediate passes
+ * and how deep the readers read ahead.
+ * <p>
+ * A high fan-in saves merge passes, but leaves fewer read buffers for each merged channel, so the channels are read
+ * in small requests with a disk seek each. The planner weighs the two against each other with a simple cost model:
+ * every block that a pass reads or writes costs one unit, and every read request costs additionally the time of a
+ * seek, expressed in blocks. The fan-in with the lowest estimated cost wins. The intermediate passes merge only as
+ * many runs as needed to make the remaining passes work with that fan-in, and they pick the smallest runs, so the
+ * least data is written and read again. The final pass is never materialized, but streamed into the consumer.
+ */
+public final class MergePlanner
+{
+	/**
+	 * The number of bytes that the disk could have transferred in the time of one seek. Corresponds roughly to
+	 * a 10 millisecond seek on a disk that reads 100 megabytes per second.
+	 */
+	private static final int SEEK_COST_BYTES = 1024 * 1024;
+	
+	/**
+	 * The number of segments per channel from which on the reads of a channel are bundled into larger requests.
+	 */
+	private static final int MIN_SEGMENTS_FOR_BUNDLED_READS = 4;
+	
+	private final int maxFanIn;
+	
+	private final int numReadSegments;
+	
+	private final double seekCostInBlocks;
+	
+	/**
+	 * Creates a new merge planner.
+	 * 
+	 * @param maxNumFileHandles The maximal number of channels that may be merged at once.
+	 * @param numReadSegments The number of memory segments available to the readers of a merge.
+	 * @param segmentSize The size of the memory segments, which is also the size of the blocks on disk.
+	 */
+	public MergePlanner(int maxNumFileHandles, int numReadSegments, int segmentSize) {
+		if (maxNumFileHandles < 2) {
+			throw new IllegalArgumentException("Merging requires at least two file handles.");
+		}
+		if (numReadSegments < 2) {
+			throw new IllegalArgumentException("Merging requires at least two memory segments for reading.");
+		}
+		if (segmentSize <= 0) {
+			throw new IllegalArgumentException("The segment size must be positive.");
+		}
+		
+		this.numReadSegments = numReadSegments;
+		this.maxFanIn = Math.min(maxNumFileHandles, numReadSegments);
+		this.seekCostInBlocks = Math.max(1.0, SEEK_COST_BYTES / (double) segmentSize);
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Gets the largest fan-in that this planner ever uses.
+	 * 
+	 * @return The maximal fan-in.
+	 */
+	public int getMaxFanIn() {
+		return this.maxFanIn;
+	}
+	
+	/**
+	 * Gets the fan-in to merge the given number of runs with, which is the one with the lowest estimated cost.
+	 * 
+	 * @param numRuns The number of runs to merge.
+	 * @return The fan-in to use.
+	 */
+	public int getFanIn(int numRuns) {
+		if (numRuns <= 2) {
+			return 2;
+		}
+		
+		int bestFanIn = 2;
+		double bestCost = Double.MAX_VALUE;
+		for (int fanIn = 2; fanIn <= Math.min(this.maxFanIn, numRuns); fanIn++) {
+			final double cost = estimateCost(numRuns, fanIn);
+			if (cost < bestCost) {
+				bestCost = cost;
+				bestFanIn = fanIn;
+			}
+		}
+		return bestFanIn;
+	}
+	
+	/**
+	 * Gets the number of segments that each channel of a merge with the given fan-in gets for reading.
+	 * 
+	 * @param fanIn The number of channels merged together.
+	 * @return The number of segments per channel.
+	 */
+	public int getSegmentsPerChannel(int fanIn) {
+		return Math.max(1, this.numReadSegments / fanIn);
+	}
+	
+	/**
+	 * Gets the number of read requests that a channel reader with the given number of segments should bundle into
+	 * one I/O request. Half of the segments are requested together, so that the other half can be consumed while
+	 * the request is being served. 
+	 * 
+	 * @param segmentsPerChannel The number of segments that the reader has.
+	 * @return The number of requests to bundle, or <code>1</code>, if the requests should not be bundled.
+	 */
+	public int getNumRequestsToBundle(int segmentsPerChannel) {
+		return segmentsPerChannel >= MIN_SEGMENTS_FOR_BUNDLED_READS ? segmentsPerChannel / 2 : 1;
+	}
+	
+	/**
+	 * Plans the next intermediate merge pass over the given runs. The returned groups of runs are each to be merged
+	 * into one run. All runs that are not part of any group remain as they are. If the runs can be merged in the
+	 * final pass right away, the returned list is empty.
+	 * <p>
+	 * All passes of one merge should use the same fan-in, which is the one that {@link #getFanIn(int)} returned for
+	 * the initial number of runs.
+	 * 
+	 * @param runs The runs that remain to be merged.
+	 * @param fanIn The fan-in of the merge.
+	 * @return The groups of runs to merge in the next pass.
+	 */
+	public List<List<ChannelWithBlockCount>> planIntermediatePass(List<ChannelWithBlockCount> runs, int fanIn) {
+		final int numRuns = runs.size();
+		if (fanIn < 2 || fanIn > this.maxFanIn) {
+			throw new IllegalArgumentException("Invalid fan-in: " + fanIn);
+		}
+		
+		if (getNumPasses(numRuns, fanIn) <= 1) {
+			return Collections.emptyList();
+		}
+		
+		final int numMerges = getNumMergesInFirstPass(numRuns, fanIn);
+		final int toRemove = numRuns - getNumRunsAfterFirstPass(numRuns, fanIn);
+		final int firstGroupSize = toRemove - (numMerges - 1) * (fanIn - 1) + 1;
+		
+		// merge the smallest runs, to rewrite as little data as possible
+		final List<ChannelWithBlockCount> sorted = new ArrayList<ChannelWithBlockCount>(runs);
+		Collections.sort(sorted, new Comparator<ChannelWithBlockCount>() {
+			@Override
+			public int compare(ChannelWithBlockCount o1, ChannelWithBlockCount o2) {
+				return o1.getBlockCount() < o2.getBlockCount() ? -1 : o1.getBlockCount() == o2.getBlockCount() ? 0 : 1;
+			}
+		});
+		
+		final List<List<ChannelWithBlockCount>> groups = new ArrayList<List<ChannelWithBlockCount>>(numMerges);
+		int pos = 0;
+		for (int i = 0; i < numMerges; i++) {
+			final int groupSize = i == 0 ? firstGroupSize : fanIn;
+			groups.add(new ArrayList<ChannelWithBlockCount>(sorted.subList(pos, pos + groupSize)));
+			pos += groupSize;
+		}
+		return groups;
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Estimates the cost of merging the given number of equally sized runs with the given fan-in, relative to the
+	 * cost of reading all data once sequentially.
+	 */
+	private double estimateCost(int numRuns, int fanIn) {
+		final int passes = getNumPasses(numRuns, fanIn);
+		
+		// the first intermediate pass touches only part of the runs, all further passes touch all data
+		final double intermediateVolume;
+		if (passes > 1) {
+			final int mergedInFirstPass = numRuns - getNumRunsAfterFirstPass(numRuns, fanIn) + 
+					getNumMergesInFirstPass(numRuns, fanIn);
+			intermediateVolume = mergedInFirstPass / (double) numRuns + (passes - 2);
+		} else {
+			intermediateVolume = 0.0;
+		}
+		
+		// every read request costs a seek. writes are bundled and sequential.
+		final int blocksPerRead = getNumRequestsToBundle(getSegmentsPerChannel(fanIn));
+		final double readCost = 1.0 + this.seekCostInBlocks / blocksPerRead;
+		
+		return readCost * (1.0 + intermediateVolume) + intermediateVolume;
+	}
+	
+	private static int getNumRunsAfterFirstPass(int numRuns, int fanIn) {
+		// the remaining passes must be able to handle the runs with the given fan-in
+		final int passes = getNumPasses(numRuns, fanIn);
+		long runsAfterPass = 1;
+		for (int i = 1; i < passes; i++) {
+			runsAfterPass *= fanIn;
+		}
+		return (int) Math.min(runsAfterPass, numRuns);
+	}
+	
+	private static int getNumMergesInFirstPass(int numRuns, int fanIn) {
+		// every merge of k runs removes k-1 runs
+		final int toRemove = numRuns - getNumRunsAfterFirstPass(numRuns, fanIn);
+		return (toRemove + fanIn - 2) / (fanIn - 1);
+	}
+	
+	/**
+	 * Computes the number of passes, including the final streamed merge, that are needed to merge the given number
+	 * of runs with the given fan-in.
+	 * 
+	 * @param numRuns The number of runs.
+	 * @param fanIn The fan-in.
+	 * @return The number of passes.
+	 */
+	public static int getNumPasses(int numRuns, int fanIn) {
+		int passes = 0;
+		long capacity = 1;
+		while (capacity < numRuns) {
+			capacity *= fanIn;
+			passes++;
+		}
+		return Math.max(passes, 1);
+	}
+}
@@ -32,11 +32,11 @@ import eu.stratosphere.pact.runtime.io.SimpleCollectingOutputView;
 /**
  * 
  */
-public final class NormalizedKeySorter<T> implements InMemorySorter<T>
+public final class NormalizedKeySorter<T> implements InMemorySorter<T>, RadixSortable
 {
-	private static final int OFFSET_LEN = 8;
+	static final int OFFSET_LEN = 8;
 	
-	private static final int DEFAULT_MAX_NORMALIZED_KEY_LEN = 8;
+	static final int DEFAULT_MAX_NORMALIZED_KEY_LEN = 8;
 	
 	private static final int MIN_REQUIRED_BUFFERS = 3;
 
@@ -266,9 +266,16 @@ public final class NormalizedKeySorter<T> implements InMemorySorter<T>
 			else return false;
 		}
 		
-		// add the pointer and the normalized key
-		this.currentSortIndexSegment.putLong(this.currentSortIndexOffset, this.currentDataBufferOffset);
-		this.comparator.putNormalizedKey(record, this.currentSortIndexSegment.getBackingArray(), this.currentSortIndexSegment.translateOffset(this.currentSortIndexOffset + OFFSET_LEN), this.numKeyBytes);
+		// add the pointer and the normalized key. the pointer never leaves the sorter and is kept in native byte order
+		this.currentSortIndexSegment.putLongNativeEndian(this.currentSortIndexOffset, this.currentDataBufferOffset);
+		final byte[] backingArray = this.currentSortIndexSegment.getBackingArray();
+		if (backingArray != null) {
+			this.comparator.putNormalizedKey(record, backingArray, this.currentSortIndexSegment.translateOffset(this.currentSortIndexOffset + OFFSET_LEN), this.numKeyBytes);
+		} else {
+			// off-heap segments have no array to write to directly, so the key takes a detour through the swap buffer
+			this.comparator.putNormalizedKey(record, this.swapBuffer, 0, this.numKeyBytes);
+			this.currentSortIndexSegment.put(this.currentSortIndexOffset + OFFSET_LEN, this.swapBuffer, 0, this.numKeyBytes);
+		}
 		
 		// serialize the record into the data buffers
 		try {
@@ -294,7 +301,7 @@ public final class NormalizedKeySorter<T> implements InMemorySorter<T>
 		final int bufferNum = logicalPosition / this.indexEntriesPerSegment;
 		final int segmentOffset = logicalPosition % this.indexEntriesPerSegment;
 		
-		return this.sortIndex.get(bufferNum).getLong(segmentOffset * this.indexEntrySize);
+		return this.sortIndex.get(bufferNum).getLongNativeEndian(segmentOffset * this.indexEntrySize);
 	}
 	
 	private final void getRecordFromBuffer(T target, long pointer) throws IOException {
@@ -338,19 +345,15 @@ public final class NormalizedKeySorter<T> implements InMemorySorter<T>
 		
 		final MemorySegment segI = this.sortIndex.get(bufferNumI);
 		final MemorySegment segJ = this.sortIndex.get(bufferNumJ);
-		final byte[] bI = segI.getBackingArray();
-		final byte[] bJ = segJ.getBackingArray();
 		
-		int val = 0;
-		for (int pos = 0, posI = segI.translateOffset(segmentOffsetI + OFFSET_LEN), posJ = segJ.translateOffset(segmentOffsetJ + OFFSET_LEN);
-			pos < this.numKeyBytes && (val = (bI[posI] & 0xff) - (bJ[posJ] & 0xff)) == 0; pos++, posI++, posJ++);
+		final int val = segI.compare(segJ, segmentOffsetI + OFFSET_LEN, segmentOffsetJ + OFFSET_LEN, this.numKeyBytes);
 		
 		if (val != 0 || this.normalizedKeyFullyDetermines) {
 			return this.useNormKeyUninverted ? val : -val;
 		}
 		
-		final long pointerI = segI.getLong(segmentOffsetI);
-		final long pointerJ = segJ.getLong(segmentOffsetJ);
+		final long pointerI = segI.getLongNativeEndian(segmentOffsetI);
+		final long pointerJ = segJ.getLongNativeEndian(segmentOffsetJ);
 		
 		return compareRecords(pointerI, pointerJ);
 	}
@@ -369,9 +372,7 @@ public final class NormalizedKeySorter<T> implements InMemorySorter<T>
 		final MemorySegment segI = this.sortIndex.get(bufferNumI);
 		final MemorySegment segJ = this.sortIndex.get(bufferNumJ);
 		
-		segI.get(segmentOffsetI, this.swapBuffer, 0, this.indexEntrySize);
-		System.arraycopy(segJ.getBackingArray(), segJ.translateOffset(segmentOffsetJ), segI.getBackingArray(), segI.translateOffset(segmentOffsetI), this.indexEntrySize);
-		segJ.put(segmentOffsetJ, this.swapBuffer, 0, this.indexEntrySize);
+		segI.swapBytes(this.swapBuffer, segJ, segmentOffsetI, segmentOffsetJ, this.indexEntrySize);
 	}
 
 	/* (non-Javadoc)
@@ -382,6 +383,34 @@ public final class NormalizedKeySorter<T> implements InMemorySorter<T>
 		return this.numRecords;
 	}
 
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.RadixSortable#isNormalizedKeyFullyDetermining()
+	 */
+	@Override
+	public boolean isNormalizedKeyFullyDetermining() {
+		return this.normalizedKeyFullyDetermines;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.RadixSortable#getNumKeyBytes()
+	 */
+	@Override
+	public int getNumKeyBytes() {
+		return this.numKeyBytes;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.RadixSortable#getKeyByte(int, int)
+	 */
+	@Override
+	public int getKeyByte(int i, int keyByte) {
+		final int bufferNum = i / this.indexEntriesPerSegment;
+		final int segmentOffset = (i % this.indexEntriesPerSegment) * this.indexEntrySize;
+		
+		final int b = this.sortIndex.get(bufferNum).get(segmentOffset + OFFSET_LEN + keyByte) & 0xff;
+		return this.useNormKeyUninverted ? b : 0xff - b;
+	}
+
 	// -------------------------------------------------------------------------
 	
 	/**
@@ -411,7 +440,7 @@ public final class NormalizedKeySorter<T> implements InMemorySorter<T>
 						this.currentIndexSegment = sortIndex.get(++this.currentSegment);
 					}
 					
-					long pointer = this.currentIndexSegment.getLong(this.currentOffset);
+					long pointer = this.currentIndexSegment.getLongNativeEndian(this.currentOffset);
 					this.currentOffset += indexEntrySize;
 					
 					try {
@@ -451,7 +480,7 @@ public final class NormalizedKeySorter<T> implements InMemorySorter<T>
 			if (recordsLeft >= this.indexEntriesPerSegment) {
 				// full segment
 				for (;offset <= this.lastIndexEntryOffset; offset += this.indexEntrySize) {
-					final long pointer = currentIndexSegment.getLong(offset);
+					final long pointer = currentIndexSegment.getLongNativeEndian(offset);
 					this.recordBuffer.setReadPosition(pointer);
 					this.serializer.copy(this.recordBuffer, output);
 					
@@ -461,7 +490,7 @@ public final class NormalizedKeySorter<T> implements InMemorySorter<T>
 				// partially filled segment
 				for (; recordsLeft > 0; recordsLeft--, offset += this.indexEntrySize)
 				{
-					final long pointer = currentIndexSegment.getLong(offset);
+					final long pointer = currentIndexSegment.getLongNativeEndian(offset);
 					this.recordBuffer.setReadPosition(pointer);
 					this.serializer.copy(this.recordBuffer, output);
 				}
@@ -489,7 +518,7 @@ public final class NormalizedKeySorter<T> implements InMemorySorter<T>
 			if (num >= this.indexEntriesPerSegment && offset == 0) {
 				// full segment
 				for (;offset <= this.lastIndexEntryOffset; offset += this.indexEntrySize) {
-					final long pointer = currentIndexSegment.getLong(offset);
+					final long pointer = currentIndexSegment.getLongNativeEndian(offset);
 					this.recordBuffer.setReadPosition(pointer);
 					this.serializer.copy(this.recordBuffer, output);
 				}
@@ -498,7 +527,7 @@ public final class NormalizedKeySorter<T> implements InMemorySorter<T>
 				// partially filled segment
 				for (; num > 0 && offset <= this.lastIndexEntryOffset; num--, offset += this.indexEntrySize)
 				{
-					final long pointer = currentIndexSegment.getLong(offset);
+					final long pointer = currentIndexSegment.getLongNativeEndian(offset);
 					this.recordBuffer.setReadPosition(pointer);
 					this.serializer.copy(this.recordBuffer, output);
 				}
@@ -0,0 +1,162 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.sort;
+
+/**
+ * A most-significant-digit radix sort (in the flavor of the <i>American Flag Sort</i>) that sorts a
+ * {@link RadixSortable} by its normalized key bytes. The elements are permuted in place by means of
+ * {@link IndexedSortable#swap(int, int)}, so no memory beyond a few counter arrays is needed. Small buckets are
+ * finished with an insertion sort.
+ * <p>
+ * The radix sort is only applicable if the normalized key fully determines the order of the elements. For all other
+ * sortables, this sorter falls back to a {@link QuickSort}.
+ */
+public final class RadixSort implements IndexedSorter {
+
+	private static final int RADIX = 256;
+
+	private static final int INSERTION_SORT_THRESHOLD = 24;
+
+	private final IndexedSorter fallback = new QuickSort();
+
+	public RadixSort() {
+	}
+
+	/**
+	 * Checks whether the given sortable can be sorted by a radix sort, i.e. whether it exposes its normalized key
+	 * and that key fully determines the order of its elements.
+	 * 
+	 * @param s The sortable to check.
+	 * @return True, if the sortable can be radix sorted, false otherwise.
+	 */
+	public static boolean isApplicable(IndexedSortable s) {
+		if (s instanceof RadixSortable) {
+			final RadixSortable rs = (RadixSortable) s;
+			return rs.isNormalizedKeyFullyDetermining() && rs.getNumKeyBytes() > 0;
+		} else {
+			return false;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.IndexedSorter#sort(eu.stratosphere.pact.runtime.sort.IndexedSortable, int, int)
+	 */
+	@Override
+	public void sort(IndexedSortable s, int l, int r) {
+		if (isApplicable(s)) {
+			final RadixSortable rs = (RadixSortable) s;
+			final int numKeyBytes = rs.getNumKeyBytes();
+			sortInternal(rs, l, r, 0, numKeyBytes, new int[numKeyBytes][RADIX + 1], new int[RADIX]);
+		} else {
+			this.fallback.sort(s, l, r);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.IndexedSorter#sort(eu.stratosphere.pact.runtime.sort.IndexedSortable)
+	 */
+	@Override
+	public void sort(IndexedSortable s) {
+		sort(s, 0, s.size());
+	}
+
+	/**
+	 * Sorts the range <code>[l, r)</code>, whose elements all share the same first <code>depth</code> key bytes.
+	 * 
+	 * @param s The sortable.
+	 * @param l The first position of the range (inclusive).
+	 * @param r The last position of the range (exclusive).
+	 * @param depth The key byte to distribute the elements by.
+	 * @param numKeyBytes The total number of key bytes.
+	 * @param bounds The bucket boundaries, one array per key byte. Recursive calls for deeper key bytes must not
+	 *               overwrite the boundaries of the shallower ones.
+	 * @param next The fill pointers of the buckets during the permutation.
+	 */
+	private static void sortInternal(final RadixSortable s, int l, int r, int depth, final int numKeyBytes,
+			final int[][] bounds, final int[] next)
+	{
+		while (true) {
+			if (r - l < INSERTION_SORT_THRESHOLD) {
+				for (int i = l; i < r; ++i) {
+					for (int j = i; j > l && s.compare(j - 1, j) > 0; --j) {
+						s.swap(j, j - 1);
+					}
+				}
+				return;
+			}
+
+			// histogram of the current key byte
+			final int[] b = bounds[depth];
+			for (int k = 0; k <= RADIX; k++) {
+				b[k] = 0;
+			}
+			for (int i = l; i < r; i++) {
+				b[s.getKeyByte(i, depth) + 1]++;
+			}
+
+			// if all elements fall into the same bucket, move on to the next key byte right away
+			boolean singleBucket = false;
+			for (int k = 1; k <= RADIX; k++) {
+				if (b[k] == r - l) {
+					singleBucket = true;
+					break;
+				}
+				else if (b[k] != 0) {
+					break;
+				}
+			}
+			if (singleBucket) {
+				if (++depth == numKeyBytes) {
+					return;
+				}
+				continue;
+			}
+
+			// turn the counts into the bucket boundaries: bucket k spans [b[k], b[k+1])
+			b[0] = l;
+			for (int k = 1; k <= RADIX; k++) {
+				b[k] += b[k - 1];
+			}
+			System.arraycopy(b, 0, next, 0, RADIX);
+
+			// permute the elements into their buckets
+			for (int k = 0; k < RADIX; k++) {
+				final int end = b[k + 1];
+				int pos = next[k];
+				while (pos < end) {
+					final int v = s.getKeyByte(pos, depth);
+					if (v == k) {
+						pos++;
+					} else {
+						s.swap(pos, next[v]++);
+					}
+				}
+				next[k] = pos;
+			}
+
+			// recurse into the buckets with the next key byte
+			final int nextDepth = depth + 1;
+			if (nextDepth < numKeyBytes) {
+				for (int k = 0; k < RADIX; k++) {
+					if (b[k + 1] - b[k] > 1) {
+						sortInternal(s, b[k], b[k + 1], nextDepth, numKeyBytes, bounds, next);
+					}
+				}
+			}
+			return;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.sort;
+
+/**
+ * An {@link IndexedSortable} whose elements carry a fixed-length, binary comparable key prefix (the normalized key).
+ * If that prefix fully determines the order of the elements, the sortable can be sorted byte by byte with a
+ * {@link RadixSort}, without ever calling {@link IndexedSortable#compare(int, int)} on the full key.
+ */
+public interface RadixSortable extends IndexedSortable {
+
+	/**
+	 * Checks whether the normalized key bytes of the elements alone determine their order. Only in that case
+	 * may the elements be sorted by their key bytes.
+	 * 
+	 * @return True, if the normalized key fully determines the order, false if it is only a prefix.
+	 */
+	boolean isNormalizedKeyFullyDetermining();
+
+	/**
+	 * Gets the number of bytes in the normalized key of each element.
+	 * 
+	 * @return The number of normalized key bytes.
+	 */
+	int getNumKeyBytes();
+
+	/**
+	 * Gets a byte from the normalized key of the element at the given position. The byte is returned as an
+	 * unsigned value in the range <code>[0, 255]</code>, already adjusted such that elements with a smaller value
+	 * sort first (i.e. an inverted normalized key is inverted back).
+	 * 
+	 * @param i The logical position of the element.
+	 * @param keyByte The position of the byte inside the normalized key, starting at <code>0</code>.
+	 * @return The unsigned key byte.
+	 */
+	int getKeyByte(int i, int keyByte);
+}
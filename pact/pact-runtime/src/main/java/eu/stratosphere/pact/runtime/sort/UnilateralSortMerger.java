@@ -25,7 +25,12 @@ import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -55,6 +60,9 @@ import eu.stratosphere.pact.runtime.util.MathUtils;
  * the logic is factored into three threads (read, sort, spill) which communicate through a set of blocking queues,
  * forming a closed loop.  Memory is allocated using the {@link MemoryManager} interface. Thus the component will
  * not exceed the provided memory limits.
+ * <p>
+ * The sorting thread may hand the buffers to a pool of several threads, such that multiple filled buffers are
+ * sorted concurrently. The degree of parallelism of the sorting stage is given at construction time.
  * 
  * @author Stephan Ewen
  * @author Erik Nijkamp
@@ -70,11 +78,6 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 	 */
 	private static final Log LOG = LogFactory.getLog(UnilateralSortMerger.class);
 	
-	/**
-	 * Fix length records with a length below this threshold will be in-place sorted, if possible.
-	 */
-	private static final int THRESHOLD_FOR_IN_PLACE_SORTING = 32;
-	
 	/**
 	 * The minimal number of buffers to use by the writers.
 	 */
@@ -163,6 +166,16 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 	 * Flag indicating that the sorter was closed.
 	 */
 	protected volatile boolean closed;
+	
+	/**
+	 * The number of threads that sort filled buffers concurrently.
+	 */
+	protected final int numSortThreads;
+	
+	/**
+	 * The number of merge passes over spilled data, including the final streamed merge.
+	 */
+	protected volatile int numMergePasses;
 
 	// ------------------------------------------------------------------------
 	//                         Constructor & Shutdown
@@ -227,7 +240,41 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 	throws IOException, MemoryAllocationException
 	{
 		this(memoryManager, ioManager, input, parentTask, serializer, comparator,
-			totalMemory, numSortBuffers, maxNumFileHandles, startSpillingFraction, false);
+			totalMemory, numSortBuffers, maxNumFileHandles, startSpillingFraction, 1, false);
+	}
+	
+	/**
+	 * Creates a new sorter that reads the data from a given reader and provides an iterator returning that
+	 * data in a sorted manner. The memory is divided among sort buffers, write buffers and read buffers
+	 * automatically. Up to <code>numSortThreads</code> filled sort buffers are sorted concurrently.
+	 * 
+	 * @param memoryManager The memory manager from which to allocate the memory.
+	 * @param ioManager The I/O manager, which is used to write temporary files to disk.
+	 * @param input The input that is sorted by this sorter.
+	 * @param parentTask The parent task, which owns all resources used by this sorter.
+	 * @param serializer The type serializer.
+	 * @param comparator The type comparator establishing the order relation.
+	 * @param totalMemory The total amount of memory dedicated to sorting, merging and I/O.
+	 * @param numSortBuffers The number of distinct buffers to use creation of the initial runs. If not positive,
+	 *                       the number is chosen automatically, such that all sorting threads can be kept busy.
+	 * @param maxNumFileHandles The maximum number of files to be merged at once.
+	 * @param startSpillingFraction The faction of the buffers that have to be filled before the spilling thread
+	 *                              actually begins spilling data to disk.
+	 * @param numSortThreads The number of threads that sort buffers concurrently.
+	 * 
+	 * @throws IOException Thrown, if an error occurs initializing the resources for external sorting.
+	 * @throws MemoryAllocationException Thrown, if not enough memory can be obtained from the memory manager to
+	 *                                   perform the sort.
+	 */
+	public UnilateralSortMerger(MemoryManager memoryManager, IOManager ioManager,
+			MutableObjectIterator<E> input, AbstractInvokable parentTask, 
+			TypeSerializer<E> serializer, TypeComparator<E> comparator,
+			long totalMemory, int numSortBuffers, int maxNumFileHandles, 
+			float startSpillingFraction, int numSortThreads)
+	throws IOException, MemoryAllocationException
+	{
+		this(memoryManager, ioManager, input, parentTask, serializer, comparator,
+			totalMemory, numSortBuffers, maxNumFileHandles, startSpillingFraction, numSortThreads, false);
 	}
 	
 	/**
@@ -257,6 +304,39 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 			long totalMemory, int numSortBuffers, int maxNumFileHandles, 
 			float startSpillingFraction, boolean noSpillingMemory)
 	throws IOException, MemoryAllocationException
+	{
+		this(memoryManager, ioManager, input, parentTask, serializer, comparator,
+			totalMemory, numSortBuffers, maxNumFileHandles, startSpillingFraction, 1, noSpillingMemory);
+	}
+	
+	/**
+	 * Internal constructor and constructor for subclasses that want to circumvent the spilling.
+	 * 
+	 * @param memoryManager The memory manager from which to allocate the memory.
+	 * @param ioManager The I/O manager, which is used to write temporary files to disk.
+	 * @param input The input that is sorted by this sorter.
+	 * @param parentTask The parent task, which owns all resources used by this sorter.
+	 * @param serializer The type serializer.
+	 * @param comparator The type comparator establishing the order relation.
+	 * @param totalMemory The total amount of memory dedicated to sorting, merging and I/O.
+	 * @param numSortBuffers The number of distinct buffers to use creation of the initial runs.
+	 * @param maxNumFileHandles The maximum number of files to be merged at once.
+	 * @param startSpillingFraction The faction of the buffers that have to be filled before the spilling thread
+	 *                              actually begins spilling data to disk.
+	 * @param numSortThreads The number of threads that sort buffers concurrently.
+	 * @param noSpilling When set to true, no memory will be allocated for writing and no spilling thread
+	 *                   will be spawned.
+	 * 
+	 * @throws IOException Thrown, if an error occurs initializing the resources for external sorting.
+	 * @throws MemoryAllocationException Thrown, if not enough memory can be obtained from the memory manager to
+	 *                                   perform the sort.
+	 */
+	protected UnilateralSortMerger(MemoryManager memoryManager, IOManager ioManager,
+			MutableObjectIterator<E> input, AbstractInvokable parentTask, 
+			TypeSerializer<E> serializer, TypeComparator<E> comparator,
+			long totalMemory, int numSortBuffers, int maxNumFileHandles, 
+			float startSpillingFraction, int numSortThreads, boolean noSpillingMemory)
+	throws IOException, MemoryAllocationException
 	{
 		// sanity checks
 		if (memoryManager == null | (ioManager == null && !noSpillingMemory) | serializer == null | comparator == null) {
@@ -268,6 +348,9 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 		if (maxNumFileHandles < 2) {
 			throw new IllegalArgumentException("Merger cannot work with less than two file handles.");
 		}
+		if (numSortThreads < 1) {
+			throw new IllegalArgumentException("The sorter needs at least one sorting thread.");
+		}
 		
 		this.memoryManager = memoryManager;
 		
@@ -325,13 +408,22 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 			else {
 				numSortBuffers = 1;
 			}
+			
+			// with multiple sorting threads, we want one buffer per thread plus one that is filled meanwhile
+			if (numSortThreads > 1) {
+				final int maxSortBuffers = Math.max(sortMemPages / MIN_NUM_SORT_MEM_SEGMENTS, 1);
+				numSortBuffers = Math.max(numSortBuffers, Math.min(numSortThreads + 1, maxSortBuffers));
+			}
 		}
+		// more threads than buffers could never be busy at the same time
+		this.numSortThreads = Math.min(numSortThreads, numSortBuffers);
 		final int numSegmentsPerSortBuffer = sortMemPages / numSortBuffers;
 		
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("Instantiating sorter with " + sortMemPages + " pages of sorting memory (=" +
 				sortMemory + " bytes total) divided over " + numSortBuffers + " sort buffers (" + 
-				numSegmentsPerSortBuffer + " pages per buffer). Using " + numWriteBuffers + 
+				numSegmentsPerSortBuffer + " pages per buffer) and sorted by " + this.numSortThreads + 
+				" threads. Using " + numWriteBuffers + 
 				" buffers for writing sorted results and merging maximally " + maxNumFileHandles +
 				" streams at once.");
 		}
@@ -348,6 +440,13 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 		// circular queues pass buffers between the threads
 		final CircularQueues<E> circularQueues = new CircularQueues<E>();
 		
+		// fix-length records with fully normalizable keys are sorted in place, all others out of place
+		final boolean sortInPlace = FixedLengthRecordSorter.isApplicable(serializer, comparator, memoryManager.getPageSize());
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Sorting records " + (sortInPlace ? "in place with a fixed-length record sorter." : 
+				"with a normalized key sorter."));
+		}
+		
 		// allocate the sort buffers and fill empty queue with them
 		final Iterator<MemorySegment> segments = this.sortReadMemory.iterator();
 		for (int i = 0; i < numSortBuffers; i++)
@@ -362,9 +461,7 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 			final InMemorySorter<E> buffer;
 			
 			// instantiate a fix-length in-place sorter, if possible, otherwise the out-of-place sorter
-			if (comp.supportsSerializationWithKeyNormalization() &&
-					serializer.getLength() > 0 && serializer.getLength() <= THRESHOLD_FOR_IN_PLACE_SORTING)
-			{
+			if (sortInPlace) {
 				buffer = new FixedLengthRecordSorter<E>(serializer, comp, sortSegments);
 			} else {
 				buffer = new NormalizedKeySorter<E>(serializer, comp, sortSegments);
@@ -405,6 +502,17 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 		startThreads();
 	}
 	
+	/**
+	 * Gets the number of merge passes that were made over spilled data. The final merge, which is streamed into the
+	 * consumer of the sorted data, counts as one pass. Sorts that did not spill made no merge passes. The number is
+	 * final once the iterator over the sorted data is available.
+	 * 
+	 * @return The number of merge passes.
+	 */
+	public int getNumMergePasses() {
+		return this.numMergePasses;
+	}
+	
 	/**
 	 * Starts all the threads that are used by this sort-merger.
 	 */
@@ -596,7 +704,7 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 	protected ThreadBase<E> getSortingThread(ExceptionHandler<IOException> exceptionHandler, CircularQueues<E> queues,
 			AbstractInvokable parentTask)
 	{
-		return new SortingThread<E>(exceptionHandler, queues, parentTask);
+		return new SortingThread<E>(exceptionHandler, queues, parentTask, this.numSortThreads);
 	}
 
 	/**
@@ -1105,14 +1213,23 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 	}
 
 	/**
-	 * The thread that sorts filled buffers.
+	 * The thread that sorts filled buffers. If configured with more than one sorting thread, it hands the buffers
+	 * to a pool of threads that sort multiple buffers concurrently. Buffers may then reach the spilling thread in a
+	 * different order than they were filled, which is fine, because each of them forms an independent run. The
+	 * end-of-data marker is only forwarded after all buffers taken before it have been sorted.
 	 */
 	protected static class SortingThread<E> extends ThreadBase<E>
 	{		
 		private final IndexedSorter sorter;
+		
+		private final IndexedSorter radixSorter;
+		
+		private final ExecutorService sortExecutor;
+		
+		private final List<Future<?>> pendingSorts;
 
 		/**
-		 * Creates a new sorting thread.
+		 * Creates a new sorting thread that sorts all buffers itself.
 		 * 
 		 * @param exceptionHandler The exception handler to call for all exceptions.
 		 * @param queues The queues used to pass buffers between the threads.
@@ -1120,10 +1237,41 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 		 */
 		public SortingThread(ExceptionHandler<IOException> exceptionHandler, CircularQueues<E> queues,
 				AbstractInvokable parentTask) {
+			this(exceptionHandler, queues, parentTask, 1);
+		}
+		
+		/**
+		 * Creates a new sorting thread.
+		 * 
+		 * @param exceptionHandler The exception handler to call for all exceptions.
+		 * @param queues The queues used to pass buffers between the threads.
+		 * @param parentTask The task that started this thread. If non-null, it is used to register this thread.
+		 * @param numSortThreads The number of buffers that are sorted concurrently. 
+		 */
+		public SortingThread(ExceptionHandler<IOException> exceptionHandler, CircularQueues<E> queues,
+				AbstractInvokable parentTask, final int numSortThreads) {
 			super(exceptionHandler, "SortMerger sorting thread", queues, parentTask);
 
 			// members
 			this.sorter = new QuickSort();
+			this.radixSorter = new RadixSort();
+			
+			if (numSortThreads > 1) {
+				this.sortExecutor = Executors.newFixedThreadPool(numSortThreads, new ThreadFactory() {
+					private int num = 0;
+					
+					@Override
+					public Thread newThread(Runnable r) {
+						final Thread t = new Thread(r, "SortMerger sorting thread #" + (++this.num));
+						t.setDaemon(true);
+						return t;
+					}
+				});
+				this.pendingSorts = new ArrayList<Future<?>>(numSortThreads);
+			} else {
+				this.sortExecutor = null;
+				this.pendingSorts = null;
+			}
 		}
 
 		/**
@@ -1131,43 +1279,121 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 		 */
 		public void go() throws IOException
 		{			
-			boolean alive = true;
-
-			// loop as long as the thread is marked alive
-			while (isRunning() && alive) {
-				CircularElement<E> element = null;
-				try {
-					element = this.queues.sort.take();
-				}
-				catch (InterruptedException iex) {
-					if (isRunning()) {
-						if (LOG.isErrorEnabled())
-							LOG.error(
-								"Sorting thread was interrupted (without being shut down) while grabbing a buffer. " +
-								"Retrying to grab buffer...");
+			try {
+				boolean alive = true;
+	
+				// loop as long as the thread is marked alive
+				while (isRunning() && alive) {
+					CircularElement<E> element = null;
+					try {
+						element = this.queues.sort.take();
+					}
+					catch (InterruptedException iex) {
+						if (isRunning()) {
+							if (LOG.isErrorEnabled())
+								LOG.error(
+									"Sorting thread was interrupted (without being shut down) while grabbing a buffer. " +
+									"Retrying to grab buffer...");
+							continue;
+						}
+						else {
+							return;
+						}
+					}
+	
+					if (element != EOF_MARKER && element != SPILLING_MARKER) {
+						if (this.sortExecutor == null) {
+							sortBuffer(element);
+						} else {
+							final CircularElement<E> toSort = element;
+							
+							// forget about the sorts that are done already
+							for (Iterator<Future<?>> pending = this.pendingSorts.iterator(); pending.hasNext();) {
+								if (pending.next().isDone()) {
+									pending.remove();
+								}
+							}
+							
+							this.pendingSorts.add(this.sortExecutor.submit(new Runnable() {
+								@Override
+								public void run() {
+									try {
+										sortBuffer(toSort);
+									} catch (Throwable t) {
+										internalHandleException(new IOException("Thread '" + Thread.currentThread().getName() + 
+											"' terminated due to an exception: " + t.getMessage(), t));
+									}
+								}
+							}));
+						}
+						// the buffer is passed on after it has been sorted
 						continue;
 					}
-					else {
-						return;
+					else if (element == EOF_MARKER) {
+						if (this.sortExecutor != null && !awaitPendingSorts()) {
+							return;
+						}
+						if (LOG.isDebugEnabled())
+							LOG.debug("Sorting thread done.");
+						alive = false;
 					}
+					this.queues.spill.add(element);
 				}
-
-				if (element != EOF_MARKER && element != SPILLING_MARKER) {
-					if (LOG.isDebugEnabled())
-						LOG.debug("Sorting buffer " + element.id + ".");
-					
-					this.sorter.sort(element.buffer);
-					
-					if (LOG.isDebugEnabled())
-						LOG.debug("Sorted buffer " + element.id + ".");
+			}
+			finally {
+				if (this.sortExecutor != null) {
+					this.sortExecutor.shutdownNow();
 				}
-				else if (element == EOF_MARKER) {
-					if (LOG.isDebugEnabled())
-						LOG.debug("Sorting thread done.");
-					alive = false;
+			}
+		}
+		
+		/**
+		 * Sorts the given buffer and passes it on to the spilling thread.
+		 * 
+		 * @param element The element holding the buffer to sort.
+		 */
+		private void sortBuffer(CircularElement<E> element) {
+			if (LOG.isDebugEnabled())
+				LOG.debug("Sorting buffer " + element.id + ".");
+			
+			// buffers whose normalized keys fully determine the order are sorted by their key bytes
+			if (RadixSort.isApplicable(element.buffer)) {
+				this.radixSorter.sort(element.buffer);
+			} else {
+				this.sorter.sort(element.buffer);
+			}
+			
+			if (LOG.isDebugEnabled())
+				LOG.debug("Sorted buffer " + element.id + ".");
+			
+			this.queues.spill.add(element);
+		}
+		
+		/**
+		 * Waits until all buffers that were handed to the sorting threads have been sorted.
+		 * 
+		 * @return True, if all sorts completed, false, if the thread was shut down while waiting.
+		 * @throws IOException Thrown, if the sorting of a buffer failed.
+		 */
+		private boolean awaitPendingSorts() throws IOException {
+			for (Future<?> pending : this.pendingSorts) {
+				while (true) {
+					try {
+						pending.get();
+						break;
+					}
+					catch (InterruptedException iex) {
+						if (!isRunning()) {
+							return false;
+						}
+					}
+					catch (ExecutionException eex) {
+						throw new IOException("Sorting a buffer failed: " + eex.getCause().getMessage(), eex.getCause());
+					}
 				}
-				this.queues.spill.add(element);
 			}
+			this.pendingSorts.clear();
+			return isRunning();
 		}
 	}
 
@@ -1193,6 +1419,8 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 		
 		protected final int numWriteBuffersToCluster;
 		
+		protected final MergePlanner mergePlanner;			// decides on fan-in, passes and read-ahead
+		
 		/**
 		 * Creates the spilling thread.
 		 * 
@@ -1221,6 +1449,8 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 			this.writeMemory = writeMemory;
 			this.maxNumFileHandles = maxNumFileHandles;
 			this.numWriteBuffersToCluster = writeMemory.size() >= 4 ? writeMemory.size() / 2 : 1;
+			this.mergePlanner = new MergePlanner(maxNumFileHandles, Math.max(sortReadMemory.size(), 2),
+				memManager.getPageSize());
 		}
 
 		/**
@@ -1357,9 +1587,10 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 
 			// ------------------- Merging Phase ------------------------
 			
-			// merge channels until sufficient file handles are available
-			while (isRunning() && channelIDs.size() > this.maxNumFileHandles) {
-				channelIDs = mergeChannelList(channelIDs, this.sortReadMemory, this.writeMemory);
+			// merge channels until they can be merged in one final pass
+			final int fanIn = this.mergePlanner.getFanIn(channelIDs.size());
+			while (isRunning() && MergePlanner.getNumPasses(channelIDs.size(), fanIn) > 1) {
+				channelIDs = mergeChannelList(channelIDs, fanIn, this.sortReadMemory, this.writeMemory);
 			}
 			
 			// from here on, we won't write again
@@ -1380,7 +1611,8 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 				// allocate the read memory and register it to be released
 				getSegmentsForReaders(readBuffers, this.sortReadMemory, channelIDs.size());
 				
-				// get the readers and register them to be released
+				// get the readers and register them to be released. the final merge is streamed into the consumer.
+				countMergePass();
 				setResultIterator(getMergingIterator(channelIDs, readBuffers, new ArrayList<BlockChannelAccess<?, ?>>(channelIDs.size())));
 			}
 
@@ -1448,8 +1680,9 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 				final List<MemorySegment> segsForChannel = inputSegments.get(i);
 				
 				// create a reader. if there are multiple segments for the reader, issue multiple together per I/O request
-				final BlockChannelReader reader = segsForChannel.size() >= 4 ? 
-					this.ioManager.createBlockChannelReader(channel.getChannel(), segsForChannel.size() / 2) :
+				final int numRequestsToBundle = this.mergePlanner.getNumRequestsToBundle(segsForChannel.size());
+				final BlockChannelReader reader = numRequestsToBundle > 1 ? 
+					this.ioManager.createBlockChannelReader(channel.getChannel(), numRequestsToBundle) :
 					this.ioManager.createBlockChannelReader(channel.getChannel());
 					
 				readerList.add(reader);
@@ -1466,51 +1699,54 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 		}
 
 		/**
-		 * Merges the given sorted runs to a smaller number of sorted runs. 
+		 * Performs one intermediate merge pass over the given sorted runs, as planned by the {@link MergePlanner}.
+		 * Only as many of the runs are merged as are needed to reduce the remaining number of merge passes by one.
 		 * 
 		 * @param channelIDs The IDs of the sorted runs that need to be merged.
+		 * @param fanIn The fan-in that the merge planner chose for the merge.
+		 * @param allReadBuffers The buffers to be divided among the readers.
 		 * @param writeBuffers The buffers to be used by the writers.
-		 * @param writeBufferSize The size of the write buffers.
-		 * @param  readMemorySize The amount of memory dedicated to the readers.
-		 * @return A list of the IDs of the merged channels.
+		 * @return A list of the IDs of the merged channels and the channels that were not merged in this pass.
 		 * @throws IOException Thrown, if the readers or writers encountered an I/O problem.
-		 * @throws MemoryAllocationException Thrown, if the specified memory is insufficient to merge the channels
-		 *                                   or if the memory manager could not provide the requested memory.
 		 */
 		protected final List<ChannelWithBlockCount> mergeChannelList(final List<ChannelWithBlockCount> channelIDs,
-					final List<MemorySegment> allReadBuffers, final List<MemorySegment> writeBuffers)
+					final int fanIn, final List<MemorySegment> allReadBuffers, final List<MemorySegment> writeBuffers)
 		throws IOException
 		{
-			final double numMerges = Math.ceil(channelIDs.size() / ((double) this.maxNumFileHandles));
-			final int channelsToMergePerStep = (int) Math.ceil(channelIDs.size() / numMerges);
+			final List<List<ChannelWithBlockCount>> groups = this.mergePlanner.planIntermediatePass(channelIDs, fanIn);
+			if (groups.isEmpty()) {
+				return channelIDs;
+			}
 			
-			// allocate the memory for the merging step
-			final List<List<MemorySegment>> readBuffers = new ArrayList<List<MemorySegment>>(channelsToMergePerStep);
-			getSegmentsForReaders(readBuffers, allReadBuffers, channelsToMergePerStep);
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Intermediate merge pass over " + channelIDs.size() + " runs: merging " + groups.size() + 
+					" groups with a fan-in of up to " + fanIn + ".");
+			}
 			
-			// the list containing the IDs of the merged channels
-			final ArrayList<ChannelWithBlockCount> mergedChannelIDs = new ArrayList<ChannelWithBlockCount>((int) (numMerges + 1));
-
-			final ArrayList<ChannelWithBlockCount> channelsToMergeThisStep = new ArrayList<ChannelWithBlockCount>(channelsToMergePerStep);
-			int channelNum = 0;
-			while (isRunning() && channelNum < channelIDs.size()) {
-				channelsToMergeThisStep.clear();
-
-				for (int i = 0; i < channelsToMergePerStep && channelNum < channelIDs.size(); i++, channelNum++) {
-					channelsToMergeThisStep.add(channelIDs.get(channelNum));
-				}
+			// the runs that are not touched in this pass are carried over
+			final ArrayList<ChannelWithBlockCount> mergedChannelIDs = new ArrayList<ChannelWithBlockCount>(channelIDs);
+			
+			for (int i = 0; isRunning() && i < groups.size(); i++) {
+				final List<ChannelWithBlockCount> channelsToMergeThisStep = groups.get(i);
+				mergedChannelIDs.removeAll(channelsToMergeThisStep);
 				
-				// merge only, if there is more than one channel
-				if (channelsToMergeThisStep.size() < 2)  {
-					mergedChannelIDs.addAll(channelsToMergeThisStep);
-				}
-				else {
-					mergedChannelIDs.add(mergeChannels(channelsToMergeThisStep, readBuffers, writeBuffers));
-				}
+				// allocate the memory for the merging step
+				final List<List<MemorySegment>> readBuffers = new ArrayList<List<MemorySegment>>(channelsToMergeThisStep.size());
+				getSegmentsForReaders(readBuffers, allReadBuffers, channelsToMergeThisStep.size());
+				
+				mergedChannelIDs.add(mergeChannels(channelsToMergeThisStep, readBuffers, writeBuffers));
 			}
 			
+			countMergePass();
 			return mergedChannelIDs;
 		}
+		
+		/**
+		 * Counts one more merge pass over the spilled data.
+		 */
+		protected final void countMergePass() {
+			UnilateralSortMerger.this.numMergePasses++;
+		}
 
 		/**
 		 * Merges the sorted runs described by the given Channel IDs into a single sorted run. The merging process
@@ -0,0 +1,131 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.statistics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import eu.stratosphere.nephele.io.IOReadableWritable;
+
+/**
+ * A HyperLogLog sketch that estimates the number of distinct elements in a stream from their 32 bit hash codes,
+ * using a fixed and small amount of memory. The sketch uses {@value #NUM_REGISTERS} registers, which gives a typical
+ * relative error of about three percent. Sketches built on different parts of a stream can be merged into a sketch
+ * for the whole stream.
+ * <p>
+ * The hash codes are mixed before they are used, so weak hash functions (such as the identity hash of integers) are
+ * sufficient.
+ */
+public final class HyperLogLog implements IOReadableWritable
+{
+	private static final int REGISTER_BITS = 10;
+	
+	private static final int NUM_REGISTERS = 1 << REGISTER_BITS;
+	
+	private static final double ALPHA_MM = (0.7213 / (1.0 + 1.079 / NUM_REGISTERS)) * NUM_REGISTERS * NUM_REGISTERS;
+	
+	private static final double TWO_TO_THE_32 = 4294967296.0;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private final byte[] registers = new byte[NUM_REGISTERS];
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Adds an element, described by its hash code, to the sketch.
+	 * 
+	 * @param hashCode The hash code of the element.
+	 */
+	public void add(int hashCode) {
+		// murmur hash finalizer, to spread the bits of weak hash codes
+		int h = hashCode;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		
+		final int index = h >>> (32 - REGISTER_BITS);
+		final int rank = Math.min(Integer.numberOfLeadingZeros(h << REGISTER_BITS), 32 - REGISTER_BITS) + 1;
+		if (rank > this.registers[index]) {
+			this.registers[index] = (byte) rank;
+		}
+	}
+	
+	/**
+	 * Merges the given sketch into this sketch. Afterwards, this sketch describes the union of both streams.
+	 * 
+	 * @param other The sketch to merge into this one.
+	 */
+	public void merge(HyperLogLog other) {
+		final byte[] mine = this.registers;
+		final byte[] theirs = other.registers;
+		for (int i = 0; i < NUM_REGISTERS; i++) {
+			if (theirs[i] > mine[i]) {
+				mine[i] = theirs[i];
+			}
+		}
+	}
+	
+	/**
+	 * Gets the estimated number of distinct elements that were added to this sketch.
+	 * 
+	 * @return The estimated number of distinct elements.
+	 */
+	public long estimate() {
+		double sum = 0.0;
+		int zeros = 0;
+		for (int i = 0; i < NUM_REGISTERS; i++) {
+			final int r = this.registers[i];
+			sum += 1.0 / (1L << r);
+			if (r == 0) {
+				zeros++;
+			}
+		}
+		
+		double estimate = ALPHA_MM / sum;
+		if (estimate <= 2.5 * NUM_REGISTERS) {
+			// small range correction: linear counting
+			if (zeros > 0) {
+				estimate = NUM_REGISTERS * Math.log(((double) NUM_REGISTERS) / zeros);
+			}
+		} else if (estimate > TWO_TO_THE_32 / 30.0) {
+			// large range correction for the collisions of the 32 bit hash codes
+			estimate = -TWO_TO_THE_32 * Math.log(1.0 - estimate / TWO_TO_THE_32);
+		}
+		return Math.round(estimate);
+	}
+	
+	// --------------------------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.io.IOReadableWritable#write(java.io.DataOutput)
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.write(this.registers);
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.io.IOReadableWritable#read(java.io.DataInput)
+	 */
+	@Override
+	public void read(DataInput in) throws IOException {
+		in.readFully(this.registers);
+	}
+}
@@ -0,0 +1,170 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.statistics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import eu.stratosphere.nephele.io.IOReadableWritable;
+
+/**
+ * The statistics that were observed on the output of an operator while a job was running: The number of
+ * records, their total size in bytes, and the estimated number of distinct values for a set of key field
+ * combinations. The statistics of the parallel instances of an operator are merged into the statistics of the
+ * operator.
+ */
+public class OperatorStatistics implements IOReadableWritable
+{
+	private long numRecords;
+	
+	private long numBytes;
+	
+	private int[][] keyFields;
+	
+	private HyperLogLog[] sketches;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Creates empty statistics without any key fields. This constructor is used when the statistics are read.
+	 */
+	public OperatorStatistics() {
+		this(new int[0][]);
+	}
+	
+	/**
+	 * Creates empty statistics that track the distinct values of the given key field combinations.
+	 * 
+	 * @param keyFields The positions of the key fields, one array per key field combination.
+	 */
+	public OperatorStatistics(int[][] keyFields) {
+		this.keyFields = keyFields;
+		this.sketches = new HyperLogLog[keyFields.length];
+		for (int i = 0; i < keyFields.length; i++) {
+			this.sketches[i] = new HyperLogLog();
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Counts a record of the given size.
+	 * 
+	 * @param numBytes The size of the record in bytes.
+	 */
+	public void addRecord(int numBytes) {
+		this.numRecords++;
+		this.numBytes += numBytes;
+	}
+	
+	/**
+	 * Adds the hash code of a record's key to the sketch of the given key field combination.
+	 * 
+	 * @param keyFieldSet The index of the key field combination.
+	 * @param hashCode The hash code of the record's key.
+	 */
+	public void addKeyHash(int keyFieldSet, int hashCode) {
+		this.sketches[keyFieldSet].add(hashCode);
+	}
+	
+	/**
+	 * Merges the given statistics, observed on another part of the operator's output, into these statistics.
+	 * 
+	 * @param other The statistics to merge into these statistics.
+	 * @throws IllegalArgumentException Thrown, if the other statistics track different key field combinations.
+	 */
+	public void merge(OperatorStatistics other) {
+		if (!Arrays.deepEquals(this.keyFields, other.keyFields)) {
+			throw new IllegalArgumentException("The statistics track different key field combinations.");
+		}
+		this.numRecords += other.numRecords;
+		this.numBytes += other.numBytes;
+		for (int i = 0; i < this.sketches.length; i++) {
+			this.sketches[i].merge(other.sketches[i]);
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	public long getNumRecords() {
+		return this.numRecords;
+	}
+	
+	public long getNumBytes() {
+		return this.numBytes;
+	}
+	
+	public int getNumKeyFieldSets() {
+		return this.keyFields.length;
+	}
+	
+	public int[] getKeyFields(int keyFieldSet) {
+		return this.keyFields[keyFieldSet];
+	}
+	
+	/**
+	 * Gets the estimated number of distinct values of the given key field combination.
+	 * 
+	 * @param keyFieldSet The index of the key field combination.
+	 * @return The estimated number of distinct values, which is never larger than the number of records.
+	 */
+	public long getDistinctKeyEstimate(int keyFieldSet) {
+		return Math.min(this.sketches[keyFieldSet].estimate(), this.numRecords);
+	}
+	
+	// --------------------------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.io.IOReadableWritable#write(java.io.DataOutput)
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeLong(this.numRecords);
+		out.writeLong(this.numBytes);
+		out.writeInt(this.keyFields.length);
+		for (int i = 0; i < this.keyFields.length; i++) {
+			final int[] fields = this.keyFields[i];
+			out.writeInt(fields.length);
+			for (int k = 0; k < fields.length; k++) {
+				out.writeInt(fields[k]);
+			}
+			this.sketches[i].write(out);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.nephele.io.IOReadableWritable#read(java.io.DataInput)
+	 */
+	@Override
+	public void read(DataInput in) throws IOException {
+		this.numRecords = in.readLong();
+		this.numBytes = in.readLong();
+		final int numSets = in.readInt();
+		this.keyFields = new int[numSets][];
+		this.sketches = new HyperLogLog[numSets];
+		for (int i = 0; i < numSets; i++) {
+			final int[] fields = new int[in.readInt()];
+			for (int k = 0; k < fields.length; k++) {
+				fields[k] = in.readInt();
+			}
+			this.keyFields[i] = fields;
+			this.sketches[i] = new HyperLogLog();
+			this.sketches[i].read(in);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.statistics;
+
+import java.io.IOException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.type.KeyFieldOutOfBoundsException;
+import eu.stratosphere.pact.common.type.NullKeyFieldException;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.runtime.plugable.pactrecord.PactRecordComparator;
+
+/**
+ * A collector that observes the records emitted by an operator before it forwards them to the actual output
+ * collector. It counts the records and their bytes and estimates the number of distinct keys for a set of key
+ * field combinations. When the collector is closed, the observed statistics are written to the
+ * {@link RuntimeStatisticsStore}.
+ * <p>
+ * Records where a key field is missing are counted, but not added to the distinct key estimate of that key.
+ */
+public class RuntimeStatisticsCollector implements Collector<PactRecord>
+{
+	private static final Log LOG = LogFactory.getLog(RuntimeStatisticsCollector.class);
+	
+	private final Collector<PactRecord> delegate;
+	
+	private final PactRecordComparator[] keyComparators;
+	
+	private final OperatorStatistics stats;
+	
+	private final long[] numRecordsWithoutKey;	// per key field combination, records with a missing key field
+	
+	private final RuntimeStatisticsStore store;
+	
+	private final String signature;
+	
+	private final String runId;
+	
+	private final int subtask;
+	
+	private final int numSubtasks;
+	
+	/**
+	 * Creates a new collector that observes the records before forwarding them to the given collector.
+	 * 
+	 * @param delegate The collector to forward the records to.
+	 * @param keyComparators The comparators that describe the key field combinations to estimate distinct keys for.
+	 * @param store The store to write the statistics to.
+	 * @param signature The signature of the observed operator.
+	 * @param runId The identifier of the current run, for example the job id.
+	 * @param subtask The index of the parallel instance of the operator.
+	 * @param numSubtasks The number of parallel instances of the operator.
+	 */
+	public RuntimeStatisticsCollector(Collector<PactRecord> delegate, PactRecordComparator[] keyComparators,
+			RuntimeStatisticsStore store, String signature, String runId, int subtask, int numSubtasks)
+	{
+		this.delegate = delegate;
+		this.keyComparators = keyComparators;
+		this.store = store;
+		this.signature = signature;
+		this.runId = runId;
+		this.subtask = subtask;
+		this.numSubtasks = numSubtasks;
+		
+		final int[][] keyFields = new int[keyComparators.length][];
+		for (int i = 0; i < keyComparators.length; i++) {
+			keyFields[i] = keyComparators[i].getKeyPositions();
+		}
+		this.stats = new OperatorStatistics(keyFields);
+		this.numRecordsWithoutKey = new long[keyComparators.length];
+	}
+	
+	// --------------------------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.stubs.Collector#collect(java.lang.Object)
+	 */
+	@Override
+	public void collect(PactRecord record) {
+		this.stats.addRecord(record.getBinaryLength());
+		for (int i = 0; i < this.keyComparators.length; i++) {
+			try {
+				this.stats.addKeyHash(i, this.keyComparators[i].hash(record));
+			} catch (NullKeyFieldException nkex) {
+				this.numRecordsWithoutKey[i]++;
+			} catch (KeyFieldOutOfBoundsException kfobex) {
+				this.numRecordsWithoutKey[i]++;
+			}
+		}
+		this.delegate.collect(record);
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.stubs.Collector#close()
+	 */
+	@Override
+	public void close() {
+		this.delegate.close();
+		
+		if (LOG.isInfoEnabled()) {
+			for (int i = 0; i < this.numRecordsWithoutKey.length; i++) {
+				if (this.numRecordsWithoutKey[i] > 0) {
+					LOG.info(this.numRecordsWithoutKey[i] + " records of operator " + this.signature +
+						" miss a field of key " + i + " and are not part of its distinct key estimate.");
+				}
+			}
+		}
+		
+		// the statistics are a hint for the optimizer, failing to write them must not fail the job
+		try {
+			this.store.write(this.signature, this.runId, this.subtask, this.numSubtasks, this.stats);
+		} catch (IOException ioex) {
+			LOG.warn("Could not write the runtime statistics of operator " + this.signature + ": " + ioex.getMessage());
+		}
+	}
+	
+	/**
+	 * Gets the statistics observed so far.
+	 * 
+	 * @return The statistics observed so far.
+	 */
+	public OperatorStatistics getStatistics() {
+		return this.stats;
+	}
+	
+	/**
+	 * Gets the number of records observed so far that miss a field of the given key field combination.
+	 * 
+	 * @param keyIndex The index of the key field combination.
+	 * @return The number of records without the key.
+	 */
+	public long getNumberOfRecordsWithoutKey(int keyIndex) {
+		return this.numRecordsWithoutKey[keyIndex];
+	}
+}
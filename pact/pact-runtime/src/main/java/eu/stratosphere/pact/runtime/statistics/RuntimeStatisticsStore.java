@@ -0,0 +1,256 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.statistics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.fs.FSDataInputStream;
+import eu.stratosphere.nephele.fs.FileStatus;
+import eu.stratosphere.nephele.fs.FileSystem;
+import eu.stratosphere.nephele.fs.Path;
+
+/**
+ * A store for the statistics that were observed on the outputs of operators while jobs were running. The store
+ * is a directory that holds one sub-directory per operator, named by the operator's signature. Each parallel
+ * instance of an operator writes a file with its statistics into that directory. When the statistics are read,
+ * the files of the latest run for which all parallel instances reported their statistics are merged. Reading has
+ * no side effects: Files of older runs are removed when the last parallel instance of a newer run wrote its file.
+ * <p>
+ * For distributed setups, the directory must be on a file system that is shared by all task managers and the
+ * client that compiles the jobs, such as HDFS.
+ */
+public class RuntimeStatisticsStore
+{
+	private static final Log LOG = LogFactory.getLog(RuntimeStatisticsStore.class);
+	
+	private static final String FILE_SUFFIX = ".stats";
+	
+	private static final String IN_PROGRESS_SUFFIX = ".inprogress";
+	
+	private static final char SEPARATOR = '_';
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private final Path directory;
+	
+	private final FileSystem fs;
+	
+	/**
+	 * Creates a new store in the given directory. The directory is created, if it does not exist, yet.
+	 * 
+	 * @param directory The path of the directory. Paths without a scheme refer to the local file system.
+	 * @throws IOException Thrown, if the file system of the directory could not be accessed.
+	 */
+	public RuntimeStatisticsStore(String directory) throws IOException {
+		this.directory = new Path(directory);
+		final URI uri = this.directory.toUri();
+		this.fs = uri.getScheme() == null ? FileSystem.getLocalFileSystem() : FileSystem.get(uri);
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Writes the statistics of one parallel instance of an operator.
+	 * 
+	 * @param signature The signature of the operator.
+	 * @param runId The identifier of the run that produced the statistics, for example the job id.
+	 * @param subtask The index of the parallel instance that produced the statistics.
+	 * @param numSubtasks The number of parallel instances of the operator.
+	 * @param stats The statistics to write.
+	 * @throws IOException Thrown, if the statistics could not be written.
+	 */
+	public void write(String signature, String runId, int subtask, int numSubtasks, OperatorStatistics stats)
+	throws IOException
+	{
+		final Path operatorDir = new Path(this.directory, signature);
+		if (!this.fs.exists(operatorDir)) {
+			this.fs.mkdirs(operatorDir);
+		}
+		
+		final String name = runId + SEPARATOR + subtask + SEPARATOR + numSubtasks + FILE_SUFFIX;
+		final Path tmpFile = new Path(operatorDir, name + IN_PROGRESS_SUFFIX);
+		
+		// write to a temporary file first, such that readers never see partially written files
+		final DataOutputStream out = new DataOutputStream(this.fs.create(tmpFile, true));
+		try {
+			stats.write(out);
+		} finally {
+			out.close();
+		}
+		if (!this.fs.rename(tmpFile, new Path(operatorDir, name))) {
+			this.fs.delete(tmpFile, false);
+			throw new IOException("Could not move the statistics file '" + tmpFile + "' to its final name.");
+		}
+		
+		// the instance that completes the run removes the runs that are superseded by it
+		final Map<String, Run> runs = listRuns(operatorDir);
+		final Run current = runs.get(runId);
+		if (current != null && current.isComplete()) {
+			removeOlderRuns(runs, current);
+		}
+	}
+	
+	/**
+	 * Reads the statistics of the latest complete run of the operator with the given signature.
+	 * 
+	 * @param signature The signature of the operator.
+	 * @return The merged statistics of all parallel instances of the operator, or <code>null</code>, if no
+	 *         complete run of the operator has been recorded.
+	 * @throws IOException Thrown, if the statistics could not be read.
+	 */
+	public OperatorStatistics read(String signature) throws IOException {
+		final Path operatorDir = new Path(this.directory, signature);
+		if (!this.fs.exists(operatorDir)) {
+			return null;
+		}
+		final Map<String, Run> runs = listRuns(operatorDir);
+		
+		// find the latest run for which all parallel instances reported
+		Run latest = null;
+		for (Run run : runs.values()) {
+			if (run.isComplete() && (latest == null || run.modificationTime > latest.modificationTime)) {
+				latest = run;
+			}
+		}
+		if (latest == null) {
+			return null;
+		}
+		
+		OperatorStatistics merged = null;
+		for (Path file : latest.files) {
+			final OperatorStatistics stats = new OperatorStatistics();
+			final FSDataInputStream fdis = this.fs.open(file);
+			try {
+				stats.read(new DataInputStream(fdis));
+			} finally {
+				fdis.close();
+			}
+			
+			if (merged == null) {
+				merged = stats;
+			} else {
+				merged.merge(stats);
+			}
+		}
+		
+		return merged;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Lists the statistics files in the given operator directory and groups them by the run that wrote them.
+	 * 
+	 * @param operatorDir The directory of the operator.
+	 * @return The runs, keyed by their identifier.
+	 * @throws IOException Thrown, if the directory could not be listed.
+	 */
+	private Map<String, Run> listRuns(Path operatorDir) throws IOException {
+		final Map<String, Run> runs = new HashMap<String, Run>();
+		final FileStatus[] files = this.fs.listStatus(operatorDir);
+		if (files == null) {
+			return runs;
+		}
+		
+		for (FileStatus file : files) {
+			final String name = file.getPath().getName();
+			if (file.isDir() || !name.endsWith(FILE_SUFFIX)) {
+				continue;
+			}
+			
+			final String base = name.substring(0, name.length() - FILE_SUFFIX.length());
+			final int numPos = base.lastIndexOf(SEPARATOR);
+			final int subtaskPos = numPos < 0 ? -1 : base.lastIndexOf(SEPARATOR, numPos - 1);
+			if (subtaskPos <= 0) {
+				continue;
+			}
+			final String runId = base.substring(0, subtaskPos);
+			final int numSubtasks;
+			try {
+				numSubtasks = Integer.parseInt(base.substring(numPos + 1));
+			} catch (NumberFormatException nfex) {
+				continue;
+			}
+			
+			Run run = runs.get(runId);
+			if (run == null) {
+				run = new Run(numSubtasks);
+				runs.put(runId, run);
+			}
+			run.files.add(file.getPath());
+			run.modificationTime = Math.max(run.modificationTime, file.getModificationTime());
+			run.firstModificationTime = Math.min(run.firstModificationTime, file.getModificationTime());
+		}
+		return runs;
+	}
+	
+	/**
+	 * Removes the files of all runs that were written completely before the given run started, complete or not.
+	 * Runs that overlap with the given run are kept, as they may still be in progress.
+	 * 
+	 * @param runs All runs of the operator.
+	 * @param latest The run that supersedes the older runs.
+	 */
+	private void removeOlderRuns(Map<String, Run> runs, Run latest) {
+		for (Run run : runs.values()) {
+			if (run != latest && run.modificationTime < latest.firstModificationTime) {
+				for (Path file : run.files) {
+					try {
+						this.fs.delete(file, false);
+					} catch (IOException ioex) {
+						if (LOG.isDebugEnabled()) {
+							LOG.debug("Could not remove outdated statistics file '" + file + "': " + ioex.getMessage());
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * The statistics files written by the parallel instances of an operator in one run.
+	 */
+	private static final class Run
+	{
+		private final List<Path> files = new ArrayList<Path>();
+		
+		private final int numSubtasks;
+		
+		private long modificationTime;
+		
+		private long firstModificationTime = Long.MAX_VALUE;
+		
+		private Run(int numSubtasks) {
+			this.numSubtasks = numSubtasks;
+		}
+		
+		private boolean isComplete() {
+			return this.files.size() == this.numSubtasks;
+		}
+	}
+}
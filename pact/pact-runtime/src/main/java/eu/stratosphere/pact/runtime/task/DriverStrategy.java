@@ -17,6 +17,7 @@ package eu.stratosphere.pact.runtime.task;
 
 import eu.stratosphere.pact.runtime.task.chaining.ChainedDriver;
 import eu.stratosphere.pact.runtime.task.chaining.ChainedMapDriver;
+import eu.stratosphere.pact.runtime.task.chaining.ChainedHashCombineDriver;
 import eu.stratosphere.pact.runtime.task.chaining.SynchronousChainedCombineDriver;
 
 import static eu.stratosphere.pact.runtime.task.DamBehavior.*;
@@ -35,6 +36,10 @@ public enum DriverStrategy {
 	SORTED_GROUP(ReduceDriver.class, null, PIPELINED, true),
 	// partially grouping inputs (best effort resulting possibly in duplicates --> combiner)
 	PARTIAL_GROUP(CombineDriver.class, SynchronousChainedCombineDriver.class, MATERIALIZING, true),
+	// grouping the inputs by aggregating them in a hash table (requires a combinable reducer)
+	HASH_GROUP(HashReduceDriver.class, null, FULL_DAM, true),
+	// partially grouping inputs by combining them in a hash table that is emitted when full
+	HASH_PARTIAL_GROUP(HashCombineDriver.class, ChainedHashCombineDriver.class, MATERIALIZING, true),
 	// group everything together into one group
 	ALL_GROUP(null, null, PIPELINED, false),
 	// already grouped input, within a key values are crossed in a nested loop fashion
@@ -0,0 +1,166 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.generic.stub.GenericReducer;
+import eu.stratosphere.pact.generic.types.TypeSerializer;
+import eu.stratosphere.pact.runtime.hash.CombiningHashTable;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+/**
+ * Combine driver that pre-aggregates its input in a {@link CombiningHashTable}. Whenever the table runs
+ * out of memory, all records in the table are emitted and the table starts over. Unlike the sort-based
+ * {@link CombineDriver}, the driver never writes to disk.
+ * 
+ * @see eu.stratosphere.pact.common.stub.ReduceStub
+ * 
+ * @param <T> The data type consumed and produced by the combiner.
+ */
+public class HashCombineDriver<T> implements PactDriver<GenericReducer<T, ?>, T>
+{
+	private static final Log LOG = LogFactory.getLog(HashCombineDriver.class);
+	
+	private PactTaskContext<GenericReducer<T, ?>, T> taskContext;
+	
+	private CombiningHashTable<T> table;
+	
+	private TypeSerializer<T> serializer;
+	
+	private volatile boolean running;
+
+	// ------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#setup(eu.stratosphere.pact.runtime.task.PactTaskContext)
+	 */
+	@Override
+	public void setup(PactTaskContext<GenericReducer<T, ?>, T> context) {
+		this.taskContext = context;
+		this.running = true;
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getNumberOfInputs()
+	 */
+	@Override
+	public int getNumberOfInputs() {
+		return 1;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getStubType()
+	 */
+	@Override
+	public Class<GenericReducer<T, ?>> getStubType() {
+		@SuppressWarnings("unchecked")
+		final Class<GenericReducer<T, ?>> clazz = (Class<GenericReducer<T, ?>>) (Class<?>) GenericReducer.class;
+		return clazz;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#requiresComparatorOnInput()
+	 */
+	@Override
+	public boolean requiresComparatorOnInput() {
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#prepare()
+	 */
+	@Override
+	public void prepare() throws Exception
+	{
+		final TaskConfig config = this.taskContext.getTaskConfig();
+		if (config.getDriverStrategy() != DriverStrategy.HASH_PARTIAL_GROUP) {
+			throw new Exception("Invalid local strategy provided for hash combine driver: " + config.getDriverStrategy().name());
+		}
+		this.serializer = this.taskContext.getInputSerializer(0);
+		
+		final MemoryManager memoryManager = this.taskContext.getMemoryManager();
+		final List<MemorySegment> memory = memoryManager.allocatePages(this.taskContext.getOwningNepheleTask(),
+			config.getMemoryDriver());
+		
+		this.table = new CombiningHashTable<T>(this.serializer, this.taskContext.<T>getInputComparator(0).duplicate(),
+			this.taskContext.getStub(), memory);
+		this.table.reset(0);
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#run()
+	 */
+	@Override
+	public void run() throws Exception
+	{
+		if (LOG.isDebugEnabled()) {
+			LOG.debug(this.taskContext.formatLogString("Preprocessing done, running hash combiner."));
+		}
+		
+		final MutableObjectIterator<T> input = this.taskContext.getInput(0);
+		final CombiningHashTable<T> table = this.table;
+		final T record = this.serializer.createInstance();
+		
+		while (this.running && input.next(record)) {
+			if (!table.insertOrCombine(record)) {
+				emitAndReset();
+				if (!table.insertOrCombine(record)) {
+					throw new IOException("Record is too large for the memory of the hash table.");
+				}
+			}
+		}
+		emitAndReset();
+	}
+	
+	private void emitAndReset() throws IOException
+	{
+		final Collector<T> output = this.taskContext.getOutputCollector();
+		final T record = this.serializer.createInstance();
+		final MutableObjectIterator<T> entries = this.table.getEntryIterator();
+		while (this.running && entries.next(record)) {
+			output.collect(record);
+		}
+		this.table.reset(0);
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cleanup()
+	 */
+	@Override
+	public void cleanup() throws Exception {
+		if (this.table != null) {
+			this.taskContext.getMemoryManager().release(this.table.close());
+			this.table = null;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cancel()
+	 */
+	@Override
+	public void cancel() {
+		this.running = false;
+	}
+}
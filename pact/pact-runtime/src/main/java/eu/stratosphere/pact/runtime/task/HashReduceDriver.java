@@ -0,0 +1,413 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.services.iomanager.BlockChannelReader;
+import eu.stratosphere.nephele.services.iomanager.BlockChannelWriter;
+import eu.stratosphere.nephele.services.iomanager.Channel;
+import eu.stratosphere.nephele.services.iomanager.ChannelReaderInputView;
+import eu.stratosphere.nephele.services.iomanager.ChannelWriterOutputView;
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.generic.stub.GenericReducer;
+import eu.stratosphere.pact.generic.types.TypeComparator;
+import eu.stratosphere.pact.generic.types.TypeSerializer;
+import eu.stratosphere.pact.runtime.hash.CombiningHashTable;
+import eu.stratosphere.pact.runtime.hash.MutableHashTable;
+import eu.stratosphere.pact.runtime.io.ChannelReaderInputViewIterator;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+/**
+ * Reduce driver that groups its input by hashing rather than by sorting. It requires the reducer to be
+ * combinable: the records are aggregated in a {@link CombiningHashTable}, which combines each record
+ * with the record already held for its key. At the end, the reducer is called once per key with the
+ * combined record.
+ * <p>
+ * As long as the distinct keys fit into memory, the input is processed without any I/O. When the table
+ * runs out of memory, its contents are spilled into a number of hash partitions on disk and the table
+ * starts over. After the input is consumed, each spilled partition is aggregated the same way with the
+ * next level of the hash function, recursively spilling again if it still does not fit.
+ * 
+ * @see GenericReducer
+ * 
+ * @param <IT> The type of the records consumed by the reducer.
+ * @param <OT> The type of the records produced by the reducer.
+ */
+public class HashReduceDriver<IT, OT> implements PactDriver<GenericReducer<IT, OT>, OT>
+{
+	private static final Log LOG = LogFactory.getLog(HashReduceDriver.class);
+	
+	/**
+	 * The maximal number of partitions that the table is spilled into.
+	 */
+	private static final int MAX_NUM_PARTITIONS = 32;
+	
+	/**
+	 * The number of write-behind buffers per spilled partition.
+	 */
+	private static final int WRITE_BUFFERS_PER_PARTITION = 2;
+	
+	/**
+	 * The number of buffers used to read back a spilled partition.
+	 */
+	private static final int READ_BUFFERS = 2;
+	
+	/**
+	 * The minimal number of memory segments for the hash table.
+	 */
+	private static final int MIN_TABLE_SEGMENTS = 2;
+	
+	/**
+	 * The maximal number of times that a partition is spilled again. Each spill round divides the keys
+	 * of a partition among all partitions, so this is only reached with pathological hash functions.
+	 */
+	private static final int MAX_RECURSION_DEPTH = 8;
+	
+	// ------------------------------------------------------------------------
+	
+	private PactTaskContext<GenericReducer<IT, OT>, OT> taskContext;
+	
+	private TypeSerializer<IT> serializer;
+
+	private TypeComparator<IT> comparator;
+	
+	private CombiningHashTable<IT> table;
+	
+	private List<MemorySegment> ioMemory;
+	
+	private final ArrayList<SpilledPartition> spilledPartitions = new ArrayList<SpilledPartition>();
+	
+	private int numPartitions;
+	
+	private int numSpills;
+	
+	private volatile boolean running;
+
+	// ------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#setup(eu.stratosphere.pact.runtime.task.PactTaskContext)
+	 */
+	@Override
+	public void setup(PactTaskContext<GenericReducer<IT, OT>, OT> context) {
+		this.taskContext = context;
+		this.running = true;
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getNumberOfInputs()
+	 */
+	@Override
+	public int getNumberOfInputs() {
+		return 1;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getStubType()
+	 */
+	@Override
+	public Class<GenericReducer<IT, OT>> getStubType() {
+		@SuppressWarnings("unchecked")
+		final Class<GenericReducer<IT, OT>> clazz = (Class<GenericReducer<IT, OT>>) (Class<?>) GenericReducer.class;
+		return clazz;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#requiresComparatorOnInput()
+	 */
+	@Override
+	public boolean requiresComparatorOnInput() {
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#prepare()
+	 */
+	@Override
+	public void prepare() throws Exception
+	{
+		final TaskConfig config = this.taskContext.getTaskConfig();
+		if (config.getDriverStrategy() != DriverStrategy.HASH_GROUP) {
+			throw new Exception("Unrecognized driver strategy for hash reduce driver: " + config.getDriverStrategy().name());
+		}
+		this.serializer = this.taskContext.getInputSerializer(0);
+		this.comparator = this.taskContext.getInputComparator(0);
+		
+		final MemoryManager memoryManager = this.taskContext.getMemoryManager();
+		final List<MemorySegment> memory = memoryManager.allocatePages(this.taskContext.getOwningNepheleTask(),
+			config.getMemoryDriver());
+		
+		// reserve the buffers for spilling and reading back partitions
+		this.numPartitions = getNumPartitions(memory.size());
+		final int numIOBuffers = this.numPartitions * WRITE_BUFFERS_PER_PARTITION + READ_BUFFERS;
+		if (memory.size() - numIOBuffers < MIN_TABLE_SEGMENTS) {
+			memoryManager.release(memory);
+			throw new Exception("Too little memory provided to the hash reduce driver: " + memory.size() + " pages.");
+		}
+		final List<MemorySegment> tableMemory = new ArrayList<MemorySegment>(memory.subList(numIOBuffers, memory.size()));
+		this.ioMemory = new ArrayList<MemorySegment>(memory.subList(0, numIOBuffers));
+		
+		this.table = new CombiningHashTable<IT>(this.serializer, this.comparator.duplicate(),
+			this.taskContext.getStub(), tableMemory);
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#run()
+	 */
+	@Override
+	public void run() throws Exception
+	{
+		if (LOG.isDebugEnabled()) {
+			LOG.debug(this.taskContext.formatLogString("Hash reducer preprocessing done. Running Reducer code."));
+		}
+		
+		final IT record = this.serializer.createInstance();
+		final MutableObjectIterator<IT> input = this.taskContext.getInput(0);
+		aggregate(input, 0, record);
+		
+		// aggregate the spilled partitions, most recently spilled first
+		final IOManager ioManager = this.taskContext.getIOManager();
+		while (this.running && !this.spilledPartitions.isEmpty()) {
+			final SpilledPartition p = this.spilledPartitions.remove(this.spilledPartitions.size() - 1);
+			
+			final List<MemorySegment> readBuffers = new ArrayList<MemorySegment>(READ_BUFFERS);
+			for (int i = 0; i < READ_BUFFERS; i++) {
+				readBuffers.add(this.ioMemory.remove(this.ioMemory.size() - 1));
+			}
+			final BlockChannelReader reader = ioManager.createBlockChannelReader(p.channel.getChannelID());
+			final ChannelReaderInputView inView = new ChannelReaderInputView(reader, readBuffers, p.numBlocks, false);
+			final ChannelReaderInputViewIterator<IT> partitionInput =
+					new ChannelReaderInputViewIterator<IT>(inView, this.ioMemory, this.serializer);
+			
+			aggregate(partitionInput, p.level, record);
+			
+			// the iterator returned the read buffers when it was exhausted
+			if (!inView.isClosed()) {
+				this.ioMemory.addAll(inView.close());
+			}
+			reader.deleteChannel();
+		}
+		
+		if (LOG.isDebugEnabled()) {
+			LOG.debug(this.taskContext.formatLogString("Hash reducer finished after spilling the table " +
+					this.numSpills + " times."));
+		}
+	}
+	
+	/**
+	 * Aggregates the given input in the hash table and calls the reducer for each key. If the table
+	 * runs out of memory, its contents are spilled and the spilled partitions are queued for later
+	 * aggregation on the next level.
+	 */
+	private void aggregate(MutableObjectIterator<IT> input, int level, IT record) throws Exception
+	{
+		final CombiningHashTable<IT> table = this.table;
+		table.reset(level);
+		
+		SpillingPartitions partitions = null;
+		while (this.running && input.next(record)) {
+			if (!table.insertOrCombine(record)) {
+				if (partitions == null) {
+					if (level >= MAX_RECURSION_DEPTH) {
+						throw new IOException("Hash aggregation exceeded the maximum recursion depth of " +
+							MAX_RECURSION_DEPTH + ". The hash function does not distribute the keys.");
+					}
+					partitions = new SpillingPartitions(level);
+				}
+				partitions.spill(table);
+				table.reset(level);
+				
+				if (!table.insertOrCombine(record)) {
+					throw new IOException("Record is too large for the memory of the hash table.");
+				}
+			}
+		}
+		
+		if (partitions == null) {
+			// everything fit into memory: the table holds the final combined record for each key
+			final GenericReducer<IT, OT> stub = this.taskContext.getStub();
+			final Collector<OT> output = this.taskContext.getOutputCollector();
+			final SingleRecordIterator<IT> values = new SingleRecordIterator<IT>();
+			
+			final MutableObjectIterator<IT> entries = table.getEntryIterator();
+			while (this.running && entries.next(record)) {
+				values.set(record);
+				stub.reduce(values, output);
+			}
+		} else {
+			partitions.spill(table);
+			partitions.close();
+		}
+	}
+	
+	private static int getNumPartitions(int numSegments) {
+		return Math.max(2, Math.min(MAX_NUM_PARTITIONS, numSegments / 16));
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cleanup()
+	 */
+	@Override
+	public void cleanup() throws Exception
+	{
+		final MemoryManager memoryManager = this.taskContext.getMemoryManager();
+		if (this.table != null) {
+			memoryManager.release(this.table.close());
+			this.table = null;
+		}
+		if (this.ioMemory != null) {
+			memoryManager.release(this.ioMemory);
+			this.ioMemory = null;
+		}
+		
+		// remove partitions that were not processed, because the task was canceled
+		for (SpilledPartition p : this.spilledPartitions) {
+			p.channel.deleteChannel();
+		}
+		this.spilledPartitions.clear();
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cancel()
+	 */
+	@Override
+	public void cancel() {
+		this.running = false;
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * The writers for the partitions that one aggregation spills its table into.
+	 */
+	private final class SpillingPartitions
+	{
+		private final BlockChannelWriter[] channels;
+		
+		private final ChannelWriterOutputView[] writers;
+		
+		private final int level;
+		
+		SpillingPartitions(int level) throws IOException
+		{
+			final IOManager ioManager = taskContext.getIOManager();
+			final Channel.Enumerator enumerator = ioManager.createChannelEnumerator();
+			
+			this.level = level;
+			this.channels = new BlockChannelWriter[numPartitions];
+			this.writers = new ChannelWriterOutputView[numPartitions];
+			for (int i = 0; i < numPartitions; i++) {
+				final List<MemorySegment> buffers = new ArrayList<MemorySegment>(WRITE_BUFFERS_PER_PARTITION);
+				for (int k = 0; k < WRITE_BUFFERS_PER_PARTITION; k++) {
+					buffers.add(ioMemory.remove(ioMemory.size() - 1));
+				}
+				this.channels[i] = ioManager.createBlockChannelWriter(enumerator.next());
+				this.writers[i] = new ChannelWriterOutputView(this.channels[i], buffers, buffers.get(0).size());
+			}
+		}
+		
+		void spill(CombiningHashTable<IT> table) throws IOException
+		{
+			final IT record = serializer.createInstance();
+			final MutableObjectIterator<IT> entries = table.getEntryIterator();
+			while (entries.next(record)) {
+				final int hash = MutableHashTable.hash(comparator.hash(record), this.level);
+				serializer.serialize(record, this.writers[hash % this.writers.length]);
+			}
+			numSpills++;
+		}
+		
+		void close() throws IOException
+		{
+			for (int i = 0; i < this.writers.length; i++) {
+				final ChannelWriterOutputView writer = this.writers[i];
+				final long bytes = writer.getBytesWritten();
+				ioMemory.addAll(writer.close());
+				
+				if (bytes > 0) {
+					spilledPartitions.add(new SpilledPartition(this.channels[i], writer.getBlockCount(), this.level + 1));
+				} else {
+					this.channels[i].deleteChannel();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * A partition on disk that still needs to be aggregated.
+	 */
+	private static final class SpilledPartition
+	{
+		private final BlockChannelWriter channel;
+		
+		private final int numBlocks;
+		
+		private final int level;
+		
+		SpilledPartition(BlockChannelWriter channel, int numBlocks, int level) {
+			this.channel = channel;
+			this.numBlocks = numBlocks;
+			this.level = level;
+		}
+	}
+	
+	/**
+	 * Iterator that hands the single combined record of a key to the reducer.
+	 */
+	private static final class SingleRecordIterator<E> implements Iterator<E>
+	{
+		private E current;
+		
+		private boolean available;
+		
+		void set(E current) {
+			this.current = current;
+			this.available = true;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.available;
+		}
+
+		@Override
+		public E next() {
+			if (this.available) {
+				this.available = false;
+				return this.current;
+			} else {
+				throw new NoSuchElementException();
+			}
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -23,10 +23,12 @@ import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
 import eu.stratosphere.pact.common.stubs.Collector;
 import eu.stratosphere.pact.common.stubs.MatchStub;
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
 import eu.stratosphere.pact.generic.stub.GenericMatcher;
 import eu.stratosphere.pact.generic.types.TypeComparator;
 import eu.stratosphere.pact.generic.types.TypePairComparatorFactory;
 import eu.stratosphere.pact.generic.types.TypeSerializer;
+import eu.stratosphere.pact.runtime.hash.AdaptiveHashMatchIterator;
 import eu.stratosphere.pact.runtime.hash.BuildFirstHashMatchIterator;
 import eu.stratosphere.pact.runtime.hash.BuildSecondHashMatchIterator;
 import eu.stratosphere.pact.runtime.sort.MergeMatchIterator;
@@ -123,31 +125,62 @@ public class MatchDriver<IT1, IT2, OT> implements PactDriver<GenericMatcher<IT1,
 			throw new Exception("Missing pair comparator factory for Match driver");
 		}
 
+		// check whether the hash join should watch its build side and adapt to a wrong estimate
+		final long limit1 = config.getAdaptiveRecordLimit(0);
+		final long limit2 = config.getAdaptiveRecordLimit(1);
+		boolean adaptive = (ls == DriverStrategy.HYBRIDHASH_BUILD_FIRST && limit1 > 0) ||
+				(ls == DriverStrategy.HYBRIDHASH_BUILD_SECOND && limit2 > 0);
+		if (adaptive && !AdaptiveHashMatchIterator.hasSufficientMemory(numPages)) {
+			if (LOG.isWarnEnabled())
+				LOG.warn(this.taskContext.formatLogString("Too little memory to adapt the hash join strategy at runtime."));
+			adaptive = false;
+		}
+
 		// create and return MatchTaskIterator according to provided local strategy.
-		switch (ls) {
-		case MERGE:
-			this.matchIterator = new MergeMatchIterator<IT1, IT2, OT>(in1, in2, serializer1, comparator1,
-					serializer2, comparator2, pairComparatorFactory.createComparator12(comparator1, comparator2),
-					memoryManager, ioManager, numPages, this.taskContext.getOwningNepheleTask());
-			break;
-		case HYBRIDHASH_BUILD_FIRST:
-			this.matchIterator = new BuildFirstHashMatchIterator<IT1, IT2, OT>(in1, in2, serializer1, comparator1,
-				serializer2, comparator2, pairComparatorFactory.createComparator21(comparator1, comparator2),
-				memoryManager, ioManager, this.taskContext.getOwningNepheleTask(), availableMemory);
-			break;
-		case HYBRIDHASH_BUILD_SECOND:
-			this.matchIterator = new BuildSecondHashMatchIterator<IT1, IT2, OT>(in1, in2, serializer1, comparator1,
-					serializer2, comparator2, pairComparatorFactory.createComparator12(comparator1, comparator2),
+		if (adaptive) {
+			final int maxFileHandles = config.getFilehandlesDriver();
+			this.matchIterator = new AdaptiveHashMatchIterator<IT1, IT2, OT>(in1, in2, serializer1, comparator1,
+				serializer2, comparator2, pairComparatorFactory, memoryManager, ioManager,
+				this.taskContext.getOwningNepheleTask(), availableMemory,
+				maxFileHandles < 2 ? PactConfigConstants.DEFAULT_SPILLING_MAX_FAN : maxFileHandles,
+				config.getSpillingThresholdDriver(), limit1, limit2, ls == DriverStrategy.HYBRIDHASH_BUILD_FIRST);
+		}
+		else {
+			switch (ls) {
+			case MERGE:
+				this.matchIterator = new MergeMatchIterator<IT1, IT2, OT>(in1, in2, serializer1, comparator1,
+						serializer2, comparator2, pairComparatorFactory.createComparator12(comparator1, comparator2),
+						memoryManager, ioManager, numPages, this.taskContext.getOwningNepheleTask());
+				break;
+			case HYBRIDHASH_BUILD_FIRST:
+				this.matchIterator = new BuildFirstHashMatchIterator<IT1, IT2, OT>(in1, in2, serializer1, comparator1,
+					serializer2, comparator2, pairComparatorFactory.createComparator21(comparator1, comparator2),
 					memoryManager, ioManager, this.taskContext.getOwningNepheleTask(), availableMemory);
-			break;
-		default:
-			throw new Exception("Unsupported driver strategy for Match driver: " + ls.name());
+				break;
+			case HYBRIDHASH_BUILD_SECOND:
+				this.matchIterator = new BuildSecondHashMatchIterator<IT1, IT2, OT>(in1, in2, serializer1, comparator1,
+						serializer2, comparator2, pairComparatorFactory.createComparator12(comparator1, comparator2),
+						memoryManager, ioManager, this.taskContext.getOwningNepheleTask(), availableMemory);
+				break;
+			default:
+				throw new Exception("Unsupported driver strategy for Match driver: " + ls.name());
+			}
 		}
 		
 		// open MatchTaskIterator - this triggers the sorting or hash-table building
 		// and blocks until the iterator is ready
 		this.matchIterator.open();
 		
+		// report if the iterator switched its strategy, such that the switch appears in the job's events
+		if (this.matchIterator instanceof AdaptiveHashMatchIterator) {
+			final String message = ((AdaptiveHashMatchIterator<?, ?, ?>) this.matchIterator).getAdaptationMessage();
+			if (message != null) {
+				if (LOG.isInfoEnabled())
+					LOG.info(this.taskContext.formatLogString(message));
+				this.taskContext.getOwningNepheleTask().getEnvironment().addCompletionMessage(message);
+			}
+		}
+		
 		if (LOG.isDebugEnabled())
 			LOG.debug(this.taskContext.formatLogString("Match task iterator ready."));
 	}
@@ -0,0 +1,170 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactDouble;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.generic.stub.AbstractStub;
+import eu.stratosphere.pact.generic.types.TypeComparator;
+
+/**
+ * A driver that computes the boundaries for a range partitioning from the weighted samples produced by the
+ * {@link RangeSampleDriver}. The driver runs with a degree of parallelism of one. It sorts all samples with the
+ * comparator of the partitioning keys and picks the boundaries such that each partition receives an equal share
+ * of the sample weight. The boundaries are emitted in ascending order (with respect to the partitioning order),
+ * with the weight field removed.
+ * <p>
+ * The driver emits exactly <i>n-1</i> boundaries for <i>n</i> partitions, unless it did not receive any samples.
+ * Note that a single key that accounts for more than one partition's share of the data cannot be split and
+ * results in empty partitions.
+ */
+public class RangeBoundaryDriver implements PactDriver<AbstractStub, PactRecord>
+{
+	private PactTaskContext<AbstractStub, PactRecord> taskContext;
+	
+	private volatile boolean running;
+	
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#setup(eu.stratosphere.pact.runtime.task.PactTaskContext)
+	 */
+	@Override
+	public void setup(PactTaskContext<AbstractStub, PactRecord> context) {
+		this.taskContext = context;
+		this.running = true;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getNumberOfInputs()
+	 */
+	@Override
+	public int getNumberOfInputs() {
+		return 1;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getStubType()
+	 */
+	@Override
+	public Class<AbstractStub> getStubType() {
+		return null;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#requiresComparatorOnInput()
+	 */
+	@Override
+	public boolean requiresComparatorOnInput() {
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#prepare()
+	 */
+	@Override
+	public void prepare() throws Exception {
+		if (this.taskContext.getTaskConfig().getRangeNumberOfPartitions() < 1) {
+			throw new Exception("The range boundary driver requires the number of partitions to be configured.");
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#run()
+	 */
+	@Override
+	public void run() throws Exception {
+		// cache references on the stack
+		final MutableObjectIterator<PactRecord> input = this.taskContext.getInput(0);
+		final Collector<PactRecord> output = this.taskContext.getOutputCollector();
+		final int numPartitions = this.taskContext.getTaskConfig().getRangeNumberOfPartitions();
+		
+		// collect all samples and their weights
+		final ArrayList<PactRecord> samples = new ArrayList<PactRecord>();
+		final PactDouble weight = new PactDouble();
+		double totalWeight = 0.0;
+		
+		PactRecord record = new PactRecord();
+		while (this.running && input.next(record)) {
+			totalWeight += record.getField(record.getNumFields() - 1, weight).getValue();
+			samples.add(record);
+			record = new PactRecord();
+		}
+		
+		if (!this.running || samples.isEmpty()) {
+			return;
+		}
+		
+		// sort the samples by their key
+		final TypeComparator<PactRecord> comp1 = this.taskContext.getInputComparator(0);
+		final TypeComparator<PactRecord> comp2 = comp1.duplicate();
+		Collections.sort(samples, new Comparator<PactRecord>() {
+			@Override
+			public int compare(PactRecord o1, PactRecord o2) {
+				comp1.setReference(o1);
+				comp2.setReference(o2);
+				return comp2.compareToReference(comp1);
+			}
+		});
+		
+		// walk the sorted samples and cut whenever the cumulative weight reaches the next partition's share
+		final double share = totalWeight / numPartitions;
+		double cumulativeWeight = 0.0;
+		int boundariesEmitted = 0;
+		
+		for (int i = 0; i < samples.size() && boundariesEmitted < numPartitions - 1; i++) {
+			final PactRecord sample = samples.get(i);
+			final int weightPos = sample.getNumFields() - 1;
+			cumulativeWeight += sample.getField(weightPos, weight).getValue();
+			
+			while (boundariesEmitted < numPartitions - 1 && cumulativeWeight >= share * (boundariesEmitted + 1)) {
+				final PactRecord boundary = sample.createCopy();
+				boundary.setNumFields(weightPos);
+				output.collect(boundary);
+				boundariesEmitted++;
+			}
+		}
+		
+		// rounding may leave the last boundaries unassigned. they are set to the largest sample
+		if (boundariesEmitted < numPartitions - 1) {
+			final PactRecord boundary = samples.get(samples.size() - 1).createCopy();
+			boundary.setNumFields(boundary.getNumFields() - 1);
+			while (boundariesEmitted < numPartitions - 1) {
+				output.collect(boundary);
+				boundariesEmitted++;
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cleanup()
+	 */
+	@Override
+	public void cleanup() throws Exception {}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cancel()
+	 */
+	@Override
+	public void cancel() {
+		this.running = false;
+	}
+}
@@ -0,0 +1,209 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.execution.librarycache.LibraryCacheManager;
+import eu.stratosphere.nephele.io.MutableRecordReader;
+import eu.stratosphere.nephele.io.RecordWriter;
+import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.template.AbstractTask;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.generic.types.TypeComparatorFactory;
+import eu.stratosphere.pact.runtime.plugable.pactrecord.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.pactrecord.PactRecordComparatorFactory;
+import eu.stratosphere.pact.runtime.plugable.pactrecord.PactRecordSerializer;
+import eu.stratosphere.pact.runtime.shipping.PactRecordOutputEmitter;
+import eu.stratosphere.pact.runtime.shipping.SampledDataDistribution;
+import eu.stratosphere.pact.runtime.shipping.ShipStrategyType;
+import eu.stratosphere.pact.runtime.task.util.PactRecordNepheleReaderIterator;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+/**
+ * The task that performs a range partitioning with boundaries that are computed at runtime. The task has two
+ * inputs: The first input receives the partition boundaries (as computed by the {@link RangeBoundaryDriver}),
+ * the second input receives the data to be partitioned. Because the boundaries are available only after the
+ * complete data has been sampled, the data input is materialized in a {@link TempBarrier} while the task waits
+ * for the boundaries.
+ * <p>
+ * The task has exactly one output, which range partitions the data with the comparator configured for that output.
+ */
+public class RangePartitionTask extends AbstractTask
+{
+	private static final Log LOG = LogFactory.getLog(RangePartitionTask.class);
+	
+	private static final int BOUNDARIES_INPUT = 0;
+	
+	private static final int DATA_INPUT = 1;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private MutableObjectIterator<PactRecord> boundariesInput;
+	
+	private MutableObjectIterator<PactRecord> dataInput;
+	
+	private RecordWriter<PactRecord> output;
+	
+	private SampledDataDistribution distribution;
+	
+	private TaskConfig config;
+	
+	private ClassLoader userCodeClassLoader;
+	
+	private volatile TempBarrier<PactRecord> barrier;
+	
+	private volatile boolean running = true;
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void registerInputOutput() {
+		if (this.userCodeClassLoader == null) {
+			try {
+				this.userCodeClassLoader = LibraryCacheManager.getClassLoader(getEnvironment().getJobID());
+			} catch (IOException ioe) {
+				throw new RuntimeException("The ClassLoader for the user code could not be instantiated from the library cache.", ioe);
+			}
+		}
+		final Configuration taskConf = getTaskConfiguration();
+		taskConf.setClassLoader(this.userCodeClassLoader);
+		this.config = new TaskConfig(taskConf);
+		
+		// the order of the readers defines the order of the input gates
+		this.boundariesInput = new PactRecordNepheleReaderIterator(new MutableRecordReader<PactRecord>(this));
+		this.dataInput = new PactRecordNepheleReaderIterator(new MutableRecordReader<PactRecord>(this));
+		
+		final TypeComparatorFactory<?> compFact = this.config.getOutputComparator(0, this.userCodeClassLoader);
+		if (!(compFact instanceof PactRecordComparatorFactory)) {
+			throw new RuntimeException("The range partitioning task requires a comparator for PactRecords.");
+		}
+		final PactRecordComparator comparator = ((PactRecordComparatorFactory) compFact).createComparator();
+		
+		this.distribution = new SampledDataDistribution();
+		this.output = new RecordWriter<PactRecord>(this, PactRecord.class,
+			new PactRecordOutputEmitter(ShipStrategyType.PARTITION_RANGE, comparator, this.distribution));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void invoke() throws Exception {
+		if (LOG.isInfoEnabled())
+			LOG.info(getLogString("Start PACT code"));
+		
+		final MemoryManager memMan = getEnvironment().getMemoryManager();
+		final long memory = this.config.getInputMaterializationMemory(DATA_INPUT);
+		if (memory <= 0) {
+			throw new Exception("No memory has been assigned to buffer the input of the range partitioner.");
+		}
+		
+		try {
+			// buffer the data while we wait for the boundaries, otherwise the producers of the data
+			// could block before the sampling is complete
+			final TempBarrier<PactRecord> barrier = new TempBarrier<PactRecord>(this, this.dataInput,
+				PactRecordSerializer.get(), memMan, getEnvironment().getIOManager(), memMan.computeNumberOfPages(memory));
+			this.barrier = barrier;
+			barrier.startReading();
+			
+			// read the boundaries
+			final ArrayList<PactRecord> boundaries = new ArrayList<PactRecord>();
+			PactRecord boundary = new PactRecord();
+			while (this.running && this.boundariesInput.next(boundary)) {
+				boundaries.add(boundary);
+				boundary = new PactRecord();
+			}
+			this.distribution.setBoundaries(boundaries.toArray(new PactRecord[boundaries.size()]));
+			
+			if (LOG.isDebugEnabled())
+				LOG.debug(getLogString("Received " + boundaries.size() + " partition boundaries"));
+			
+			// partition the data
+			final MutableObjectIterator<PactRecord> input = barrier.getIterator();
+			final RecordWriter<PactRecord> output = this.output;
+			final PactRecord record = new PactRecord();
+			
+			if (input != null) {
+				while (this.running && input.next(record)) {
+					output.emit(record);
+				}
+			}
+		}
+		finally {
+			final TempBarrier<PactRecord> barrier = this.barrier;
+			if (barrier != null) {
+				this.barrier = null;
+				barrier.close();
+			}
+		}
+		
+		if (this.running) {
+			if (LOG.isInfoEnabled())
+				LOG.info(getLogString("Finished PACT code"));
+		} else {
+			if (LOG.isWarnEnabled())
+				LOG.warn(getLogString("PACT code cancelled"));
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.nephele.template.AbstractInvokable#cancel()
+	 */
+	@Override
+	public void cancel() throws Exception {
+		this.running = false;
+		final TempBarrier<PactRecord> barrier = this.barrier;
+		if (barrier != null) {
+			barrier.close();
+		}
+		
+		if (LOG.isWarnEnabled())
+			LOG.warn(getLogString("Cancelling PACT code"));
+	}
+	
+	/**
+	 * Sets the class-loader to be used to load the comparator classes.
+	 * 
+	 * @param cl The class-loader to be used to load the comparator classes.
+	 */
+	public void setUserCodeClassLoader(ClassLoader cl) {
+		this.userCodeClassLoader = cl;
+	}
+	
+	// ------------------------------------------------------------------------
+	//                               Utilities
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Utility function that composes a string for logging purposes. The string includes the given message and
+	 * the index of the task in its task group together with the number of tasks in the task group.
+	 * 
+	 * @param message The main message for the log.
+	 * @return The string ready for logging.
+	 */
+	private String getLogString(String message) {
+		return RegularPactTask.constructLogString(message, this.getEnvironment().getTaskName(), this);
+	}
+}
@@ -0,0 +1,126 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactDouble;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.generic.stub.AbstractStub;
+import eu.stratosphere.pact.runtime.task.chaining.ChainedRangeSampleDriver;
+import eu.stratosphere.pact.runtime.task.util.RecordReservoir;
+
+/**
+ * A driver that draws a uniform random sample (reservoir sample) of fixed size from its input. It is the first
+ * step of the runtime range partitioning, which computes the partition boundaries from a sample of the data,
+ * when no data distribution has been specified in the program.
+ * <p>
+ * After the input is exhausted, the driver emits the sampled records. Each sampled record is extended by a
+ * trailing {@link PactDouble} field with the number of input records that the sample record represents. That weight
+ * allows the boundary computation to account for parallel instances that saw different amounts of data.
+ * <p>
+ * This driver runs as a separate task, which receives its own copy of the data. Where possible, the sampling
+ * is instead chained to the task that produces the data (see {@link ChainedRangeSampleDriver}).
+ * 
+ * @see RangeBoundaryDriver
+ */
+public class RangeSampleDriver implements PactDriver<AbstractStub, PactRecord>
+{
+	private PactTaskContext<AbstractStub, PactRecord> taskContext;
+	
+	private volatile boolean running;
+	
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#setup(eu.stratosphere.pact.runtime.task.PactTaskContext)
+	 */
+	@Override
+	public void setup(PactTaskContext<AbstractStub, PactRecord> context) {
+		this.taskContext = context;
+		this.running = true;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getNumberOfInputs()
+	 */
+	@Override
+	public int getNumberOfInputs() {
+		return 1;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getStubType()
+	 */
+	@Override
+	public Class<AbstractStub> getStubType() {
+		return null;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#requiresComparatorOnInput()
+	 */
+	@Override
+	public boolean requiresComparatorOnInput() {
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#prepare()
+	 */
+	@Override
+	public void prepare() throws Exception {
+		if (this.taskContext.getTaskConfig().getRangeSampleSize() < 1) {
+			throw new Exception("The range sample driver requires a sample size to be configured.");
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#run()
+	 */
+	@Override
+	public void run() throws Exception {
+		// cache references on the stack
+		final MutableObjectIterator<PactRecord> input = this.taskContext.getInput(0);
+		final Collector<PactRecord> output = this.taskContext.getOutputCollector();
+		final RecordReservoir reservoir = new RecordReservoir(this.taskContext.getTaskConfig().getRangeSampleSize());
+		
+		final PactRecord record = new PactRecord();
+		while (this.running && input.next(record)) {
+			final PactRecord target = reservoir.next();
+			if (target != null) {
+				record.copyTo(target);
+			}
+		}
+		
+		if (this.running) {
+			reservoir.emit(output);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cleanup()
+	 */
+	@Override
+	public void cleanup() throws Exception {}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cancel()
+	 */
+	@Override
+	public void cancel() {
+		this.running = false;
+	}
+}
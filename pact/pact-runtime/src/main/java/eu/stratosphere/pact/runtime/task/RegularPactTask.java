@@ -65,6 +65,8 @@ import eu.stratosphere.pact.runtime.shipping.PactRecordOutputEmitter;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategyType;
 import eu.stratosphere.pact.runtime.sort.CombiningUnilateralSortMerger;
 import eu.stratosphere.pact.runtime.sort.UnilateralSortMerger;
+import eu.stratosphere.pact.runtime.statistics.RuntimeStatisticsCollector;
+import eu.stratosphere.pact.runtime.statistics.RuntimeStatisticsStore;
 import eu.stratosphere.pact.runtime.task.chaining.ChainedDriver;
 import eu.stratosphere.pact.runtime.task.chaining.ExceptionInChainedStubException;
 import eu.stratosphere.pact.runtime.task.util.CloseableInputProvider;
@@ -87,6 +89,9 @@ public class RegularPactTask<S extends Stub, OT> extends AbstractTask implements
 	private static final boolean USE_BROARDCAST_WRITERS = GlobalConfiguration.getBoolean(
 		PactConfigConstants.USE_MULTICAST_FOR_BROADCAST, PactConfigConstants.DEFAULT_USE_MULTICAST_FOR_BROADCAST);
 	
+	private static final int SORT_PARALLELISM = GlobalConfiguration.getInteger(
+		PactConfigConstants.SORT_PARALLELISM_KEY, PactConfigConstants.DEFAULT_SORT_PARALLELISM);
+	
 	// --------------------------------------------------------------------------------------------
 
 	/**
@@ -423,6 +428,10 @@ public class RegularPactTask<S extends Stub, OT> extends AbstractTask implements
 		if (this.localStrategies != null) {
 			for (int i = 0; i < this.localStrategies.length; i++) {
 				if (this.localStrategies[i] != null) {
+					if (this.localStrategies[i] instanceof UnilateralSortMerger<?> && LOG.isInfoEnabled()) {
+						LOG.info(formatLogString("Sort of input " + i + " made " + 
+							((UnilateralSortMerger<?>) this.localStrategies[i]).getNumMergePasses() + " merge passes."));
+					}
 					try {
 						this.localStrategies[i].close();
 					} catch (Throwable t) {
@@ -702,8 +711,8 @@ public class RegularPactTask<S extends Stub, OT> extends AbstractTask implements
 				@SuppressWarnings({ "rawtypes", "unchecked" })
 				UnilateralSortMerger<?> sorter = new UnilateralSortMerger(getMemoryManager(), getIOManager(),
 					this.inputIterators[inputNum], this, this.inputSerializers[inputNum], getLocalStrategyComparator(inputNum),
-					this.config.getMemoryInput(inputNum), this.config.getFilehandlesInput(inputNum),
-					this.config.getSpillingThresholdInput(inputNum));
+					this.config.getMemoryInput(inputNum), -1, this.config.getFilehandlesInput(inputNum),
+					this.config.getSpillingThresholdInput(inputNum), Math.max(SORT_PARALLELISM, 1));
 				// set the input to null such that it will be lazily fetched from the input strategy
 				this.inputs[inputNum] = null;
 				this.localStrategies[inputNum] = sorter;
@@ -736,8 +745,8 @@ public class RegularPactTask<S extends Stub, OT> extends AbstractTask implements
 				CombiningUnilateralSortMerger<?> cSorter = new CombiningUnilateralSortMerger(
 					(GenericReducer) localStub, getMemoryManager(), getIOManager(), this.inputIterators[inputNum], 
 					this, this.inputSerializers[inputNum], getLocalStrategyComparator(inputNum),
-					this.config.getMemoryInput(inputNum), this.config.getFilehandlesInput(inputNum),
-					this.config.getSpillingThresholdInput(inputNum), false);
+					this.config.getMemoryInput(inputNum), -1, this.config.getFilehandlesInput(inputNum),
+					this.config.getSpillingThresholdInput(inputNum), Math.max(SORT_PARALLELISM, 1), false);
 				// set the input to null such that it will be lazily fetched from the input strategy
 				this.inputs[inputNum] = null;
 				this.localStrategies[inputNum] = cSorter;
@@ -1174,6 +1183,7 @@ public class RegularPactTask<S extends Stub, OT> extends AbstractTask implements
 					// last in chain, instantiate the output collector for this task
 					previous = getOutputCollector(nepheleTask, chainedStubConf, cl, eventualOutputs, chainedStubConf.getNumOutputs());
 				}
+				previous = getStatisticsCollector(nepheleTask, chainedStubConf, cl, previous);
 
 				ct.setup(chainedStubConf, taskName, nepheleTask, cl, previous);
 				chainedTasksTarget.add(0, ct);
@@ -1181,12 +1191,59 @@ public class RegularPactTask<S extends Stub, OT> extends AbstractTask implements
 				previous = ct;
 			}
 			// the collector of the first in the chain is the collector for the nephele task
-			return (Collector<T>) previous;
+			return getStatisticsCollector(nepheleTask, config, cl, (Collector<T>) previous);
 		}
 		// else
 
 		// instantiate the output collector the default way from this configuration
-		return getOutputCollector(nepheleTask , config, cl, eventualOutputs, numOutputs);
+		final Collector<T> output = getOutputCollector(nepheleTask , config, cl, eventualOutputs, numOutputs);
+		return getStatisticsCollector(nepheleTask, config, cl, output);
+	}
+	
+	/**
+	 * Wraps the given collector into a collector that observes the statistics of the task's output, if the
+	 * configuration requests runtime statistics. Otherwise, the given collector is returned.
+	 * 
+	 * @param nepheleTask The task that the collector is created for.
+	 * @param config The configuration of the task.
+	 * @param cl The classloader used to load user defined types.
+	 * @param collector The collector to wrap.
+	 * @return The collector that observes the statistics, or the given collector.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> Collector<T> getStatisticsCollector(AbstractInvokable nepheleTask, TaskConfig config,
+			ClassLoader cl, Collector<T> collector)
+	throws Exception
+	{
+		final String directory = config.getOutputStatisticsDirectory();
+		final String signature = config.getOutputStatisticsSignature();
+		if (directory == null || signature == null) {
+			return collector;
+		}
+		
+		// the compiler requests statistics only for tasks producing PactRecords
+		final PactRecordComparator[] comparators = new PactRecordComparator[config.getNumOutputStatisticsComparators()];
+		for (int i = 0; i < comparators.length; i++) {
+			final TypeComparatorFactory<?> compFact = config.getOutputStatisticsComparator(i, cl);
+			if (compFact instanceof PactRecordComparatorFactory) {
+				comparators[i] = ((PactRecordComparatorFactory) compFact).createComparator();
+			} else {
+				throw new Exception("Runtime statistics are only supported for PactRecords.");
+			}
+		}
+		
+		final RuntimeStatisticsStore store;
+		try {
+			store = new RuntimeStatisticsStore(directory);
+		} catch (IOException ioex) {
+			LOG.warn(constructLogString("Runtime statistics are not collected, the statistics store could not be accessed: " + 
+				ioex.getMessage(), nepheleTask.getEnvironment().getTaskName(), nepheleTask));
+			return collector;
+		}
+		
+		final Environment env = nepheleTask.getEnvironment();
+		return (Collector<T>) new RuntimeStatisticsCollector((Collector<PactRecord>) collector, comparators, store, signature,
+			env.getJobID().toString(), env.getIndexInSubtaskGroup(), env.getCurrentNumberOfSubtasks());
 	}
 	
 	// --------------------------------------------------------------------------------------------
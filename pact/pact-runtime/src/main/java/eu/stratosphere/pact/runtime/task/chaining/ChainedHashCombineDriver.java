@@ -0,0 +1,184 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task.chaining;
+
+import java.io.IOException;
+import java.util.List;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.template.AbstractInvokable;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.stubs.Stub;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.generic.stub.GenericReducer;
+import eu.stratosphere.pact.generic.types.TypeComparatorFactory;
+import eu.stratosphere.pact.generic.types.TypeSerializer;
+import eu.stratosphere.pact.generic.types.TypeSerializerFactory;
+import eu.stratosphere.pact.runtime.hash.CombiningHashTable;
+import eu.stratosphere.pact.runtime.task.RegularPactTask;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+/**
+ * Chained variant of the {@link eu.stratosphere.pact.runtime.task.HashCombineDriver}. Records are combined
+ * in a {@link CombiningHashTable} as they are collected, and the table is emitted whenever it is full.
+ */
+public class ChainedHashCombineDriver<T> extends ChainedDriver<T, T>
+{
+	private CombiningHashTable<T> table;
+	
+	private GenericReducer<T, ?> combiner;
+	
+	private Collector<T> outputCollector;
+	
+	private TypeSerializer<T> serializer;
+	
+	private TaskConfig config;
+	
+	private AbstractInvokable parent;
+	
+	private ClassLoader userCodeClassLoader;
+	
+	private String taskName;
+	
+	private MemoryManager memManager;
+	
+	private volatile boolean running = true;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.chaining.ChainedDriver#setup(eu.stratosphere.pact.runtime.task.util.TaskConfig, java.lang.String, eu.stratosphere.nephele.template.AbstractInvokable, java.lang.ClassLoader, eu.stratosphere.pact.common.stubs.Collector)
+	 */
+	@Override
+	public void setup(TaskConfig config, String taskName, AbstractInvokable parent, 
+			ClassLoader userCodeClassLoader, Collector<T> output)
+	{
+		this.config = config;
+		this.userCodeClassLoader = userCodeClassLoader;
+		this.taskName = taskName;
+		this.outputCollector = output;
+		this.parent = parent;
+		
+		@SuppressWarnings("unchecked")
+		final GenericReducer<T, ?> combiner = RegularPactTask.instantiateUserCode(config, userCodeClassLoader, GenericReducer.class);
+		this.combiner = combiner;
+		combiner.setRuntimeContext(getRuntimeContext(parent, taskName));
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.chaining.ChainedDriver#openTask()
+	 */
+	@Override
+	public void openTask() throws Exception {
+		// open the stub first
+		final Configuration stubConfig = this.config.getStubParameters();
+		RegularPactTask.openUserCode(this.combiner, stubConfig);
+		
+		// instantiate the serializer / comparator
+		final TypeSerializerFactory<T> serializerFactory = this.config.getInputSerializer(0, this.userCodeClassLoader);
+		final TypeComparatorFactory<T> comparatorFactory = this.config.getDriverComparator(0, this.userCodeClassLoader);
+		this.serializer = serializerFactory.getSerializer();
+		
+		this.memManager = this.parent.getEnvironment().getMemoryManager();
+		final List<MemorySegment> memory = this.memManager.allocatePages(this.parent, this.config.getMemoryDriver());
+		
+		this.table = new CombiningHashTable<T>(this.serializer, comparatorFactory.createComparator(), this.combiner, memory);
+		this.table.reset(0);
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.chaining.ChainedDriver#closeTask()
+	 */
+	@Override
+	public void closeTask() throws Exception {
+		this.memManager.release(this.table.close());
+		
+		if (!this.running)
+			return;
+		
+		RegularPactTask.closeUserCode(this.combiner);
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.chaining.ChainedDriver#cancelTask()
+	 */
+	@Override
+	public void cancelTask() {
+		// the table's memory is released by the task thread in closeTask(), because the task thread may still be
+		// inserting into the table. If the task fails instead, the task manager releases its memory.
+		this.running = false;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.chaining.ChainedDriver#getStub()
+	 */
+	public Stub getStub() {
+		return this.combiner;
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.chaining.ChainedDriver#getTaskName()
+	 */
+	public String getTaskName() {
+		return this.taskName;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.stubs.Collector#collect(java.lang.Object)
+	 */
+	@Override
+	public void collect(T record) {
+		try {
+			if (this.table.insertOrCombine(record)) {
+				return;
+			}
+			emitAndReset();
+			if (!this.table.insertOrCombine(record)) {
+				throw new IOException("Record is too large for the memory of the hash table.");
+			}
+		} catch (Exception e) {
+			throw new ExceptionInChainedStubException(this.taskName, e);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.stubs.Collector#close()
+	 */
+	@Override
+	public void close() {
+		try {
+			emitAndReset();
+		} catch (Exception e) {
+			throw new ExceptionInChainedStubException(this.taskName, e);
+		}
+	}
+	
+	private void emitAndReset() throws IOException {
+		final Collector<T> output = this.outputCollector;
+		final T record = this.serializer.createInstance();
+		final MutableObjectIterator<T> entries = this.table.getEntryIterator();
+		while (this.running && entries.next(record)) {
+			output.collect(record);
+		}
+		this.table.reset(0);
+	}
+}
@@ -0,0 +1,140 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task.chaining;
+
+import java.util.Collections;
+import java.util.List;
+
+import eu.stratosphere.nephele.io.AbstractRecordWriter;
+import eu.stratosphere.nephele.template.AbstractInvokable;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.stubs.Stub;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.runtime.shipping.PactRecordOutputCollector;
+import eu.stratosphere.pact.runtime.task.RangeSampleDriver;
+import eu.stratosphere.pact.runtime.task.util.RecordReservoir;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+/**
+ * A chained variant of the {@link RangeSampleDriver}. It is chained to the task that produces the range partitioned
+ * data, so the data is shipped only once: The driver forwards every record unchanged to its first output, which
+ * leads to the range partitioner, and draws a reservoir sample on the way. When the input is closed, the sampled
+ * records are emitted to the second output, which leads to the task that computes the partition boundaries.
+ */
+public class ChainedRangeSampleDriver extends ChainedDriver<PactRecord, PactRecord> {
+	
+	private Collector<PactRecord> dataOutput;
+	
+	private Collector<PactRecord> sampleOutput;
+	
+	private RecordReservoir reservoir;
+	
+	private TaskConfig config;
+	
+	private String taskName;
+	
+	private volatile boolean canceled;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.chaining.ChainedDriver#setup(eu.stratosphere.pact.runtime.task.util.TaskConfig, java.lang.String, eu.stratosphere.nephele.template.AbstractInvokable, java.lang.ClassLoader, eu.stratosphere.pact.common.stubs.Collector)
+	 */
+	@Override
+	public void setup(TaskConfig config, String taskName, AbstractInvokable parent,
+			ClassLoader userCodeClassLoader, Collector<PactRecord> output)
+	{
+		this.config = config;
+		this.taskName = taskName;
+		
+		if (!(output instanceof PactRecordOutputCollector)) {
+			throw new RuntimeException("Plan Generation Bug: The chained range sampler must directly feed its outputs.");
+		}
+		final List<AbstractRecordWriter<PactRecord>> writers = ((PactRecordOutputCollector) output).getWriters();
+		if (writers.size() != 2) {
+			throw new RuntimeException("Plan Generation Bug: The chained range sampler requires exactly one data and one sample output.");
+		}
+		this.dataOutput = new PactRecordOutputCollector(Collections.singletonList(writers.get(0)));
+		this.sampleOutput = new PactRecordOutputCollector(Collections.singletonList(writers.get(1)));
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.chaining.ChainedDriver#openTask()
+	 */
+	@Override
+	public void openTask() throws Exception {
+		if (this.config.getRangeSampleSize() < 1) {
+			throw new Exception("The range sample driver requires a sample size to be configured.");
+		}
+		this.reservoir = new RecordReservoir(this.config.getRangeSampleSize());
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.chaining.ChainedDriver#closeTask()
+	 */
+	@Override
+	public void closeTask() throws Exception {}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.chaining.ChainedDriver#cancelTask()
+	 */
+	@Override
+	public void cancelTask() {
+		this.canceled = true;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.chaining.ChainedDriver#getStub()
+	 */
+	public Stub getStub() {
+		return null;
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.chaining.ChainedDriver#getTaskName()
+	 */
+	public String getTaskName() {
+		return this.taskName;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.stubs.Collector#collect(java.lang.Object)
+	 */
+	@Override
+	public void collect(PactRecord record) {
+		final PactRecord target = this.reservoir.next();
+		if (target != null) {
+			record.copyTo(target);
+		}
+		this.dataOutput.collect(record);
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.stubs.Collector#close()
+	 */
+	@Override
+	public void close() {
+		if (!this.canceled) {
+			this.reservoir.emit(this.sampleOutput);
+		}
+		this.dataOutput.close();
+		this.sampleOutput.close();
+	}
+}
@@ -42,11 +42,6 @@ import eu.stratosphere.pact.runtime.util.KeyGroupedIterator;
  */
 public class SynchronousChainedCombineDriver<T> extends ChainedDriver<T, T> {
 	
-	/**
-	 * Fix length records with a length below this threshold will be in-place sorted, if possible.
-	 */
-	private static final int THRESHOLD_FOR_IN_PLACE_SORTING = 32;
-	
 	// --------------------------------------------------------------------------------------------
 	
 	private InMemorySorter<T> sorter;
@@ -117,9 +112,7 @@ public class SynchronousChainedCombineDriver<T> extends ChainedDriver<T, T> {
 		final List<MemorySegment> memory = this.memManager.allocatePages(this.parent, availableMemory);
 		
 		// instantiate a fix-length in-place sorter, if possible, otherwise the out-of-place sorter
-		if (this.comparator.supportsSerializationWithKeyNormalization() &&
-				this.serializer.getLength() > 0 && this.serializer.getLength() <= THRESHOLD_FOR_IN_PLACE_SORTING)
-		{
+		if (FixedLengthRecordSorter.isApplicable(this.serializer, this.comparator, this.memManager.getPageSize())) {
 			this.sorter = new FixedLengthRecordSorter<T>(this.serializer, this.comparator, memory);
 		} else {
 			this.sorter = new NormalizedKeySorter<T>(this.serializer, this.comparator.duplicate(), memory);
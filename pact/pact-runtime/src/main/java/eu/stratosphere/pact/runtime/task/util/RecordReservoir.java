@@ -0,0 +1,102 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task.util;
+
+import java.util.Random;
+
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactDouble;
+
+/**
+ * A uniform random sample of fixed size (reservoir sample) over a stream of records. The reservoir is used by the
+ * runtime range partitioning to compute the partition boundaries from a sample of the data.
+ * <p>
+ * The reservoir does not take ownership of the records of the stream. Instead, it hands out the reservoir record
+ * that a sampled record must be copied into, so records are only copied when they are actually sampled.
+ */
+public final class RecordReservoir
+{
+	private final PactRecord[] reservoir;
+	
+	private final Random rnd = new Random();
+	
+	private long count;
+	
+	/**
+	 * Creates a new reservoir that samples the given number of records.
+	 * 
+	 * @param sampleSize The number of records to sample.
+	 */
+	public RecordReservoir(int sampleSize) {
+		if (sampleSize < 1) {
+			throw new IllegalArgumentException("The sample size must be at least one.");
+		}
+		this.reservoir = new PactRecord[sampleSize];
+	}
+	
+	/**
+	 * Counts the next record of the stream and decides whether it is taken into the sample. Once the reservoir
+	 * is full, a record replaces a sampled record with probability <i>sampleSize / (count + 1)</i>.
+	 * 
+	 * @return The reservoir record that the next record must be copied into, or <code>null</code>, if the
+	 *         next record is not sampled.
+	 */
+	public PactRecord next() {
+		final long pos = this.count < this.reservoir.length ? this.count : (long) (this.rnd.nextDouble() * (this.count + 1));
+		this.count++;
+		
+		if (pos >= this.reservoir.length) {
+			return null;
+		}
+		
+		PactRecord target = this.reservoir[(int) pos];
+		if (target == null) {
+			target = new PactRecord();
+			this.reservoir[(int) pos] = target;
+		}
+		return target;
+	}
+	
+	/**
+	 * Gets the number of records that have been counted so far.
+	 * 
+	 * @return The number of records counted so far.
+	 */
+	public long getCount() {
+		return this.count;
+	}
+	
+	/**
+	 * Emits the sampled records. Each sampled record is extended by a trailing {@link PactDouble} field with the
+	 * number of records that the sample record represents. Nothing is emitted if no record has been counted.
+	 * 
+	 * @param output The collector to emit the sampled records to.
+	 */
+	public void emit(Collector<PactRecord> output) {
+		if (this.count == 0) {
+			return;
+		}
+		
+		final int numSamples = (int) Math.min(this.count, this.reservoir.length);
+		final PactDouble weight = new PactDouble(((double) this.count) / numSamples);
+		for (int i = 0; i < numSamples; i++) {
+			final PactRecord sample = this.reservoir[i];
+			sample.addField(weight);
+			output.collect(sample);
+		}
+	}
+}
@@ -69,6 +69,8 @@ public class TaskConfig {
 	private static final String DRIVER_COMPARATOR_PARAMETERS_PREFIX = "pact.driver.comp.params.";
 	
 	private static final String DRIVER_PAIR_COMPARATOR_FACTORY = "pact.driver.paircomp";
+	
+	private static final String DRIVER_ADAPTIVE_RECORD_LIMIT_PREFIX = "pact.driver.adaptive.limit.";
 
 	// -------------------------------------- Inputs ----------------------------------------------
 
@@ -122,6 +124,20 @@ public class TaskConfig {
 	
 	private static final String OUTPUT_DATA_DISTRIBUTION_STATE = "pact.out.distribution.state";
 	
+	private static final String OUTPUT_RANGE_SAMPLE_SIZE = "pact.out.range.sample-size";
+	
+	private static final String OUTPUT_RANGE_NUM_PARTITIONS = "pact.out.range.num-partitions";
+	
+	private static final String OUTPUT_STATISTICS_DIRECTORY = "pact.out.statistics.dir";
+	
+	private static final String OUTPUT_STATISTICS_SIGNATURE = "pact.out.statistics.signature";
+	
+	private static final String OUTPUT_STATISTICS_NUM_COMPARATORS = "pact.out.statistics.comp.num";
+	
+	private static final String OUTPUT_STATISTICS_COMPARATOR_FACTORY_PREFIX = "pact.out.statistics.comp.";
+	
+	private static final String OUTPUT_STATISTICS_COMPARATOR_PARAMETERS_PREFIX = "pact.out.statistics.comp.param.";
+	
 	// ------------------------------------- Chaining ---------------------------------------------
 	
 	private static final String CHAINING_NUM_STUBS = "pact.chaining.num";
@@ -351,6 +367,21 @@ public class TaskConfig {
 		}
 	}
 	
+	/**
+	 * Sets the number of records that the given input of the driver may hold, before the driver considers the
+	 * compiler's estimate for that input to be wrong and adapts its strategy.
+	 * 
+	 * @param inputNum The number of the driver's input.
+	 * @param limit The number of records.
+	 */
+	public void setAdaptiveRecordLimit(int inputNum, long limit) {
+		this.config.setLong(DRIVER_ADAPTIVE_RECORD_LIMIT_PREFIX + inputNum, limit);
+	}
+	
+	public long getAdaptiveRecordLimit(int inputNum) {
+		return this.config.getLong(DRIVER_ADAPTIVE_RECORD_LIMIT_PREFIX + inputNum, -1);
+	}
+	
 	// --------------------------------------------------------------------------------------------
 	//                                        Inputs
 	// --------------------------------------------------------------------------------------------
@@ -531,6 +562,72 @@ public class TaskConfig {
 		}
 	}
 	
+	public void setRangeSampleSize(int sampleSize) {
+		if (sampleSize < 1) {
+			throw new IllegalArgumentException();
+		}
+		this.config.setInteger(OUTPUT_RANGE_SAMPLE_SIZE, sampleSize);
+	}
+	
+	public int getRangeSampleSize() {
+		return this.config.getInteger(OUTPUT_RANGE_SAMPLE_SIZE, -1);
+	}
+	
+	public void setRangeNumberOfPartitions(int numPartitions) {
+		if (numPartitions < 1) {
+			throw new IllegalArgumentException();
+		}
+		this.config.setInteger(OUTPUT_RANGE_NUM_PARTITIONS, numPartitions);
+	}
+	
+	public int getRangeNumberOfPartitions() {
+		return this.config.getInteger(OUTPUT_RANGE_NUM_PARTITIONS, -1);
+	}
+	
+	/**
+	 * Configures the task to observe the statistics of its output and to write them to the statistics store
+	 * in the given directory.
+	 * 
+	 * @param directory The directory of the runtime statistics store.
+	 * @param signature The signature of the operator, under which the statistics are stored.
+	 */
+	public void setOutputStatistics(String directory, String signature) {
+		if (directory == null || signature == null) {
+			throw new NullPointerException();
+		}
+		this.config.setString(OUTPUT_STATISTICS_DIRECTORY, directory);
+		this.config.setString(OUTPUT_STATISTICS_SIGNATURE, signature);
+	}
+	
+	public String getOutputStatisticsDirectory() {
+		return this.config.getString(OUTPUT_STATISTICS_DIRECTORY, null);
+	}
+	
+	public String getOutputStatisticsSignature() {
+		return this.config.getString(OUTPUT_STATISTICS_SIGNATURE, null);
+	}
+	
+	/**
+	 * Adds a comparator describing a key whose number of distinct values is estimated in the output statistics.
+	 * 
+	 * @param factory The factory for the comparator.
+	 */
+	public void addOutputStatisticsComparator(TypeComparatorFactory<?> factory) {
+		final int num = this.config.getInteger(OUTPUT_STATISTICS_NUM_COMPARATORS, 0);
+		setTypeComparatorFactory(factory, OUTPUT_STATISTICS_COMPARATOR_FACTORY_PREFIX + num,
+			OUTPUT_STATISTICS_COMPARATOR_PARAMETERS_PREFIX + num + SEPARATOR);
+		this.config.setInteger(OUTPUT_STATISTICS_NUM_COMPARATORS, num + 1);
+	}
+	
+	public int getNumOutputStatisticsComparators() {
+		return this.config.getInteger(OUTPUT_STATISTICS_NUM_COMPARATORS, 0);
+	}
+	
+	public <T> TypeComparatorFactory<T> getOutputStatisticsComparator(int num, ClassLoader cl) {
+		return getTypeComparatorFactory(OUTPUT_STATISTICS_COMPARATOR_FACTORY_PREFIX + num,
+			OUTPUT_STATISTICS_COMPARATOR_PARAMETERS_PREFIX + num + SEPARATOR, cl);
+	}
+	
 	// --------------------------------------------------------------------------------------------
 	//                       Parameters to configure the memory and I/O behavior
 	// --------------------------------------------------------------------------------------------
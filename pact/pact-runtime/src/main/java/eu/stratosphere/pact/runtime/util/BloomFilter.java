@@ -0,0 +1,164 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.util;
+
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+
+/**
+ * A bloom filter over 32 bit hash codes, whose bit set lives in a region of a {@link MemorySegment}.
+ * The filter does not own any memory. It is pointed to a region through
+ * {@link #setBitsLocation(MemorySegment, int)} and can hence be re-targeted at many small bit sets
+ * without creating objects, for example at the buckets of a hash table.
+ * <p>
+ * The bit positions are derived from the given hash code through double hashing. Because the hash
+ * codes are typically already used to select a bucket or partition (and are therefore correlated in
+ * their lower bits), they are remixed before the bit positions are computed.
+ */
+public final class BloomFilter
+{
+	private final int numBits;
+	
+	private final int numHashFunctions;
+	
+	private MemorySegment segment;
+	
+	private int offset;
+	
+	/**
+	 * Creates a new bloom filter for bit sets of the given size.
+	 * 
+	 * @param expectedEntries The number of entries that the filter is expected to hold.
+	 * @param byteSize The number of bytes in the bit set.
+	 */
+	public BloomFilter(int expectedEntries, int byteSize)
+	{
+		if (expectedEntries <= 0) {
+			throw new IllegalArgumentException("The expected number of entries must be positive.");
+		}
+		if (byteSize <= 0) {
+			throw new IllegalArgumentException("The size of the bit set must be positive.");
+		}
+		this.numBits = byteSize << 3;
+		this.numHashFunctions = optimalNumOfHashFunctions(expectedEntries, this.numBits);
+	}
+	
+	/**
+	 * Points this filter at the bit set starting at the given offset in the given segment.
+	 * 
+	 * @param segment The segment holding the bit set.
+	 * @param offset The offset of the bit set in the segment.
+	 */
+	public void setBitsLocation(MemorySegment segment, int offset)
+	{
+		this.segment = segment;
+		this.offset = offset;
+	}
+	
+	/**
+	 * Clears all bits of the current bit set.
+	 */
+	public void reset()
+	{
+		final int end = this.offset + (this.numBits >>> 3);
+		for (int pos = this.offset; pos < end; pos++) {
+			this.segment.put(pos, (byte) 0);
+		}
+	}
+	
+	/**
+	 * Adds the given hash code to the current bit set.
+	 * 
+	 * @param hash The hash code to add.
+	 */
+	public void addHash(int hash)
+	{
+		final int h1 = mix1(hash);
+		final int h2 = mix2(hash);
+		
+		for (int i = 0; i < this.numHashFunctions; i++) {
+			final int bit = ((h1 + i * h2) & 0x7fffffff) % this.numBits;
+			final int pos = this.offset + (bit >>> 3);
+			this.segment.put(pos, (byte) (this.segment.get(pos) | (1 << (bit & 0x7))));
+		}
+	}
+	
+	/**
+	 * Checks whether the given hash code may have been added to the current bit set. A return value
+	 * of <code>false</code> means that the hash code has definitely not been added.
+	 * 
+	 * @param hash The hash code to test.
+	 * @return False, if the hash code was definitely not added, true if it may have been added.
+	 */
+	public boolean testHash(int hash)
+	{
+		final int h1 = mix1(hash);
+		final int h2 = mix2(hash);
+		
+		for (int i = 0; i < this.numHashFunctions; i++) {
+			final int bit = ((h1 + i * h2) & 0x7fffffff) % this.numBits;
+			if ((this.segment.get(this.offset + (bit >>> 3)) & (1 << (bit & 0x7))) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Gets the number of bits in the bit sets of this filter.
+	 * 
+	 * @return The number of bits.
+	 */
+	public int getNumBits() {
+		return this.numBits;
+	}
+	
+	/**
+	 * Gets the number of bit positions that are set or tested per hash code.
+	 * 
+	 * @return The number of hash functions.
+	 */
+	public int getNumHashFunctions() {
+		return this.numHashFunctions;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Computes the number of hash functions that minimizes the false positive rate for the given
+	 * number of entries and bits, which is <i>(m / n) * ln(2)</i>.
+	 * 
+	 * @param expectedEntries The number of entries, <i>n</i>.
+	 * @param numBits The number of bits, <i>m</i>.
+	 * @return The optimal number of hash functions, at least one.
+	 */
+	public static int optimalNumOfHashFunctions(long expectedEntries, long numBits) {
+		return Math.max(1, (int) Math.round((double) numBits / expectedEntries * Math.log(2)));
+	}
+	
+	private static final int mix1(int hash) {
+		hash *= 0xcc9e2d51;
+		hash ^= hash >>> 15;
+		return hash * 0x1b873593;
+	}
+	
+	private static final int mix2(int hash) {
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		// odd, so that the step between the probed bits never degenerates to zero
+		return hash | 0x1;
+	}
+}
@@ -0,0 +1,182 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.hash;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
+import eu.stratosphere.nephele.template.AbstractTask;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.stubs.MatchStub;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.generic.types.TypeComparator;
+import eu.stratosphere.pact.generic.types.TypeSerializer;
+import eu.stratosphere.pact.runtime.hash.HashMatchIteratorITCase.PactRecordMatchRemovingMatcher;
+import eu.stratosphere.pact.runtime.hash.HashMatchIteratorITCase.RecordMatch;
+import eu.stratosphere.pact.runtime.plugable.pactrecord.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.pactrecord.PactRecordPairComparatorFactory;
+import eu.stratosphere.pact.runtime.plugable.pactrecord.PactRecordSerializer;
+import eu.stratosphere.pact.runtime.test.util.DiscardingOutputCollector;
+import eu.stratosphere.pact.runtime.test.util.DummyInvokable;
+import eu.stratosphere.pact.runtime.test.util.TestData;
+import eu.stratosphere.pact.runtime.test.util.TestData.Generator;
+import eu.stratosphere.pact.runtime.test.util.TestData.Generator.KeyMode;
+import eu.stratosphere.pact.runtime.test.util.TestData.Generator.ValueMode;
+
+/**
+ * Tests that the {@link AdaptiveHashMatchIterator} produces the correct matches, whether it keeps the initial hash
+ * join, switches the build side, or falls back to the sort-merge strategy.
+ */
+public class AdaptiveHashMatchIteratorITCase
+{
+	private static final int MEMORY_SIZE = 16000000;		// total memory
+
+	private static final int INPUT_1_SIZE = 20000;
+	private static final int INPUT_2_SIZE = 1000;
+
+	private static final long SEED1 = 561349061987311L;
+	private static final long SEED2 = 231434613412342L;
+	
+	private final AbstractTask parentTask = new DummyInvokable();
+
+	private IOManager ioManager;
+	private MemoryManager memoryManager;
+	
+	private TypeSerializer<PactRecord> recordSerializer;
+	private TypeComparator<PactRecord> record1Comparator;
+	private TypeComparator<PactRecord> record2Comparator;
+
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void beforeTest()
+	{
+		this.recordSerializer = PactRecordSerializer.get();
+		
+		this.record1Comparator = new PactRecordComparator(new int[] {0}, new Class[] {TestData.Key.class});
+		this.record2Comparator = new PactRecordComparator(new int[] {0}, new Class[] {TestData.Key.class});
+		
+		this.memoryManager = new DefaultMemoryManager(MEMORY_SIZE);
+		this.ioManager = new IOManager();
+	}
+
+	@After
+	public void afterTest()
+	{
+		if (this.ioManager != null) {
+			this.ioManager.shutdown();
+			if (!this.ioManager.isProperlyShutDown()) {
+				Assert.fail("I/O manager failed to properly shut down.");
+			}
+			this.ioManager = null;
+		}
+		
+		if (this.memoryManager != null) {
+			Assert.assertTrue("Memory Leak: Not all memory has been returned to the memory manager.",
+				this.memoryManager.verifyEmpty());
+			this.memoryManager.shutdown();
+			this.memoryManager = null;
+		}
+	}
+
+	@Test
+	public void testBuildSideWithinLimit() {
+		final String message = runMatch(INPUT_2_SIZE * 2, INPUT_1_SIZE * 2, false);
+		Assert.assertNull("The iterator adapted its strategy without need.", message);
+	}
+	
+	@Test
+	public void testSwitchBuildSide() {
+		final String message = runMatch(INPUT_1_SIZE / 10, INPUT_2_SIZE * 2, true);
+		Assert.assertNotNull("The iterator did not adapt its strategy.", message);
+		Assert.assertTrue(message, message.contains("switched the build side to input 2"));
+	}
+	
+	@Test
+	public void testFallBackToSortMerge() {
+		final String message = runMatch(INPUT_2_SIZE * 2, INPUT_2_SIZE / 10, false);
+		Assert.assertNotNull("The iterator did not adapt its strategy.", message);
+		Assert.assertTrue(message, message.contains("sort-merge"));
+	}
+	
+	@Test
+	public void testFallBackWithoutLimitOnOtherSide() {
+		final String message = runMatch(INPUT_1_SIZE / 10, -1, true);
+		Assert.assertNotNull("The iterator did not adapt its strategy.", message);
+		Assert.assertTrue(message, message.contains("sort-merge"));
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private String runMatch(long limit1, long limit2, boolean buildFirst) {
+		try {
+			Generator generator1 = new Generator(SEED1, 500, 4096, KeyMode.RANDOM, ValueMode.RANDOM_LENGTH);
+			Generator generator2 = new Generator(SEED2, 500, 2048, KeyMode.RANDOM, ValueMode.RANDOM_LENGTH);
+			
+			final TestData.GeneratorIterator input1 = new TestData.GeneratorIterator(generator1, INPUT_1_SIZE);
+			final TestData.GeneratorIterator input2 = new TestData.GeneratorIterator(generator2, INPUT_2_SIZE);
+			
+			// collect expected data
+			final Map<TestData.Key, Collection<RecordMatch>> expectedMatchesMap = HashMatchIteratorITCase.matchRecordValues(
+				HashMatchIteratorITCase.collectRecordData(input1),
+				HashMatchIteratorITCase.collectRecordData(input2));
+			
+			final MatchStub matcher = new PactRecordMatchRemovingMatcher(expectedMatchesMap);
+			final Collector<PactRecord> collector = new DiscardingOutputCollector();
+	
+			// reset the generators
+			generator1.reset();
+			generator2.reset();
+			input1.reset();
+			input2.reset();
+	
+			// compare with iterator values
+			final AdaptiveHashMatchIterator<PactRecord, PactRecord, PactRecord> iterator = 
+					new AdaptiveHashMatchIterator<PactRecord, PactRecord, PactRecord>(
+						input1, input2, this.recordSerializer, this.record1Comparator, 
+						this.recordSerializer, this.record2Comparator, PactRecordPairComparatorFactory.get(),
+						this.memoryManager, this.ioManager, this.parentTask, MEMORY_SIZE, 64, 0.7f,
+						limit1, limit2, buildFirst);
+			
+			iterator.open();
+			
+			while (iterator.callWithNextKey(matcher, collector));
+			
+			iterator.close();
+	
+			// assert that each expected match was seen
+			for (Entry<TestData.Key, Collection<RecordMatch>> entry : expectedMatchesMap.entrySet()) {
+				if (!entry.getValue().isEmpty())
+					Assert.fail("Collection for key " + entry.getKey() + " is not empty");
+			}
+			return iterator.getAdaptationMessage();
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail("An exception occurred during the test: " + e.getMessage());
+			return null;
+		}
+	}
+}
@@ -550,35 +550,37 @@ public class HashTableITCase
 	/*
 	 * This test is basically identical to the "testSpillingHashJoinWithMassiveCollisions" test, only that the number
 	 * of repeated values (causing bucket collisions) are large enough to make sure that their target partition no longer
-	 * fits into memory by itself and needs to be repartitioned in the recursion again.
+	 * fits into memory by itself. Because re-partitioning cannot split duplicate keys, that partition must be joined
+	 * through the nested-loop fallback.
 	 */
 	@Test
-	public void testFailingHashJoinTooManyRecursions() throws IOException
+	public void testSpillingHashJoinWithFallback() throws IOException
 	{
 		// the following two values are known to have a hash-code collision on the first recursion level.
 		// we use them to make sure one partition grows over-proportionally large
 		final int REPEATED_VALUE_1 = 40559;
 		final int REPEATED_VALUE_2 = 92882;
-		final int REPEATED_VALUE_COUNT = 3000000; 
+		final int REPEATED_VALUE_COUNT_BUILD = 3000000;
+		final int REPEATED_VALUE_COUNT_PROBE = 5;
 		
 		final int NUM_KEYS = 1000000;
 		final int BUILD_VALS_PER_KEY = 3;
 		final int PROBE_VALS_PER_KEY = 10;
 		
-		// create a build input that gives 3 million pairs with 3 values sharing the same key, plus 400k pairs with two colliding keys
+		// create a build input that gives 3 million pairs with 3 values sharing the same key, plus 6 million pairs with two colliding keys
 		MutableObjectIterator<PactRecord> build1 = new UniformPactRecordGenerator(NUM_KEYS, BUILD_VALS_PER_KEY, false);
-		MutableObjectIterator<PactRecord> build2 = new ConstantsKeyValuePairsIterator(REPEATED_VALUE_1, 17, REPEATED_VALUE_COUNT);
-		MutableObjectIterator<PactRecord> build3 = new ConstantsKeyValuePairsIterator(REPEATED_VALUE_2, 23, REPEATED_VALUE_COUNT);
+		MutableObjectIterator<PactRecord> build2 = new ConstantsKeyValuePairsIterator(REPEATED_VALUE_1, 17, REPEATED_VALUE_COUNT_BUILD);
+		MutableObjectIterator<PactRecord> build3 = new ConstantsKeyValuePairsIterator(REPEATED_VALUE_2, 23, REPEATED_VALUE_COUNT_BUILD);
 		List<MutableObjectIterator<PactRecord>> builds = new ArrayList<MutableObjectIterator<PactRecord>>();
 		builds.add(build1);
 		builds.add(build2);
 		builds.add(build3);
 		MutableObjectIterator<PactRecord> buildInput = new UnionIterator<PactRecord>(builds);
 	
-		// create a probe input that gives 10 million pairs with 10 values sharing a key
+		// create a probe input that gives 10 million pairs with 10 values sharing a key, plus 5 pairs for each colliding key
 		MutableObjectIterator<PactRecord> probe1 = new UniformPactRecordGenerator(NUM_KEYS, PROBE_VALS_PER_KEY, true);
-		MutableObjectIterator<PactRecord> probe2 = new ConstantsKeyValuePairsIterator(REPEATED_VALUE_1, 17, REPEATED_VALUE_COUNT);
-		MutableObjectIterator<PactRecord> probe3 = new ConstantsKeyValuePairsIterator(REPEATED_VALUE_2, 23, REPEATED_VALUE_COUNT);
+		MutableObjectIterator<PactRecord> probe2 = new ConstantsKeyValuePairsIterator(REPEATED_VALUE_1, 17, REPEATED_VALUE_COUNT_PROBE);
+		MutableObjectIterator<PactRecord> probe3 = new ConstantsKeyValuePairsIterator(REPEATED_VALUE_2, 23, REPEATED_VALUE_COUNT_PROBE);
 		List<MutableObjectIterator<PactRecord>> probes = new ArrayList<MutableObjectIterator<PactRecord>>();
 		probes.add(probe1);
 		probes.add(probe2);
@@ -605,22 +607,27 @@ public class HashTableITCase
 		
 		final PactRecord record = new PactRecord();
 		
-		try {
-			while (join.nextRecord())
-			{	
-				HashBucketIterator<PactRecord, PactRecord> buildSide = join.getBuildSideIterator();
-				if (!buildSide.next(record)) {
-					fail("No build side values found for a probe key.");
-				}
-				while (buildSide.next(record));
+		long numRecordsInJoinResult = 0;
+		
+		// the partitions of the colliding keys cannot be reduced by re-partitioning and must be joined
+		// through the nested-loop fallback
+		while (join.nextRecord())
+		{	
+			HashBucketIterator<PactRecord, PactRecord> buildSide = join.getBuildSideIterator();
+			while (buildSide.next(record)) {
+				numRecordsInJoinResult++;
 			}
-			
-			fail("Hash Join must have failed due to too many recursions.");
-		}
-		catch (Exception ex) {
-			// expected
 		}
 		
+		// the repeated values are also among the uniformly generated keys
+		Assert.assertEquals("Wrong number of records in join result.", 
+			((long) NUM_KEYS - 2) * BUILD_VALS_PER_KEY * PROBE_VALS_PER_KEY + 
+			2L * (REPEATED_VALUE_COUNT_BUILD + BUILD_VALS_PER_KEY) * (REPEATED_VALUE_COUNT_PROBE + PROBE_VALS_PER_KEY),
+			numRecordsInJoinResult);
+		Assert.assertTrue("The fallback was not used.", join.getNumFallbackPartitions() > 0);
+		Assert.assertTrue("The fallback did not join in multiple blocks.", 
+			join.getNumFallbackBlocks() > join.getNumFallbackPartitions());
+		
 		join.close();
 		
 		// ----------------------------------------------------------------------------------------
@@ -1149,35 +1156,37 @@ public class HashTableITCase
 	/*
 	 * This test is basically identical to the "testSpillingHashJoinWithMassiveCollisions" test, only that the number
 	 * of repeated values (causing bucket collisions) are large enough to make sure that their target partition no longer
-	 * fits into memory by itself and needs to be repartitioned in the recursion again.
+	 * fits into memory by itself. Because re-partitioning cannot split duplicate keys, that partition must be joined
+	 * through the nested-loop fallback.
 	 */
 	@Test
-	public void testFailingHashJoinTooManyRecursionsIntPair() throws IOException
+	public void testSpillingHashJoinWithFallbackIntPair() throws IOException
 	{
 		// the following two values are known to have a hash-code collision on the first recursion level.
 		// we use them to make sure one partition grows over-proportionally large
 		final int REPEATED_VALUE_1 = 40559;
 		final int REPEATED_VALUE_2 = 92882;
-		final int REPEATED_VALUE_COUNT = 3000000; 
+		final int REPEATED_VALUE_COUNT_BUILD = 3000000;
+		final int REPEATED_VALUE_COUNT_PROBE = 5;
 		
 		final int NUM_KEYS = 1000000;
 		final int BUILD_VALS_PER_KEY = 3;
 		final int PROBE_VALS_PER_KEY = 10;
 		
-		// create a build input that gives 3 million pairs with 3 values sharing the same key, plus 400k pairs with two colliding keys
+		// create a build input that gives 3 million pairs with 3 values sharing the same key, plus 6 million pairs with two colliding keys
 		MutableObjectIterator<IntPair> build1 = new UniformIntPairGenerator(NUM_KEYS, BUILD_VALS_PER_KEY, false);
-		MutableObjectIterator<IntPair> build2 = new ConstantsIntPairsIterator(REPEATED_VALUE_1, 17, REPEATED_VALUE_COUNT);
-		MutableObjectIterator<IntPair> build3 = new ConstantsIntPairsIterator(REPEATED_VALUE_2, 23, REPEATED_VALUE_COUNT);
+		MutableObjectIterator<IntPair> build2 = new ConstantsIntPairsIterator(REPEATED_VALUE_1, 17, REPEATED_VALUE_COUNT_BUILD);
+		MutableObjectIterator<IntPair> build3 = new ConstantsIntPairsIterator(REPEATED_VALUE_2, 23, REPEATED_VALUE_COUNT_BUILD);
 		List<MutableObjectIterator<IntPair>> builds = new ArrayList<MutableObjectIterator<IntPair>>();
 		builds.add(build1);
 		builds.add(build2);
 		builds.add(build3);
 		MutableObjectIterator<IntPair> buildInput = new UnionIterator<IntPair>(builds);
 	
-		// create a probe input that gives 10 million pairs with 10 values sharing a key
+		// create a probe input that gives 10 million pairs with 10 values sharing a key, plus 5 pairs for each colliding key
 		MutableObjectIterator<IntPair> probe1 = new UniformIntPairGenerator(NUM_KEYS, PROBE_VALS_PER_KEY, true);
-		MutableObjectIterator<IntPair> probe2 = new ConstantsIntPairsIterator(REPEATED_VALUE_1, 17, REPEATED_VALUE_COUNT);
-		MutableObjectIterator<IntPair> probe3 = new ConstantsIntPairsIterator(REPEATED_VALUE_2, 23, REPEATED_VALUE_COUNT);
+		MutableObjectIterator<IntPair> probe2 = new ConstantsIntPairsIterator(REPEATED_VALUE_1, 17, REPEATED_VALUE_COUNT_PROBE);
+		MutableObjectIterator<IntPair> probe3 = new ConstantsIntPairsIterator(REPEATED_VALUE_2, 23, REPEATED_VALUE_COUNT_PROBE);
 		List<MutableObjectIterator<IntPair>> probes = new ArrayList<MutableObjectIterator<IntPair>>();
 		probes.add(probe1);
 		probes.add(probe2);
@@ -1204,22 +1213,27 @@ public class HashTableITCase
 		
 		final IntPair record = new IntPair();
 		
-		try {
-			while (join.nextRecord())
-			{	
-				HashBucketIterator<IntPair, IntPair> buildSide = join.getBuildSideIterator();
-				if (!buildSide.next(record)) {
-					fail("No build side values found for a probe key.");
-				}
-				while (buildSide.next(record));
+		long numRecordsInJoinResult = 0;
+		
+		// the partitions of the colliding keys cannot be reduced by re-partitioning and must be joined
+		// through the nested-loop fallback
+		while (join.nextRecord())
+		{	
+			HashBucketIterator<IntPair, IntPair> buildSide = join.getBuildSideIterator();
+			while (buildSide.next(record)) {
+				numRecordsInJoinResult++;
 			}
-			
-			fail("Hash Join must have failed due to too many recursions.");
-		}
-		catch (Exception ex) {
-			// expected
 		}
 		
+		// the repeated values are also among the uniformly generated keys
+		Assert.assertEquals("Wrong number of records in join result.", 
+			((long) NUM_KEYS - 2) * BUILD_VALS_PER_KEY * PROBE_VALS_PER_KEY + 
+			2L * (REPEATED_VALUE_COUNT_BUILD + BUILD_VALS_PER_KEY) * (REPEATED_VALUE_COUNT_PROBE + PROBE_VALS_PER_KEY),
+			numRecordsInJoinResult);
+		Assert.assertTrue("The fallback was not used.", join.getNumFallbackPartitions() > 0);
+		Assert.assertTrue("The fallback did not join in multiple blocks.", 
+			join.getNumFallbackBlocks() > join.getNumFallbackPartitions());
+		
 		join.close();
 		
 		// ----------------------------------------------------------------------------------------
@@ -1276,6 +1290,60 @@ public class HashTableITCase
 		this.memManager.release(join.getFreedMemory());
 	}
 	
+	/*
+	 * Spills build records and probes with a key range ten times as large, so that most probe records
+	 * have no partner. Those must be dropped by the bucket bloom filters without changing the result.
+	 */
+	@Test
+	public void testSpillingHashJoinWithBloomFiltersIntPair() throws IOException, MemoryAllocationException
+	{
+		final int NUM_BUILD_KEYS = 500000;
+		final int NUM_BUILD_VALS = 2;
+		final int NUM_PROBE_KEYS = 5000000;
+		final int NUM_PROBE_VALS = 1;
+		
+		final int expectedNumResults = NUM_BUILD_KEYS * NUM_BUILD_VALS * NUM_PROBE_VALS;
+		
+		for (boolean useBloomFilters : new boolean[] { true, false })
+		{
+			MutableObjectIterator<IntPair> buildInput = new UniformIntPairGenerator(NUM_BUILD_KEYS, NUM_BUILD_VALS, false);
+			MutableObjectIterator<IntPair> probeInput = new UniformIntPairGenerator(NUM_PROBE_KEYS, NUM_PROBE_VALS, true);
+			
+			final List<MemorySegment> memSegments = this.memManager.allocatePages(MEM_OWNER, 128);
+			
+			final MutableHashTable<IntPair, IntPair> join = new MutableHashTable<IntPair, IntPair>(
+					this.pairBuildSideAccesssor, this.pairProbeSideAccesssor, 
+					this.pairBuildSideComparator, this.pairProbeSideComparator, this.pairComparator,
+					memSegments, ioManager, -1, useBloomFilters);
+			join.open(buildInput, probeInput);
+			
+			final IntPair record = new IntPair();
+			int numRecordsInJoinResult = 0;
+			
+			while (join.nextRecord()) {
+				HashBucketIterator<IntPair, IntPair> buildSide = join.getBuildSideIterator();
+				while (buildSide.next(record)) {
+					Assert.assertEquals("Probe-side key was different than build-side key.",
+						record.getKey(), join.getCurrentProbeRecord().getKey());
+					numRecordsInJoinResult++;
+				}
+			}
+			Assert.assertEquals("Wrong number of records in join result.", expectedNumResults, numRecordsInJoinResult);
+			
+			if (useBloomFilters) {
+				// the build side covers only a tenth of the probe keys, so most spilled probe records must be dropped
+				Assert.assertTrue("Too few probe records were dropped by the bloom filters.",
+					join.getNumProbeRecordsFiltered() > (NUM_PROBE_KEYS - NUM_BUILD_KEYS) / 2);
+			} else {
+				Assert.assertEquals(0, join.getNumProbeRecordsFiltered());
+			}
+			
+			join.close();
+			
+			this.memManager.release(join.getFreedMemory());
+		}
+	}
+	
 	/*
 	 * This test validates a bug fix against former memory loss in the case where a partition was spilled
 	 * during an insert into the same.
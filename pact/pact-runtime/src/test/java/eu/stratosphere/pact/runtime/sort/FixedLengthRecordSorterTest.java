@@ -23,11 +23,20 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import eu.stratosphere.nephele.services.iomanager.BlockChannelReader;
+import eu.stratosphere.nephele.services.iomanager.BlockChannelWriter;
+import eu.stratosphere.nephele.services.iomanager.Channel;
+import eu.stratosphere.nephele.services.iomanager.ChannelReaderInputView;
+import eu.stratosphere.nephele.services.iomanager.ChannelWriterOutputView;
+import eu.stratosphere.nephele.services.iomanager.IOManager;
 import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
 import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
+import eu.stratosphere.pact.common.type.base.PactInteger;
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
 import eu.stratosphere.pact.generic.types.TypeComparator;
 import eu.stratosphere.pact.generic.types.TypeSerializer;
+import eu.stratosphere.pact.runtime.plugable.pactrecord.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.pactrecord.PactRecordSerializer;
 import eu.stratosphere.pact.runtime.test.util.DummyInvokable;
 import eu.stratosphere.pact.runtime.test.util.RandomIntPairGenerator;
 import eu.stratosphere.pact.runtime.test.util.UniformIntPairGenerator;
@@ -364,4 +373,111 @@ public class FixedLengthRecordSorterTest
 		// release the memory occupied by the buffers
 		this.memoryManager.release(sorter.dispose());
 	}
+	
+	@Test
+	public void testRadixSort() throws Exception {
+		final int NUM_RECORDS = 559273;
+		final int numSegments = MEMORY_SIZE / MEMORY_PAGE_SIZE;
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(new DummyInvokable(), numSegments);
+		
+		FixedLengthRecordSorter<IntPair> sorter = newSortBuffer(memory);
+		RandomIntPairGenerator generator = new RandomIntPairGenerator(SEED);
+		
+		// write the records
+		IntPair record = new IntPair();
+		int num = -1;
+		do {
+			generator.next(record);
+			num++;
+		}
+		while (sorter.write(record) && num < NUM_RECORDS);
+		
+		Assert.assertTrue(RadixSort.isApplicable(sorter));
+		RadixSort rs = new RadixSort();
+		rs.sort(sorter);
+		
+		MutableObjectIterator<IntPair> iter = sorter.getIterator();
+		IntPair readTarget = new IntPair();
+		
+		int current = 0;
+		int last = 0;
+		
+		iter.next(readTarget);
+		//readTarget.getFieldInto(0, last);
+		last = readTarget.getKey();
+		
+		while (iter.next(readTarget)) {
+			current = readTarget.getKey();
+			
+			final int cmp = last - current;
+			if (cmp > 0)
+				Assert.fail("Next key is not larger or equal to previous key.");
+			
+			int tmp = current;
+			current = last;
+			last = tmp;
+		}
+		
+		// release the memory occupied by the buffers
+		this.memoryManager.release(sorter.dispose());
+	}
+	
+	@Test
+	public void testWriteRangeToOutput() throws Exception {
+		final int numSegments = 16;
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(new DummyInvokable(), numSegments);
+		final List<MemorySegment> ioMemory = this.memoryManager.allocatePages(new DummyInvokable(), 2);
+		final IOManager ioManager = new IOManager();
+		
+		FixedLengthRecordSorter<IntPair> sorter = newSortBuffer(memory);
+		UniformIntPairGenerator generator = new UniformIntPairGenerator(Integer.MAX_VALUE, 1, true);
+		
+		// fill the sorter with ascending keys
+		IntPair record = new IntPair();
+		int num = 0;
+		generator.next(record);
+		while (sorter.write(record)) {
+			num++;
+			generator.next(record);
+		}
+		
+		// write a range that starts in the middle of a segment and spans several segments
+		final int recordsPerSegment = MEMORY_PAGE_SIZE / this.serializer.getLength();
+		final int start = recordsPerSegment / 2 + 3;
+		final int len = Math.min(3 * recordsPerSegment, num - start);
+		
+		final Channel.ID channel = ioManager.createChannel();
+		final BlockChannelWriter writer = ioManager.createBlockChannelWriter(channel);
+		final ChannelWriterOutputView out = new ChannelWriterOutputView(writer, ioMemory, MEMORY_PAGE_SIZE);
+		sorter.writeToOutput(out, start, len);
+		final int numBlocks = out.getBlockCount();
+		final List<MemorySegment> returned = out.close();
+		
+		final BlockChannelReader reader = ioManager.createBlockChannelReader(channel);
+		final ChannelReaderInputView in = new ChannelReaderInputView(reader, returned, numBlocks, false);
+		
+		IntPair readTarget = new IntPair();
+		IntPair expected = new IntPair();
+		for (int i = start; i < start + len; i++) {
+			this.serializer.deserialize(readTarget, in);
+			sorter.getRecord(expected, i);
+			Assert.assertEquals("Wrong key at position " + i, expected.getKey(), readTarget.getKey());
+			Assert.assertEquals("Wrong value at position " + i, expected.getValue(), readTarget.getValue());
+		}
+		
+		this.memoryManager.release(in.close());
+		reader.deleteChannel();
+		ioManager.shutdown();
+		
+		// release the memory occupied by the buffers
+		this.memoryManager.release(sorter.dispose());
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testApplicability() throws Exception {
+		Assert.assertTrue(FixedLengthRecordSorter.isApplicable(this.serializer, this.comparator, MEMORY_PAGE_SIZE));
+		Assert.assertFalse(FixedLengthRecordSorter.isApplicable(PactRecordSerializer.get(),
+			new PactRecordComparator(new int[] {0}, new Class[] {PactInteger.class}), MEMORY_PAGE_SIZE));
+	}
 }
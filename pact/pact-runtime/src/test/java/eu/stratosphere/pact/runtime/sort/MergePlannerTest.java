@@ -0,0 +1,144 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.sort;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.stratosphere.pact.runtime.sort.UnilateralSortMerger.ChannelWithBlockCount;
+
+/**
+ * Tests for the {@link MergePlanner}.
+ */
+public class MergePlannerTest
+{
+	private static final int SEGMENT_SIZE = 32 * 1024;
+	
+	@Test
+	public void testFanInBounds() {
+		// the memory bounds the fan-in
+		final MergePlanner planner = new MergePlanner(128, 64, SEGMENT_SIZE);
+		Assert.assertEquals(64, planner.getMaxFanIn());
+		Assert.assertTrue(planner.getFanIn(1000) <= 64);
+		
+		// plenty of memory, so the file handles bound the fan-in
+		final MergePlanner large = new MergePlanner(16, 10000, SEGMENT_SIZE);
+		Assert.assertEquals(16, large.getMaxFanIn());
+		Assert.assertEquals(16, large.getFanIn(16));
+		Assert.assertEquals(2, MergePlanner.getNumPasses(17, large.getFanIn(17)));
+	}
+	
+	@Test
+	public void testFanInAdaptsToMemory() {
+		final MergePlanner planner = new MergePlanner(128, 4096, SEGMENT_SIZE);
+		
+		// few runs are merged in one pass
+		Assert.assertEquals(100, planner.getFanIn(100));
+		Assert.assertEquals(1, MergePlanner.getNumPasses(100, planner.getFanIn(100)));
+		
+		// with many runs, it pays off to merge with a lower fan-in and more read-ahead than the
+		// handles would allow, because the second pass is needed anyways
+		final int fanIn = planner.getFanIn(1000);
+		Assert.assertEquals(2, MergePlanner.getNumPasses(1000, fanIn));
+		Assert.assertTrue(fanIn < 128);
+		Assert.assertTrue(planner.getSegmentsPerChannel(fanIn) > 4096 / 128);
+		
+		// with very little memory per channel, an extra pass is cheaper than merging with single segments
+		final MergePlanner small = new MergePlanner(128, 128, SEGMENT_SIZE);
+		Assert.assertTrue(small.getFanIn(128) < 128);
+		Assert.assertTrue(MergePlanner.getNumPasses(128, small.getFanIn(128)) > 1);
+	}
+	
+	@Test
+	public void testReadBundling() {
+		final MergePlanner planner = new MergePlanner(128, 4096, SEGMENT_SIZE);
+		Assert.assertEquals(1, planner.getNumRequestsToBundle(2));
+		Assert.assertEquals(1, planner.getNumRequestsToBundle(3));
+		Assert.assertEquals(2, planner.getNumRequestsToBundle(4));
+		Assert.assertEquals(8, planner.getNumRequestsToBundle(17));
+	}
+	
+	@Test
+	public void testIntermediatePassMergesSmallestRuns() {
+		final MergePlanner planner = new MergePlanner(10, 1000, SEGMENT_SIZE);
+		
+		// 12 runs with a fan-in of 10: merging the three smallest runs leaves 10 runs for the final pass
+		final List<ChannelWithBlockCount> runs = new ArrayList<ChannelWithBlockCount>();
+		for (int i = 0; i < 12; i++) {
+			runs.add(new ChannelWithBlockCount(null, 100 - i));
+		}
+		
+		final List<List<ChannelWithBlockCount>> groups = planner.planIntermediatePass(runs, 10);
+		Assert.assertEquals(1, groups.size());
+		Assert.assertEquals(3, groups.get(0).size());
+		for (ChannelWithBlockCount c : groups.get(0)) {
+			Assert.assertTrue(c.getBlockCount() <= 91);
+		}
+	}
+	
+	@Test
+	public void testPlannedPassesReachFinalMerge() {
+		final Random rnd = new Random(2394857234523L);
+		
+		for (int test = 0; test < 200; test++) {
+			final int maxFileHandles = 2 + rnd.nextInt(100);
+			final int numSegments = 2 + rnd.nextInt(500);
+			final int numRuns = 1 + rnd.nextInt(5000);
+			final MergePlanner planner = new MergePlanner(maxFileHandles, numSegments, SEGMENT_SIZE);
+			
+			List<ChannelWithBlockCount> runs = new ArrayList<ChannelWithBlockCount>();
+			for (int i = 0; i < numRuns; i++) {
+				runs.add(new ChannelWithBlockCount(null, 1 + rnd.nextInt(1000)));
+			}
+			
+			final int fanIn = planner.getFanIn(numRuns);
+			final int expectedPasses = MergePlanner.getNumPasses(numRuns, fanIn);
+			int passes = 1;
+			while (MergePlanner.getNumPasses(runs.size(), fanIn) > 1) {
+				final List<List<ChannelWithBlockCount>> groups = planner.planIntermediatePass(runs, fanIn);
+				Assert.assertFalse(groups.isEmpty());
+				
+				final Set<ChannelWithBlockCount> merged = new HashSet<ChannelWithBlockCount>();
+				final List<ChannelWithBlockCount> next = new ArrayList<ChannelWithBlockCount>();
+				for (List<ChannelWithBlockCount> group : groups) {
+					Assert.assertTrue(group.size() >= 2 && group.size() <= fanIn);
+					int blocks = 0;
+					for (ChannelWithBlockCount c : group) {
+						Assert.assertTrue("Run merged twice in one pass.", merged.add(c));
+						blocks += c.getBlockCount();
+					}
+					next.add(new ChannelWithBlockCount(null, blocks));
+				}
+				for (ChannelWithBlockCount c : runs) {
+					if (!merged.contains(c)) {
+						next.add(c);
+					}
+				}
+				runs = next;
+				passes++;
+			}
+			
+			Assert.assertTrue(runs.size() <= fanIn);
+			Assert.assertEquals(expectedPasses, passes);
+		}
+	}
+}
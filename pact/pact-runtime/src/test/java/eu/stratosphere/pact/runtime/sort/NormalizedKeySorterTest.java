@@ -363,6 +363,158 @@ public class NormalizedKeySorterTest
 		this.memoryManager.release(sorter.dispose());
 	}
 	
+	@Test
+	public void testRadixSort() throws Exception
+	{
+		final int NUM_RECORDS = 559273;
+		
+		final int numSegments = MEMORY_SIZE / MEMORY_PAGE_SIZE;
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(new DummyInvokable(), numSegments);
+		
+		NormalizedKeySorter<PactRecord> sorter = newSortBuffer(memory);
+		TestData.Generator generator = new TestData.Generator(SEED, KEY_MAX, VALUE_LENGTH, KeyMode.RANDOM,
+			ValueMode.RANDOM_LENGTH);
+		
+		// write the records
+		PactRecord record = new PactRecord();
+		int num = 0;
+		do {
+			generator.next(record);
+			num++;
+		}
+		while (sorter.write(record) && num < NUM_RECORDS);
+		
+		Assert.assertTrue("Integer keys must be radix sortable.", RadixSort.isApplicable(sorter));
+		
+		RadixSort rs = new RadixSort();
+		rs.sort(sorter);
+		
+		MutableObjectIterator<PactRecord> iter = sorter.getIterator();
+		PactRecord readTarget = new PactRecord();
+		
+		Key current = new Key();
+		Key last = new Key();
+		
+		iter.next(readTarget);
+		readTarget.getFieldInto(0, last);
+		
+		while (iter.next(readTarget)) {
+			readTarget.getFieldInto(0, current);
+			
+			final int cmp = last.compareTo(current);
+			if (cmp > 0)
+				Assert.fail("Next key is not larger or equal to previous key.");
+			
+			Key tmp = current;
+			current = last;
+			last = tmp;
+		}
+		
+		// release the memory occupied by the buffers
+		this.memoryManager.release(sorter.dispose());
+	}
+	
+	@Test
+	public void testRadixSortDescendingFewKeys() throws Exception
+	{
+		final int numSegments = MEMORY_SIZE / MEMORY_PAGE_SIZE;
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(new DummyInvokable(), numSegments);
+		
+		@SuppressWarnings("unchecked")
+		PactRecordComparator accessors = new PactRecordComparator(new int[] {0}, new Class[]{Key.class}, new boolean[] {false});
+		NormalizedKeySorter<PactRecord> sorter = new NormalizedKeySorter<PactRecord>(PactRecordSerializer.get(), accessors, memory);
+		
+		// few distinct keys, such that the buckets contain many duplicates
+		TestData.Generator generator = new TestData.Generator(SEED, 1000, 10, KeyMode.RANDOM,
+			ValueMode.FIX_LENGTH);
+		
+		// write the records
+		PactRecord record = new PactRecord();
+		do {
+			generator.next(record);
+		}
+		while (sorter.write(record));
+		
+		RadixSort rs = new RadixSort();
+		rs.sort(sorter);
+		
+		MutableObjectIterator<PactRecord> iter = sorter.getIterator();
+		PactRecord readTarget = new PactRecord();
+		
+		Key current = new Key();
+		Key last = new Key();
+		
+		iter.next(readTarget);
+		readTarget.getFieldInto(0, last);
+		
+		while (iter.next(readTarget)) {
+			readTarget.getFieldInto(0, current);
+			
+			final int cmp = last.compareTo(current);
+			if (cmp < 0)
+				Assert.fail("Next key is not smaller or equal to previous key.");
+			
+			Key tmp = current;
+			current = last;
+			last = tmp;
+		}
+		
+		// release the memory occupied by the buffers
+		this.memoryManager.release(sorter.dispose());
+	}
+	
+	@Test
+	public void testSortOffHeap() throws Exception
+	{
+		final int NUM_RECORDS = 559273;
+		
+		final DefaultMemoryManager offHeapMemoryManager = new DefaultMemoryManager(MEMORY_SIZE, MEMORY_PAGE_SIZE, true);
+		final int numSegments = MEMORY_SIZE / MEMORY_PAGE_SIZE;
+		final List<MemorySegment> memory = offHeapMemoryManager.allocatePages(new DummyInvokable(), numSegments);
+		
+		NormalizedKeySorter<PactRecord> sorter = newSortBuffer(memory);
+		TestData.Generator generator = new TestData.Generator(SEED, KEY_MAX, VALUE_LENGTH, KeyMode.RANDOM,
+			ValueMode.RANDOM_LENGTH);
+		
+		// write the records
+		PactRecord record = new PactRecord();
+		int num = 0;
+		do {
+			generator.next(record);
+			num++;
+		}
+		while (sorter.write(record) && num < NUM_RECORDS);
+		
+		QuickSort qs = new QuickSort();
+		qs.sort(sorter);
+		
+		MutableObjectIterator<PactRecord> iter = sorter.getIterator();
+		PactRecord readTarget = new PactRecord();
+		
+		Key current = new Key();
+		Key last = new Key();
+		
+		iter.next(readTarget);
+		readTarget.getFieldInto(0, last);
+		
+		while (iter.next(readTarget)) {
+			readTarget.getFieldInto(0, current);
+			
+			final int cmp = last.compareTo(current);
+			if (cmp > 0)
+				Assert.fail("Next key is not larger or equal to previous key.");
+			
+			Key tmp = current;
+			current = last;
+			last = tmp;
+		}
+		
+		// release the memory occupied by the buffers
+		offHeapMemoryManager.release(sorter.dispose());
+		Assert.assertTrue("Memory Leak: Some off-heap memory has not been returned.", offHeapMemoryManager.verifyEmpty());
+		offHeapMemoryManager.shutdown();
+	}
+	
 	@Test
 	public void testSortShortStringKeys() throws Exception
 	{
@@ -383,8 +535,10 @@ public class NormalizedKeySorterTest
 		}
 		while (sorter.write(record));
 		
-		QuickSort qs = new QuickSort();
-		qs.sort(sorter);
+		// the string keys are only prefixes, so the radix sorter falls back to the quick sort
+		Assert.assertFalse(RadixSort.isApplicable(sorter));
+		RadixSort rs = new RadixSort();
+		rs.sort(sorter);
 		
 		MutableObjectIterator<PactRecord> iter = sorter.getIterator();
 		PactRecord readTarget = new PactRecord();
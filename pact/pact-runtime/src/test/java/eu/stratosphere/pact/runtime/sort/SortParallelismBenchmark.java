@@ -0,0 +1,145 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.sort;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
+import eu.stratosphere.nephele.template.AbstractTask;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.generic.types.TypeComparator;
+import eu.stratosphere.pact.generic.types.TypeSerializer;
+import eu.stratosphere.pact.runtime.plugable.pactrecord.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.pactrecord.PactRecordSerializer;
+import eu.stratosphere.pact.runtime.test.util.DummyInvokable;
+import eu.stratosphere.pact.runtime.test.util.TestData;
+import eu.stratosphere.pact.runtime.test.util.TestData.Generator;
+import eu.stratosphere.pact.runtime.test.util.TestData.Generator.KeyMode;
+import eu.stratosphere.pact.runtime.test.util.TestData.Generator.ValueMode;
+
+/**
+ * Measures the throughput of a single {@link UnilateralSortMerger} with an increasing number of threads that sort
+ * the filled buffers concurrently. The input is generated up front into the sorter, so the timings cover reading,
+ * sorting, spilling and merging of one subtask.
+ */
+public class SortParallelismBenchmark {
+	
+	private static final int MEMORY_SIZE = 1024 * 1024 * 256;
+	
+	private static final int PAGE_SIZE = 32 * 1024;
+	
+	private static final int NUM_RECORDS = 4000000;
+	
+	private static final int VALUE_LENGTH = 16;
+	
+	private static final long SEED = 649180756312423613L;
+	
+	private static final int[] NUM_SORT_THREADS = { 1, 2, 4, 8 };
+	
+	private static final int NUM_RUNS = 3;
+	
+	
+	private final AbstractTask parentTask = new DummyInvokable();
+
+	private IOManager ioManager;
+	
+	private MemoryManager memoryManager;
+	
+	private TypeSerializer<PactRecord> serializer;
+	
+	private TypeComparator<PactRecord> comparator;
+	
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void beforeTest() {
+		this.serializer = PactRecordSerializer.get();
+		this.comparator = new PactRecordComparator(new int[] {0}, new Class[] {TestData.Key.class});
+		
+		this.memoryManager = new DefaultMemoryManager(MEMORY_SIZE, PAGE_SIZE);
+		this.ioManager = new IOManager();
+	}
+
+	@After
+	public void afterTest() {
+		if (this.memoryManager != null) {
+			Assert.assertTrue("Memory Leak: Not all memory has been returned to the memory manager.",
+				this.memoryManager.verifyEmpty());
+			this.memoryManager.shutdown();
+			this.memoryManager = null;
+		}
+		
+		if (this.ioManager != null) {
+			this.ioManager.shutdown();
+			if (!this.ioManager.isProperlyShutDown()) {
+				Assert.fail("I/O manager failed to properly shut down.");
+			}
+			this.ioManager = null;
+		}
+	}
+	
+	@Test
+	public void testInMemorySortScaling() throws Exception {
+		runScaling("in-memory", MEMORY_SIZE);
+	}
+	
+	@Test
+	public void testSpillingSortScaling() throws Exception {
+		runScaling("spilling", MEMORY_SIZE / 8);
+	}
+	
+	private void runScaling(String name, long sortMemory) throws Exception {
+		for (int numThreads : NUM_SORT_THREADS) {
+			long best = Long.MAX_VALUE;
+			for (int run = 0; run < NUM_RUNS; run++) {
+				best = Math.min(best, runSort(sortMemory, numThreads));
+			}
+			
+			final double recordsPerSec = NUM_RECORDS / (best / 1000000000.0);
+			System.out.println("Sort (" + name + ") with " + numThreads + " sorting threads took " + 
+				(best / 1000000) + " msecs (" + ((long) recordsPerSec) + " records/sec).");
+		}
+	}
+	
+	private long runSort(long sortMemory, int numSortThreads) throws Exception {
+		final Generator generator = new Generator(SEED, Integer.MAX_VALUE, VALUE_LENGTH, KeyMode.RANDOM, ValueMode.FIX_LENGTH);
+		final TestData.GeneratorIterator input = new TestData.GeneratorIterator(generator, NUM_RECORDS);
+		
+		final long start = System.nanoTime();
+		
+		final UnilateralSortMerger<PactRecord> sorter = new UnilateralSortMerger<PactRecord>(
+			this.memoryManager, this.ioManager, input, this.parentTask, this.serializer, 
+			this.comparator.duplicate(), sortMemory, -1, 128, 0.8f, numSortThreads);
+		
+		final MutableObjectIterator<PactRecord> sorted = sorter.getIterator();
+		final PactRecord rec = new PactRecord();
+		int count = 0;
+		while (sorted.next(rec)) {
+			count++;
+		}
+		sorter.close();
+		
+		final long elapsed = System.nanoTime() - start;
+		Assert.assertEquals(NUM_RECORDS, count);
+		return elapsed;
+	}
+}
@@ -113,7 +113,7 @@ public class UnilateralSortMergerITCase {
 		// merge iterator
 		LOG.debug("Initializing sortmerger...");
 		
-		Sorter<PactRecord> merger = new UnilateralSortMerger<PactRecord>(this.memoryManager, this.ioManager, 
+		UnilateralSortMerger<PactRecord> merger = new UnilateralSortMerger<PactRecord>(this.memoryManager, this.ioManager, 
 			source, this.parentTask, this.pactRecordSerializer, this.pactRecordComparator,
 			64 * 1024 * 1024, 2, 0.9f);
 
@@ -145,6 +145,8 @@ public class UnilateralSortMergerITCase {
 		}
 		Assert.assertTrue(NUM_PAIRS == pairsEmitted);
 		
+		Assert.assertEquals("A sort that did not spill must not make merge passes.", 0, merger.getNumMergePasses());
+		
 		merger.close();
 	}
 	
@@ -205,7 +207,7 @@ public class UnilateralSortMergerITCase {
 		// merge iterator
 		LOG.debug("Initializing sortmerger...");
 		
-		Sorter<PactRecord> merger = new UnilateralSortMerger<PactRecord>(this.memoryManager, this.ioManager, 
+		UnilateralSortMerger<PactRecord> merger = new UnilateralSortMerger<PactRecord>(this.memoryManager, this.ioManager, 
 				source, this.parentTask, this.pactRecordSerializer, this.pactRecordComparator,
 				16 * 1024 * 1024, 64, 0.7f);
 
@@ -237,6 +239,147 @@ public class UnilateralSortMergerITCase {
 		}
 		Assert.assertTrue(NUM_PAIRS == pairsEmitted);
 		
+		Assert.assertEquals("The spilled runs should have been merged in the final pass only.", 1, merger.getNumMergePasses());
+		
+		merger.close();
+	}
+
+	@Test
+	public void testSpillingSortWithIntermediateMergePasses() throws Exception {
+		// comparator
+		final Comparator<TestData.Key> keyComparator = new TestData.KeyComparator();
+		
+		final TestData.Generator generator = new TestData.Generator(SEED, KEY_MAX, VALUE_LENGTH, KeyMode.RANDOM, ValueMode.CONSTANT, VAL);
+		final MutableObjectIterator<PactRecord> source = new TestData.GeneratorIterator(generator, NUM_PAIRS);
+
+		// merge iterator, little memory and two file handles cause many runs that cannot be merged at once
+		LOG.debug("Initializing sortmerger...");
+		
+		UnilateralSortMerger<PactRecord> merger = new UnilateralSortMerger<PactRecord>(this.memoryManager, this.ioManager, 
+				source, this.parentTask, this.pactRecordSerializer, this.pactRecordComparator,
+				4 * 1024 * 1024, 2, 0.7f);
+
+		// emit data
+		LOG.debug("Reading and sorting data...");
+
+		// check order
+		MutableObjectIterator<PactRecord> iterator = merger.getIterator();
+		
+		LOG.debug("Checking results...");
+		int pairsEmitted = 1;
+
+		PactRecord rec1 = new PactRecord();
+		PactRecord rec2 = new PactRecord();
+		
+		Assert.assertTrue(iterator.next(rec1));
+		while (iterator.next(rec2)) {
+			final Key k1 = rec1.getField(0, TestData.Key.class);
+			final Key k2 = rec2.getField(0, TestData.Key.class);
+			pairsEmitted++;
+			
+			Assert.assertTrue(keyComparator.compare(k1, k2) <= 0); 
+			
+			PactRecord tmp = rec1;
+			rec1 = rec2;
+			k1.setKey(k2.getKey());
+			
+			rec2 = tmp;
+		}
+		Assert.assertTrue(NUM_PAIRS == pairsEmitted);
+		Assert.assertTrue("The runs should have required an intermediate merge pass.", merger.getNumMergePasses() >= 2);
+		
+		merger.close();
+	}
+	
+	@Test
+	public void testInMemorySortParallel() throws Exception {
+		// comparator
+		final Comparator<TestData.Key> keyComparator = new TestData.KeyComparator();
+		
+		final TestData.Generator generator = new TestData.Generator(SEED, KEY_MAX, VALUE_LENGTH, KeyMode.RANDOM, ValueMode.CONSTANT, VAL);
+		final MutableObjectIterator<PactRecord> source = new TestData.GeneratorIterator(generator, NUM_PAIRS);
+
+		// merge iterator
+		LOG.debug("Initializing sortmerger...");
+		
+		Sorter<PactRecord> merger = new UnilateralSortMerger<PactRecord>(this.memoryManager, this.ioManager, 
+				source, this.parentTask, this.pactRecordSerializer, this.pactRecordComparator,
+				64 * 1024 * 1024, -1, 2, 0.9f, 4);
+
+		// emit data
+		LOG.debug("Reading and sorting data...");
+
+		// check order
+		MutableObjectIterator<PactRecord> iterator = merger.getIterator();
+		
+		LOG.debug("Checking results...");
+		int pairsEmitted = 1;
+
+		PactRecord rec1 = new PactRecord();
+		PactRecord rec2 = new PactRecord();
+		
+		Assert.assertTrue(iterator.next(rec1));
+		while (iterator.next(rec2)) {
+			final Key k1 = rec1.getField(0, TestData.Key.class);
+			final Key k2 = rec2.getField(0, TestData.Key.class);
+			pairsEmitted++;
+			
+			Assert.assertTrue(keyComparator.compare(k1, k2) <= 0); 
+			
+			PactRecord tmp = rec1;
+			rec1 = rec2;
+			k1.setKey(k2.getKey());
+			
+			rec2 = tmp;
+		}
+		Assert.assertTrue(NUM_PAIRS == pairsEmitted);
+		
+		merger.close();
+	}
+
+	@Test
+	public void testSpillingSortParallel() throws Exception {
+		// comparator
+		final Comparator<TestData.Key> keyComparator = new TestData.KeyComparator();
+		
+		final TestData.Generator generator = new TestData.Generator(SEED, KEY_MAX, VALUE_LENGTH, KeyMode.RANDOM, ValueMode.CONSTANT, VAL);
+		final MutableObjectIterator<PactRecord> source = new TestData.GeneratorIterator(generator, NUM_PAIRS);
+
+		// merge iterator
+		LOG.debug("Initializing sortmerger...");
+		
+		Sorter<PactRecord> merger = new UnilateralSortMerger<PactRecord>(this.memoryManager, this.ioManager, 
+				source, this.parentTask, this.pactRecordSerializer, this.pactRecordComparator,
+				16 * 1024 * 1024, -1, 64, 0.7f, 4);
+
+		// emit data
+		LOG.debug("Reading and sorting data...");
+
+		// check order
+		MutableObjectIterator<PactRecord> iterator = merger.getIterator();
+		
+		LOG.debug("Checking results...");
+		int pairsEmitted = 1;
+
+		PactRecord rec1 = new PactRecord();
+		PactRecord rec2 = new PactRecord();
+		
+		Assert.assertTrue(iterator.next(rec1));
+		while (iterator.next(rec2)) {
+			final Key k1 = rec1.getField(0, TestData.Key.class);
+			final Key k2 = rec2.getField(0, TestData.Key.class);
+			pairsEmitted++;
+			
+			Assert.assertTrue(keyComparator.compare(k1, k2) <= 0); 
+			
+			PactRecord tmp = rec1;
+			rec1 = rec2;
+			k1.setKey(k2.getKey());
+			
+			rec2 = tmp;
+		}
+		Assert.assertTrue(NUM_PAIRS == pairsEmitted);
+		
 		merger.close();
 	}
 
@@ -254,7 +397,7 @@ public class UnilateralSortMergerITCase {
 		// merge iterator
 		LOG.debug("Initializing sortmerger...");
 		
-		Sorter<PactRecord> merger = new UnilateralSortMerger<PactRecord>(this.memoryManager, this.ioManager, 
+		UnilateralSortMerger<PactRecord> merger = new UnilateralSortMerger<PactRecord>(this.memoryManager, this.ioManager, 
 				source, this.parentTask, this.pactRecordSerializer, this.pactRecordComparator,
 				64 * 1024 * 1024, 16, 0.7f);
 		
@@ -291,6 +434,46 @@ public class UnilateralSortMergerITCase {
 			
 		}
 		Assert.assertEquals("Not all pairs were read back in.", PAIRS, pairsRead);
+		Assert.assertTrue("The runs should have required an intermediate merge pass.", merger.getNumMergePasses() >= 2);
+		merger.close();
+	}
+	
+	@Test
+	public void testSpillingSortIntPair() throws Exception {
+		// amount of pairs, enough to spill several runs of fixed-length records
+		final int PAIRS = 2000000;
+
+		final RandomIntPairGenerator generator = new RandomIntPairGenerator(12345678, PAIRS);
+		
+		final TypeSerializer<IntPair> serializer = new IntPairSerializer();
+		final TypeComparator<IntPair> comparator = new IntPairComparator();
+		
+		// merge iterator
+		LOG.debug("Initializing sortmerger...");
+		
+		Sorter<IntPair> merger = new UnilateralSortMerger<IntPair>(this.memoryManager, this.ioManager, 
+				generator, this.parentTask, serializer, comparator, 4 * 1024 * 1024, 64, 0.7f);
+
+		// check order
+		MutableObjectIterator<IntPair> iterator = merger.getIterator();
+		
+		LOG.debug("Checking results...");
+		int pairsRead = 1;
+
+		IntPair rec1 = new IntPair();
+		IntPair rec2 = new IntPair();
+		
+		Assert.assertTrue(iterator.next(rec1));
+		
+		while (iterator.next(rec2)) {
+			pairsRead++;
+			Assert.assertTrue(rec1.getKey() <= rec2.getKey()); 
+			
+			IntPair tmp = rec1;
+			rec1 = rec2;
+			rec2 = tmp;
+		}
+		Assert.assertEquals("Not all pairs were read back in.", PAIRS, pairsRead);
 		merger.close();
 	}
 	
@@ -0,0 +1,210 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.runtime.plugable.pactrecord.PactRecordComparator;
+
+public class RuntimeStatisticsTest
+{
+	private File directory;
+	
+	@Before
+	public void createDirectory() {
+		this.directory = new File(System.getProperty("java.io.tmpdir"), "runtime-stats-" + System.nanoTime());
+		assertTrue(this.directory.mkdirs());
+	}
+	
+	@After
+	public void deleteDirectory() {
+		deleteRecursively(this.directory);
+	}
+	
+	@Test
+	public void testDistinctEstimate()
+	{
+		final HyperLogLog hll = new HyperLogLog();
+		
+		// sequential integers are a worst case for the identity hash code
+		for (int i = 0; i < 100000; i++) {
+			hll.add(i);
+			hll.add(i);
+		}
+		final long estimate = hll.estimate();
+		assertTrue("Estimate too far off: " + estimate, Math.abs(estimate - 100000) < 10000);
+		
+		final HyperLogLog small = new HyperLogLog();
+		for (int i = 0; i < 50; i++) {
+			small.add(i * 31);
+		}
+		assertTrue("Estimate too far off: " + small.estimate(), Math.abs(small.estimate() - 50) <= 3);
+	}
+	
+	@Test
+	public void testMergedEstimate()
+	{
+		final HyperLogLog first = new HyperLogLog();
+		final HyperLogLog second = new HyperLogLog();
+		
+		// overlapping ranges, 30000 distinct elements in total
+		for (int i = 0; i < 20000; i++) {
+			first.add(i);
+		}
+		for (int i = 10000; i < 30000; i++) {
+			second.add(i);
+		}
+		first.merge(second);
+		
+		final long estimate = first.estimate();
+		assertTrue("Estimate too far off: " + estimate, Math.abs(estimate - 30000) < 3000);
+	}
+	
+	@Test
+	public void testCollectAndReadStatistics() throws Exception
+	{
+		final RuntimeStatisticsStore store = new RuntimeStatisticsStore(this.directory.getAbsolutePath());
+		assertNull(store.read("op"));
+		
+		// two parallel instances, each emitting 1000 records with 100 distinct keys, 50 of them shared
+		int forwarded = 0;
+		for (int subtask = 0; subtask < 2; subtask++) {
+			final CountingCollector target = new CountingCollector();
+			final RuntimeStatisticsCollector collector = new RuntimeStatisticsCollector(target,
+				new PactRecordComparator[] { createComparator() }, store, "op", "run1", subtask, 2);
+			
+			final PactRecord rec = new PactRecord(2);
+			for (int i = 0; i < 1000; i++) {
+				rec.setField(0, new PactInteger(subtask * 50 + i % 100));
+				rec.setField(1, new PactInteger(i));
+				collector.collect(rec);
+			}
+			// a record without key is counted, but not estimated
+			final PactRecord withoutKey = new PactRecord(2);
+			withoutKey.setField(1, new PactInteger(-1));
+			collector.collect(withoutKey);
+			assertEquals(1, collector.getNumberOfRecordsWithoutKey(0));
+			
+			collector.close();
+			assertTrue(target.closed);
+			forwarded += target.count;
+		}
+		assertEquals(2002, forwarded);
+		
+		final OperatorStatistics stats = store.read("op");
+		assertEquals(2002, stats.getNumRecords());
+		assertTrue(stats.getNumBytes() > 2002 * 8);
+		assertEquals(1, stats.getNumKeyFieldSets());
+		assertEquals(0, stats.getKeyFields(0)[0]);
+		assertTrue("Estimate too far off: " + stats.getDistinctKeyEstimate(0),
+			Math.abs(stats.getDistinctKeyEstimate(0) - 150) <= 8);
+	}
+	
+	@Test
+	public void testIncompleteRunIsIgnored() throws Exception
+	{
+		final RuntimeStatisticsStore store = new RuntimeStatisticsStore(this.directory.getAbsolutePath());
+		
+		final OperatorStatistics complete = new OperatorStatistics();
+		complete.addRecord(10);
+		store.write("op", "run1", 0, 1, complete);
+		
+		// only one of the two instances of the second run reported
+		final OperatorStatistics partial = new OperatorStatistics();
+		partial.addRecord(10);
+		partial.addRecord(10);
+		store.write("op", "run2", 1, 2, partial);
+		
+		final OperatorStatistics stats = store.read("op");
+		assertEquals(1, stats.getNumRecords());
+		assertEquals(10, stats.getNumBytes());
+	}
+	
+	@Test
+	public void testOlderRunsAreRemovedOnWrite() throws Exception
+	{
+		final RuntimeStatisticsStore store = new RuntimeStatisticsStore(this.directory.getAbsolutePath());
+		final File operatorDir = new File(this.directory, "op");
+		
+		final OperatorStatistics old = new OperatorStatistics();
+		old.addRecord(10);
+		store.write("op", "run1", 0, 1, old);
+		
+		// make sure the first run is strictly older than the second one
+		final File oldFile = operatorDir.listFiles()[0];
+		assertTrue(oldFile.setLastModified(oldFile.lastModified() - 60000));
+		
+		final OperatorStatistics current = new OperatorStatistics();
+		current.addRecord(20);
+		store.write("op", "run2", 0, 2, current);
+		
+		// reading has no side effects, and the incomplete run does not supersede the first one
+		assertEquals(10, store.read("op").getNumBytes());
+		assertTrue(oldFile.exists());
+		
+		// the instance that completes the second run removes the first one
+		store.write("op", "run2", 1, 2, current);
+		assertFalse(oldFile.exists());
+		assertEquals(2, operatorDir.listFiles().length);
+		assertEquals(40, store.read("op").getNumBytes());
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	@SuppressWarnings("unchecked")
+	private static PactRecordComparator createComparator() {
+		return new PactRecordComparator(new int[] {0}, new Class[] {PactInteger.class});
+	}
+	
+	private static void deleteRecursively(File f) {
+		final File[] children = f.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursively(child);
+			}
+		}
+		f.delete();
+	}
+	
+	private static final class CountingCollector implements Collector<PactRecord>
+	{
+		private int count;
+		
+		private boolean closed;
+		
+		@Override
+		public void collect(PactRecord record) {
+			this.count++;
+		}
+
+		@Override
+		public void close() {
+			this.closed = true;
+		}
+	}
+}
@@ -114,6 +114,81 @@ public class CombineTaskTest extends DriverTestBase<GenericReducer<PactRecord, ?
 		}
 	}
 	
+	@Test
+	public void testHashCombineTask() {
+		int keyCnt = 100;
+		int valCnt = 20;
+		
+		addInput(new UniformPactRecordGenerator(keyCnt, valCnt, false));
+		addInputComparator(this.comparator);
+		setOutput(this.outList);
+		
+		getTaskConfig().setDriverStrategy(DriverStrategy.HASH_PARTIAL_GROUP);
+		getTaskConfig().setMemoryDriver(COMBINE_MEM);
+		
+		final HashCombineDriver<PactRecord> testTask = new HashCombineDriver<PactRecord>();
+		
+		try {
+			testDriver(testTask, MockCombiningReduceStub.class);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail("Invoke method caused exception.");
+		}
+		
+		int expSum = 0;
+		for (int i = 1;i < valCnt; i++) {
+			expSum += i;
+		}
+		
+		Assert.assertTrue("Resultset size was "+this.outList.size()+". Expected was "+keyCnt, this.outList.size() == keyCnt);
+		
+		for(PactRecord record : this.outList) {
+			Assert.assertTrue("Incorrect result", record.getField(1, PactInteger.class).getValue() == expSum);
+		}
+		
+		this.outList.clear();
+	}
+	
+	@Test
+	public void testHashCombineTaskWithFullTable() {
+		int keyCnt = 20000;
+		int valCnt = 5;
+		
+		addInput(new UniformPactRecordGenerator(keyCnt, valCnt, false));
+		addInputComparator(this.comparator);
+		setOutput(this.outList);
+		
+		// too little memory to hold all keys, forces the combiner to emit partial results
+		getTaskConfig().setDriverStrategy(DriverStrategy.HASH_PARTIAL_GROUP);
+		getTaskConfig().setMemoryDriver(4 * 32 * 1024);
+		
+		final HashCombineDriver<PactRecord> testTask = new HashCombineDriver<PactRecord>();
+		
+		try {
+			testDriver(testTask, MockCombiningReduceStub.class);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail("Invoke method caused exception.");
+		}
+		
+		int expSum = 0;
+		for (int i = 1;i < valCnt; i++) {
+			expSum += i;
+		}
+		
+		Assert.assertTrue("Combiner did not emit partial results.", this.outList.size() > keyCnt);
+		
+		final int[] sums = new int[keyCnt];
+		for(PactRecord record : this.outList) {
+			sums[record.getField(0, PactInteger.class).getValue()] += record.getField(1, PactInteger.class).getValue();
+		}
+		for (int i = 0; i < keyCnt; i++) {
+			Assert.assertEquals("Incorrect result for key " + i, expSum, sums[i]);
+		}
+		
+		this.outList.clear();
+	}
+	
 	@Test
 	public void testCancelCombineTaskSorting()
 	{
@@ -0,0 +1,124 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactDouble;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.generic.stub.AbstractStub;
+import eu.stratosphere.pact.runtime.plugable.pactrecord.PactRecordComparator;
+import eu.stratosphere.pact.runtime.test.util.DriverTestBase;
+import eu.stratosphere.pact.runtime.test.util.MutableObjectIteratorWrapper;
+import eu.stratosphere.pact.runtime.test.util.UniformPactRecordGenerator;
+
+public class RangeSampleTaskTest extends DriverTestBase<AbstractStub> {
+	
+	public RangeSampleTaskTest() {
+		super(0, 0);
+	}
+	
+	@Test
+	public void testSampleDriver() {
+		final int keyCnt = 1000;
+		final int valCnt = 10;
+		final int sampleSize = 100;
+		
+		final List<PactRecord> output = new ArrayList<PactRecord>();
+		addInput(new UniformPactRecordGenerator(keyCnt, valCnt, false));
+		setOutput(output);
+		getTaskConfig().setRangeSampleSize(sampleSize);
+		
+		try {
+			testDriver(new RangeSampleDriver(), NoStub.class);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail("Invoke method caused exception.");
+		}
+		
+		Assert.assertEquals("Wrong sample size.", sampleSize, output.size());
+		for (PactRecord sample : output) {
+			Assert.assertEquals("Sample record is missing the weight.", 3, sample.getNumFields());
+			Assert.assertEquals("Wrong sample weight.", ((double) keyCnt * valCnt) / sampleSize,
+				sample.getField(2, PactDouble.class).getValue(), 0.0001);
+		}
+	}
+	
+	@Test
+	public void testSampleDriverSmallInput() {
+		final List<PactRecord> output = new ArrayList<PactRecord>();
+		addInput(new UniformPactRecordGenerator(10, 1, false));
+		setOutput(output);
+		getTaskConfig().setRangeSampleSize(100);
+		
+		try {
+			testDriver(new RangeSampleDriver(), NoStub.class);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail("Invoke method caused exception.");
+		}
+		
+		Assert.assertEquals("All records should be sampled.", 10, output.size());
+		for (PactRecord sample : output) {
+			Assert.assertEquals("Wrong sample weight.", 1.0, sample.getField(2, PactDouble.class).getValue(), 0.0001);
+		}
+	}
+	
+	@Test
+	public void testBoundaryDriver() {
+		final int numPartitions = 4;
+		
+		// samples of the keys 0 to 99 with weight one, and samples of the keys 100 to 199 with weight three
+		final List<PactRecord> samples = new ArrayList<PactRecord>();
+		for (int i = 199; i >= 0; i--) {
+			samples.add(new PactRecord(new PactInteger(i), new PactDouble(i < 100 ? 1.0 : 3.0)));
+		}
+		
+		final List<PactRecord> output = new ArrayList<PactRecord>();
+		addInput(new MutableObjectIteratorWrapper(samples.iterator()));
+		addInputComparator(createComparator());
+		setOutput(output);
+		getTaskConfig().setRangeNumberOfPartitions(numPartitions);
+		
+		try {
+			testDriver(new RangeBoundaryDriver(), NoStub.class);
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail("Invoke method caused exception.");
+		}
+		
+		// the total weight is 400, so the boundaries are at the cumulative weights 100, 200, and 300
+		Assert.assertEquals("Wrong number of boundaries.", numPartitions - 1, output.size());
+		final int[] expected = new int[] {99, 133, 166};
+		for (int i = 0; i < expected.length; i++) {
+			final PactRecord boundary = output.get(i);
+			Assert.assertEquals("Weight field was not removed.", 1, boundary.getNumFields());
+			Assert.assertEquals("Wrong boundary.", expected[i], boundary.getField(0, PactInteger.class).getValue());
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static PactRecordComparator createComparator() {
+		return new PactRecordComparator(new int[] {0}, new Class[] {PactInteger.class});
+	}
+	
+	public static final class NoStub extends AbstractStub {}
+}
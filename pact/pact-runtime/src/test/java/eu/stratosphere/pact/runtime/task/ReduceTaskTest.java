@@ -182,6 +182,104 @@ public class ReduceTaskTest extends DriverTestBase<GenericReducer<PactRecord, Pa
 		this.outList.clear();
 	}
 	
+	@Test
+	public void testHashReduceTask() {
+		final int keyCnt = 100;
+		final int valCnt = 20;
+		
+		addInput(new UniformPactRecordGenerator(keyCnt, valCnt, false));
+		addInputComparator(this.comparator);
+		setOutput(this.outList);
+		getTaskConfig().setDriverStrategy(DriverStrategy.HASH_GROUP);
+		getTaskConfig().setMemoryDriver(1024 * 1024);
+		
+		HashReduceDriver<PactRecord, PactRecord> testTask = new HashReduceDriver<PactRecord, PactRecord>();
+		
+		try {
+			testDriver(testTask, MockCombiningReduceStub.class);
+		} catch (Exception e) {
+			LOG.debug(e);
+			Assert.fail("Invoke method caused exception.");
+		}
+		
+		int expSum = 0;
+		for (int i = 1; i < valCnt; i++) {
+			expSum += i;
+		}
+		
+		Assert.assertTrue("Resultset size was "+this.outList.size()+". Expected was "+keyCnt, this.outList.size() == keyCnt);
+		
+		for(PactRecord record : this.outList) {
+			Assert.assertTrue("Incorrect result", record.getField(1, PactInteger.class).getValue() == expSum-record.getField(0, PactInteger.class).getValue());
+		}
+		
+		this.outList.clear();
+	}
+	
+	@Test
+	public void testSpillingHashReduceTask() {
+		final int keyCnt = 100000;
+		final int valCnt = 3;
+		
+		addInput(new UniformPactRecordGenerator(keyCnt, valCnt, false));
+		addInputComparator(this.comparator);
+		setOutput(this.outList);
+		getTaskConfig().setDriverStrategy(DriverStrategy.HASH_GROUP);
+		getTaskConfig().setMemoryDriver(1024 * 1024);
+		
+		HashReduceDriver<PactRecord, PactRecord> testTask = new HashReduceDriver<PactRecord, PactRecord>();
+		
+		try {
+			testDriver(testTask, MockCombiningReduceStub.class);
+		} catch (Exception e) {
+			LOG.debug(e);
+			Assert.fail("Invoke method caused exception.");
+		}
+		
+		int expSum = 0;
+		for (int i = 1; i < valCnt; i++) {
+			expSum += i;
+		}
+		
+		Assert.assertTrue("Resultset size was "+this.outList.size()+". Expected was "+keyCnt, this.outList.size() == keyCnt);
+		
+		final boolean[] seen = new boolean[keyCnt];
+		for(PactRecord record : this.outList) {
+			final int key = record.getField(0, PactInteger.class).getValue();
+			Assert.assertFalse("Key " + key + " was emitted twice.", seen[key]);
+			seen[key] = true;
+			Assert.assertTrue("Incorrect result", record.getField(1, PactInteger.class).getValue() == expSum-key);
+		}
+		
+		this.outList.clear();
+	}
+	
+	@Test
+	public void testFailingHashReduceTask() {
+		final int keyCnt = 100;
+		final int valCnt = 20;
+		
+		addInput(new UniformPactRecordGenerator(keyCnt, valCnt, false));
+		addInputComparator(this.comparator);
+		setOutput(this.outList);
+		getTaskConfig().setDriverStrategy(DriverStrategy.HASH_GROUP);
+		getTaskConfig().setMemoryDriver(1024 * 1024);
+		
+		HashReduceDriver<PactRecord, PactRecord> testTask = new HashReduceDriver<PactRecord, PactRecord>();
+		
+		try {
+			testDriver(testTask, CombineTaskTest.MockFailingCombiningReduceStub.class);
+			Assert.fail("Stub exception was not forwarded.");
+		} catch (ExpectedTestException eetex) {
+			// Good!
+		} catch (Exception e) {
+			LOG.debug(e);
+			Assert.fail("Test caused exception.");
+		}
+		
+		this.outList.clear();
+	}
+	
 	@Test
 	public void testCancelReduceTaskWhileSorting()
 	{
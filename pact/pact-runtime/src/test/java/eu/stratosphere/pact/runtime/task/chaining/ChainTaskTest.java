@@ -26,6 +26,7 @@ import eu.stratosphere.nephele.configuration.Configuration;
 import eu.stratosphere.pact.common.stubs.Collector;
 import eu.stratosphere.pact.common.stubs.ReduceStub;
 import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactDouble;
 import eu.stratosphere.pact.common.type.base.PactInteger;
 import eu.stratosphere.pact.generic.stub.GenericMapper;
 import eu.stratosphere.pact.runtime.plugable.pactrecord.PactRecordComparatorFactory;
@@ -164,6 +165,70 @@ public class ChainTaskTest extends TaskTestBase {
 		}
 	}
 	
+	@Test
+	public void testMapTaskWithChainedRangeSampler() {
+		final int keyCnt = 100;
+		final int valCnt = 20;
+		final int sampleSize = 50;
+		
+		final List<PactRecord> sampleList = new ArrayList<PactRecord>();
+		
+		try {
+			// environment: the sampler feeds the data output and the sample output
+			initEnvironment(3*1024*1024);
+			addInput(new UniformPactRecordGenerator(keyCnt, valCnt, false), 0);
+			addOutput(this.outList);
+			this.mockEnv.addOutput(sampleList);
+			
+			// chained sampler config
+			{
+				final TaskConfig samplerConfig = new TaskConfig(new Configuration());
+				
+				// input
+				samplerConfig.addInputToGroup(0);
+				samplerConfig.setInputSerializer(serFact, 0);
+				
+				// outputs
+				samplerConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+				samplerConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+				samplerConfig.setOutputSerializer(serFact);
+				
+				// driver
+				samplerConfig.setRangeSampleSize(sampleSize);
+				
+				getTaskConfig().addChainedTask(ChainedRangeSampleDriver.class, samplerConfig, "sampler");
+			}
+			
+			// chained map+sampler
+			{
+				RegularPactTask<GenericMapper<PactRecord, PactRecord>, PactRecord> testTask = 
+											new RegularPactTask<GenericMapper<PactRecord, PactRecord>, PactRecord>();
+				registerTask(testTask, MapDriver.class, MockMapStub.class);
+				
+				try {
+					testTask.invoke();
+				} catch (Exception e) {
+					e.printStackTrace();
+					Assert.fail("Invoke method caused exception.");
+				}
+			}
+			
+			Assert.assertEquals("Data was not forwarded completely.", keyCnt * valCnt, this.outList.size());
+			Assert.assertEquals("Wrong number of samples.", sampleSize, sampleList.size());
+			
+			// every sample carries the weight of the records it stands for
+			final int weightField = sampleList.get(0).getNumFields() - 1;
+			for (PactRecord sample : sampleList) {
+				Assert.assertEquals("Wrong sample weight.", ((double) keyCnt * valCnt) / sampleSize,
+					sample.getField(weightField, PactDouble.class).getValue(), 0.0);
+			}
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.getMessage());
+		}
+	}
+	
 	public static final class MockFailingCombineStub extends ReduceStub {
 		
 		private int cnt = 0;
@@ -40,6 +40,7 @@ import eu.stratosphere.pact.common.type.base.PactInteger;
 import eu.stratosphere.pact.common.type.base.PactString;
 import eu.stratosphere.pact.runtime.plugable.pactrecord.PactRecordComparator;
 import eu.stratosphere.pact.runtime.shipping.PactRecordOutputEmitter;
+import eu.stratosphere.pact.runtime.shipping.SampledDataDistribution;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategyType;
 
 public class OutputEmitterTest extends TestCase {
@@ -363,6 +364,51 @@ public class OutputEmitterTest extends TestCase {
 		}
 	}
 	
+	@Test
+	public void testPartitionRangeWithNormalizedKeyPrefix() {
+		final Random rnd = new Random(SEED);
+		
+		// strings with a long common prefix, such that the normalized keys are not sufficient to decide
+		final String prefix = "a common prefix that is longer than the normalized key ";
+		final int NUM_BUCKETS = 23;
+		final int NUM_ELEMENTS = 100000;
+		
+		for (boolean ascending : new boolean[] {true, false}) {
+			@SuppressWarnings("unchecked")
+			final PactRecordComparator stringComp = new PactRecordComparator(new int[] {0},
+				new Class[] {PactString.class}, new boolean[] {ascending});
+			
+			// boundaries in partitioning order
+			final PactRecord[] boundaries = new PactRecord[NUM_BUCKETS - 1];
+			for (int i = 0; i < boundaries.length; i++) {
+				final int num = ascending ? (i + 1) * 1000 : (NUM_BUCKETS - 1 - i) * 1000;
+				boundaries[i] = new PactRecord(new PactString(prefix + String.format("%06d", num)));
+			}
+			final ChannelSelector<PactRecord> oe = new PactRecordOutputEmitter(ShipStrategyType.PARTITION_RANGE,
+				stringComp, new SampledDataDistribution(boundaries));
+			
+			final PactRecordComparator refComp = stringComp.duplicate();
+			final PactRecord rec = new PactRecord();
+			
+			for (int i = 0; i < NUM_ELEMENTS; i++) {
+				rec.setField(0, new PactString(prefix + String.format("%06d", rnd.nextInt(NUM_BUCKETS * 1000))));
+				
+				final int[] channels = oe.selectChannels(rec, NUM_BUCKETS);
+				assertEquals(1, channels.length);
+				
+				// the expected bucket is the first one whose boundary is not smaller than the record
+				refComp.setReference(rec);
+				int expected = 0;
+				while (expected < boundaries.length &&
+						refComp.compareAgainstReference(refComp.getKeysAsCopy(boundaries[expected])) < 0)
+				{
+					expected++;
+				}
+				assertEquals(expected, channels[0]);
+			}
+		}
+	}
+	
 	private static final class IntegerUniformDistribution implements DataDistribution {
 		
 		private int min;	
@@ -204,6 +204,13 @@ public class MockEnvironment implements Environment
 		return null;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addCompletionMessage(String message) {
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
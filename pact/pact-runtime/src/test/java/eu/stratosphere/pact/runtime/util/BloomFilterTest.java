@@ -0,0 +1,101 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+
+public class BloomFilterTest
+{
+	@Test
+	public void testNoFalseNegatives()
+	{
+		final MemorySegment seg = new MemorySegment(new byte[256], 0, 256);
+		final BloomFilter filter = new BloomFilter(100, 112);
+		filter.setBitsLocation(seg, 16);
+		filter.reset();
+		
+		final Random rnd = new Random(42);
+		final int[] hashes = new int[100];
+		for (int i = 0; i < hashes.length; i++) {
+			hashes[i] = rnd.nextInt();
+			filter.addHash(hashes[i]);
+		}
+		for (int i = 0; i < hashes.length; i++) {
+			assertTrue("False negative for hash " + hashes[i], filter.testHash(hashes[i]));
+		}
+		
+		// the bytes outside the bit set must be untouched
+		for (int i = 0; i < 16; i++) {
+			assertEquals(0, seg.get(i));
+		}
+		for (int i = 128; i < 256; i++) {
+			assertEquals(0, seg.get(i));
+		}
+	}
+	
+	@Test
+	public void testFalsePositiveRate()
+	{
+		final int numEntries = 18;
+		final MemorySegment seg = new MemorySegment(new byte[112], 0, 112);
+		final BloomFilter filter = new BloomFilter(numEntries, 112);
+		filter.setBitsLocation(seg, 0);
+		filter.reset();
+		
+		// correlated hash codes, as they occur in a single bucket of a hash table
+		for (int i = 0; i < numEntries; i++) {
+			filter.addHash(i * 1024 + 7);
+		}
+		
+		int falsePositives = 0;
+		final int numTests = 100000;
+		for (int i = numEntries; i < numEntries + numTests; i++) {
+			if (filter.testHash(i * 1024 + 7)) {
+				falsePositives++;
+			}
+		}
+		assertTrue("False positive rate too high: " + falsePositives, falsePositives < numTests / 100);
+	}
+	
+	@Test
+	public void testReset()
+	{
+		final MemorySegment seg = new MemorySegment(new byte[64], 0, 64);
+		final BloomFilter filter = new BloomFilter(10, 64);
+		filter.setBitsLocation(seg, 0);
+		filter.addHash(12345);
+		assertTrue(filter.testHash(12345));
+		
+		filter.reset();
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(!filter.testHash(i));
+		}
+	}
+	
+	@Test
+	public void testOptimalNumOfHashFunctions()
+	{
+		assertEquals(1, BloomFilter.optimalNumOfHashFunctions(1000, 8));
+		assertEquals(7, BloomFilter.optimalNumOfHashFunctions(100, 1000));
+	}
+}